@@ -8,11 +8,13 @@ package core.layer;
 import core.network.NeuralNetworkException;
 import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
+import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.sampling.Sequence;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.*;
@@ -536,7 +538,8 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
     }
 
     /**
-     * Starts neural network layer and it's execution thread.
+     * Starts neural network layer and it's execution thread.<br>
+     * If executor service is not given layer is started without execution thread and layer is executed by step methods (task scheduled execution).<br>
      *
      * @param executorService executor service.
      * @throws NeuralNetworkException throws exception if neural network layer name cannot be returned.
@@ -544,15 +547,18 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
      * @throws DynamicParamException  throws exception if parameter (params) setting fails.
      */
     public void start(ExecutorService executorService) throws NeuralNetworkException, MatrixException, DynamicParamException {
-        executeLock = new ReentrantLock();
-        executeLockCondition = executeLock.newCondition();
-        executionState = ExecutionState.IDLE;
-        executionStartCount = -1;
+        if (executorService != null) {
+            executeLock = new ReentrantLock();
+            executeLockCondition = executeLock.newCondition();
+            executionState = ExecutionState.IDLE;
+            executionStartCount = -1;
 
-        completeLock = new ReentrantLock();
-        completeLockCondition = completeLock.newCondition();
+            completeLock = new ReentrantLock();
+            completeLockCondition = completeLock.newCondition();
 
-        executeLayer(executorService);
+            executeLayer(executorService);
+        }
+        else executeLock = null;
 
         defineProcedure();
     }
@@ -563,6 +569,7 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
      *
      */
     public void stop() {
+        if (executeLock == null) return;
         nextState(ExecutionState.TERMINATED, true);
     }
 
@@ -671,6 +678,7 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
      *
      */
     public void waitToComplete() {
+        if (completeLock == null) return;
         try {
             completeLock.lock();
             while (executionState != ExecutionState.IDLE) completeLockCondition.await();
@@ -778,6 +786,59 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
     }
 
 
+    /**
+     * Executes training (forward) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void trainStep() throws MatrixException, DynamicParamException {
+        setTraining(true);
+        forwardProcess();
+    }
+
+    /**
+     * Executes predict (forward) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void predictStep() throws MatrixException, DynamicParamException {
+        setTraining(false);
+        forwardProcess();
+    }
+
+    /**
+     * Executes backward step of this layer only without propagating it to previous layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void backwardStep() throws MatrixException, DynamicParamException {
+        backwardProcess();
+    }
+
+    /**
+     * Executes update (optimization) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void updateStep() throws MatrixException, DynamicParamException {
+        optimize();
+    }
+
+    /**
+     * Executes update (optimization) step of this layer only using given weight gradients instead of gradients calculated by layer.
+     *
+     * @param layerWeightGradients weight gradients by weight matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void updateStep(HashMap<Matrix, Matrix> layerWeightGradients) throws MatrixException, DynamicParamException {
+        optimize(layerWeightGradients);
+    }
+
     /**
      * Sets training flag.
      *
@@ -793,4 +854,15 @@ public abstract class AbstractLayer implements NeuralNetworkLayer, Serializable
      */
     protected abstract void optimize() throws MatrixException, DynamicParamException;
 
+    /**
+     * Executes optimization step using given weight gradients. Layers without weights execute their default optimization step.
+     *
+     * @param layerWeightGradients weight gradients by weight matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    protected void optimize(HashMap<Matrix, Matrix> layerWeightGradients) throws MatrixException, DynamicParamException {
+        optimize();
+    }
+
 }
@@ -10,6 +10,7 @@ import core.optimization.Optimizer;
 import utils.configurable.DynamicParamException;
 import utils.matrix.Matrix;
 
+import java.io.Serial;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -20,6 +21,9 @@ import java.util.HashSet;
  */
 public abstract class AbstractPlainLayer extends AbstractLayer {
 
+    @Serial
+    private static final long serialVersionUID = 6502443325282868059L;
+
     /**
      * Constructor for abstract plain layer.
      *
@@ -59,6 +63,15 @@ public abstract class AbstractPlainLayer extends AbstractLayer {
         return true;
     }
 
+    /**
+     * Checks if layer works with data parallel training.
+     *
+     * @return if true layer works with data parallel training otherwise false.
+     */
+    public boolean worksWithDataParallelTraining() {
+        return true;
+    }
+
     /**
      * Defines layer procedure for forward and backward calculation (automatic gradient) by applying procedure factory.<br>
      *
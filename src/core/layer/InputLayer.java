@@ -7,6 +7,14 @@ package core.layer;
 
 import core.network.NeuralNetworkException;
 import utils.configurable.DynamicParamException;
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
+import utils.matrix.Matrix;
+import utils.matrix.Precision;
+import utils.sampling.Sequence;
+
+import java.io.Serial;
+import java.util.Map;
 
 /**
  * Implements input layer of neural network.<br>
@@ -14,12 +22,21 @@ import utils.configurable.DynamicParamException;
  */
 public class InputLayer extends AbstractPlainLayer {
 
+    @Serial
+    private static final long serialVersionUID = 1533395474032068228L;
+
     /**
      * Layer group index.
      *
      */
     private final int layerGroupIndex;
 
+    /**
+     * Numeric precision of inputs passed to next layers.
+     *
+     */
+    private Precision precision = Precision.DOUBLE;
+
     /**
      * Constructor for input layer.
      *
@@ -76,6 +93,64 @@ public class InputLayer extends AbstractPlainLayer {
     protected void setTraining(boolean training) {
     }
 
+    /**
+     * Sets numeric precision of inputs passed to next layers. Inputs are converted into single precision if precision is float.
+     *
+     * @param precision numeric precision of inputs.
+     */
+    public void setPrecision(Precision precision) {
+        this.precision = precision != null ? precision : Precision.DOUBLE;
+    }
+
+    /**
+     * Returns numeric precision of inputs passed to next layers.
+     *
+     * @return numeric precision of inputs.
+     */
+    public Precision getPrecision() {
+        return precision != null ? precision : Precision.DOUBLE;
+    }
+
+    /**
+     * Sets outputs of input layer. Inputs are converted into precision of layer.
+     *
+     * @param newLayerOutputs new layer outputs.
+     */
+    protected void setLayerOutputs(Sequence newLayerOutputs) {
+        if (precision != Precision.FLOAT) {
+            super.setLayerOutputs(newLayerOutputs);
+            return;
+        }
+        Sequence floatLayerOutputs = new Sequence();
+        for (Map.Entry<Integer, Matrix> entry : newLayerOutputs.entrySet()) floatLayerOutputs.put(entry.getKey(), getFloatMatrix(entry.getValue()));
+        super.setLayerOutputs(floatLayerOutputs);
+    }
+
+    /**
+     * Converts dense double precision matrix into single precision matrix. Other matrices are returned as such.
+     *
+     * @param matrix matrix.
+     * @return single precision matrix or matrix as such if it cannot be converted.
+     */
+    private static Matrix getFloatMatrix(Matrix matrix) {
+        if (!(matrix instanceof DMatrix dMatrix) || matrix.isTransposed()) return matrix;
+        double[] data = dMatrix.getData();
+        if (data == null) return matrix;
+        float[] floatData = new float[data.length];
+        for (int index = 0; index < data.length; index++) floatData[index] = (float)data[index];
+        return new FMatrix(matrix.getRows(), matrix.getColumns(), matrix.getDepth(), floatData);
+    }
+
+    /**
+     * Sets inputs of neural network (input layer) without starting layer execution.<br>
+     * Used when layers are executed by task scheduler.<br>
+     *
+     * @param inputs inputs for layer.
+     */
+    public void setInputs(Sequence inputs) {
+        setLayerOutputs(inputs);
+    }
+
     /**
      * Sets reset flag for procedure expression dependencies.
      *
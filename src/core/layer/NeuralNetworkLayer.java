@@ -132,6 +132,13 @@ public interface NeuralNetworkLayer {
      */
     boolean worksWithRecurrentLayer();
 
+    /**
+     * Checks if layer works with data parallel training. Layer does not work with data parallel training if it has state other than weights that is updated during training as such state is not synchronized between replicas.
+     *
+     * @return if true layer works with data parallel training otherwise false.
+     */
+    boolean worksWithDataParallelTraining();
+
     /**
      * Initializes neural network layer dimensions.
      *
@@ -269,6 +276,47 @@ public interface NeuralNetworkLayer {
      */
     void waitToComplete();
 
+    /**
+     * Executes training (forward) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void trainStep() throws MatrixException, DynamicParamException;
+
+    /**
+     * Executes predict (forward) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void predictStep() throws MatrixException, DynamicParamException;
+
+    /**
+     * Executes backward step of this layer only without propagating it to previous layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void backwardStep() throws MatrixException, DynamicParamException;
+
+    /**
+     * Executes update (optimization) step of this layer only without propagating it to next layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void updateStep() throws MatrixException, DynamicParamException;
+
+    /**
+     * Executes update (optimization) step of this layer only using given weight gradients instead of gradients calculated by layer.
+     *
+     * @param layerWeightGradients weight gradients by weight matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void updateStep(HashMap<Matrix, Matrix> layerWeightGradients) throws MatrixException, DynamicParamException;
+
     /**
      * Cumulates error from regularization. Mainly from L1 / L2 / Lp regularization.
      *
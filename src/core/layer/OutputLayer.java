@@ -13,6 +13,7 @@ import utils.matrix.MatrixException;
 import utils.matrix.operation.BinaryMatrixOperation;
 import utils.sampling.Sequence;
 
+import java.io.Serial;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,6 +26,9 @@ import java.util.Map;
  */
 public class OutputLayer extends AbstractPlainLayer {
 
+    @Serial
+    private static final long serialVersionUID = 7058932663133028048L;
+
     /**
      * Layer group index.
      *
@@ -159,9 +163,18 @@ public class OutputLayer extends AbstractPlainLayer {
      * @throws NeuralNetworkException throws exception if targets are not set or output and target dimensions are not matching.
      */
     public void backward() throws NeuralNetworkException  {
+        checkTargets();
+        super.backward(true);
+    }
+
+    /**
+     * Checks that targets are set and their dimensions are matching with outputs.
+     *
+     * @throws NeuralNetworkException throws exception if targets are not set or output and target dimensions are not matching.
+     */
+    public void checkTargets() throws NeuralNetworkException  {
         if (targets.isEmpty()) throw new NeuralNetworkException("No targets defined");
         if (targets.totalSize() != getLayerOutputs().totalSize()) throw new NeuralNetworkException("Target size: "+ targets.totalSize() + " is not matching with output size: " + getLayerOutputs().totalSize());
-        super.backward(true);
     }
 
     /**
@@ -233,4 +246,4 @@ public class OutputLayer extends AbstractPlainLayer {
         return "Connect from layers: " + (!inputLayerList.isEmpty() ? inputLayerList : "N/A");
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -20,17 +20,25 @@ import java.util.Map;
 import java.util.TreeMap;
 
 /**
- * Implements dot attention layer.
+ * Implements dot attention layer.<br>
+ * <br>
+ * With streaming softmax attention is calculated as single attention expression that iterates queries tile by tile with online softmax.
+ * Attention score matrix whose size is quadratic with respect to number of inputs is not materialized neither in forward nor in backward pass.<br>
  *
  */
 public class DotAttentionLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 9047917994644808589L;
+
     /**
      * Parameter name types for dot attention layer.
      *     - scaled: If true applies scaled self attention otherwise pure self attention. Default true.<br>
+     *     - streamingSoftmax: If true attention is calculated with streaming softmax without materializing attention score matrix. Default true.<br>
      *
      */
-    private final static String paramNameTypes = "(scaled:BOOLEAN)";
+    private final static String paramNameTypes = "(scaled:BOOLEAN), " +
+            "(streamingSoftmax:BOOLEAN)";
 
     /**
      * Implements weight set for layer.
@@ -84,11 +92,11 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
                 if (previousLayerDepth == -1) previousLayerDepth = previousLayer.getLayerDepth();
                 else if (previousLayerDepth != previousLayer.getLayerDepth()) throw new MatrixException("All layers must have same depth");
             }
-            queryWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            queryWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             queryWeight.setName("QueryWeight");
-            keyWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            keyWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             keyWeight.setName("KeyWeight");
-            valueWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            valueWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             valueWeight.setName("ValueWeight");
 
             weights.add(queryWeight);
@@ -168,6 +176,12 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
      */
     protected Matrix scalingFactor;
 
+    /**
+     * If true attention is calculated with streaming softmax without materializing attention score matrix.
+     *
+     */
+    protected boolean streamingSoftmax;
+
     /**
      * Constructor for dot attention layer.
      *
@@ -196,6 +210,7 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
      * <br>
      * Supported parameters are:<br>
      *     - scaled: If true applies scaled dot attention otherwise dot attention. Default true.<br>
+     *     - streamingSoftmax: If true attention is calculated with streaming softmax without materializing attention score matrix. Default true.<br>
      *
      * @param params parameters used for dot attention layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -204,6 +219,7 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
     public void setParams(DynamicParam params) throws DynamicParamException, NeuralNetworkException {
         super.setParams(params);
         if (params.hasParam("scaled")) scaled = params.getValueAsBoolean("scaled");
+        if (params.hasParam("streamingSoftmax")) streamingSoftmax = params.getValueAsBoolean("streamingSoftmax");
     }
 
     /**
@@ -223,6 +239,7 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
         super.initializeDefaultParams();
         scaled = true;
         scalingFactor = null;
+        streamingSoftmax = true;
     }
 
     /**
@@ -254,8 +271,10 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
         if (scaled) {
             scalingFactor = new DMatrix(1.0 / Math.sqrt(getDefaultPreviousLayer().getLayerWidth()));
             scalingFactor.setName("ScalingFactor");
-            registerConstantMatrix(scalingFactor);
-            registerStopGradient(scalingFactor);
+            if (!streamingSoftmax) {
+                registerConstantMatrix(scalingFactor);
+                registerStopGradient(scalingFactor);
+            }
         }
     }
 
@@ -309,6 +328,17 @@ public class DotAttentionLayer extends AbstractExecutionLayer {
         query.setName("Query");
         Matrix key = transposedJoinedInput.dot(weightSet.keyWeight);
         key.setName("Key");
+
+        if (streamingSoftmax) {
+            Matrix value = weightSet.valueWeight.dot(joinedInput);
+            value.setName("Value");
+            Matrix keyValue = key.apply(transposeFunction).join(value, true);
+            keyValue.setName("KeyValue");
+            Matrix output = query.attend(keyValue, scaled ? scalingFactor.getValue(0, 0, 0) : 1);
+            output.setName("Output");
+            return output;
+        }
+
         Matrix attentionScores = query.dot(key.apply(transposeFunction));
         attentionScores.setName("AttentionScores");
         if (scaled) {
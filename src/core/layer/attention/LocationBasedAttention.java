@@ -26,6 +26,9 @@ import java.util.TreeMap;
  */
 public class LocationBasedAttention extends DotAttentionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 6869655645622722770L;
+
     /**
      * Implements weight set for layer.
      *
@@ -84,13 +87,13 @@ public class LocationBasedAttention extends DotAttentionLayer {
                 if (previousLayerDepth == -1) previousLayerDepth = previousLayer.getLayerDepth();
                 else if (previousLayerDepth != previousLayer.getLayerDepth()) throw new MatrixException("All layers must have same depth");
             }
-            queryWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            queryWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             queryWeight.setName("QueryWeight");
-            keyWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            keyWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             keyWeight.setName("KeyWeight");
-            valueWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            valueWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             valueWeight.setName("ValueWeight");
-            positionWeight = new DMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            positionWeight = getNewMatrix(previousLayerWidth, previousLayerWidth, previousLayerDepth, initialization);
             positionWeight.setName("PositionWeight");
 
             weights.add(queryWeight);
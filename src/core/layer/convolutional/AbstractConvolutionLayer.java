@@ -8,14 +8,22 @@ package core.layer.convolutional;
 import core.layer.AbstractExecutionLayer;
 import core.network.NeuralNetworkException;
 import utils.configurable.DynamicParamException;
+import utils.matrix.ConvolutionAlgorithm;
 import utils.matrix.Initialization;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+
 /**
  * Implements abstract convolutional layer which implements common functionality for convolutional layer.
  *
  */
 public abstract class AbstractConvolutionLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 6969792800092554101L;
+
     /**
      * Defines width of incoming image.
      *
@@ -58,6 +66,12 @@ public abstract class AbstractConvolutionLayer extends AbstractExecutionLayer {
      */
     protected int dilation;
 
+    /**
+     * Defines algorithm used to execute convolution.
+     *
+     */
+    protected ConvolutionAlgorithm convolutionAlgorithm;
+
     /**
      * Constructor for abstract convolutional layer.
      *
@@ -107,6 +121,21 @@ public abstract class AbstractConvolutionLayer extends AbstractExecutionLayer {
         this.dilation = dilation;
     }
 
+    /**
+     * Sets algorithm used to execute convolution.
+     *
+     * @param convolutionAlgorithmName name of algorithm (AUTO, DIRECT or IM2COL).
+     * @throws NeuralNetworkException throws exception if algorithm is not known.
+     */
+    protected void setConvolutionAlgorithm(String convolutionAlgorithmName) throws NeuralNetworkException {
+        try {
+            this.convolutionAlgorithm = ConvolutionAlgorithm.valueOf(convolutionAlgorithmName.toUpperCase());
+        }
+        catch (IllegalArgumentException illegalArgumentException) {
+            throw new NeuralNetworkException("Unknown convolution algorithm: " + convolutionAlgorithmName);
+        }
+    }
+
     /**
      * Initializes neural network layer dimensions.
      *
@@ -166,4 +195,17 @@ public abstract class AbstractConvolutionLayer extends AbstractExecutionLayer {
         return layerDetailsByName;
     }
 
+    /**
+     * Reads layer from object input stream. Layers stored in earlier format execute convolution directly.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        objectInputStream.defaultReadObject();
+        if (convolutionAlgorithm == null) convolutionAlgorithm = ConvolutionAlgorithm.DIRECT;
+    }
+
 }
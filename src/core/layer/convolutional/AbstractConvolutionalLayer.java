@@ -10,6 +10,7 @@ import core.layer.WeightSet;
 import core.network.NeuralNetworkException;
 import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
+import utils.matrix.ConvolutionAlgorithm;
 import utils.matrix.DMatrix;
 import utils.matrix.Initialization;
 import utils.matrix.Matrix;
@@ -26,16 +27,21 @@ import java.util.TreeMap;
  */
 public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -4578240309446336319L;
+
     /**
      * Parameter name types for abstract convolutional layer.
      *     - filters: number of filters (default 1).<br>
      *     - isDepthSeparable: true if layer is depth separable (default false).<br>
      *     - regulateWeights: true if filter weights are regulated otherwise false (default false).<br>
+     *     - convolutionAlgorithm: algorithm used to execute convolution (AUTO, DIRECT or IM2COL). AUTO selects algorithm based on filter size (default AUTO).<br>
      *
      */
     private final static String paramNameTypes = "(filters:INT), " +
             "(isDepthSeparable:BOOLEAN), "  +
-            "(regulateWeights:BOOLEAN)";
+            "(regulateWeights:BOOLEAN), " +
+            "(convolutionAlgorithm:STRING)";
 
     /**
      * Implements weight set for layer.
@@ -105,12 +111,12 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
             this.numberOfFilters = numberOfFilters;
             this.previousLayerDepth = previousLayerDepth;
 
-            filterWeight = new DMatrix(filterRowSize, filterColumnSize, isDepthSeparable ? previousLayerDepth : previousLayerDepth * numberOfFilters, initialization, filterRowSize * filterColumnSize * previousLayerDepth,  filterRowSize * filterColumnSize * numberOfFilters);
+            filterWeight = getNewMatrix(filterRowSize, filterColumnSize, isDepthSeparable ? previousLayerDepth : previousLayerDepth * numberOfFilters, initialization, filterRowSize * filterColumnSize * previousLayerDepth,  filterRowSize * filterColumnSize * numberOfFilters);
             filterWeight.setName("Wf");
             weights.add(filterWeight);
             registerWeight(filterWeight, regulateWeights, true);
 
-            filterBias = new DMatrix(getLayerWidth(), getLayerHeight(), numberOfFilters);
+            filterBias = getNewMatrix(getLayerWidth(), getLayerHeight(), numberOfFilters);
             filterBias.setName("Bf");
             weights.add(filterBias);
             registerWeight(filterBias, false, false);
@@ -211,6 +217,7 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
         dilation = 1;
         isDepthSeparable = false;
         regulateWeights = false;
+        convolutionAlgorithm = ConvolutionAlgorithm.AUTO;
     }
 
     /**
@@ -229,6 +236,7 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
      *     - filters: number of filters (default 1).<br>
      *     - isDepthSeparable: true if layer is depth separable (default false).<br>
      *     - regulateWeights: true if filter weights are regulated otherwise false (default false).<br>
+     *     - convolutionAlgorithm: algorithm used to execute convolution (AUTO, DIRECT or IM2COL). AUTO selects algorithm based on filter size (default AUTO).<br>
      *
      * @param params parameters used for abstract convolutional layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -242,6 +250,7 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
         }
         if (params.hasParam("isDepthSeparable")) isDepthSeparable = params.getValueAsBoolean("isDepthSeparable");
         if (params.hasParam("regulateWeights")) regulateWeights = params.getValueAsBoolean("regulateWeights");
+        if (params.hasParam("convolutionAlgorithm")) setConvolutionAlgorithm(params.getValueAsString("convolutionAlgorithm"));
     }
 
     /**
@@ -303,6 +312,7 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
         input.setStride(stride);
         input.setDilation(dilation);
         input.setIsDepthSeparable(isDepthSeparable);
+        input.setConvolutionAlgorithm(convolutionAlgorithm.select(filterRowSize, filterColumnSize, dilation, previousLayerDepth, isDepthSeparable));
         Matrix output = weightSet.filterBias.add(executeConvolutionalOperation(input, weightSet.filterWeight));
         if (activationFunction != null) output = output.apply(activationFunction);
         output.setName("Output");
@@ -328,7 +338,8 @@ public abstract class AbstractConvolutionalLayer extends AbstractConvolutionLaye
         String layerDetailsByName = super.getLayerDetailsByName() + ", ";
         layerDetailsByName += "Number of filters: " + numberOfFilters + ", ";
         layerDetailsByName += "Is depth separable: " + isDepthSeparable + ", ";
-        layerDetailsByName += "Convolution type: " + getConvolutionType();
+        layerDetailsByName += "Convolution type: " + getConvolutionType() + ", ";
+        layerDetailsByName += "Convolution algorithm: " + convolutionAlgorithm.select(filterRowSize, filterColumnSize, dilation, previousLayerDepth, isDepthSeparable);
         if (activationFunction != null) layerDetailsByName += ", Activation function: " + activationFunction.getName();
         return layerDetailsByName;
     }
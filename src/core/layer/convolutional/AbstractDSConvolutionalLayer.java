@@ -23,6 +23,9 @@ import java.util.TreeMap;
  */
 public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -2426158108202438428L;
+
     /**
      * Parameter name types for abstract depth-wise separable convolutional layer.
      *     - filters: number of filters.<br>
@@ -32,6 +35,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
      *     - stride: size of stride. Default size 1.<br>
      *     - dilation: dilation step for filter. Default step 1.<br>
      *     - regulateWeights: true if filter weights are regulated otherwise false (default false).<br>
+     *     - convolutionAlgorithm: algorithm used to execute convolution (AUTO, DIRECT or IM2COL). AUTO selects algorithm based on filter size (default AUTO).<br>
      *
      */
     private final static String paramNameTypes = "(filters:INT), " +
@@ -40,7 +44,8 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
             "(filterColumnSize:INT), " +
             "(stride:INT), " +
             "(dilation:INT), " +
-            "(regulateWeights:BOOLEAN)";
+            "(regulateWeights:BOOLEAN), " +
+            "(convolutionAlgorithm:STRING)";
 
     /**
      * Implements weight set for layer.
@@ -114,22 +119,22 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
             this.filterColumnSize = filterColumnSize;
             this.numberOfFilters = numberOfFilters;
 
-            filterWeightDepthWise = new DMatrix(filterRowSize, filterColumnSize, previousLayerDepth, initialization, filterRowSize * filterColumnSize * previousLayerDepth, filterRowSize * filterColumnSize * previousLayerDepth);
+            filterWeightDepthWise = getNewMatrix(filterRowSize, filterColumnSize, previousLayerDepth, initialization, filterRowSize * filterColumnSize * previousLayerDepth, filterRowSize * filterColumnSize * previousLayerDepth);
             filterWeightDepthWise.setName("WfDW");
             weights.add(filterWeightDepthWise);
             registerWeight(filterWeightDepthWise, regulateWeights, true);
 
-            filterBiasDepthWise = new DMatrix(getLayerWidth(), getLayerHeight(), previousLayerDepth);
+            filterBiasDepthWise = getNewMatrix(getLayerWidth(), getLayerHeight(), previousLayerDepth);
             filterBiasDepthWise.setName("BfDW");
             weights.add(filterBiasDepthWise);
             registerWeight(filterBiasDepthWise, false, false);
 
-            filterWeightPointWise = new DMatrix(1, 1, previousLayerDepth * numberOfFilters, initialization, previousLayerDepth, numberOfFilters);
+            filterWeightPointWise = getNewMatrix(1, 1, previousLayerDepth * numberOfFilters, initialization, previousLayerDepth, numberOfFilters);
             filterWeightPointWise.setName("WfPW");
             weights.add(filterWeightPointWise);
             registerWeight(filterWeightPointWise, regulateWeights, true);
 
-            filterBiasPointWise = new DMatrix(getLayerWidth(), getLayerHeight(), numberOfFilters);
+            filterBiasPointWise = getNewMatrix(getLayerWidth(), getLayerHeight(), numberOfFilters);
             filterBiasPointWise.setName("BfPW");
             weights.add(filterBiasPointWise);
             registerWeight(filterBiasPointWise, false, false);
@@ -216,6 +221,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
         stride = 1;
         dilation = 1;
         regulateWeights = false;
+        convolutionAlgorithm = ConvolutionAlgorithm.AUTO;
     }
 
     /**
@@ -238,6 +244,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
      *     - stride: size of stride. Default size 1.<br>
      *     - dilation: dilation step for filter. Default step 1.<br>
      *     - regulateWeights: true if filter weights are regulated otherwise false (default false).<br>
+     *     - convolutionAlgorithm: algorithm used to execute convolution (AUTO, DIRECT or IM2COL). AUTO selects algorithm based on filter size (default AUTO).<br>
      *
      * @param params parameters used for abstract depth-wise separable convolutional layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -276,6 +283,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
             setDilation(dilation);
         }
         if (params.hasParam("regulateWeights")) regulateWeights = params.getValueAsBoolean("regulateWeights");
+        if (params.hasParam("convolutionAlgorithm")) setConvolutionAlgorithm(params.getValueAsString("convolutionAlgorithm"));
     }
 
     /**
@@ -336,6 +344,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
         input.setStride(stride);
         input.setDilation(dilation);
         input.setIsDepthSeparable(true);
+        input.setConvolutionAlgorithm(convolutionAlgorithm.select(filterRowSize, filterColumnSize, dilation, previousLayerDepth, true));
         Matrix dwOutput = weightSet.filterBiasDepthWise.add(executeConvolutionalOperation(input, weightSet.filterWeightDepthWise));
         dwOutput.setName("DWOutput");
 
@@ -346,6 +355,7 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
         dwOutput.setStride(1);
         dwOutput.setDilation(1);
         dwOutput.setIsDepthSeparable(false);
+        dwOutput.setConvolutionAlgorithm(convolutionAlgorithm.select(1, 1, 1, previousLayerDepth, false));
         Matrix pwOutput = weightSet.filterBiasPointWise.add(executeConvolutionalOperation(dwOutput, weightSet.filterWeightPointWise));
 
         pwOutput.setName("Output");
@@ -371,7 +381,8 @@ public abstract class AbstractDSConvolutionalLayer extends AbstractConvolutionLa
     protected String getLayerDetailsByName() {
         String layerDetailsByName = super.getLayerDetailsByName() + ", ";
         layerDetailsByName += "Number of filters: " + numberOfFilters + ", ";
-        layerDetailsByName += "Convolution type: " + getConvolutionType();
+        layerDetailsByName += "Convolution type: " + getConvolutionType() + ", ";
+        layerDetailsByName += "Convolution algorithm: " + convolutionAlgorithm;
         return layerDetailsByName;
     }
 
@@ -26,6 +26,8 @@ import java.util.TreeMap;
  */
 public abstract class AbstractDWSingleConvolutionLayer extends AbstractConvolutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 7808285106858523288L;
 
     /**
      * Parameter name types for abstract single depth-wise separable convolutional layer.
@@ -94,12 +96,12 @@ public abstract class AbstractDWSingleConvolutionLayer extends AbstractConvoluti
             this.filterRowSize = filterRowSize;
             this.filterColumnSize = filterColumnSize;
 
-            filterWeightDepthWise = new DMatrix(filterRowSize, filterColumnSize, 1, initialization, filterRowSize * filterColumnSize, filterRowSize * filterColumnSize);
+            filterWeightDepthWise = getNewMatrix(filterRowSize, filterColumnSize, 1, initialization, filterRowSize * filterColumnSize, filterRowSize * filterColumnSize);
             filterWeightDepthWise.setName("WfDW");
             weights.add(filterWeightDepthWise);
             registerWeight(filterWeightDepthWise, regulateWeights, true);
 
-            filterBiasDepthWise = new DMatrix(getLayerWidth(), getLayerHeight(), 1);
+            filterBiasDepthWise = getNewMatrix(getLayerWidth(), getLayerHeight(), 1);
             filterBiasDepthWise.setName("BfDW");
             weights.add(filterBiasDepthWise);
             registerWeight(filterBiasDepthWise, false, false);
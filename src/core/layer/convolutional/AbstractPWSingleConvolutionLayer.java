@@ -28,6 +28,9 @@ import java.util.TreeMap;
  */
 public abstract class AbstractPWSingleConvolutionLayer extends AbstractConvolutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -3483011092255342759L;
+
     /**
      * Parameter name types for abstract single point-wise separable convolutional layer.
      *     - regulateWeights: true if filter weights are regulated otherwise false (default false).<br>
@@ -70,14 +73,14 @@ public abstract class AbstractPWSingleConvolutionLayer extends AbstractConvoluti
          */
         PWConvolutionWeightSet(Initialization initialization, boolean regulateWeights) {
             for (Integer filterIndex : getPreviousLayers().keySet()) {
-                Matrix filterWeightPointWise = new DMatrix(1, 1, 1, initialization, 1, 1);
+                Matrix filterWeightPointWise = getNewMatrix(1, 1, 1, initialization, 1, 1);
                 filterWeightPointWise.setName("WfPW" + filterIndex);
                 weights.add(filterWeightPointWise);
                 registerWeight(filterWeightPointWise, regulateWeights, true);
                 filtersWeightPointWise.put(filterIndex, filterWeightPointWise);
             }
 
-            filterBiasPointWise = new DMatrix(getLayerWidth(), getLayerHeight(), getLayerDepth());
+            filterBiasPointWise = getNewMatrix(getLayerWidth(), getLayerHeight(), getLayerDepth());
             filterBiasPointWise.setName("BfPW");
             weights.add(filterBiasPointWise);
             registerWeight(filterBiasPointWise, false, false);
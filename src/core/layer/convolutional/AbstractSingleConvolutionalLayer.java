@@ -24,6 +24,8 @@ import java.util.TreeMap;
  */
 public abstract class AbstractSingleConvolutionalLayer extends AbstractConvolutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 5327066039857284316L;
 
     /**
      * Parameter name types for single convolution layer.
@@ -93,12 +95,12 @@ public abstract class AbstractSingleConvolutionalLayer extends AbstractConvoluti
             this.filterRowSize = filterRowSize;
             this.filterColumnSize = filterColumnSize;
 
-            filterWeight = new DMatrix(filterRowSize, filterColumnSize, previousLayerDepth, initialization, filterRowSize * filterColumnSize, filterRowSize * filterColumnSize);
+            filterWeight = getNewMatrix(filterRowSize, filterColumnSize, previousLayerDepth, initialization, filterRowSize * filterColumnSize, filterRowSize * filterColumnSize);
             filterWeight.setName("Wf");
             weights.add(filterWeight);
             registerWeight(filterWeight, regulateWeights, true);
 
-            filterBias = new DMatrix(getLayerWidth(), getLayerHeight(), 1);
+            filterBias = getNewMatrix(getLayerWidth(), getLayerHeight(), 1);
             filterBias.setName("Bf");
             weights.add(filterBias);
             registerWeight(filterBias, false, false);
@@ -24,6 +24,9 @@ import java.util.TreeMap;
  */
 public class ConnectLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 8965850219282125871L;
+
     /**
      * Implements weight set for layer.
      *
@@ -55,7 +58,7 @@ public class ConnectLayer extends AbstractExecutionLayer {
          */
         ConnectWeightSet(Initialization initialization, int layerWidth, int layerDepth, TreeMap<Integer, NeuralNetworkLayer> previousLayers) {
             for (Map.Entry<Integer, NeuralNetworkLayer> entry : previousLayers.entrySet()) {
-                Matrix connectInputWeight = new DMatrix(layerWidth, entry.getValue().getLayerWidth(), layerDepth, initialization);
+                Matrix connectInputWeight = getNewMatrix(layerWidth, entry.getValue().getLayerWidth(), layerDepth, initialization);
                 connectInputWeight.setName("ConnectWeight" + entry.getValue().getLayerIndex());
                 weights.add(connectInputWeight);
                 registerWeight(connectInputWeight, false, false);
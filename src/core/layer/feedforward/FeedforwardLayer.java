@@ -24,6 +24,9 @@ import java.util.TreeMap;
  */
 public class FeedforwardLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -660479165242204L;
+
     /**
      * Parameter name types for feedforward layer.
      *     - regulateDirectWeights: true if (direct) weights are regulated otherwise false. Default value true.<br>
@@ -69,9 +72,9 @@ public class FeedforwardLayer extends AbstractExecutionLayer {
          * @param regulateDirectWeights if true direct weights are regulated.
          */
         FeedforwardWeightSet(Initialization initialization, int previousLayerWidth, int previousLayerHeight, int layerWidth, int previousLayerDepth, boolean regulateDirectWeights) {
-            weight = new DMatrix(layerWidth, previousLayerWidth, previousLayerDepth, initialization);
+            weight = getNewMatrix(layerWidth, previousLayerWidth, previousLayerDepth, initialization);
             weight.setName("Weight");
-            bias = new DMatrix(layerWidth, previousLayerHeight, previousLayerDepth);
+            bias = getNewMatrix(layerWidth, previousLayerHeight, previousLayerDepth);
             bias.setName("Bias");
 
             weights.add(weight);
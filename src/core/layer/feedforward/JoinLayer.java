@@ -24,6 +24,9 @@ import java.util.TreeMap;
  */
 public class JoinLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -4350438259365339627L;
+
     /**
      * Implements weight set for layer.
      *
@@ -54,7 +57,7 @@ public class JoinLayer extends AbstractExecutionLayer {
          */
         JoinWeightSet(Initialization initialization, int layerWidth, int layerDepth) {
             if (getLayerWidth() != getPreviousLayerTotalWidth()) {
-                Matrix previousInputWeight = new DMatrix(layerWidth, getPreviousLayerTotalWidth(), layerDepth, initialization);
+                Matrix previousInputWeight = getNewMatrix(layerWidth, getPreviousLayerTotalWidth(), layerDepth, initialization);
                 previousInputWeight.setName("JoinedInputWeight");
                 weights.add(previousInputWeight);
                 registerWeight(previousInputWeight, false, false);
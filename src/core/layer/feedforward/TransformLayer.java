@@ -23,6 +23,9 @@ import java.util.TreeMap;
  */
 public class TransformLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -5341130039217659218L;
+
     /**
      * Parameter name types for transform layer.
      *     - regulateDirectWeights: true if (direct) weights are regulated otherwise false. Default value true.<br>
@@ -69,9 +72,9 @@ public class TransformLayer extends AbstractExecutionLayer {
          * @param regulateDirectWeights if true direct weights are regulated.
          */
         TransformWeightSet(Initialization initialization, int previousLayerWidth, int previousLayerHeight, int layerWidth, int layerHeight, int previousLayerDepth, boolean regulateDirectWeights) {
-            weight0 = new DMatrix(previousLayerHeight, layerHeight, previousLayerDepth, initialization);
+            weight0 = getNewMatrix(previousLayerHeight, layerHeight, previousLayerDepth, initialization);
             weight0.setName("Weight0");
-            weight1 = new DMatrix(layerWidth, previousLayerWidth, previousLayerDepth);
+            weight1 = getNewMatrix(layerWidth, previousLayerWidth, previousLayerDepth);
             weight1.setName("Weight0");
 
             weights.add(weight0);
@@ -24,6 +24,9 @@ import java.util.TreeMap;
  */
 public abstract class AbstractNormalization extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -5070340908243030558L;
+
     /**
      * Parameter name types for abstract normalization.
      *     - meanOnly: true if normalization is done only by using mean otherwise false (default value false).<br>
@@ -66,9 +69,9 @@ public abstract class AbstractNormalization extends AbstractExecutionLayer {
          * @param previousLayerDepth depth of previous layer.
          */
         AbstractNormalizationWeightSet(int previousLayerWidth, int previousLayerHeight, int previousLayerDepth) {
-            gamma = new DMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth, (row, col) -> new Random().nextGaussian() * 0.1);
+            gamma = getNewMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth, (row, col) -> new Random().nextGaussian() * 0.1);
             gamma.setName("Gamma");
-            beta = new DMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth);
+            beta = getNewMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth);
             beta.setName("Beta");
 
             weights.add(gamma);
@@ -14,6 +14,7 @@ import utils.matrix.*;
 import utils.procedure.node.Node;
 import utils.sampling.Sequence;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Map;
@@ -26,6 +27,9 @@ import java.util.TreeMap;
  */
 public class BatchNormalization extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -8537433223177792036L;
+
     /**
      * Parameter name types for batch normalization.
      *     - meanOnly: true if normalization is done only by using mean otherwise false (default value false).<br>
@@ -67,9 +71,9 @@ public class BatchNormalization extends AbstractExecutionLayer {
          * @param previousLayerDepth depth of previous layer.
          */
         BatchNormalizationWeightSet(int previousLayerWidth, int previousLayerHeight, int previousLayerDepth) {
-            gamma = new DMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth, (row, col) -> new Random().nextGaussian() * 0.1);
+            gamma = getNewMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth, (row, col) -> new Random().nextGaussian() * 0.1);
             gamma.setName("Gamma");
-            beta = new DMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth);
+            beta = getNewMatrix(previousLayerWidth, previousLayerHeight, previousLayerDepth);
             beta.setName("Beta");
 
             weights.add(gamma);
@@ -247,6 +251,15 @@ public class BatchNormalization extends AbstractExecutionLayer {
         return false;
     }
 
+    /**
+     * Checks if layer works with data parallel training. Moving averages of mean and variance are not synchronized between replicas hence batch normalization does not work with data parallel training.
+     *
+     * @return always false.
+     */
+    public boolean worksWithDataParallelTraining() {
+        return false;
+    }
+
     /**
      * Returns weight set.
      *
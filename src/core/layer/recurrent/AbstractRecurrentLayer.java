@@ -10,6 +10,9 @@ import core.network.NeuralNetworkException;
 import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
 import utils.matrix.Initialization;
+import utils.matrix.MatrixException;
+
+import java.io.Serial;
 
 /**
  * Implements abstract recurrent layer providing functions common for all recurrent layers.<br>
@@ -17,14 +20,19 @@ import utils.matrix.Initialization;
  */
 public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = 2434953553368923359L;
+
     /**
      * Parameter name types for abstract recurrent layer.
      *     - truncateSteps: number of sequence steps taken in backpropagation phase (default -1 i.e. not used).<br>
      *     - reversedInput: if true layer input is reversed otherwise not. Default value false.<br>
+     *     - checkpointSteps: number of sequence steps between gradient checkpoints. Only every checkpointSteps:th recurrent state is kept in forward phase and intermediate results are recalculated in backpropagation phase (default 0 i.e. not used).<br>
      *
      */
     private final static String paramNameTypes = "(truncateSteps:INT), " +
-            "(reversedInput:BOOLEAN)";
+            "(reversedInput:BOOLEAN), " +
+            "(checkpointSteps:INT)";
 
     /**
      * Limits number of backward propagation sequence steps.
@@ -38,6 +46,12 @@ public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
      */
     private boolean reversedInput;
 
+    /**
+     * Number of sequence steps between gradient checkpoints.
+     *
+     */
+    private int checkpointSteps;
+
     /**
      * Constructor for abstract recurrent layer.
      *
@@ -59,6 +73,7 @@ public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
         super.initializeDefaultParams();
         truncateSteps = -1;
         reversedInput = false;
+        checkpointSteps = 0;
     }
 
     /**
@@ -76,6 +91,7 @@ public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
      * Supported parameters are:<br>
      *     - truncateSteps: number of sequence steps taken in backpropagation phase (default -1 i.e. not used).<br>
      *     - reversedInput: if true layer input is reversed otherwise not. Default value false.<br>
+     *     - checkpointSteps: number of sequence steps between gradient checkpoints. Only every checkpointSteps:th recurrent state is kept in forward phase and intermediate results are recalculated in backpropagation phase (default 0 i.e. not used).<br>
      *
      * @param params parameters used for abstract recurrent layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -88,6 +104,23 @@ public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
             if (truncateSteps < 0) throw new NeuralNetworkException("Truncate steps cannot be less than 0.");
         }
         if (params.hasParam("reversedInput")) reversedInput = params.getValueAsBoolean("reversedInput");
+        if (params.hasParam("checkpointSteps")) {
+            checkpointSteps = params.getValueAsInteger("checkpointSteps");
+            if (checkpointSteps < 0) throw new NeuralNetworkException("Checkpoint steps cannot be less than 0.");
+        }
+    }
+
+    /**
+     * Defines layer procedure for forward and backward calculation (automatic gradient) by applying procedure factory.<br>
+     * Gradient checkpointing of procedure is set according to checkpoint steps.<br>
+     *
+     * @throws MatrixException       throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws NeuralNetworkException throws exception if definition of procedure fails.
+     */
+    protected void defineProcedure() throws MatrixException, DynamicParamException, NeuralNetworkException {
+        super.defineProcedure();
+        procedure.setCheckpointSteps(checkpointSteps);
     }
 
     /**
@@ -97,6 +130,15 @@ public abstract class AbstractRecurrentLayer extends AbstractExecutionLayer {
      */
     public boolean isRecurrentLayer() { return true; }
 
+    /**
+     * Checks if layer works with data parallel training. Samples of batch are processed as time sequence and data parallel training splits batch into independent shards hence recurrent layer does not work with data parallel training.
+     *
+     * @return always false.
+     */
+    public boolean worksWithDataParallelTraining() {
+        return false;
+    }
+
     /**
      * Check if layer input is reversed.
      *
@@ -12,9 +12,13 @@ import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
 import utils.matrix.*;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.TreeMap;
 
 /**
@@ -28,19 +32,27 @@ import java.util.TreeMap;
  *     r = sigmoid(Wr * x + Ur * out(t-1) + br) → Reset gate<br>
  *     h = tanh(Wh * x + Uh * out(t-1) * r + bh) → Input activation<br>
  *     s = (1 - z) x h + z x out(t-1) → Internal state<br>
+ * <br>
+ * With fused gates weights are stacked into single input weight matrix W = [Wz; Wr; Wh], recurrent weight matrix U = [Uz; Ur; Uh] and bias b = [bz; br; bh].<br>
+ * Input projections W * x + b do not depend on previous output and are calculated for all samples ahead of sequential calculation.<br>
  *
  */
 @SuppressWarnings("JavadocLinkAsPlainText")
 public class GRULayer extends AbstractRecurrentLayer {
 
+    @Serial
+    private static final long serialVersionUID = 2784467774088431553L;
+
     /**
      * Parameter name types for GRU layer.
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gates are stacked and gates are calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      */
     private final static String paramNameTypes = "(regulateDirectWeights:BOOLEAN), " +
-            "(regulateRecurrentWeights:BOOLEAN)";
+            "(regulateRecurrentWeights:BOOLEAN), " +
+            "(fusedGates:BOOLEAN)";
 
     /**
      * Implements weight set for layer.
@@ -127,25 +139,25 @@ public class GRULayer extends AbstractRecurrentLayer {
          * @param regulateRecurrentWeights if true recurrent weight are regulated.
          */
         GRUWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
-            Wz = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wz = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wz.setName("Wz");
-            Wr = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wr = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wr.setName("Wr");
-            Wh = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wh = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wh.setName("Wh");
 
-            Uz = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uz = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uz.setName("Uz");
-            Ur = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Ur = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Ur.setName("Ur");
-            Uh = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uh = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uh.setName("Uh");
 
-            bz = new DMatrix(layerWidth, 1, 1);
+            bz = getNewMatrix(layerWidth, 1, 1);
             bz.setName("bz");
-            br = new DMatrix(layerWidth, 1, 1);
+            br = getNewMatrix(layerWidth, 1, 1);
             br.setName("br");
-            bh = new DMatrix(layerWidth, 1, 1);
+            bh = getNewMatrix(layerWidth, 1, 1);
             bh.setName("bh");
 
             weights.add(Wz);
@@ -172,7 +184,7 @@ public class GRULayer extends AbstractRecurrentLayer {
             registerWeight(br, false, false);
             registerWeight(bh, false, false);
 
-            ones = (ones == null) ? new DMatrix(layerWidth, 1, 1, Initialization.ONE) : ones;
+            ones = (ones == null) ? getNewMatrix(layerWidth, 1, 1, Initialization.ONE) : ones;
             ones.setName("1");
             registerConstantMatrix(ones);
             registerStopGradient(ones);
@@ -218,6 +230,134 @@ public class GRULayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Implements fused weight set for layer. Weights are stacked in order update gate, reset gate and input activation.
+     *
+     */
+    protected class FusedGRUWeightSet implements WeightSet, Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 3902146875325016471L;
+
+        /**
+         * Stacked weights for gates and input activation
+         *
+         */
+        private transient Matrix W;
+
+        /**
+         * Stacked recurrent weights for gates and input activation
+         *
+         */
+        private transient Matrix U;
+
+        /**
+         * Stacked bias for gates and input activation
+         *
+         */
+        private transient Matrix b;
+
+        /**
+         * Matrix of ones for calculation of z
+         *
+         */
+        private transient Matrix ones;
+
+        /**
+         * Stacked weights and constant matrix in order W, U, b and ones. Matrices are serialized via this list and restored into their fields when weight set is read.
+         *
+         */
+        private final ArrayList<Matrix> matrices = new ArrayList<>();
+
+        /**
+         * Set of weights.
+         *
+         */
+        private final HashSet<Matrix> weights = new HashSet<>();
+
+        /**
+         * Constructor for fused weight set
+         *
+         * @param initialization weight initialization function.
+         * @param previousLayerWidth width of previous layer.
+         * @param layerWidth width of current layer.
+         * @param regulateDirectWeights if true direct weights are regulated.
+         * @param regulateRecurrentWeights if true recurrent weight are regulated.
+         */
+        FusedGRUWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
+            W = getNewMatrix(3 * layerWidth, previousLayerWidth, 1, initialization);
+            W.setName("W");
+
+            U = getNewMatrix(3 * layerWidth, layerWidth, 1, initialization);
+            U.setName("U");
+
+            b = getNewMatrix(3 * layerWidth, 1, 1);
+            b.setName("b");
+
+            weights.add(W);
+            weights.add(U);
+            weights.add(b);
+
+            registerWeight(W, regulateDirectWeights, true);
+            registerWeight(U, regulateRecurrentWeights, true);
+            registerWeight(b, false, false);
+
+            ones = getNewMatrix(layerWidth, 1, 1, Initialization.ONE);
+            ones.setName("1");
+            registerConstantMatrix(ones);
+            registerStopGradient(ones);
+
+            matrices.addAll(List.of(W, U, b, ones));
+        }
+
+        /**
+         * Returns set of weights.
+         *
+         * @return set of weights.
+         */
+        public HashSet<Matrix> getWeights() {
+            return weights;
+        }
+
+        /**
+         * Reinitializes weights.
+         *
+         */
+        public void reinitialize() {
+            W.initialize(initialization);
+            U.initialize(initialization);
+            b.reset();
+        }
+
+        /**
+         * Returns number of parameters.
+         *
+         * @return number of parameters.
+         */
+        public int getNumberOfParameters() {
+            int numberOfParameters = 0;
+            for (Matrix weight : weights) numberOfParameters += weight.size();
+            return numberOfParameters;
+        }
+
+        /**
+         * Reads fused weight set from object input stream and restores stacked weights and constant matrix from serialized matrices.
+         *
+         * @param objectInputStream object input stream.
+         * @throws IOException throws exception if reading fails.
+         * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+         */
+        @Serial
+        private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+            objectInputStream.defaultReadObject();
+            W = matrices.get(0);
+            U = matrices.get(1);
+            b = matrices.get(2);
+            ones = matrices.get(3);
+        }
+
+    }
+
     /**
      * Weight set.
      *
@@ -230,6 +370,12 @@ public class GRULayer extends AbstractRecurrentLayer {
      */
     protected GRUWeightSet currentWeightSet;
 
+    /**
+     * Fused weight set.
+     *
+     */
+    protected FusedGRUWeightSet fusedWeightSet;
+
     /**
      * Matrix to store previous output
      *
@@ -260,6 +406,12 @@ public class GRULayer extends AbstractRecurrentLayer {
      */
     private boolean regulateRecurrentWeights;
 
+    /**
+     * Flag if weights of gates are stacked and gates are calculated with single input and recurrent dot.
+     *
+     */
+    private boolean fusedGates;
+
     /**
      * Input matrix for procedure construction.
      *
@@ -290,6 +442,7 @@ public class GRULayer extends AbstractRecurrentLayer {
         super.initializeDefaultParams();
         regulateDirectWeights = true;
         regulateRecurrentWeights = false;
+        fusedGates = false;
     }
 
     /**
@@ -307,6 +460,7 @@ public class GRULayer extends AbstractRecurrentLayer {
      * Supported parameters are:<br>
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gates are stacked and gates are calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      * @param params parameters used for GRU layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -316,6 +470,7 @@ public class GRULayer extends AbstractRecurrentLayer {
         super.setParams(params);
         if (params.hasParam("regulateDirectWeights")) regulateDirectWeights = params.getValueAsBoolean("regulateDirectWeights");
         if (params.hasParam("regulateRecurrentWeights")) regulateRecurrentWeights = params.getValueAsBoolean("regulateRecurrentWeights");
+        if (params.hasParam("fusedGates")) fusedGates = params.getValueAsBoolean("fusedGates");
     }
 
     /**
@@ -324,7 +479,7 @@ public class GRULayer extends AbstractRecurrentLayer {
      * @return weight set.
      */
     protected WeightSet getWeightSet() {
-        return weightSet;
+        return fusedGates ? fusedWeightSet : weightSet;
     }
 
     /**
@@ -333,7 +488,8 @@ public class GRULayer extends AbstractRecurrentLayer {
      *
      */
     public void initializeWeights() {
-        currentWeightSet = weightSet = new GRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        if (fusedGates) fusedWeightSet = new FusedGRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        else currentWeightSet = weightSet = new GRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
     }
 
     /**
@@ -358,6 +514,8 @@ public class GRULayer extends AbstractRecurrentLayer {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public Matrix getForwardProcedure() throws MatrixException {
+        if (fusedGates) return getFusedForwardProcedure();
+
         previousOutput.setName("PreviousOutput");
 
         // z = sigmoid(Wz * x + Uz * out(t-1) + bz) → Update gate
@@ -385,5 +543,46 @@ public class GRULayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Builds forward procedure with fused gates and implicitly builds backward procedure.
+     *
+     * @return output of forward procedure.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private Matrix getFusedForwardProcedure() throws MatrixException {
+        previousOutput.setName("PreviousOutput");
+
+        int layerWidth = getLayerWidth();
+
+        // x' = W * x + b → Input projections of gates and input activation
+        Matrix x = fusedWeightSet.W.dot(input).add(fusedWeightSet.b);
+        x.setName("x'");
+
+        // u = U * out(t-1) → Recurrent projections of gates and input activation
+        Matrix u = fusedWeightSet.U.dot(previousOutput);
+        u.setName("u");
+
+        // [z, r] = sigmoid(x'[0:2n] + u[0:2n]) → Update and reset gates
+        Matrix gates = x.unjoin(0, 0, 0, 2 * layerWidth, 1, 1).add(u.unjoin(0, 0, 0, 2 * layerWidth, 1, 1)).apply(sigmoid);
+        Matrix z = gates.unjoin(0, 0, 0, layerWidth, 1, 1);
+        z.setName("z");
+        Matrix r = gates.unjoin(layerWidth, 0, 0, layerWidth, 1, 1);
+        r.setName("r");
+
+        // h = tanh(x'[2n:3n] + u[2n:3n] * r) → Input activation
+        Matrix h = x.unjoin(2 * layerWidth, 0, 0, layerWidth, 1, 1).add(u.unjoin(2 * layerWidth, 0, 0, layerWidth, 1, 1).multiply(r));
+        h = h.apply(tanh);
+        h.setName("h");
+
+        // s = (1 - z) x h + z x out(t-1) → Internal state
+        Matrix s = fusedWeightSet.ones.subtract(z).multiply(h).add(z.multiply(previousOutput));
+        s.setName("Output");
+
+        previousOutput = s;
+
+        return s;
+
+    }
+
 }
 
@@ -33,6 +33,9 @@ import java.util.TreeMap;
  */
 public class GravesLSTMLayer extends AbstractRecurrentLayer {
 
+    @Serial
+    private static final long serialVersionUID = 1042410494233449106L;
+
     /**
      * Parameter name types for Graves LSTM layer.
      *     - doubleTanh: true if tanh operation at final output step is executed otherwise false (default value true).<br>
@@ -161,38 +164,38 @@ public class GravesLSTMLayer extends AbstractRecurrentLayer {
          * @param regulateRecurrentWeights if true recurrent weight are regulated.
          */
         GravesLSTMWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
-            Wi = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wi = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wi.setName("Wi");
-            Wf = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wf = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wf.setName("Wf");
-            Wo = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wo = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wo.setName("Wo");
-            Ws = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Ws = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Ws.setName("Ws");
 
-            Ui = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Ui = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Ui.setName("Ui");
-            Uf = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uf = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uf.setName("Uf");
-            Uo = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uo = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uo.setName("Uo");
-            Us = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Us = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Us.setName("Us");
 
-            Ci = new DMatrix(layerWidth, 1, 1, initialization);
+            Ci = getNewMatrix(layerWidth, 1, 1, initialization);
             Ci.setName("Ci");
-            Cf = new DMatrix(layerWidth, 1, 1, initialization);
+            Cf = getNewMatrix(layerWidth, 1, 1, initialization);
             Cf.setName("Cf");
-            Co = new DMatrix(layerWidth, 1, 1, initialization);
+            Co = getNewMatrix(layerWidth, 1, 1, initialization);
             Co.setName("Co");
 
-            bi = new DMatrix(layerWidth, 1, 1);
+            bi = getNewMatrix(layerWidth, 1, 1);
             bi.setName("bi");
-            bf = new DMatrix(layerWidth, 1, 1);
+            bf = getNewMatrix(layerWidth, 1, 1);
             bf.setName("bf");
-            bo = new DMatrix(layerWidth, 1, 1);
+            bo = getNewMatrix(layerWidth, 1, 1);
             bo.setName("bo");
-            bs = new DMatrix(layerWidth, 1, 1);
+            bs = getNewMatrix(layerWidth, 1, 1);
             bs.setName("bs");
 
             weights.add(Wi);
@@ -12,9 +12,13 @@ import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
 import utils.matrix.*;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.TreeMap;
 
 /**
@@ -26,18 +30,26 @@ import java.util.TreeMap;
  *     f = sigmoid(Wf * x + Uf * out(t-1) + bf) → Forget gate<br>
  *     h = tanh(Wh * x + Uh * out(t-1) * r + bh) → Input activation<br>
  *     s = (1 - f) x h + f x out(t-1) → Internal state<br>
+ * <br>
+ * With fused gates weights are stacked into single input weight matrix W = [Wf; Wh], recurrent weight matrix U = [Uf; Uh] and bias b = [bf; bh].<br>
+ * Input projections W * x + b do not depend on previous output and are calculated for all samples ahead of sequential calculation.<br>
  *
  */
 public class MinGRULayer extends AbstractRecurrentLayer {
 
+    @Serial
+    private static final long serialVersionUID = -3423081460683727581L;
+
     /**
      * Parameter name types for minimal GRU layer.
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gate and input activation are stacked and calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      */
     private final static String paramNameTypes = "(regulateDirectWeights:BOOLEAN), " +
-            "(regulateRecurrentWeights:BOOLEAN)";
+            "(regulateRecurrentWeights:BOOLEAN), " +
+            "(fusedGates:BOOLEAN)";
 
     /**
      * Implements weight set for layer.
@@ -106,19 +118,19 @@ public class MinGRULayer extends AbstractRecurrentLayer {
          * @param regulateRecurrentWeights if true recurrent weight are regulated.
          */
         MinGRUWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
-            Wf = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wf = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wf.setName("Wf");
-            Wh = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wh = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wh.setName("Wh");
 
-            Uf = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uf = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uf.setName("Uf");
-            Uh = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uh = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uh.setName("Uh");
 
-            bf = new DMatrix(layerWidth, 1, 1);
+            bf = getNewMatrix(layerWidth, 1, 1);
             bf.setName("bf");
-            bh = new DMatrix(layerWidth, 1, 1);
+            bh = getNewMatrix(layerWidth, 1, 1);
             bh.setName("bh");
 
             weights.add(Wf);
@@ -139,7 +151,7 @@ public class MinGRULayer extends AbstractRecurrentLayer {
             registerWeight(bf, false, false);
             registerWeight(bh, false, false);
 
-            ones = (ones == null) ? new DMatrix(layerWidth, 1, 1, Initialization.ONE) : ones;
+            ones = (ones == null) ? getNewMatrix(layerWidth, 1, 1, Initialization.ONE) : ones;
             ones.setName("1");
             registerConstantMatrix(ones);
             registerStopGradient(ones);
@@ -182,6 +194,134 @@ public class MinGRULayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Implements fused weight set for layer. Weights are stacked in order forget gate and input activation.
+     *
+     */
+    protected class FusedMinGRUWeightSet implements WeightSet, Serializable {
+
+        @Serial
+        private static final long serialVersionUID = -7165300218453597136L;
+
+        /**
+         * Stacked weights for forget gate and input activation
+         *
+         */
+        private transient Matrix W;
+
+        /**
+         * Stacked recurrent weights for forget gate and input activation
+         *
+         */
+        private transient Matrix U;
+
+        /**
+         * Stacked bias for forget gate and input activation
+         *
+         */
+        private transient Matrix b;
+
+        /**
+         * Matrix of ones for calculation of s
+         *
+         */
+        private transient Matrix ones;
+
+        /**
+         * Stacked weights and constant matrix in order W, U, b and ones. Matrices are serialized via this list and restored into their fields when weight set is read.
+         *
+         */
+        private final ArrayList<Matrix> matrices = new ArrayList<>();
+
+        /**
+         * Set of weights.
+         *
+         */
+        private final HashSet<Matrix> weights = new HashSet<>();
+
+        /**
+         * Constructor for fused weight set
+         *
+         * @param initialization weight initialization function.
+         * @param previousLayerWidth width of previous layer.
+         * @param layerWidth width of current layer.
+         * @param regulateDirectWeights if true direct weights are regulated.
+         * @param regulateRecurrentWeights if true recurrent weight are regulated.
+         */
+        FusedMinGRUWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
+            W = getNewMatrix(2 * layerWidth, previousLayerWidth, 1, initialization);
+            W.setName("W");
+
+            U = getNewMatrix(2 * layerWidth, layerWidth, 1, initialization);
+            U.setName("U");
+
+            b = getNewMatrix(2 * layerWidth, 1, 1);
+            b.setName("b");
+
+            weights.add(W);
+            weights.add(U);
+            weights.add(b);
+
+            registerWeight(W, regulateDirectWeights, true);
+            registerWeight(U, regulateRecurrentWeights, true);
+            registerWeight(b, false, false);
+
+            ones = getNewMatrix(layerWidth, 1, 1, Initialization.ONE);
+            ones.setName("1");
+            registerConstantMatrix(ones);
+            registerStopGradient(ones);
+
+            matrices.addAll(List.of(W, U, b, ones));
+        }
+
+        /**
+         * Returns set of weights.
+         *
+         * @return set of weights.
+         */
+        public HashSet<Matrix> getWeights() {
+            return weights;
+        }
+
+        /**
+         * Reinitializes weights.
+         *
+         */
+        public void reinitialize() {
+            W.initialize(initialization);
+            U.initialize(initialization);
+            b.reset();
+        }
+
+        /**
+         * Returns number of parameters.
+         *
+         * @return number of parameters.
+         */
+        public int getNumberOfParameters() {
+            int numberOfParameters = 0;
+            for (Matrix weight : weights) numberOfParameters += weight.size();
+            return numberOfParameters;
+        }
+
+        /**
+         * Reads fused weight set from object input stream and restores stacked weights and constant matrix from serialized matrices.
+         *
+         * @param objectInputStream object input stream.
+         * @throws IOException throws exception if reading fails.
+         * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+         */
+        @Serial
+        private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+            objectInputStream.defaultReadObject();
+            W = matrices.get(0);
+            U = matrices.get(1);
+            b = matrices.get(2);
+            ones = matrices.get(3);
+        }
+
+    }
+
     /**
      * Weight set.
      *
@@ -194,6 +334,12 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      */
     protected MinGRUWeightSet currentWeightSet;
 
+    /**
+     * Fused weight set.
+     *
+     */
+    protected FusedMinGRUWeightSet fusedWeightSet;
+
     /**
      * Matrix to store previous output
      *
@@ -224,6 +370,12 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      */
     private boolean regulateRecurrentWeights;
 
+    /**
+     * Flag if weights of gate and input activation are stacked and calculated with single input and recurrent dot.
+     *
+     */
+    private boolean fusedGates;
+
     /**
      * Input matrix for procedure construction.
      *
@@ -254,6 +406,7 @@ public class MinGRULayer extends AbstractRecurrentLayer {
         super.initializeDefaultParams();
         regulateDirectWeights = true;
         regulateRecurrentWeights = false;
+        fusedGates = false;
     }
 
     /**
@@ -271,6 +424,7 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      * Supported parameters are:<br>
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gate and input activation are stacked and calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      * @param params parameters used for minimal GRU layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -280,6 +434,7 @@ public class MinGRULayer extends AbstractRecurrentLayer {
         super.setParams(params);
         if (params.hasParam("regulateDirectWeights")) regulateDirectWeights = params.getValueAsBoolean("regulateDirectWeights");
         if (params.hasParam("regulateRecurrentWeights")) regulateRecurrentWeights = params.getValueAsBoolean("regulateRecurrentWeights");
+        if (params.hasParam("fusedGates")) fusedGates = params.getValueAsBoolean("fusedGates");
     }
 
     /**
@@ -288,7 +443,7 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      * @return weight set.
      */
     protected WeightSet getWeightSet() {
-        return weightSet;
+        return fusedGates ? fusedWeightSet : weightSet;
     }
 
     /**
@@ -296,7 +451,8 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      *
      */
     public void initializeWeights() {
-        currentWeightSet = weightSet = new MinGRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        if (fusedGates) fusedWeightSet = new FusedMinGRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        else currentWeightSet = weightSet = new MinGRUWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
     }
 
     /**
@@ -321,6 +477,8 @@ public class MinGRULayer extends AbstractRecurrentLayer {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public Matrix getForwardProcedure() throws MatrixException {
+        if (fusedGates) return getFusedForwardProcedure();
+
         previousOutput.setName("PreviousOutput");
 
         // f = sigmoid(Wf * x + Uf * out(t-1) + bf) → Forget gate
@@ -343,5 +501,44 @@ public class MinGRULayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Builds forward procedure with fused gates and implicitly builds backward procedure.
+     *
+     * @return output of forward procedure.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private Matrix getFusedForwardProcedure() throws MatrixException {
+        previousOutput.setName("PreviousOutput");
+
+        int layerWidth = getLayerWidth();
+
+        // x' = W * x + b → Input projections of forget gate and input activation
+        Matrix x = fusedWeightSet.W.dot(input).add(fusedWeightSet.b);
+        x.setName("x'");
+
+        // u = U * out(t-1) → Recurrent projections of forget gate and input activation
+        Matrix u = fusedWeightSet.U.dot(previousOutput);
+        u.setName("u");
+
+        // f = sigmoid(x'[0:n] + u[0:n]) → Forget gate
+        Matrix f = x.unjoin(0, 0, 0, layerWidth, 1, 1).add(u.unjoin(0, 0, 0, layerWidth, 1, 1));
+        f = f.apply(sigmoid);
+        f.setName("f");
+
+        // h = tanh(x'[n:2n] + u[n:2n] * f) → Input activation
+        Matrix h = x.unjoin(layerWidth, 0, 0, layerWidth, 1, 1).add(u.unjoin(layerWidth, 0, 0, layerWidth, 1, 1).multiply(f));
+        h = h.apply(tanh);
+        h.setName("h");
+
+        // s = (1 - f) x h + f x out(t-1) → Internal state
+        Matrix s = fusedWeightSet.ones.subtract(f).multiply(h).add(f.multiply(previousOutput));
+        s.setName("Output");
+
+        previousOutput = s;
+
+        return s;
+
+    }
+
 }
 
@@ -12,9 +12,13 @@ import utils.configurable.DynamicParam;
 import utils.configurable.DynamicParamException;
 import utils.matrix.*;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.TreeMap;
 
 /**
@@ -29,20 +33,28 @@ import java.util.TreeMap;
  *   s = tanh(Ws * x + bs) → State update<br>
  *   c = i x s + f x c-1 → Internal cell state<br>
  *   h = tanh(c) x o or h = c x o → Output<br>
+ * <br>
+ * With fused gates weights are stacked into single input weight matrix W = [Wi; Wf; Wo; Ws], recurrent weight matrix U = [Ui; Uf; Uo] and bias b = [bi; bf; bo; bs].<br>
+ * Input projections W * x + b do not depend on previous cell state and are calculated for all samples ahead of sequential calculation.<br>
  *
  */
 public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
 
+    @Serial
+    private static final long serialVersionUID = -6976638787888293853L;
+
     /**
      * Parameter name types for peephole LSTM layer.
      *     - doubleTanh: true if tanh operation at final output step is executed otherwise false (default value true).<br>
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gates are stacked and gates are calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      */
     private final static String paramNameTypes = "(doubleTanh:BOOLEAN), " +
             "(regulateDirectWeights:BOOLEAN), " +
-            "(regulateRecurrentWeights:BOOLEAN)";
+            "(regulateRecurrentWeights:BOOLEAN), " +
+            "(fusedGates:BOOLEAN)";
 
     /**
      * Implements weight set for layer.
@@ -135,29 +147,29 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
          * @param regulateRecurrentWeights if true recurrent weight are regulated.
          */
         PeepholeLSTMWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
-            Wi = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wi = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wi.setName("Wi");
-            Wf = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wf = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wf.setName("Wf");
-            Wo = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Wo = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Wo.setName("Wo");
-            Ws = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            Ws = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             Ws.setName("Ws");
 
-            Ui = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Ui = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Ui.setName("Ui");
-            Uf = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uf = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uf.setName("Uf");
-            Uo = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            Uo = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             Uo.setName("Uo");
 
-            bi = new DMatrix(layerWidth, 1, 1);
+            bi = getNewMatrix(layerWidth, 1, 1);
             bi.setName("bi");
-            bf = new DMatrix(layerWidth, 1, 1);
+            bf = getNewMatrix(layerWidth, 1, 1);
             bf.setName("bf");
-            bo = new DMatrix(layerWidth, 1, 1);
+            bo = getNewMatrix(layerWidth, 1, 1);
             bo.setName("bo");
-            bs = new DMatrix(layerWidth, 1, 1);
+            bs = getNewMatrix(layerWidth, 1, 1);
             bs.setName("bs");
 
             weights.add(Wi);
@@ -231,6 +243,122 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Implements fused weight set for layer. Weights are stacked in order input gate, forget gate, output gate and state.
+     *
+     */
+    protected class FusedPeepholeLSTMWeightSet implements WeightSet, Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 6021886539271138254L;
+
+        /**
+         * Stacked weights for gates and state
+         *
+         */
+        private transient Matrix W;
+
+        /**
+         * Stacked recurrent weights for gates
+         *
+         */
+        private transient Matrix U;
+
+        /**
+         * Stacked bias for gates and state
+         *
+         */
+        private transient Matrix b;
+
+        /**
+         * Stacked weights in order W, U and b. Matrices are serialized via this list and restored into their fields when weight set is read.
+         *
+         */
+        private final ArrayList<Matrix> matrices = new ArrayList<>();
+
+        /**
+         * Set of weights.
+         *
+         */
+        private final HashSet<Matrix> weights = new HashSet<>();
+
+        /**
+         * Constructor for fused weight set
+         *
+         * @param initialization weight initialization function.
+         * @param previousLayerWidth width of previous layer.
+         * @param layerWidth width of current layer.
+         * @param regulateDirectWeights if true direct weights are regulated.
+         * @param regulateRecurrentWeights if true recurrent weight are regulated.
+         */
+        FusedPeepholeLSTMWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
+            W = getNewMatrix(4 * layerWidth, previousLayerWidth, 1, initialization);
+            W.setName("W");
+
+            U = getNewMatrix(3 * layerWidth, layerWidth, 1, initialization);
+            U.setName("U");
+
+            b = getNewMatrix(4 * layerWidth, 1, 1);
+            b.setName("b");
+
+            weights.add(W);
+            weights.add(U);
+            weights.add(b);
+
+            registerWeight(W, regulateDirectWeights, true);
+            registerWeight(U, regulateRecurrentWeights, true);
+            registerWeight(b, false, false);
+
+            matrices.addAll(List.of(W, U, b));
+        }
+
+        /**
+         * Returns set of weights.
+         *
+         * @return set of weights.
+         */
+        public HashSet<Matrix> getWeights() {
+            return weights;
+        }
+
+        /**
+         * Reinitializes weights.
+         *
+         */
+        public void reinitialize() {
+            W.initialize(initialization);
+            U.initialize(initialization);
+            b.reset();
+        }
+
+        /**
+         * Returns number of parameters.
+         *
+         * @return number of parameters.
+         */
+        public int getNumberOfParameters() {
+            int numberOfParameters = 0;
+            for (Matrix weight : weights) numberOfParameters += weight.size();
+            return numberOfParameters;
+        }
+
+        /**
+         * Reads fused weight set from object input stream and restores stacked weights from serialized matrices.
+         *
+         * @param objectInputStream object input stream.
+         * @throws IOException throws exception if reading fails.
+         * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+         */
+        @Serial
+        private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+            objectInputStream.defaultReadObject();
+            W = matrices.get(0);
+            U = matrices.get(1);
+            b = matrices.get(2);
+        }
+
+    }
+
     /**
      * Weight set.
      *
@@ -243,6 +371,12 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      */
     protected PeepholeLSTMWeightSet currentWeightSet;
 
+    /**
+     * Fused weight set.
+     *
+     */
+    protected FusedPeepholeLSTMWeightSet fusedWeightSet;
+
     /**
      * Matrix to store previous state.
      *
@@ -285,6 +419,12 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      */
     private boolean regulateRecurrentWeights;
 
+    /**
+     * Flag if weights of gates are stacked and gates are calculated with single input and recurrent dot.
+     *
+     */
+    private boolean fusedGates;
+
     /**
      * Input matrix for procedure construction.
      *
@@ -335,6 +475,7 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
         doubleTanh = true;
         regulateDirectWeights = true;
         regulateRecurrentWeights = false;
+        fusedGates = false;
     }
 
     /**
@@ -353,6 +494,7 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      *     - doubleTanh: true if tanh operation at final output step is executed otherwise false (default value true).<br>
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
      *     - regulateRecurrentWeights: true if recurrent weights are regulated otherwise false (default value false).<br>
+     *     - fusedGates: true if weights of gates are stacked and gates are calculated with single input and recurrent dot otherwise false (default value false).<br>
      *
      * @param params parameters used for peephole LSTM layer.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -363,6 +505,7 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
         if (params.hasParam("doubleTanh")) doubleTanh = params.getValueAsBoolean("doubleTanh");
         if (params.hasParam("regulateDirectWeights")) regulateDirectWeights = params.getValueAsBoolean("regulateDirectWeights");
         if (params.hasParam("regulateRecurrentWeights")) regulateRecurrentWeights = params.getValueAsBoolean("regulateRecurrentWeights");
+        if (params.hasParam("fusedGates")) fusedGates = params.getValueAsBoolean("fusedGates");
     }
 
     /**
@@ -371,7 +514,7 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      * @return weight set.
      */
     protected WeightSet getWeightSet() {
-        return weightSet;
+        return fusedGates ? fusedWeightSet : weightSet;
     }
 
     /**
@@ -379,7 +522,8 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      *
      */
     public void initializeWeights() {
-        currentWeightSet = weightSet = new PeepholeLSTMWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        if (fusedGates) fusedWeightSet = new FusedPeepholeLSTMWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
+        else currentWeightSet = weightSet = new PeepholeLSTMWeightSet(initialization, getDefaultPreviousLayer().getLayerWidth(), getLayerWidth(), regulateDirectWeights, regulateRecurrentWeights);
     }
 
     /**
@@ -404,6 +548,8 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public Matrix getForwardProcedure() throws MatrixException {
+        if (fusedGates) return getFusedForwardProcedure();
+
         previousCellState.setName("PrevCellState");
 
         // i = sigmoid(Wi * x + Ui * c(t-1) + bi) → Input gate
@@ -440,4 +586,46 @@ public class PeepholeLSTMLayer extends AbstractRecurrentLayer {
 
     }
 
+    /**
+     * Builds forward procedure with fused gates and implicitly builds backward procedure.
+     *
+     * @return output of forward procedure.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private Matrix getFusedForwardProcedure() throws MatrixException {
+        previousCellState.setName("PrevCellState");
+
+        int layerWidth = getLayerWidth();
+
+        // z = W * x + b → Input projections of gates and state
+        Matrix z = fusedWeightSet.W.dot(input).add(fusedWeightSet.b);
+        z.setName("z");
+
+        // [i, f, o] = sigmoid(z[0:3n] + U * c(t-1)) → Input, forget and output gates
+        Matrix gates = z.unjoin(0, 0, 0, 3 * layerWidth, 1, 1).add(fusedWeightSet.U.dot(previousCellState)).apply(sigmoid);
+        Matrix i = gates.unjoin(0, 0, 0, layerWidth, 1, 1);
+        i.setName("i");
+        Matrix f = gates.unjoin(layerWidth, 0, 0, layerWidth, 1, 1);
+        f.setName("f");
+        Matrix o = gates.unjoin(2 * layerWidth, 0, 0, layerWidth, 1, 1);
+        o.setName("o");
+
+        // s = tanh(z[3n:4n]) → State update
+        Matrix s = z.unjoin(3 * layerWidth, 0, 0, layerWidth, 1, 1).apply(tanh);
+        s.setName("s");
+
+        // c = i x s + f x c-1 → Internal cell state
+        Matrix c = i.multiply(s).add(previousCellState.multiply(f));
+        c.setName("c");
+
+        previousCellState = c;
+
+        // h = activationFunction(c) x o or h = c x o → Output
+        Matrix h = (doubleTanh ? c.apply(activationFunction) : c).multiply(o);
+        h.setName("Output");
+
+        return h;
+
+    }
+
 }
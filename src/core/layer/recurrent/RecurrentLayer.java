@@ -24,6 +24,9 @@ import java.util.TreeMap;
  */
 public class RecurrentLayer extends AbstractRecurrentLayer {
 
+    @Serial
+    private static final long serialVersionUID = -6893491271305281910L;
+
     /**
      * Parameter name types for recurrent layer.
      *     - regulateDirectWeights: true if direct weights are regulated otherwise false (default value true).<br>
@@ -76,11 +79,11 @@ public class RecurrentLayer extends AbstractRecurrentLayer {
          * @param regulateRecurrentWeights if true recurrent weight are regulated.
          */
         RecurrentWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights, boolean regulateRecurrentWeights) {
-            weight = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            weight = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             weight.setName("Weight");
-            recurrentWeight = new DMatrix(layerWidth, layerWidth, 1, initialization);
+            recurrentWeight = getNewMatrix(layerWidth, layerWidth, 1, initialization);
             recurrentWeight.setName("RecurrentWeight");
-            bias = new DMatrix(layerWidth, 1, 1);
+            bias = getNewMatrix(layerWidth, 1, 1);
             bias.setName("Bias");
 
             weights.add(weight);
@@ -23,6 +23,9 @@ import java.util.TreeMap;
  */
 public class DuelingLayer extends AbstractExecutionLayer {
 
+    @Serial
+    private static final long serialVersionUID = -8465860613584978090L;
+
     /**
      * Parameter name types for dueling layer.
      *     - regulateDirectWeights: true if (direct) weights are regulated otherwise false. Default value true.<br>
@@ -66,9 +69,9 @@ public class DuelingLayer extends AbstractExecutionLayer {
          * @param regulateDirectWeights if true direct weights are regulated.
          */
         DuelingWeightSet(Initialization initialization, int previousLayerWidth, int layerWidth, boolean regulateDirectWeights) {
-            valueWeight = new DMatrix(1, previousLayerWidth, 1, initialization);
+            valueWeight = getNewMatrix(1, previousLayerWidth, 1, initialization);
             valueWeight.setName("ValueWeight");
-            actionWeight = new DMatrix(layerWidth, previousLayerWidth, 1, initialization);
+            actionWeight = getNewMatrix(layerWidth, previousLayerWidth, 1, initialization);
             actionWeight.setName("ActionWeight");
 
             weights.add(valueWeight);
@@ -0,0 +1,676 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Implements versioned binary checkpoint format for neural network.<br>
+ * Checkpoint consists of fixed size header, topology descriptor and binary weight sidecar.<br>
+ * Topology descriptor is serialized object graph of neural network where all double and float arrays (weights, biases and optimizer state) are replaced by references into binary weight sidecar.<br>
+ * Binary weight sidecar stores arrays as raw little endian values each aligned to 64 bytes instead of serializing them as part of object graph. Arrays are written and read through file channel in chunks of bounded size hence size of binary weight sidecar is not limited by size of staging buffer.<br>
+ * Checkpoint can be captured into in-memory snapshot which is written into file later e.g. by background thread.<br>
+ * Capture can be split between training thread and background thread. Capture records arrays and collections of neural network as state objects. At next iteration boundary training thread only copies recorded state objects and background thread serializes topology descriptor replacing state objects by their copies.<br>
+ *
+ */
+public class Checkpoint {
+
+    /**
+     * Magic bytes identifying checkpoint file.
+     *
+     */
+    private static final long MAGIC = 0x4B4354454E4E4153L; // "SANNETCK" in little endian byte order.
+
+    /**
+     * Version of checkpoint format.
+     *
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of header in bytes.
+     *
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Alignment of descriptor, binary weight sidecar and arrays within binary weight sidecar in bytes.
+     *
+     */
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Default size of chunk in which binary weight sidecar is written and read in bytes.
+     *
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Maximum number of attempts to serialize topology descriptor while neural network is being trained.
+     *
+     */
+    private static final int MAXIMUM_CAPTURE_ATTEMPTS = 3;
+
+    /**
+     * Implements reference to array stored in binary weight sidecar. Replaces array in topology descriptor.
+     *
+     * @param isFloat if true array is float array otherwise double array.
+     * @param length length of array.
+     * @param offset offset of array within binary weight sidecar in bytes.
+     */
+    private record ArrayReference(boolean isFloat, int length, long offset) implements Serializable {
+    }
+
+    /**
+     * Implements object output stream that replaces double and float arrays by references into binary weight sidecar.
+     *
+     */
+    private static class CheckpointOutputStream extends ObjectOutputStream {
+
+        /**
+         * Arrays to be stored into binary weight sidecar in order of their offsets.
+         *
+         */
+        private final ArrayList<Object> arrays = new ArrayList<>();
+
+        /**
+         * State objects of neural network in order they were written.
+         *
+         */
+        private final ArrayList<Object> stateObjects = new ArrayList<>();
+
+        /**
+         * If true arrays are copied when captured otherwise arrays are referenced.
+         *
+         */
+        private final boolean copyArrays;
+
+        /**
+         * Copies of state objects replacing state objects or null if state objects are not replaced.
+         *
+         */
+        private final StateCopy stateCopy;
+
+        /**
+         * Current length of binary weight sidecar in bytes.
+         *
+         */
+        private long sidecarLength = 0;
+
+        /**
+         * Constructor for checkpoint output stream.
+         *
+         * @param outputStream underlying output stream.
+         * @param copyArrays if true arrays are copied when captured otherwise arrays are referenced.
+         * @param stateCopy copies of state objects replacing state objects or null if state objects are not replaced.
+         * @throws IOException throws exception if writing of stream header fails.
+         */
+        CheckpointOutputStream(OutputStream outputStream, boolean copyArrays, StateCopy stateCopy) throws IOException {
+            super(outputStream);
+            this.copyArrays = copyArrays;
+            this.stateCopy = stateCopy;
+            enableReplaceObject(true);
+        }
+
+        /**
+         * Records state objects, replaces them by their copies if available and replaces double and float arrays by references into binary weight sidecar. Each distinct object is replaced only once and further occurrences refer to same replacement.
+         *
+         * @param object object to be written.
+         * @return object or its replacement.
+         */
+        protected Object replaceObject(Object object) {
+            if (!isStateObject(object)) return object;
+            stateObjects.add(object);
+            Object copy = stateCopy != null ? stateCopy.getCopy(object) : null;
+            if (copy != null) object = copy;
+            else if (copyArrays && (object instanceof double[] || object instanceof float[])) object = copyState(object);
+            return object instanceof double[] || object instanceof float[] ? addArray(object) : object;
+        }
+
+        /**
+         * Adds double or float array into binary weight sidecar.
+         *
+         * @param array double or float array.
+         * @return reference to array.
+         */
+        private ArrayReference addArray(Object array) {
+            ArrayReference arrayReference = new ArrayReference(array instanceof float[], getArrayLength(array), sidecarLength);
+            arrays.add(array);
+            sidecarLength = align(sidecarLength + (long)getArrayLength(array) * getEntrySize(array));
+            return arrayReference;
+        }
+
+    }
+
+    /**
+     * Implements object input stream that resolves references into binary weight sidecar as arrays read from binary weight sidecar.
+     *
+     */
+    private static class CheckpointInputStream extends ObjectInputStream {
+
+        /**
+         * Chunked access to binary weight sidecar.
+         *
+         */
+        private final SidecarChannel sidecarChannel;
+
+        /**
+         * Constructor for checkpoint input stream.
+         *
+         * @param inputStream underlying input stream.
+         * @param sidecarChannel chunked access to binary weight sidecar.
+         * @throws IOException throws exception if reading of stream header fails.
+         */
+        CheckpointInputStream(InputStream inputStream, SidecarChannel sidecarChannel) throws IOException {
+            super(inputStream);
+            this.sidecarChannel = sidecarChannel;
+            enableResolveObject(true);
+        }
+
+        /**
+         * Resolves reference into binary weight sidecar as array.
+         *
+         * @param object object read.
+         * @return object or resolved array.
+         * @throws IOException throws exception if reference is outside binary weight sidecar.
+         */
+        protected Object resolveObject(Object object) throws IOException {
+            if (!(object instanceof ArrayReference arrayReference)) return object;
+            int bytes = arrayReference.isFloat() ? Float.BYTES : Double.BYTES;
+            long end = arrayReference.offset() + (long)arrayReference.length() * bytes;
+            if (arrayReference.offset() < 0 || arrayReference.offset() % ALIGNMENT != 0 || end > sidecarChannel.getSidecarLength()) throw new IOException("Checkpoint array reference is outside of binary weight sidecar.");
+            Object array = arrayReference.isFloat() ? new float[arrayReference.length()] : new double[arrayReference.length()];
+            sidecarChannel.readArray(array, arrayReference.offset());
+            return array;
+        }
+
+    }
+
+    /**
+     * Implements access to binary weight sidecar through file channel in chunks of bounded size. Arrays are transferred through single staging buffer.
+     *
+     */
+    private static class SidecarChannel {
+
+        /**
+         * File channel of checkpoint file.
+         *
+         */
+        private final FileChannel fileChannel;
+
+        /**
+         * Offset of binary weight sidecar in checkpoint file.
+         *
+         */
+        private final long sidecarOffset;
+
+        /**
+         * Length of binary weight sidecar in bytes.
+         *
+         */
+        private final long sidecarLength;
+
+        /**
+         * Staging buffer of chunk.
+         *
+         */
+        private final ByteBuffer chunk;
+
+        /**
+         * Constructor for sidecar channel.
+         *
+         * @param fileChannel file channel of checkpoint file.
+         * @param sidecarOffset offset of binary weight sidecar in checkpoint file.
+         * @param sidecarLength length of binary weight sidecar in bytes.
+         * @param chunkSize maximum size of chunk in bytes. Size is rounded down to multiple of alignment so that no array entry crosses chunk boundary.
+         */
+        SidecarChannel(FileChannel fileChannel, long sidecarOffset, long sidecarLength, int chunkSize) {
+            if (chunkSize < ALIGNMENT) throw new IllegalArgumentException("Chunk size must be at least " + ALIGNMENT + " bytes.");
+            this.fileChannel = fileChannel;
+            this.sidecarOffset = sidecarOffset;
+            this.sidecarLength = sidecarLength;
+            chunk = ByteBuffer.allocateDirect((int)Math.min(chunkSize / ALIGNMENT * ALIGNMENT, Math.max(align(sidecarLength), ALIGNMENT))).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Returns length of binary weight sidecar in bytes.
+         *
+         * @return length of binary weight sidecar in bytes.
+         */
+        long getSidecarLength() {
+            return sidecarLength;
+        }
+
+        /**
+         * Reads array from binary weight sidecar chunk by chunk.
+         *
+         * @param array double or float array to be filled.
+         * @param offset offset of array within binary weight sidecar in bytes.
+         * @throws IOException throws exception if reading of chunk fails.
+         */
+        void readArray(Object array, long offset) throws IOException {
+            int length = getArrayLength(array);
+            int entrySize = getEntrySize(array);
+            int index = 0;
+            while (index < length) {
+                int count = Math.min(length - index, chunk.capacity() / entrySize);
+                long position = sidecarOffset + offset + (long)index * entrySize;
+                chunk.clear().limit(count * entrySize);
+                while (chunk.hasRemaining()) if (fileChannel.read(chunk, position + chunk.position()) < 0) throw new IOException("Checkpoint binary weight sidecar is truncated.");
+                chunk.flip();
+                if (array instanceof float[] floatArray) chunk.asFloatBuffer().get(floatArray, index, count);
+                else chunk.asDoubleBuffer().get((double[])array, index, count);
+                index += count;
+            }
+        }
+
+        /**
+         * Writes array into binary weight sidecar chunk by chunk.
+         *
+         * @param array double or float array.
+         * @param offset offset of array within binary weight sidecar in bytes.
+         * @throws IOException throws exception if writing of chunk fails.
+         */
+        void writeArray(Object array, long offset) throws IOException {
+            int length = getArrayLength(array);
+            int entrySize = getEntrySize(array);
+            int index = 0;
+            while (index < length) {
+                int count = Math.min(length - index, chunk.capacity() / entrySize);
+                long position = sidecarOffset + offset + (long)index * entrySize;
+                chunk.clear().limit(count * entrySize);
+                if (array instanceof float[] floatArray) chunk.asFloatBuffer().put(floatArray, index, count);
+                else chunk.asDoubleBuffer().put((double[])array, index, count);
+                while (chunk.hasRemaining()) fileChannel.write(chunk, position + chunk.position());
+                index += count;
+            }
+        }
+
+    }
+
+    /**
+     * Default constructor for checkpoint.
+     *
+     */
+    private Checkpoint() {
+    }
+
+    /**
+     * Checks if object is state object. State objects are primitive arrays and collections whose content may be modified by training.
+     *
+     * @param object object.
+     * @return true if object is state object otherwise false.
+     */
+    private static boolean isStateObject(Object object) {
+        return object instanceof double[] || object instanceof float[] || object instanceof int[] || object instanceof HashMap<?, ?> || object instanceof TreeMap<?, ?> || object instanceof HashSet<?> || object instanceof TreeSet<?> || object instanceof ArrayList<?>;
+    }
+
+    /**
+     * Returns shallow copy of state object.
+     *
+     * @param object state object.
+     * @return copy of state object.
+     */
+    private static Object copyState(Object object) {
+        if (object instanceof double[] doubleArray) return doubleArray.clone();
+        if (object instanceof float[] floatArray) return floatArray.clone();
+        if (object instanceof int[] intArray) return intArray.clone();
+        if (object instanceof HashMap<?, ?> hashMap) return hashMap.clone();
+        if (object instanceof TreeMap<?, ?> treeMap) return treeMap.clone();
+        if (object instanceof HashSet<?> hashSet) return hashSet.clone();
+        if (object instanceof TreeSet<?> treeSet) return treeSet.clone();
+        return ((ArrayList<?>)object).clone();
+    }
+
+    /**
+     * Returns length of double or float array.
+     *
+     * @param array double or float array.
+     * @return length of array.
+     */
+    private static int getArrayLength(Object array) {
+        return array instanceof float[] floatArray ? floatArray.length : ((double[])array).length;
+    }
+
+    /**
+     * Returns size of entry of double or float array in bytes.
+     *
+     * @param array double or float array.
+     * @return size of entry in bytes.
+     */
+    private static int getEntrySize(Object array) {
+        return array instanceof float[] ? Float.BYTES : Double.BYTES;
+    }
+
+    /**
+     * Rounds value up to multiple of alignment.
+     *
+     * @param value value.
+     * @return aligned value.
+     */
+    private static long align(long value) {
+        return ((value + ALIGNMENT - 1) / ALIGNMENT) * ALIGNMENT;
+    }
+
+    /**
+     * Implements snapshot of neural network captured in memory for writing into checkpoint file.
+     *
+     */
+    public static class Snapshot {
+
+        /**
+         * Serialized topology descriptor.
+         *
+         */
+        private final byte[] descriptor;
+
+        /**
+         * Arrays of binary weight sidecar in order of their offsets.
+         *
+         */
+        private final ArrayList<Object> arrays;
+
+        /**
+         * Length of binary weight sidecar in bytes.
+         *
+         */
+        private final long sidecarLength;
+
+        /**
+         * State objects of neural network recorded during capture.
+         *
+         */
+        private final StateObjects stateObjects;
+
+        /**
+         * Constructor for snapshot.
+         *
+         * @param descriptor serialized topology descriptor.
+         * @param arrays arrays of binary weight sidecar in order of their offsets.
+         * @param sidecarLength length of binary weight sidecar in bytes.
+         * @param stateObjects state objects of neural network recorded during capture.
+         */
+        private Snapshot(byte[] descriptor, ArrayList<Object> arrays, long sidecarLength, StateObjects stateObjects) {
+            this.descriptor = descriptor;
+            this.arrays = arrays;
+            this.sidecarLength = sidecarLength;
+            this.stateObjects = stateObjects;
+        }
+
+        /**
+         * Returns state objects of neural network recorded during capture.
+         *
+         * @return state objects of neural network.
+         */
+        public StateObjects getStateObjects() {
+            return stateObjects;
+        }
+
+        /**
+         * Returns length of checkpoint file in bytes.
+         *
+         * @return length of checkpoint file in bytes.
+         */
+        public long getLength() {
+            return getSidecarOffset() + sidecarLength;
+        }
+
+        /**
+         * Returns offset of binary weight sidecar in checkpoint file.
+         *
+         * @return offset of binary weight sidecar in checkpoint file.
+         */
+        private long getSidecarOffset() {
+            return align(HEADER_SIZE + descriptor.length);
+        }
+
+        /**
+         * Writes snapshot into checkpoint file.
+         *
+         * @param path path of checkpoint file.
+         * @throws IOException throws exception if writing of checkpoint fails.
+         */
+        public void write(Path path) throws IOException {
+            write(path, DEFAULT_CHUNK_SIZE);
+        }
+
+        /**
+         * Writes snapshot into checkpoint file writing binary weight sidecar in chunks of given size.
+         *
+         * @param path path of checkpoint file.
+         * @param chunkSize maximum size of chunk in bytes.
+         * @throws IOException throws exception if writing of checkpoint fails.
+         */
+        void write(Path path, int chunkSize) throws IOException {
+            long descriptorOffset = HEADER_SIZE;
+            long sidecarOffset = getSidecarOffset();
+            long fileLength = getLength();
+
+            try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC).putInt(VERSION).putInt(arrays.size());
+                header.putLong(descriptorOffset).putLong(descriptor.length).putLong(sidecarOffset).putLong(sidecarLength);
+                header.rewind();
+                while (header.hasRemaining()) fileChannel.write(header, header.position());
+                ByteBuffer descriptorBuffer = ByteBuffer.wrap(descriptor);
+                while (descriptorBuffer.hasRemaining()) fileChannel.write(descriptorBuffer, descriptorOffset + descriptorBuffer.position());
+
+                if (sidecarLength > 0) {
+                    SidecarChannel sidecarChannel = new SidecarChannel(fileChannel, sidecarOffset, sidecarLength, chunkSize);
+                    long offset = 0;
+                    for (Object array : arrays) {
+                        sidecarChannel.writeArray(array, offset);
+                        offset = align(offset + (long)getArrayLength(array) * getEntrySize(array));
+                    }
+                }
+                if (fileChannel.size() < fileLength) fileChannel.write(ByteBuffer.allocate(1), fileLength - 1);
+            }
+        }
+
+    }
+
+    /**
+     * Implements state objects of neural network recorded during capture of snapshot.
+     *
+     */
+    public static class StateObjects {
+
+        /**
+         * State objects in order they were written.
+         *
+         */
+        private final ArrayList<Object> stateObjects;
+
+        /**
+         * Constructor for state objects.
+         *
+         * @param stateObjects state objects in order they were written.
+         */
+        private StateObjects(ArrayList<Object> stateObjects) {
+            this.stateObjects = stateObjects;
+        }
+
+        /**
+         * Copies state objects. Arrays are copied by value and collections are copied shallowly hence their elements are resolved when topology descriptor is serialized.<br>
+         * Copy is taken by training thread at iteration boundary and it is consistent state of neural network at that time.<br>
+         *
+         * @return copies of state objects.
+         */
+        public StateCopy copy() {
+            IdentityHashMap<Object, Object> copies = new IdentityHashMap<>(stateObjects.size());
+            for (Object stateObject : stateObjects) copies.put(stateObject, copyState(stateObject));
+            return new StateCopy(copies);
+        }
+
+    }
+
+    /**
+     * Implements copies of state objects of neural network.
+     *
+     */
+    public static class StateCopy {
+
+        /**
+         * Copies of state objects by state object.
+         *
+         */
+        private final IdentityHashMap<Object, Object> copies;
+
+        /**
+         * Constructor for state copy.
+         *
+         * @param copies copies of state objects by state object.
+         */
+        private StateCopy(IdentityHashMap<Object, Object> copies) {
+            this.copies = copies;
+        }
+
+        /**
+         * Returns copy of state object.
+         *
+         * @param stateObject state object.
+         * @return copy of state object or null if object was not copied.
+         */
+        private Object getCopy(Object stateObject) {
+            return copies.get(stateObject);
+        }
+
+    }
+
+    /**
+     * Captures snapshot of neural network.<br>
+     * If arrays are copied snapshot is consistent copy of neural network state at time of capture and neural network can be modified while snapshot is written.<br>
+     *
+     * @param neuralNetwork neural network.
+     * @param copyArrays if true arrays are copied otherwise snapshot refers to arrays of neural network.
+     * @return snapshot of neural network.
+     * @throws IOException throws exception if serialization of neural network fails.
+     */
+    public static Snapshot capture(NeuralNetwork neuralNetwork, boolean copyArrays) throws IOException {
+        return capture(neuralNetwork, copyArrays, null);
+    }
+
+    /**
+     * Captures snapshot of neural network while neural network is being trained.<br>
+     * State objects recorded by previous snapshot are replaced by their copies taken at iteration boundary hence weights and optimizer state of snapshot are consistent at that time. Objects not recorded by previous snapshot are copied when they are serialized.<br>
+     * If collection not recorded by previous snapshot is modified concurrently serialization is retried.<br>
+     *
+     * @param neuralNetwork neural network.
+     * @param stateCopy copies of state objects recorded by previous snapshot.
+     * @return snapshot of neural network.
+     * @throws IOException throws exception if serialization of neural network fails.
+     */
+    public static Snapshot capture(NeuralNetwork neuralNetwork, StateCopy stateCopy) throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return capture(neuralNetwork, true, stateCopy);
+            }
+            catch (ConcurrentModificationException concurrentModificationException) {
+                if (attempt == MAXIMUM_CAPTURE_ATTEMPTS) throw new IOException("Neural network was modified concurrently while capturing snapshot.", concurrentModificationException);
+            }
+        }
+    }
+
+    /**
+     * Captures snapshot of neural network.
+     *
+     * @param neuralNetwork neural network.
+     * @param copyArrays if true arrays are copied otherwise snapshot refers to arrays of neural network.
+     * @param stateCopy copies of state objects replacing state objects or null if state objects are not replaced.
+     * @return snapshot of neural network.
+     * @throws IOException throws exception if serialization of neural network fails.
+     */
+    private static Snapshot capture(NeuralNetwork neuralNetwork, boolean copyArrays, StateCopy stateCopy) throws IOException {
+        ByteArrayOutputStream descriptor = new ByteArrayOutputStream();
+        CheckpointOutputStream checkpointOutputStream = new CheckpointOutputStream(descriptor, copyArrays, stateCopy);
+        checkpointOutputStream.writeObject(neuralNetwork);
+        checkpointOutputStream.close();
+        return new Snapshot(descriptor.toByteArray(), checkpointOutputStream.arrays, checkpointOutputStream.sidecarLength, new StateObjects(checkpointOutputStream.stateObjects));
+    }
+
+    /**
+     * Writes neural network into checkpoint file.
+     *
+     * @param path path of checkpoint file.
+     * @param neuralNetwork neural network.
+     * @throws IOException throws exception if writing of checkpoint fails.
+     */
+    public static void write(Path path, NeuralNetwork neuralNetwork) throws IOException {
+        capture(neuralNetwork, false).write(path);
+    }
+
+    /**
+     * Reads neural network from checkpoint file.
+     *
+     * @param path path of checkpoint file.
+     * @return neural network.
+     * @throws IOException throws exception if reading of checkpoint fails or file is not valid checkpoint.
+     * @throws ClassNotFoundException throws exception if instantiation of neural network from topology descriptor fails.
+     */
+    public static NeuralNetwork read(Path path) throws IOException, ClassNotFoundException {
+        return read(path, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Reads neural network from checkpoint file reading binary weight sidecar in chunks of given size.
+     *
+     * @param path path of checkpoint file.
+     * @param chunkSize maximum size of chunk in bytes.
+     * @return neural network.
+     * @throws IOException throws exception if reading of checkpoint fails or file is not valid checkpoint.
+     * @throws ClassNotFoundException throws exception if instantiation of neural network from topology descriptor fails.
+     */
+    static NeuralNetwork read(Path path, int chunkSize) throws IOException, ClassNotFoundException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) if (fileChannel.read(header, header.position()) < 0) throw new IOException("Checkpoint header is truncated.");
+            header.flip();
+            if (header.getLong() != MAGIC) throw new IOException("File is not neural network checkpoint: " + path);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version: " + version);
+            header.getInt();
+            long descriptorOffset = header.getLong();
+            long descriptorLength = header.getLong();
+            long sidecarOffset = header.getLong();
+            long sidecarLength = header.getLong();
+            if (descriptorOffset + descriptorLength > fileChannel.size() || sidecarOffset + sidecarLength > fileChannel.size()) throw new IOException("Checkpoint is truncated.");
+            if (descriptorLength > Integer.MAX_VALUE) throw new IOException("Checkpoint topology descriptor exceeds maximum size.");
+
+            byte[] descriptorBytes = new byte[(int)descriptorLength];
+            ByteBuffer descriptor = ByteBuffer.wrap(descriptorBytes);
+            while (descriptor.hasRemaining()) if (fileChannel.read(descriptor, descriptorOffset + descriptor.position()) < 0) throw new IOException("Checkpoint topology descriptor is truncated.");
+            SidecarChannel sidecarChannel = new SidecarChannel(fileChannel, sidecarOffset, sidecarLength, chunkSize);
+            try (CheckpointInputStream checkpointInputStream = new CheckpointInputStream(new ByteArrayInputStream(descriptorBytes), sidecarChannel)) {
+                return (NeuralNetwork)checkpointInputStream.readObject();
+            }
+        }
+    }
+
+    /**
+     * Checks if file is checkpoint file.
+     *
+     * @param path path of file.
+     * @return true if file exists and starts with checkpoint magic bytes otherwise false.
+     */
+    public static boolean isCheckpoint(Path path) {
+        if (!path.toFile().isFile()) return false;
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) if (fileChannel.read(header, header.position()) < 0) return false;
+            return header.flip().getLong() == MAGIC;
+        }
+        catch (IOException ioException) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,511 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.layer.InputLayer;
+import core.layer.NeuralNetworkLayer;
+import core.layer.OutputLayer;
+import utils.configurable.DynamicParamException;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.sampling.Sequence;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Implements synchronous data parallel training over in-process replicas of neural network.<br>
+ * Sampled batch is split into contiguous shards that are trained (forward and backward) concurrently by replicas each executed by own layer scheduler.<br>
+ * Weight gradients of replicas are weighted by shard size and reduced pairwise as binary tree into gradients of primary neural network.
+ * Single optimizer step is applied to primary neural network. Replicas copy weights of primary neural network at start of each training step hence they follow also changes made to primary neural network between steps (e.g. reinitialization or appending).<br>
+ * Samples of batch are assumed independent hence data parallel training is not applicable to recurrent layers processing batch as time sequence.<br>
+ * Only weights are synchronized between replicas. Layers having other state updated during training (e.g. moving averages of batch normalization) are not supported either.<br>
+ * Layers not working with data parallel training are rejected when neural network is started.<br>
+ * <br>
+ * When training is distributed over worker processes reduced gradients and total errors of primary neural network are further summed over workers by ring all-reduce before optimizer step.
+ * Gradients are then weighted by shard size relative to total number of samples over workers and each worker applies equal optimizer step to its primary neural network.<br>
+ *
+ */
+class DataParallelTrainer {
+
+    /**
+     * Implements task executed for single replica.
+     *
+     */
+    private interface ReplicaTask {
+
+        /**
+         * Executes task for replica.
+         *
+         * @param replicaIndex index of replica.
+         * @throws MatrixException throws exception if matrix operation fails.
+         * @throws DynamicParamException throws exception if parameter (params) setting fails.
+         * @throws NeuralNetworkException throws exception if neural network operation fails.
+         */
+        void execute(int replicaIndex) throws MatrixException, DynamicParamException, NeuralNetworkException;
+
+    }
+
+    /**
+     * Replicas of neural network. Replica at index 0 is primary neural network.
+     *
+     */
+    private final NeuralNetwork[] replicas;
+
+    /**
+     * Layer schedulers of replicas.
+     *
+     */
+    private final LayerScheduler[] layerSchedulers;
+
+    /**
+     * Layers of replicas ordered by layer index.
+     *
+     */
+    private final NeuralNetworkLayer[][] layers;
+
+    /**
+     * Weights of replicas by layer and weight index.
+     *
+     */
+    private final Matrix[][][] weights;
+
+    /**
+     * Weighted weight gradients of replicas by layer and weight index.
+     *
+     */
+    private final Matrix[][][] gradients;
+
+    /**
+     * Weighted total errors of replicas by output layer index.
+     *
+     */
+    private final ArrayList<TreeMap<Integer, Double>> replicaErrors = new ArrayList<>();
+
+    /**
+     * Total errors of latest training step by output layer index.
+     *
+     */
+    private final TreeMap<Integer, Double> totalErrors = new TreeMap<>();
+
+    /**
+     * Executor service executing tasks of replicas other than primary.
+     *
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * Gradient exchange transport between workers or null if training is not distributed.
+     *
+     */
+    private final RingAllReduce ringAllReduce;
+
+    /**
+     * Indices of output layers in ascending order.
+     *
+     */
+    private final Integer[] outputLayerIndices;
+
+    /**
+     * Flattened values exchanged between workers. Contains for each weight presence flag of gradient followed by gradient values, total errors by output layer and number of samples.
+     *
+     */
+    private double[] exchangeValues;
+
+    /**
+     * Constructor for data parallel trainer.
+     *
+     * @param neuralNetwork primary neural network with started layers.
+     * @param layerScheduler layer scheduler of primary neural network.
+     * @param numberOfReplicas number of replicas including primary neural network.
+     * @param schedulerThreads number of worker threads of layer scheduler of each replica.
+     * @param computeThreads number of parallel compute tasks used by each layer for large matrix operations.
+     * @param ringAllReduce gradient exchange transport between workers or null if training is not distributed.
+     * @throws IOException throws exception if copying of neural network or connecting of workers fails.
+     * @throws ClassNotFoundException throws exception if copying of neural network fails.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if starting of replica layers or connecting of workers fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    DataParallelTrainer(NeuralNetwork neuralNetwork, LayerScheduler layerScheduler, int numberOfReplicas, int schedulerThreads, int computeThreads, RingAllReduce ringAllReduce) throws IOException, ClassNotFoundException, MatrixException, NeuralNetworkException, DynamicParamException {
+        this.ringAllReduce = ringAllReduce;
+        if (ringAllReduce != null) ringAllReduce.connect();
+        replicas = new NeuralNetwork[numberOfReplicas];
+        layerSchedulers = new LayerScheduler[numberOfReplicas];
+        layers = new NeuralNetworkLayer[numberOfReplicas][];
+        weights = new Matrix[numberOfReplicas][][];
+        gradients = new Matrix[numberOfReplicas][][];
+        for (int replicaIndex = 0; replicaIndex < numberOfReplicas; replicaIndex++) {
+            if (replicaIndex == 0) {
+                replicas[replicaIndex] = neuralNetwork;
+                layerSchedulers[replicaIndex] = layerScheduler;
+            }
+            else {
+                replicas[replicaIndex] = neuralNetwork.copy();
+                for (NeuralNetworkLayer neuralNetworkLayer : replicas[replicaIndex].getNeuralNetworkLayers().values()) neuralNetworkLayer.start(null);
+                layerSchedulers[replicaIndex] = new LayerScheduler(replicas[replicaIndex].getNeuralNetworkLayers().values(), schedulerThreads, computeThreads);
+            }
+            layers[replicaIndex] = replicas[replicaIndex].getNeuralNetworkLayers().values().toArray(new NeuralNetworkLayer[0]);
+            weights[replicaIndex] = new Matrix[layers[replicaIndex].length][];
+            gradients[replicaIndex] = new Matrix[layers[replicaIndex].length][];
+            for (int layerIndex = 0; layerIndex < layers[replicaIndex].length; layerIndex++) {
+                HashMap<Integer, Matrix> weightsMap = layers[replicaIndex][layerIndex].getWeightsMap();
+                int numberOfWeights = weightsMap != null ? weightsMap.size() : 0;
+                weights[replicaIndex][layerIndex] = new Matrix[numberOfWeights];
+                gradients[replicaIndex][layerIndex] = new Matrix[numberOfWeights];
+                if (weightsMap != null) for (Map.Entry<Integer, Matrix> entry : weightsMap.entrySet()) weights[replicaIndex][layerIndex][entry.getKey()] = entry.getValue();
+            }
+            replicaErrors.add(new TreeMap<>());
+        }
+        executorService = Executors.newFixedThreadPool(Math.max(1, numberOfReplicas - 1));
+        outputLayerIndices = neuralNetwork.getOutputLayers().keySet().toArray(new Integer[0]);
+
+        if (ringAllReduce != null) {
+            int numberOfExchangeValues = outputLayerIndices.length + 1;
+            for (Matrix[] layerWeights : weights[0]) for (Matrix weight : layerWeights) numberOfExchangeValues += 1 + getNumberOfValues(weight);
+            exchangeValues = new double[numberOfExchangeValues];
+            try {
+                broadcastWeights();
+            }
+            catch (IOException | MatrixException | NeuralNetworkException exception) {
+                shutdown();
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Broadcasts weights of coordinator worker to primary neural network of all workers. Replicas copy broadcast weights at start of training step.<br>
+     * Weights are broadcast by all-reduce where all workers other than coordinator contribute zero values.<br>
+     *
+     * @throws IOException throws exception if socket operation fails.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if exchange fails.
+     */
+    private void broadcastWeights() throws IOException, MatrixException, NeuralNetworkException {
+        double[] values = new double[exchangeValues.length];
+        int position = 0;
+        for (Matrix[] layerWeights : weights[0]) {
+            for (Matrix weight : layerWeights) {
+                if (ringAllReduce.getRank() == 0) flatten(weight, values, position);
+                position += getNumberOfValues(weight);
+            }
+        }
+        ringAllReduce.allReduce(values);
+        position = 0;
+        for (Matrix[] layerWeights : weights[0]) {
+            for (Matrix weight : layerWeights) {
+                unflatten(values, position, weight, 1);
+                position += getNumberOfValues(weight);
+            }
+        }
+    }
+
+    /**
+     * Trains single step with batch split over replicas. Gradients are summed over workers if training is distributed.<br>
+     * Active replicas copy current weights of primary neural network before training their shards.<br>
+     *
+     * @param inputSequences input sequences of batch.
+     * @param outputSequences output sequences of batch.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws NeuralNetworkException throws exception if training fails.
+     */
+    void train(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) throws MatrixException, DynamicParamException, NeuralNetworkException {
+        if (inputSequences.isEmpty()) throw new NeuralNetworkException("No inputs defined");
+        int[] sampleIndices = inputSequences.firstEntry().getValue().sampleIndices();
+        int numberOfSamples = sampleIndices.length;
+        int activeReplicas = Math.max(1, Math.min(replicas.length, numberOfSamples));
+
+        if (activeReplicas > 1) {
+            execute(activeReplicas - 1, replicaIndex -> {
+                for (int layerIndex = 0; layerIndex < layers[0].length; layerIndex++) {
+                    for (int weightIndex = 0; weightIndex < weights[0][layerIndex].length; weightIndex++) {
+                        weights[replicaIndex + 1][layerIndex][weightIndex].setEqualTo(weights[0][layerIndex][weightIndex]);
+                    }
+                }
+            });
+        }
+
+        execute(activeReplicas, replicaIndex -> {
+            int shardStart = (int)((long)replicaIndex * numberOfSamples / activeReplicas);
+            int shardEnd = (int)((long)(replicaIndex + 1) * numberOfSamples / activeReplicas);
+            double shardWeight = ringAllReduce != null ? shardEnd - shardStart : numberOfSamples > 0 ? (double)(shardEnd - shardStart) / (double)numberOfSamples : 1;
+            trainReplica(replicaIndex, getShard(inputSequences, sampleIndices, shardStart, shardEnd), getShard(outputSequences, sampleIndices, shardStart, shardEnd), shardWeight);
+        });
+
+        for (int stride = 1; stride < activeReplicas; stride *= 2) {
+            int currentStride = stride;
+            execute((activeReplicas - 1) / (2 * stride) + 1, pairIndex -> {
+                int targetIndex = pairIndex * 2 * currentStride;
+                if (targetIndex + currentStride < activeReplicas) addGradients(targetIndex, targetIndex + currentStride);
+            });
+        }
+
+        totalErrors.clear();
+        for (int replicaIndex = 0; replicaIndex < activeReplicas; replicaIndex++) {
+            for (Map.Entry<Integer, Double> entry : replicaErrors.get(replicaIndex).entrySet()) totalErrors.merge(entry.getKey(), entry.getValue(), Double::sum);
+        }
+
+        if (ringAllReduce != null) reduceOverWorkers(numberOfSamples);
+
+        for (int layerIndex = 0; layerIndex < layers[0].length; layerIndex++) {
+            HashMap<Matrix, Matrix> layerWeightGradients = new HashMap<>();
+            for (int weightIndex = 0; weightIndex < weights[0][layerIndex].length; weightIndex++) {
+                Matrix gradient = gradients[0][layerIndex][weightIndex];
+                if (gradient != null) layerWeightGradients.put(weights[0][layerIndex][weightIndex], gradient);
+            }
+            layers[0][layerIndex].updateStep(layerWeightGradients);
+        }
+    }
+
+    /**
+     * Sums weight gradients and total errors of primary neural network over workers and weights them by total number of samples over workers.<br>
+     * Weight gradient missing from all workers is left undefined.<br>
+     *
+     * @param numberOfSamples number of samples trained by this worker.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if exchange fails.
+     */
+    private void reduceOverWorkers(int numberOfSamples) throws MatrixException, NeuralNetworkException {
+        int position = 0;
+        for (int layerIndex = 0; layerIndex < layers[0].length; layerIndex++) {
+            for (int weightIndex = 0; weightIndex < weights[0][layerIndex].length; weightIndex++) {
+                Matrix gradient = gradients[0][layerIndex][weightIndex];
+                int numberOfValues = getNumberOfValues(weights[0][layerIndex][weightIndex]);
+                exchangeValues[position++] = gradient != null ? 1 : 0;
+                if (gradient != null) flatten(gradient, exchangeValues, position);
+                else Arrays.fill(exchangeValues, position, position + numberOfValues, 0);
+                position += numberOfValues;
+            }
+        }
+        for (Integer outputLayerIndex : outputLayerIndices) exchangeValues[position++] = totalErrors.getOrDefault(outputLayerIndex, 0.0);
+        exchangeValues[position] = numberOfSamples;
+
+        try {
+            ringAllReduce.allReduce(exchangeValues);
+        }
+        catch (IOException exception) {
+            throw new NeuralNetworkException("Gradient exchange failed: " + exception.getMessage());
+        }
+
+        double totalNumberOfSamples = exchangeValues[position];
+        if (totalNumberOfSamples <= 0) throw new NeuralNetworkException("No samples trained by workers.");
+        position = 0;
+        for (int layerIndex = 0; layerIndex < layers[0].length; layerIndex++) {
+            for (int weightIndex = 0; weightIndex < weights[0][layerIndex].length; weightIndex++) {
+                Matrix weight = weights[0][layerIndex][weightIndex];
+                boolean hasGradient = exchangeValues[position++] > 0;
+                if (hasGradient) {
+                    if (gradients[0][layerIndex][weightIndex] == null) gradients[0][layerIndex][weightIndex] = weight.getNewMatrix();
+                    unflatten(exchangeValues, position, gradients[0][layerIndex][weightIndex], totalNumberOfSamples);
+                }
+                position += getNumberOfValues(weight);
+            }
+        }
+        for (Integer outputLayerIndex : outputLayerIndices) totalErrors.put(outputLayerIndex, exchangeValues[position++] / totalNumberOfSamples);
+    }
+
+    /**
+     * Returns number of values in matrix including all depths.
+     *
+     * @param matrix matrix.
+     * @return number of values in matrix.
+     */
+    private static int getNumberOfValues(Matrix matrix) {
+        return matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+    }
+
+    /**
+     * Writes values of matrix into array starting from given position.
+     *
+     * @param matrix matrix.
+     * @param values array of values.
+     * @param position start position in array.
+     */
+    private static void flatten(Matrix matrix, double[] values, int position) {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int totalDepth = matrix.getDepth();
+        for (int depth = 0; depth < totalDepth; depth++) {
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) values[position++] = matrix.getValue(row, column, depth);
+            }
+        }
+    }
+
+    /**
+     * Reads values of matrix from array starting from given position.
+     *
+     * @param values array of values.
+     * @param position start position in array.
+     * @param matrix matrix.
+     * @param divisor divisor of values.
+     */
+    private static void unflatten(double[] values, int position, Matrix matrix, double divisor) {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int totalDepth = matrix.getDepth();
+        for (int depth = 0; depth < totalDepth; depth++) {
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) matrix.setValue(row, column, depth, values[position++] / divisor);
+            }
+        }
+    }
+
+    /**
+     * Returns shard of sequences containing given range of samples renumbered from zero.
+     *
+     * @param sequences sequences.
+     * @param sampleIndices sample indices of batch.
+     * @param shardStart start of shard (inclusive).
+     * @param shardEnd end of shard (exclusive).
+     * @return shard of sequences.
+     */
+    private static TreeMap<Integer, Sequence> getShard(TreeMap<Integer, Sequence> sequences, int[] sampleIndices, int shardStart, int shardEnd) {
+        TreeMap<Integer, Sequence> shard = new TreeMap<>();
+        for (Map.Entry<Integer, Sequence> entry : sequences.entrySet()) {
+            Sequence sequence = new Sequence();
+            for (int index = shardStart; index < shardEnd; index++) sequence.put(index - shardStart, entry.getValue().get(sampleIndices[index]));
+            shard.put(entry.getKey(), sequence);
+        }
+        return shard;
+    }
+
+    /**
+     * Trains replica with shard and records its weight gradients and total errors weighted by relative size of shard.
+     *
+     * @param replicaIndex index of replica.
+     * @param inputSequences input sequences of shard.
+     * @param outputSequences output sequences of shard.
+     * @param shardWeight size of shard relative to size of batch.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws NeuralNetworkException throws exception if training fails.
+     */
+    private void trainReplica(int replicaIndex, TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences, double shardWeight) throws MatrixException, DynamicParamException, NeuralNetworkException {
+        NeuralNetwork replica = replicas[replicaIndex];
+        for (Map.Entry<Integer, OutputLayer> entry : replica.getOutputLayers().entrySet()) entry.getValue().setTargets(outputSequences.get(entry.getKey()));
+        for (Map.Entry<Integer, InputLayer> entry : replica.getInputLayers().entrySet()) entry.getValue().setInputs(inputSequences.get(entry.getKey()));
+        layerSchedulers[replicaIndex].train();
+        for (OutputLayer outputLayer : replica.getOutputLayers().values()) outputLayer.checkTargets();
+        layerSchedulers[replicaIndex].backward();
+
+        for (int layerIndex = 0; layerIndex < layers[replicaIndex].length; layerIndex++) {
+            HashMap<Matrix, Matrix> layerWeightGradients = layers[replicaIndex][layerIndex].getLayerWeightGradients();
+            for (int weightIndex = 0; weightIndex < weights[replicaIndex][layerIndex].length; weightIndex++) {
+                Matrix gradient = layerWeightGradients.get(weights[replicaIndex][layerIndex][weightIndex]);
+                if (gradient != null) gradient.multiplyBy(shardWeight);
+                gradients[replicaIndex][layerIndex][weightIndex] = gradient;
+            }
+        }
+
+        TreeMap<Integer, Double> errors = replicaErrors.get(replicaIndex);
+        errors.clear();
+        for (Map.Entry<Integer, OutputLayer> entry : replica.getOutputLayers().entrySet()) errors.put(entry.getKey(), entry.getValue().getTotalError() * shardWeight);
+    }
+
+    /**
+     * Adds weight gradients of source replica to weight gradients of target replica.
+     *
+     * @param targetIndex index of target replica.
+     * @param sourceIndex index of source replica.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private void addGradients(int targetIndex, int sourceIndex) throws MatrixException {
+        for (int layerIndex = 0; layerIndex < gradients[targetIndex].length; layerIndex++) {
+            for (int weightIndex = 0; weightIndex < gradients[targetIndex][layerIndex].length; weightIndex++) {
+                Matrix sourceGradient = gradients[sourceIndex][layerIndex][weightIndex];
+                if (sourceGradient == null) continue;
+                Matrix targetGradient = gradients[targetIndex][layerIndex][weightIndex];
+                if (targetGradient == null) gradients[targetIndex][layerIndex][weightIndex] = sourceGradient;
+                else targetGradient.addBy(sourceGradient);
+            }
+        }
+    }
+
+    /**
+     * Executes tasks concurrently. First task is executed by calling thread and rest by executor service.
+     *
+     * @param numberOfTasks number of tasks.
+     * @param replicaTask task executed with task index.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws NeuralNetworkException throws exception if neural network operation fails or execution is interrupted.
+     */
+    private void execute(int numberOfTasks, ReplicaTask replicaTask) throws MatrixException, DynamicParamException, NeuralNetworkException {
+        ArrayList<Future<Void>> futures = new ArrayList<>();
+        for (int taskIndex = 1; taskIndex < numberOfTasks; taskIndex++) {
+            int currentTaskIndex = taskIndex;
+            futures.add(executorService.submit(() -> {
+                replicaTask.execute(currentTaskIndex);
+                return null;
+            }));
+        }
+        Throwable firstException = null;
+        try {
+            replicaTask.execute(0);
+        }
+        catch (MatrixException | DynamicParamException | NeuralNetworkException | RuntimeException exception) {
+            firstException = exception;
+        }
+        boolean interrupted = false;
+        for (Future<Void> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                }
+                catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+                catch (ExecutionException exception) {
+                    if (firstException == null) firstException = exception.getCause();
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (firstException == null) throw new NeuralNetworkException("Data parallel training was interrupted.");
+        }
+        if (firstException instanceof MatrixException matrixException) throw matrixException;
+        if (firstException instanceof DynamicParamException dynamicParamException) throw dynamicParamException;
+        if (firstException instanceof NeuralNetworkException neuralNetworkException) throw neuralNetworkException;
+        if (firstException instanceof RuntimeException runtimeException) throw runtimeException;
+        if (firstException != null) throw new RuntimeException(firstException);
+    }
+
+    /**
+     * Returns total error of latest training step for output layer weighted over replicas.
+     *
+     * @param outputLayerIndex index of output layer.
+     * @return total error of latest training step.
+     */
+    double getTotalError(int outputLayerIndex) {
+        Double totalError = totalErrors.get(outputLayerIndex);
+        return totalError != null ? totalError : 0;
+    }
+
+    /**
+     * Shuts down replicas.
+     *
+     */
+    void shutdown() {
+        executorService.shutdownNow();
+        for (int replicaIndex = 1; replicaIndex < layerSchedulers.length; replicaIndex++) layerSchedulers[replicaIndex].shutdown();
+        if (ringAllReduce != null) ringAllReduce.close();
+    }
+
+}
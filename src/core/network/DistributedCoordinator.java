@@ -0,0 +1,179 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import utils.configurable.Configurable;
+import utils.configurable.DynamicParam;
+import utils.configurable.DynamicParamException;
+import utils.sampling.Sampler;
+import utils.sampling.ShardSampler;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements coordination of synchronous data parallel training over multiple worker processes or hosts.<br>
+ * Each worker runs its own neural network with equal configuration and is identified by rank i.e. its index in list of worker addresses shared by all workers.<br>
+ * Worker of rank 0 is coordinator. Its initial weights are broadcast to all workers when training starts and it alone stores snapshots through persistence of its neural network.<br>
+ * Each worker trains its shard of batch after which weight gradients are summed over workers by ring all-reduce and equal optimizer step is applied by each worker.<br>
+ * Workers wait for slow workers at most timeout after which training fails. Training can be resumed by restoring all workers from latest snapshot of coordinator.<br>
+ * All workers must execute equal number of training iterations.<br>
+ *
+ */
+public final class DistributedCoordinator implements Configurable {
+
+    /**
+     * Parameter name types for distributed coordinator.
+     *     - timeout: maximum time in milliseconds waited for progress of gradient exchange with slow workers. Default value 60000.<br>
+     *     - connectTimeout: maximum time in milliseconds waited for all workers to connect. Default value 60000.<br>
+     *
+     */
+    private final static String paramNameTypes = "(timeout:INT), " +
+            "(connectTimeout:INT)";
+
+    /**
+     * Rank of this worker.
+     *
+     */
+    private final int rank;
+
+    /**
+     * Addresses of workers by rank.
+     *
+     */
+    private final ArrayList<InetSocketAddress> workerAddresses;
+
+    /**
+     * Maximum time in milliseconds waited for progress of gradient exchange with slow workers.
+     *
+     */
+    private int timeout;
+
+    /**
+     * Maximum time in milliseconds waited for all workers to connect.
+     *
+     */
+    private int connectTimeout;
+
+    /**
+     * Constructor for distributed coordinator.
+     *
+     * @param rank rank of this worker.
+     * @param workerAddresses addresses of workers by rank.
+     * @throws NeuralNetworkException throws exception if worker addresses are not defined or rank is out of range.
+     */
+    public DistributedCoordinator(int rank, List<InetSocketAddress> workerAddresses) throws NeuralNetworkException {
+        initializeDefaultParams();
+        if (workerAddresses == null || workerAddresses.isEmpty()) throw new NeuralNetworkException("Worker addresses are not defined.");
+        if (rank < 0 || rank >= workerAddresses.size()) throw new NeuralNetworkException("Rank of worker must be between 0 and " + (workerAddresses.size() - 1) + ".");
+        this.rank = rank;
+        this.workerAddresses = new ArrayList<>(workerAddresses);
+    }
+
+    /**
+     * Constructor for distributed coordinator.
+     *
+     * @param rank rank of this worker.
+     * @param workerAddresses addresses of workers by rank.
+     * @param params parameters for distributed coordinator.
+     * @throws NeuralNetworkException throws exception if worker addresses are not defined or rank is out of range.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public DistributedCoordinator(int rank, List<InetSocketAddress> workerAddresses, String params) throws NeuralNetworkException, DynamicParamException {
+        this(rank, workerAddresses);
+        if (params != null) setParams(new DynamicParam(params, getParamDefs()));
+    }
+
+    /**
+     * Initializes default params.
+     *
+     */
+    public void initializeDefaultParams() {
+        timeout = 60000;
+        connectTimeout = 60000;
+    }
+
+    /**
+     * Returns parameters used for distributed coordinator.
+     *
+     * @return parameters used for distributed coordinator.
+     */
+    public String getParamDefs() {
+        return DistributedCoordinator.paramNameTypes;
+    }
+
+    /**
+     * Sets parameters used for distributed coordinator.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - timeout: maximum time in milliseconds waited for progress of gradient exchange with slow workers. Default value 60000.<br>
+     *     - connectTimeout: maximum time in milliseconds waited for all workers to connect. Default value 60000.<br>
+     *
+     * @param params parameters used for distributed coordinator.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void setParams(DynamicParam params) throws DynamicParamException {
+        if (params.hasParam("timeout")) {
+            timeout = params.getValueAsInteger("timeout");
+            if (timeout < 1) throw new DynamicParamException("Timeout must be positive.");
+        }
+        if (params.hasParam("connectTimeout")) {
+            connectTimeout = params.getValueAsInteger("connectTimeout");
+            if (connectTimeout < 1) throw new DynamicParamException("Connect timeout must be positive.");
+        }
+    }
+
+    /**
+     * Returns rank of this worker.
+     *
+     * @return rank of this worker.
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Returns number of workers.
+     *
+     * @return number of workers.
+     */
+    public int getNumberOfWorkers() {
+        return workerAddresses.size();
+    }
+
+    /**
+     * Checks if this worker is coordinator.
+     *
+     * @return true if this worker is coordinator otherwise false.
+     */
+    public boolean isCoordinator() {
+        return rank == 0;
+    }
+
+    /**
+     * Returns sampler returning shard of this worker from each batch of given sampler.<br>
+     * Samplers of all workers must return equal batches e.g. by setting equal seed.<br>
+     *
+     * @param sampler sampler returning whole batches.
+     * @return sampler returning shard of this worker.
+     * @throws NeuralNetworkException throws exception if sampler is not defined.
+     */
+    public Sampler getSampler(Sampler sampler) throws NeuralNetworkException {
+        return new ShardSampler(sampler, rank, getNumberOfWorkers());
+    }
+
+    /**
+     * Creates gradient exchange transport between workers.
+     *
+     * @return gradient exchange transport.
+     * @throws NeuralNetworkException throws exception if creation of transport fails.
+     */
+    RingAllReduce createTransport() throws NeuralNetworkException {
+        return new RingAllReduce(rank, workerAddresses, timeout, connectTimeout);
+    }
+
+}
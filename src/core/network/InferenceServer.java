@@ -0,0 +1,537 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.layer.NeuralNetworkLayer;
+import utils.configurable.Configurable;
+import utils.configurable.DynamicParam;
+import utils.configurable.DynamicParamException;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.sampling.Sequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements thread safe inference server on top of neural network prediction.<br>
+ * Prediction requests submitted concurrently by multiple threads are queued and coalesced into single multi-sample prediction executed as one forward pass.<br>
+ * Batch is executed once it reaches maximum batch size or when maximum wait time since arrival of its first request has elapsed.<br>
+ * Number of queued requests is limited by maximum queue size. Non-blocking submission is rejected and blocking submission waits when queue is full.<br>
+ * Neural networks containing recurrent layers treat samples of sequence as time steps hence for them each request is executed as its own prediction.<br>
+ *
+ */
+public final class InferenceServer implements Configurable {
+
+    /**
+     * Parameter name types for inference server.
+     *     - maxBatchSize: maximum number of requests coalesced into single prediction. Default value 32.<br>
+     *     - maxWaitTime: maximum time in microseconds waited for batch to fill after arrival of its first request. Default value 1000.<br>
+     *     - maxQueueSize: maximum number of queued requests. Default value 1024.<br>
+     *
+     */
+    private final static String paramNameTypes = "(maxBatchSize:INT), " +
+            "(maxWaitTime:INT), " +
+            "(maxQueueSize:INT)";
+
+    /**
+     * Implements prediction request.
+     *
+     * @param inputs inputs of request by input layer index.
+     * @param future future completed with outputs of request by output layer index.
+     * @param arrivalTime arrival time of request in nanoseconds.
+     */
+    private record Request(TreeMap<Integer, Matrix> inputs, CompletableFuture<TreeMap<Integer, Matrix>> future, long arrivalTime) {
+    }
+
+    /**
+     * Neural network executing predictions.
+     *
+     */
+    private final NeuralNetwork neuralNetwork;
+
+    /**
+     * Maximum number of requests coalesced into single prediction.
+     *
+     */
+    private int maxBatchSize;
+
+    /**
+     * Maximum time in microseconds waited for batch to fill after arrival of its first request.
+     *
+     */
+    private int maxWaitTime;
+
+    /**
+     * Maximum number of queued requests.
+     *
+     */
+    private int maxQueueSize;
+
+    /**
+     * If true requests are coalesced into multi-sample predictions otherwise each request is executed as its own prediction.
+     *
+     */
+    private final boolean coalesceRequests;
+
+    /**
+     * Queue of pending requests.
+     *
+     */
+    private volatile BlockingQueue<Request> requestQueue;
+
+    /**
+     * Thread pool executing batches.
+     *
+     */
+    private ExecutorService serverThreadPool;
+
+    /**
+     * If true inference server is running.
+     *
+     */
+    private volatile boolean running = false;
+
+    /**
+     * Number of completed requests.
+     *
+     */
+    private final AtomicLong completedRequests = new AtomicLong();
+
+    /**
+     * Number of failed requests.
+     *
+     */
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    /**
+     * Number of rejected requests.
+     *
+     */
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Number of executed batches.
+     *
+     */
+    private final AtomicLong executedBatches = new AtomicLong();
+
+    /**
+     * Cumulative latency of completed requests in nanoseconds.
+     *
+     */
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    /**
+     * Maximum latency of completed requests in nanoseconds.
+     *
+     */
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Start time of statistics in nanoseconds.
+     *
+     */
+    private volatile long statisticsStartTime = System.nanoTime();
+
+    /**
+     * Constructor for inference server.
+     *
+     * @param neuralNetwork neural network executing predictions.
+     * @throws NeuralNetworkException throws exception if neural network is not defined.
+     */
+    public InferenceServer(NeuralNetwork neuralNetwork) throws NeuralNetworkException {
+        if (neuralNetwork == null) throw new NeuralNetworkException("Neural network is not defined.");
+        initializeDefaultParams();
+        this.neuralNetwork = neuralNetwork;
+        boolean hasRecurrentLayer = false;
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) hasRecurrentLayer |= neuralNetworkLayer.isRecurrentLayer();
+        coalesceRequests = !hasRecurrentLayer;
+    }
+
+    /**
+     * Constructor for inference server.
+     *
+     * @param neuralNetwork neural network executing predictions.
+     * @param params parameters used for inference server.
+     * @throws NeuralNetworkException throws exception if neural network is not defined.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public InferenceServer(NeuralNetwork neuralNetwork, String params) throws NeuralNetworkException, DynamicParamException {
+        this(neuralNetwork);
+        if (params != null) setParams(new DynamicParam(params, getParamDefs()));
+    }
+
+    /**
+     * Initializes default params.
+     *
+     */
+    public void initializeDefaultParams() {
+        maxBatchSize = 32;
+        maxWaitTime = 1000;
+        maxQueueSize = 1024;
+    }
+
+    /**
+     * Returns parameters used for inference server.
+     *
+     * @return parameters used for inference server.
+     */
+    public String getParamDefs() {
+        return InferenceServer.paramNameTypes;
+    }
+
+    /**
+     * Sets parameters used for inference server.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - maxBatchSize: maximum number of requests coalesced into single prediction. Default value 32.<br>
+     *     - maxWaitTime: maximum time in microseconds waited for batch to fill after arrival of its first request. Default value 1000.<br>
+     *     - maxQueueSize: maximum number of queued requests. Default value 1024.<br>
+     *
+     * @param params parameters used for inference server.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void setParams(DynamicParam params) throws DynamicParamException {
+        if (running) throw new DynamicParamException("Parameters of running inference server cannot be changed.");
+        if (params.hasParam("maxBatchSize")) maxBatchSize = params.getValueAsInteger("maxBatchSize");
+        if (params.hasParam("maxWaitTime")) maxWaitTime = params.getValueAsInteger("maxWaitTime");
+        if (params.hasParam("maxQueueSize")) maxQueueSize = params.getValueAsInteger("maxQueueSize");
+        if (maxBatchSize < 1) throw new DynamicParamException("Maximum batch size must be at least 1.");
+        if (maxWaitTime < 0) throw new DynamicParamException("Maximum wait time cannot be negative.");
+        if (maxQueueSize < 1) throw new DynamicParamException("Maximum queue size must be at least 1.");
+    }
+
+    /**
+     * Starts inference server. Starts also neural network if it is not started.
+     *
+     * @throws NeuralNetworkException throws exception if starting of neural network fails.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public synchronized void start() throws NeuralNetworkException, MatrixException, DynamicParamException {
+        if (running) return;
+        if (!neuralNetwork.isStarted()) neuralNetwork.start();
+        requestQueue = new ArrayBlockingQueue<>(maxQueueSize);
+        running = true;
+        resetStatistics();
+        serverThreadPool = Executors.newSingleThreadExecutor();
+        serverThreadPool.execute(this::serve);
+    }
+
+    /**
+     * Stops inference server. Requests executing at the time of stop are completed and pending requests are failed.<br>
+     * Requests queued concurrently with stop are failed by their submitting thread.<br>
+     *
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        serverThreadPool.shutdown();
+        try {
+            if (!serverThreadPool.awaitTermination(10, TimeUnit.SECONDS)) System.out.println("Failed to shut down inference server.");
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        ArrayList<Request> pendingRequests = new ArrayList<>();
+        requestQueue.drainTo(pendingRequests);
+        failRequests(pendingRequests, new NeuralNetworkException("Inference server is stopped."));
+    }
+
+    /**
+     * Checks if inference server is running.
+     *
+     * @return true if inference server is running otherwise false.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Submits prediction request without blocking. Request is rejected if request queue is full.
+     *
+     * @param inputs inputs by input layer index.
+     * @return future completed with predicted values by output layer index.
+     * @throws NeuralNetworkException throws exception if inference server is not running, inputs are not defined or request queue is full.
+     */
+    public CompletableFuture<TreeMap<Integer, Matrix>> submit(TreeMap<Integer, Matrix> inputs) throws NeuralNetworkException {
+        BlockingQueue<Request> queue = requestQueue;
+        Request request = getRequest(inputs);
+        if (!queue.offer(request)) {
+            rejectedRequests.incrementAndGet();
+            throw new NeuralNetworkException("Inference request queue is full.");
+        }
+        withdrawIfStopped(queue, request);
+        return request.future();
+    }
+
+    /**
+     * Predicts values based on given input. Waits if request queue is full until request can be queued or inference server is stopped.
+     *
+     * @param inputs inputs by input layer index.
+     * @return predicted values by output layer index.
+     * @throws NeuralNetworkException throws exception if inference server is not running, inputs are not defined or prediction fails.
+     */
+    public TreeMap<Integer, Matrix> predictMatrix(TreeMap<Integer, Matrix> inputs) throws NeuralNetworkException {
+        BlockingQueue<Request> queue = requestQueue;
+        Request request = getRequest(inputs);
+        try {
+            while (!queue.offer(request, 100, TimeUnit.MILLISECONDS)) {
+                if (isStopped(queue)) throw new NeuralNetworkException("Inference server is stopped.");
+            }
+            withdrawIfStopped(queue, request);
+            return request.future().get();
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException("Inference request was interrupted.");
+        }
+        catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof NeuralNetworkException neuralNetworkException) throw neuralNetworkException;
+            throw new NeuralNetworkException("Inference request failed: " + executionException.getCause());
+        }
+    }
+
+    /**
+     * Creates new prediction request.
+     *
+     * @param inputs inputs by input layer index.
+     * @return prediction request.
+     * @throws NeuralNetworkException throws exception if inference server is not running or inputs are not defined.
+     */
+    private Request getRequest(TreeMap<Integer, Matrix> inputs) throws NeuralNetworkException {
+        if (!running) throw new NeuralNetworkException("Inference server is not running.");
+        if (inputs == null || inputs.isEmpty()) throw new NeuralNetworkException("No prediction inputs set");
+        return new Request(inputs, new CompletableFuture<>(), System.nanoTime());
+    }
+
+    /**
+     * Checks if inference server owning given request queue is stopped. Queue of stopped server is replaced when server is restarted.
+     *
+     * @param queue request queue.
+     * @return true if inference server owning request queue is stopped otherwise false.
+     */
+    private boolean isStopped(BlockingQueue<Request> queue) {
+        return !running || queue != requestQueue;
+    }
+
+    /**
+     * Withdraws and fails request if inference server was stopped while request was queued.<br>
+     * Stop sets server as not running before it drains request queue hence request queued while server is running is either executed by server or failed by stop.<br>
+     * Request that is not found in queue any more has been taken by server or failed by stop and is left as is.<br>
+     *
+     * @param queue request queue where request was queued.
+     * @param request request.
+     */
+    private void withdrawIfStopped(BlockingQueue<Request> queue, Request request) {
+        if (isStopped(queue) && queue.remove(request)) failRequests(new ArrayList<>(List.of(request)), new NeuralNetworkException("Inference server is stopped."));
+    }
+
+    /**
+     * Serves requests until inference server is stopped. Collects batch of requests and executes it.
+     *
+     */
+    private void serve() {
+        ArrayList<Request> batch = new ArrayList<>();
+        int batchSize = coalesceRequests ? maxBatchSize : 1;
+        while (running) {
+            try {
+                Request firstRequest = requestQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (firstRequest == null) continue;
+                batch.add(firstRequest);
+                long deadline = firstRequest.arrivalTime() + TimeUnit.MICROSECONDS.toNanos(maxWaitTime);
+                while (batch.size() < batchSize) {
+                    if (requestQueue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long remainingTime = deadline - System.nanoTime();
+                    if (remainingTime <= 0) break;
+                    Request request = requestQueue.poll(remainingTime, TimeUnit.NANOSECONDS);
+                    if (request == null) break;
+                    batch.add(request);
+                }
+                executeBatch(batch);
+            }
+            catch (InterruptedException interruptedException) {
+                failRequests(batch, new NeuralNetworkException("Inference server was interrupted."));
+                Thread.currentThread().interrupt();
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Executes batch of requests as single prediction and completes futures of requests with their outputs.
+     *
+     * @param batch batch of requests.
+     */
+    private void executeBatch(ArrayList<Request> batch) {
+        TreeMap<Integer, Sequence> batchInputs = new TreeMap<>();
+        for (int sampleIndex = 0; sampleIndex < batch.size(); sampleIndex++) {
+            for (Map.Entry<Integer, Matrix> entry : batch.get(sampleIndex).inputs().entrySet()) {
+                batchInputs.computeIfAbsent(entry.getKey(), key -> new Sequence()).put(sampleIndex, entry.getValue());
+            }
+        }
+
+        ArrayList<TreeMap<Integer, Matrix>> batchOutputs = new ArrayList<>();
+        try {
+            TreeMap<Integer, Sequence> outputSequences = neuralNetwork.predict(batchInputs);
+            for (int sampleIndex = 0; sampleIndex < batch.size(); sampleIndex++) {
+                TreeMap<Integer, Matrix> outputs = new TreeMap<>();
+                for (Map.Entry<Integer, Sequence> entry : outputSequences.entrySet()) outputs.put(entry.getKey(), entry.getValue().get(sampleIndex).copy());
+                batchOutputs.add(outputs);
+            }
+        }
+        catch (Exception exception) {
+            failRequests(batch, exception);
+            return;
+        }
+
+        long completionTime = System.nanoTime();
+        executedBatches.incrementAndGet();
+        for (int sampleIndex = 0; sampleIndex < batch.size(); sampleIndex++) {
+            Request request = batch.get(sampleIndex);
+            long latency = completionTime - request.arrivalTime();
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+            completedRequests.incrementAndGet();
+            request.future().complete(batchOutputs.get(sampleIndex));
+        }
+    }
+
+    /**
+     * Completes requests exceptionally.
+     *
+     * @param requests requests.
+     * @param exception exception.
+     */
+    private void failRequests(ArrayList<Request> requests, Exception exception) {
+        for (Request request : requests) {
+            failedRequests.incrementAndGet();
+            request.future().completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Resets latency and throughput statistics.
+     *
+     */
+    public void resetStatistics() {
+        completedRequests.set(0);
+        failedRequests.set(0);
+        rejectedRequests.set(0);
+        executedBatches.set(0);
+        totalLatency.set(0);
+        maxLatency.set(0);
+        statisticsStartTime = System.nanoTime();
+    }
+
+    /**
+     * Returns number of completed requests.
+     *
+     * @return number of completed requests.
+     */
+    public long getCompletedRequests() {
+        return completedRequests.get();
+    }
+
+    /**
+     * Returns number of failed requests.
+     *
+     * @return number of failed requests.
+     */
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * Returns number of rejected requests.
+     *
+     * @return number of rejected requests.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * Returns number of executed batches.
+     *
+     * @return number of executed batches.
+     */
+    public long getExecutedBatches() {
+        return executedBatches.get();
+    }
+
+    /**
+     * Returns number of currently queued requests.
+     *
+     * @return number of currently queued requests.
+     */
+    public int getQueueDepth() {
+        return requestQueue == null ? 0 : requestQueue.size();
+    }
+
+    /**
+     * Returns average number of requests per executed batch.
+     *
+     * @return average batch size.
+     */
+    public double getAverageBatchSize() {
+        long batches = executedBatches.get();
+        return batches == 0 ? 0 : (double)completedRequests.get() / (double)batches;
+    }
+
+    /**
+     * Returns average latency of completed requests in milliseconds measured from submission to completion.
+     *
+     * @return average latency in milliseconds.
+     */
+    public double getAverageLatency() {
+        long requests = completedRequests.get();
+        return requests == 0 ? 0 : (double)totalLatency.get() / (double)requests / 1E6;
+    }
+
+    /**
+     * Returns maximum latency of completed requests in milliseconds measured from submission to completion.
+     *
+     * @return maximum latency in milliseconds.
+     */
+    public double getMaxLatency() {
+        return (double)maxLatency.get() / 1E6;
+    }
+
+    /**
+     * Returns throughput as completed requests per second since start or reset of statistics.
+     *
+     * @return throughput in requests per second.
+     */
+    public double getThroughput() {
+        double elapsedTime = (double)(System.nanoTime() - statisticsStartTime) / 1E9;
+        return elapsedTime <= 0 ? 0 : (double)completedRequests.get() / elapsedTime;
+    }
+
+    /**
+     * Returns latency and throughput statistics as string.
+     *
+     * @return latency and throughput statistics as string.
+     */
+    public String getStatistics() {
+        return "Completed requests: " + getCompletedRequests() + ", " +
+                "Failed requests: " + getFailedRequests() + ", " +
+                "Rejected requests: " + getRejectedRequests() + ", " +
+                "Executed batches: " + getExecutedBatches() + ", " +
+                "Average batch size: " + String.format("%.2f", getAverageBatchSize()) + ", " +
+                "Average latency: " + String.format("%.3f", getAverageLatency()) + " ms, " +
+                "Max latency: " + String.format("%.3f", getMaxLatency()) + " ms, " +
+                "Throughput: " + String.format("%.1f", getThroughput()) + " requests/s, " +
+                "Queue depth: " + getQueueDepth();
+    }
+
+}
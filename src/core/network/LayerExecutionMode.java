@@ -0,0 +1,26 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+/**
+ * Defines supported execution modes of neural network layers.
+ *
+ */
+public enum LayerExecutionMode {
+
+    /**
+     * Each layer is executed by dedicated thread and layers are synchronized via locks and conditions.
+     *
+     */
+    LAYER_THREADS,
+
+    /**
+     * Layers are executed as tasks of directed acyclic graph by work stealing task scheduler.
+     *
+     */
+    TASK_SCHEDULER
+
+}
@@ -0,0 +1,362 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.layer.NeuralNetworkLayer;
+import utils.configurable.DynamicParamException;
+import utils.matrix.MatrixException;
+import utils.matrix.operation.ComputePool;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Implements task scheduler that executes neural network layers as tasks of directed acyclic graph.<br>
+ * Alternative to execution model where each layer has dedicated thread synchronized via locks and conditions.<br>
+ * Layer becomes ready when all its predecessors (next layers for backward phase) have completed. Ready layers are executed by work stealing fork join pool.<br>
+ * Linear chain of layers is executed inline by single worker thread without any thread hand-offs.<br>
+ *
+ */
+public class LayerScheduler {
+
+    /**
+     * Execution phase of layer graph.
+     *
+     */
+    private enum Phase {
+
+        /**
+         * Training (forward) phase.
+         *
+         */
+        TRAIN,
+
+        /**
+         * Predict (forward) phase.
+         *
+         */
+        PREDICT,
+
+        /**
+         * Backward (gradient) phase.
+         *
+         */
+        BACKWARD,
+
+        /**
+         * Update (optimization) phase.
+         *
+         */
+        UPDATE
+
+    }
+
+    /**
+     * Layers of neural network indexed by task index.
+     *
+     */
+    private final NeuralNetworkLayer[] layers;
+
+    /**
+     * Successor task indices of each layer in forward direction.
+     *
+     */
+    private final int[][] forwardSuccessors;
+
+    /**
+     * Successor task indices of each layer in backward direction.
+     *
+     */
+    private final int[][] backwardSuccessors;
+
+    /**
+     * Number of predecessors of each layer in forward direction.
+     *
+     */
+    private final int[] forwardPredecessorCounts;
+
+    /**
+     * Number of predecessors of each layer in backward direction.
+     *
+     */
+    private final int[] backwardPredecessorCounts;
+
+    /**
+     * Root task indices in forward direction (input layers).
+     *
+     */
+    private final int[] forwardRoots;
+
+    /**
+     * Root task indices in backward direction (output layers).
+     *
+     */
+    private final int[] backwardRoots;
+
+    /**
+     * Number of predecessors pending completion for each layer in current phase.
+     *
+     */
+    private final AtomicIntegerArray pendingCounts;
+
+    /**
+     * Work stealing pool executing layer tasks.
+     *
+     */
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Implements layer task that executes layer and its successors as they become ready.
+     *
+     */
+    private class LayerTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 6002010819673875132L;
+
+        /**
+         * Task index of layer.
+         *
+         */
+        private final int taskIndex;
+
+        /**
+         * Execution phase.
+         *
+         */
+        private final Phase phase;
+
+        /**
+         * Constructor for layer task.
+         *
+         * @param taskIndex task index of layer.
+         * @param phase execution phase.
+         */
+        LayerTask(int taskIndex, Phase phase) {
+            this.taskIndex = taskIndex;
+            this.phase = phase;
+        }
+
+        /**
+         * Executes layer and its successors. First ready successor is executed inline and rest are forked.
+         *
+         */
+        protected void compute() {
+            ArrayList<LayerTask> forkedTasks = new ArrayList<>();
+            int currentTaskIndex = taskIndex;
+            while (currentTaskIndex != -1) {
+                executeLayer(layers[currentTaskIndex], phase);
+                int nextTaskIndex = -1;
+                for (int successorTaskIndex : phase == Phase.BACKWARD ? backwardSuccessors[currentTaskIndex] : forwardSuccessors[currentTaskIndex]) {
+                    if (pendingCounts.decrementAndGet(successorTaskIndex) != 0) continue;
+                    if (nextTaskIndex == -1) nextTaskIndex = successorTaskIndex;
+                    else {
+                        LayerTask layerTask = new LayerTask(successorTaskIndex, phase);
+                        layerTask.fork();
+                        forkedTasks.add(layerTask);
+                    }
+                }
+                currentTaskIndex = nextTaskIndex;
+            }
+            for (LayerTask forkedTask : forkedTasks) forkedTask.join();
+        }
+
+    }
+
+    /**
+     * Implements root task that launches tasks for all root layers of phase.
+     *
+     */
+    private class RootTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 2681743204952856238L;
+
+        /**
+         * Root task indices.
+         *
+         */
+        private final int[] roots;
+
+        /**
+         * Execution phase.
+         *
+         */
+        private final Phase phase;
+
+        /**
+         * Constructor for root task.
+         *
+         * @param roots root task indices.
+         * @param phase execution phase.
+         */
+        RootTask(int[] roots, Phase phase) {
+            this.roots = roots;
+            this.phase = phase;
+        }
+
+        /**
+         * Executes root layer tasks.
+         *
+         */
+        protected void compute() {
+            ArrayList<LayerTask> layerTasks = new ArrayList<>();
+            for (int root : roots) layerTasks.add(new LayerTask(root, phase));
+            invokeAll(layerTasks);
+        }
+
+    }
+
+    /**
+     * Constructor for layer scheduler.
+     *
+     * @param neuralNetworkLayers layers of neural network.
+     * @param schedulerThreads number of worker threads executing layer tasks.
+     * @param computeThreads number of parallel compute tasks used by each layer for large matrix operations.
+     */
+    public LayerScheduler(Collection<NeuralNetworkLayer> neuralNetworkLayers, int schedulerThreads, int computeThreads) {
+        layers = neuralNetworkLayers.toArray(new NeuralNetworkLayer[0]);
+        HashMap<NeuralNetworkLayer, Integer> taskIndices = new HashMap<>();
+        for (int taskIndex = 0; taskIndex < layers.length; taskIndex++) taskIndices.put(layers[taskIndex], taskIndex);
+
+        forwardSuccessors = new int[layers.length][];
+        backwardSuccessors = new int[layers.length][];
+        forwardPredecessorCounts = new int[layers.length];
+        backwardPredecessorCounts = new int[layers.length];
+        ArrayList<Integer> forwardRootList = new ArrayList<>();
+        ArrayList<Integer> backwardRootList = new ArrayList<>();
+        for (int taskIndex = 0; taskIndex < layers.length; taskIndex++) {
+            NeuralNetworkLayer layer = layers[taskIndex];
+            forwardSuccessors[taskIndex] = getTaskIndices(layer.hasNextLayers() ? layer.getNextLayers().values() : null, taskIndices);
+            backwardSuccessors[taskIndex] = getTaskIndices(layer.hasPreviousLayers() ? layer.getPreviousLayers().values() : null, taskIndices);
+            forwardPredecessorCounts[taskIndex] = backwardSuccessors[taskIndex].length;
+            backwardPredecessorCounts[taskIndex] = forwardSuccessors[taskIndex].length;
+            if (forwardPredecessorCounts[taskIndex] == 0) forwardRootList.add(taskIndex);
+            if (backwardPredecessorCounts[taskIndex] == 0) backwardRootList.add(taskIndex);
+        }
+        forwardRoots = forwardRootList.stream().mapToInt(Integer::intValue).toArray();
+        backwardRoots = backwardRootList.stream().mapToInt(Integer::intValue).toArray();
+        pendingCounts = new AtomicIntegerArray(layers.length);
+
+        forkJoinPool = new ForkJoinPool(Math.max(1, schedulerThreads), pool -> new ForkJoinWorkerThread(pool) {
+            protected void onStart() {
+                super.onStart();
+                ComputePool.setParallelism(computeThreads);
+            }
+        }, null, false);
+    }
+
+    /**
+     * Returns task indices of given layers.
+     *
+     * @param neuralNetworkLayers neural network layers.
+     * @param taskIndices task indices of layers.
+     * @return task indices of given layers.
+     */
+    private static int[] getTaskIndices(Collection<NeuralNetworkLayer> neuralNetworkLayers, HashMap<NeuralNetworkLayer, Integer> taskIndices) {
+        if (neuralNetworkLayers == null) return new int[0];
+        int[] result = new int[neuralNetworkLayers.size()];
+        int index = 0;
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers) result[index++] = taskIndices.get(neuralNetworkLayer);
+        return result;
+    }
+
+    /**
+     * Executes training (forward) phase for all layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void train() throws MatrixException, DynamicParamException {
+        execute(Phase.TRAIN);
+    }
+
+    /**
+     * Executes predict (forward) phase for all layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void predict() throws MatrixException, DynamicParamException {
+        execute(Phase.PREDICT);
+    }
+
+    /**
+     * Executes backward (gradient) phase for all layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void backward() throws MatrixException, DynamicParamException {
+        execute(Phase.BACKWARD);
+    }
+
+    /**
+     * Executes update (optimization) phase for all layers.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void update() throws MatrixException, DynamicParamException {
+        execute(Phase.UPDATE);
+    }
+
+    /**
+     * Executes phase for all layers and waits until all layers have completed.
+     *
+     * @param phase execution phase.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void execute(Phase phase) throws MatrixException, DynamicParamException {
+        int[] predecessorCounts = phase == Phase.BACKWARD ? backwardPredecessorCounts : forwardPredecessorCounts;
+        for (int taskIndex = 0; taskIndex < layers.length; taskIndex++) pendingCounts.set(taskIndex, predecessorCounts[taskIndex]);
+        try {
+            forkJoinPool.invoke(new RootTask(phase == Phase.BACKWARD ? backwardRoots : forwardRoots, phase));
+        }
+        catch (RuntimeException runtimeException) {
+            Throwable cause = runtimeException.getCause();
+            if (cause instanceof MatrixException matrixException) throw matrixException;
+            if (cause instanceof DynamicParamException dynamicParamException) throw dynamicParamException;
+            throw runtimeException;
+        }
+    }
+
+    /**
+     * Executes single layer for given phase.
+     *
+     * @param neuralNetworkLayer neural network layer.
+     * @param phase execution phase.
+     * @throws RuntimeException throws runtime exception wrapping exception thrown by layer.
+     */
+    private static void executeLayer(NeuralNetworkLayer neuralNetworkLayer, Phase phase) throws RuntimeException {
+        try {
+            switch (phase) {
+                case TRAIN -> neuralNetworkLayer.trainStep();
+                case PREDICT -> neuralNetworkLayer.predictStep();
+                case BACKWARD -> neuralNetworkLayer.backwardStep();
+                case UPDATE -> neuralNetworkLayer.updateStep();
+            }
+        } catch (MatrixException | DynamicParamException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Shuts down layer scheduler.
+     *
+     */
+    public void shutdown() {
+        forkJoinPool.shutdownNow();
+    }
+
+}
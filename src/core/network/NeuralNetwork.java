@@ -18,6 +18,7 @@ import core.optimization.OptimizerFactory;
 import utils.configurable.DynamicParamException;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
+import utils.matrix.operation.ComputePool;
 import utils.sampling.Sampler;
 import utils.sampling.Sequence;
 
@@ -174,6 +175,42 @@ public class NeuralNetwork implements Serializable {
      */
     private boolean showTrainingMetrics = false;
 
+    /**
+     * Number of parallel compute tasks used by each layer for large matrix operations. Default 1 i.e. matrix operations are executed serially.
+     *
+     */
+    private int computeThreads = 1;
+
+    /**
+     * Execution mode of neural network layers. Default mode executes each layer by dedicated thread.
+     *
+     */
+    private LayerExecutionMode layerExecutionMode = LayerExecutionMode.LAYER_THREADS;
+
+    /**
+     * Layer scheduler used when layers are executed by task scheduler.
+     *
+     */
+    private transient LayerScheduler layerScheduler;
+
+    /**
+     * Number of data parallel replicas used in training including this neural network. Default 1 i.e. training is not data parallel.
+     *
+     */
+    private int numberOfReplicas = 1;
+
+    /**
+     * Data parallel trainer used when training is split over multiple replicas.
+     *
+     */
+    private transient DataParallelTrainer dataParallelTrainer;
+
+    /**
+     * Coordinator of training distributed over worker processes or null if training is not distributed.
+     *
+     */
+    private transient DistributedCoordinator distributedCoordinator;
+
     /**
      * Reference to validation error metric. Default Regression.
      *
@@ -497,6 +534,11 @@ public class NeuralNetwork implements Serializable {
     public void start() throws NeuralNetworkException, MatrixException, DynamicParamException {
         checkStarted();
         if (neuralNetworkLayers.isEmpty()) throw new NeuralNetworkException("Neural network is not built.");
+        if (getNumberOfReplicas() > 1 || distributedCoordinator != null) {
+            for (Map.Entry<Integer, NeuralNetworkLayer> entry : neuralNetworkLayers.entrySet()) {
+                if (!entry.getValue().worksWithDataParallelTraining()) throw new NeuralNetworkException("Layer " + entry.getKey() + " does not work with data parallel training.");
+            }
+        }
 
         for (Integer outputLayerIndex : getOutputLayers().keySet()) {
             trainingMetrics.put(outputLayerIndex, new SingleRegressionMetric(showTrainingMetrics));
@@ -518,12 +560,123 @@ public class NeuralNetwork implements Serializable {
         networkThreadPool = Executors.newSingleThreadExecutor();
         executeLayer(networkThreadPool);
 
-        layerThreadPool = Executors.newCachedThreadPool();
-        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers.values()) neuralNetworkLayer.start(layerThreadPool);
+        if (getNumberOfReplicas() > 1 || distributedCoordinator != null) {
+            int schedulerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / getNumberOfReplicas());
+            layerScheduler = new LayerScheduler(neuralNetworkLayers.values(), schedulerThreads, getComputeThreads());
+            for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers.values()) neuralNetworkLayer.start(null);
+            try {
+                dataParallelTrainer = new DataParallelTrainer(this, layerScheduler, getNumberOfReplicas(), schedulerThreads, getComputeThreads(), distributedCoordinator != null ? distributedCoordinator.createTransport() : null);
+            }
+            catch (IOException | ClassNotFoundException exception) {
+                throw new NeuralNetworkException("Starting of data parallel training failed: " + exception.getMessage());
+            }
+        }
+        else if (getLayerExecutionMode() == LayerExecutionMode.TASK_SCHEDULER) {
+            layerScheduler = new LayerScheduler(neuralNetworkLayers.values(), Runtime.getRuntime().availableProcessors(), getComputeThreads());
+            for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers.values()) neuralNetworkLayer.start(null);
+        }
+        else {
+            layerThreadPool = Executors.newCachedThreadPool(runnable -> new Thread(() -> {
+                ComputePool.setParallelism(getComputeThreads());
+                runnable.run();
+            }));
+            for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers.values()) neuralNetworkLayer.start(layerThreadPool);
+        }
+    }
+
+    /**
+     * Sets execution mode of neural network layers.<br>
+     * In LAYER_THREADS mode each layer is executed by dedicated thread. In TASK_SCHEDULER mode layers are executed as tasks of directed acyclic graph by work stealing scheduler.<br>
+     *
+     * @param layerExecutionMode execution mode of neural network layers.
+     * @throws NeuralNetworkException throws exception if parameter is attempted to be set when neural network is already started.
+     */
+    public void setLayerExecutionMode(LayerExecutionMode layerExecutionMode) throws NeuralNetworkException {
+        if (isStarted()) throw new NeuralNetworkException("Layer execution mode can be only set when neural network is not started.");
+        this.layerExecutionMode = layerExecutionMode;
+    }
+
+    /**
+     * Returns execution mode of neural network layers.
+     *
+     * @return execution mode of neural network layers.
+     */
+    public LayerExecutionMode getLayerExecutionMode() {
+        return layerExecutionMode != null ? layerExecutionMode : LayerExecutionMode.LAYER_THREADS;
+    }
+
+    /**
+     * Sets number of parallel compute tasks used by each layer for large matrix operations (dot, convolution and crosscorrelation).<br>
+     * Compute tasks are executed in compute pool shared by all neural networks hence concurrently running neural networks do not oversubscribe processor cores.<br>
+     *
+     * @param computeThreads number of parallel compute tasks.
+     * @throws NeuralNetworkException throws exception if parameter is attempted to be set when neural network is already started or number of compute threads is less than 1.
+     */
+    public void setComputeThreads(int computeThreads) throws NeuralNetworkException {
+        if (isStarted()) throw new NeuralNetworkException("Compute threads can be only set when neural network is not started.");
+        if (computeThreads < 1) throw new NeuralNetworkException("Number of compute threads must be at least 1.");
+        this.computeThreads = computeThreads;
+    }
+
+    /**
+     * Returns number of parallel compute tasks used by each layer for large matrix operations.
+     *
+     * @return number of parallel compute tasks.
+     */
+    public int getComputeThreads() {
+        return Math.max(1, computeThreads);
+    }
+
+    /**
+     * Sets number of replicas used for synchronous data parallel training.<br>
+     * Each training batch is split into shards trained concurrently by in-process copies of this neural network. Weight gradients are reduced over replicas and single optimizer step is applied to this neural network after which weights are broadcast back to replicas.<br>
+     * Only weights are synchronized between replicas. Layers having other state updated during training (e.g. moving averages of batch normalization) are not supported and starting of neural network fails if such layer exists.<br>
+     * Layers of data parallel neural network are executed by task scheduler. Samples of batch must be independent i.e. data parallel training is not applicable to recurrent layers and starting of neural network fails if such layer exists.<br>
+     *
+     * @param numberOfReplicas number of replicas including this neural network.
+     * @throws NeuralNetworkException throws exception if parameter is attempted to be set when neural network is already started or number of replicas is less than 1.
+     */
+    public void setNumberOfReplicas(int numberOfReplicas) throws NeuralNetworkException {
+        if (isStarted()) throw new NeuralNetworkException("Number of replicas can be only set when neural network is not started.");
+        if (numberOfReplicas < 1) throw new NeuralNetworkException("Number of replicas must be at least 1.");
+        this.numberOfReplicas = numberOfReplicas;
+    }
+
+    /**
+     * Returns number of replicas used for synchronous data parallel training.
+     *
+     * @return number of replicas including this neural network.
+     */
+    public int getNumberOfReplicas() {
+        return Math.max(1, numberOfReplicas);
+    }
+
+    /**
+     * Sets coordinator of synchronous data parallel training distributed over worker processes.<br>
+     * Neural network connects to other workers when started and sums weight gradients over workers by ring all-reduce before each optimizer step.
+     * Training data of each worker is typically set as sampler returned by coordinator which assigns shard of each batch to worker.<br>
+     * Only coordinator worker (rank 0) stores snapshots through persistence. Layers of distributed neural network are executed by task scheduler.<br>
+     *
+     * @param distributedCoordinator coordinator of distributed training or null if training is not distributed.
+     * @throws NeuralNetworkException throws exception if parameter is attempted to be set when neural network is already started.
+     */
+    public void setDistributedCoordinator(DistributedCoordinator distributedCoordinator) throws NeuralNetworkException {
+        if (isStarted()) throw new NeuralNetworkException("Distributed coordinator can be only set when neural network is not started.");
+        this.distributedCoordinator = distributedCoordinator;
+    }
+
+    /**
+     * Returns coordinator of synchronous data parallel training distributed over worker processes.
+     *
+     * @return coordinator of distributed training or null if training is not distributed.
+     */
+    public DistributedCoordinator getDistributedCoordinator() {
+        return distributedCoordinator;
     }
 
     /**
-     * Stops neural network.
+     * Stops neural network.<br>
+     * Waits for pending asynchronous snapshot and shuts down its writer. Failure of snapshot is kept and returned by getSnapshotFailure of persistence.<br>
      *
      */
     public void stop() {
@@ -533,9 +686,23 @@ public class NeuralNetwork implements Serializable {
         for (NeuralNetworkLayer neuralNetworkLayer : inputLayers.values()) neuralNetworkLayer.stop();
 
         try {
-            layerThreadPool.shutdownNow();
+            if (persistence != null) persistence.shutdown();
+        }
+        catch (IOException ignored) {
+        }
+
+        try {
+            if (dataParallelTrainer != null) {
+                dataParallelTrainer.shutdown();
+                dataParallelTrainer = null;
+            }
+            if (layerScheduler != null) {
+                layerScheduler.shutdown();
+                layerScheduler = null;
+            }
+            if (layerThreadPool != null) layerThreadPool.shutdownNow();
             networkThreadPool.shutdownNow();
-            if (!layerThreadPool.awaitTermination(10, TimeUnit.SECONDS) || !networkThreadPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            if ((layerThreadPool != null && !layerThreadPool.awaitTermination(10, TimeUnit.SECONDS)) || !networkThreadPool.awaitTermination(10, TimeUnit.SECONDS)) {
                 System.out.println("Failed to shut down neural network.");
             }
         }
@@ -544,7 +711,8 @@ public class NeuralNetwork implements Serializable {
     }
 
     /**
-     * Executes layer.
+     * Executes layer.<br>
+     * If execution fails callers waiting for completion are released before exception is thrown.<br>
      *
      * @param executorService executor service
      * @throws RuntimeException throws runtime exception in case any exception happens.
@@ -557,6 +725,7 @@ public class NeuralNetwork implements Serializable {
                     isExecuting = executeLayerOperation();
                 }
             } catch (Exception exception) {
+                complete();
                 throw new RuntimeException(exception);
             }
         });
@@ -847,13 +1016,24 @@ public class NeuralNetwork implements Serializable {
         TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
         TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
         trainingSampler.getSamples(inputSequences, outputSequences);
-        for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) entry.getValue().setTargets(outputSequences.get(entry.getKey()));
-        for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().train(inputSequences.get(entry.getKey()));
-        for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) entry.getValue().backward();
-        for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().update();
+        if (dataParallelTrainer != null) dataParallelTrainer.train(inputSequences, outputSequences);
+        else if (layerScheduler != null) {
+            for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) entry.getValue().setTargets(outputSequences.get(entry.getKey()));
+            for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().setInputs(inputSequences.get(entry.getKey()));
+            layerScheduler.train();
+            for (OutputLayer outputLayer : getOutputLayers().values()) outputLayer.checkTargets();
+            layerScheduler.backward();
+            layerScheduler.update();
+        }
+        else {
+            for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) entry.getValue().setTargets(outputSequences.get(entry.getKey()));
+            for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().train(inputSequences.get(entry.getKey()));
+            for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) entry.getValue().backward();
+            for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().update();
+        }
         long trainingEndTime = System.nanoTime();
         trainingTime += trainingEndTime - trainingStartTime;
-        for (Map.Entry<Integer, SingleRegressionMetric> entry : trainingMetrics.entrySet()) entry.getValue().report(getOutputLayers().get(entry.getKey()).getTotalError());
+        for (Map.Entry<Integer, SingleRegressionMetric> entry : trainingMetrics.entrySet()) entry.getValue().report(dataParallelTrainer != null ? dataParallelTrainer.getTotalError(entry.getKey()) : getOutputLayers().get(entry.getKey()).getTotalError());
         if (!earlyStoppingMap.isEmpty()) for (EarlyStopping earlyStopping : earlyStoppingMap.values()) earlyStopping.evaluateTrainingCondition(totalTrainingIterations);
         if (autoValidationCycle > 0) {
             autoValidationCount++;
@@ -867,7 +1047,7 @@ public class NeuralNetwork implements Serializable {
             }
         }
         if (verboseTraining) verboseTrainingStatus();
-        if (persistence != null) persistence.cycle();
+        if (persistence != null && (distributedCoordinator == null || distributedCoordinator.isCoordinator())) persistence.cycle();
     }
 
     /**
@@ -1082,7 +1262,7 @@ public class NeuralNetwork implements Serializable {
             TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
             TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
             validationSampler.getSamples(inputSequences, outputSequences);
-            for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().predict(inputSequences.get(entry.getKey()));
+            predictLayers(inputSequences);
             for (Map.Entry<Integer, OutputLayer> entry : getOutputLayers().entrySet()) validationMetrics.get(entry.getKey()).report(entry.getValue().getLayerOutputs(), outputSequences.get(entry.getKey()));
         }
         if (verboseValidation && (totalTrainingIterations % verboseCycle == 0)) verboseValidationStatus();
@@ -1317,9 +1497,26 @@ public class NeuralNetwork implements Serializable {
     /**
      * Predicts using given test set inputs.
      *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
-    private void predictInput() {
-        for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().predict(predictInputs.get(entry.getKey()));
+    private void predictInput() throws MatrixException, DynamicParamException {
+        predictLayers(predictInputs);
+    }
+
+    /**
+     * Executes predict step for neural network layers using given inputs.
+     *
+     * @param inputSequences inputs for input layers.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void predictLayers(TreeMap<Integer, Sequence> inputSequences) throws MatrixException, DynamicParamException {
+        if (layerScheduler != null) {
+            for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().setInputs(inputSequences.get(entry.getKey()));
+            layerScheduler.predict();
+        }
+        else for (Map.Entry<Integer, InputLayer> entry : getInputLayers().entrySet()) entry.getValue().predict(inputSequences.get(entry.getKey()));
     }
 
     /**
@@ -12,6 +12,7 @@ import utils.configurable.DynamicParamException;
 import utils.matrix.BinaryFunctionType;
 import utils.matrix.Initialization;
 import utils.matrix.MatrixException;
+import utils.matrix.Precision;
 
 import java.util.TreeMap;
 
@@ -63,6 +64,18 @@ public class NeuralNetworkConfiguration {
      */
     private int neuralNetworkLayerIndexCount = 0;
 
+    /**
+     * Numeric precision of neural network weights and activations.
+     *
+     */
+    private Precision precision = Precision.DOUBLE;
+
+    /**
+     * If true double precision master copies of single precision weights are kept between optimization steps.
+     *
+     */
+    private boolean masterWeights = false;
+
     /**
      * Default constructor for neural network configuration.
      *
@@ -104,6 +117,7 @@ public class NeuralNetworkConfiguration {
         else inputLayerGroups.put(currentInputLayerGroupId, inputLayerGroup = new TreeMap<>());
         inputLayerGroup.put(inputLayerGroup.size(), inputLayer);
 
+        applyPrecision(inputLayer);
         neuralNetworkLayers.put(neuralNetworkLayers.size(), inputLayer);
         return neuralNetworkLayerIndex;
     }
@@ -242,6 +256,7 @@ public class NeuralNetworkConfiguration {
         int neuralNetworkLayerIndex = getNextNeuralNetworkLayerIndex();
         AbstractLayer hiddenLayer = LayerFactory.create(neuralNetworkLayerIndex, layerType, activationFunction, initialization, params);
         hiddenLayers.put(hiddenLayers.size(), hiddenLayer);
+        applyPrecision(hiddenLayer);
         neuralNetworkLayers.put(neuralNetworkLayers.size(), hiddenLayer);
         return neuralNetworkLayerIndex;
     }
@@ -325,6 +340,48 @@ public class NeuralNetworkConfiguration {
         return neuralNetworkLayerIndex;
     }
 
+    /**
+     * Sets numeric precision of neural network weights and activations. Precision is applied to existing and subsequently added layers.<br>
+     * Single precision (float) halves memory footprint of weights and activations. Output layer targets and losses are calculated using double precision.<br>
+     *
+     * @param precision numeric precision.
+     */
+    public void setPrecision(Precision precision) {
+        setPrecision(precision, false);
+    }
+
+    /**
+     * Sets numeric precision of neural network weights and activations. Precision is applied to existing and subsequently added layers.<br>
+     * Single precision (float) halves memory footprint of weights and activations. Output layer targets and losses are calculated using double precision.<br>
+     *
+     * @param precision numeric precision.
+     * @param masterWeights if true double precision master copies of single precision weights are kept between optimization steps.
+     */
+    public void setPrecision(Precision precision, boolean masterWeights) {
+        this.precision = precision != null ? precision : Precision.DOUBLE;
+        this.masterWeights = masterWeights;
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetworkLayers.values()) applyPrecision(neuralNetworkLayer);
+    }
+
+    /**
+     * Returns numeric precision of neural network weights and activations.
+     *
+     * @return numeric precision.
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Applies numeric precision to neural network layer.
+     *
+     * @param neuralNetworkLayer neural network layer.
+     */
+    private void applyPrecision(NeuralNetworkLayer neuralNetworkLayer) {
+        if (neuralNetworkLayer instanceof InputLayer inputLayer) inputLayer.setPrecision(precision);
+        if (neuralNetworkLayer instanceof AbstractExecutionLayer abstractExecutionLayer) abstractExecutionLayer.setPrecision(precision, masterWeights);
+    }
+
     /**
      * Returns next neural network layer index.
      *
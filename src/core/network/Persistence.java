@@ -6,10 +6,19 @@
 package core.network;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Implements persistence functionality for neural network.<br>
  * Persistence is used to store (serialize) neural network into file and restore (deserialize) neural network from file.<br>
+ * By default neural network is stored via Java serialization (.ser). Optionally neural network is stored as binary checkpoint (.sannet) with separate topology descriptor and binary weight sidecar.<br>
+ * In asynchronous mode training thread only copies weight and optimizer state recorded by previous snapshot at iteration boundary and background thread serializes topology descriptor and writes snapshot into file. First snapshot is captured fully at iteration boundary. At most one snapshot is written at a time and file is atomically renamed into place when writing has completed. Asynchronous snapshots are always written as binary checkpoint.<br>
  *
  */
 public class Persistence implements Serializable {
@@ -36,12 +45,17 @@ public class Persistence implements Serializable {
     private NeuralNetwork neuralNetwork = null;
 
     /**
-     * Filename into which persistent data of neural network is stored.<br>
-     * Storage happens via Java serialization.<br>
+     * Filename into which persistent data of neural network is stored.
      *
      */
     private String filename;
 
+    /**
+     * Format in which snapshots are stored.
+     *
+     */
+    private PersistenceFormat format = PersistenceFormat.SERIALIZATION;
+
     /**
      * Define if potentially existing file is overwritten.<br>
      * If existing file is not to be overwritten then it is versioned by instance count.<br>
@@ -61,6 +75,60 @@ public class Persistence implements Serializable {
      */
     private int totalCount = 0;
 
+    /**
+     * If true snapshots are written asynchronously by background thread.
+     *
+     */
+    private boolean asynchronous = false;
+
+    /**
+     * Executor writing snapshots asynchronously.
+     *
+     */
+    private transient ExecutorService snapshotExecutor;
+
+    /**
+     * Snapshot currently being written asynchronously.
+     *
+     */
+    private transient Future<?> pendingSnapshot;
+
+    /**
+     * State objects of neural network recorded by latest asynchronous snapshot or null if no snapshot has been captured.
+     *
+     */
+    private transient volatile Checkpoint.StateObjects stateObjects;
+
+    /**
+     * Time taken to capture latest snapshot in nanoseconds.
+     *
+     */
+    private volatile long captureLatency = 0;
+
+    /**
+     * Time taken to write latest snapshot in nanoseconds.
+     *
+     */
+    private volatile long writeLatency = 0;
+
+    /**
+     * Total number of bytes written into snapshot files.
+     *
+     */
+    private volatile long bytesWritten = 0;
+
+    /**
+     * Number of snapshots written.
+     *
+     */
+    private volatile int snapshotsWritten = 0;
+
+    /**
+     * Failure of latest asynchronous snapshot or null if latest snapshot succeeded.
+     *
+     */
+    private transient volatile IOException snapshotFailure;
+
     /**
      * Default constructor for persistence class.
      *
@@ -83,6 +151,7 @@ public class Persistence implements Serializable {
         this.neuralNetwork = neuralNetwork;
         this.filename = filename;
         this.overwrite = overwrite;
+        stateObjects = null;
     }
 
     /**
@@ -92,7 +161,46 @@ public class Persistence implements Serializable {
      * @return reference to persistence.
      */
     public Persistence reference(NeuralNetwork neuralNetwork) {
-        return new Persistence(snapshot, interval, neuralNetwork, filename, overwrite);
+        Persistence persistence = new Persistence(snapshot, interval, neuralNetwork, filename, overwrite);
+        persistence.setAsynchronous(asynchronous);
+        persistence.setFormat(format);
+        return persistence;
+    }
+
+    /**
+     * Sets format in which snapshots are stored. Default format is Java serialization.
+     *
+     * @param format format in which snapshots are stored.
+     */
+    public void setFormat(PersistenceFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns format in which snapshots are stored.
+     *
+     * @return format in which snapshots are stored.
+     */
+    public PersistenceFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets if snapshots are written asynchronously by background thread. Asynchronous snapshots are written as binary checkpoint regardless of format.
+     *
+     * @param asynchronous if true snapshots are written asynchronously otherwise synchronously.
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Returns true if snapshots are written asynchronously.
+     *
+     * @return true if snapshots are written asynchronously otherwise false.
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
     }
 
     /**
@@ -109,6 +217,7 @@ public class Persistence implements Serializable {
         this.neuralNetwork = neuralNetwork;
         this.filename = filename;
         this.overwrite = overwrite;
+        stateObjects = null;
     }
 
     /**
@@ -133,11 +242,145 @@ public class Persistence implements Serializable {
         if (count >= interval) {
             String currentFilename = filename;
             if (!overwrite) currentFilename += "-"+ totalCount;
-            if (filename != null) saveNeuralNetwork(currentFilename, neuralNetwork);
+            if (filename != null) {
+                if (asynchronous) saveNeuralNetworkAsynchronously(currentFilename);
+                else {
+                    long startTime = System.nanoTime();
+                    saveNeuralNetwork(currentFilename, neuralNetwork, format);
+                    writeLatency = System.nanoTime() - startTime;
+                    bytesWritten += new File(currentFilename + getExtension(format)).length();
+                    snapshotsWritten++;
+                }
+            }
             count = 0;
         }
     }
 
+    /**
+     * Captures snapshot of neural network and writes it into file by background thread.<br>
+     * Training thread copies state objects recorded by previous snapshot and background thread serializes topology descriptor replacing state objects by their copies. If no snapshot has been captured yet snapshot is captured fully by training thread.<br>
+     * Waits until previous snapshot has been written so that at most one snapshot is in flight.<br>
+     * Snapshot is written into temporary file which is atomically renamed when writing has completed.<br>
+     *
+     * @param currentFilename file name into which persistent neural network data is to be stored.
+     * @throws IOException throws exception if capturing of snapshot fails or writing of previous snapshot has failed.
+     */
+    private void saveNeuralNetworkAsynchronously(String currentFilename) throws IOException {
+        waitForSnapshot();
+        long startTime = System.nanoTime();
+        Checkpoint.StateCopy stateCopy = stateObjects != null ? stateObjects.copy() : null;
+        Checkpoint.Snapshot capturedSnapshot = stateCopy == null ? Checkpoint.capture(neuralNetwork, true) : null;
+        captureLatency = System.nanoTime() - startTime;
+        if (snapshotExecutor == null) {
+            snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Persistence snapshot writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingSnapshot = snapshotExecutor.submit(() -> {
+            long writeStartTime = System.nanoTime();
+            Checkpoint.Snapshot checkpointSnapshot = capturedSnapshot != null ? capturedSnapshot : Checkpoint.capture(neuralNetwork, stateCopy);
+            stateObjects = checkpointSnapshot.getStateObjects();
+            Path path = Path.of(currentFilename + getExtension(PersistenceFormat.CHECKPOINT));
+            Path temporaryPath = Path.of(currentFilename + getExtension(PersistenceFormat.CHECKPOINT) + ".tmp");
+            checkpointSnapshot.write(temporaryPath);
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeLatency = System.nanoTime() - writeStartTime;
+            bytesWritten += checkpointSnapshot.getLength();
+            snapshotsWritten++;
+            return null;
+        });
+    }
+
+    /**
+     * Waits until snapshot being written asynchronously has completed.
+     *
+     * @throws IOException throws exception if writing of snapshot has failed.
+     */
+    public void waitForSnapshot() throws IOException {
+        if (pendingSnapshot == null) return;
+        try {
+            pendingSnapshot.get();
+            snapshotFailure = null;
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for snapshot to complete.", interruptedException);
+        }
+        catch (ExecutionException executionException) {
+            snapshotFailure = executionException.getCause() instanceof IOException ioException ? ioException : new IOException(executionException.getCause());
+            throw snapshotFailure;
+        }
+        finally {
+            pendingSnapshot = null;
+        }
+    }
+
+    /**
+     * Waits until snapshot being written asynchronously has completed and shuts down background thread writing snapshots.<br>
+     * Background thread is created again if snapshots are taken after shutdown. First snapshot after shutdown is captured fully by training thread.<br>
+     *
+     * @throws IOException throws exception if writing of snapshot has failed.
+     */
+    public void shutdown() throws IOException {
+        try {
+            waitForSnapshot();
+        }
+        finally {
+            stateObjects = null;
+            if (snapshotExecutor != null) {
+                snapshotExecutor.shutdown();
+                snapshotExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Returns failure of latest asynchronous snapshot. Failure remains available after neural network is stopped.
+     *
+     * @return failure of latest asynchronous snapshot or null if latest snapshot succeeded.
+     */
+    public IOException getSnapshotFailure() {
+        return snapshotFailure;
+    }
+
+    /**
+     * Returns time taken by training thread to capture latest asynchronous snapshot in milliseconds. Training is paused only for capture duration which is time to copy state objects except for first snapshot.
+     *
+     * @return time taken to capture latest snapshot in milliseconds.
+     */
+    public double getCaptureLatency() {
+        return captureLatency / 1000000.0;
+    }
+
+    /**
+     * Returns time taken to write latest snapshot in milliseconds.
+     *
+     * @return time taken to write latest snapshot in milliseconds.
+     */
+    public double getWriteLatency() {
+        return writeLatency / 1000000.0;
+    }
+
+    /**
+     * Returns total number of bytes written into snapshot files.
+     *
+     * @return total number of bytes written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns number of snapshots written.
+     *
+     * @return number of snapshots written.
+     */
+    public int getSnapshotsWritten() {
+        return snapshotsWritten;
+    }
+
     /**
      * Resets snapshots counters.
      *
@@ -148,14 +391,43 @@ public class Persistence implements Serializable {
     }
 
     /**
-     * Saves neural network into file.
+     * Returns file extension of format.
+     *
+     * @param format format.
+     * @return file extension of format.
+     */
+    private static String getExtension(PersistenceFormat format) {
+        return switch (format) {
+            case SERIALIZATION -> ".ser";
+            case CHECKPOINT -> ".sannet";
+        };
+    }
+
+    /**
+     * Saves neural network into file via Java serialization.
      *
      * @param filename file name into which persistent neural network data is to be stored.
      * @param neuralNetwork reference to neural network instance to be made persistent.
      * @throws IOException throws exception if serialization of neural network object into file fails.
      */
     public static void saveNeuralNetwork(String filename, NeuralNetwork neuralNetwork) throws IOException {
-        FileOutputStream fileOutputStream = new FileOutputStream(filename + ".ser");
+        saveNeuralNetwork(filename, neuralNetwork, PersistenceFormat.SERIALIZATION);
+    }
+
+    /**
+     * Saves neural network into file in given format.
+     *
+     * @param filename file name into which persistent neural network data is to be stored.
+     * @param neuralNetwork reference to neural network instance to be made persistent.
+     * @param format format in which neural network is stored.
+     * @throws IOException throws exception if serialization of neural network object into file fails.
+     */
+    public static void saveNeuralNetwork(String filename, NeuralNetwork neuralNetwork, PersistenceFormat format) throws IOException {
+        if (format == PersistenceFormat.CHECKPOINT) {
+            Checkpoint.write(Path.of(filename + getExtension(format)), neuralNetwork);
+            return;
+        }
+        FileOutputStream fileOutputStream = new FileOutputStream(filename + getExtension(format));
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
         objectOutputStream.writeObject(neuralNetwork);
         objectOutputStream.flush();
@@ -163,7 +435,8 @@ public class Persistence implements Serializable {
     }
 
     /**
-     * Restores neural network from file.
+     * Restores neural network from file.<br>
+     * If both Java serialization file (.ser) and binary checkpoint file (.sannet) exist neural network is restored from more recently modified file.<br>
      *
      * @param filename file name from which persistent neural network data is restored from.
      * @return de-serialized neural network instance.
@@ -171,7 +444,24 @@ public class Persistence implements Serializable {
      * @throws ClassNotFoundException throws exception if instantiation of neural network from serialized object stream fails.
      */
     public static NeuralNetwork restoreNeuralNetwork(String filename) throws IOException, ClassNotFoundException {
-        FileInputStream fileInputStream = new FileInputStream(filename + ".ser");
+        Path checkpointPath = Path.of(filename + getExtension(PersistenceFormat.CHECKPOINT));
+        Path serializationPath = Path.of(filename + getExtension(PersistenceFormat.SERIALIZATION));
+        boolean restoreCheckpoint = Checkpoint.isCheckpoint(checkpointPath) && (!Files.exists(serializationPath) || Files.getLastModifiedTime(checkpointPath).compareTo(Files.getLastModifiedTime(serializationPath)) >= 0);
+        return restoreNeuralNetwork(filename, restoreCheckpoint ? PersistenceFormat.CHECKPOINT : PersistenceFormat.SERIALIZATION);
+    }
+
+    /**
+     * Restores neural network from file in given format.
+     *
+     * @param filename file name from which persistent neural network data is restored from.
+     * @param format format in which neural network is stored.
+     * @return de-serialized neural network instance.
+     * @throws IOException throws exception if deserialization of neural network object from file fails.
+     * @throws ClassNotFoundException throws exception if instantiation of neural network from serialized object stream fails.
+     */
+    public static NeuralNetwork restoreNeuralNetwork(String filename, PersistenceFormat format) throws IOException, ClassNotFoundException {
+        if (format == PersistenceFormat.CHECKPOINT) return Checkpoint.read(Path.of(filename + getExtension(format)));
+        FileInputStream fileInputStream = new FileInputStream(filename + getExtension(format));
         ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);
         NeuralNetwork neuralNetwork = (NeuralNetwork)objectInputStream.readObject();
         objectInputStream.close();
@@ -0,0 +1,26 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+/**
+ * Defines supported file formats for storing neural network.
+ *
+ */
+public enum PersistenceFormat {
+
+    /**
+     * Java serialization (.ser)
+     *
+     */
+    SERIALIZATION,
+
+    /**
+     * Binary checkpoint with topology descriptor and binary weight sidecar (.sannet)
+     *
+     */
+    CHECKPOINT
+
+}
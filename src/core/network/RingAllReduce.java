@@ -0,0 +1,342 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements ring all-reduce of flattened values over NIO socket connections between worker processes.<br>
+ * Workers form ring where each worker is connected to its successor and accepts connection from its predecessor.<br>
+ * Values are split into one chunk per worker. In reduce-scatter phase chunks are passed around ring and summed so that each worker ends up with one fully reduced chunk.
+ * In all-gather phase fully reduced chunks are passed around ring and copied so that all workers end up with identical sums.<br>
+ * Each phase transfers each value number of workers minus one times hence traffic per worker is independent of number of workers.<br>
+ * Sending and receiving is multiplexed by selector so that chunks larger than socket buffers do not deadlock ring.
+ * Exchange fails if no progress is made within timeout e.g. because worker has stalled or died.<br>
+ *
+ */
+public class RingAllReduce {
+
+    /**
+     * Magic number of handshake identifying connecting worker.
+     *
+     */
+    private static final int MAGIC = 0x53414E4E;
+
+    /**
+     * Interval in milliseconds between attempts to connect to successor worker.
+     *
+     */
+    private static final long CONNECT_RETRY_INTERVAL = 50;
+
+    /**
+     * Rank of this worker.
+     *
+     */
+    private final int rank;
+
+    /**
+     * Addresses of workers by rank.
+     *
+     */
+    private final ArrayList<InetSocketAddress> workerAddresses;
+
+    /**
+     * Maximum time in milliseconds waited for progress of exchange.
+     *
+     */
+    private final long timeout;
+
+    /**
+     * Maximum time in milliseconds waited for ring to be connected.
+     *
+     */
+    private final long connectTimeout;
+
+    /**
+     * Server socket channel accepting connection from predecessor worker.
+     *
+     */
+    private ServerSocketChannel serverSocketChannel;
+
+    /**
+     * Socket channel connected to successor worker.
+     *
+     */
+    private SocketChannel nextChannel;
+
+    /**
+     * Socket channel connected to predecessor worker.
+     *
+     */
+    private SocketChannel previousChannel;
+
+    /**
+     * Selector multiplexing sending and receiving.
+     *
+     */
+    private Selector selector;
+
+    /**
+     * Selection key of channel connected to successor worker.
+     *
+     */
+    private SelectionKey nextKey;
+
+    /**
+     * Selection key of channel connected to predecessor worker.
+     *
+     */
+    private SelectionKey previousKey;
+
+    /**
+     * Buffer for sent chunk.
+     *
+     */
+    private ByteBuffer sendBuffer;
+
+    /**
+     * Buffer for received chunk.
+     *
+     */
+    private ByteBuffer receiveBuffer;
+
+    /**
+     * Constructor for ring all-reduce.
+     *
+     * @param rank rank of this worker.
+     * @param workerAddresses addresses of workers by rank.
+     * @param timeout maximum time in milliseconds waited for progress of exchange.
+     * @param connectTimeout maximum time in milliseconds waited for ring to be connected.
+     * @throws NeuralNetworkException throws exception if worker addresses are not defined or rank is out of range.
+     */
+    public RingAllReduce(int rank, List<InetSocketAddress> workerAddresses, long timeout, long connectTimeout) throws NeuralNetworkException {
+        if (workerAddresses == null || workerAddresses.isEmpty()) throw new NeuralNetworkException("Worker addresses are not defined.");
+        if (rank < 0 || rank >= workerAddresses.size()) throw new NeuralNetworkException("Rank of worker must be between 0 and " + (workerAddresses.size() - 1) + ".");
+        if (timeout < 1 || connectTimeout < 1) throw new NeuralNetworkException("Timeouts must be positive.");
+        this.rank = rank;
+        this.workerAddresses = new ArrayList<>(workerAddresses);
+        this.timeout = timeout;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Returns rank of this worker.
+     *
+     * @return rank of this worker.
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Returns number of workers.
+     *
+     * @return number of workers.
+     */
+    public int getNumberOfWorkers() {
+        return workerAddresses.size();
+    }
+
+    /**
+     * Connects ring. Binds to address of this worker, connects to successor worker and accepts connection from predecessor worker.<br>
+     * Connection to successor is retried until connect timeout as workers may be started in any order. Connections are closed if connecting fails.<br>
+     *
+     * @throws IOException throws exception if socket operation fails.
+     * @throws NeuralNetworkException throws exception if ring is not connected within connect timeout or predecessor is not expected worker.
+     */
+    public void connect() throws IOException, NeuralNetworkException {
+        if (getNumberOfWorkers() == 1 || selector != null) return;
+        try {
+            connectRing();
+        }
+        catch (IOException | NeuralNetworkException exception) {
+            close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Binds to address of this worker, connects to successor worker and accepts connection from predecessor worker.
+     *
+     * @throws IOException throws exception if socket operation fails.
+     * @throws NeuralNetworkException throws exception if ring is not connected within connect timeout or predecessor is not expected worker.
+     */
+    private void connectRing() throws IOException, NeuralNetworkException {
+        long deadline = System.currentTimeMillis() + connectTimeout;
+
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverSocketChannel.bind(workerAddresses.get(rank));
+
+        int nextRank = (rank + 1) % getNumberOfWorkers();
+        while (nextChannel == null) {
+            try {
+                nextChannel = SocketChannel.open(workerAddresses.get(nextRank));
+            }
+            catch (ConnectException exception) {
+                if (System.currentTimeMillis() >= deadline) throw new NeuralNetworkException("Connecting to worker " + nextRank + " timed out.");
+                try {
+                    Thread.sleep(CONNECT_RETRY_INTERVAL);
+                }
+                catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new NeuralNetworkException("Connecting to worker " + nextRank + " was interrupted.");
+                }
+            }
+        }
+        nextChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ByteBuffer handshake = ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        handshake.putInt(MAGIC).putInt(rank).putInt(getNumberOfWorkers()).flip();
+        while (handshake.hasRemaining()) nextChannel.write(handshake);
+
+        selector = Selector.open();
+        serverSocketChannel.configureBlocking(false);
+        SelectionKey acceptKey = serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        while (previousChannel == null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || selector.select(remaining) == 0 && System.currentTimeMillis() >= deadline) throw new NeuralNetworkException("Waiting for connection from worker " + getPreviousRank() + " timed out.");
+            selector.selectedKeys().clear();
+            previousChannel = serverSocketChannel.accept();
+        }
+        acceptKey.cancel();
+        selector.selectNow();
+        previousChannel.configureBlocking(false);
+        previousChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        previousKey = previousChannel.register(selector, SelectionKey.OP_READ);
+
+        handshake.clear();
+        while (handshake.hasRemaining()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) throw new NeuralNetworkException("Handshake with worker " + getPreviousRank() + " timed out.");
+            selector.select(remaining);
+            selector.selectedKeys().clear();
+            if (previousChannel.read(handshake) < 0) throw new IOException("Connection was closed by worker " + getPreviousRank() + ".");
+        }
+        handshake.flip();
+        if (handshake.getInt() != MAGIC || handshake.getInt() != getPreviousRank() || handshake.getInt() != getNumberOfWorkers()) {
+            throw new NeuralNetworkException("Connection was not made by worker " + getPreviousRank() + " of ring with " + getNumberOfWorkers() + " workers.");
+        }
+        previousKey.interestOps(0);
+
+        nextChannel.configureBlocking(false);
+        nextKey = nextChannel.register(selector, 0);
+    }
+
+    /**
+     * Returns rank of predecessor worker.
+     *
+     * @return rank of predecessor worker.
+     */
+    private int getPreviousRank() {
+        return (rank + getNumberOfWorkers() - 1) % getNumberOfWorkers();
+    }
+
+    /**
+     * Sums values over workers in place. All workers must call all-reduce with equal number of values.<br>
+     * After all-reduce values of all workers are identical at bit level.<br>
+     *
+     * @param values values to be summed.
+     * @throws IOException throws exception if socket operation fails.
+     * @throws NeuralNetworkException throws exception if ring is not connected or exchange times out.
+     */
+    public void allReduce(double[] values) throws IOException, NeuralNetworkException {
+        int numberOfWorkers = getNumberOfWorkers();
+        if (numberOfWorkers == 1) return;
+        if (selector == null) throw new NeuralNetworkException("Ring is not connected.");
+        int maxChunkLength = (values.length + numberOfWorkers - 1) / numberOfWorkers;
+        if (sendBuffer == null || sendBuffer.capacity() < maxChunkLength * Double.BYTES) {
+            sendBuffer = ByteBuffer.allocateDirect(maxChunkLength * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            receiveBuffer = ByteBuffer.allocateDirect(maxChunkLength * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        for (int step = 0; step < numberOfWorkers - 1; step++) {
+            exchange(values, getChunk(rank - step), getChunk(rank - step - 1), true);
+        }
+        for (int step = 0; step < numberOfWorkers - 1; step++) {
+            exchange(values, getChunk(rank + 1 - step), getChunk(rank - step), false);
+        }
+    }
+
+    /**
+     * Returns chunk index wrapped into range of workers.
+     *
+     * @param chunk chunk index.
+     * @return wrapped chunk index.
+     */
+    private int getChunk(int chunk) {
+        return Math.floorMod(chunk, getNumberOfWorkers());
+    }
+
+    /**
+     * Sends chunk to successor worker and concurrently receives chunk from predecessor worker.
+     *
+     * @param values values.
+     * @param sendChunk index of sent chunk.
+     * @param receiveChunk index of received chunk.
+     * @param add if true received values are added to values otherwise values are replaced by received values.
+     * @throws IOException throws exception if socket operation fails.
+     * @throws NeuralNetworkException throws exception if no progress is made within timeout.
+     */
+    private void exchange(double[] values, int sendChunk, int receiveChunk, boolean add) throws IOException, NeuralNetworkException {
+        int numberOfWorkers = getNumberOfWorkers();
+        int sendStart = (int)((long)sendChunk * values.length / numberOfWorkers);
+        int sendEnd = (int)((long)(sendChunk + 1) * values.length / numberOfWorkers);
+        int receiveStart = (int)((long)receiveChunk * values.length / numberOfWorkers);
+        int receiveEnd = (int)((long)(receiveChunk + 1) * values.length / numberOfWorkers);
+
+        sendBuffer.clear();
+        for (int index = sendStart; index < sendEnd; index++) sendBuffer.putDouble(values[index]);
+        sendBuffer.flip();
+        receiveBuffer.clear();
+        receiveBuffer.limit((receiveEnd - receiveStart) * Double.BYTES);
+
+        if (sendBuffer.hasRemaining()) nextChannel.write(sendBuffer);
+        if (receiveBuffer.hasRemaining() && previousChannel.read(receiveBuffer) < 0) throw new IOException("Connection was closed by worker " + getPreviousRank() + ".");
+        while (sendBuffer.hasRemaining() || receiveBuffer.hasRemaining()) {
+            nextKey.interestOps(sendBuffer.hasRemaining() ? SelectionKey.OP_WRITE : 0);
+            previousKey.interestOps(receiveBuffer.hasRemaining() ? SelectionKey.OP_READ : 0);
+            if (selector.select(timeout) == 0) throw new NeuralNetworkException("Gradient exchange timed out after " + timeout + " ms waiting for slow or failed worker.");
+            selector.selectedKeys().clear();
+            if (sendBuffer.hasRemaining()) nextChannel.write(sendBuffer);
+            if (receiveBuffer.hasRemaining() && previousChannel.read(receiveBuffer) < 0) throw new IOException("Connection was closed by worker " + getPreviousRank() + ".");
+        }
+        nextKey.interestOps(0);
+        previousKey.interestOps(0);
+
+        receiveBuffer.flip();
+        if (add) for (int index = receiveStart; index < receiveEnd; index++) values[index] += receiveBuffer.getDouble();
+        else for (int index = receiveStart; index < receiveEnd; index++) values[index] = receiveBuffer.getDouble();
+    }
+
+    /**
+     * Closes connections of ring.
+     *
+     */
+    public void close() {
+        for (AutoCloseable closeable : new AutoCloseable[] {selector, nextChannel, previousChannel, serverSocketChannel}) {
+            try {
+                if (closeable != null) closeable.close();
+            }
+            catch (Exception ignored) {
+            }
+        }
+        selector = null;
+        nextChannel = null;
+        previousChannel = null;
+        serverSocketChannel = null;
+    }
+
+}
@@ -11,7 +11,10 @@ import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunctionType;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.ArrayList;
 
 /**
  * Implements AMSGrad optimizer.<br>
@@ -21,6 +24,9 @@ import java.util.HashMap;
  */
 public class AMSGrad extends AbstractOptimizer {
 
+    @Serial
+    private static final long serialVersionUID = -5857388556781381474L;
+
     /**
      * Parameter name types for AMSGrad.
      *     - learningRate: learning rate for optimizer. Default value 0.001.<br>
@@ -51,16 +57,16 @@ public class AMSGrad extends AbstractOptimizer {
     private double beta2;
 
     /**
-     * Hash map to store first moments (means).
+     * Slots to store first moments (means) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> m = new HashMap<>();
+    private ArrayList<Matrix> m = new ArrayList<>();
 
     /**
-     * Hash map to store second moments (uncentered variances).
+     * Slots to store second moments (uncentered variances) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> v = new HashMap<>();
+    private ArrayList<Matrix> v = new ArrayList<>();
 
     /**
      * Default constructor for AMSGrad.
@@ -113,6 +119,7 @@ public class AMSGrad extends AbstractOptimizer {
      *
      */
     public void reset() {
+        resetParameterIndices();
         m.clear();
         v.clear();
     }
@@ -127,23 +134,70 @@ public class AMSGrad extends AbstractOptimizer {
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
     public void optimize(Matrix matrix, Matrix matrixGradient) throws MatrixException, DynamicParamException {
+        int parameterIndex = getParameterIndex(matrix);
+
+        Matrix mM = getParameterMatrix(m, parameterIndex, matrix);
+        Matrix vM = getParameterMatrix(v, parameterIndex, matrix);
+
+        int size = matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+        double[] weights = getData(matrix, size);
+        double[] gradients = getData(matrixGradient, size);
+        double[] moments1 = getData(mM, size);
+        double[] moments2 = getData(vM, size);
+        if (weights != null && gradients != null && moments1 != null && moments2 != null) {
+            optimize(weights, gradients, moments1, moments2);
+            return;
+        }
+
         // mt = β1*mt − 1 + (1 − β1)*gt
-        Matrix mM = getParameterMatrix(m, matrix);
         mM = mM.multiply(beta1).add(matrixGradient.multiply(1 - beta1));
-        setParameterMatrix(m, matrix, mM);
+        setParameterMatrix(m, parameterIndex, mM);
 
         // vt = β2*vt − 1 + (1 − β2)*g2t
-        Matrix vM = getParameterMatrix(v, matrix);
         Matrix vM_temp = vM.multiply(beta2).add(matrixGradient.power(2).multiply(1 - beta2));
 
         // vt = max(vt, vt-1)
-        vM = vM_temp.max(v.get(matrix));
-        setParameterMatrix(v, matrix, vM);
+        vM = vM_temp.max(vM);
+        setParameterMatrix(v, parameterIndex, vM);
 
         // θt+1 = θt − η / (√^vt + ϵ) * mt
         double epsilon = 10E-8;
         matrix.subtractBy(mM.divide(vM.add(epsilon).apply(UnaryFunctionType.SQRT)).multiply(learningRate));
     }
 
-}
+    /**
+     * Optimizes weights in place with fused kernel that reads each gradient once and updates moments and weights without temporary matrices.
+     *
+     * @param weights weights to be optimized.
+     * @param gradients weight gradients.
+     * @param moments1 first moments (means).
+     * @param moments2 maximum of second moments (uncentered variances).
+     */
+    private void optimize(double[] weights, double[] gradients, double[] moments1, double[] moments2) {
+        double epsilon = 10E-8;
+        for (int index = 0; index < weights.length; index++) {
+            double gradient = gradients[index];
+            double moment1 = moments1[index] = moments1[index] * beta1 + gradient * (1 - beta1);
+            double moment2 = moments2[index] = Math.max(moments2[index] * beta2 + gradient * gradient * (1 - beta2), moments2[index]);
+            weights[index] -= moment1 / Math.sqrt(moment2 + epsilon) * learningRate;
+        }
+    }
+
+    /**
+     * Reads AMSGrad from object input stream. Moments stored in earlier format as hash maps by matrix are converted into parameter slots.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        learningRate = fields.get("learningRate", learningRate);
+        beta1 = fields.get("beta1", beta1);
+        beta2 = fields.get("beta2", beta2);
+        m = readParameterSlots(fields, "m");
+        v = readParameterSlots(fields, "v");
+    }
 
+}
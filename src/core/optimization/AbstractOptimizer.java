@@ -11,9 +11,14 @@ import utils.configurable.DynamicParamException;
 import utils.matrix.DMatrix;
 import utils.matrix.Matrix;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Implements abstract optimizer containing common functions for optimizers.
@@ -42,6 +47,18 @@ public abstract class AbstractOptimizer implements Configurable, Optimizer, Seri
      */
     private final String params;
 
+    /**
+     * Parameter indices of optimized matrices. Parameter index refers to optimizer state slots of matrix.
+     *
+     */
+    private HashMap<Matrix, Integer> parameterIndices = new HashMap<>();
+
+    /**
+     * Iteration counts of optimized matrices indexed by parameter index.
+     *
+     */
+    private int[] parameterIterations = new int[0];
+
     /**
      * Default constructor for AbstractOptimizer.
      *
@@ -103,6 +120,80 @@ public abstract class AbstractOptimizer implements Configurable, Optimizer, Seri
         return parameterMatrix;
     }
 
+    /**
+     * Returns parameter index of matrix. New parameter index is assigned when matrix is optimized for first time.
+     *
+     * @param matrix matrix.
+     * @return parameter index of matrix.
+     */
+    protected int getParameterIndex(Matrix matrix) {
+        Integer parameterIndex = parameterIndices.get(matrix);
+        if (parameterIndex == null) {
+            parameterIndices.put(matrix, parameterIndex = parameterIndices.size());
+            if (parameterIndex >= parameterIterations.length) parameterIterations = Arrays.copyOf(parameterIterations, Math.max(8, 2 * parameterIterations.length));
+        }
+        return parameterIndex;
+    }
+
+    /**
+     * Increments and returns iteration count of parameter.
+     *
+     * @param parameterIndex parameter index.
+     * @return incremented iteration count.
+     */
+    protected int incrementIteration(int parameterIndex) {
+        return ++parameterIterations[parameterIndex];
+    }
+
+    /**
+     * Returns existing or new preallocated parameter slot matrix for parameter.
+     *
+     * @param parameterSlots parameter slots indexed by parameter index.
+     * @param parameterIndex parameter index.
+     * @param matrix matrix.
+     * @return parameter slot matrix.
+     */
+    protected Matrix getParameterMatrix(ArrayList<Matrix> parameterSlots, int parameterIndex, Matrix matrix) {
+        while (parameterSlots.size() <= parameterIndex) parameterSlots.add(null);
+        Matrix parameterMatrix = parameterSlots.get(parameterIndex);
+        if (parameterMatrix == null) parameterSlots.set(parameterIndex, parameterMatrix = new DMatrix(matrix.getRows(), matrix.getColumns(), matrix.getDepth()));
+        return parameterMatrix;
+    }
+
+    /**
+     * Sets parameter slot matrix for parameter.
+     *
+     * @param parameterSlots parameter slots indexed by parameter index.
+     * @param parameterIndex parameter index.
+     * @param value value.
+     */
+    protected void setParameterMatrix(ArrayList<Matrix> parameterSlots, int parameterIndex, Matrix value) {
+        parameterSlots.set(parameterIndex, value);
+    }
+
+    /**
+     * Resets parameter indices and iteration counts.
+     *
+     */
+    protected void resetParameterIndices() {
+        parameterIndices.clear();
+        parameterIterations = new int[0];
+    }
+
+    /**
+     * Returns underlying data array of matrix if it can be updated directly by fused optimizer kernel.<br>
+     * Data array is returned only for unmasked and untransposed dense matrix of given size.<br>
+     *
+     * @param matrix matrix.
+     * @param size expected size of data array.
+     * @return data array of matrix or null if direct access is not possible.
+     */
+    protected static double[] getData(Matrix matrix, int size) {
+        if (!(matrix instanceof DMatrix dMatrix) || matrix.isTransposed()) return null;
+        double[] data = dMatrix.getData();
+        return data != null && data.length == size ? data : null;
+    }
+
     /**
      * Set value to specific matrix.
      *
@@ -114,4 +205,62 @@ public abstract class AbstractOptimizer implements Configurable, Optimizer, Seri
         parameterMatrices.put(matrix, value);
     }
 
+    /**
+     * Reads optimizer from object input stream. Optimizers stored in earlier format get empty parameter indices.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        objectInputStream.defaultReadObject();
+        if (parameterIndices == null) {
+            parameterIndices = new HashMap<>();
+            parameterIterations = new int[0];
+        }
+    }
+
+    /**
+     * Reads parameter slots from serialized fields. Parameter matrices stored in earlier format as hash map by matrix are assigned into slots by parameter index.
+     *
+     * @param fields serialized fields.
+     * @param name name of field.
+     * @return parameter slots.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @SuppressWarnings("unchecked")
+    protected ArrayList<Matrix> readParameterSlots(ObjectInputStream.GetField fields, String name) throws IOException, ClassNotFoundException {
+        Object parameterMatrices = fields.get(name, null);
+        if (parameterMatrices instanceof ArrayList) return (ArrayList<Matrix>)parameterMatrices;
+        ArrayList<Matrix> parameterSlots = new ArrayList<>();
+        if (parameterMatrices instanceof HashMap) {
+            for (Map.Entry<Matrix, Matrix> entry : ((HashMap<Matrix, Matrix>)parameterMatrices).entrySet()) {
+                int parameterIndex = getParameterIndex(entry.getKey());
+                while (parameterSlots.size() <= parameterIndex) parameterSlots.add(null);
+                parameterSlots.set(parameterIndex, entry.getValue());
+            }
+        }
+        return parameterSlots;
+    }
+
+    /**
+     * Reads iteration counts stored in earlier format as hash map by matrix from serialized fields.
+     *
+     * @param fields serialized fields.
+     * @param name name of field.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @SuppressWarnings("unchecked")
+    protected void readParameterIterations(ObjectInputStream.GetField fields, String name) throws IOException, ClassNotFoundException {
+        if (fields.getObjectStreamClass().getField(name) == null) return;
+        if (!(fields.get(name, null) instanceof HashMap<?, ?> iterations)) return;
+        for (Map.Entry<Matrix, Integer> entry : ((HashMap<Matrix, Integer>)iterations).entrySet()) {
+            int parameterIndex = getParameterIndex(entry.getKey());
+            parameterIterations[parameterIndex] = entry.getValue();
+        }
+    }
+
 }
@@ -11,7 +11,10 @@ import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunctionType;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.ArrayList;
 
 /**
  * Implements Nadam optimizer.<br>
@@ -21,6 +24,9 @@ import java.util.HashMap;
  */
 public class NAdam extends AbstractOptimizer {
 
+    @Serial
+    private static final long serialVersionUID = 663610273966867702L;
+
     /**
      * Parameter name types for NAdam.
      *     - learningRate: learning rate for optimizer. Default value 0.001.<br>
@@ -51,22 +57,16 @@ public class NAdam extends AbstractOptimizer {
     private double beta2;
 
     /**
-     * Hash map to store iteration counts.
-     *
-     */
-    private final HashMap<Matrix, Integer> iterations = new HashMap<>();
-
-    /**
-     * Hash map to store first moments (means).
+     * Slots to store first moments (means) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> m = new HashMap<>();
+    private ArrayList<Matrix> m = new ArrayList<>();
 
     /**
-     * Hash map to store second moments (uncentered variances).
+     * Slots to store second moments (uncentered variances) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> v = new HashMap<>();
+    private ArrayList<Matrix> v = new ArrayList<>();
 
     /**
      * Default constructor for Nadam.
@@ -119,7 +119,7 @@ public class NAdam extends AbstractOptimizer {
      *
      */
     public void reset() {
-        iterations.clear();
+        resetParameterIndices();
         m.clear();
         v.clear();
     }
@@ -134,19 +134,29 @@ public class NAdam extends AbstractOptimizer {
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
     public void optimize(Matrix matrix, Matrix matrixGradient) throws MatrixException, DynamicParamException {
-        int iteration;
-        iterations.put(matrix, iteration = iterations.getOrDefault(matrix, 0) + 1);
-
+        int parameterIndex = getParameterIndex(matrix);
+        int iteration = incrementIteration(parameterIndex);
+
+        Matrix mM = getParameterMatrix(m, parameterIndex, matrix);
+        Matrix vM = getParameterMatrix(v, parameterIndex, matrix);
+
+        int size = matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+        double[] weights = getData(matrix, size);
+        double[] gradients = getData(matrixGradient, size);
+        double[] moments1 = getData(mM, size);
+        double[] moments2 = getData(vM, size);
+        if (weights != null && gradients != null && moments1 != null && moments2 != null) {
+            optimize(weights, gradients, moments1, moments2, iteration);
+            return;
+        }
 
         // mt = β1*mt − 1 + (1 − β1)*gt
-        Matrix mM = getParameterMatrix(m, matrix);
         mM = mM.multiply(beta1).add(matrixGradient.multiply(1 - beta1));
-        setParameterMatrix(m, matrix, mM);
+        setParameterMatrix(m, parameterIndex, mM);
 
         // vt = β2*vt − 1 + (1 − β2)*g2t
-        Matrix vM = getParameterMatrix(v, matrix);
         vM = vM.multiply(beta2).add(matrixGradient.power(2).multiply(1 - beta2));
-        setParameterMatrix(v, matrix, vM);
+        setParameterMatrix(v, parameterIndex, vM);
 
         // mt = mt / (1 − βt1)
         Matrix mM_hat = mM.divide(1 - Math.pow(beta1, iteration));
@@ -159,4 +169,44 @@ public class NAdam extends AbstractOptimizer {
         matrix.subtractBy(mM_hat.multiply(beta1).add(matrixGradient.multiply((1 - beta1) / (1 - Math.pow(beta1, iteration)))).divide(vM_hat.add(epsilon).apply(UnaryFunctionType.SQRT)).multiply(learningRate));
     }
 
+    /**
+     * Optimizes weights in place with fused kernel that reads each gradient once and updates moments and weights without temporary matrices.
+     *
+     * @param weights weights to be optimized.
+     * @param gradients weight gradients.
+     * @param moments1 first moments (means).
+     * @param moments2 second moments (uncentered variances).
+     * @param iteration iteration count.
+     */
+    private void optimize(double[] weights, double[] gradients, double[] moments1, double[] moments2, int iteration) {
+        double beta1Correction = 1 - Math.pow(beta1, iteration);
+        double beta2Correction = 1 - Math.pow(beta2, iteration);
+        double gradientScale = (1 - beta1) / beta1Correction;
+        double epsilon = 10E-8;
+        for (int index = 0; index < weights.length; index++) {
+            double gradient = gradients[index];
+            double moment1 = moments1[index] = moments1[index] * beta1 + gradient * (1 - beta1);
+            double moment2 = moments2[index] = moments2[index] * beta2 + gradient * gradient * (1 - beta2);
+            weights[index] -= (moment1 / beta1Correction * beta1 + gradient * gradientScale) / Math.sqrt(moment2 / beta2Correction + epsilon) * learningRate;
+        }
+    }
+
+    /**
+     * Reads NAdam from object input stream. Moments stored in earlier format as hash maps by matrix are converted into parameter slots.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        learningRate = fields.get("learningRate", learningRate);
+        beta1 = fields.get("beta1", beta1);
+        beta2 = fields.get("beta2", beta2);
+        readParameterIterations(fields, "iterations");
+        m = readParameterSlots(fields, "m");
+        v = readParameterSlots(fields, "v");
+    }
+
 }
@@ -11,7 +11,10 @@ import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunctionType;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.ArrayList;
 
 /**
  * Implements Rectified Adam optimizer.<br>
@@ -21,6 +24,9 @@ import java.util.HashMap;
  */
 public class RAdam extends AbstractOptimizer {
 
+    @Serial
+    private static final long serialVersionUID = 5302016606265884938L;
+
     /**
      * Parameter name types for RAdam.
      *     - learningRate: learning rate for optimizer. Default value 0.001.<br>
@@ -50,12 +56,6 @@ public class RAdam extends AbstractOptimizer {
      */
     private double beta2;
 
-    /**
-     * Hash map to store iteration counts.
-     *
-     */
-    private final HashMap<Matrix, Integer> iterations = new HashMap<>();
-
     /**
      * Maximum length of approximated SMA.
      *
@@ -63,16 +63,16 @@ public class RAdam extends AbstractOptimizer {
     private double pinf;
 
     /**
-     * Hash map to store first moments (means).
+     * Slots to store first moments (means) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> m = new HashMap<>();
+    private ArrayList<Matrix> m = new ArrayList<>();
 
     /**
-     * Hash map to store second moments (uncentered variances).
+     * Slots to store second moments (uncentered variances) indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> v = new HashMap<>();
+    private ArrayList<Matrix> v = new ArrayList<>();
 
     /**
      * Default constructor for RAdam.
@@ -127,7 +127,7 @@ public class RAdam extends AbstractOptimizer {
      *
      */
     public void reset() {
-        iterations.clear();
+        resetParameterIndices();
         m.clear();
         v.clear();
     }
@@ -142,26 +142,38 @@ public class RAdam extends AbstractOptimizer {
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
     public void optimize(Matrix matrix, Matrix matrixGradient) throws MatrixException, DynamicParamException {
-        int iteration;
-        iterations.put(matrix, iteration = iterations.getOrDefault(matrix, 0) + 1);
-
-        Matrix mM = m.get(matrix);
-        mM = mM == null ? matrixGradient.multiply(1 - beta1) : mM.multiply(beta1).add(matrixGradient.multiply(1 - beta1));
-        setParameterMatrix(m, matrix, mM);
+        int parameterIndex = getParameterIndex(matrix);
+        int iteration = incrementIteration(parameterIndex);
 
-        Matrix vM = v.get(matrix);
-        vM = vM == null ? matrixGradient.power(2).multiply(1 - beta2) : vM.multiply(beta2).add(matrixGradient.power(2).multiply(1 - beta2));
-        setParameterMatrix(v, matrix, vM);
+        Matrix mM = getParameterMatrix(m, parameterIndex, matrix);
+        Matrix vM = getParameterMatrix(v, parameterIndex, matrix);
 
         double beta1Iteration = Math.pow(beta1, iteration);
         double beta2Iteration = Math.pow(beta2, iteration);
 
-        Matrix mMhat = mM.divide(1 - beta1Iteration);
-
         double stepSize = learningRate;
         double pt = pinf - 2 * iteration * beta2Iteration / (1 - beta2Iteration);
+        if (pt > 4) stepSize *=  Math.sqrt((1 - beta2Iteration) * ((pt - 4) * (pt - 2) * pinf) / ((pinf - 4) * (pinf - 2) * pt));
+
+        int size = matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+        double[] weights = getData(matrix, size);
+        double[] gradients = getData(matrixGradient, size);
+        double[] moments1 = getData(mM, size);
+        double[] moments2 = getData(vM, size);
+        if (weights != null && gradients != null && moments1 != null && moments2 != null) {
+            optimize(weights, gradients, moments1, moments2, 1 - beta1Iteration, stepSize, pt > 4);
+            return;
+        }
+
+        mM = mM.multiply(beta1).add(matrixGradient.multiply(1 - beta1));
+        setParameterMatrix(m, parameterIndex, mM);
+
+        vM = vM.multiply(beta2).add(matrixGradient.power(2).multiply(1 - beta2));
+        setParameterMatrix(v, parameterIndex, vM);
+
+        Matrix mMhat = mM.divide(1 - beta1Iteration);
+
         if (pt > 4) {
-            stepSize *=  Math.sqrt((1 - beta2Iteration) * ((pt - 4) * (pt - 2) * pinf) / ((pinf - 4) * (pinf - 2) * pt));
             double epsilon = 10E-8;
             matrix.subtractBy(mMhat.divide(vM.apply(UnaryFunctionType.SQRT).add(epsilon)).multiply(stepSize));
         }
@@ -170,5 +182,44 @@ public class RAdam extends AbstractOptimizer {
         }
     }
 
-}
+    /**
+     * Optimizes weights in place with fused kernel that reads each gradient once and updates moments and weights without temporary matrices.
+     *
+     * @param weights weights to be optimized.
+     * @param gradients weight gradients.
+     * @param moments1 first moments (means).
+     * @param moments2 second moments (uncentered variances).
+     * @param beta1Correction bias correction of first moments.
+     * @param stepSize step size.
+     * @param rectified if true update is rectified by second moments otherwise not.
+     */
+    private void optimize(double[] weights, double[] gradients, double[] moments1, double[] moments2, double beta1Correction, double stepSize, boolean rectified) {
+        double epsilon = 10E-8;
+        for (int index = 0; index < weights.length; index++) {
+            double gradient = gradients[index];
+            double moment1 = moments1[index] = moments1[index] * beta1 + gradient * (1 - beta1);
+            double moment2 = moments2[index] = moments2[index] * beta2 + gradient * gradient * (1 - beta2);
+            weights[index] -= rectified ? moment1 / beta1Correction / (Math.sqrt(moment2) + epsilon) * stepSize : moment1 / beta1Correction * stepSize;
+        }
+    }
 
+    /**
+     * Reads RAdam from object input stream. Moments stored in earlier format as hash maps by matrix are converted into parameter slots.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        learningRate = fields.get("learningRate", learningRate);
+        beta1 = fields.get("beta1", beta1);
+        beta2 = fields.get("beta2", beta2);
+        pinf = fields.get("pinf", pinf);
+        readParameterIterations(fields, "iterations");
+        m = readParameterSlots(fields, "m");
+        v = readParameterSlots(fields, "v");
+    }
+
+}
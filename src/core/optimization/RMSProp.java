@@ -11,7 +11,10 @@ import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunctionType;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.ArrayList;
 
 /**
  * Implements RMSProp optimizer.<br>
@@ -21,6 +24,9 @@ import java.util.HashMap;
  */
 public class RMSProp extends AbstractOptimizer {
 
+    @Serial
+    private static final long serialVersionUID = -8985334032483574084L;
+
     /**
      * Parameter name types for RMSProp.
      *     - learningRate: learning rate for optimizer. Default value 0.001.<br>
@@ -43,10 +49,10 @@ public class RMSProp extends AbstractOptimizer {
     private double gamma;
 
     /**
-     * Hash map to store gradients from previous steps.
+     * Slots to store gradients from previous steps indexed by parameter index.
      *
      */
-    private final HashMap<Matrix, Matrix> eg2 = new HashMap<>();
+    private ArrayList<Matrix> eg2 = new ArrayList<>();
 
     /**
      * Default constructor for RMSProp.
@@ -96,6 +102,7 @@ public class RMSProp extends AbstractOptimizer {
      *
      */
     public void reset() {
+        resetParameterIndices();
         eg2.clear();
     }
 
@@ -109,14 +116,54 @@ public class RMSProp extends AbstractOptimizer {
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
     public void optimize(Matrix matrix, Matrix matrixGradient) throws MatrixException, DynamicParamException {
-        Matrix mEg2 = getParameterMatrix(eg2, matrix);
+        int parameterIndex = getParameterIndex(matrix);
+        Matrix mEg2 = getParameterMatrix(eg2, parameterIndex, matrix);
+
+        int size = matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+        double[] weights = getData(matrix, size);
+        double[] gradients = getData(matrixGradient, size);
+        double[] squaredGradients = getData(mEg2, size);
+        if (weights != null && gradients != null && squaredGradients != null) {
+            optimize(weights, gradients, squaredGradients);
+            return;
+        }
 
         mEg2 = mEg2.multiply(gamma).add(matrixGradient.power(2).multiply(1 - gamma));
-        setParameterMatrix(eg2, matrix, mEg2);
+        setParameterMatrix(eg2, parameterIndex, mEg2);
 
         double epsilon = 10E-8;
         matrix.subtractBy(matrixGradient.divide(mEg2.add(epsilon).apply(UnaryFunctionType.SQRT)).multiply(learningRate));
     }
 
-}
+    /**
+     * Optimizes weights in place with fused kernel that reads each gradient once and updates squared gradient average and weights without temporary matrices.
+     *
+     * @param weights weights to be optimized.
+     * @param gradients weight gradients.
+     * @param squaredGradients running average of squared gradients.
+     */
+    private void optimize(double[] weights, double[] gradients, double[] squaredGradients) {
+        double epsilon = 10E-8;
+        for (int index = 0; index < weights.length; index++) {
+            double gradient = gradients[index];
+            double squaredGradient = squaredGradients[index] = squaredGradients[index] * gamma + gradient * gradient * (1 - gamma);
+            weights[index] -= gradient / Math.sqrt(squaredGradient + epsilon) * learningRate;
+        }
+    }
 
+    /**
+     * Reads RMSProp from object input stream. Squared gradient averages stored in earlier format as hash maps by matrix are converted into parameter slots.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        learningRate = fields.get("learningRate", learningRate);
+        gamma = fields.get("gamma", gamma);
+        eg2 = readParameterSlots(fields, "eg2");
+    }
+
+}
@@ -8,6 +8,7 @@ package core.preprocess;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.SMatrix;
+import utils.sampling.Sequence;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -90,6 +91,20 @@ public class OneHotEncoder {
         return output;
     }
 
+    /**
+     * One hot encodes sequence by replacing each sample with one hot vector of given size positioned by value of sample.<br>
+     * Applicable as batch transform since encoding does not depend on other samples.<br>
+     *
+     * @param sequence sequence to be encoded.
+     * @param numberOfValues number of distinct values i.e. size of one hot vector.
+     * @throws MatrixException throws exception if value of sample exceeds number of values.
+     */
+    public static void encode(Sequence sequence, int numberOfValues) throws MatrixException {
+        for (int sampleIndex : sequence.sampleIndices()) {
+            sequence.put(sampleIndex, SMatrix.getOneHotVector(numberOfValues, (int)sequence.get(sampleIndex).getValue(0, 0, 0)));
+        }
+    }
+
     /**
      * Return mapping key corresponding to a specific value.
      *
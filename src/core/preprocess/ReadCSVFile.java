@@ -6,20 +6,108 @@
 package core.preprocess;
 
 import utils.matrix.*;
+import utils.matrix.operation.ComputePool;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 
 /**
  * Implements functionality for reading CVS file.<br>
+ * <br>
+ * File is split at line boundaries into chunks that are read in large blocks and parsed in parallel using shared compute pool.<br>
+ * Lines are tokenized directly from bytes without regular expressions or substring allocation when separator is literal string.
+ * Values are parsed by exact fast path (at most 15 significant digits and exponent within range of exactly representable powers of ten) and otherwise by Double.parseDouble.<br>
+ * Result is identical to reading file line by line with scanner and splitting lines with String.split (available as sequential reader).<br>
  *
  */
 public class ReadCSVFile {
 
+    /**
+     * Size of chunk parsed by single task in bytes.
+     *
+     */
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Size of buffer used when searching line boundaries in bytes.
+     *
+     */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Largest mantissa that is exactly representable as double.
+     *
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Powers of ten that are exactly representable as double.
+     *
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Implements definition of samples read from file.
+     *
+     * @param positions column positions used for sample.
+     * @param valueIndices indices of values within sample by column position.
+     * @param as2D if true 2D structure is assumed.
+     * @param rows number of rows of sample.
+     * @param columns number of columns of sample.
+     * @param asSparseMatrix if true samples are sparse matrices.
+     */
+    private record SampleDefinition(int[] positions, int[] valueIndices, boolean as2D, int rows, int columns, boolean asSparseMatrix) {
+
+        /**
+         * Constructor for sample definition.
+         *
+         * @param columnMap map from column position to value index.
+         * @param as2D if true 2D structure is assumed.
+         * @param rows number of rows of sample.
+         * @param columns number of columns of sample.
+         * @param asSparseMatrix if true samples are sparse matrices.
+         */
+        SampleDefinition(HashMap<Integer, Integer> columnMap, boolean as2D, int rows, int columns, boolean asSparseMatrix) {
+            this(new int[columnMap.size()], new int[columnMap.size()], as2D, rows, columns, asSparseMatrix);
+            int index = 0;
+            for (Map.Entry<Integer, Integer> entry : columnMap.entrySet()) {
+                positions[index] = entry.getKey();
+                valueIndices[index++] = entry.getValue();
+            }
+        }
+
+        /**
+         * Creates new sample matrix.
+         *
+         * @return new sample matrix.
+         */
+        Matrix newSample() {
+            return !asSparseMatrix ? new DMatrix(rows, columns, 1) : new SMatrix(rows, columns, 1);
+        }
+
+    }
+
+    /**
+     * Implements samples parsed from single chunk of file.
+     *
+     * @param inputs input samples in order of lines.
+     * @param outputs output samples in order of lines.
+     */
+    private record ChunkSamples(ArrayList<Matrix> inputs, ArrayList<Matrix> outputs) {
+    }
+
     /**
      * Default constructor for read CSV file utility.
      *
@@ -31,6 +119,7 @@ public class ReadCSVFile {
      * Reads CVS file and transforms comma separated data as input and output sample set.<br>
      * Separates each value separated by separator to own column.<br>
      * Returns input matrix with hash map index 0 and output matrix with hash map index 1.<br>
+     * File is read in chunks parsed in parallel using shared compute pool.<br>
      *
      * @param fileName name of file to be read.
      * @param separator separator that separates values.
@@ -46,23 +135,81 @@ public class ReadCSVFile {
      * @param outCols number of output cols (relevant for 2D output).
      * @return structure containing input and output matrices.
      * @throws FileNotFoundException throws exception if file is not found.
+     * @throws IOException throws exception if reading of file fails.
      */
-    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, String separator, HashSet<Integer> inputColumns, HashSet<Integer> outputColumns, int skipRowsFromStart, boolean asSparseMatrix, boolean inAs2D, int inRows, int inCols, boolean outAs2D, int outRows, int outCols) throws FileNotFoundException {
-        HashMap<Integer, Integer> inputColumnMap = new HashMap<>();
-        HashMap<Integer, Integer> outputColumnMap = new HashMap<>();
-        int index;
-        index = 0;
+    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, String separator, HashSet<Integer> inputColumns, HashSet<Integer> outputColumns, int skipRowsFromStart, boolean asSparseMatrix, boolean inAs2D, int inRows, int inCols, boolean outAs2D, int outRows, int outCols) throws IOException {
+        SampleDefinition inputDefinition = getSampleDefinition(inputColumns, inAs2D, inRows, inCols, asSparseMatrix);
+        SampleDefinition outputDefinition = getSampleDefinition(outputColumns, outAs2D, outRows, outCols, asSparseMatrix);
+        byte[] separatorBytes = isLiteral(separator) ? separator.getBytes(StandardCharsets.UTF_8) : null;
+
+        HashMap<Integer, Matrix> inputData = new HashMap<>();
+        HashMap<Integer, Matrix> outputData = new HashMap<>();
+
+        try (FileChannel fileChannel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            long[] chunkStarts = getChunkStarts(fileChannel, skipRowsFromStart);
+            ChunkSamples[] chunkSamples = new ChunkSamples[chunkStarts.length - 1];
 
-        for (Integer pos : inputColumns) inputColumnMap.put(pos, index++);
+            int previousParallelism = ComputePool.getParallelism();
+            ComputePool.setParallelism(ComputePool.getPoolSize());
+            try {
+                ComputePool.execute(chunkSamples.length, chunkIndex -> {
+                    try {
+                        chunkSamples[chunkIndex] = readChunk(fileChannel, chunkStarts[chunkIndex], chunkStarts[chunkIndex + 1], separator, separatorBytes, inputDefinition, outputDefinition);
+                    }
+                    catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            }
+            catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            finally {
+                ComputePool.setParallelism(previousParallelism);
+            }
 
-        index = 0;
-        for (Integer pos : outputColumns) outputColumnMap.put(pos, index++);
+            int row = 0;
+            for (ChunkSamples samples : chunkSamples) {
+                for (int index = 0; index < samples.inputs().size(); index++) {
+                    inputData.put(row, samples.inputs().get(index));
+                    outputData.put(row, samples.outputs().get(index));
+                    row++;
+                }
+            }
+        }
+        catch (NoSuchFileException exception) {
+            throw new FileNotFoundException(fileName + " (No such file or directory)");
+        }
 
-        inRows = inAs2D ? inRows : inputColumnMap.size();
-        inCols = inAs2D ? inCols : 1;
+        HashMap<Integer, HashMap<Integer, Matrix>> result = new HashMap<>();
+        result.put(0, inputData);
+        result.put(1, outputData);
+        return result;
+    }
 
-        outRows = outAs2D ? outRows : outputColumnMap.size();
-        outCols = outAs2D ? outCols : 1;
+    /**
+     * Reads CVS file line by line using scanner and transforms comma separated data as input and output sample set.<br>
+     * Separates each value separated by separator to own column.<br>
+     * Returns input matrix with hash map index 0 and output matrix with hash map index 1.<br>
+     *
+     * @param fileName name of file to be read.
+     * @param separator separator that separates values.
+     * @param inputColumns columns to be used for input samples.
+     * @param outputColumns columns to be used for output samples.
+     * @param skipRowsFromStart skips this number of rows from start.
+     * @param asSparseMatrix returns sample set as sparse matrix (SMatrix).
+     * @param inAs2D assumes 2-dimensional input such as image.
+     * @param inRows number of input rows.
+     * @param inCols number of input cols (relevant for 2D input).
+     * @param outAs2D assumes 2-dimensional output such as image.
+     * @param outRows number of output rows.
+     * @param outCols number of output cols (relevant for 2D output).
+     * @return structure containing input and output matrices.
+     * @throws FileNotFoundException throws exception if file is not found.
+     */
+    public static HashMap<Integer, HashMap<Integer, Matrix>> readFileSequential(String fileName, String separator, HashSet<Integer> inputColumns, HashSet<Integer> outputColumns, int skipRowsFromStart, boolean asSparseMatrix, boolean inAs2D, int inRows, int inCols, boolean outAs2D, int outRows, int outCols) throws FileNotFoundException {
+        SampleDefinition inputDefinition = getSampleDefinition(inputColumns, inAs2D, inRows, inCols, asSparseMatrix);
+        SampleDefinition outputDefinition = getSampleDefinition(outputColumns, outAs2D, outRows, outCols, asSparseMatrix);
 
         File file = new File(fileName);
         Scanner scanner = new Scanner(file);
@@ -77,9 +224,9 @@ public class ReadCSVFile {
         while (scanner.hasNextLine()) {
             String[] items = scanner.nextLine().split(separator);
 
-            addItem(items, inputColumnMap, row, inAs2D, inRows, inCols, asSparseMatrix, inputData);
+            inputData.put(row, getItem(items, inputDefinition));
 
-            addItem(items, outputColumnMap, row, outAs2D, outRows, outCols, asSparseMatrix, outputData);
+            outputData.put(row, getItem(items, outputDefinition));
 
             row++;
         }
@@ -91,27 +238,64 @@ public class ReadCSVFile {
     }
 
     /**
-     * Adds item to data
+     * Returns sample definition.
      *
-     * @param items items
-     * @param columnMap column map
-     * @param row row
-     * @param as2D if true 2D structure is assumed
-     * @param rows rows
-     * @param columns columns
-     * @param asSparseMatrix if true sparse matrix usage is assumed
-     * @param data data
+     * @param columns columns to be used for samples.
+     * @param as2D if true 2D structure is assumed.
+     * @param rows number of rows (relevant for 2D structure).
+     * @param cols number of columns (relevant for 2D structure).
+     * @param asSparseMatrix if true samples are sparse matrices.
+     * @return sample definition.
      */
-    private static void addItem(String[] items, HashMap<Integer, Integer> columnMap, int row, boolean as2D, int rows, int columns, boolean asSparseMatrix, HashMap<Integer, Matrix> data) {
-        Matrix inItem = !asSparseMatrix ? new DMatrix(rows, columns, 1) : new SMatrix(rows, columns, 1);
-        for (Map.Entry<Integer, Integer> entry : columnMap.entrySet()) {
-            int pos = entry.getKey();
-            int value = entry.getValue();
+    private static SampleDefinition getSampleDefinition(HashSet<Integer> columns, boolean as2D, int rows, int cols, boolean asSparseMatrix) {
+        HashMap<Integer, Integer> columnMap = new HashMap<>();
+        int index = 0;
+        for (Integer pos : columns) columnMap.put(pos, index++);
+        return new SampleDefinition(columnMap, as2D, as2D ? rows : columnMap.size(), as2D ? cols : 1, asSparseMatrix);
+    }
+
+    /**
+     * Returns item created from split line.
+     *
+     * @param items items of line.
+     * @param sampleDefinition sample definition.
+     * @return item.
+     */
+    private static Matrix getItem(String[] items, SampleDefinition sampleDefinition) {
+        Matrix item = sampleDefinition.newSample();
+        for (int index = 0; index < sampleDefinition.positions().length; index++) {
+            int pos = sampleDefinition.positions()[index];
+            int value = sampleDefinition.valueIndices()[index];
             if (items[pos].compareTo("0") != 0) {
-                inItem.setValue(getRow(as2D, value, columns), getCol(as2D, value, columns), 0, convertToDouble(items[pos]));
+                item.setValue(getRow(sampleDefinition.as2D(), value, sampleDefinition.columns()), getCol(sampleDefinition.as2D(), value, sampleDefinition.columns()), 0, convertToDouble(items[pos]));
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Returns item created from line tokenized into fields.
+     *
+     * @param bytes bytes of chunk.
+     * @param fieldStarts start offsets of fields.
+     * @param fieldEnds end offsets of fields.
+     * @param numberOfFields number of fields in line.
+     * @param sampleDefinition sample definition.
+     * @return item.
+     */
+    private static Matrix getItem(byte[] bytes, int[] fieldStarts, int[] fieldEnds, int numberOfFields, SampleDefinition sampleDefinition) {
+        Matrix item = sampleDefinition.newSample();
+        for (int index = 0; index < sampleDefinition.positions().length; index++) {
+            int pos = sampleDefinition.positions()[index];
+            int value = sampleDefinition.valueIndices()[index];
+            if (pos >= numberOfFields) throw new ArrayIndexOutOfBoundsException("Index " + pos + " out of bounds for length " + numberOfFields);
+            int start = fieldStarts[pos];
+            int end = fieldEnds[pos];
+            if (end - start != 1 || bytes[start] != '0') {
+                item.setValue(getRow(sampleDefinition.as2D(), value, sampleDefinition.columns()), getCol(sampleDefinition.as2D(), value, sampleDefinition.columns()), 0, convertToDouble(bytes, start, end));
             }
         }
-        data.put(row, inItem);
+        return item;
     }
 
     /**
@@ -138,6 +322,198 @@ public class ReadCSVFile {
         return !as2D ? 0 : pos % cols;
     }
 
+    /**
+     * Checks if separator is literal string i.e. it does not contain regular expression meta characters.
+     *
+     * @param separator separator.
+     * @return true if separator is literal string otherwise false.
+     */
+    private static boolean isLiteral(String separator) {
+        if (separator.isEmpty()) return false;
+        for (int index = 0; index < separator.length(); index++) if (".$|()[]{}^?*+\\".indexOf(separator.charAt(index)) >= 0) return false;
+        return true;
+    }
+
+    /**
+     * Returns start positions of chunks followed by end position of file. Chunks start at line boundaries after skipped rows.
+     *
+     * @param fileChannel file channel.
+     * @param skipRowsFromStart number of rows skipped from start.
+     * @return start positions of chunks followed by end position of file.
+     * @throws IOException throws exception if reading of file fails.
+     */
+    private static long[] getChunkStarts(FileChannel fileChannel, int skipRowsFromStart) throws IOException {
+        long fileSize = fileChannel.size();
+        long position = 0;
+        for (int row = 0; row < skipRowsFromStart && position < fileSize; row++) position = getNextLineStart(fileChannel, position, fileSize);
+
+        ArrayList<Long> chunkStarts = new ArrayList<>();
+        while (position < fileSize) {
+            chunkStarts.add(position);
+            position = position + CHUNK_SIZE >= fileSize ? fileSize : getNextLineStart(fileChannel, position + CHUNK_SIZE, fileSize);
+        }
+        chunkStarts.add(fileSize);
+
+        long[] result = new long[chunkStarts.size()];
+        for (int index = 0; index < result.length; index++) result[index] = chunkStarts.get(index);
+        return result;
+    }
+
+    /**
+     * Returns start position of line following first line terminator found at or after given position or end of file if there is none.
+     *
+     * @param fileChannel file channel.
+     * @param position position from which line terminator is searched.
+     * @param fileSize size of file.
+     * @return start position of next line.
+     * @throws IOException throws exception if reading of file fails.
+     */
+    private static long getNextLineStart(FileChannel fileChannel, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < fileSize) {
+            buffer.clear();
+            int length = read(fileChannel, buffer, position, fileSize);
+            byte[] bytes = buffer.array();
+            boolean complete = position + length >= fileSize;
+            int index = 0;
+            for (; index < length; index++) {
+                int terminatorLength = getTerminatorLength(bytes, index, length, complete);
+                if (terminatorLength > 0) return position + index + terminatorLength;
+                // Terminator may continue beyond buffer. Continues search with buffer starting from current byte.
+                if (terminatorLength < 0) break;
+            }
+            position += index;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Reads bytes from file into buffer starting from position until buffer is full or end of file is reached.
+     *
+     * @param fileChannel file channel.
+     * @param buffer buffer.
+     * @param position position in file.
+     * @param fileSize size of file.
+     * @return number of bytes read.
+     * @throws IOException throws exception if reading of file fails.
+     */
+    private static int read(FileChannel fileChannel, ByteBuffer buffer, long position, long fileSize) throws IOException {
+        buffer.limit((int)Math.min(buffer.capacity(), fileSize - position));
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Returns length of line terminator starting at given index.<br>
+     * Line terminators are same as used by scanner i.e. carriage return followed by line feed, line feed, carriage return, next line, line separator and paragraph separator (latter three encoded as UTF-8).<br>
+     *
+     * @param bytes bytes.
+     * @param index index.
+     * @param length number of valid bytes.
+     * @param complete if true there are no more bytes after length.
+     * @return length of line terminator, 0 if there is no line terminator at index or -1 if terminator cannot be determined without bytes beyond length.
+     */
+    private static int getTerminatorLength(byte[] bytes, int index, int length, boolean complete) {
+        byte value = bytes[index];
+        if (value == '\n') return 1;
+        if (value == '\r') {
+            if (index + 1 >= length) return complete ? 1 : -1;
+            return bytes[index + 1] == '\n' ? 2 : 1;
+        }
+        if (value == (byte)0xC2) {
+            if (index + 1 >= length) return complete ? 0 : -1;
+            return bytes[index + 1] == (byte)0x85 ? 2 : 0;
+        }
+        if (value == (byte)0xE2) {
+            if (index + 2 >= length) return complete ? 0 : -1;
+            return bytes[index + 1] == (byte)0x80 && (bytes[index + 2] == (byte)0xA8 || bytes[index + 2] == (byte)0xA9) ? 3 : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Reads and parses chunk of file.
+     *
+     * @param fileChannel file channel.
+     * @param start start position of chunk.
+     * @param end end position of chunk.
+     * @param separator separator that separates values.
+     * @param separatorBytes separator as bytes or null if separator is regular expression.
+     * @param inputDefinition definition of input samples.
+     * @param outputDefinition definition of output samples.
+     * @return samples parsed from chunk.
+     * @throws IOException throws exception if reading of file fails.
+     */
+    private static ChunkSamples readChunk(FileChannel fileChannel, long start, long end, String separator, byte[] separatorBytes, SampleDefinition inputDefinition, SampleDefinition outputDefinition) throws IOException {
+        int length = (int)(end - start);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        if (read(fileChannel, buffer, start, end) != length) throw new IOException("Unexpected end of file.");
+        byte[] bytes = buffer.array();
+
+        ChunkSamples chunkSamples = new ChunkSamples(new ArrayList<>(), new ArrayList<>());
+        int[] fieldStarts = new int[16];
+        int[] fieldEnds = new int[16];
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            int terminatorLength = 0;
+            while (lineEnd < length && (terminatorLength = getTerminatorLength(bytes, lineEnd, length, true)) == 0) lineEnd++;
+
+            if (separatorBytes != null) {
+                int numberOfFields = 0;
+                int matches = 0;
+                int fieldStart = lineStart;
+                while (true) {
+                    int separatorIndex = indexOf(bytes, separatorBytes, fieldStart, lineEnd);
+                    if (numberOfFields == fieldStarts.length) {
+                        fieldStarts = Arrays.copyOf(fieldStarts, 2 * numberOfFields);
+                        fieldEnds = Arrays.copyOf(fieldEnds, 2 * numberOfFields);
+                    }
+                    fieldStarts[numberOfFields] = fieldStart;
+                    fieldEnds[numberOfFields++] = separatorIndex == -1 ? lineEnd : separatorIndex;
+                    if (separatorIndex == -1) break;
+                    matches++;
+                    fieldStart = separatorIndex + separatorBytes.length;
+                }
+                // Removes trailing empty fields like String.split does when separator is found.
+                if (matches > 0) while (numberOfFields > 0 && fieldStarts[numberOfFields - 1] == fieldEnds[numberOfFields - 1]) numberOfFields--;
+                chunkSamples.inputs().add(getItem(bytes, fieldStarts, fieldEnds, numberOfFields, inputDefinition));
+                chunkSamples.outputs().add(getItem(bytes, fieldStarts, fieldEnds, numberOfFields, outputDefinition));
+            }
+            else {
+                String[] items = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).split(separator);
+                chunkSamples.inputs().add(getItem(items, inputDefinition));
+                chunkSamples.outputs().add(getItem(items, outputDefinition));
+            }
+
+            lineStart = lineEnd + terminatorLength;
+        }
+        return chunkSamples;
+    }
+
+    /**
+     * Returns index of first occurrence of pattern within range or -1 if pattern is not found.
+     *
+     * @param bytes bytes.
+     * @param pattern pattern.
+     * @param from start of range (inclusive).
+     * @param to end of range (exclusive).
+     * @return index of first occurrence of pattern or -1 if pattern is not found.
+     */
+    private static int indexOf(byte[] bytes, byte[] pattern, int from, int to) {
+        byte first = pattern[0];
+        int last = to - pattern.length;
+        for (int index = from; index <= last; index++) {
+            if (bytes[index] != first) continue;
+            int matchIndex = 1;
+            while (matchIndex < pattern.length && bytes[index + matchIndex] == pattern[matchIndex]) matchIndex++;
+            if (matchIndex == pattern.length) return index;
+        }
+        return -1;
+    }
+
     /**
      * Reads CVS file and transforms comma separated data as input and output sample set.<br>
      * Separates each value separated by separator to own column.<br>
@@ -151,8 +527,9 @@ public class ReadCSVFile {
      * @param asSparseMatrix returns sample set as sparse matrix (SMatrix).
      * @return structure containing input and output matrices.
      * @throws FileNotFoundException throws exception if file is not found.
+     * @throws IOException throws exception if reading of file fails.
      */
-    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, String separator, HashSet<Integer> inputCols, HashSet<Integer> outputCols, int skipRowsFromStart, boolean asSparseMatrix) throws FileNotFoundException {
+    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, String separator, HashSet<Integer> inputCols, HashSet<Integer> outputCols, int skipRowsFromStart, boolean asSparseMatrix) throws IOException {
         return readFile(fileName, separator, inputCols, outputCols, skipRowsFromStart, asSparseMatrix, false, 0, 0, false, 0, 0);
     }
 
@@ -167,8 +544,9 @@ public class ReadCSVFile {
      * @param asSparseMatrix returns sample set as sparse matrix (SMatrix).
      * @return structure containing input and output matrices.
      * @throws FileNotFoundException throws exception if file is not found.
+     * @throws IOException throws exception if reading of file fails.
      */
-    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, HashSet<Integer> inputCols, HashSet<Integer> outputCols, boolean asSparseMatrix) throws FileNotFoundException {
+    public static HashMap<Integer, HashMap<Integer, Matrix>> readFile(String fileName, HashSet<Integer> inputCols, HashSet<Integer> outputCols, boolean asSparseMatrix) throws IOException {
         return readFile(fileName, ";", inputCols, outputCols, 0, asSparseMatrix, false, 0, 0, false, 0, 0);
     }
 
@@ -188,4 +566,55 @@ public class ReadCSVFile {
         return value;
     }
 
+    /**
+     * Converts bytes to double value. Plain decimal numbers whose value can be calculated exactly by single multiplication or division are converted directly from bytes and other numbers by Double.parseDouble.
+     *
+     * @param bytes bytes.
+     * @param start start of number (inclusive).
+     * @param end end of number (exclusive).
+     * @return converted double value.
+     */
+    private static double convertToDouble(byte[] bytes, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (bytes[index] == '-' || bytes[index] == '+')) negative = bytes[index++] == '-';
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        for (; index < end && bytes[index] >= '0' && bytes[index] <= '9'; index++, digits++) {
+            if (mantissa > 0 || bytes[index] != '0') {
+                if (++significantDigits > 15) exact = false;
+                mantissa = 10 * mantissa + (bytes[index] - '0');
+            }
+        }
+        if (index < end && bytes[index] == '.') {
+            for (index++; index < end && bytes[index] >= '0' && bytes[index] <= '9'; index++, digits++) {
+                if (mantissa > 0 || bytes[index] != '0') {
+                    if (++significantDigits > 15) exact = false;
+                    mantissa = 10 * mantissa + (bytes[index] - '0');
+                }
+                exponent--;
+            }
+        }
+        if (digits > 0 && index < end && (bytes[index] == 'e' || bytes[index] == 'E')) {
+            index++;
+            boolean negativeExponent = false;
+            if (index < end && (bytes[index] == '-' || bytes[index] == '+')) negativeExponent = bytes[index++] == '-';
+            int exponentDigits = 0;
+            int exponentValue = 0;
+            for (; index < end && bytes[index] >= '0' && bytes[index] <= '9'; index++, exponentDigits++) {
+                if (exponentValue < 1000) exponentValue = 10 * exponentValue + (bytes[index] - '0');
+            }
+            if (exponentDigits == 0) exact = false;
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+        if (exact && digits > 0 && index == end && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < EXACT_POWERS_OF_TEN.length) {
+            double value = exponent >= 0 ? mantissa * EXACT_POWERS_OF_TEN[exponent] : mantissa / EXACT_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return convertToDouble(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+
 }
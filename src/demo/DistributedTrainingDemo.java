@@ -0,0 +1,139 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package demo;
+
+import core.layer.LayerType;
+import core.network.DistributedCoordinator;
+import core.network.NeuralNetwork;
+import core.network.NeuralNetworkConfiguration;
+import core.network.NeuralNetworkException;
+import core.optimization.OptimizationType;
+import utils.configurable.DynamicParamException;
+import utils.matrix.*;
+import utils.sampling.BasicSampler;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Demonstrates synchronous data parallel training distributed over workers connected by loopback sockets.<br>
+ * Workers learn to calculate two numbers together. Each worker trains its shard of each batch and weight gradients are summed over workers by ring all-reduce.<br>
+ * Workers are run as threads of single process by default. Worker can be run as separate process by giving its rank as argument.<br>
+ *
+ */
+public class DistributedTrainingDemo {
+
+    /**
+     * Default constructor for distributed training demo.
+     *
+     */
+    public DistributedTrainingDemo() {
+    }
+
+    /**
+     * Main function for distributed training demo.
+     *
+     * @param args input arguments (optional number of workers, base port and rank of worker run by this process).
+     */
+    public static void main(String [] args) {
+        int numberOfWorkers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int basePort = args.length > 1 ? Integer.parseInt(args[1]) : 47000;
+        ArrayList<InetSocketAddress> workerAddresses = new ArrayList<>();
+        for (int rank = 0; rank < numberOfWorkers; rank++) workerAddresses.add(new InetSocketAddress("127.0.0.1", basePort + rank));
+        try {
+            if (args.length > 2) runWorker(Integer.parseInt(args[2]), workerAddresses);
+            else {
+                ArrayList<Thread> workers = new ArrayList<>();
+                for (int rank = 0; rank < numberOfWorkers; rank++) {
+                    int workerRank = rank;
+                    Thread worker = new Thread(() -> {
+                        try {
+                            runWorker(workerRank, workerAddresses);
+                        }
+                        catch (Exception exception) {
+                            exception.printStackTrace();
+                        }
+                    });
+                    workers.add(worker);
+                    worker.start();
+                }
+                for (Thread worker : workers) worker.join();
+            }
+        }
+        catch (Exception exception) {
+            exception.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Trains worker and reports its prediction for test inputs.
+     *
+     * @param rank rank of worker.
+     * @param workerAddresses addresses of workers by rank.
+     * @throws NeuralNetworkException throws exception if building or training of neural network fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static void runWorker(int rank, ArrayList<InetSocketAddress> workerAddresses) throws NeuralNetworkException, DynamicParamException, MatrixException {
+        HashMap<Integer, HashMap<Integer, Matrix>> data = getTestData();
+        NeuralNetworkConfiguration neuralNetworkConfiguration = new NeuralNetworkConfiguration();
+        neuralNetworkConfiguration.addInputLayer("width = 2, height = 1, depth = 1");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, "width = 20");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, "width = 1");
+        neuralNetworkConfiguration.addOutputLayer(BinaryFunctionType.MEAN_SQUARED_ERROR);
+        neuralNetworkConfiguration.connectLayersSerially();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(neuralNetworkConfiguration);
+        neuralNetwork.setOptimizer(OptimizationType.ADAM);
+
+        DistributedCoordinator distributedCoordinator = new DistributedCoordinator(rank, workerAddresses, "timeout = 10000");
+        neuralNetwork.setDistributedCoordinator(distributedCoordinator);
+        neuralNetwork.start();
+        if (distributedCoordinator.isCoordinator()) neuralNetwork.verboseTraining(100);
+        neuralNetwork.setTrainingData(distributedCoordinator.getSampler(new BasicSampler(new HashMap<>() {{ put(0, data.get(0)); }}, new HashMap<>() {{ put(0, data.get(1)); }}, "randomOrder = false, shuffleSamples = false, sampleSize = 96, numberOfIterations = 1000")));
+
+        long startTime = System.nanoTime();
+        neuralNetwork.train(false, true);
+        long trainingTime = (System.nanoTime() - startTime) / 1000000;
+
+        Matrix input = new DMatrix(2, 1, 1);
+        input.setValue(0, 0, 0, 0.25);
+        input.setValue(1, 0, 0, 0.35);
+        TreeMap<Integer, Matrix> inputs = new TreeMap<>();
+        inputs.put(0, input);
+        System.out.println("Worker " + rank + " trained in " + trainingTime + " ms, 0.25 + 0.35 = " + neuralNetwork.predictMatrix(inputs).get(0).getValue(0, 0, 0));
+        neuralNetwork.stop();
+    }
+
+    /**
+     * Creates training data. Data is generated with fixed seed hence it is equal for all workers.
+     *
+     * @return training data.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static HashMap<Integer, HashMap<Integer, Matrix>> getTestData() throws MatrixException {
+        HashMap<Integer, HashMap<Integer, Matrix>> data = new HashMap<>();
+        HashMap<Integer, Matrix> input = new HashMap<>();
+        HashMap<Integer, Matrix> output = new HashMap<>();
+        data.put(0, input);
+        data.put(1, output);
+        Random random = new Random(1);
+        for (int index = 0; index < 10000; index++) {
+            Matrix inputData = new DMatrix(2, 1, 1);
+            inputData.setValue(0, 0, 0, random.nextDouble() / 2);
+            inputData.setValue(1, 0, 0, random.nextDouble() / 2);
+            Matrix outputData = new DMatrix(1, 1, 1);
+            outputData.setValue(0, 0, 0, inputData.getValue(0, 0, 0) + inputData.getValue(1, 0, 0));
+            input.put(index, inputData);
+            output.put(index, outputData);
+        }
+        return data;
+    }
+
+}
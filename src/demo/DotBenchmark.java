@@ -0,0 +1,136 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package demo;
+
+import utils.matrix.DMatrix;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.matrix.operation.ComputePool;
+
+import java.util.Random;
+
+/**
+ * Implements benchmark comparing array kernel of dot operation against element wise dot operation.<br>
+ * Element wise path is exercised by sliceable matrices that do not allow direct access to their data arrays.<br>
+ * Benchmark is run single threaded for square and skinny shapes and results of both paths are checked to match.<br>
+ *
+ */
+public class DotBenchmark {
+
+    /**
+     * Default constructor for dot benchmark.
+     *
+     */
+    public DotBenchmark() {
+    }
+
+    /**
+     * Main function for benchmark.
+     *
+     * @param args input arguments (optional number of measured repetitions).
+     */
+    public static void main(String [] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[][] shapes = {
+                {256, 256, 256},
+                {512, 512, 512},
+                {64, 1024, 64},
+                {32, 128, 2048},
+                {1024, 64, 1}
+        };
+        try {
+            ComputePool.setParallelism(1);
+            Random random = new Random(1);
+            for (int[] shape : shapes) run(shape[0], shape[1], shape[2], repetitions, random);
+        }
+        catch (Exception exception) {
+            exception.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs dot operation with both paths, prints timings and maximum difference between results.
+     *
+     * @param rows number of rows of first matrix.
+     * @param inner number of columns of first matrix and rows of second matrix.
+     * @param columns number of columns of second matrix.
+     * @param repetitions number of measured repetitions.
+     * @param random random function.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static void run(int rows, int inner, int columns, int repetitions, Random random) throws MatrixException {
+        Matrix first = getMatrix(rows, inner, false, random);
+        Matrix second = getMatrix(inner, columns, false, random);
+        Matrix elementFirst = getMatrix(first);
+        Matrix elementSecond = getMatrix(second);
+
+        double elementTime = measure(elementFirst, elementSecond, repetitions);
+        double arrayTime = measure(first, second, repetitions);
+
+        Matrix elementResult = elementFirst.dot(elementSecond);
+        Matrix arrayResult = first.dot(second);
+        double maxDifference = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                maxDifference = Math.max(maxDifference, Math.abs(elementResult.getValue(row, column, 0) - arrayResult.getValue(row, column, 0)));
+            }
+        }
+        System.out.println(rows + "x" + inner + "x" + columns + ": element wise " + String.format("%.2f", elementTime) + " ms, array kernel " + String.format("%.2f", arrayTime) + " ms, max difference: " + maxDifference);
+    }
+
+    /**
+     * Measures average time of dot operation in milliseconds after warm up.
+     *
+     * @param first first matrix.
+     * @param second second matrix.
+     * @param repetitions number of measured repetitions.
+     * @return average time of dot operation in milliseconds.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static double measure(Matrix first, Matrix second, int repetitions) throws MatrixException {
+        for (int repetition = 0; repetition < 3; repetition++) first.dot(second);
+        long startTime = System.nanoTime();
+        for (int repetition = 0; repetition < repetitions; repetition++) first.dot(second);
+        return (System.nanoTime() - startTime) / 1000000.0 / repetitions;
+    }
+
+    /**
+     * Creates matrix with random values.
+     *
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param canBeSliced if true matrix can be sliced and its data array is not directly accessible.
+     * @param random random function.
+     * @return matrix with random values.
+     */
+    private static Matrix getMatrix(int rows, int columns, boolean canBeSliced, Random random) {
+        Matrix matrix = new DMatrix(rows, columns, 1, false, false, canBeSliced);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                matrix.setValue(row, column, 0, random.nextGaussian());
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Creates sliceable copy of matrix.
+     *
+     * @param matrix matrix.
+     * @return sliceable copy of matrix.
+     */
+    private static Matrix getMatrix(Matrix matrix) {
+        Matrix sliceableMatrix = new DMatrix(matrix.getRows(), matrix.getColumns(), 1, false, false, true);
+        for (int row = 0; row < matrix.getRows(); row++) {
+            for (int column = 0; column < matrix.getColumns(); column++) {
+                sliceableMatrix.setValue(row, column, 0, matrix.getValue(row, column, 0));
+            }
+        }
+        return sliceableMatrix;
+    }
+
+}
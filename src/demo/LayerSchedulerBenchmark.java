@@ -0,0 +1,145 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package demo;
+
+import core.activation.ActivationFunction;
+import core.layer.LayerType;
+import core.network.LayerExecutionMode;
+import core.network.NeuralNetwork;
+import core.network.NeuralNetworkConfiguration;
+import core.network.NeuralNetworkException;
+import core.optimization.OptimizationType;
+import utils.configurable.DynamicParamException;
+import utils.matrix.*;
+import utils.sampling.BasicSampler;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Implements benchmark comparing train step latency of layer execution modes.<br>
+ * Benchmark trains 20 layer MLP with sample size of one where per step overhead of layer execution dominates.<br>
+ * Equal copies of neural network are trained with dedicated layer threads (LAYER_THREADS) and with task scheduler (TASK_SCHEDULER) and their predictions are checked to match.<br>
+ *
+ */
+public class LayerSchedulerBenchmark {
+
+    /**
+     * Default constructor for layer scheduler benchmark.
+     *
+     */
+    public LayerSchedulerBenchmark() {
+    }
+
+    /**
+     * Main function for benchmark.
+     *
+     * @param args input arguments (optional width of hidden layers and number of training iterations per round).
+     */
+    public static void main(String [] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int numberOfIterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        try {
+            HashMap<Integer, HashMap<Integer, Matrix>> data = getTestData();
+
+            NeuralNetwork layerThreadsNeuralNetwork = buildNeuralNetwork(width);
+            layerThreadsNeuralNetwork.start();
+            NeuralNetwork taskSchedulerNeuralNetwork = layerThreadsNeuralNetwork.copy();
+            taskSchedulerNeuralNetwork.setLayerExecutionMode(LayerExecutionMode.TASK_SCHEDULER);
+            taskSchedulerNeuralNetwork.start();
+
+            System.out.println("20 layer MLP, width: " + width + ", iterations per round: " + numberOfIterations);
+            for (int round = 0; round < 3; round++) {
+                double layerThreadsTime = measure(layerThreadsNeuralNetwork, data, numberOfIterations);
+                double taskSchedulerTime = measure(taskSchedulerNeuralNetwork, data, numberOfIterations);
+                System.out.println("Round " + (round + 1) + ": LAYER_THREADS " + String.format("%.1f", layerThreadsTime) + " us/step, TASK_SCHEDULER " + String.format("%.1f", taskSchedulerTime) + " us/step");
+            }
+
+            double maxDifference = 0;
+            for (int sampleIndex = 0; sampleIndex < 20; sampleIndex++) {
+                TreeMap<Integer, Matrix> inputs = new TreeMap<>();
+                inputs.put(0, data.get(0).get(sampleIndex));
+                Matrix layerThreadsOutput = layerThreadsNeuralNetwork.predictMatrix(inputs).get(0);
+                Matrix taskSchedulerOutput = taskSchedulerNeuralNetwork.predictMatrix(inputs).get(0);
+                for (int row = 0; row < layerThreadsOutput.getRows(); row++) {
+                    maxDifference = Math.max(maxDifference, Math.abs(layerThreadsOutput.getValue(row, 0, 0) - taskSchedulerOutput.getValue(row, 0, 0)));
+                }
+            }
+            System.out.println("Max difference of predictions: " + maxDifference);
+
+            layerThreadsNeuralNetwork.stop();
+            taskSchedulerNeuralNetwork.stop();
+        }
+        catch (Exception exception) {
+            exception.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Builds 20 layer MLP consisting of 19 feedforward layers and dense output layer.
+     *
+     * @param width width of hidden layers.
+     * @return neural network.
+     * @throws NeuralNetworkException throws exception if building of neural network fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws MatrixException throws exception if custom function is attempted to be created with this constructor.
+     */
+    private static NeuralNetwork buildNeuralNetwork(int width) throws NeuralNetworkException, DynamicParamException, MatrixException {
+        NeuralNetworkConfiguration neuralNetworkConfiguration = new NeuralNetworkConfiguration();
+        neuralNetworkConfiguration.addInputLayer("width = 8, height = 1, depth = 1");
+        for (int layerIndex = 0; layerIndex < 19; layerIndex++) neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, new ActivationFunction(UnaryFunctionType.TANH), "width = " + width);
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.DENSE, "width = 2");
+        neuralNetworkConfiguration.addOutputLayer(BinaryFunctionType.MEAN_SQUARED_ERROR);
+        neuralNetworkConfiguration.connectLayersSerially();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(neuralNetworkConfiguration);
+        neuralNetwork.setOptimizer(OptimizationType.ADAM);
+        return neuralNetwork;
+    }
+
+    /**
+     * Trains neural network and returns average latency of train step in microseconds.
+     *
+     * @param neuralNetwork neural network.
+     * @param data training data.
+     * @param numberOfIterations number of training iterations.
+     * @return average latency of train step in microseconds.
+     * @throws NeuralNetworkException throws exception if training of neural network fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private static double measure(NeuralNetwork neuralNetwork, HashMap<Integer, HashMap<Integer, Matrix>> data, int numberOfIterations) throws NeuralNetworkException, DynamicParamException {
+        neuralNetwork.setTrainingData(new BasicSampler(new HashMap<>() {{ put(0, data.get(0)); }}, new HashMap<>() {{ put(0, data.get(1)); }}, "randomOrder = false, shuffleSamples = false, sampleSize = 1, numberOfIterations = " + numberOfIterations));
+        long startTime = System.nanoTime();
+        neuralNetwork.train(false, true);
+        return (System.nanoTime() - startTime) / 1000.0 / numberOfIterations;
+    }
+
+    /**
+     * Creates training data.
+     *
+     * @return training data.
+     */
+    private static HashMap<Integer, HashMap<Integer, Matrix>> getTestData() {
+        HashMap<Integer, HashMap<Integer, Matrix>> data = new HashMap<>();
+        HashMap<Integer, Matrix> input = new HashMap<>();
+        HashMap<Integer, Matrix> output = new HashMap<>();
+        data.put(0, input);
+        data.put(1, output);
+        Random random = new Random(1);
+        for (int index = 0; index < 256; index++) {
+            Matrix inputData = new DMatrix(8, 1, 1);
+            for (int row = 0; row < 8; row++) inputData.setValue(row, 0, 0, random.nextDouble());
+            Matrix outputData = new DMatrix(2, 1, 1);
+            outputData.setValue(0, 0, 0, inputData.getValue(0, 0, 0));
+            outputData.setValue(1, 0, 0, inputData.getValue(1, 0, 0));
+            input.put(index, inputData);
+            output.put(index, outputData);
+        }
+        return data;
+    }
+
+}
@@ -16,7 +16,7 @@ import utils.matrix.*;
 import utils.sampling.BasicSampler;
 import utils.sampling.Sequence;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.TreeMap;
@@ -257,9 +257,9 @@ public class MNISTDemo {
      * @param trainSet if true training set file is read otherwise test set file is read.
      * @return encoded input and output pairs.
      * @throws MatrixException throws exception if matrix operation fails.
-     * @throws FileNotFoundException throws exception if matrix cannot be read.
+     * @throws IOException throws exception if matrix cannot be read.
      */
-    private static HashMap<Integer, HashMap<Integer, Matrix>> getMNISTData(boolean trainSet) throws MatrixException, FileNotFoundException {
+    private static HashMap<Integer, HashMap<Integer, Matrix>> getMNISTData(boolean trainSet) throws MatrixException, IOException {
         System.out.print("Loading " + (trainSet ? "training" : "test") + " data... ");
         HashSet<Integer> inputCols = new HashSet<>();
         HashSet<Integer> outputCols = new HashSet<>();
@@ -0,0 +1,112 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package demo;
+
+import core.optimization.OptimizationType;
+import core.optimization.Optimizer;
+import core.optimization.OptimizerFactory;
+import utils.configurable.DynamicParamException;
+import utils.matrix.DMatrix;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Implements benchmark comparing memory allocation and time per step of fused optimizer kernels against matrix expression path of optimizers.<br>
+ * Matrix expression path is exercised by sliceable matrices that do not allow direct access to their data arrays.<br>
+ * Allocation is measured for current thread with ThreadMXBean.getThreadAllocatedBytes and final weights of both paths are checked to match.<br>
+ *
+ */
+public class OptimizerBenchmark {
+
+    /**
+     * Default constructor for optimizer benchmark.
+     *
+     */
+    public OptimizerBenchmark() {
+    }
+
+    /**
+     * Main function for benchmark.
+     *
+     * @param args input arguments (optional size of parameter matrix and number of measured steps).
+     */
+    public static void main(String [] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int numberOfSteps = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try {
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+            System.out.println("Parameter matrix: " + size + "x" + size + ", steps: " + numberOfSteps);
+            for (OptimizationType optimizationType : new OptimizationType[] {OptimizationType.ADAM, OptimizationType.AMSGRAD, OptimizationType.NADAM, OptimizationType.RADAM, OptimizationType.RMSPROP}) {
+                Matrix expressionWeights = getMatrix(size, true, new Random(1));
+                Matrix fusedWeights = getMatrix(size, false, new Random(1));
+                Random random = new Random(2);
+                Matrix[] gradients = new Matrix[3];
+                for (int index = 0; index < gradients.length; index++) gradients[index] = getMatrix(size, false, random);
+
+                double[] expressionResult = run(optimizationType, expressionWeights, gradients, numberOfSteps, threadMXBean);
+                double[] fusedResult = run(optimizationType, fusedWeights, gradients, numberOfSteps, threadMXBean);
+
+                double maxDifference = 0;
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < size; column++) {
+                        maxDifference = Math.max(maxDifference, Math.abs(expressionWeights.getValue(row, column, 0) - fusedWeights.getValue(row, column, 0)));
+                    }
+                }
+                System.out.println(optimizationType + ": expression path " + String.format("%.1f", expressionResult[0]) + " KB/step " + String.format("%.1f", expressionResult[1]) + " ms/step, fused kernel " + String.format("%.1f", fusedResult[0]) + " KB/step " + String.format("%.1f", fusedResult[1]) + " ms/step, max difference: " + maxDifference);
+            }
+        }
+        catch (Exception exception) {
+            exception.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs optimizer for given number of steps after warm up step and measures memory allocation and time per step.
+     *
+     * @param optimizationType type of optimizer.
+     * @param weights weights to be optimized.
+     * @param gradients gradients used in turns.
+     * @param numberOfSteps number of measured steps.
+     * @param threadMXBean thread management bean used to measure memory allocation.
+     * @return allocation in kilobytes per step and time in milliseconds per step.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static double[] run(OptimizationType optimizationType, Matrix weights, Matrix[] gradients, int numberOfSteps, com.sun.management.ThreadMXBean threadMXBean) throws DynamicParamException, MatrixException {
+        Optimizer optimizer = OptimizerFactory.create(optimizationType);
+        optimizer.optimize(weights, gradients[0]);
+        long threadId = Thread.currentThread().threadId();
+        long startAllocation = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int step = 0; step < numberOfSteps; step++) optimizer.optimize(weights, gradients[step % gradients.length]);
+        long time = System.nanoTime() - startTime;
+        long allocation = threadMXBean.getThreadAllocatedBytes(threadId) - startAllocation;
+        return new double[] { allocation / 1024.0 / numberOfSteps, time / 1000000.0 / numberOfSteps };
+    }
+
+    /**
+     * Creates square matrix with random values.
+     *
+     * @param size number of rows and columns.
+     * @param canBeSliced if true matrix can be sliced and its data array is not directly accessible.
+     * @param random random function.
+     * @return matrix with random values.
+     */
+    private static Matrix getMatrix(int size, boolean canBeSliced, Random random) {
+        Matrix matrix = new DMatrix(size, size, 1, false, false, canBeSliced);
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                matrix.setValue(row, column, 0, random.nextGaussian());
+            }
+        }
+        return matrix;
+    }
+
+}
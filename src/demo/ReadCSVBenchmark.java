@@ -0,0 +1,144 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package demo;
+
+import core.preprocess.ReadCSVFile;
+import utils.matrix.Matrix;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Implements benchmark comparing parallel chunked CSV reader against sequential scanner based reader.<br>
+ * Benchmark generates synthetic CSV file with header row and MNIST like layout (label followed by 28x28 values) using various number formats.<br>
+ * Both readers are run as dense, sparse and 2D reshaped variants and results are checked to be identical.<br>
+ *
+ */
+public class ReadCSVBenchmark {
+
+    /**
+     * Default constructor for read CSV benchmark.
+     *
+     */
+    public ReadCSVBenchmark() {
+    }
+
+    /**
+     * Main function for benchmark.
+     *
+     * @param args input arguments (optional number of rows).
+     */
+    public static void main(String [] args) {
+        int numberOfRows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        try {
+            Path path = Files.createTempFile("sannet_csv_benchmark", ".csv");
+            try {
+                writeFile(path, numberOfRows);
+                System.out.println("File size: " + Files.size(path) / (1024 * 1024) + " MB, rows: " + numberOfRows);
+
+                HashSet<Integer> inputCols = new HashSet<>();
+                HashSet<Integer> outputCols = new HashSet<>();
+                for (int i = 1; i < 785; i++) inputCols.add(i);
+                outputCols.add(0);
+
+                run("Dense", path, inputCols, outputCols, false, false);
+                run("Sparse", path, inputCols, outputCols, true, false);
+                run("Dense 2D", path, inputCols, outputCols, false, true);
+            }
+            finally {
+                Files.deleteIfExists(path);
+            }
+        }
+        catch (Exception exception) {
+            exception.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Reads file with both readers, prints timings and verifies that results are identical.
+     *
+     * @param name name of variant.
+     * @param path path of file.
+     * @param inputCols input columns.
+     * @param outputCols output columns.
+     * @param asSparseMatrix if true samples are read as sparse matrices.
+     * @param inAs2D if true inputs are reshaped as 28x28 matrices.
+     * @throws IOException throws exception if reading of file fails.
+     */
+    private static void run(String name, Path path, HashSet<Integer> inputCols, HashSet<Integer> outputCols, boolean asSparseMatrix, boolean inAs2D) throws IOException {
+        long startTime = System.nanoTime();
+        HashMap<Integer, HashMap<Integer, Matrix>> sequentialData = ReadCSVFile.readFileSequential(path.toString(), ",", inputCols, outputCols, 1, asSparseMatrix, inAs2D, 28, 28, false, 0, 0);
+        long sequentialTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        HashMap<Integer, HashMap<Integer, Matrix>> parallelData = ReadCSVFile.readFile(path.toString(), ",", inputCols, outputCols, 1, asSparseMatrix, inAs2D, 28, 28, false, 0, 0);
+        long parallelTime = System.nanoTime() - startTime;
+
+        boolean identical = isIdentical(sequentialData.get(0), parallelData.get(0)) && isIdentical(sequentialData.get(1), parallelData.get(1));
+        System.out.println(name + ": sequential " + sequentialTime / 1000000 + " ms, parallel " + parallelTime / 1000000 + " ms, identical: " + identical);
+    }
+
+    /**
+     * Checks if samples are identical in type, shape and bit level values.
+     *
+     * @param samples1 first samples.
+     * @param samples2 second samples.
+     * @return true if samples are identical otherwise false.
+     */
+    private static boolean isIdentical(HashMap<Integer, Matrix> samples1, HashMap<Integer, Matrix> samples2) {
+        if (!samples1.keySet().equals(samples2.keySet())) return false;
+        for (Integer sampleIndex : samples1.keySet()) {
+            Matrix sample1 = samples1.get(sampleIndex);
+            Matrix sample2 = samples2.get(sampleIndex);
+            if (sample1.getClass() != sample2.getClass() || sample1.getRows() != sample2.getRows() || sample1.getColumns() != sample2.getColumns()) return false;
+            for (int row = 0; row < sample1.getRows(); row++) {
+                for (int column = 0; column < sample1.getColumns(); column++) {
+                    if (Double.doubleToLongBits(sample1.getValue(row, column, 0)) != Double.doubleToLongBits(sample2.getValue(row, column, 0))) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes synthetic CSV file with header row.
+     *
+     * @param path path of file.
+     * @param numberOfRows number of rows excluding header.
+     * @throws IOException throws exception if writing of file fails.
+     */
+    private static void writeFile(Path path, int numberOfRows) throws IOException {
+        Random random = new Random(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("label");
+            for (int column = 1; column < 785; column++) writer.write(",pixel" + column);
+            writer.newLine();
+            for (int row = 0; row < numberOfRows; row++) {
+                writer.write(String.valueOf(random.nextInt(10)));
+                for (int column = 1; column < 785; column++) {
+                    writer.write(',');
+                    writer.write(switch (random.nextInt(8)) {
+                        case 0, 1, 2 -> "0";
+                        case 3 -> String.valueOf(random.nextInt(256));
+                        case 4 -> String.valueOf(random.nextDouble());
+                        case 5 -> String.valueOf(-random.nextGaussian() * 1000);
+                        case 6 -> String.format("%.3e", random.nextGaussian());
+                        default -> String.format("%.4f", random.nextDouble() * 255);
+                    });
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+}
@@ -229,7 +229,7 @@ public abstract class AbstractMatrix implements Cloneable, Serializable, Matrix
      *
      * @return true if matrix can be sliced otherwise returns false.
      */
-    private boolean canBeSliced() {
+    protected final boolean canBeSliced() {
         return canBeSliced;
     }
 
@@ -1157,6 +1157,39 @@ public abstract class AbstractMatrix implements Cloneable, Serializable, Matrix
      */
     protected abstract Matrix applyDot(Matrix other) throws MatrixException;
 
+    /**
+     * Calculates dot attention with this matrix as query. Output is value x softmax(scalingFactor * query x key.T) where softmax is taken column wise.<br>
+     * Attention is calculated with streaming softmax without materializing attention score matrix.<br>
+     *
+     * @param keyValue transposed keys stacked vertically on top of values. Number of key rows must be equal to number of columns of this matrix.
+     * @param scalingFactor scaling factor applied to attention scores.
+     * @return matrix which stores operation result.
+     * @throws MatrixException throws MatrixException if dimensions of this and key value matrix are not matching.
+     */
+    public Matrix attend(Matrix keyValue, double scalingFactor) throws MatrixException {
+        if (!hasProcedureFactory() && !keyValue.hasProcedureFactory()) return applyAttend(keyValue, scalingFactor);
+        else {
+            ProcedureFactory.synchronize(this, keyValue);
+            int expressionLock = getProcedureFactory().startExpression(this);
+            Matrix result = applyAttend(keyValue, scalingFactor);
+            ProcedureFactory.synchronize(this, keyValue, result);
+            getProcedureFactory().createAttentionExpression(expressionLock, this, keyValue, result, scalingFactor);
+            return result;
+        }
+    }
+
+    /**
+     * Calculates dot attention with this matrix as query.
+     *
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @param scalingFactor scaling factor applied to attention scores.
+     * @return matrix which stores operation result.
+     * @throws MatrixException throws MatrixException if dimensions of this and key value matrix are not matching.
+     */
+    private Matrix applyAttend(Matrix keyValue, double scalingFactor) throws MatrixException {
+        return new AttentionMatrixOperation(keyValue.getRows() - getColumns(), keyValue.getColumns(), getDepth(), getRows(), getColumns(), scalingFactor).apply(this, keyValue);
+    }
+
     /**
      * Returns constant as matrix.
      *
@@ -1672,7 +1705,7 @@ public abstract class AbstractMatrix implements Cloneable, Serializable, Matrix
             int expressionLock = getProcedureFactory().startExpression(this);
             Matrix result = applyConvolve(filter);
             ProcedureFactory.synchronize(this, filter, result);
-            getProcedureFactory().createConvolveExpression(expressionLock, this, filter, result, getStride(), getDilation(), getIsDepthSeparable());
+            getProcedureFactory().createConvolveExpression(expressionLock, this, filter, result, getStride(), getDilation(), getIsDepthSeparable(), getConvolutionAlgorithm());
             return result;
         }
     }
@@ -1700,7 +1733,7 @@ public abstract class AbstractMatrix implements Cloneable, Serializable, Matrix
             int expressionLock = getProcedureFactory().startExpression(this);
             Matrix result = applyCrosscorrelate(filter);
             ProcedureFactory.synchronize(this, filter, result);
-            getProcedureFactory().createCrosscorrelateExpression(expressionLock, this, filter, result, getStride(), getDilation(), getIsDepthSeparable());
+            getProcedureFactory().createCrosscorrelateExpression(expressionLock, this, filter, result, getStride(), getDilation(), getIsDepthSeparable(), getConvolutionAlgorithm());
             return result;
         }
     }
@@ -2158,6 +2191,7 @@ public abstract class AbstractMatrix implements Cloneable, Serializable, Matrix
     public void setMask(Mask newMask) throws MatrixException {
         if (getRows() != newMask.getRows() || getColumns() != newMask.getColumns() || getDepth() != newMask.getDepth()) throw new MatrixException("Dimensions of new mask are not matching with matrix dimensions.");
         if ((this instanceof DMatrix) && !((newMask instanceof DMask))) throw new MatrixException("New mask is of type DMask which is not matching type of matrix (DMatrix)");
+        if ((this instanceof FMatrix) && !((newMask instanceof DMask))) throw new MatrixException("New mask is of type DMask which is not matching type of matrix (FMatrix)");
         if ((this instanceof SMatrix) && !((newMask instanceof SMask))) throw new MatrixException("New mask is of type SMask which is not matching type of matrix (SMatrix)");
         mask = newMask;
     }
@@ -231,6 +231,24 @@ public class BinaryFunction implements Serializable {
         return binaryFunctionType;
     }
 
+    /**
+     * Returns delta value for Huber loss.
+     *
+     * @return delta value for Huber loss.
+     */
+    public double getHuberDelta() {
+        return huberDelta;
+    }
+
+    /**
+     * Returns margin value for hinge loss.
+     *
+     * @return margin value for hinge loss.
+     */
+    public double getHingeMargin() {
+        return hingeMargin;
+    }
+
     /**
      * Returns name of binary function.
      *
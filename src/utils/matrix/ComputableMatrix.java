@@ -7,6 +7,7 @@ package utils.matrix;
 
 import utils.configurable.DynamicParamException;
 import utils.matrix.operation.*;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Random;
@@ -17,6 +18,9 @@ import java.util.Random;
  */
 public abstract class ComputableMatrix extends AbstractMatrix {
 
+    @Serial
+    private static final long serialVersionUID = 9099649923193456858L;
+
     /**
      * If true matrix is treated as scalar (1x1) matrix otherwise as normal matrix.
      *
@@ -59,6 +63,12 @@ public abstract class ComputableMatrix extends AbstractMatrix {
      */
     private boolean isDepthSeparable;
 
+    /**
+     * Algorithm used to execute convolution operations.
+     *
+     */
+    private ConvolutionAlgorithm convolutionAlgorithm = ConvolutionAlgorithm.DIRECT;
+
     /**
      * Random function for matrix class.
      *
@@ -760,6 +770,24 @@ public abstract class ComputableMatrix extends AbstractMatrix {
         return isDepthSeparable;
     }
 
+    /**
+     * Sets algorithm used to execute convolution operations.
+     *
+     * @param convolutionAlgorithm algorithm used to execute convolution operations.
+     */
+    public void setConvolutionAlgorithm(ConvolutionAlgorithm convolutionAlgorithm) {
+        this.convolutionAlgorithm = convolutionAlgorithm;
+    }
+
+    /**
+     * Returns algorithm used to execute convolution operations.
+     *
+     * @return algorithm used to execute convolution operations.
+     */
+    public ConvolutionAlgorithm getConvolutionAlgorithm() {
+        return convolutionAlgorithm != null ? convolutionAlgorithm : ConvolutionAlgorithm.DIRECT;
+    }
+
     /**
      * Calculates convolution between this matrix and filter matrix.
      *
@@ -768,7 +796,9 @@ public abstract class ComputableMatrix extends AbstractMatrix {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     protected Matrix applyConvolve(Matrix filter) throws MatrixException {
-        return new ConvolutionMatrixOperation(getRows() - getFilterRowSize() + 1, getColumns() - getFilterColumnSize() + 1, getFilterDepth(), getDepth(), filter.getRows(), filter.getColumns(), getDilation(), getStride(), getIsDepthSeparable()).apply(this, filter);
+        ConvolutionMatrixOperation convolutionMatrixOperation = new ConvolutionMatrixOperation(getRows() - getFilterRowSize() + 1, getColumns() - getFilterColumnSize() + 1, getFilterDepth(), getDepth(), filter.getRows(), filter.getColumns(), getDilation(), getStride(), getIsDepthSeparable());
+        convolutionMatrixOperation.setConvolutionAlgorithm(getConvolutionAlgorithm());
+        return convolutionMatrixOperation.apply(this, filter);
     }
 
     /**
@@ -779,7 +809,9 @@ public abstract class ComputableMatrix extends AbstractMatrix {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     protected Matrix applyCrosscorrelate(Matrix filter) throws MatrixException {
-        return new CrosscorrelationMatrixOperation(getRows() - getFilterRowSize() + 1, getColumns() - getFilterColumnSize() + 1, getFilterDepth(), getDepth(), filter.getRows(), filter.getColumns(), getDilation(), getStride(), getIsDepthSeparable()).apply(this, filter);
+        CrosscorrelationMatrixOperation crosscorrelationMatrixOperation = new CrosscorrelationMatrixOperation(getRows() - getFilterRowSize() + 1, getColumns() - getFilterColumnSize() + 1, getFilterDepth(), getDepth(), filter.getRows(), filter.getColumns(), getDilation(), getStride(), getIsDepthSeparable());
+        crosscorrelationMatrixOperation.setConvolutionAlgorithm(getConvolutionAlgorithm());
+        return crosscorrelationMatrixOperation.apply(this, filter);
     }
 
     /**
@@ -0,0 +1,56 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix;
+
+/**
+ * Defines algorithm used to execute convolution and crosscorrelation operations and their gradients.<br>
+ *
+ */
+public enum ConvolutionAlgorithm {
+
+    /**
+     * Algorithm is selected automatically based on filter size and depth.
+     *
+     */
+    AUTO,
+
+    /**
+     * Convolution is calculated directly by iterating over output positions and filter values.
+     *
+     */
+    DIRECT,
+
+    /**
+     * Input patches are lowered into matrix (im2col) and convolution is calculated as matrix multiplication.
+     *
+     */
+    IM2COL;
+
+    /**
+     * Minimum length of lowered filter (filter rows x filter columns x input depth) for which im2col algorithm is selected automatically.
+     *
+     */
+    private static final int IM2COL_MINIMUM_FILTER_LENGTH = 8;
+
+    /**
+     * Returns algorithm to be used for convolution of given dimensions. If algorithm is AUTO actual algorithm is selected based on filter size.<br>
+     * Depth separable convolution multiplies each filter only with single input depth hence it is calculated directly.<br>
+     *
+     * @param filterRowSize filter row size.
+     * @param filterColumnSize filter column size.
+     * @param dilation dilation step.
+     * @param inputDepth input depth.
+     * @param isDepthSeparable if true convolution is depth separable.
+     * @return algorithm to be used for convolution.
+     */
+    public ConvolutionAlgorithm select(int filterRowSize, int filterColumnSize, int dilation, int inputDepth, boolean isDepthSeparable) {
+        if (this != AUTO) return this;
+        if (isDepthSeparable) return DIRECT;
+        int filterLength = ((filterRowSize + dilation - 1) / dilation) * ((filterColumnSize + dilation - 1) / dilation) * inputDepth;
+        return filterLength >= IM2COL_MINIMUM_FILTER_LENGTH ? IM2COL : DIRECT;
+    }
+
+}
@@ -5,6 +5,7 @@
 
 package utils.matrix;
 
+import java.io.Serial;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -15,6 +16,9 @@ import java.util.Arrays;
  */
 public class DMatrix extends ComputableMatrix {
 
+    @Serial
+    private static final long serialVersionUID = 877064341726099162L;
+
     /**
      * Defines matrix data structure using 1-dimensional row column array.
      *
@@ -369,6 +373,17 @@ public class DMatrix extends ComputableMatrix {
         matrix = new double[getPureRows() * getPureColumns() * getPureDepth()];
     }
 
+    /**
+     * Returns underlying data array of matrix for direct array access.<br>
+     * Data is returned only if matrix is not scalar, cannot be sliced and is not masked otherwise returns null.<br>
+     * Data is stored in column-major order per depth using untransposed dimensions of matrix.<br>
+     *
+     * @return underlying data array or null if direct array access is not possible.
+     */
+    public double[] getData() {
+        return isScalar() || canBeSliced() || getMask() != null ? null : matrix;
+    }
+
     /**
      * Sets value of matrix at specific row and column.
      *
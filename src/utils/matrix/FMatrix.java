@@ -0,0 +1,483 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Implements dense matrix.<br>
+ * Dense matrix assumes full array data structure including storage of zero values.<br>
+ *
+ */
+public final class FMatrix extends ComputableMatrix {
+
+    @Serial
+    private static final long serialVersionUID = 9200783967758517653L;
+
+    /**
+     * Defines matrix data structure using 1-dimensional row column array of single precision values.
+     *
+     */
+    private float[] matrix;
+
+    /**
+     * Constructor for scalar matrix (size 1x1x1).
+     *
+     * @param scalarValue value for matrix.
+     */
+    public FMatrix(double scalarValue) {
+        super(1, 1, 1,true);
+        matrix = new float[1];
+        matrix[0] = (float)scalarValue;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param mask defines mask of matrix.
+     * @throws MatrixException throws exception if new mask dimensions or mask type are not matching with this mask.
+     */
+    public FMatrix(int rows, int columns, int depth, Mask mask) throws MatrixException {
+        this(rows, columns, depth);
+        if (mask != null) setMask(mask);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     */
+    public FMatrix(int rows, int columns, int depth) {
+        super(rows, columns, depth);
+        matrix = new float[rows * columns * depth];
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     */
+    public FMatrix(int rows, int columns, int depth, boolean isScalar) {
+        super(rows, columns, depth, isScalar);
+        matrix = new float[rows * columns * depth];
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param isTransposed if true matrix is transposed and if false not transposed.
+     * @param canBeSliced if true matrix can be slides otherwise cannot be sliced.
+     */
+    public FMatrix(int rows, int columns, int depth, boolean isScalar, boolean isTransposed, boolean canBeSliced) {
+        super(rows, columns, depth, isScalar, isTransposed, canBeSliced);
+        matrix = new float[rows * columns * depth];
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param initialization type of initialization defined in class Init.
+     * @param inputs applied in convolutional initialization defined as channels * filter size * filter size.
+     * @param outputs applied in convolutional initialization defined as filters * filter size * filter size.
+     */
+    public FMatrix(int rows, int columns, int depth, Initialization initialization, int inputs, int outputs) {
+        this(rows, columns, depth);
+        initialize(initialization, inputs, outputs);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param initialization type of initialization defined in class Init.
+     * @param inputs applied in convolutional initialization defined as channels * filter size * filter size.
+     * @param outputs applied in convolutional initialization defined as filters * filter size * filter size.
+     */
+    public FMatrix(int rows, int columns, int depth, boolean isScalar, Initialization initialization, int inputs, int outputs) {
+        this(rows, columns, depth, isScalar);
+        initialize(initialization, inputs, outputs);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param initialization type of initialization defined in class Init.
+     */
+    public FMatrix(int rows, int columns, int depth, Initialization initialization) {
+        this(rows, columns, depth);
+        initialize(initialization);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param initialization type of initialization defined in class Init.
+     */
+    public FMatrix(int rows, int columns, int depth, boolean isScalar, Initialization initialization) {
+        this(rows, columns, depth, isScalar);
+        initialize(initialization);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param initializer initializer.
+     */
+    public FMatrix(int rows, int columns, int depth, Matrix.Initializer initializer) {
+        this(rows, columns, depth);
+        initialize(initializer);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param initializer initializer.
+     */
+    public FMatrix(int rows, int columns, int depth, boolean isScalar, Matrix.Initializer initializer) {
+        this(rows, columns, depth, isScalar);
+        initialize(initializer);
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param data clones matrix data from given matrix data.
+     */
+    public FMatrix(int rows, int columns, int depth, float[] data) {
+        super(rows, columns, depth);
+        matrix = data;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param data clones matrix data from given matrix data.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     */
+    public FMatrix(int rows, int columns, int depth, float[] data, boolean isScalar) {
+        super(rows, columns, depth, isScalar);
+        matrix = data;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param data matrix data.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param isTransposed if true matrix is transposed and if false not transposed.
+     */
+    public FMatrix(int rows, int columns, int depth, float[] data, boolean isScalar, boolean isTransposed) {
+        super(rows, columns, depth, isScalar, isTransposed);
+        matrix = data;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param data matrix data.
+     * @param copyData if true matrix data is copied and if false referenced.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param isTransposed if true matrix is transposed and if false not transposed.
+     */
+    public FMatrix(int rows, int columns, int depth, float[] data, boolean copyData, boolean isScalar, boolean isTransposed) {
+        super(rows, columns, depth, isScalar, isTransposed);
+        matrix = copyData ? data.clone() : data;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param data matrix data.
+     * @param copyData if true matrix data is copied and if false referenced.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param isTransposed if true matrix is transposed and if false not transposed.
+     * @param canBeSliced if true matrix can be slides otherwise cannot be sliced.
+     */
+    public FMatrix(int rows, int columns, int depth, float[] data, boolean copyData, boolean isScalar, boolean isTransposed, boolean canBeSliced) {
+        super(rows, columns, depth, isScalar, isTransposed, canBeSliced);
+        matrix = copyData ? data.clone() : data;
+    }
+
+    /**
+     * Constructor for single precision dense matrix.
+     *
+     * @param other matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public FMatrix(Matrix other) throws MatrixException {
+        this(other.getRows(), other.getColumns(), other.getDepth());
+        setEqualTo(other);
+    }
+
+    /**
+     * Creates new matrix with object full copy of this matrix.
+     *
+     * @return newly created copy of matrix.
+     * @throws MatrixException throws exception if mask is not set or cloning of matrix fails.
+     */
+    public Matrix copy() throws MatrixException {
+        Matrix newMatrix = new FMatrix(getPureRows(), getPureColumns(), getPureDepth(), matrix, true, isScalar(), isTransposed());
+        super.setParameters(newMatrix);
+        return newMatrix;
+    }
+
+    /**
+     * Creates new matrix with object full copy of this matrix.
+     *
+     * @param canBeSliced if true matrix can be slides otherwise cannot be sliced.
+     * @return newly created copy of matrix.
+     * @throws MatrixException throws exception if mask is not set or cloning of matrix fails.
+     */
+    public Matrix copy(boolean canBeSliced) throws MatrixException {
+        Matrix newMatrix = new FMatrix(getPureRows(), getPureColumns(), getPureDepth(), matrix, true, isScalar(), isTransposed(), canBeSliced);
+        super.setParameters(newMatrix);
+        return newMatrix;
+    }
+
+    /**
+     * Redimensions matrix assuming new dimensions are matching.
+     *
+     * @param newRows new row size
+     * @param newColumns new column size
+     * @param newDepth new depth size.
+     * @return redimensioned matrix.
+     * @throws MatrixException throws exception if redimensioning fails.
+     */
+    public Matrix redimension(int newRows, int newColumns, int newDepth) throws MatrixException {
+        return redimension(newRows, newColumns, newDepth, true);
+    }
+
+    /**
+     * Redimensions matrix assuming new dimensions are matching.
+     *
+     * @param newRows new row size
+     * @param newColumns new column size
+     * @param newDepth new depth size.
+     * @param copyData if true matrix data is copied and if false referenced.
+     * @return redimensioned matrix.
+     * @throws MatrixException throws exception if redimensioning fails.
+     */
+    public Matrix redimension(int newRows, int newColumns, int newDepth, boolean copyData) throws MatrixException {
+        if (newRows * newColumns * newDepth != getPureRows() * getPureColumns() * getPureDepth()) throw new MatrixException("Matrix of size: " + getPureRows() + "x" + getPureColumns() + "x" + getPureDepth() + " cannot be redimensioned to size: " + newRows + "x" + newColumns + "x" + newDepth);
+        Matrix newMatrix = new FMatrix(newRows, newColumns, newDepth, matrix, copyData, isScalar(), isTransposed());
+        super.setParameters(newMatrix);
+        return newMatrix;
+    }
+
+    /**
+     * Transposes matrix.
+     *
+     * @return transposed matrix.
+     * @throws MatrixException throws exception if cloning of mask fails.
+     */
+    protected Matrix applyTranspose() throws MatrixException {
+        Matrix newMatrix = new FMatrix(getPureRows(), getPureColumns(), getPureDepth(), matrix, isScalar(), true);
+        super.setParameters(newMatrix);
+        return newMatrix;
+    }
+
+    /**
+     * Checks if data of other matrix is equal to data of this matrix
+     *
+     * @param other matrix to be compared.
+     * @return true is data of this and other matrix are equal otherwise false.
+     * @throws MatrixException throws MatrixException if this and other matrix are not of equal dimensions.
+     */
+    public boolean equals(Matrix other) throws MatrixException {
+        if (other instanceof FMatrix otherFMatrix) {
+            if (other.getRows() != getRows() || other.getColumns() != getColumns() || other.getDepth() != getDepth()) {
+                throw new MatrixException("Incompatible target matrix size: " + other.getRows() + "x" + other.getColumns() + "x" + other.getDepth());
+            }
+            return otherFMatrix.isEqual(matrix);
+        }
+        else return super.equals(other);
+    }
+
+    /**
+     * Checks if matrix data equals to data of this matrix.
+     *
+     * @return true if matrix data and data of this matrix are equal otherwise returns false.
+     */
+    private boolean isEqual(float[] matrixData) {
+        return Arrays.equals(matrix, matrixData);
+    }
+
+    /**
+     * Returns sub-matrices within matrix.
+     *
+     * @return sub-matrices within matrix.
+     */
+    public ArrayList<Matrix> getSubMatrices() {
+        ArrayList<Matrix> matrices = new ArrayList<>();
+        matrices.add(this);
+        return matrices;
+    }
+
+    /**
+     * Resets matrix leaving dimensions same.
+     *
+     */
+    public void resetMatrix() {
+        matrix = new float[getPureRows() * getPureColumns() * getPureDepth()];
+    }
+
+    /**
+     * Returns underlying data array of matrix for direct array access.<br>
+     * Data is returned only if matrix is not scalar, cannot be sliced and is not masked otherwise returns null.<br>
+     * Data is stored in column-major order per depth using untransposed dimensions of matrix.<br>
+     *
+     * @return underlying data array or null if direct array access is not possible.
+     */
+    public float[] getData() {
+        return isScalar() || canBeSliced() || getMask() != null ? null : matrix;
+    }
+
+    /**
+     * Sets value of matrix at specific row and column.
+     *
+     * @param row row of value to be set.
+     * @param column column of value to be set.
+     * @param depth depth of value to be set.
+     * @param value new value to be set.
+     */
+    public void setValue(int row, int column, int depth, double value) {
+        matrix[getArrayIndex(row, column, depth)] = (float)value;
+    }
+
+    /**
+     * Returns value of matrix at specific row and column.
+     *
+     * @param row row of value to be returned.
+     * @param column column of value to be returned.
+     * @param depth depth of value to be returned.
+     * @return value of row and column.
+     */
+    public double getValue(int row, int column, int depth) {
+        return matrix[getArrayIndex(row, column, depth)];
+    }
+
+    /**
+     * Returns matrix of given size (rows x columns)
+     *
+     * @param rows rows
+     * @param columns columns
+     * @param depth depth
+     * @return new matrix
+     * @throws MatrixException throws exception if new mask dimensions or mask type are not matching with this mask.
+     */
+    public Matrix getNewMatrix(int rows, int columns, int depth) throws MatrixException {
+        return new FMatrix(rows, columns, depth, getMask() != null ? getNewMask(rows, columns, depth) : null);
+    }
+
+    /**
+     * Returns constant matrix
+     *
+     * @param constant constant
+     * @return new matrix
+     */
+    protected Matrix getNewMatrix(double constant) {
+        return new FMatrix(constant);
+    }
+
+    /**
+     * Returns new mask for this matrix.
+     *
+     * @return mask of this matrix.
+     */
+    protected Mask getNewMask() {
+        return new DMask(getTotalRows(), getTotalColumns(), getTotalDepth());
+    }
+
+    /**
+     * Returns new mask for this matrix.
+     *
+     * @param rows rows
+     * @param columns columns
+     * @param depth depth
+     * @return mask of this matrix.
+     */
+    protected Mask getNewMask(int rows, int columns, int depth) {
+        return new DMask(rows, columns, depth);
+    }
+
+    /**
+     * Return one-hot encoded column vector.
+     *
+     * @param size size of vector
+     * @param position position of one-hot encoded value
+     * @return one-hot encoded vector.
+     * @throws MatrixException throws exception if position of one-hot encoded value exceeds vector size.
+     */
+    public static Matrix getOneHotVector(int size, int position) throws MatrixException {
+        return getOneHotVector(size, position, true);
+    }
+
+    /**
+     * Return one-hot encoded vector.
+     *
+     * @param size size of vector
+     * @param position position of one-hot encoded value
+     * @param asColumnVector if true one-hot vector is column vector otherwise row vector
+     * @return one-hot encoded vector.
+     * @throws MatrixException throws exception if position of one-hot encoded value exceeds vector size.
+     */
+    public static Matrix getOneHotVector(int size, int position, boolean asColumnVector) throws MatrixException {
+        if (position > size - 1) throw new MatrixException("Position " + position + " cannot exceed vector size " + size);
+        Matrix oneHotVector = new FMatrix(asColumnVector ? size : 1, asColumnVector ? 1 : size, 1);
+        oneHotVector.setValue(asColumnVector ? position : 0, asColumnVector ? 0 : position, 0, 1);
+        return oneHotVector;
+    }
+
+}
@@ -668,6 +668,17 @@ public interface Matrix {
      */
     Matrix dot(Matrix other) throws MatrixException;
 
+    /**
+     * Calculates dot attention with this matrix as query. Output is value x softmax(scalingFactor * query x key.T) where softmax is taken column wise.<br>
+     * Attention is calculated with streaming softmax without materializing attention score matrix.<br>
+     *
+     * @param keyValue transposed keys stacked vertically on top of values. Number of key rows must be equal to number of columns of this matrix.
+     * @param scalingFactor scaling factor applied to attention scores.
+     * @return matrix which stores operation result.
+     * @throws MatrixException throws MatrixException if dimensions of this and key value matrix are not matching.
+     */
+    Matrix attend(Matrix keyValue, double scalingFactor) throws MatrixException;
+
     /**
      * Returns constant as matrix.
      *
@@ -1117,6 +1128,20 @@ public interface Matrix {
      */
     boolean getIsDepthSeparable();
 
+    /**
+     * Sets algorithm used to execute convolution operations.
+     *
+     * @param convolutionAlgorithm algorithm used to execute convolution operations.
+     */
+    void setConvolutionAlgorithm(ConvolutionAlgorithm convolutionAlgorithm);
+
+    /**
+     * Returns algorithm used to execute convolution operations.
+     *
+     * @return algorithm used to execute convolution operations.
+     */
+    ConvolutionAlgorithm getConvolutionAlgorithm();
+
     /**
      * Calculates convolution between this matrix and filter matrix.
      *
@@ -0,0 +1,48 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix;
+
+/**
+ * Defines numeric precision of dense matrices.<br>
+ *
+ */
+public enum Precision {
+
+    /**
+     * Double precision (64-bit) values stored in DMatrix.
+     *
+     */
+    DOUBLE,
+
+    /**
+     * Single precision (32-bit) values stored in FMatrix.
+     *
+     */
+    FLOAT;
+
+    /**
+     * Returns new dense matrix of this precision.
+     *
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @return new dense matrix.
+     */
+    public Matrix getNewMatrix(int rows, int columns, int depth) {
+        return this == FLOAT ? new FMatrix(rows, columns, depth) : new DMatrix(rows, columns, depth);
+    }
+
+    /**
+     * Returns precision of matrix. Matrices other than FMatrix are considered to be of double precision.
+     *
+     * @param matrix matrix.
+     * @return precision of matrix.
+     */
+    public static Precision getPrecision(Matrix matrix) {
+        return matrix instanceof FMatrix ? FLOAT : DOUBLE;
+    }
+
+}
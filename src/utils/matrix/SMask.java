@@ -5,19 +5,28 @@
 
 package utils.matrix;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Implements sparse mask for sparse matrices.<br>
+ * Masked positions are stored as bit set indexed by array index. Bit set is allocated only up to highest masked position.<br>
  *
  */
 public class SMask extends AbstractMask {
 
+    @Serial
+    private static final long serialVersionUID = 257946878430336435L;
+
     /**
-     * Hash map to store mask information.
+     * Bit set to store mask information.
      *
      */
-    private HashMap<Integer, Boolean> mask = new HashMap<>();
+    private BitSet mask = new BitSet();
 
     /**
      * Constructor for sparse mask.
@@ -52,9 +61,9 @@ public class SMask extends AbstractMask {
      * @param isTransposed is true mask is transposed otherwise false.
      * @throws MatrixException throws exception if masking probability is not between 0 and 1.
      */
-    private SMask(int rows, int columns, int depth, HashMap<Integer, Boolean> data, double probability, boolean isTransposed) throws MatrixException {
+    private SMask(int rows, int columns, int depth, BitSet data, double probability, boolean isTransposed) throws MatrixException {
         super(rows, columns, depth, isTransposed, probability);
-        mask.putAll(data);
+        mask.or(data);
     }
 
     /**
@@ -94,7 +103,7 @@ public class SMask extends AbstractMask {
      * @param value defines if specific row and column is masked (true) or not (false).
      */
     public void setMask(int row, int column, int depth, boolean value) {
-        mask.put(getArrayIndex(row, column, depth), value);
+        mask.set(getArrayIndex(row, column, depth), value);
     }
 
     /**
@@ -107,7 +116,7 @@ public class SMask extends AbstractMask {
      */
     public boolean getMask(int row, int column, int depth) {
         if (mask == null) return false;
-        return mask.getOrDefault(getArrayIndex(row, column, depth), false);
+        return mask.get(getArrayIndex(row, column, depth));
     }
 
     /**
@@ -115,7 +124,26 @@ public class SMask extends AbstractMask {
      *
      */
     public void reset() {
-        mask = new HashMap<>();
+        mask = new BitSet();
+    }
+
+    /**
+     * Reads sparse mask from object input stream. Mask stored in earlier format as hash map by array index is converted into bit set.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        Object data = fields.get("mask", null);
+        if (data instanceof HashMap) {
+            mask = new BitSet();
+            for (Map.Entry<Integer, Boolean> entry : ((HashMap<Integer, Boolean>)data).entrySet()) if (entry.getValue()) mask.set(entry.getKey());
+        }
+        else mask = (BitSet)data;
     }
 
 }
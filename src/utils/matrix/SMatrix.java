@@ -5,7 +5,11 @@
 
 package utils.matrix;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,15 +17,38 @@ import java.util.Map;
  * Implements sparse matrix.<br>
  * Sparse matrix optimizes matrix memory usage by storing only non-zero values.<br>
  * This matrix type is useful when input sample is expected to contain mostly zero values.<br>
+ * Non-zero values are stored in compressed form as primitive arrays of array indices and values sorted by array index.<br>
+ * As array index is column-major per depth, storage order equals compressed sparse column (CSC) format for untransposed matrix and compressed sparse row (CSR) format for transposed matrix.<br>
  *
  */
 public class SMatrix extends ComputableMatrix {
 
+    @Serial
+    private static final long serialVersionUID = 6214197217484352990L;
+
+    /**
+     * Initial capacity of non-zero value arrays.
+     *
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
     /**
-     * Matrix data structure as hash map.
+     * Array indices of non-zero values in ascending order.
      *
      */
-    private HashMap<Integer, Double> matrix = new HashMap<>();
+    private int[] indices = new int[INITIAL_CAPACITY];
+
+    /**
+     * Non-zero values in order of array indices.
+     *
+     */
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    /**
+     * Number of non-zero values.
+     *
+     */
+    private int nonZeroCount;
 
     /**
      * Constructor for scalar matrix (size 1x1).
@@ -165,11 +192,7 @@ public class SMatrix extends ComputableMatrix {
      */
     public SMatrix(int rows, int columns, int depth, HashMap<Integer, Double> data) {
         this(rows, columns, depth);
-        for (Map.Entry<Integer, Double> entry : data.entrySet()) {
-            int index = entry.getKey();
-            double value = entry.getValue();
-            matrix.put(index, value);
-        }
+        setData(data);
     }
 
     /**
@@ -183,11 +206,7 @@ public class SMatrix extends ComputableMatrix {
      */
     public SMatrix(int rows, int columns, int depth, boolean isScalar, HashMap<Integer, Double> data) {
         this(rows, columns, depth, isScalar);
-        for (Map.Entry<Integer, Double> entry : data.entrySet()) {
-            int index = entry.getKey();
-            double value = entry.getValue();
-            matrix.put(index, value);
-        }
+        setData(data);
     }
 
     /**
@@ -201,7 +220,7 @@ public class SMatrix extends ComputableMatrix {
      */
     public SMatrix(int rows, int columns, int depth, HashMap<Integer, Double> data, boolean isTransposed) {
         super(rows, columns, depth, false, isTransposed);
-        matrix.putAll(data);
+        setData(data);
     }
 
     /**
@@ -215,7 +234,7 @@ public class SMatrix extends ComputableMatrix {
      */
     public SMatrix(int rows, int columns, int depth, boolean isScalar, boolean isTransposed, HashMap<Integer, Double> data) {
         super(rows, columns, depth, isScalar, isTransposed);
-        matrix.putAll(data);
+        setData(data);
     }
 
     /**
@@ -230,7 +249,42 @@ public class SMatrix extends ComputableMatrix {
      */
     public SMatrix(int rows, int columns, int depth, boolean isScalar, boolean isTransposed, boolean canBeSliced, HashMap<Integer, Double> data) {
         super(rows, columns, depth, isScalar, isTransposed, canBeSliced);
-        matrix.putAll(data);
+        setData(data);
+    }
+
+    /**
+     * Constructor for sparse matrix.
+     * @param rows defines number of rows in matrix.
+     * @param columns defines number of columns in matrix.
+     * @param depth defines depth of matrix.
+     * @param isScalar true if matrix is scalar (size 1x1).
+     * @param isTransposed if true matrix is transposed and if false not transposed.
+     * @param canBeSliced if true matrix can be slides otherwise cannot be sliced.
+     * @param indices array indices of non-zero values in ascending order. Array is copied.
+     * @param values non-zero values in order of array indices. Array is copied.
+     * @param nonZeroCount number of non-zero values.
+     */
+    public SMatrix(int rows, int columns, int depth, boolean isScalar, boolean isTransposed, boolean canBeSliced, int[] indices, double[] values, int nonZeroCount) {
+        super(rows, columns, depth, isScalar, isTransposed, canBeSliced);
+        this.indices = Arrays.copyOf(indices, Math.max(INITIAL_CAPACITY, nonZeroCount));
+        this.values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, nonZeroCount));
+        this.nonZeroCount = nonZeroCount;
+    }
+
+    /**
+     * Sets matrix data from hash map of array indices and values. Zero values are omitted.
+     *
+     * @param data matrix data.
+     */
+    private void setData(HashMap<Integer, Double> data) {
+        int[] sortedIndices = new int[data.size()];
+        int index = 0;
+        for (Map.Entry<Integer, Double> entry : data.entrySet()) if (entry.getValue() != 0) sortedIndices[index++] = entry.getKey();
+        Arrays.sort(sortedIndices, 0, index);
+        indices = Arrays.copyOf(sortedIndices, Math.max(INITIAL_CAPACITY, index));
+        values = new double[indices.length];
+        for (int position = 0; position < index; position++) values[position] = data.get(indices[position]);
+        nonZeroCount = index;
     }
 
     /**
@@ -240,7 +294,7 @@ public class SMatrix extends ComputableMatrix {
      * @throws MatrixException throws exception if mask is not set or cloning of matrix fails.
      */
     public Matrix copy() throws MatrixException {
-        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), isTransposed(), matrix);
+        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), isTransposed(), false, indices, values, nonZeroCount);
         super.setParameters(newMatrix);
         return newMatrix;
     }
@@ -253,7 +307,7 @@ public class SMatrix extends ComputableMatrix {
      * @throws MatrixException throws exception if mask is not set or cloning of matrix fails.
      */
     public Matrix copy(boolean canBeSliced) throws MatrixException {
-        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), isTransposed(), canBeSliced, matrix);
+        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), isTransposed(), canBeSliced, indices, values, nonZeroCount);
         super.setParameters(newMatrix);
         return newMatrix;
     }
@@ -269,7 +323,7 @@ public class SMatrix extends ComputableMatrix {
      */
     public Matrix redimension(int newRows, int newColumns, int newDepth) throws MatrixException {
         if (newRows * newColumns * newDepth != getPureRows() * getPureColumns() * getPureDepth()) throw new MatrixException("Matrix of size: " + getPureRows() + "x" + getPureColumns() + "x" + getPureDepth() + " cannot be redimensioned to size: " + newRows + "x" + newColumns + "x" + newDepth);
-        Matrix newMatrix = new SMatrix(newRows, newColumns, newDepth, isScalar(), isTransposed(), matrix);
+        Matrix newMatrix = new SMatrix(newRows, newColumns, newDepth, isScalar(), isTransposed(), false, indices, values, nonZeroCount);
         super.setParameters(newMatrix);
         return newMatrix;
     }
@@ -294,7 +348,7 @@ public class SMatrix extends ComputableMatrix {
      * @throws MatrixException throws exception if cloning of mask fails.
      */
     protected Matrix applyTranspose() throws MatrixException {
-        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), true, matrix);
+        Matrix newMatrix = new SMatrix(getPureRows(), getPureColumns(), getPureDepth(), isScalar(), true, false, indices, values, nonZeroCount);
         super.setParameters(newMatrix);
         return newMatrix;
     }
@@ -315,7 +369,52 @@ public class SMatrix extends ComputableMatrix {
      *
      */
     public void resetMatrix() {
-        matrix = new HashMap<>();
+        indices = new int[INITIAL_CAPACITY];
+        values = new double[INITIAL_CAPACITY];
+        nonZeroCount = 0;
+    }
+
+    /**
+     * Returns number of non-zero values in matrix.
+     *
+     * @return number of non-zero values.
+     */
+    public int getNonZeroCount() {
+        return nonZeroCount;
+    }
+
+    /**
+     * Returns array indices of non-zero values for direct array access.<br>
+     * Indices are returned only if matrix is not scalar, cannot be sliced and is not masked otherwise returns null.<br>
+     * Indices are in ascending order and use column-major order per depth for untransposed dimensions of matrix. Only first non-zero count entries are valid.<br>
+     *
+     * @return array indices of non-zero values or null if direct array access is not possible.
+     */
+    public int[] getIndices() {
+        return isScalar() || canBeSliced() || getMask() != null ? null : indices;
+    }
+
+    /**
+     * Returns non-zero values for direct array access.<br>
+     * Values are returned only if matrix is not scalar, cannot be sliced and is not masked otherwise returns null.<br>
+     * Only first non-zero count entries are valid.<br>
+     *
+     * @return non-zero values or null if direct array access is not possible.
+     */
+    public double[] getValues() {
+        return isScalar() || canBeSliced() || getMask() != null ? null : values;
+    }
+
+    /**
+     * Returns position of array index within non-zero values.
+     *
+     * @param arrayIndex array index.
+     * @return position of array index if found otherwise (-(insertion point) - 1).
+     */
+    private int getPosition(int arrayIndex) {
+        // Values are typically set in order of array index hence appending position is checked first.
+        if (nonZeroCount == 0 || indices[nonZeroCount - 1] < arrayIndex) return -nonZeroCount - 1;
+        return Arrays.binarySearch(indices, 0, nonZeroCount, arrayIndex);
     }
 
     /**
@@ -327,7 +426,28 @@ public class SMatrix extends ComputableMatrix {
      * @param value new value to be set.
      */
     public void setValue(int row, int column, int depth, double value) {
-        if (value != 0) matrix.put(getArrayIndex(row, column, depth), value);
+        int arrayIndex = getArrayIndex(row, column, depth);
+        int position = getPosition(arrayIndex);
+        if (position >= 0) {
+            if (value != 0) values[position] = value;
+            else {
+                System.arraycopy(indices, position + 1, indices, position, nonZeroCount - position - 1);
+                System.arraycopy(values, position + 1, values, position, nonZeroCount - position - 1);
+                nonZeroCount--;
+            }
+        }
+        else if (value != 0) {
+            position = -position - 1;
+            if (nonZeroCount == indices.length) {
+                indices = Arrays.copyOf(indices, Math.max(INITIAL_CAPACITY, 2 * nonZeroCount));
+                values = Arrays.copyOf(values, indices.length);
+            }
+            System.arraycopy(indices, position, indices, position + 1, nonZeroCount - position);
+            System.arraycopy(values, position, values, position + 1, nonZeroCount - position);
+            indices[position] = arrayIndex;
+            values[position] = value;
+            nonZeroCount++;
+        }
     }
 
     /**
@@ -339,7 +459,8 @@ public class SMatrix extends ComputableMatrix {
      * @return value of row and column.
      */
     public double getValue(int row, int column, int depth) {
-        return matrix.getOrDefault(getArrayIndex(row, column, depth), (double)0);
+        int position = getPosition(getArrayIndex(row, column, depth));
+        return position >= 0 ? values[position] : 0;
     }
 
     /**
@@ -414,4 +535,23 @@ public class SMatrix extends ComputableMatrix {
         return oneHotVector;
     }
 
+    /**
+     * Reads sparse matrix from object input stream. Matrix data stored in earlier format as hash map by array index is converted into compressed form.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        if (fields.getObjectStreamClass().getField("matrix") != null) setData((HashMap<Integer, Double>)fields.get("matrix", null));
+        else {
+            indices = (int[])fields.get("indices", null);
+            values = (double[])fields.get("values", null);
+            nonZeroCount = fields.get("nonZeroCount", 0);
+        }
+    }
+
 }
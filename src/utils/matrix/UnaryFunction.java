@@ -356,6 +356,43 @@ public class UnaryFunction implements Serializable {
         return unaryFunctionType;
     }
 
+    /**
+     * Returns threshold value of RELU, ELU or SELU function.
+     *
+     * @return threshold value of function or 0 if function does not have threshold.
+     */
+    public double getThreshold() {
+        return switch (unaryFunctionType) {
+            case RELU -> RELUThreshold;
+            case ELU -> ELUThreshold;
+            case SELU -> SELUThreshold;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Returns alpha value of RELU, ELU or SELU function.
+     *
+     * @return alpha value of function or 0 if function does not have alpha.
+     */
+    public double getAlpha() {
+        return switch (unaryFunctionType) {
+            case RELU -> RELUAlpha;
+            case ELU -> ELUAlpha;
+            case SELU -> SELUAlpha;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Returns lambda value of SELU function.
+     *
+     * @return lambda value of SELU function.
+     */
+    public double getLambda() {
+        return SELULambda;
+    }
+
     /**
      * Returns Softmax tau.
      *
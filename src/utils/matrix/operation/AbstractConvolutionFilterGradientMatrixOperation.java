@@ -8,12 +8,17 @@ package utils.matrix.operation;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
+
 /**
  * Implements abstract convolution filter gradient matrix operation.
  *
  */
 public abstract class AbstractConvolutionFilterGradientMatrixOperation extends AbstractConvolutionOperation {
 
+    @Serial
+    private static final long serialVersionUID = -2219469332772324736L;
+
     /**
      * First matrix.
      *
@@ -51,6 +56,21 @@ public abstract class AbstractConvolutionFilterGradientMatrixOperation extends A
         return applyMatrixOperation(outputGradient, null, outputGradient.getNewMatrix(getFilterRows(), getFilterColumns(), getIsDepthSeparable() ? getInputDepth() : getInputDepth() * getDepth()));
     }
 
+    /**
+     * Applies matrix operation. If im2col algorithm is used filter gradient is calculated as matrix multiplication between transposed input patches and output gradient.
+     *
+     * @param first output gradient.
+     * @param second not used.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    protected Matrix applyMatrixOperation(Matrix first, Matrix second, Matrix result) throws MatrixException {
+        if (!isIm2col(first, result)) return super.applyMatrixOperation(first, second, result);
+        addFilterMatrix(dot(getPatchMatrix(this.first, result).transpose(), getPositionMatrix(first, result)), result);
+        return result;
+    }
+
     /**
      * Applies convolution operation.
      *
@@ -8,12 +8,17 @@ package utils.matrix.operation;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
+
 /**
  * Implements abstract convolution input gradient matrix operation.
  *
  */
 public abstract class AbstractConvolutionInputGradientMatrixOperation extends AbstractConvolutionOperation {
 
+    @Serial
+    private static final long serialVersionUID = 3227529163918611486L;
+
     /**
      * Filter matrix.
      *
@@ -51,6 +56,21 @@ public abstract class AbstractConvolutionInputGradientMatrixOperation extends Ab
         return applyMatrixOperation(outputGradient, null, outputGradient.getNewMatrix(getInputRows(), getInputColumns(), getInputDepth()));
     }
 
+    /**
+     * Applies matrix operation. If im2col algorithm is used input gradient is calculated as matrix multiplication between output gradient and transposed filter and accumulated into input positions (col2im).
+     *
+     * @param first output gradient.
+     * @param second not used.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    protected Matrix applyMatrixOperation(Matrix first, Matrix second, Matrix result) throws MatrixException {
+        if (!isIm2col(first, result)) return super.applyMatrixOperation(first, second, result);
+        addPatchMatrix(dot(getPositionMatrix(first, result), getFilterMatrix(filter, result).transpose()), result);
+        return result;
+    }
+
     /**
      * Applies convolution operation.
      *
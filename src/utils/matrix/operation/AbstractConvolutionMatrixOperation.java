@@ -5,15 +5,24 @@
 
 package utils.matrix.operation;
 
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
+
 /**
- * Implements abstract convolution matrix operation.
+ * Implements abstract convolution matrix operation.<br>
+ * Large unmasked operations are split by output depth (filter) and executed in parallel using shared compute pool.<br>
+ * If im2col algorithm is used input patches and filter are lowered into matrices and convolution is calculated as matrix multiplication.<br>
  *
  */
 public abstract class AbstractConvolutionMatrixOperation extends AbstractConvolutionOperation {
 
+    @Serial
+    private static final long serialVersionUID = -2944293952253050835L;
+
     /**
      * First matrix.
      *
@@ -64,6 +73,61 @@ public abstract class AbstractConvolutionMatrixOperation extends AbstractConvolu
         return applyMatrixOperation(first, null, first.getNewMatrix(getRows(), getColumns(), getDepth()));
     }
 
+    /**
+     * Applies matrix operation.
+     *
+     * @param first first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    protected Matrix applyMatrixOperation(Matrix first, Matrix second, Matrix result) throws MatrixException {
+        if (isIm2col(first, result)) {
+            setPositionMatrix(dot(getPatchMatrix(first, result), getFilterMatrix(filter, result)), result);
+            return result;
+        }
+        long work = (long)getRows() * getColumns() * getDepth() * getFilterRows() * getFilterColumns() * (getIsDepthSeparable() ? 1 : getInputDepth());
+        if (hasMask(first, second) || !(result instanceof DMatrix || result instanceof FMatrix) || !ComputePool.isParallel(work)) return super.applyMatrixOperation(first, second, result);
+        ComputePool.execute(getDepth(), depth -> {
+            for (int row = 0; row < getRows(); row += getStride()) {
+                for (int column = 0; column < getColumns(); column += getStride()) {
+                    result.setValue(row, column, depth, calculateConvolutionValue(row, column, depth));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Calculates convolution value at specific row, column and depth using local accumulation so that calculation can be executed concurrently.
+     *
+     * @param row row.
+     * @param column column.
+     * @param depth depth.
+     * @return convolution value.
+     */
+    private double calculateConvolutionValue(int row, int column, int depth) {
+        double value = 0;
+        for (int filterRow = 0; filterRow < getFilterRows(); filterRow += getDilation()) {
+            for (int filterColumn = 0; filterColumn < getFilterColumns(); filterColumn += getDilation()) {
+                int currentFilterRow = getFilterRow(filterRow);
+                int currentFilterColumn = getFilterColumn(filterColumn);
+                int inputRow = getCurrentInputRow(row, currentFilterRow);
+                int inputColumn = getCurrentInputColumn(column, currentFilterColumn);
+                if (isValidInputPosition(inputRow, inputColumn)) {
+                    if (getIsDepthSeparable()) value += first.getValue(inputRow, inputColumn, depth) * filter.getValue(currentFilterRow, currentFilterColumn, depth);
+                    else {
+                        for (int inputDepth = 0; inputDepth < getInputDepth(); inputDepth++) {
+                            value += first.getValue(inputRow, inputColumn, inputDepth) * filter.getValue(currentFilterRow, currentFilterColumn, getFilterPosition(inputDepth, depth));
+                        }
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
     /**
      * Applies convolution operation.
      *
@@ -5,7 +5,9 @@
 
 package utils.matrix.operation;
 
-import utils.matrix.Matrix;
+import utils.matrix.*;
+
+import java.io.Serial;
 
 /**
  * Implements abstract convolution operation.
@@ -13,6 +15,9 @@ import utils.matrix.Matrix;
  */
 public abstract class AbstractConvolutionOperation extends AbstractConvolutionalOperation {
 
+    @Serial
+    private static final long serialVersionUID = -8398209402867515881L;
+
     /**
      * If true convolution is depth separable
      *
@@ -25,6 +30,12 @@ public abstract class AbstractConvolutionOperation extends AbstractConvolutional
      */
     private final boolean asConvolution;
 
+    /**
+     * Algorithm used to execute operation.
+     *
+     */
+    private ConvolutionAlgorithm convolutionAlgorithm = ConvolutionAlgorithm.DIRECT;
+
     /**
      * Constructor for abstract convolution operation.
      *
@@ -46,6 +57,264 @@ public abstract class AbstractConvolutionOperation extends AbstractConvolutional
         this.asConvolution = asConvolution && (filterRowSize > 1 || filterColumnSize > 1);
     }
 
+    /**
+     * Sets algorithm used to execute operation. If algorithm is AUTO actual algorithm is selected based on filter size.
+     *
+     * @param convolutionAlgorithm algorithm used to execute operation.
+     */
+    public void setConvolutionAlgorithm(ConvolutionAlgorithm convolutionAlgorithm) {
+        this.convolutionAlgorithm = convolutionAlgorithm.select(getFilterRows(), getFilterColumns(), getDilation(), getInputDepth(), getIsDepthSeparable());
+    }
+
+    /**
+     * Returns algorithm used to execute operation.
+     *
+     * @return algorithm used to execute operation.
+     */
+    public ConvolutionAlgorithm getConvolutionAlgorithm() {
+        return convolutionAlgorithm;
+    }
+
+    /**
+     * Checks if operation is applied as im2col operation i.e. as matrix multiplication between lowered input patches and filters.<br>
+     * Masked operations and operations with other than dense result matrix are applied directly.<br>
+     *
+     * @param first first matrix.
+     * @param result result matrix.
+     * @return true if operation is applied as im2col operation otherwise false.
+     */
+    protected boolean isIm2col(Matrix first, Matrix result) {
+        return convolutionAlgorithm == ConvolutionAlgorithm.IM2COL && !hasMask(first, null) && (result instanceof DMatrix || result instanceof FMatrix);
+    }
+
+    /**
+     * Returns number of filter positions (taps) considering dilation.
+     *
+     * @return number of filter positions.
+     */
+    private int getNumberOfTaps() {
+        return ((getFilterRows() + getDilation() - 1) / getDilation()) * ((getFilterColumns() + getDilation() - 1) / getDilation());
+    }
+
+    /**
+     * Returns filter rows and columns of filter positions (taps) in order of direct convolution loop.
+     *
+     * @return filter rows (index 0) and filter columns (index 1) of filter positions.
+     */
+    private int[][] getTaps() {
+        int[][] taps = new int[2][getNumberOfTaps()];
+        int tap = 0;
+        for (int filterRow = 0; filterRow < getFilterRows(); filterRow += getDilation()) {
+            for (int filterColumn = 0; filterColumn < getFilterColumns(); filterColumn += getDilation()) {
+                taps[0][tap] = getFilterRow(filterRow);
+                taps[1][tap++] = getFilterColumn(filterColumn);
+            }
+        }
+        return taps;
+    }
+
+    /**
+     * Returns number of output positions visited by operation considering stride.
+     *
+     * @return number of output positions.
+     */
+    private int getNumberOfPositions() {
+        return ((getRows() + getStride() - 1) / getStride()) * ((getColumns() + getStride() - 1) / getStride());
+    }
+
+    /**
+     * Returns rows and columns of output positions visited by operation in column major order.
+     *
+     * @return rows (index 0) and columns (index 1) of output positions.
+     */
+    private int[][] getPositions() {
+        int[][] positions = new int[2][getNumberOfPositions()];
+        int position = 0;
+        for (int column = 0; column < getColumns(); column += getStride()) {
+            for (int row = 0; row < getRows(); row += getStride()) {
+                positions[0][position] = row;
+                positions[1][position++] = column;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns new matrix of same precision as reference matrix.
+     *
+     * @param reference reference matrix.
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @return new matrix.
+     */
+    private static Matrix getNewMatrix(Matrix reference, int rows, int columns, int depth) {
+        return Precision.getPrecision(reference).getNewMatrix(rows, columns, depth);
+    }
+
+    /**
+     * Lowers input into patch matrix (im2col). Each row of patch matrix contains input values multiplied with filter at single output position.<br>
+     * For depth separable operation patch matrix has size positions x taps x depth otherwise positions x (input depth x taps) x 1.<br>
+     *
+     * @param input input matrix.
+     * @param reference reference matrix defining precision of patch matrix.
+     * @return patch matrix.
+     */
+    protected Matrix getPatchMatrix(Matrix input, Matrix reference) {
+        int[][] positions = getPositions();
+        int[][] taps = getTaps();
+        int numberOfPositions = positions[0].length;
+        int numberOfTaps = taps[0].length;
+        int patchDepth = getIsDepthSeparable() ? getDepth() : getInputDepth();
+        Matrix patchMatrix = getIsDepthSeparable() ? getNewMatrix(reference, numberOfPositions, numberOfTaps, patchDepth) : getNewMatrix(reference, numberOfPositions, numberOfTaps * patchDepth, 1);
+        for (int depth = 0; depth < patchDepth; depth++) {
+            for (int tap = 0; tap < numberOfTaps; tap++) {
+                int patchColumn = getIsDepthSeparable() ? tap : depth * numberOfTaps + tap;
+                int patchDepthIndex = getIsDepthSeparable() ? depth : 0;
+                for (int position = 0; position < numberOfPositions; position++) {
+                    int inputRow = getCurrentInputRow(positions[0][position], taps[0][tap]);
+                    int inputColumn = getCurrentInputColumn(positions[1][position], taps[1][tap]);
+                    if (isValidInputPosition(inputRow, inputColumn)) patchMatrix.setValue(position, patchColumn, patchDepthIndex, input.getValue(inputRow, inputColumn, depth));
+                }
+            }
+        }
+        return patchMatrix;
+    }
+
+    /**
+     * Accumulates patch matrix back into input shaped matrix (col2im). Inverse of lowering input into patch matrix.
+     *
+     * @param patchMatrix patch matrix.
+     * @param result input shaped result matrix.
+     */
+    protected void addPatchMatrix(Matrix patchMatrix, Matrix result) {
+        int[][] positions = getPositions();
+        int[][] taps = getTaps();
+        int numberOfPositions = positions[0].length;
+        int numberOfTaps = taps[0].length;
+        int patchDepth = getIsDepthSeparable() ? getDepth() : getInputDepth();
+        for (int depth = 0; depth < patchDepth; depth++) {
+            for (int tap = 0; tap < numberOfTaps; tap++) {
+                int patchColumn = getIsDepthSeparable() ? tap : depth * numberOfTaps + tap;
+                int patchDepthIndex = getIsDepthSeparable() ? depth : 0;
+                for (int position = 0; position < numberOfPositions; position++) {
+                    int inputRow = getCurrentInputRow(positions[0][position], taps[0][tap]);
+                    int inputColumn = getCurrentInputColumn(positions[1][position], taps[1][tap]);
+                    if (isValidInputPosition(inputRow, inputColumn)) result.addByValue(inputRow, inputColumn, depth, patchMatrix.getValue(position, patchColumn, patchDepthIndex));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lowers filter into filter matrix. Each column of filter matrix contains filter values of single output depth.<br>
+     * For depth separable operation filter matrix has size taps x 1 x depth otherwise (input depth x taps) x depth x 1.<br>
+     *
+     * @param filter filter matrix.
+     * @param reference reference matrix defining precision of filter matrix.
+     * @return lowered filter matrix.
+     */
+    protected Matrix getFilterMatrix(Matrix filter, Matrix reference) {
+        int[][] taps = getTaps();
+        int numberOfTaps = taps[0].length;
+        if (getIsDepthSeparable()) {
+            Matrix filterMatrix = getNewMatrix(reference, numberOfTaps, 1, getDepth());
+            for (int depth = 0; depth < getDepth(); depth++) {
+                for (int tap = 0; tap < numberOfTaps; tap++) {
+                    filterMatrix.setValue(tap, 0, depth, filter.getValue(taps[0][tap], taps[1][tap], depth));
+                }
+            }
+            return filterMatrix;
+        }
+        else {
+            Matrix filterMatrix = getNewMatrix(reference, numberOfTaps * getInputDepth(), getDepth(), 1);
+            for (int depth = 0; depth < getDepth(); depth++) {
+                for (int inputDepth = 0; inputDepth < getInputDepth(); inputDepth++) {
+                    for (int tap = 0; tap < numberOfTaps; tap++) {
+                        filterMatrix.setValue(inputDepth * numberOfTaps + tap, depth, 0, filter.getValue(taps[0][tap], taps[1][tap], getFilterPosition(inputDepth, depth)));
+                    }
+                }
+            }
+            return filterMatrix;
+        }
+    }
+
+    /**
+     * Accumulates lowered filter matrix back into filter shaped matrix. Inverse of lowering filter into filter matrix.
+     *
+     * @param filterMatrix lowered filter matrix.
+     * @param result filter shaped result matrix.
+     */
+    protected void addFilterMatrix(Matrix filterMatrix, Matrix result) {
+        int[][] taps = getTaps();
+        int numberOfTaps = taps[0].length;
+        for (int depth = 0; depth < getDepth(); depth++) {
+            if (getIsDepthSeparable()) {
+                for (int tap = 0; tap < numberOfTaps; tap++) {
+                    result.addByValue(taps[0][tap], taps[1][tap], depth, filterMatrix.getValue(tap, 0, depth));
+                }
+            }
+            else {
+                for (int inputDepth = 0; inputDepth < getInputDepth(); inputDepth++) {
+                    for (int tap = 0; tap < numberOfTaps; tap++) {
+                        result.addByValue(taps[0][tap], taps[1][tap], getFilterPosition(inputDepth, depth), filterMatrix.getValue(inputDepth * numberOfTaps + tap, depth, 0));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gathers values of output shaped matrix at output positions into position matrix.<br>
+     * For depth separable operation position matrix has size positions x 1 x depth otherwise positions x depth x 1.<br>
+     *
+     * @param matrix output shaped matrix.
+     * @param reference reference matrix defining precision of position matrix.
+     * @return position matrix.
+     */
+    protected Matrix getPositionMatrix(Matrix matrix, Matrix reference) {
+        int[][] positions = getPositions();
+        int numberOfPositions = positions[0].length;
+        Matrix positionMatrix = getIsDepthSeparable() ? getNewMatrix(reference, numberOfPositions, 1, getDepth()) : getNewMatrix(reference, numberOfPositions, getDepth(), 1);
+        for (int depth = 0; depth < getDepth(); depth++) {
+            for (int position = 0; position < numberOfPositions; position++) {
+                double value = matrix.getValue(positions[0][position], positions[1][position], depth);
+                if (getIsDepthSeparable()) positionMatrix.setValue(position, 0, depth, value);
+                else positionMatrix.setValue(position, depth, 0, value);
+            }
+        }
+        return positionMatrix;
+    }
+
+    /**
+     * Scatters values of position matrix into output positions of output shaped matrix. Inverse of gathering values into position matrix.
+     *
+     * @param positionMatrix position matrix.
+     * @param result output shaped result matrix.
+     */
+    protected void setPositionMatrix(Matrix positionMatrix, Matrix result) {
+        int[][] positions = getPositions();
+        int numberOfPositions = positions[0].length;
+        for (int depth = 0; depth < getDepth(); depth++) {
+            for (int position = 0; position < numberOfPositions; position++) {
+                double value = getIsDepthSeparable() ? positionMatrix.getValue(position, 0, depth) : positionMatrix.getValue(position, depth, 0);
+                result.setValue(positions[0][position], positions[1][position], depth, value);
+            }
+        }
+    }
+
+    /**
+     * Multiplies matrices using dot matrix operation.
+     *
+     * @param first first matrix.
+     * @param second second matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    protected static Matrix dot(Matrix first, Matrix second) throws MatrixException {
+        return new DotMatrixOperation(first.getRows(), second.getRows(), second.getColumns(), first.getDepth()).apply(first, second);
+    }
+
     /**
      * Returns if convolution is depth separable.
      *
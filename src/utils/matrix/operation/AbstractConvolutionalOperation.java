@@ -7,12 +7,17 @@ package utils.matrix.operation;
 
 import utils.matrix.Matrix;
 
+import java.io.Serial;
+
 /**
  * Implements abstract convolutional operation.
  *
  */
 public abstract class AbstractConvolutionalOperation extends AbstractMatrixOperation {
 
+    @Serial
+    private static final long serialVersionUID = 3314481073453205687L;
+
     /**
      * Input gradient row size.
      *
@@ -122,7 +127,7 @@ public abstract class AbstractConvolutionalOperation extends AbstractMatrixOpera
      *
      * @return dilation.
      */
-    private int getDilation() {
+    protected int getDilation() {
         return dilation;
     }
 
@@ -0,0 +1,282 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+
+import java.io.Serial;
+import java.util.Arrays;
+
+/**
+ * Implements dot attention matrix operation with streaming softmax.<br>
+ * Calculates output = value x softmax(scalingFactor * query x key.T) where softmax is taken column wise.<br>
+ * Transposed keys are stacked vertically on top of values in single key value matrix.<br>
+ * <br>
+ * Each output column is calculated by iterating queries tile by tile and maintaining running maximum and running sum of exponentiated attention scores (online softmax).
+ * Hence full attention score matrix is never materialized and memory used is linear with respect to sequence length.<br>
+ * Gradient is calculated by recalculating attention scores one output column at a time hence memory used by gradient calculation is linear with respect to sequence length as well.<br>
+ *
+ */
+public class AttentionMatrixOperation extends AbstractMatrixOperation {
+
+    @Serial
+    private static final long serialVersionUID = 2668994100586853389L;
+
+    /**
+     * Number of queries processed as single tile.
+     *
+     */
+    private static final int TILE_SIZE = 64;
+
+    /**
+     * Number of queries i.e. number of rows of query matrix.
+     *
+     */
+    private final int queries;
+
+    /**
+     * Number of key rows i.e. number of columns of query matrix.
+     *
+     */
+    private final int keyRows;
+
+    /**
+     * Scaling factor applied to attention scores.
+     *
+     */
+    private final double scalingFactor;
+
+    /**
+     * Constructor for attention matrix operation.
+     *
+     * @param rows number of rows of result i.e. number of value rows.
+     * @param columns number of columns of result i.e. number of keys.
+     * @param depth depth for operation.
+     * @param queries number of queries.
+     * @param keyRows number of key rows.
+     * @param scalingFactor scaling factor applied to attention scores.
+     */
+    public AttentionMatrixOperation(int rows, int columns, int depth, int queries, int keyRows, double scalingFactor) {
+        super(rows, columns, depth, false);
+        this.queries = queries;
+        this.keyRows = keyRows;
+        this.scalingFactor = scalingFactor;
+    }
+
+    /**
+     * Applies matrix operation.
+     *
+     * @param query query matrix.
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix apply(Matrix query, Matrix keyValue) throws MatrixException {
+        return apply(query, keyValue, null);
+    }
+
+    /**
+     * Applies matrix operation into given result matrix. Previous content of result matrix is overwritten.<br>
+     * If result matrix is not defined result is returned as new matrix.<br>
+     *
+     * @param query query matrix.
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix apply(Matrix query, Matrix keyValue, Matrix result) throws MatrixException {
+        checkDimensions(query, keyValue);
+        if (result == null) result = query.getNewMatrix(getRows(), getColumns(), getDepth());
+
+        final int valueRows = getRows();
+        final int keys = getColumns();
+        final double[] queryData = new double[queries * keyRows];
+        final double[] keyData = new double[keys * keyRows];
+        final double[] valueData = new double[queries * valueRows];
+        final double[] scores = new double[TILE_SIZE];
+        final double[] cumulatedValue = new double[valueRows];
+
+        for (int depth = 0; depth < getDepth(); depth++) {
+            pack(query, keyValue, depth, queryData, keyData, valueData);
+            for (int key = 0; key < keys; key++) {
+                double maxScore = Double.NEGATIVE_INFINITY;
+                double sum = 0;
+                for (int row = 0; row < valueRows; row++) cumulatedValue[row] = 0;
+                for (int tileStart = 0; tileStart < queries; tileStart += TILE_SIZE) {
+                    int tileEnd = Math.min(tileStart + TILE_SIZE, queries);
+                    double tileMaxScore = Double.NEGATIVE_INFINITY;
+                    for (int queryIndex = tileStart; queryIndex < tileEnd; queryIndex++) {
+                        double score = getScore(queryData, queryIndex, keyData, key);
+                        scores[queryIndex - tileStart] = score;
+                        tileMaxScore = Math.max(tileMaxScore, score);
+                    }
+                    double newMaxScore = Math.max(maxScore, tileMaxScore);
+                    if (newMaxScore > maxScore && sum > 0) {
+                        double correction = Math.exp(maxScore - newMaxScore);
+                        sum *= correction;
+                        for (int row = 0; row < valueRows; row++) cumulatedValue[row] *= correction;
+                    }
+                    maxScore = newMaxScore;
+                    for (int queryIndex = tileStart; queryIndex < tileEnd; queryIndex++) {
+                        double weight = Math.exp(scores[queryIndex - tileStart] - maxScore);
+                        sum += weight;
+                        int valueOffset = queryIndex * valueRows;
+                        for (int row = 0; row < valueRows; row++) cumulatedValue[row] += weight * valueData[valueOffset + row];
+                    }
+                }
+                for (int row = 0; row < valueRows; row++) result.setValue(row, key, depth, cumulatedValue[row] / sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates gradients of query and key value matrices. Attention scores are recalculated one output column at a time.<br>
+     * Previous content of gradient matrices is overwritten. If gradient matrix is not defined gradient is returned as new matrix.<br>
+     *
+     * @param query query matrix.
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @param result result matrix of operation.
+     * @param outputGradient output gradient.
+     * @param queryGradient query gradient.
+     * @param keyValueGradient key value gradient.
+     * @return query gradient and key value gradient.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix[] applyGradient(Matrix query, Matrix keyValue, Matrix result, Matrix outputGradient, Matrix queryGradient, Matrix keyValueGradient) throws MatrixException {
+        checkDimensions(query, keyValue);
+        if (queryGradient == null) queryGradient = query.getNewMatrix(query.getRows(), query.getColumns(), query.getDepth());
+        if (keyValueGradient == null) keyValueGradient = keyValue.getNewMatrix(keyValue.getRows(), keyValue.getColumns(), keyValue.getDepth());
+
+        final int valueRows = getRows();
+        final int keys = getColumns();
+        final double[] queryData = new double[queries * keyRows];
+        final double[] keyData = new double[keys * keyRows];
+        final double[] valueData = new double[queries * valueRows];
+        final double[] queryGradientData = new double[queries * keyRows];
+        final double[] keyGradientData = new double[keys * keyRows];
+        final double[] valueGradientData = new double[queries * valueRows];
+        final double[] outputGradientColumn = new double[valueRows];
+        final double[] weights = new double[queries];
+
+        for (int depth = 0; depth < getDepth(); depth++) {
+            pack(query, keyValue, depth, queryData, keyData, valueData);
+            Arrays.fill(queryGradientData, 0);
+            Arrays.fill(keyGradientData, 0);
+            Arrays.fill(valueGradientData, 0);
+            for (int key = 0; key < keys; key++) {
+                // Recalculates attention weights of output column.
+                double maxScore = Double.NEGATIVE_INFINITY;
+                for (int queryIndex = 0; queryIndex < queries; queryIndex++) {
+                    weights[queryIndex] = getScore(queryData, queryIndex, keyData, key);
+                    maxScore = Math.max(maxScore, weights[queryIndex]);
+                }
+                double sum = 0;
+                for (int queryIndex = 0; queryIndex < queries; queryIndex++) {
+                    weights[queryIndex] = Math.exp(weights[queryIndex] - maxScore);
+                    sum += weights[queryIndex];
+                }
+
+                double outputProduct = 0;
+                for (int row = 0; row < valueRows; row++) {
+                    outputGradientColumn[row] = outputGradient.getValue(row, key, depth);
+                    outputProduct += outputGradientColumn[row] * result.getValue(row, key, depth);
+                }
+
+                int keyOffset = key * keyRows;
+                for (int queryIndex = 0; queryIndex < queries; queryIndex++) {
+                    double weight = weights[queryIndex] / sum;
+                    int valueOffset = queryIndex * valueRows;
+                    double weightGradient = 0;
+                    for (int row = 0; row < valueRows; row++) {
+                        weightGradient += outputGradientColumn[row] * valueData[valueOffset + row];
+                        valueGradientData[valueOffset + row] += weight * outputGradientColumn[row];
+                    }
+                    double scoreGradient = weight * (weightGradient - outputProduct) * scalingFactor;
+                    int queryOffset = queryIndex * keyRows;
+                    for (int row = 0; row < keyRows; row++) {
+                        queryGradientData[queryOffset + row] += scoreGradient * keyData[keyOffset + row];
+                        keyGradientData[keyOffset + row] += scoreGradient * queryData[queryOffset + row];
+                    }
+                }
+            }
+            for (int queryIndex = 0; queryIndex < queries; queryIndex++) {
+                for (int row = 0; row < keyRows; row++) queryGradient.setValue(queryIndex, row, depth, queryGradientData[queryIndex * keyRows + row]);
+                for (int row = 0; row < valueRows; row++) keyValueGradient.setValue(keyRows + row, queryIndex, depth, valueGradientData[queryIndex * valueRows + row]);
+            }
+            for (int key = 0; key < keys; key++) {
+                for (int row = 0; row < keyRows; row++) keyValueGradient.setValue(row, key, depth, keyGradientData[key * keyRows + row]);
+            }
+        }
+        return new Matrix[] { queryGradient, keyValueGradient };
+    }
+
+    /**
+     * Checks that dimensions of query and key value matrices match with operation.
+     *
+     * @param query query matrix.
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @throws MatrixException throws exception if dimensions are not matching.
+     */
+    private void checkDimensions(Matrix query, Matrix keyValue) throws MatrixException {
+        if (query.getRows() != queries || query.getColumns() != keyRows || keyValue.getRows() != keyRows + getRows() || keyValue.getColumns() != getColumns() || keyValue.getColumns() != queries || query.getDepth() != getDepth() || keyValue.getDepth() != getDepth()) {
+            throw new MatrixException("Incompatible matrix sizes: " + query.getRows() + "x" + query.getColumns() + "x" + query.getDepth() + " by " + keyValue.getRows() + "x" + keyValue.getColumns() + "x" + keyValue.getDepth());
+        }
+    }
+
+    /**
+     * Packs query, keys and values of given depth into data arrays so that each query, key and value is stored contiguously.
+     *
+     * @param query query matrix.
+     * @param keyValue transposed keys stacked vertically on top of values.
+     * @param depth depth.
+     * @param queryData query data.
+     * @param keyData key data.
+     * @param valueData value data.
+     */
+    private void pack(Matrix query, Matrix keyValue, int depth, double[] queryData, double[] keyData, double[] valueData) {
+        final int valueRows = getRows();
+        for (int queryIndex = 0; queryIndex < queries; queryIndex++) {
+            for (int row = 0; row < keyRows; row++) queryData[queryIndex * keyRows + row] = query.getValue(queryIndex, row, depth);
+        }
+        for (int column = 0; column < getColumns(); column++) {
+            for (int row = 0; row < keyRows; row++) keyData[column * keyRows + row] = keyValue.getValue(row, column, depth);
+            for (int row = 0; row < valueRows; row++) valueData[column * valueRows + row] = keyValue.getValue(keyRows + row, column, depth);
+        }
+    }
+
+    /**
+     * Returns scaled attention score between query and key.
+     *
+     * @param queryData query data.
+     * @param query query index.
+     * @param keyData key data.
+     * @param key key index.
+     * @return scaled attention score.
+     */
+    private double getScore(double[] queryData, int query, double[] keyData, int key) {
+        int queryOffset = query * keyRows;
+        int keyOffset = key * keyRows;
+        double score = 0;
+        for (int row = 0; row < keyRows; row++) score += queryData[queryOffset + row] * keyData[keyOffset + row];
+        return score * scalingFactor;
+    }
+
+    /**
+     * Applies operation.
+     *
+     * @param row    current row.
+     * @param column current column.
+     * @param depth  current depth.
+     * @param value  current value.
+     * @param result result matrix.
+     */
+    public void apply(int row, int column, int depth, double value, Matrix result) {
+    }
+
+}
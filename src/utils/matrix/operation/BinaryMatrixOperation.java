@@ -7,12 +7,17 @@ package utils.matrix.operation;
 
 import utils.matrix.*;
 
+import java.io.Serial;
+
 /**
  * Implements matrix binary operation.
  *
  */
 public class BinaryMatrixOperation extends AbstractMatrixOperation {
 
+    @Serial
+    private static final long serialVersionUID = 5814020496715459764L;
+
     /**
      * Second matrix.
      *
@@ -25,6 +30,12 @@ public class BinaryMatrixOperation extends AbstractMatrixOperation {
      */
     private final BinaryFunctionType binaryFunctionType;
 
+    /**
+     * Matrix binary function.
+     *
+     */
+    private final BinaryFunction binaryFunction;
+
     /**
      * Matrix binary function type
      *
@@ -54,6 +65,7 @@ public class BinaryMatrixOperation extends AbstractMatrixOperation {
     public BinaryMatrixOperation(int rows, int columns, int depth, BinaryFunction binaryFunction) {
         super(rows, columns, depth, true);
         this.binaryFunctionType = binaryFunction.getType();
+        this.binaryFunction = binaryFunction;
         this.matrixBinaryOperation = binaryFunction.getFunction();
         this.matrixGradientBinaryOperation = binaryFunction.getDerivative();
     }
@@ -104,7 +116,31 @@ public class BinaryMatrixOperation extends AbstractMatrixOperation {
                 return first.multiply(second).divide(norm_output * norm_target);
             }
             default -> {
-                return applyMatrixOperation(first, second, inplace ? first : !first.isScalar() ? first.getNewMatrix() : second.getNewMatrix());
+                Matrix result = inplace ? first : !first.isScalar() ? first.getNewMatrix() : second.getNewMatrix();
+                return applyKernel(first, second, result) ? result : applyMatrixOperation(first, second, result);
+            }
+        }
+    }
+
+    /**
+     * Applies matrix operation into given result matrix. If result matrix is not defined or operation cannot be applied into given result matrix result is returned as new matrix.
+     *
+     * @param first  first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix applyFunction(Matrix first, Matrix second, Matrix result) throws MatrixException {
+        if (result == null) return applyFunction(first, second, false);
+        switch (binaryFunctionType) {
+            case DIRECT_GRADIENT, POLICY_VALUE, COS_SIM -> {
+                return applyFunction(first, second, false);
+            }
+            default -> {
+                this.second = second;
+                asFunction = true;
+                return applyKernel(first, second, result) ? result : applyMatrixOperation(first, second, result);
             }
         }
     }
@@ -144,7 +180,8 @@ public class BinaryMatrixOperation extends AbstractMatrixOperation {
                 return first.divide(norm_multiply).subtract(second.divide(Math.pow(norm_output, 2)).multiply(cos_sim));
             }
             default -> {
-                return applyMatrixOperation(first, second, first.getNewMatrix());
+                Matrix result = first.getNewMatrix();
+                return applyKernel(first, second, result) ? result : applyMatrixOperation(first, second, result);
             }
         }
     }
@@ -162,6 +199,52 @@ public class BinaryMatrixOperation extends AbstractMatrixOperation {
         return outputGradient.multiply(applyGradient(first, second));
     }
 
+    /**
+     * Applies function or derivative using array level function kernel.<br>
+     * Kernel is used only for built-in functions and unmasked dense non-scalar matrices with matching data layout.<br>
+     *
+     * @param first first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return true if function kernel was applied otherwise false.
+     */
+    private boolean applyKernel(Matrix first, Matrix second, Matrix result) {
+        if (binaryFunctionType == BinaryFunctionType.CUSTOM) return false;
+        FunctionKernel functionKernel = FunctionKernels.getFunctionKernel();
+        if (functionKernel == null || first.isTransposed() != second.isTransposed() || first.isTransposed() != result.isTransposed()) return false;
+        if (first instanceof FMatrix firstMatrix && second instanceof FMatrix secondMatrix && result instanceof FMatrix resultMatrix) return applyFloatKernel(functionKernel, firstMatrix, secondMatrix, resultMatrix);
+        if (!(first instanceof DMatrix firstMatrix) || !(second instanceof DMatrix secondMatrix) || !(result instanceof DMatrix resultMatrix)) return false;
+        double[] firstData = firstMatrix.getData();
+        double[] secondData = secondMatrix.getData();
+        double[] resultData = resultMatrix.getData();
+        int size = getRows() * getColumns() * getDepth();
+        if (firstData == null || secondData == null || resultData == null || firstData.length != size || secondData.length != size || resultData.length != size) return false;
+        return functionKernel.apply(binaryFunction, asFunction, firstData, secondData, resultData);
+    }
+
+    /**
+     * Applies function or derivative to single precision matrices using array level function kernel via double precision buffers.
+     *
+     * @param functionKernel function kernel.
+     * @param first first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return true if function kernel was applied otherwise false.
+     */
+    private boolean applyFloatKernel(FunctionKernel functionKernel, FMatrix first, FMatrix second, FMatrix result) {
+        float[] firstData = first.getData();
+        float[] secondData = second.getData();
+        float[] resultData = result.getData();
+        int size = getRows() * getColumns() * getDepth();
+        if (firstData == null || secondData == null || resultData == null || firstData.length != size || secondData.length != size || resultData.length != size) return false;
+        double[] firstBuffer = FunctionKernels.widen(firstData, size, 0);
+        double[] secondBuffer = FunctionKernels.widen(secondData, size, 1);
+        double[] resultBuffer = FunctionKernels.widen(null, size, 2);
+        if (!functionKernel.apply(binaryFunction, asFunction, firstBuffer, secondBuffer, resultBuffer)) return false;
+        FunctionKernels.narrow(resultBuffer, resultData);
+        return true;
+    }
+
     /**
      * Applies operation.
      *
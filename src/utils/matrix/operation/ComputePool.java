@@ -0,0 +1,174 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.MatrixException;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Implements shared compute pool for intra-operation parallelism of matrix operations.<br>
+ * All neural network instances share single fork join pool so that concurrently running neural networks do not oversubscribe processor cores.<br>
+ * Number of parallel tasks used by matrix operation is defined per thread (typically per neural network layer thread) and is by default 1 i.e. serial execution.<br>
+ * Operations smaller than parallel threshold are always executed serially.<br>
+ *
+ */
+public class ComputePool {
+
+    /**
+     * Size of shared fork join pool.
+     *
+     */
+    private static int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Shared fork join pool.
+     *
+     */
+    private static volatile ForkJoinPool forkJoinPool;
+
+    /**
+     * Minimum amount of work (number of multiply-add operations) for which operation is executed in parallel.
+     *
+     */
+    private static volatile long parallelThreshold = 65536;
+
+    /**
+     * Number of parallel tasks for matrix operations executed by current thread.
+     *
+     */
+    private static final ThreadLocal<Integer> threadParallelism = ThreadLocal.withInitial(() -> 1);
+
+    /**
+     * Default constructor for compute pool.
+     *
+     */
+    private ComputePool() {
+    }
+
+    /**
+     * Sets size of shared fork join pool. Existing pool is shut down after its running tasks are completed.
+     *
+     * @param poolSize size of shared fork join pool.
+     * @throws MatrixException throws exception if pool size is less than 1.
+     */
+    public static synchronized void setPoolSize(int poolSize) throws MatrixException {
+        if (poolSize < 1) throw new MatrixException("Size of compute pool must be at least 1.");
+        ComputePool.poolSize = poolSize;
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+    }
+
+    /**
+     * Returns size of shared fork join pool.
+     *
+     * @return size of shared fork join pool.
+     */
+    public static synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns shared fork join pool. Pool is created when needed for first time.
+     *
+     * @return shared fork join pool.
+     */
+    private static synchronized ForkJoinPool getForkJoinPool() {
+        if (forkJoinPool == null) forkJoinPool = new ForkJoinPool(poolSize);
+        return forkJoinPool;
+    }
+
+    /**
+     * Sets minimum amount of work (number of multiply-add operations) for which operation is executed in parallel.
+     *
+     * @param parallelThreshold parallel threshold.
+     */
+    public static void setParallelThreshold(long parallelThreshold) {
+        ComputePool.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Returns minimum amount of work (number of multiply-add operations) for which operation is executed in parallel.
+     *
+     * @return parallel threshold.
+     */
+    public static long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets number of parallel tasks for matrix operations executed by current thread.
+     *
+     * @param parallelism number of parallel tasks.
+     */
+    public static void setParallelism(int parallelism) {
+        threadParallelism.set(Math.max(1, parallelism));
+    }
+
+    /**
+     * Returns number of parallel tasks for matrix operations executed by current thread. Parallelism is limited by size of shared pool.
+     *
+     * @return number of parallel tasks.
+     */
+    public static int getParallelism() {
+        return Math.min(threadParallelism.get(), getPoolSize());
+    }
+
+    /**
+     * Checks if operation of given amount of work should be executed in parallel.<br>
+     * Operations called from within compute pool are executed serially to avoid nested parallelism.<br>
+     * Operations called from other fork join pools (e.g. layer task scheduler) may be executed in parallel.<br>
+     *
+     * @param work amount of work (number of multiply-add operations).
+     * @return true if operation should be executed in parallel otherwise false.
+     */
+    public static boolean isParallel(long work) {
+        return work >= parallelThreshold && getParallelism() > 1 && (forkJoinPool == null || ForkJoinTask.getPool() != forkJoinPool);
+    }
+
+    /**
+     * Executes task for indices from 0 to number of indices - 1.<br>
+     * Indices are split into consecutive ranges executed in parallel. First range is executed by calling thread.<br>
+     *
+     * @param numberOfIndices number of indices.
+     * @param task task executed for each index.
+     */
+    public static void execute(int numberOfIndices, IntConsumer task) {
+        int numberOfTasks = Math.min(getParallelism(), numberOfIndices);
+        if (numberOfTasks < 2) {
+            for (int index = 0; index < numberOfIndices; index++) task.accept(index);
+            return;
+        }
+        ForkJoinPool pool = getForkJoinPool();
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int taskIndex = 1; taskIndex < numberOfTasks; taskIndex++) {
+            int startIndex = getStartIndex(taskIndex, numberOfTasks, numberOfIndices);
+            int endIndex = getStartIndex(taskIndex + 1, numberOfTasks, numberOfIndices);
+            tasks.add(pool.submit(() -> { for (int index = startIndex; index < endIndex; index++) task.accept(index); }));
+        }
+        int endIndex = getStartIndex(1, numberOfTasks, numberOfIndices);
+        for (int index = 0; index < endIndex; index++) task.accept(index);
+        for (ForkJoinTask<?> forkJoinTask : tasks) forkJoinTask.join();
+    }
+
+    /**
+     * Returns start index of task when indices are split evenly between tasks.
+     *
+     * @param taskIndex task index.
+     * @param numberOfTasks number of tasks.
+     * @param numberOfIndices number of indices.
+     * @return start index of task.
+     */
+    private static int getStartIndex(int taskIndex, int numberOfTasks, int numberOfIndices) {
+        return (int)((long)taskIndex * numberOfIndices / numberOfTasks);
+    }
+
+}
@@ -5,15 +5,31 @@
 
 package utils.matrix.operation;
 
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
+import utils.matrix.SMatrix;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 /**
- * Implements dot operation.
+ * Implements dot operation.<br>
+ * Unmasked and unsliced dense matrices are multiplied directly on their data arrays using cache blocked and register tiled kernel.<br>
+ * Kernel is available for double precision (DMatrix) and single precision (FMatrix) matrices. All matrices of operation must have same precision.<br>
+ * Product of sparse (SMatrix) and dense matrix is calculated by iterating only non-zero values of sparse matrix.<br>
+ * Other matrices are multiplied using element wise access.<br>
+ * Large array based operations are split into depth and row tiles executed in parallel using shared compute pool.<br>
+ * Optional epilogue is applied to each completed row tile of result while tile is still in cache. Typical epilogue is fused bias addition and activation function.<br>
  *
  */
 public class DotMatrixOperation extends AbstractMatrixOperation {
 
+    @Serial
+    private static final long serialVersionUID = 8672456161259448497L;
+
     /**
      * First matrix.
      *
@@ -32,6 +48,101 @@ public class DotMatrixOperation extends AbstractMatrixOperation {
      */
     private final int secondRows;
 
+    /**
+     * Epilogue applied to result of current operation.
+     *
+     */
+    private transient Epilogue epilogue;
+
+    /**
+     * If true epilogue has been applied by row tiles of current operation.
+     *
+     */
+    private transient boolean epilogueApplied;
+
+    /**
+     * Number of rows in register tile of blocked kernel.
+     *
+     */
+    private static final int TILE_ROWS = 4;
+
+    /**
+     * Number of columns in register tile of blocked kernel.
+     *
+     */
+    private static final int TILE_COLUMNS = 4;
+
+    /**
+     * Number of first matrix rows in cache block.
+     *
+     */
+    private static final int BLOCK_ROWS = 64;
+
+    /**
+     * Number of inner (shared) dimension entries in cache block.
+     *
+     */
+    private static final int BLOCK_INNER = 256;
+
+    /**
+     * Number of second matrix columns in cache block.
+     *
+     */
+    private static final int BLOCK_COLUMNS = 512;
+
+    /**
+     * Packing buffers of blocked double precision kernel retained per thread.
+     *
+     */
+    private static final ThreadLocal<double[][]> doublePacks = ThreadLocal.withInitial(() -> new double[2][0]);
+
+    /**
+     * Packing buffers of blocked single precision kernel retained per thread.
+     *
+     */
+    private static final ThreadLocal<float[][]> floatPacks = ThreadLocal.withInitial(() -> new float[2][0]);
+
+    /**
+     * Minimum number of multiply-add operations for which blocked kernel is used instead of direct array kernel.
+     *
+     */
+    private static final int BLOCKED_KERNEL_THRESHOLD = 32768;
+
+    /**
+     * Defines epilogue applied to completed part of dot operation result.
+     *
+     */
+    public interface Epilogue {
+
+        /**
+         * Applies epilogue to range of result values. Range is given as indices of result values ordered by depth, column and row.
+         *
+         * @param result result matrix of dot operation.
+         * @param fromIndex index of first result value (inclusive).
+         * @param toIndex index of last result value (exclusive).
+         */
+        void apply(Matrix result, int fromIndex, int toIndex);
+
+    }
+
+    /**
+     * Defines kernel calculating row tile of result for single depth.
+     *
+     */
+    private interface TileKernel {
+
+        /**
+         * Calculates row tile of result.
+         *
+         * @param rows number of rows in tile.
+         * @param firstOffset offset of tile in first matrix data.
+         * @param secondOffset offset of depth in second matrix data.
+         * @param resultOffset offset of tile in result matrix data.
+         */
+        void apply(int rows, int firstOffset, int secondOffset, int resultOffset);
+
+    }
+
     /**
      * Constructor for dot matrix operation.
      *
@@ -62,6 +173,58 @@ public class DotMatrixOperation extends AbstractMatrixOperation {
         return applyMatrixOperation(first, second, first.getNewMatrix(first.getRows(), second.getColumns(), getDepth()));
     }
 
+    /**
+     * Applies matrix operation into given result matrix. Previous content of result matrix is overwritten.<br>
+     * If result matrix is not defined result is returned as new matrix.<br>
+     *
+     * @param first  first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if new mask dimensions or mask type are not matching with this mask.
+     */
+    public Matrix apply(Matrix first, Matrix second, Matrix result) throws MatrixException {
+        if (result == null) return apply(first, second);
+        this.first = first;
+        this.second = second;
+        if (first.getColumns() != second.getRows() || first.getDepth() != second.getDepth()) {
+            throw new MatrixException("Incompatible matrix sizes: " + first.getRows() + "x" + first.getColumns() + "x" + first.getDepth() + " by " + second.getRows() + "x" + second.getColumns() + "x" + second.getDepth());
+        }
+        if (result.getRows() != first.getRows() || result.getColumns() != second.getColumns() || result.getDepth() != getDepth()) {
+            throw new MatrixException("Incompatible result matrix size: " + result.getRows() + "x" + result.getColumns() + "x" + result.getDepth());
+        }
+        if (result instanceof DMatrix dMatrix && dMatrix.getData() != null) Arrays.fill(dMatrix.getData(), 0);
+        else if (result instanceof FMatrix fMatrix && fMatrix.getData() != null) Arrays.fill(fMatrix.getData(), 0);
+        else result.reset();
+        return applyMatrixOperation(first, second, result);
+    }
+
+    /**
+     * Applies matrix operation into given result matrix and applies epilogue to result.<br>
+     * Epilogue is applied to each row tile of result as soon as tile is completed. If operation is not calculated in row tiles epilogue is applied to entire result at end.<br>
+     * If result matrix is not defined result is returned as new matrix.<br>
+     *
+     * @param first  first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @param epilogue epilogue applied to result (optional).
+     * @return result matrix.
+     * @throws MatrixException throws exception if new mask dimensions or mask type are not matching with this mask.
+     */
+    public Matrix apply(Matrix first, Matrix second, Matrix result, Epilogue epilogue) throws MatrixException {
+        if (epilogue == null) return apply(first, second, result);
+        this.epilogue = epilogue;
+        epilogueApplied = false;
+        try {
+            Matrix dotResult = apply(first, second, result);
+            if (!epilogueApplied) epilogue.apply(dotResult, 0, dotResult.getRows() * dotResult.getColumns() * dotResult.getDepth());
+            return dotResult;
+        }
+        finally {
+            this.epilogue = null;
+        }
+    }
+
     /**
      * Check if first matrix and optionally second matrix are masked at specific row and column.
      *
@@ -84,6 +247,7 @@ public class DotMatrixOperation extends AbstractMatrixOperation {
      * @return result matrix.
      */
     protected Matrix applyMatrixOperation(Matrix first, Matrix second, Matrix result) {
+        if (applyArrayOperation(first, second, result)) return result;
         if (!hasMask(first, second)) {
             for (int depth = 0; depth < getDepth(); depth++) {
                 for (int firstRow = 0; firstRow < getRows(); firstRow += getStride()) {
@@ -107,6 +271,662 @@ public class DotMatrixOperation extends AbstractMatrixOperation {
         return result;
     }
 
+    /**
+     * Applies matrix operation directly on data arrays of matrices if all matrices are unmasked and unsliced dense matrices of same precision.
+     *
+     * @param first  first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return true if operation was applied otherwise false.
+     */
+    private boolean applyArrayOperation(Matrix first, Matrix second, Matrix result) {
+        if (getStride() != 1 || result.isTransposed()) return false;
+        if (first instanceof SMatrix || second instanceof SMatrix) return applySparseOperation(first, second, result);
+
+        int rows = getRows();
+        int inner = secondRows;
+        int columns = getColumns();
+
+        // Strides of logical row and column within data arrays. Transposed matrix has its data stored in order of untransposed origin.
+        int firstRowStride = !first.isTransposed() ? 1 : first.getColumns();
+        int firstColumnStride = !first.isTransposed() ? first.getRows() : 1;
+        int secondRowStride = !second.isTransposed() ? 1 : second.getColumns();
+        int secondColumnStride = !second.isTransposed() ? second.getRows() : 1;
+        int resultColumnStride = result.getRows();
+
+        int firstSize = first.getRows() * first.getColumns();
+        int secondSize = second.getRows() * second.getColumns();
+        int resultSize = result.getRows() * result.getColumns();
+
+        boolean blocked = (long)rows * inner * columns >= BLOCKED_KERNEL_THRESHOLD && rows >= TILE_ROWS && columns >= TILE_COLUMNS;
+
+        // Row tile kernel operating either on double or single precision data arrays.
+        TileKernel tileKernel;
+        if (first instanceof DMatrix firstDMatrix && second instanceof DMatrix secondDMatrix && result instanceof DMatrix resultDMatrix) {
+            double[] firstData = firstDMatrix.getData();
+            double[] secondData = secondDMatrix.getData();
+            double[] resultData = resultDMatrix.getData();
+            if (firstData == null || secondData == null || resultData == null) return false;
+            tileKernel = (currentRows, firstOffset, secondOffset, resultOffset) -> {
+                if (blocked && currentRows >= TILE_ROWS) {
+                    double[][] packs = doublePacks.get();
+                    int firstPackSize = Math.min(BLOCK_ROWS, roundUp(currentRows, TILE_ROWS)) * Math.min(BLOCK_INNER, inner);
+                    int secondPackSize = Math.min(BLOCK_INNER, inner) * Math.min(BLOCK_COLUMNS, roundUp(columns, TILE_COLUMNS));
+                    if (packs[0].length < firstPackSize) packs[0] = new double[firstPackSize];
+                    if (packs[1].length < secondPackSize) packs[1] = new double[secondPackSize];
+                    double[] firstPack = packs[0];
+                    double[] secondPack = packs[1];
+                    applyBlocked(currentRows, inner, columns, firstData, firstOffset, firstRowStride, firstColumnStride, secondData, secondOffset, secondRowStride, secondColumnStride, resultData, resultOffset, resultColumnStride, firstPack, secondPack);
+                }
+                else applyDirect(currentRows, inner, columns, firstData, firstOffset, firstRowStride, firstColumnStride, secondData, secondOffset, secondRowStride, secondColumnStride, resultData, resultOffset, resultColumnStride);
+            };
+        }
+        else if (first instanceof FMatrix firstFMatrix && second instanceof FMatrix secondFMatrix && result instanceof FMatrix resultFMatrix) {
+            float[] firstData = firstFMatrix.getData();
+            float[] secondData = secondFMatrix.getData();
+            float[] resultData = resultFMatrix.getData();
+            if (firstData == null || secondData == null || resultData == null) return false;
+            tileKernel = (currentRows, firstOffset, secondOffset, resultOffset) -> {
+                if (blocked && currentRows >= TILE_ROWS) {
+                    float[][] packs = floatPacks.get();
+                    int firstPackSize = Math.min(BLOCK_ROWS, roundUp(currentRows, TILE_ROWS)) * Math.min(BLOCK_INNER, inner);
+                    int secondPackSize = Math.min(BLOCK_INNER, inner) * Math.min(BLOCK_COLUMNS, roundUp(columns, TILE_COLUMNS));
+                    if (packs[0].length < firstPackSize) packs[0] = new float[firstPackSize];
+                    if (packs[1].length < secondPackSize) packs[1] = new float[secondPackSize];
+                    float[] firstPack = packs[0];
+                    float[] secondPack = packs[1];
+                    applyBlocked(currentRows, inner, columns, firstData, firstOffset, firstRowStride, firstColumnStride, secondData, secondOffset, secondRowStride, secondColumnStride, resultData, resultOffset, resultColumnStride, firstPack, secondPack);
+                }
+                else applyDirect(currentRows, inner, columns, firstData, firstOffset, firstRowStride, firstColumnStride, secondData, secondOffset, secondRowStride, secondColumnStride, resultData, resultOffset, resultColumnStride);
+            };
+        }
+        else return false;
+
+        // Work is split into row tiles of each depth. Rows are split only if there is less depth than parallel tasks.
+        boolean parallel = ComputePool.isParallel((long)rows * inner * columns * getDepth());
+        int rowTiles = parallel && getDepth() < ComputePool.getParallelism() ? Math.max(1, Math.min(ComputePool.getParallelism(), rows / TILE_ROWS)) : 1;
+        int tileRows = roundUp((rows + rowTiles - 1) / rowTiles, TILE_ROWS);
+        int finalRowTiles = (rows + tileRows - 1) / tileRows;
+
+        Epilogue tileEpilogue = epilogue;
+        epilogueApplied = tileEpilogue != null;
+        IntConsumer tileOperation = tile -> {
+            int depth = tile / finalRowTiles;
+            int startRow = (tile % finalRowTiles) * tileRows;
+            int currentRows = Math.min(tileRows, rows - startRow);
+            tileKernel.apply(currentRows, depth * firstSize + startRow * firstRowStride, depth * secondSize, depth * resultSize + startRow);
+            if (tileEpilogue != null) {
+                // Tile covering all rows is contiguous in result otherwise epilogue is applied to each column segment of tile.
+                if (currentRows == rows) tileEpilogue.apply(result, depth * resultSize, (depth + 1) * resultSize);
+                else for (int column = 0; column < columns; column++) {
+                    int fromIndex = depth * resultSize + column * resultColumnStride + startRow;
+                    tileEpilogue.apply(result, fromIndex, fromIndex + currentRows);
+                }
+            }
+        };
+
+        int numberOfTiles = getDepth() * finalRowTiles;
+        if (parallel) ComputePool.execute(numberOfTiles, tileOperation);
+        else for (int tile = 0; tile < numberOfTiles; tile++) tileOperation.accept(tile);
+        return true;
+    }
+
+    /**
+     * Applies matrix operation for sparse and dense matrix pair by iterating only non-zero values of sparse matrix.<br>
+     * Operation is applied if sparse matrix is unmasked and unsliced and dense matrix and result are unmasked and unsliced dense matrices of same precision.<br>
+     *
+     * @param first first matrix.
+     * @param second second matrix.
+     * @param result result matrix.
+     * @return true if operation was applied otherwise false.
+     */
+    private boolean applySparseOperation(Matrix first, Matrix second, Matrix result) {
+        int resultRows = result.getRows();
+        int resultSize = result.getRows() * result.getColumns();
+        if (first instanceof SMatrix firstSMatrix && !(second instanceof SMatrix)) {
+            int[] indices = firstSMatrix.getIndices();
+            double[] values = firstSMatrix.getValues();
+            if (indices == null || values == null) return false;
+            int firstPureRows = !first.isTransposed() ? first.getRows() : first.getColumns();
+            int firstSize = first.getRows() * first.getColumns();
+            int secondRowStride = !second.isTransposed() ? 1 : second.getColumns();
+            int secondColumnStride = !second.isTransposed() ? second.getRows() : 1;
+            int secondSize = second.getRows() * second.getColumns();
+            if (second instanceof DMatrix secondDMatrix && result instanceof DMatrix resultDMatrix) {
+                double[] secondData = secondDMatrix.getData();
+                double[] resultData = resultDMatrix.getData();
+                if (secondData == null || resultData == null) return false;
+                applySparseFirst(indices, values, firstSMatrix.getNonZeroCount(), firstPureRows, firstSize, first.isTransposed(), getColumns(), secondData, secondRowStride, secondColumnStride, secondSize, resultData, resultRows, resultSize);
+                return true;
+            }
+            if (second instanceof FMatrix secondFMatrix && result instanceof FMatrix resultFMatrix) {
+                float[] secondData = secondFMatrix.getData();
+                float[] resultData = resultFMatrix.getData();
+                if (secondData == null || resultData == null) return false;
+                applySparseFirst(indices, values, firstSMatrix.getNonZeroCount(), firstPureRows, firstSize, first.isTransposed(), getColumns(), secondData, secondRowStride, secondColumnStride, secondSize, resultData, resultRows, resultSize);
+                return true;
+            }
+        }
+        if (second instanceof SMatrix secondSMatrix && !(first instanceof SMatrix)) {
+            int[] indices = secondSMatrix.getIndices();
+            double[] values = secondSMatrix.getValues();
+            if (indices == null || values == null) return false;
+            int secondPureRows = !second.isTransposed() ? second.getRows() : second.getColumns();
+            int secondSize = second.getRows() * second.getColumns();
+            int firstRowStride = !first.isTransposed() ? 1 : first.getColumns();
+            int firstColumnStride = !first.isTransposed() ? first.getRows() : 1;
+            int firstSize = first.getRows() * first.getColumns();
+            if (first instanceof DMatrix firstDMatrix && result instanceof DMatrix resultDMatrix) {
+                double[] firstData = firstDMatrix.getData();
+                double[] resultData = resultDMatrix.getData();
+                if (firstData == null || resultData == null) return false;
+                applySparseSecond(indices, values, secondSMatrix.getNonZeroCount(), secondPureRows, secondSize, second.isTransposed(), getRows(), firstData, firstRowStride, firstColumnStride, firstSize, resultData, resultRows, resultSize);
+                return true;
+            }
+            if (first instanceof FMatrix firstFMatrix && result instanceof FMatrix resultFMatrix) {
+                float[] firstData = firstFMatrix.getData();
+                float[] resultData = resultFMatrix.getData();
+                if (firstData == null || resultData == null) return false;
+                applySparseSecond(indices, values, secondSMatrix.getNonZeroCount(), secondPureRows, secondSize, second.isTransposed(), getRows(), firstData, firstRowStride, firstColumnStride, firstSize, resultData, resultRows, resultSize);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Multiplies sparse first matrix and dense second matrix. Each non-zero value of first matrix scales respective row of second matrix into result row.
+     *
+     * @param indices array indices of non-zero values of first matrix.
+     * @param values non-zero values of first matrix.
+     * @param nonZeroCount number of non-zero values of first matrix.
+     * @param firstPureRows number of rows of first matrix in its untransposed storage order.
+     * @param firstSize size of single depth of first matrix.
+     * @param firstTransposed true if first matrix is transposed.
+     * @param columns number of columns in second matrix.
+     * @param second data of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param secondSize size of single depth of second matrix.
+     * @param result data of result matrix.
+     * @param resultRows number of rows in result matrix.
+     * @param resultSize size of single depth of result matrix.
+     */
+    private static void applySparseFirst(int[] indices, double[] values, int nonZeroCount, int firstPureRows, int firstSize, boolean firstTransposed, int columns, double[] second, int secondRowStride, int secondColumnStride, int secondSize, double[] result, int resultRows, int resultSize) {
+        for (int position = 0; position < nonZeroCount; position++) {
+            int depth = indices[position] / firstSize;
+            int pureRow = (indices[position] % firstSize) % firstPureRows;
+            int pureColumn = (indices[position] % firstSize) / firstPureRows;
+            double value = values[position];
+            int secondOffset = depth * secondSize + (!firstTransposed ? pureColumn : pureRow) * secondRowStride;
+            int resultOffset = depth * resultSize + (!firstTransposed ? pureRow : pureColumn);
+            for (int column = 0; column < columns; column++) result[resultOffset + column * resultRows] += value * second[secondOffset + column * secondColumnStride];
+        }
+    }
+
+    /**
+     * Multiplies sparse first matrix and single precision dense second matrix. Each non-zero value of first matrix scales respective row of second matrix into result row.
+     *
+     * @param indices array indices of non-zero values of first matrix.
+     * @param values non-zero values of first matrix.
+     * @param nonZeroCount number of non-zero values of first matrix.
+     * @param firstPureRows number of rows of first matrix in its untransposed storage order.
+     * @param firstSize size of single depth of first matrix.
+     * @param firstTransposed true if first matrix is transposed.
+     * @param columns number of columns in second matrix.
+     * @param second data of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param secondSize size of single depth of second matrix.
+     * @param result data of result matrix.
+     * @param resultRows number of rows in result matrix.
+     * @param resultSize size of single depth of result matrix.
+     */
+    private static void applySparseFirst(int[] indices, double[] values, int nonZeroCount, int firstPureRows, int firstSize, boolean firstTransposed, int columns, float[] second, int secondRowStride, int secondColumnStride, int secondSize, float[] result, int resultRows, int resultSize) {
+        for (int position = 0; position < nonZeroCount; position++) {
+            int depth = indices[position] / firstSize;
+            int pureRow = (indices[position] % firstSize) % firstPureRows;
+            int pureColumn = (indices[position] % firstSize) / firstPureRows;
+            float value = (float)values[position];
+            int secondOffset = depth * secondSize + (!firstTransposed ? pureColumn : pureRow) * secondRowStride;
+            int resultOffset = depth * resultSize + (!firstTransposed ? pureRow : pureColumn);
+            for (int column = 0; column < columns; column++) result[resultOffset + column * resultRows] += value * second[secondOffset + column * secondColumnStride];
+        }
+    }
+
+    /**
+     * Multiplies dense first matrix and sparse second matrix. Each non-zero value of second matrix scales respective column of first matrix into result column.
+     *
+     * @param indices array indices of non-zero values of second matrix.
+     * @param values non-zero values of second matrix.
+     * @param nonZeroCount number of non-zero values of second matrix.
+     * @param secondPureRows number of rows of second matrix in its untransposed storage order.
+     * @param secondSize size of single depth of second matrix.
+     * @param secondTransposed true if second matrix is transposed.
+     * @param rows number of rows in first matrix.
+     * @param first data of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param firstSize size of single depth of first matrix.
+     * @param result data of result matrix.
+     * @param resultRows number of rows in result matrix.
+     * @param resultSize size of single depth of result matrix.
+     */
+    private static void applySparseSecond(int[] indices, double[] values, int nonZeroCount, int secondPureRows, int secondSize, boolean secondTransposed, int rows, double[] first, int firstRowStride, int firstColumnStride, int firstSize, double[] result, int resultRows, int resultSize) {
+        for (int position = 0; position < nonZeroCount; position++) {
+            int depth = indices[position] / secondSize;
+            int pureRow = (indices[position] % secondSize) % secondPureRows;
+            int pureColumn = (indices[position] % secondSize) / secondPureRows;
+            double value = values[position];
+            int firstOffset = depth * firstSize + (!secondTransposed ? pureRow : pureColumn) * firstColumnStride;
+            int resultOffset = depth * resultSize + (!secondTransposed ? pureColumn : pureRow) * resultRows;
+            for (int row = 0; row < rows; row++) result[resultOffset + row] += first[firstOffset + row * firstRowStride] * value;
+        }
+    }
+
+    /**
+     * Multiplies single precision dense first matrix and sparse second matrix. Each non-zero value of second matrix scales respective column of first matrix into result column.
+     *
+     * @param indices array indices of non-zero values of second matrix.
+     * @param values non-zero values of second matrix.
+     * @param nonZeroCount number of non-zero values of second matrix.
+     * @param secondPureRows number of rows of second matrix in its untransposed storage order.
+     * @param secondSize size of single depth of second matrix.
+     * @param secondTransposed true if second matrix is transposed.
+     * @param rows number of rows in first matrix.
+     * @param first data of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param firstSize size of single depth of first matrix.
+     * @param result data of result matrix.
+     * @param resultRows number of rows in result matrix.
+     * @param resultSize size of single depth of result matrix.
+     */
+    private static void applySparseSecond(int[] indices, double[] values, int nonZeroCount, int secondPureRows, int secondSize, boolean secondTransposed, int rows, float[] first, int firstRowStride, int firstColumnStride, int firstSize, float[] result, int resultRows, int resultSize) {
+        for (int position = 0; position < nonZeroCount; position++) {
+            int depth = indices[position] / secondSize;
+            int pureRow = (indices[position] % secondSize) % secondPureRows;
+            int pureColumn = (indices[position] % secondSize) / secondPureRows;
+            float value = (float)values[position];
+            int firstOffset = depth * firstSize + (!secondTransposed ? pureRow : pureColumn) * firstColumnStride;
+            int resultOffset = depth * resultSize + (!secondTransposed ? pureColumn : pureRow) * resultRows;
+            for (int row = 0; row < rows; row++) result[resultOffset + row] += first[firstOffset + row * firstRowStride] * value;
+        }
+    }
+
+    /**
+     * Rounds value up to nearest multiple of given multiple.
+     *
+     * @param value value.
+     * @param multiple multiple.
+     * @return rounded value.
+     */
+    private static int roundUp(int value, int multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
+    }
+
+    /**
+     * Multiplies matrices directly on data arrays without packing. Used for small and skinny (vector like) matrices.
+     *
+     * @param rows number of rows in first matrix.
+     * @param inner number of columns in first matrix and rows in second matrix.
+     * @param columns number of columns in second matrix.
+     * @param first data of first matrix.
+     * @param firstOffset depth offset of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param second data of second matrix.
+     * @param secondOffset depth offset of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param result data of result matrix.
+     * @param resultOffset depth offset of result matrix.
+     * @param resultColumnStride column stride of result matrix.
+     */
+    private static void applyDirect(int rows, int inner, int columns, double[] first, int firstOffset, int firstRowStride, int firstColumnStride, double[] second, int secondOffset, int secondRowStride, int secondColumnStride, double[] result, int resultOffset, int resultColumnStride) {
+        for (int column = 0; column < columns; column++) {
+            int resultColumnOffset = resultOffset + column * resultColumnStride;
+            int secondColumnOffset = secondOffset + column * secondColumnStride;
+            if (firstRowStride == 1) {
+                // First matrix columns are contiguous hence result column is accumulated as scaled sum of first matrix columns.
+                for (int index = 0; index < inner; index++) {
+                    double secondValue = second[secondColumnOffset + index * secondRowStride];
+                    if (secondValue == 0) continue;
+                    int firstColumnOffset = firstOffset + index * firstColumnStride;
+                    for (int row = 0; row < rows; row++) result[resultColumnOffset + row] += first[firstColumnOffset + row] * secondValue;
+                }
+            }
+            else {
+                // First matrix rows are contiguous hence each result value is inner product of first matrix row and second matrix column.
+                for (int row = 0; row < rows; row++) {
+                    int firstRowOffset = firstOffset + row * firstRowStride;
+                    double sum = 0;
+                    for (int index = 0; index < inner; index++) sum += first[firstRowOffset + index * firstColumnStride] * second[secondColumnOffset + index * secondRowStride];
+                    result[resultColumnOffset + row] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies matrices using cache blocking and register tiling.<br>
+     * Blocks of first and second matrix are packed into contiguous tile ordered buffers independent of transposition of matrices.<br>
+     *
+     * @param rows number of rows in first matrix.
+     * @param inner number of columns in first matrix and rows in second matrix.
+     * @param columns number of columns in second matrix.
+     * @param first data of first matrix.
+     * @param firstOffset depth offset of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param second data of second matrix.
+     * @param secondOffset depth offset of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param result data of result matrix.
+     * @param resultOffset depth offset of result matrix.
+     * @param resultColumnStride column stride of result matrix.
+     * @param firstPack packing buffer for first matrix block.
+     * @param secondPack packing buffer for second matrix block.
+     */
+    private static void applyBlocked(int rows, int inner, int columns, double[] first, int firstOffset, int firstRowStride, int firstColumnStride, double[] second, int secondOffset, int secondRowStride, int secondColumnStride, double[] result, int resultOffset, int resultColumnStride, double[] firstPack, double[] secondPack) {
+        for (int columnBlock = 0; columnBlock < columns; columnBlock += BLOCK_COLUMNS) {
+            int blockColumns = Math.min(BLOCK_COLUMNS, columns - columnBlock);
+            for (int innerBlock = 0; innerBlock < inner; innerBlock += BLOCK_INNER) {
+                int blockInner = Math.min(BLOCK_INNER, inner - innerBlock);
+                packSecond(second, secondOffset + innerBlock * secondRowStride + columnBlock * secondColumnStride, secondRowStride, secondColumnStride, blockInner, blockColumns, secondPack);
+                for (int rowBlock = 0; rowBlock < rows; rowBlock += BLOCK_ROWS) {
+                    int blockRows = Math.min(BLOCK_ROWS, rows - rowBlock);
+                    packFirst(first, firstOffset + rowBlock * firstRowStride + innerBlock * firstColumnStride, firstRowStride, firstColumnStride, blockRows, blockInner, firstPack);
+                    for (int tileColumn = 0; tileColumn < blockColumns; tileColumn += TILE_COLUMNS) {
+                        int tileColumns = Math.min(TILE_COLUMNS, blockColumns - tileColumn);
+                        for (int tileRow = 0; tileRow < blockRows; tileRow += TILE_ROWS) {
+                            int tileRows = Math.min(TILE_ROWS, blockRows - tileRow);
+                            applyTile(blockInner, firstPack, tileRow * blockInner, secondPack, tileColumn * blockInner, result, resultOffset + (columnBlock + tileColumn) * resultColumnStride + rowBlock + tileRow, resultColumnStride, tileRows, tileColumns);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs block of first matrix into row tiles. Each tile stores tile rows consecutively for each inner index. Partial tiles are padded with zeros.
+     *
+     * @param first data of first matrix.
+     * @param offset offset of block.
+     * @param rowStride row stride of first matrix.
+     * @param columnStride column stride of first matrix.
+     * @param blockRows number of rows in block.
+     * @param blockInner number of inner entries in block.
+     * @param pack packing buffer.
+     */
+    private static void packFirst(double[] first, int offset, int rowStride, int columnStride, int blockRows, int blockInner, double[] pack) {
+        int packIndex = 0;
+        for (int tileRow = 0; tileRow < blockRows; tileRow += TILE_ROWS) {
+            int tileRows = Math.min(TILE_ROWS, blockRows - tileRow);
+            for (int index = 0; index < blockInner; index++) {
+                int dataIndex = offset + tileRow * rowStride + index * columnStride;
+                for (int row = 0; row < TILE_ROWS; row++) pack[packIndex++] = row < tileRows ? first[dataIndex + row * rowStride] : 0;
+            }
+        }
+    }
+
+    /**
+     * Packs block of second matrix into column tiles. Each tile stores tile columns consecutively for each inner index. Partial tiles are padded with zeros.
+     *
+     * @param second data of second matrix.
+     * @param offset offset of block.
+     * @param rowStride row stride of second matrix.
+     * @param columnStride column stride of second matrix.
+     * @param blockInner number of inner entries in block.
+     * @param blockColumns number of columns in block.
+     * @param pack packing buffer.
+     */
+    private static void packSecond(double[] second, int offset, int rowStride, int columnStride, int blockInner, int blockColumns, double[] pack) {
+        int packIndex = 0;
+        for (int tileColumn = 0; tileColumn < blockColumns; tileColumn += TILE_COLUMNS) {
+            int tileColumns = Math.min(TILE_COLUMNS, blockColumns - tileColumn);
+            for (int index = 0; index < blockInner; index++) {
+                int dataIndex = offset + index * rowStride + tileColumn * columnStride;
+                for (int column = 0; column < TILE_COLUMNS; column++) pack[packIndex++] = column < tileColumns ? second[dataIndex + column * columnStride] : 0;
+            }
+        }
+    }
+
+    /**
+     * Calculates single register tile of result from packed tiles and cumulates it into result.
+     *
+     * @param blockInner number of inner entries in block.
+     * @param firstPack packed first matrix block.
+     * @param firstIndex start index of tile in packed first matrix block.
+     * @param secondPack packed second matrix block.
+     * @param secondIndex start index of tile in packed second matrix block.
+     * @param result data of result matrix.
+     * @param resultIndex index of top left value of tile in result.
+     * @param resultColumnStride column stride of result matrix.
+     * @param tileRows number of valid rows in tile.
+     * @param tileColumns number of valid columns in tile.
+     */
+    private static void applyTile(int blockInner, double[] firstPack, int firstIndex, double[] secondPack, int secondIndex, double[] result, int resultIndex, int resultColumnStride, int tileRows, int tileColumns) {
+        double value00 = 0, value10 = 0, value20 = 0, value30 = 0;
+        double value01 = 0, value11 = 0, value21 = 0, value31 = 0;
+        double value02 = 0, value12 = 0, value22 = 0, value32 = 0;
+        double value03 = 0, value13 = 0, value23 = 0, value33 = 0;
+        for (int index = 0; index < blockInner; index++) {
+            double first0 = firstPack[firstIndex];
+            double first1 = firstPack[firstIndex + 1];
+            double first2 = firstPack[firstIndex + 2];
+            double first3 = firstPack[firstIndex + 3];
+            double second0 = secondPack[secondIndex];
+            double second1 = secondPack[secondIndex + 1];
+            double second2 = secondPack[secondIndex + 2];
+            double second3 = secondPack[secondIndex + 3];
+            value00 += first0 * second0; value10 += first1 * second0; value20 += first2 * second0; value30 += first3 * second0;
+            value01 += first0 * second1; value11 += first1 * second1; value21 += first2 * second1; value31 += first3 * second1;
+            value02 += first0 * second2; value12 += first1 * second2; value22 += first2 * second2; value32 += first3 * second2;
+            value03 += first0 * second3; value13 += first1 * second3; value23 += first2 * second3; value33 += first3 * second3;
+            firstIndex += TILE_ROWS;
+            secondIndex += TILE_COLUMNS;
+        }
+        if (tileRows == TILE_ROWS && tileColumns == TILE_COLUMNS) {
+            result[resultIndex] += value00; result[resultIndex + 1] += value10; result[resultIndex + 2] += value20; result[resultIndex + 3] += value30;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value01; result[resultIndex + 1] += value11; result[resultIndex + 2] += value21; result[resultIndex + 3] += value31;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value02; result[resultIndex + 1] += value12; result[resultIndex + 2] += value22; result[resultIndex + 3] += value32;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value03; result[resultIndex + 1] += value13; result[resultIndex + 2] += value23; result[resultIndex + 3] += value33;
+        }
+        else {
+            double[][] tile = {{value00, value01, value02, value03}, {value10, value11, value12, value13}, {value20, value21, value22, value23}, {value30, value31, value32, value33}};
+            for (int column = 0; column < tileColumns; column++) {
+                for (int row = 0; row < tileRows; row++) result[resultIndex + column * resultColumnStride + row] += tile[row][column];
+            }
+        }
+    }
+
+    /**
+     * Multiplies single precision matrices directly on data arrays without packing. Used for small and skinny (vector like) matrices.
+     *
+     * @param rows number of rows in first matrix.
+     * @param inner number of columns in first matrix and rows in second matrix.
+     * @param columns number of columns in second matrix.
+     * @param first data of first matrix.
+     * @param firstOffset depth offset of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param second data of second matrix.
+     * @param secondOffset depth offset of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param result data of result matrix.
+     * @param resultOffset depth offset of result matrix.
+     * @param resultColumnStride column stride of result matrix.
+     */
+    private static void applyDirect(int rows, int inner, int columns, float[] first, int firstOffset, int firstRowStride, int firstColumnStride, float[] second, int secondOffset, int secondRowStride, int secondColumnStride, float[] result, int resultOffset, int resultColumnStride) {
+        for (int column = 0; column < columns; column++) {
+            int resultColumnOffset = resultOffset + column * resultColumnStride;
+            int secondColumnOffset = secondOffset + column * secondColumnStride;
+            if (firstRowStride == 1) {
+                // First matrix columns are contiguous hence result column is accumulated as scaled sum of first matrix columns.
+                for (int index = 0; index < inner; index++) {
+                    float secondValue = second[secondColumnOffset + index * secondRowStride];
+                    if (secondValue == 0) continue;
+                    int firstColumnOffset = firstOffset + index * firstColumnStride;
+                    for (int row = 0; row < rows; row++) result[resultColumnOffset + row] += first[firstColumnOffset + row] * secondValue;
+                }
+            }
+            else {
+                // First matrix rows are contiguous hence each result value is inner product of first matrix row and second matrix column.
+                for (int row = 0; row < rows; row++) {
+                    int firstRowOffset = firstOffset + row * firstRowStride;
+                    float sum = 0;
+                    for (int index = 0; index < inner; index++) sum += first[firstRowOffset + index * firstColumnStride] * second[secondColumnOffset + index * secondRowStride];
+                    result[resultColumnOffset + row] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies single precision matrices using cache blocking and register tiling.<br>
+     * Blocks of first and second matrix are packed into contiguous tile ordered buffers independent of transposition of matrices.<br>
+     *
+     * @param rows number of rows in first matrix.
+     * @param inner number of columns in first matrix and rows in second matrix.
+     * @param columns number of columns in second matrix.
+     * @param first data of first matrix.
+     * @param firstOffset depth offset of first matrix.
+     * @param firstRowStride row stride of first matrix.
+     * @param firstColumnStride column stride of first matrix.
+     * @param second data of second matrix.
+     * @param secondOffset depth offset of second matrix.
+     * @param secondRowStride row stride of second matrix.
+     * @param secondColumnStride column stride of second matrix.
+     * @param result data of result matrix.
+     * @param resultOffset depth offset of result matrix.
+     * @param resultColumnStride column stride of result matrix.
+     * @param firstPack packing buffer for first matrix block.
+     * @param secondPack packing buffer for second matrix block.
+     */
+    private static void applyBlocked(int rows, int inner, int columns, float[] first, int firstOffset, int firstRowStride, int firstColumnStride, float[] second, int secondOffset, int secondRowStride, int secondColumnStride, float[] result, int resultOffset, int resultColumnStride, float[] firstPack, float[] secondPack) {
+        for (int columnBlock = 0; columnBlock < columns; columnBlock += BLOCK_COLUMNS) {
+            int blockColumns = Math.min(BLOCK_COLUMNS, columns - columnBlock);
+            for (int innerBlock = 0; innerBlock < inner; innerBlock += BLOCK_INNER) {
+                int blockInner = Math.min(BLOCK_INNER, inner - innerBlock);
+                packSecond(second, secondOffset + innerBlock * secondRowStride + columnBlock * secondColumnStride, secondRowStride, secondColumnStride, blockInner, blockColumns, secondPack);
+                for (int rowBlock = 0; rowBlock < rows; rowBlock += BLOCK_ROWS) {
+                    int blockRows = Math.min(BLOCK_ROWS, rows - rowBlock);
+                    packFirst(first, firstOffset + rowBlock * firstRowStride + innerBlock * firstColumnStride, firstRowStride, firstColumnStride, blockRows, blockInner, firstPack);
+                    for (int tileColumn = 0; tileColumn < blockColumns; tileColumn += TILE_COLUMNS) {
+                        int tileColumns = Math.min(TILE_COLUMNS, blockColumns - tileColumn);
+                        for (int tileRow = 0; tileRow < blockRows; tileRow += TILE_ROWS) {
+                            int tileRows = Math.min(TILE_ROWS, blockRows - tileRow);
+                            applyTile(blockInner, firstPack, tileRow * blockInner, secondPack, tileColumn * blockInner, result, resultOffset + (columnBlock + tileColumn) * resultColumnStride + rowBlock + tileRow, resultColumnStride, tileRows, tileColumns);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs block of single precision first matrix into row tiles. Each tile stores tile rows consecutively for each inner index. Partial tiles are padded with zeros.
+     *
+     * @param first data of first matrix.
+     * @param offset offset of block.
+     * @param rowStride row stride of first matrix.
+     * @param columnStride column stride of first matrix.
+     * @param blockRows number of rows in block.
+     * @param blockInner number of inner entries in block.
+     * @param pack packing buffer.
+     */
+    private static void packFirst(float[] first, int offset, int rowStride, int columnStride, int blockRows, int blockInner, float[] pack) {
+        int packIndex = 0;
+        for (int tileRow = 0; tileRow < blockRows; tileRow += TILE_ROWS) {
+            int tileRows = Math.min(TILE_ROWS, blockRows - tileRow);
+            for (int index = 0; index < blockInner; index++) {
+                int dataIndex = offset + tileRow * rowStride + index * columnStride;
+                for (int row = 0; row < TILE_ROWS; row++) pack[packIndex++] = row < tileRows ? first[dataIndex + row * rowStride] : 0;
+            }
+        }
+    }
+
+    /**
+     * Packs block of single precision second matrix into column tiles. Each tile stores tile columns consecutively for each inner index. Partial tiles are padded with zeros.
+     *
+     * @param second data of second matrix.
+     * @param offset offset of block.
+     * @param rowStride row stride of second matrix.
+     * @param columnStride column stride of second matrix.
+     * @param blockInner number of inner entries in block.
+     * @param blockColumns number of columns in block.
+     * @param pack packing buffer.
+     */
+    private static void packSecond(float[] second, int offset, int rowStride, int columnStride, int blockInner, int blockColumns, float[] pack) {
+        int packIndex = 0;
+        for (int tileColumn = 0; tileColumn < blockColumns; tileColumn += TILE_COLUMNS) {
+            int tileColumns = Math.min(TILE_COLUMNS, blockColumns - tileColumn);
+            for (int index = 0; index < blockInner; index++) {
+                int dataIndex = offset + index * rowStride + tileColumn * columnStride;
+                for (int column = 0; column < TILE_COLUMNS; column++) pack[packIndex++] = column < tileColumns ? second[dataIndex + column * columnStride] : 0;
+            }
+        }
+    }
+
+    /**
+     * Calculates single register tile of single precision result from packed tiles and cumulates it into result.
+     *
+     * @param blockInner number of inner entries in block.
+     * @param firstPack packed first matrix block.
+     * @param firstIndex start index of tile in packed first matrix block.
+     * @param secondPack packed second matrix block.
+     * @param secondIndex start index of tile in packed second matrix block.
+     * @param result data of result matrix.
+     * @param resultIndex index of top left value of tile in result.
+     * @param resultColumnStride column stride of result matrix.
+     * @param tileRows number of valid rows in tile.
+     * @param tileColumns number of valid columns in tile.
+     */
+    private static void applyTile(int blockInner, float[] firstPack, int firstIndex, float[] secondPack, int secondIndex, float[] result, int resultIndex, int resultColumnStride, int tileRows, int tileColumns) {
+        float value00 = 0, value10 = 0, value20 = 0, value30 = 0;
+        float value01 = 0, value11 = 0, value21 = 0, value31 = 0;
+        float value02 = 0, value12 = 0, value22 = 0, value32 = 0;
+        float value03 = 0, value13 = 0, value23 = 0, value33 = 0;
+        for (int index = 0; index < blockInner; index++) {
+            float first0 = firstPack[firstIndex];
+            float first1 = firstPack[firstIndex + 1];
+            float first2 = firstPack[firstIndex + 2];
+            float first3 = firstPack[firstIndex + 3];
+            float second0 = secondPack[secondIndex];
+            float second1 = secondPack[secondIndex + 1];
+            float second2 = secondPack[secondIndex + 2];
+            float second3 = secondPack[secondIndex + 3];
+            value00 += first0 * second0; value10 += first1 * second0; value20 += first2 * second0; value30 += first3 * second0;
+            value01 += first0 * second1; value11 += first1 * second1; value21 += first2 * second1; value31 += first3 * second1;
+            value02 += first0 * second2; value12 += first1 * second2; value22 += first2 * second2; value32 += first3 * second2;
+            value03 += first0 * second3; value13 += first1 * second3; value23 += first2 * second3; value33 += first3 * second3;
+            firstIndex += TILE_ROWS;
+            secondIndex += TILE_COLUMNS;
+        }
+        if (tileRows == TILE_ROWS && tileColumns == TILE_COLUMNS) {
+            result[resultIndex] += value00; result[resultIndex + 1] += value10; result[resultIndex + 2] += value20; result[resultIndex + 3] += value30;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value01; result[resultIndex + 1] += value11; result[resultIndex + 2] += value21; result[resultIndex + 3] += value31;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value02; result[resultIndex + 1] += value12; result[resultIndex + 2] += value22; result[resultIndex + 3] += value32;
+            resultIndex += resultColumnStride;
+            result[resultIndex] += value03; result[resultIndex + 1] += value13; result[resultIndex + 2] += value23; result[resultIndex + 3] += value33;
+        }
+        else {
+            float[][] tile = {{value00, value01, value02, value03}, {value10, value11, value12, value13}, {value20, value21, value22, value23}, {value30, value31, value32, value33}};
+            for (int column = 0; column < tileColumns; column++) {
+                for (int row = 0; row < tileRows; row++) result[resultIndex + column * resultColumnStride + row] += tile[row][column];
+            }
+        }
+    }
+
     /**
      * Applies operation.
      *
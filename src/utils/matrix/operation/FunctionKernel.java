@@ -0,0 +1,41 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.BinaryFunction;
+import utils.matrix.UnaryFunction;
+
+/**
+ * Defines interface for array level kernels of built-in unary and binary functions.<br>
+ * Kernels process whole data array in single call instead of invoking function lambda per element.<br>
+ *
+ */
+public interface FunctionKernel {
+
+    /**
+     * Applies unary function or its derivative to input array.
+     *
+     * @param unaryFunction unary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param input input array.
+     * @param result result array. May be same as input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    boolean apply(UnaryFunction unaryFunction, boolean asFunction, double[] input, double[] result);
+
+    /**
+     * Applies binary function or its derivative to input arrays.
+     *
+     * @param binaryFunction binary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param first first input array.
+     * @param second second input array.
+     * @param result result array. May be same as first input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    boolean apply(BinaryFunction binaryFunction, boolean asFunction, double[] first, double[] second, double[] result);
+
+}
@@ -0,0 +1,154 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.MatrixException;
+
+/**
+ * Implements selection of array level function kernel used by unary and binary matrix operations.<br>
+ * Vector kernel based on JDK Vector API is used when module jdk.incubator.vector is available at runtime (--add-modules jdk.incubator.vector) otherwise scalar kernel is used.<br>
+ * Vector kernel can be switched off at runtime. Custom functions are always executed via their lambda functions.<br>
+ * Single precision data arrays are widened into per thread double precision buffers before kernel is applied and narrowed back after that.<br>
+ *
+ */
+public class FunctionKernels {
+
+    /**
+     * Scalar function kernel.
+     *
+     */
+    private static final FunctionKernel scalarFunctionKernel = new ScalarFunctionKernel();
+
+    /**
+     * Vector function kernel. Null if JDK Vector API is not available.
+     *
+     */
+    private static final FunctionKernel vectorFunctionKernel = createVectorFunctionKernel();
+
+    /**
+     * If true vector function kernel is used when available.
+     *
+     */
+    private static volatile boolean useVectorKernel = true;
+
+    /**
+     * If true function kernels are used otherwise element-wise lambda functions are used for all functions.
+     *
+     */
+    private static volatile boolean enabled = true;
+
+    /**
+     * Per thread double precision buffers used to apply kernels to single precision data arrays.
+     *
+     */
+    private static final ThreadLocal<double[][]> widenedBuffers = ThreadLocal.withInitial(() -> new double[3][0]);
+
+    /**
+     * Default constructor for function kernels.
+     *
+     */
+    private FunctionKernels() {
+    }
+
+    /**
+     * Creates vector function kernel if JDK Vector API module is present.
+     *
+     * @return vector function kernel or null if JDK Vector API is not available.
+     */
+    private static FunctionKernel createVectorFunctionKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            return new VectorFunctionKernel();
+        }
+        catch (LinkageError linkageError) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if vector function kernel is available.
+     *
+     * @return true if vector function kernel is available otherwise false.
+     */
+    public static boolean isVectorKernelAvailable() {
+        return vectorFunctionKernel != null;
+    }
+
+    /**
+     * Sets if vector function kernel is used.
+     *
+     * @param useVectorKernel if true vector function kernel is used otherwise scalar function kernel is used.
+     * @throws MatrixException throws exception if vector function kernel is requested but JDK Vector API is not available.
+     */
+    public static void setUseVectorKernel(boolean useVectorKernel) throws MatrixException {
+        if (useVectorKernel && !isVectorKernelAvailable()) throw new MatrixException("Vector kernel requires module jdk.incubator.vector.");
+        FunctionKernels.useVectorKernel = useVectorKernel;
+    }
+
+    /**
+     * Checks if vector function kernel is used.
+     *
+     * @return true if vector function kernel is used otherwise false.
+     */
+    public static boolean isUseVectorKernel() {
+        return useVectorKernel && isVectorKernelAvailable();
+    }
+
+    /**
+     * Sets if function kernels are used.
+     *
+     * @param enabled if true function kernels are used otherwise element-wise lambda functions are used for all functions.
+     */
+    public static void setEnabled(boolean enabled) {
+        FunctionKernels.enabled = enabled;
+    }
+
+    /**
+     * Checks if function kernels are used.
+     *
+     * @return true if function kernels are used otherwise false.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns function kernel to be used or null if function kernels are disabled.
+     *
+     * @return function kernel.
+     */
+    public static FunctionKernel getFunctionKernel() {
+        if (!enabled) return null;
+        return isUseVectorKernel() ? vectorFunctionKernel : scalarFunctionKernel;
+    }
+
+    /**
+     * Widens single precision data array into per thread double precision buffer.
+     *
+     * @param data single precision data array. If null buffer is returned without copying data.
+     * @param size size of data array.
+     * @param bufferIndex index of buffer (0 - 2).
+     * @return double precision buffer of given size.
+     */
+    static double[] widen(float[] data, int size, int bufferIndex) {
+        double[][] buffers = widenedBuffers.get();
+        if (buffers[bufferIndex].length != size) buffers[bufferIndex] = new double[size];
+        double[] buffer = buffers[bufferIndex];
+        if (data != null) for (int index = 0; index < size; index++) buffer[index] = data[index];
+        return buffer;
+    }
+
+    /**
+     * Narrows double precision buffer into single precision data array.
+     *
+     * @param buffer double precision buffer.
+     * @param data single precision data array.
+     */
+    static void narrow(double[] buffer, float[] data) {
+        for (int index = 0; index < data.length; index++) data[index] = (float)buffer[index];
+    }
+
+}
@@ -0,0 +1,600 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Implements fused element wise matrix operation.<br>
+ * Fused operation evaluates chain of element wise steps (add, subtract, multiply, divide, unary function and binary function) in single pass over matrices.<br>
+ * Matrices are processed in chunks fitting into first level cache. Results of intermediate steps are kept in per thread chunk buffers and are never written into matrices.<br>
+ * Gradient recomputes intermediate results of each chunk from inputs and propagates output gradient backwards through steps within same pass.<br>
+ * Input having fewer columns than result is broadcast column wise (e.g. bias added to column stacked batch) and its gradient is summed over broadcast columns.<br>
+ * Unmasked dense matrices are accessed via their data arrays. Other matrices are accessed element wise.<br>
+ *
+ */
+public class FusedMatrixOperation implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -2217432467925716829L;
+
+    /**
+     * Defines type of fused step.
+     *
+     */
+    public enum StepType {
+
+        /**
+         * Adds second operand to first operand.
+         *
+         */
+        ADD,
+
+        /**
+         * Subtracts second operand from first operand.
+         *
+         */
+        SUBTRACT,
+
+        /**
+         * Multiplies first operand by second operand.
+         *
+         */
+        MULTIPLY,
+
+        /**
+         * Divides first operand by second operand.
+         *
+         */
+        DIVIDE,
+
+        /**
+         * Applies unary function to first operand.
+         *
+         */
+        UNARY_FUNCTION,
+
+        /**
+         * Applies binary function to first and second operand.
+         *
+         */
+        BINARY_FUNCTION
+
+    }
+
+    /**
+     * Implements single step of fused operation.
+     *
+     */
+    private static class Step implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 4836212349176232841L;
+
+        /**
+         * Step type.
+         *
+         */
+        private final StepType stepType;
+
+        /**
+         * Slot of first operand.
+         *
+         */
+        private final int operand1;
+
+        /**
+         * Slot of second operand. Negative if step has single operand.
+         *
+         */
+        private final int operand2;
+
+        /**
+         * Unary function of step.
+         *
+         */
+        private final UnaryFunction unaryFunction;
+
+        /**
+         * Binary function of step.
+         *
+         */
+        private final BinaryFunction binaryFunction;
+
+        /**
+         * Constructor for step.
+         *
+         * @param stepType step type.
+         * @param operand1 slot of first operand.
+         * @param operand2 slot of second operand.
+         * @param unaryFunction unary function of step.
+         * @param binaryFunction binary function of step.
+         */
+        Step(StepType stepType, int operand1, int operand2, UnaryFunction unaryFunction, BinaryFunction binaryFunction) {
+            this.stepType = stepType;
+            this.operand1 = operand1;
+            this.operand2 = operand2;
+            this.unaryFunction = unaryFunction;
+            this.binaryFunction = binaryFunction;
+        }
+
+    }
+
+    /**
+     * Number of values processed in single chunk.
+     *
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * Per thread chunk buffers. First set has buffers of full chunk size and second set buffers of tail chunk size.
+     *
+     */
+    private static final ThreadLocal<double[][][]> chunkBuffers = ThreadLocal.withInitial(() -> new double[2][0][]);
+
+    /**
+     * Number of inputs.
+     *
+     */
+    private final int numberOfInputs;
+
+    /**
+     * Steps of fused operation.
+     *
+     */
+    private final ArrayList<Step> steps = new ArrayList<>();
+
+    /**
+     * Constructor for fused matrix operation.
+     *
+     * @param numberOfInputs number of inputs.
+     */
+    public FusedMatrixOperation(int numberOfInputs) {
+        this.numberOfInputs = numberOfInputs;
+    }
+
+    /**
+     * Returns number of inputs.
+     *
+     * @return number of inputs.
+     */
+    public int getNumberOfInputs() {
+        return numberOfInputs;
+    }
+
+    /**
+     * Returns number of steps.
+     *
+     * @return number of steps.
+     */
+    public int getNumberOfSteps() {
+        return steps.size();
+    }
+
+    /**
+     * Adds step to fused operation. Slots 0 to number of inputs - 1 refer to inputs and following slots refer to results of steps in order of addition.
+     *
+     * @param stepType step type.
+     * @param operand1 slot of first operand.
+     * @param operand2 slot of second operand. Ignored for unary function step.
+     * @param unaryFunction unary function for unary function step.
+     * @param binaryFunction binary function for binary function step.
+     * @return slot of step result.
+     * @throws MatrixException throws exception if operand slots or function of step are not valid.
+     */
+    public int addStep(StepType stepType, int operand1, int operand2, UnaryFunction unaryFunction, BinaryFunction binaryFunction) throws MatrixException {
+        int resultSlot = numberOfInputs + steps.size();
+        boolean isUnary = stepType == StepType.UNARY_FUNCTION;
+        if (operand1 < 0 || operand1 >= resultSlot || (!isUnary && (operand2 < 0 || operand2 >= resultSlot))) throw new MatrixException("Invalid operand slot for fused step.");
+        if (isUnary && unaryFunction == null) throw new MatrixException("Unary function is not defined for fused step.");
+        if (stepType == StepType.BINARY_FUNCTION && binaryFunction == null) throw new MatrixException("Binary function is not defined for fused step.");
+        steps.add(new Step(stepType, operand1, isUnary ? -1 : operand2, unaryFunction, binaryFunction));
+        return resultSlot;
+    }
+
+    /**
+     * Applies fused operation to all values of result.
+     *
+     * @param inputs input matrices.
+     * @param result result matrix.
+     * @throws MatrixException throws exception if dimensions of matrices are not matching.
+     */
+    public void applyFunction(Matrix[] inputs, Matrix result) throws MatrixException {
+        checkDimensions(inputs, result);
+        apply(inputs, result, 0, result.getRows() * result.getColumns() * result.getDepth());
+    }
+
+    /**
+     * Applies fused operation to range of result values. Range is given as indices of result values ordered by depth, column and row.<br>
+     * Dimensions of matrices are expected to be checked by caller.<br>
+     *
+     * @param inputs input matrices.
+     * @param result result matrix.
+     * @param fromIndex index of first result value (inclusive).
+     * @param toIndex index of last result value (exclusive).
+     */
+    public void applyFunction(Matrix[] inputs, Matrix result, int fromIndex, int toIndex) {
+        apply(inputs, result, fromIndex, toIndex);
+    }
+
+    /**
+     * Applies fused operation to range of result values chunk by chunk.
+     *
+     * @param inputs input matrices.
+     * @param result result matrix.
+     * @param fromIndex index of first result value (inclusive).
+     * @param toIndex index of last result value (exclusive).
+     */
+    private void apply(Matrix[] inputs, Matrix result, int fromIndex, int toIndex) {
+        int numberOfSlots = numberOfInputs + steps.size();
+        int lastSlot = numberOfSlots - 1;
+        for (int offset = fromIndex; offset < toIndex; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, toIndex - offset);
+            double[][] buffers = getBuffers(length, numberOfSlots);
+            for (int input = 0; input < numberOfInputs; input++) load(inputs[input], result, offset, buffers[input]);
+            calculateSteps(buffers, steps.size(), buffers[2 * numberOfSlots]);
+            store(buffers[lastSlot], result, offset, false);
+        }
+    }
+
+    /**
+     * Calculates gradients of inputs. Gradient of input is calculated only if respective gradient matrix is defined.<br>
+     * Gradient matrix of input has dimensions of input. Content of gradient matrix is overwritten.<br>
+     *
+     * @param inputs input matrices.
+     * @param outputGradient output gradient.
+     * @param inputGradients gradient matrices of inputs.
+     * @throws MatrixException throws exception if dimensions of matrices are not matching.
+     */
+    public void applyGradient(Matrix[] inputs, Matrix outputGradient, Matrix[] inputGradients) throws MatrixException {
+        applyGradient(inputs, null, outputGradient, inputGradients);
+    }
+
+    /**
+     * Calculates gradients of inputs. Gradient of input is calculated only if respective gradient matrix is defined.<br>
+     * Gradient matrix of input has dimensions of input. Content of gradient matrix is overwritten.<br>
+     * If result of fused operation is given last step is not recalculated but its value is taken from result.<br>
+     *
+     * @param inputs input matrices.
+     * @param result result matrix calculated by fused operation (optional).
+     * @param outputGradient output gradient.
+     * @param inputGradients gradient matrices of inputs.
+     * @throws MatrixException throws exception if dimensions of matrices are not matching.
+     */
+    public void applyGradient(Matrix[] inputs, Matrix result, Matrix outputGradient, Matrix[] inputGradients) throws MatrixException {
+        checkDimensions(inputs, outputGradient);
+        if (result != null && (result.getRows() != outputGradient.getRows() || result.getColumns() != outputGradient.getColumns() || result.getDepth() != outputGradient.getDepth())) {
+            throw new MatrixException("Dimensions of result are not matching with dimensions of output gradient.");
+        }
+        for (int input = 0; input < numberOfInputs; input++) {
+            Matrix inputGradient = inputGradients[input];
+            if (inputGradient == null) continue;
+            if (inputGradient.getRows() != inputs[input].getRows() || inputGradient.getColumns() != inputs[input].getColumns() || inputGradient.getDepth() != inputs[input].getDepth()) {
+                throw new MatrixException("Dimensions of input gradient are not matching with dimensions of input.");
+            }
+            if (inputGradient.getColumns() != outputGradient.getColumns()) setZero(inputGradient);
+        }
+
+        int numberOfSlots = numberOfInputs + steps.size();
+        int lastSlot = numberOfSlots - 1;
+        int size = outputGradient.getRows() * outputGradient.getColumns() * outputGradient.getDepth();
+        for (int offset = 0; offset < size; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, size - offset);
+            double[][] buffers = getBuffers(length, numberOfSlots);
+            double[] temporary = buffers[2 * numberOfSlots];
+            for (int input = 0; input < numberOfInputs; input++) load(inputs[input], outputGradient, offset, buffers[input]);
+            if (result == null) calculateSteps(buffers, steps.size(), temporary);
+            else {
+                calculateSteps(buffers, steps.size() - 1, temporary);
+                load(result, outputGradient, offset, buffers[lastSlot]);
+            }
+            for (int slot = 0; slot < lastSlot; slot++) Arrays.fill(buffers[numberOfSlots + slot], 0);
+            load(outputGradient, outputGradient, offset, buffers[numberOfSlots + lastSlot]);
+            calculateGradientSteps(buffers, numberOfSlots, temporary);
+            for (int input = 0; input < numberOfInputs; input++) {
+                if (inputGradients[input] != null) store(buffers[numberOfSlots + input], inputGradients[input], outputGradient, offset, inputGradients[input].getColumns() != outputGradient.getColumns());
+            }
+        }
+    }
+
+    /**
+     * Checks that inputs have same rows and depth as reference matrix and that number of reference columns is multiple of input columns.<br>
+     * Undefined inputs are skipped allowing caller to check inputs that are produced later (e.g. by dot operation prior to its epilogue).<br>
+     *
+     * @param inputs input matrices.
+     * @param reference reference matrix.
+     * @throws MatrixException throws exception if dimensions of matrices are not matching.
+     */
+    public void checkDimensions(Matrix[] inputs, Matrix reference) throws MatrixException {
+        if (inputs.length != numberOfInputs) throw new MatrixException("Number of inputs " + inputs.length + " is not matching with expected number of inputs " + numberOfInputs + ".");
+        for (Matrix input : inputs) {
+            if (input == null) continue;
+            if (input.getRows() != reference.getRows() || input.getDepth() != reference.getDepth() || reference.getColumns() % input.getColumns() != 0) {
+                throw new MatrixException("Incompatible input matrix size: " + input.getRows() + "x" + input.getColumns() + "x" + input.getDepth() + " for result size " + reference.getRows() + "x" + reference.getColumns() + "x" + reference.getDepth());
+            }
+        }
+    }
+
+    /**
+     * Returns per thread chunk buffers of given length. Buffers are ordered as slot values, slot gradients and temporary buffer.
+     *
+     * @param length length of buffers.
+     * @param numberOfSlots number of slots.
+     * @return chunk buffers.
+     */
+    private static double[][] getBuffers(int length, int numberOfSlots) {
+        double[][][] bufferSets = chunkBuffers.get();
+        int bufferSet = length == CHUNK_SIZE ? 0 : 1;
+        double[][] buffers = bufferSets[bufferSet];
+        if (buffers.length < 2 * numberOfSlots + 1 || buffers[0].length != length) {
+            buffers = new double[Math.max(buffers.length, 2 * numberOfSlots + 1)][length];
+            bufferSets[bufferSet] = buffers;
+        }
+        return buffers;
+    }
+
+    /**
+     * Calculates steps for chunk. Inputs are expected to be loaded into their slots.
+     *
+     * @param values chunk buffers of slot values.
+     * @param numberOfSteps number of steps to be calculated starting from first step.
+     * @param temporary temporary chunk buffer.
+     */
+    private void calculateSteps(double[][] values, int numberOfSteps, double[] temporary) {
+        FunctionKernel functionKernel = FunctionKernels.getFunctionKernel();
+        int length = temporary.length;
+        int slot = numberOfInputs;
+        for (int stepIndex = 0; stepIndex < numberOfSteps; stepIndex++) {
+            Step step = steps.get(stepIndex);
+            double[] result = values[slot++];
+            double[] first = values[step.operand1];
+            double[] second = step.operand2 >= 0 ? values[step.operand2] : null;
+            switch (step.stepType) {
+                case ADD -> { for (int index = 0; index < length; index++) result[index] = first[index] + second[index]; }
+                case SUBTRACT -> { for (int index = 0; index < length; index++) result[index] = first[index] - second[index]; }
+                case MULTIPLY -> { for (int index = 0; index < length; index++) result[index] = first[index] * second[index]; }
+                case DIVIDE -> { for (int index = 0; index < length; index++) result[index] = first[index] / second[index]; }
+                case UNARY_FUNCTION -> applyUnary(functionKernel, step.unaryFunction, true, first, result);
+                case BINARY_FUNCTION -> applyBinary(functionKernel, step.binaryFunction, true, first, second, result);
+            }
+        }
+    }
+
+    /**
+     * Propagates gradient of chunk backwards through steps. Gradient buffers follow value buffers and gradient of last slot is expected to be loaded.
+     *
+     * @param buffers chunk buffers of slot values and gradients.
+     * @param numberOfSlots number of slots.
+     * @param temporary temporary chunk buffer.
+     */
+    private void calculateGradientSteps(double[][] buffers, int numberOfSlots, double[] temporary) {
+        FunctionKernel functionKernel = FunctionKernels.getFunctionKernel();
+        int length = temporary.length;
+        for (int stepIndex = steps.size() - 1; stepIndex >= 0; stepIndex--) {
+            Step step = steps.get(stepIndex);
+            int slot = numberOfInputs + stepIndex;
+            double[] outputGradient = buffers[numberOfSlots + slot];
+            double[] first = buffers[step.operand1];
+            double[] second = step.operand2 >= 0 ? buffers[step.operand2] : null;
+            double[] firstGradient = buffers[numberOfSlots + step.operand1];
+            double[] secondGradient = step.operand2 >= 0 ? buffers[numberOfSlots + step.operand2] : null;
+            switch (step.stepType) {
+                case ADD -> {
+                    for (int index = 0; index < length; index++) firstGradient[index] += outputGradient[index];
+                    for (int index = 0; index < length; index++) secondGradient[index] += outputGradient[index];
+                }
+                case SUBTRACT -> {
+                    for (int index = 0; index < length; index++) firstGradient[index] += outputGradient[index];
+                    for (int index = 0; index < length; index++) secondGradient[index] += -outputGradient[index];
+                }
+                case MULTIPLY -> {
+                    for (int index = 0; index < length; index++) firstGradient[index] += outputGradient[index] * second[index];
+                    for (int index = 0; index < length; index++) secondGradient[index] += first[index] * outputGradient[index];
+                }
+                case DIVIDE -> {
+                    for (int index = 0; index < length; index++) firstGradient[index] += outputGradient[index] / second[index];
+                    for (int index = 0; index < length; index++) secondGradient[index] += (outputGradient[index] * first[index]) / (second[index] * second[index]);
+                }
+                case UNARY_FUNCTION -> {
+                    // Derivative is evaluated at result of step.
+                    applyUnary(functionKernel, step.unaryFunction, false, buffers[slot], temporary);
+                    for (int index = 0; index < length; index++) firstGradient[index] += temporary[index] * outputGradient[index];
+                }
+                case BINARY_FUNCTION -> {
+                    // Derivative is evaluated at result of step and second operand. Second operand does not receive gradient.
+                    applyBinary(functionKernel, step.binaryFunction, false, buffers[slot], second, temporary);
+                    for (int index = 0; index < length; index++) firstGradient[index] += outputGradient[index] * temporary[index];
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies unary function or its derivative to chunk using function kernel if available otherwise using lambda function.
+     *
+     * @param functionKernel function kernel (optional).
+     * @param unaryFunction unary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param input input chunk.
+     * @param result result chunk.
+     */
+    private static void applyUnary(FunctionKernel functionKernel, UnaryFunction unaryFunction, boolean asFunction, double[] input, double[] result) {
+        if (functionKernel != null && unaryFunction.getType() != UnaryFunctionType.CUSTOM && functionKernel.apply(unaryFunction, asFunction, input, result)) return;
+        Matrix.MatrixUnaryOperation operation = asFunction ? unaryFunction.getFunction() : unaryFunction.getDerivative();
+        for (int index = 0; index < input.length; index++) result[index] = operation.execute(input[index]);
+    }
+
+    /**
+     * Applies binary function or its derivative to chunk using function kernel if available otherwise using lambda function.
+     *
+     * @param functionKernel function kernel (optional).
+     * @param binaryFunction binary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param first first input chunk.
+     * @param second second input chunk.
+     * @param result result chunk.
+     */
+    private static void applyBinary(FunctionKernel functionKernel, BinaryFunction binaryFunction, boolean asFunction, double[] first, double[] second, double[] result) {
+        if (functionKernel != null && binaryFunction.getType() != BinaryFunctionType.CUSTOM && functionKernel.apply(binaryFunction, asFunction, first, second, result)) return;
+        Matrix.MatrixBinaryOperation operation = asFunction ? binaryFunction.getFunction() : binaryFunction.getDerivative();
+        for (int index = 0; index < first.length; index++) result[index] = operation.execute(first[index], second[index]);
+    }
+
+    /**
+     * Loads chunk of matrix values into buffer. Matrix having fewer columns than reference matrix is broadcast column wise.
+     *
+     * @param matrix matrix.
+     * @param reference reference matrix defining value indices.
+     * @param offset index of first value of chunk in reference matrix.
+     * @param buffer chunk buffer.
+     */
+    private static void load(Matrix matrix, Matrix reference, int offset, double[] buffer) {
+        int length = buffer.length;
+        int rows = reference.getRows();
+        int referenceDepthSize = rows * reference.getColumns();
+        int depthSize = rows * matrix.getColumns();
+        boolean broadcast = depthSize != referenceDepthSize;
+        if (isDense(matrix)) {
+            if (!broadcast) {
+                if (matrix instanceof DMatrix dMatrix) System.arraycopy(dMatrix.getData(), offset, buffer, 0, length);
+                else {
+                    float[] data = ((FMatrix)matrix).getData();
+                    for (int index = 0; index < length; index++) buffer[index] = data[offset + index];
+                }
+            }
+            else {
+                int depth = offset / referenceDepthSize;
+                int position = offset - depth * referenceDepthSize;
+                int matrixPosition = position % depthSize;
+                double[] doubleData = matrix instanceof DMatrix dMatrix ? dMatrix.getData() : null;
+                float[] floatData = matrix instanceof FMatrix fMatrix ? fMatrix.getData() : null;
+                for (int index = 0; index < length; index++) {
+                    int matrixIndex = depth * depthSize + matrixPosition;
+                    buffer[index] = doubleData != null ? doubleData[matrixIndex] : floatData[matrixIndex];
+                    if (++matrixPosition == depthSize) matrixPosition = 0;
+                    if (++position == referenceDepthSize) {
+                        position = 0;
+                        matrixPosition = 0;
+                        depth++;
+                    }
+                }
+            }
+        }
+        else {
+            int columns = matrix.getColumns();
+            for (int index = 0; index < length; index++) {
+                int referenceIndex = offset + index;
+                int depth = referenceIndex / referenceDepthSize;
+                int position = referenceIndex - depth * referenceDepthSize;
+                buffer[index] = matrix.getValue(position % rows, (position / rows) % columns, depth);
+            }
+        }
+    }
+
+    /**
+     * Stores chunk buffer into matrix having same dimensions as reference matrix.
+     *
+     * @param buffer chunk buffer.
+     * @param matrix matrix.
+     * @param offset index of first value of chunk in matrix.
+     * @param cumulate if true buffer values are added to matrix values otherwise matrix values are overwritten.
+     */
+    private static void store(double[] buffer, Matrix matrix, int offset, boolean cumulate) {
+        store(buffer, matrix, matrix, offset, cumulate);
+    }
+
+    /**
+     * Stores chunk buffer into matrix. Matrix having fewer columns than reference matrix receives sum over broadcast columns.
+     *
+     * @param buffer chunk buffer.
+     * @param matrix matrix.
+     * @param reference reference matrix defining value indices.
+     * @param offset index of first value of chunk in reference matrix.
+     * @param cumulate if true buffer values are added to matrix values otherwise matrix values are overwritten.
+     */
+    private static void store(double[] buffer, Matrix matrix, Matrix reference, int offset, boolean cumulate) {
+        int length = buffer.length;
+        int rows = reference.getRows();
+        int referenceDepthSize = rows * reference.getColumns();
+        int depthSize = rows * matrix.getColumns();
+        if (isDense(matrix)) {
+            double[] doubleData = matrix instanceof DMatrix dMatrix ? dMatrix.getData() : null;
+            float[] floatData = matrix instanceof FMatrix fMatrix ? fMatrix.getData() : null;
+            if (depthSize == referenceDepthSize && !cumulate) {
+                if (doubleData != null) System.arraycopy(buffer, 0, doubleData, offset, length);
+                else for (int index = 0; index < length; index++) floatData[offset + index] = (float)buffer[index];
+            }
+            else {
+                int depth = offset / referenceDepthSize;
+                int position = offset - depth * referenceDepthSize;
+                int matrixPosition = position % depthSize;
+                for (int index = 0; index < length; index++) {
+                    int matrixIndex = depth * depthSize + matrixPosition;
+                    if (doubleData != null) doubleData[matrixIndex] = cumulate ? doubleData[matrixIndex] + buffer[index] : buffer[index];
+                    else floatData[matrixIndex] = (float)(cumulate ? floatData[matrixIndex] + buffer[index] : buffer[index]);
+                    if (++matrixPosition == depthSize) matrixPosition = 0;
+                    if (++position == referenceDepthSize) {
+                        position = 0;
+                        matrixPosition = 0;
+                        depth++;
+                    }
+                }
+            }
+        }
+        else {
+            int columns = matrix.getColumns();
+            for (int index = 0; index < length; index++) {
+                int referenceIndex = offset + index;
+                int depth = referenceIndex / referenceDepthSize;
+                int position = referenceIndex - depth * referenceDepthSize;
+                int row = position % rows;
+                int column = (position / rows) % columns;
+                matrix.setValue(row, column, depth, cumulate ? matrix.getValue(row, column, depth) + buffer[index] : buffer[index]);
+            }
+        }
+    }
+
+    /**
+     * Sets all values of matrix to zero.
+     *
+     * @param matrix matrix.
+     */
+    private static void setZero(Matrix matrix) {
+        if (isDense(matrix)) {
+            if (matrix instanceof DMatrix dMatrix) Arrays.fill(dMatrix.getData(), 0);
+            else Arrays.fill(((FMatrix)matrix).getData(), 0);
+        }
+        else {
+            for (int depth = 0; depth < matrix.getDepth(); depth++) {
+                for (int column = 0; column < matrix.getColumns(); column++) {
+                    for (int row = 0; row < matrix.getRows(); row++) {
+                        matrix.setValue(row, column, depth, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if matrix is unmasked non-transposed dense matrix whose values are stored in data array in order of depth, column and row.
+     *
+     * @param matrix matrix.
+     * @return true if matrix values can be accessed via data array otherwise false.
+     */
+    private static boolean isDense(Matrix matrix) {
+        if (matrix.isTransposed() || matrix.isScalar() || matrix.getMask() != null) return false;
+        int size = matrix.getRows() * matrix.getColumns() * matrix.getDepth();
+        if (matrix instanceof DMatrix dMatrix) return dMatrix.getData() != null && dMatrix.getData().length == size;
+        if (matrix instanceof FMatrix fMatrix) return fMatrix.getData() != null && fMatrix.getData().length == size;
+        return false;
+    }
+
+}
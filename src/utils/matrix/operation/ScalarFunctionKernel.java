@@ -0,0 +1,409 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import utils.matrix.BinaryFunction;
+import utils.matrix.UnaryFunction;
+
+import java.util.Arrays;
+
+/**
+ * Implements scalar array level kernels of built-in unary and binary functions.<br>
+ * Each function is computed by dedicated loop so that there is no lambda call per element and JIT compiler can inline and auto-vectorize loop body.<br>
+ * Formulas are identical to lambda functions defined in UnaryFunction and BinaryFunction.<br>
+ *
+ */
+public class ScalarFunctionKernel implements FunctionKernel {
+
+    /**
+     * Default constructor for scalar function kernel.
+     *
+     */
+    public ScalarFunctionKernel() {
+    }
+
+    /**
+     * Applies unary function or its derivative to input array.
+     *
+     * @param unaryFunction unary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param input input array.
+     * @param result result array. May be same as input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    public boolean apply(UnaryFunction unaryFunction, boolean asFunction, double[] input, double[] result) {
+        return asFunction ? applyFunction(unaryFunction, input, result) : applyDerivative(unaryFunction, input, result);
+    }
+
+    /**
+     * Applies unary function to input array.
+     *
+     * @param unaryFunction unary function.
+     * @param input input array.
+     * @param result result array.
+     * @return true if kernel supports function otherwise false.
+     */
+    private static boolean applyFunction(UnaryFunction unaryFunction, double[] input, double[] result) {
+        int length = input.length;
+        double threshold = unaryFunction.getThreshold();
+        double alpha = unaryFunction.getAlpha();
+        double lambda = unaryFunction.getLambda();
+        switch (unaryFunction.getType()) {
+            case EQUAL, LINEAR -> System.arraycopy(input, 0, result, 0, length);
+            case ABS -> { for (int index = 0; index < length; index++) result[index] = Math.abs(input[index]); }
+            case COS -> { for (int index = 0; index < length; index++) result[index] = Math.cos(input[index]); }
+            case COSH -> { for (int index = 0; index < length; index++) result[index] = Math.cosh(input[index]); }
+            case EXP -> { for (int index = 0; index < length; index++) result[index] = Math.exp(input[index]); }
+            case LOG -> { for (int index = 0; index < length; index++) result[index] = Math.log(input[index]); }
+            case LOG10 -> { for (int index = 0; index < length; index++) result[index] = Math.log10(input[index]); }
+            case SGN -> { for (int index = 0; index < length; index++) result[index] = Math.signum(input[index]); }
+            case SIN -> { for (int index = 0; index < length; index++) result[index] = Math.sin(input[index]); }
+            case SINH -> { for (int index = 0; index < length; index++) result[index] = Math.sinh(input[index]); }
+            case SQRT -> { for (int index = 0; index < length; index++) result[index] = Math.sqrt(input[index]); }
+            case CBRT -> { for (int index = 0; index < length; index++) result[index] = Math.cbrt(input[index]); }
+            case INV -> { for (int index = 0; index < length; index++) result[index] = 1 / input[index]; }
+            case TAN -> { for (int index = 0; index < length; index++) result[index] = Math.tan(input[index]); }
+            case TANH -> { for (int index = 0; index < length; index++) result[index] = Math.tanh(input[index]); }
+            case STANH -> { for (int index = 0; index < length; index++) result[index] = (1 + Math.tanh(input[index])) / 2; }
+            case SIGMOID -> { for (int index = 0; index < length; index++) result[index] = 1 / (1 + Math.exp(-input[index])); }
+            case SWISH -> { for (int index = 0; index < length; index++) result[index] = input[index] / (1 + Math.exp(-input[index])); }
+            case HARDSIGMOID -> { for (int index = 0; index < length; index++) result[index] = Math.min(1, Math.max(0, 0.125 * input[index] + 0.5)); }
+            case BIPOLARSIGMOID -> { for (int index = 0; index < length; index++) result[index] = 2 / (1 + Math.exp(-input[index])) - 1; }
+            case TANHSIG -> { for (int index = 0; index < length; index++) result[index] = 2 / (Math.exp(-2 * input[index]) + 1) - 1; }
+            case TANHAPPR -> {
+                for (int index = 0; index < length; index++) {
+                    double exp = Math.exp(2 * input[index]);
+                    result[index] = (exp - 1) / (exp + 1);
+                }
+            }
+            case HARDTANH -> { for (int index = 0; index < length; index++) result[index] = Math.min(1, Math.max(-1, 0.5 * input[index])); }
+            case SOFTPLUS -> { for (int index = 0; index < length; index++) result[index] = Math.log(1 + Math.exp(input[index])); }
+            case SOFTSIGN -> { for (int index = 0; index < length; index++) result[index] = input[index] / (Math.abs(input[index]) + 1); }
+            case RELU -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < threshold ? alpha * value : value;
+                }
+            }
+            case RELU_COS -> { for (int index = 0; index < length; index++) result[index] = Math.max(0, input[index]) + Math.cos(input[index]); }
+            case RELU_SIN -> { for (int index = 0; index < length; index++) result[index] = Math.max(0, input[index]) + Math.sin(input[index]); }
+            case ELU -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < threshold ? alpha * (Math.exp(value) - 1) : value;
+                }
+            }
+            case SELU -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < threshold ? lambda * alpha * (Math.exp(value) - 1) : lambda * value;
+                }
+            }
+            case GELU -> {
+                double scale = Math.sqrt(2 / Math.PI);
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = 0.5 * value * (1 + Math.tanh(scale * (value + 0.044715 * value * value * value)));
+                }
+            }
+            case GAUSSIAN -> { for (int index = 0; index < length; index++) result[index] = Math.exp(-1 * input[index] * input[index] / 2); }
+            case SINACT -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < -0.5 * Math.PI ? -1 : value > 0.5 * Math.PI ? 1 : Math.sin(value);
+                }
+            }
+            case LOGIT -> { for (int index = 0; index < length; index++) result[index] = Math.log(input[index] / (1 - input[index])); }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies derivative of unary function to input array.
+     *
+     * @param unaryFunction unary function.
+     * @param input input array.
+     * @param result result array.
+     * @return true if kernel supports function otherwise false.
+     */
+    private static boolean applyDerivative(UnaryFunction unaryFunction, double[] input, double[] result) {
+        int length = input.length;
+        double threshold = unaryFunction.getThreshold();
+        double alpha = unaryFunction.getAlpha();
+        double lambda = unaryFunction.getLambda();
+        switch (unaryFunction.getType()) {
+            case EQUAL -> System.arraycopy(input, 0, result, 0, length);
+            case LINEAR -> Arrays.fill(result, 0, length, 1);
+            case ABS -> { for (int index = 0; index < length; index++) result[index] = input[index] / Math.abs(input[index]); }
+            case COS -> { for (int index = 0; index < length; index++) result[index] = -Math.sin(input[index]); }
+            case COSH -> { for (int index = 0; index < length; index++) result[index] = Math.sinh(input[index]); }
+            case EXP -> { for (int index = 0; index < length; index++) result[index] = Math.exp(input[index]); }
+            case LOG -> { for (int index = 0; index < length; index++) result[index] = 1 / input[index]; }
+            case LOG10 -> { for (int index = 0; index < length; index++) result[index] = 1 / (Math.log(10) * input[index]); }
+            case SGN -> Arrays.fill(result, 0, length, 0);
+            case SIN -> { for (int index = 0; index < length; index++) result[index] = Math.cos(input[index]); }
+            case SINH -> { for (int index = 0; index < length; index++) result[index] = Math.cosh(input[index]); }
+            case SQRT -> { for (int index = 0; index < length; index++) result[index] = 1 / (2 * Math.sqrt(input[index])); }
+            case CBRT -> { for (int index = 0; index < length; index++) result[index] = 1 / (3 * Math.cbrt(input[index] * input[index])); }
+            case INV -> { for (int index = 0; index < length; index++) result[index] = -1 / (input[index] * input[index]); }
+            case TAN -> {
+                for (int index = 0; index < length; index++) {
+                    double tan = Math.tan(input[index]);
+                    result[index] = 1 + tan * tan;
+                }
+            }
+            case TANH -> {
+                for (int index = 0; index < length; index++) {
+                    double tanh = Math.tanh(input[index]);
+                    result[index] = 1 - tanh * tanh;
+                }
+            }
+            case STANH -> {
+                for (int index = 0; index < length; index++) {
+                    double sech = 1 / Math.cosh(input[index]);
+                    result[index] = sech * sech / 2;
+                }
+            }
+            case SIGMOID -> {
+                for (int index = 0; index < length; index++) {
+                    double exp = Math.exp(input[index]);
+                    result[index] = exp / ((1 + exp) * (1 + exp));
+                }
+            }
+            case SWISH -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    double exp = Math.exp(value);
+                    result[index] = exp * (exp + value + 1) / ((1 + exp) * (1 + exp));
+                }
+            }
+            case HARDSIGMOID -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = (value < -4 || value > 4) ? 0 : 0.125;
+                }
+            }
+            case BIPOLARSIGMOID -> {
+                for (int index = 0; index < length; index++) {
+                    double exp = Math.exp(input[index]);
+                    result[index] = 2 * exp / ((exp + 1) * (exp + 1));
+                }
+            }
+            case TANHSIG, TANHAPPR -> {
+                for (int index = 0; index < length; index++) {
+                    double exp = Math.exp(2 * input[index]);
+                    result[index] = 4 * exp / ((exp + 1) * (exp + 1));
+                }
+            }
+            case HARDTANH -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = (value < -2 || value > 2) ? 0 : 0.5;
+                }
+            }
+            case SOFTPLUS, GAUSSIAN -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = -2 * value * Math.exp(-1 * value * value / 2);
+                }
+            }
+            case SOFTSIGN -> {
+                for (int index = 0; index < length; index++) {
+                    double denominator = Math.abs(input[index]) + 1;
+                    result[index] = 1 / (denominator * denominator);
+                }
+            }
+            case RELU -> { for (int index = 0; index < length; index++) result[index] = input[index] < threshold ? alpha : 1; }
+            case RELU_COS -> { for (int index = 0; index < length; index++) result[index] = (input[index] < 0 ? 0 : 1) - Math.sin(input[index]); }
+            case RELU_SIN -> { for (int index = 0; index < length; index++) result[index] = (input[index] < 0 ? 0 : 1) + Math.cos(input[index]); }
+            case ELU -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < threshold ? alpha * Math.exp(value) : 1;
+                }
+            }
+            case SELU -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < threshold ? lambda * alpha * Math.exp(value) : lambda;
+                }
+            }
+            case GELU -> {
+                double scale = Math.sqrt(2 / Math.PI);
+                double normalization = Math.sqrt(2 * Math.PI);
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    double valueCube = value * value * value;
+                    double sech = 1 / Math.cosh((0.044715 * valueCube + value) * scale);
+                    result[index] = 0.5 * (1 + Math.tanh(scale * (value + 0.044715 * valueCube))) + (value * (0.134145 * value * value + 1) * sech * sech) / normalization;
+                }
+            }
+            case SINACT -> {
+                for (int index = 0; index < length; index++) {
+                    double value = input[index];
+                    result[index] = value < -0.5 * Math.PI ? 0 : value > 0.5 * Math.PI ? 0 : Math.cos(value);
+                }
+            }
+            case LOGIT -> { for (int index = 0; index < length; index++) result[index] = -1 / ((input[index] - 1) * input[index]); }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies binary function or its derivative to input arrays.
+     *
+     * @param binaryFunction binary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param first first input array.
+     * @param second second input array.
+     * @param result result array. May be same as first input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    public boolean apply(BinaryFunction binaryFunction, boolean asFunction, double[] first, double[] second, double[] result) {
+        return asFunction ? applyFunction(binaryFunction, first, second, result) : applyDerivative(binaryFunction, first, second, result);
+    }
+
+    /**
+     * Applies binary function to input arrays.
+     *
+     * @param binaryFunction binary function.
+     * @param first first input array.
+     * @param second second input array.
+     * @param result result array.
+     * @return true if kernel supports function otherwise false.
+     */
+    private static boolean applyFunction(BinaryFunction binaryFunction, double[] first, double[] second, double[] result) {
+        int length = first.length;
+        switch (binaryFunction.getType()) {
+            case POW -> { for (int index = 0; index < length; index++) result[index] = Math.pow(first[index], second[index]); }
+            case MAX -> { for (int index = 0; index < length; index++) result[index] = Math.max(first[index], second[index]); }
+            case MIN -> { for (int index = 0; index < length; index++) result[index] = Math.min(first[index], second[index]); }
+            case MEAN_SQUARED_ERROR -> {
+                for (int index = 0; index < length; index++) {
+                    double difference = first[index] - second[index];
+                    result[index] = 0.5 * difference * difference;
+                }
+            }
+            case MEAN_SQUARED_LOGARITHMIC_ERROR -> {
+                for (int index = 0; index < length; index++) {
+                    double difference = Math.log(second[index] + 1) - Math.log(first[index] + 1);
+                    result[index] = difference * difference;
+                }
+            }
+            case MEAN_ABSOLUTE_ERROR -> { for (int index = 0; index < length; index++) result[index] = Math.abs(first[index] - second[index]); }
+            case MEAN_ABSOLUTE_PERCENTAGE_ERROR -> { for (int index = 0; index < length; index++) result[index] = 100 * Math.abs((first[index] - second[index]) / second[index]); }
+            case CROSS_ENTROPY -> { for (int index = 0; index < length; index++) result[index] = -(second[index] * Math.log(first[index])); }
+            case BINARY_CROSS_ENTROPY -> {
+                for (int index = 0; index < length; index++) {
+                    double value = first[index];
+                    double constant = second[index];
+                    result[index] = -(constant * Math.log(value) + (1 - constant) * Math.log(1 - value));
+                }
+            }
+            case KULLBACK_LEIBLER -> { for (int index = 0; index < length; index++) result[index] = (second[index] * Math.log(second[index]) - second[index] * Math.log(first[index])); }
+            case NEGATIVE_LOG_LIKELIHOOD -> { for (int index = 0; index < length; index++) result[index] = -Math.log(first[index]); }
+            case POISSON -> { for (int index = 0; index < length; index++) result[index] = first[index] - second[index] * Math.log(first[index]); }
+            case HINGE -> {
+                double margin = binaryFunction.getHingeMargin();
+                for (int index = 0; index < length; index++) {
+                    double value = margin - second[index] * first[index];
+                    result[index] = value <= 0 ? 0 : value;
+                }
+            }
+            case SQUARED_HINGE -> {
+                for (int index = 0; index < length; index++) {
+                    double value = 1 - second[index] * first[index];
+                    result[index] = value <= 0 ? 0 : value * value;
+                }
+            }
+            case HUBER -> {
+                double delta = binaryFunction.getHuberDelta();
+                for (int index = 0; index < length; index++) {
+                    double difference = first[index] - second[index];
+                    result[index] = Math.abs(difference) <= delta ? 0.5 * difference * difference : delta * Math.abs(difference) - 0.5 * delta * delta;
+                }
+            }
+            case DIRECT_GRADIENT, POLICY_GRADIENT -> Arrays.fill(result, 0, length, 0);
+            case DQN_REG_LOSS -> {
+                for (int index = 0; index < length; index++) {
+                    double difference = first[index] - second[index];
+                    result[index] = 0.1 * first[index] + difference * difference;
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies derivative of binary function to input arrays.
+     *
+     * @param binaryFunction binary function.
+     * @param first first input array.
+     * @param second second input array.
+     * @param result result array.
+     * @return true if kernel supports function otherwise false.
+     */
+    private static boolean applyDerivative(BinaryFunction binaryFunction, double[] first, double[] second, double[] result) {
+        int length = first.length;
+        switch (binaryFunction.getType()) {
+            case POW -> { for (int index = 0; index < length; index++) result[index] = second[index] * Math.pow(first[index], second[index] - 1); }
+            case MAX, MIN -> Arrays.fill(result, 0, length, 1);
+            case MEAN_SQUARED_ERROR -> { for (int index = 0; index < length; index++) result[index] = first[index] - second[index]; }
+            case MEAN_SQUARED_LOGARITHMIC_ERROR -> { for (int index = 0; index < length; index++) result[index] = -2 * (Math.log(second[index] + 1) - Math.log(first[index] + 1)) / (second[index] + 1); }
+            case MEAN_ABSOLUTE_ERROR -> { for (int index = 0; index < length; index++) result[index] = Math.signum(first[index] - second[index]); }
+            case MEAN_ABSOLUTE_PERCENTAGE_ERROR -> {
+                for (int index = 0; index < length; index++) {
+                    double difference = first[index] - second[index];
+                    result[index] = 100 * difference / (Math.abs(second[index]) * Math.abs(difference));
+                }
+            }
+            case CROSS_ENTROPY, KULLBACK_LEIBLER -> { for (int index = 0; index < length; index++) result[index] = -(second[index] / first[index]); }
+            case BINARY_CROSS_ENTROPY -> {
+                for (int index = 0; index < length; index++) {
+                    double value = first[index];
+                    double constant = second[index];
+                    result[index] = -(constant / value - (1 - constant) / (1 - value));
+                }
+            }
+            case NEGATIVE_LOG_LIKELIHOOD -> { for (int index = 0; index < length; index++) result[index] = -1 / first[index]; }
+            case POISSON -> { for (int index = 0; index < length; index++) result[index] = 1 - second[index] / first[index]; }
+            case HINGE -> {
+                double margin = binaryFunction.getHingeMargin();
+                for (int index = 0; index < length; index++) result[index] = margin - second[index] * first[index] <= 0 ? 0 : -second[index];
+            }
+            case SQUARED_HINGE -> {
+                for (int index = 0; index < length; index++) {
+                    double value = 1 - second[index] * first[index];
+                    result[index] = value <= 0 ? 0 : -2 * second[index] * value;
+                }
+            }
+            case HUBER -> {
+                double delta = binaryFunction.getHuberDelta();
+                for (int index = 0; index < length; index++) {
+                    double difference = first[index] - second[index];
+                    result[index] = Math.abs(difference) <= delta ? difference : delta * Math.signum(difference);
+                }
+            }
+            case DIRECT_GRADIENT -> System.arraycopy(second, 0, result, 0, length);
+            case POLICY_GRADIENT -> { for (int index = 0; index < length; index++) result[index] = -Math.log(first[index]) * second[index]; }
+            case DQN_REG_LOSS -> { for (int index = 0; index < length; index++) result[index] = 0.1 + 2 * (first[index] - second[index]); }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -36,7 +36,7 @@ public class SplitMatrixOperation extends AbstractMatrixOperation {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public Matrix apply(Matrix first, int splitAt, boolean splitVertically) throws MatrixException {
-        if (!((first instanceof DMatrix) || (first instanceof SMatrix))) throw new MatrixException("Matrix must be of type DMatrix or SMatrix");
+        if (!((first instanceof DMatrix) || (first instanceof FMatrix) || (first instanceof SMatrix))) throw new MatrixException("Matrix must be of type DMatrix, FMatrix or SMatrix");
         Matrix matrix1;
         Matrix matrix2;
         int rows = getRows();
@@ -5,17 +5,24 @@
 
 package utils.matrix.operation;
 
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunction;
 import utils.matrix.UnaryFunctionType;
 
+import java.io.Serial;
+
 /**
  * Implements matrix unary operation.
  *
  */
 public class UnaryMatrixOperation extends AbstractMatrixOperation {
 
+    @Serial
+    private static final long serialVersionUID = 4922022983188785213L;
+
     /**
      * Matrix unary function.
      *
@@ -102,7 +109,29 @@ public class UnaryMatrixOperation extends AbstractMatrixOperation {
                 return applyMatrixOperation(first, null, first.getNewMatrix(first.getColumns(), first.getRows(), getDepth()));
             }
             default -> {
-                return applyMatrixOperation(first, null, inplace ? first : first.getNewMatrix(getRows(), getColumns(), getDepth()));
+                Matrix result = inplace ? first : first.getNewMatrix(getRows(), getColumns(), getDepth());
+                return applyKernel(first, result) ? result : applyMatrixOperation(first, null, result);
+            }
+        }
+    }
+
+    /**
+     * Applies operation into given result matrix. If result matrix is not defined or operation cannot be applied into given result matrix result is returned as new matrix.
+     *
+     * @param first first matrix.
+     * @param result result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix applyFunction(Matrix first, Matrix result) throws MatrixException {
+        if (result == null) return applyFunction(first, false);
+        switch (unaryFunctionType) {
+            case SOFTMAX, GUMBEL_SOFTMAX, TRANSPOSE -> {
+                return applyFunction(first, false);
+            }
+            default -> {
+                asFunction = true;
+                return applyKernel(first, result) ? result : applyMatrixOperation(first, null, result);
             }
         }
     }
@@ -125,11 +154,76 @@ public class UnaryMatrixOperation extends AbstractMatrixOperation {
                 return outputGradient.transpose();
             }
             default -> {
-                return outputGradient.multiply(applyMatrixOperation(first, null, first.getNewMatrix(getRows(), getColumns(), getDepth())));
+                Matrix result = first.getNewMatrix(getRows(), getColumns(), getDepth());
+                return outputGradient.multiply(applyKernel(first, result) ? result : applyMatrixOperation(first, null, result));
             }
         }
     }
 
+    /**
+     * Calculates inner gradient into given result matrix. If result matrix is not defined or gradient cannot be calculated into given result matrix gradient is returned as new matrix.
+     *
+     * @param first first matrix.
+     * @param outputGradient output gradient.
+     * @param result result matrix.
+     * @return input gradient
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix applyGradient(Matrix first, Matrix outputGradient, Matrix result) throws MatrixException {
+        if (result == null) return applyGradient(first, outputGradient);
+        switch (unaryFunctionType) {
+            case SOFTMAX, GUMBEL_SOFTMAX, TRANSPOSE -> {
+                return applyGradient(first, outputGradient);
+            }
+            default -> {
+                asFunction = false;
+                if (!applyKernel(first, result)) applyMatrixOperation(first, null, result);
+                result.multiplyBy(outputGradient);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Applies function or derivative using array level function kernel.<br>
+     * Kernel is used only for built-in functions and unmasked dense matrices with matching data layout.<br>
+     *
+     * @param first first matrix.
+     * @param result result matrix.
+     * @return true if function kernel was applied otherwise false.
+     */
+    private boolean applyKernel(Matrix first, Matrix result) {
+        if (unaryFunctionType == UnaryFunctionType.CUSTOM) return false;
+        FunctionKernel functionKernel = FunctionKernels.getFunctionKernel();
+        if (functionKernel == null || first.isTransposed() != result.isTransposed()) return false;
+        if (first instanceof FMatrix firstMatrix && result instanceof FMatrix resultMatrix) return applyFloatKernel(functionKernel, firstMatrix, resultMatrix);
+        if (!(first instanceof DMatrix firstMatrix) || !(result instanceof DMatrix resultMatrix)) return false;
+        double[] input = firstMatrix.getData();
+        double[] output = resultMatrix.getData();
+        int size = getRows() * getColumns() * getDepth();
+        if (input == null || output == null || input.length != size || output.length != size) return false;
+        return functionKernel.apply(unaryFunction, asFunction, input, output);
+    }
+
+    /**
+     * Applies function or derivative to single precision matrices using array level function kernel via double precision buffers.
+     *
+     * @param functionKernel function kernel.
+     * @param first first matrix.
+     * @param result result matrix.
+     * @return true if function kernel was applied otherwise false.
+     */
+    private boolean applyFloatKernel(FunctionKernel functionKernel, FMatrix first, FMatrix result) {
+        float[] input = first.getData();
+        float[] output = result.getData();
+        int size = getRows() * getColumns() * getDepth();
+        if (input == null || output == null || input.length != size || output.length != size) return false;
+        double[] buffer = FunctionKernels.widen(input, size, 0);
+        if (!functionKernel.apply(unaryFunction, asFunction, buffer, buffer)) return false;
+        FunctionKernels.narrow(buffer, output);
+        return true;
+    }
+
     /**
      * Applies operation.
      *
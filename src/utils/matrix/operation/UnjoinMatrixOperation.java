@@ -9,12 +9,17 @@ import utils.matrix.DMatrix;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
+
 /**
  * Implements matrix unjoin operation.
  *
  */
 public class UnjoinMatrixOperation extends AbstractMatrixOperation {
 
+    @Serial
+    private static final long serialVersionUID = -5591629291174841260L;
+
     /**
      * First matrix.
      *
@@ -72,13 +77,14 @@ public class UnjoinMatrixOperation extends AbstractMatrixOperation {
      * Calculates gradient.
      *
      * @param outputGradient output gradient.
+     * @param first first matrix.
      * @return input gradient
      */
-    public Matrix applyGradient(Matrix outputGradient) {
+    public Matrix applyGradient(Matrix outputGradient, Matrix first) {
         final int rows = getRows();
         final int columns = getColumns();
         final int totalDepth = getDepth();
-        Matrix result = new DMatrix(rows, columns, totalDepth);
+        Matrix result = new DMatrix(first.getRows(), first.getColumns(), first.getDepth());
         for (int row = 0; row < rows; row++) {
             for (int column = 0; column < columns; column++) {
                 for (int depth = 0; depth < totalDepth; depth++) {
@@ -0,0 +1,285 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.matrix.operation;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import utils.matrix.BinaryFunction;
+import utils.matrix.UnaryFunction;
+
+/**
+ * Implements SIMD array level kernels of built-in unary and binary functions using JDK Vector API (jdk.incubator.vector).<br>
+ * Requires that module jdk.incubator.vector is added at runtime (--add-modules jdk.incubator.vector).<br>
+ * Functions that do not have vector implementation are delegated to scalar function kernel.<br>
+ *
+ */
+public class VectorFunctionKernel implements FunctionKernel {
+
+    /**
+     * Preferred vector species of platform.
+     *
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Defines interface for lane-wise unary vector function.
+     *
+     */
+    private interface VectorUnaryFunction {
+
+        /**
+         * Applies function to vector.
+         *
+         * @param value input vector.
+         * @return result vector.
+         */
+        DoubleVector apply(DoubleVector value);
+
+    }
+
+    /**
+     * Defines interface for lane-wise binary vector function.
+     *
+     */
+    private interface VectorBinaryFunction {
+
+        /**
+         * Applies function to vectors.
+         *
+         * @param value first input vector.
+         * @param constant second input vector.
+         * @return result vector.
+         */
+        DoubleVector apply(DoubleVector value, DoubleVector constant);
+
+    }
+
+    /**
+     * Scalar function kernel used for functions without vector implementation.
+     *
+     */
+    private final ScalarFunctionKernel scalarFunctionKernel = new ScalarFunctionKernel();
+
+    /**
+     * Default constructor for vector function kernel.
+     *
+     */
+    public VectorFunctionKernel() {
+    }
+
+    /**
+     * Applies unary function or its derivative to input array.
+     *
+     * @param unaryFunction unary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param input input array.
+     * @param result result array. May be same as input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    public boolean apply(UnaryFunction unaryFunction, boolean asFunction, double[] input, double[] result) {
+        VectorUnaryFunction vectorUnaryFunction = asFunction ? getFunction(unaryFunction) : getDerivative(unaryFunction);
+        if (vectorUnaryFunction == null) return scalarFunctionKernel.apply(unaryFunction, asFunction, input, result);
+        int length = input.length;
+        int upperBound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < upperBound; index += SPECIES.length()) {
+            vectorUnaryFunction.apply(DoubleVector.fromArray(SPECIES, input, index)).intoArray(result, index);
+        }
+        if (index < length) {
+            VectorMask<Double> mask = SPECIES.indexInRange(index, length);
+            vectorUnaryFunction.apply(DoubleVector.fromArray(SPECIES, input, index, mask)).intoArray(result, index, mask);
+        }
+        return true;
+    }
+
+    /**
+     * Returns vector implementation of unary function.
+     *
+     * @param unaryFunction unary function.
+     * @return vector implementation of unary function or null if function does not have vector implementation.
+     */
+    private static VectorUnaryFunction getFunction(UnaryFunction unaryFunction) {
+        double threshold = unaryFunction.getThreshold();
+        double alpha = unaryFunction.getAlpha();
+        double lambda = unaryFunction.getLambda();
+        return switch (unaryFunction.getType()) {
+            case ABS -> DoubleVector::abs;
+            case EXP -> value -> value.lanewise(VectorOperators.EXP);
+            case LOG -> value -> value.lanewise(VectorOperators.LOG);
+            case SQRT -> DoubleVector::sqrt;
+            case INV -> value -> value.broadcast(1).div(value);
+            case COS -> value -> value.lanewise(VectorOperators.COS);
+            case SIN -> value -> value.lanewise(VectorOperators.SIN);
+            case TANH -> value -> value.lanewise(VectorOperators.TANH);
+            case STANH -> value -> value.lanewise(VectorOperators.TANH).add(1).div(2);
+            case SIGMOID -> value -> value.broadcast(1).div(value.neg().lanewise(VectorOperators.EXP).add(1));
+            case SWISH -> value -> value.div(value.neg().lanewise(VectorOperators.EXP).add(1));
+            case BIPOLARSIGMOID -> value -> value.broadcast(2).div(value.neg().lanewise(VectorOperators.EXP).add(1)).sub(1);
+            case TANHSIG -> value -> value.broadcast(2).div(value.mul(-2).lanewise(VectorOperators.EXP).add(1)).sub(1);
+            case TANHAPPR -> value -> {
+                DoubleVector exp = value.mul(2).lanewise(VectorOperators.EXP);
+                return exp.sub(1).div(exp.add(1));
+            };
+            case HARDSIGMOID -> value -> value.mul(0.125).add(0.5).max(0).min(1);
+            case HARDTANH -> value -> value.mul(0.5).max(-1).min(1);
+            case SOFTPLUS -> value -> value.lanewise(VectorOperators.EXP).add(1).lanewise(VectorOperators.LOG);
+            case SOFTSIGN -> value -> value.div(value.abs().add(1));
+            case RELU -> value -> value.blend(value.mul(alpha), value.compare(VectorOperators.LT, threshold));
+            case ELU -> value -> value.blend(value.lanewise(VectorOperators.EXP).sub(1).mul(alpha), value.compare(VectorOperators.LT, threshold));
+            case SELU -> value -> value.mul(lambda).blend(value.lanewise(VectorOperators.EXP).sub(1).mul(lambda * alpha), value.compare(VectorOperators.LT, threshold));
+            case GELU -> {
+                double scale = Math.sqrt(2 / Math.PI);
+                yield value -> value.mul(value).mul(value).mul(0.044715).add(value).mul(scale).lanewise(VectorOperators.TANH).add(1).mul(value).mul(0.5);
+            }
+            case GAUSSIAN -> value -> value.mul(value).mul(-0.5).lanewise(VectorOperators.EXP);
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns vector implementation of derivative of unary function.
+     *
+     * @param unaryFunction unary function.
+     * @return vector implementation of derivative of unary function or null if derivative does not have vector implementation.
+     */
+    private static VectorUnaryFunction getDerivative(UnaryFunction unaryFunction) {
+        double threshold = unaryFunction.getThreshold();
+        double alpha = unaryFunction.getAlpha();
+        double lambda = unaryFunction.getLambda();
+        return switch (unaryFunction.getType()) {
+            case EXP -> value -> value.lanewise(VectorOperators.EXP);
+            case LOG -> value -> value.broadcast(1).div(value);
+            case SQRT -> value -> value.broadcast(1).div(value.sqrt().mul(2));
+            case INV -> value -> value.broadcast(-1).div(value.mul(value));
+            case COS -> value -> value.lanewise(VectorOperators.SIN).neg();
+            case SIN -> value -> value.lanewise(VectorOperators.COS);
+            case TANH -> value -> {
+                DoubleVector tanh = value.lanewise(VectorOperators.TANH);
+                return tanh.mul(tanh).neg().add(1);
+            };
+            case SIGMOID -> value -> {
+                DoubleVector exp = value.lanewise(VectorOperators.EXP);
+                DoubleVector denominator = exp.add(1);
+                return exp.div(denominator.mul(denominator));
+            };
+            case SWISH -> value -> {
+                DoubleVector exp = value.lanewise(VectorOperators.EXP);
+                DoubleVector denominator = exp.add(1);
+                return exp.mul(exp.add(value).add(1)).div(denominator.mul(denominator));
+            };
+            case BIPOLARSIGMOID -> value -> {
+                DoubleVector exp = value.lanewise(VectorOperators.EXP);
+                DoubleVector denominator = exp.add(1);
+                return exp.mul(2).div(denominator.mul(denominator));
+            };
+            case TANHSIG, TANHAPPR -> value -> {
+                DoubleVector exp = value.mul(2).lanewise(VectorOperators.EXP);
+                DoubleVector denominator = exp.add(1);
+                return exp.mul(4).div(denominator.mul(denominator));
+            };
+            case HARDSIGMOID -> value -> value.broadcast(0.125).blend(0, value.compare(VectorOperators.LT, -4).or(value.compare(VectorOperators.GT, 4)));
+            case HARDTANH -> value -> value.broadcast(0.5).blend(0, value.compare(VectorOperators.LT, -2).or(value.compare(VectorOperators.GT, 2)));
+            case SOFTPLUS, GAUSSIAN -> value -> value.mul(-2).mul(value.mul(value).mul(-0.5).lanewise(VectorOperators.EXP));
+            case SOFTSIGN -> value -> {
+                DoubleVector denominator = value.abs().add(1);
+                return value.broadcast(1).div(denominator.mul(denominator));
+            };
+            case RELU -> value -> value.broadcast(1).blend(alpha, value.compare(VectorOperators.LT, threshold));
+            case ELU -> value -> value.broadcast(1).blend(value.lanewise(VectorOperators.EXP).mul(alpha), value.compare(VectorOperators.LT, threshold));
+            case SELU -> value -> value.broadcast(lambda).blend(value.lanewise(VectorOperators.EXP).mul(lambda * alpha), value.compare(VectorOperators.LT, threshold));
+            default -> null;
+        };
+    }
+
+    /**
+     * Applies binary function or its derivative to input arrays.
+     *
+     * @param binaryFunction binary function.
+     * @param asFunction if true function is applied otherwise derivative of function.
+     * @param first first input array.
+     * @param second second input array.
+     * @param result result array. May be same as first input array.
+     * @return true if kernel supports function otherwise false.
+     */
+    public boolean apply(BinaryFunction binaryFunction, boolean asFunction, double[] first, double[] second, double[] result) {
+        VectorBinaryFunction vectorBinaryFunction = asFunction ? getFunction(binaryFunction) : getDerivative(binaryFunction);
+        if (vectorBinaryFunction == null) return scalarFunctionKernel.apply(binaryFunction, asFunction, first, second, result);
+        int length = first.length;
+        int upperBound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < upperBound; index += SPECIES.length()) {
+            vectorBinaryFunction.apply(DoubleVector.fromArray(SPECIES, first, index), DoubleVector.fromArray(SPECIES, second, index)).intoArray(result, index);
+        }
+        if (index < length) {
+            VectorMask<Double> mask = SPECIES.indexInRange(index, length);
+            vectorBinaryFunction.apply(DoubleVector.fromArray(SPECIES, first, index, mask), DoubleVector.fromArray(SPECIES, second, index, mask)).intoArray(result, index, mask);
+        }
+        return true;
+    }
+
+    /**
+     * Returns vector implementation of binary function.
+     *
+     * @param binaryFunction binary function.
+     * @return vector implementation of binary function or null if function does not have vector implementation.
+     */
+    private static VectorBinaryFunction getFunction(BinaryFunction binaryFunction) {
+        return switch (binaryFunction.getType()) {
+            case MAX -> DoubleVector::max;
+            case MIN -> DoubleVector::min;
+            case MEAN_SQUARED_ERROR -> (value, constant) -> {
+                DoubleVector difference = value.sub(constant);
+                return difference.mul(difference).mul(0.5);
+            };
+            case MEAN_ABSOLUTE_ERROR -> (value, constant) -> value.sub(constant).abs();
+            case CROSS_ENTROPY -> (value, constant) -> constant.mul(value.lanewise(VectorOperators.LOG)).neg();
+            case BINARY_CROSS_ENTROPY -> (value, constant) -> constant.mul(value.lanewise(VectorOperators.LOG)).add(constant.neg().add(1).mul(value.neg().add(1).lanewise(VectorOperators.LOG))).neg();
+            case NEGATIVE_LOG_LIKELIHOOD -> (value, constant) -> value.lanewise(VectorOperators.LOG).neg();
+            case POISSON -> (value, constant) -> value.sub(constant.mul(value.lanewise(VectorOperators.LOG)));
+            case HUBER -> {
+                double delta = binaryFunction.getHuberDelta();
+                yield (value, constant) -> {
+                    DoubleVector difference = value.sub(constant);
+                    DoubleVector absoluteDifference = difference.abs();
+                    return absoluteDifference.mul(delta).sub(0.5 * delta * delta).blend(difference.mul(difference).mul(0.5), absoluteDifference.compare(VectorOperators.LE, delta));
+                };
+            }
+            case DQN_REG_LOSS -> (value, constant) -> {
+                DoubleVector difference = value.sub(constant);
+                return value.mul(0.1).add(difference.mul(difference));
+            };
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns vector implementation of derivative of binary function.
+     *
+     * @param binaryFunction binary function.
+     * @return vector implementation of derivative of binary function or null if derivative does not have vector implementation.
+     */
+    private static VectorBinaryFunction getDerivative(BinaryFunction binaryFunction) {
+        return switch (binaryFunction.getType()) {
+            case MEAN_SQUARED_ERROR -> DoubleVector::sub;
+            case CROSS_ENTROPY, KULLBACK_LEIBLER -> (value, constant) -> constant.div(value).neg();
+            case BINARY_CROSS_ENTROPY -> (value, constant) -> constant.div(value).sub(constant.neg().add(1).div(value.neg().add(1))).neg();
+            case NEGATIVE_LOG_LIKELIHOOD -> (value, constant) -> value.broadcast(-1).div(value);
+            case POISSON -> (value, constant) -> constant.div(value).neg().add(1);
+            case HUBER -> {
+                double delta = binaryFunction.getHuberDelta();
+                yield (value, constant) -> {
+                    DoubleVector difference = value.sub(constant);
+                    return difference.broadcast(delta).blend(-delta, difference.compare(VectorOperators.LT, 0)).blend(difference, difference.abs().compare(VectorOperators.LE, delta));
+                };
+            }
+            case DQN_REG_LOSS -> (value, constant) -> value.sub(constant).mul(2).add(0.1);
+            default -> null;
+        };
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure;
+
+import utils.configurable.DynamicParamException;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.procedure.expression.Expression;
+import utils.procedure.node.BufferArena;
+import utils.procedure.node.Node;
+
+import java.util.*;
+
+/**
+ * Implements inference plan of procedure.<br>
+ * Inference plan is compiled from expression chain of procedure and it is used when procedure is not active i.e. when neural network is predicting.<br>
+ * Expressions are calculated one sample at a time (or once for column stacked batch) and matrix of each node is released right after its last consuming expression has been calculated.
+ * Released matrices are returned to buffer arena running in pooled mode and handed out again to following expressions.
+ * Hence memory needed for prediction is bounded by nodes that are simultaneously live instead of all nodes times number of samples.<br>
+ * Matrix of node feeding dependent node is retained until following sample has been calculated.<br>
+ * Expressions precalculated for all samples ahead of inference plan are left out of plan and their results are treated as entry nodes of plan.<br>
+ *
+ */
+class InferencePlan {
+
+    /**
+     * Expressions in order of calculation.
+     *
+     */
+    private final ArrayList<Expression> expressions = new ArrayList<>();
+
+    /**
+     * Nodes released after expression at same position has been calculated.
+     *
+     */
+    private final ArrayList<ArrayList<Node>> releasedNodes = new ArrayList<>();
+
+    /**
+     * Nodes calculated inside expression at same position. Released right after expression has been calculated.
+     *
+     */
+    private final ArrayList<List<Node>> intermediateNodes = new ArrayList<>();
+
+    /**
+     * Input, dependent and precalculated nodes whose matrices are set prior calculation of sample.
+     *
+     */
+    private final ArrayList<Node> entryNodes = new ArrayList<>();
+
+    /**
+     * Output node of procedure.
+     *
+     */
+    private final Node outputNode;
+
+    /**
+     * Nodes feeding dependent nodes of following sample.
+     *
+     */
+    private final ArrayList<Node> retainedNodes = new ArrayList<>();
+
+    /**
+     * If true output node feeds dependent node and its matrix is released together with other retained nodes.
+     *
+     */
+    private final boolean isOutputRetained;
+
+    /**
+     * Buffer arena to which released matrices are returned. May be null.
+     *
+     */
+    private final BufferArena bufferArena;
+
+    /**
+     * Number of nodes referring to each live matrix. Matrix is shared by several nodes for example when expression passes its argument through as its result.
+     *
+     */
+    private final IdentityHashMap<Matrix, Integer> references = new IdentityHashMap<>();
+
+    /**
+     * Sample index for which matrices of retained nodes are kept.
+     *
+     */
+    private Integer retainedSampleIndex = null;
+
+    /**
+     * Constructor for inference plan.
+     *
+     * @param expressions expressions of plan in order of calculation.
+     * @param inputNodes input nodes of procedure.
+     * @param precalculatedNodes nodes calculated for all samples ahead of plan.
+     * @param outputNode output node of procedure.
+     * @param dependentNodes dependent nodes of procedure.
+     * @param bufferArena buffer arena of procedure or null if buffer arena is not used.
+     */
+    InferencePlan(List<Expression> expressions, HashMap<Integer, Node> inputNodes, List<Node> precalculatedNodes, Node outputNode, HashSet<Node> dependentNodes, BufferArena bufferArena) {
+        this.outputNode = outputNode;
+        this.bufferArena = bufferArena;
+
+        entryNodes.addAll(inputNodes.values());
+        entryNodes.addAll(precalculatedNodes);
+        for (Node dependentNode : dependentNodes) {
+            if (!entryNodes.contains(dependentNode)) entryNodes.add(dependentNode);
+            if (dependentNode.getFromResultNode() != null && !retainedNodes.contains(dependentNode.getFromResultNode())) retainedNodes.add(dependentNode.getFromResultNode());
+        }
+
+        isOutputRetained = retainedNodes.contains(outputNode);
+
+        HashSet<Node> resultNodes = new HashSet<>();
+        HashMap<Node, Integer> lastConsumers = new HashMap<>();
+        for (Expression expression : expressions) {
+            int position = this.expressions.size();
+            this.expressions.add(expression);
+            releasedNodes.add(new ArrayList<>());
+            intermediateNodes.add(expression.getIntermediateNodes());
+            for (Node argument : expression.getArguments()) lastConsumers.put(argument, position);
+            resultNodes.add(expression.getResult());
+            lastConsumers.putIfAbsent(expression.getResult(), position);
+        }
+
+        for (Map.Entry<Node, Integer> entry : lastConsumers.entrySet()) {
+            Node node = entry.getKey();
+            boolean isReleasable = node.isMultiIndex() && node != outputNode && !retainedNodes.contains(node) && (resultNodes.contains(node) || entryNodes.contains(node));
+            if (isReleasable) releasedNodes.get(entry.getValue()).add(node);
+        }
+    }
+
+    /**
+     * Resets inference plan prior calculation of new set of samples.
+     *
+     */
+    void reset() {
+        references.clear();
+        retainedSampleIndex = null;
+    }
+
+    /**
+     * Calculates expressions for sample. Matrices of input and dependent nodes must be set prior calculation.<br>
+     * Matrix of output node remains available until sample is released.<br>
+     *
+     * @param sampleIndex sample index.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void calculateExpression(int sampleIndex) throws MatrixException, DynamicParamException {
+        for (int index = 0; index < entryNodes.size(); index++) addReference(entryNodes.get(index).getMatrix(sampleIndex));
+        for (int position = 0; position < expressions.size(); position++) {
+            Expression expression = expressions.get(position);
+            expression.calculateExpression(sampleIndex);
+            addReference(expression.getResult().getMatrix(sampleIndex));
+            List<Node> intermediates = intermediateNodes.get(position);
+            for (int index = 0; index < intermediates.size(); index++) {
+                addReference(intermediates.get(index).getMatrix(sampleIndex));
+                release(intermediates.get(index), sampleIndex);
+            }
+            List<Node> released = releasedNodes.get(position);
+            for (int index = 0; index < released.size(); index++) release(released.get(index), sampleIndex);
+        }
+    }
+
+    /**
+     * Releases matrix of output node for sample and matrices of retained nodes for previous sample.<br>
+     * Must be called after output matrix has been taken out and dependencies for sample have been updated.<br>
+     *
+     * @param sampleIndex sample index.
+     */
+    void releaseSample(int sampleIndex) {
+        if (!isOutputRetained) release(outputNode, sampleIndex);
+        if (retainedSampleIndex != null) for (int index = 0; index < retainedNodes.size(); index++) release(retainedNodes.get(index), retainedSampleIndex);
+        retainedSampleIndex = sampleIndex;
+    }
+
+    /**
+     * Calculates expressions as single column stacked batch. Batch matrices of input nodes must be set prior calculation.<br>
+     * Batch matrix of output node remains available until batch is released.<br>
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void calculateExpressionBatch(int batchSize) throws MatrixException, DynamicParamException {
+        for (Node entryNode : entryNodes) addReference(entryNode.getBatchMatrix());
+        for (int position = 0; position < expressions.size(); position++) {
+            Expression expression = expressions.get(position);
+            expression.calculateExpressionBatch(batchSize);
+            addReference(expression.getResult().getBatchMatrix());
+            for (Node node : intermediateNodes.get(position)) {
+                addReference(node.getBatchMatrix());
+                releaseBatch(node);
+            }
+            for (Node node : releasedNodes.get(position)) releaseBatch(node);
+        }
+    }
+
+    /**
+     * Releases batch matrix of output node.<br>
+     * Must be called after output samples have been taken out of batch matrix.<br>
+     *
+     */
+    void releaseBatch() {
+        releaseBatch(outputNode);
+    }
+
+    /**
+     * Adds reference to matrix.
+     *
+     * @param matrix matrix.
+     */
+    private void addReference(Matrix matrix) {
+        if (matrix != null) references.merge(matrix, 1, Integer::sum);
+    }
+
+    /**
+     * Removes reference to matrix and returns matrix to buffer arena once it is no longer referred by any node.
+     *
+     * @param matrix matrix.
+     */
+    private void removeReference(Matrix matrix) {
+        if (matrix == null) return;
+        Integer count = references.get(matrix);
+        if (count != null && count > 1) {
+            references.put(matrix, count - 1);
+            return;
+        }
+        references.remove(matrix);
+        if (bufferArena != null) bufferArena.release(matrix);
+    }
+
+    /**
+     * Releases matrix of node for sample.
+     *
+     * @param node node.
+     * @param sampleIndex sample index.
+     */
+    private void release(Node node, int sampleIndex) {
+        Matrix matrix = node.getMatrix(sampleIndex);
+        if (matrix == null) return;
+        node.removeMatrix(sampleIndex);
+        removeReference(matrix);
+    }
+
+    /**
+     * Releases batch matrix of node.
+     *
+     * @param node node.
+     */
+    private void releaseBatch(Node node) {
+        Matrix batchMatrix = node.getBatchMatrix();
+        if (batchMatrix == null) return;
+        node.setBatchMatrix(null);
+        removeReference(batchMatrix);
+    }
+
+}
@@ -1,528 +1,1460 @@
-/*
- * SANNet Neural Network Framework
- * Copyright (C) 2018 - 2023 Simo Aaltonen
- */
-
-package utils.procedure;
-
-import core.optimization.Optimizer;
-import core.optimization.OptimizerFactory;
-import utils.configurable.DynamicParamException;
-import utils.matrix.AbstractMatrix;
-import utils.sampling.Sequence;
-import utils.matrix.Matrix;
-import utils.matrix.MatrixException;
-import utils.procedure.expression.Expression;
-import utils.procedure.node.Node;
-
-import java.io.Serial;
-import java.io.Serializable;
-import java.util.*;
-
-/**
- * Implements computable procedure having chain of forward computable expressions and backward computable gradient expressions (based on automatic gradient).<br>
- *
- */
-public class Procedure implements Serializable {
-
-    @Serial
-    private static final long serialVersionUID = 9207418704022664014L;
-
-    /**
-     * Input nodes.
-     *
-     */
-    private final HashMap<Integer, Node> inputNodes = new HashMap<>();
-
-    /**
-     * Output nodes.
-     *
-     */
-    private final Node outputNode;
-
-    /**
-     * Nodes of procedure.
-     *
-     */
-    private final HashSet<Node> nodes = new HashSet<>();
-
-    /**
-     * Chain of expressions.
-     *
-     */
-    private final Expression expressionChain;
-
-    /**
-     * Chain of gradients.
-     *
-     */
-    private final Expression gradientChain;
-
-    /**
-     * Dependent nodes.
-     *
-     */
-    private final HashSet<Node> dependentNodes = new HashSet<>();
-
-    /**
-     * If true input is reversed otherwise not.
-     *
-     */
-    private final boolean reversedInput;
-
-    /**
-     * If true inputs are joined otherwise not.
-     *
-     */
-    private final boolean joinedInput;
-
-    /**
-     * Parameter matrices.
-     *
-     */
-    private final HashSet<Matrix> parameterMatrices;
-
-    /**
-     * Optimizer for procedure.
-     *
-     */
-    protected Optimizer optimizer = OptimizerFactory.createDefault();
-
-    /**
-     * Constructor for procedure.
-     *
-     * @param inputNodes input nodes for procedure.
-     * @param outputNode output node for procedure.
-     * @param nodes all nodes for procedure.
-     * @param expressionChain chain of expressions describing procedure.
-     * @param gradientChain chain of gradients for procedure.
-     * @param dependentNodes dependent nodes.
-     * @param parameterMatrices parameter matrices.
-     * @param stopGradientMatrices matrices for which gradient is not updated.
-     * @param reversedInput reversed input.
-     * @param joinedInput if true inputs are joined otherwise not.
-     * @throws MatrixException throws exception if node does not contain all constant and parameter matrices.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    public Procedure(HashMap<Integer, Node> inputNodes, Node outputNode, HashSet<Node> nodes, Expression expressionChain, Expression gradientChain, HashSet<Node> dependentNodes, HashSet<Matrix> parameterMatrices, HashSet<Matrix> stopGradientMatrices, boolean reversedInput, boolean joinedInput) throws MatrixException, DynamicParamException {
-        this.inputNodes.putAll(inputNodes);
-        this.outputNode = outputNode;
-        this.nodes.addAll(nodes);
-        this.expressionChain = expressionChain;
-        this.gradientChain = gradientChain;
-        this.dependentNodes.addAll(dependentNodes);
-        this.parameterMatrices = parameterMatrices;
-        if (parameterMatrices != null) checkParameterMatrices();
-        if (stopGradientMatrices != null) setStopGradient(stopGradientMatrices, true);
-        this.reversedInput = reversedInput;
-        this.joinedInput = joinedInput;
-    }
-
-    /**
-     * Sets reset matrix dependencies flag.
-     *
-     * @param resetDependencies if true matrix dependencies are reset otherwise false.
-     */
-    public void resetDependencies(boolean resetDependencies) {
-        for (Node dependentNode : dependentNodes) dependentNode.resetDependencies(resetDependencies);
-    }
-
-    /**
-     * Resets data for every index in nodes of procedure.
-     *
-     * @throws MatrixException throws exception is dimensions of matrices are not matching or any matrix is scalar type.
-     */
-    public void reset() throws MatrixException {
-        for (Node node : nodes) node.reset();
-    }
-
-    /**
-     * Sets is procedure is active.
-     *
-     * @param isActive is true procedure is active otherwise non-active.
-     */
-    public void setActive(boolean isActive) {
-        expressionChain.setActive(isActive);
-        gradientChain.setActive(isActive);
-    }
-
-    /**
-     * Returns node corresponding specific matrix.
-     *
-     * @param matrix matrix.
-     * @return node corresponding specific matrix
-     */
-    public Node getNode(Matrix matrix) {
-        for (Node node : nodes) if (node.contains(matrix)) return node;
-        return null;
-    }
-
-    /**
-     * Returns input nodes.
-     *
-     * @return input nodes.
-     */
-    public HashMap<Integer, Node> getInputNodes() {
-        return inputNodes;
-    }
-
-    /**
-     * Returns output nodes.
-     *
-     * @return output nodes.
-     */
-    public Node getOutputNode() {
-        return outputNode;
-    }
-
-    /**
-     * Checks if procedure has dependencies between output and input nodes.
-     *
-     * @return returns true if there are dependencies otherwise returns false.
-     */
-    public boolean hasDependencies() {
-        return !dependentNodes.isEmpty();
-    }
-
-    /**
-     * Calculates chain of forward expressions.
-     *
-     * @param inputSequences input sequences.
-     * @param outputSequence output sequence.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    public void calculateExpression(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
-        expressionChain.reset();
-        if (joinedInput) calculateExpressionForMultipleSequences(Sequence.join(inputSequences, true), outputSequence);
-        else calculateExpressionForMultipleSequences(inputSequences, outputSequence);
-    }
-
-    /**
-     * Calculates chain of forward expressions.
-     *
-     * @param inputSequences input sequences.
-     * @param outputSequence output sequence.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateExpressionForMultipleSequences(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
-        if (hasDependencies()) calculateExpressionPerSample(inputSequences, outputSequence);
-        else calculateExpressionPerStep(inputSequences, outputSequence);
-    }
-
-    /**
-     * Calculates chain of forward expressions sample by sample.
-     *
-     * @param inputSequences input sequences.
-     * @param outputSequence output sequence.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateExpressionPerSample(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
-        Sequence inputSequence = inputSequences.get(inputSequences.firstKey());
-
-        int firstKey = reversedInput ? inputSequence.lastKey() : inputSequence.firstKey();
-        Set<Integer> inputKeySet = reversedInput ? inputSequence.descendingKeySet() : inputSequence.keySet();
-
-        int previousSampleIndex = -1;
-        for (Integer sampleIndex : inputKeySet) {
-            for (Node dependentNode : dependentNodes) dependentNode.updateMatrixDependency(sampleIndex, previousSampleIndex);
-
-            setInputSamples(inputSequences, inputSequence, sampleIndex);
-
-            expressionChain.calculateExpressionStep(sampleIndex, firstKey);
-
-            outputSequence.put(sampleIndex, getOutputNode().getMatrix(sampleIndex));
-
-            for (Node dependentNode : dependentNodes) dependentNode.updateDependencies(sampleIndex);
-
-            previousSampleIndex = sampleIndex;
-        }
-
-    }
-
-    /**
-     * Calculates chain of forward expressions for all samples.
-     *
-     * @param inputSequences input sequences.
-     * @param outputSequence output sequence.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateExpressionPerStep(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
-        Sequence inputSequence = inputSequences.get(inputSequences.firstKey());
-
-        Set<Integer> inputKeySet = reversedInput ? inputSequence.descendingKeySet() : inputSequence.keySet();
-
-        for (Integer sampleIndex : inputKeySet) setInputSamples(inputSequences, inputSequence, sampleIndex);
-
-        expressionChain.calculateExpressionStep(inputKeySet);
-
-        for (Integer sampleIndex : inputKeySet) outputSequence.put(sampleIndex, getOutputNode().getMatrix(sampleIndex));
-    }
-
-    /**
-     * Sets input samples for expression chain.
-     *
-     * @param inputSequences input sequences
-     * @param inputSequence input sequence.
-     * @param sampleIndex sample index.
-     * @throws MatrixException throws exception if calculation fails.
-     */
-    private void setInputSamples(TreeMap<Integer, Sequence> inputSequences, Sequence inputSequence, int sampleIndex) throws MatrixException {
-        if (inputSequences.size() == 1) {
-            getInputNodes().get(0).setMatrix(sampleIndex, inputSequence.get(sampleIndex));
-        }
-        else {
-            for (Map.Entry<Integer, Sequence> entry : inputSequences.entrySet()) {
-                getInputNodes().get(entry.getKey()).setMatrix(sampleIndex, entry.getValue().get(sampleIndex));
-            }
-        }
-    }
-
-    /**
-     * Calculates chain of forward expressions.
-     *
-     * @param inputMatrix input matrices.
-     * @return output matrix.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    public Matrix calculateExpression(Matrix inputMatrix) throws MatrixException, DynamicParamException {
-        getInputNodes().get(0).setMatrix(0, inputMatrix);
-        expressionChain.calculateExpressionStep(0, 0);
-        return getOutputNode().getMatrix(0);
-    }
-
-    /**
-     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
-     *
-     * @param outputGradientSequence output gradients.
-     * @param inputGradientSequences input gradients.
-     * @param steps number of steps calculated backwards.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    public void calculateGradient(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int steps) throws MatrixException, DynamicParamException {
-        if (joinedInput) {
-            TreeMap <Integer, Sequence> joinedInputGradientSequences = new TreeMap<>() {{ put(0, new Sequence()); }};
-            calculateGradientForMultipleInputs(outputGradientSequence, joinedInputGradientSequences, steps);
-            Sequence sequence = joinedInputGradientSequences.get(0);
-            for (Map.Entry<Integer, Matrix> entry : sequence.entrySet()) {
-                Matrix[] matrices = AbstractMatrix.unjoin(entry.getValue());
-                for (int index = 0; index < matrices.length; index++) {
-                    inputGradientSequences.get(index).put(entry.getKey(), matrices[index]);
-                }
-            }
-        }
-        else calculateGradientForMultipleInputs(outputGradientSequence, inputGradientSequences, steps);
-    }
-
-    /**
-     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
-     *
-     * @param outputGradientSequence output gradient sequence.
-     * @param inputGradientSequences input gradient sequences.
-     * @param steps number of steps calculated backwards.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateGradientForMultipleInputs(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int steps) throws MatrixException, DynamicParamException {
-        if (hasDependencies()) calculateGradientPerSample(outputGradientSequence, inputGradientSequences, steps);
-        else calculateGradientPerStep(outputGradientSequence, inputGradientSequences, steps);
-    }
-
-    /**
-     * Calculates chain of backward expressions for multiple inputs per gradient expression step per sample.
-     *
-     * @param outputGradientSequence output gradient sequence.
-     * @param inputGradientSequences input gradient sequences.
-     * @param numberOfGradientSteps number of steps calculated backwards.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateGradientPerSample(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int numberOfGradientSteps) throws MatrixException, DynamicParamException {
-        int lastKey = reversedInput ? outputGradientSequence.lastKey() : outputGradientSequence.firstKey();
-
-        int previousSampleIndex = -1;
-        int gradientStepCount = 0;
-        for (Map.Entry<Integer, Matrix> entry : reversedInput ? outputGradientSequence.entrySet() : outputGradientSequence.descendingEntrySet()) {
-            int sampleIndex = entry.getKey();
-
-            for (Node dependentNode : dependentNodes) dependentNode.updateGradientDependency(sampleIndex, previousSampleIndex);
-
-            getOutputNode().setGradient(sampleIndex, entry.getValue());
-
-            gradientChain.calculateGradientStep(sampleIndex, lastKey);
-
-            for (Map.Entry<Integer, Node> nodeEntry : inputNodes.entrySet()) {
-                inputGradientSequences.get(nodeEntry.getKey()).increment(sampleIndex, nodeEntry.getValue().getGradient(sampleIndex));
-            }
-
-            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
-
-            previousSampleIndex = sampleIndex;
-        }
-
-    }
-
-    /**
-     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
-     *
-     * @param outputGradientSequence output gradient sequence.
-     * @param inputGradientSequences input gradient sequences.
-     * @param numberOfGradientSteps number of steps calculated backwards.
-     * @throws MatrixException throws exception if calculation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    private void calculateGradientPerStep(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int numberOfGradientSteps) throws MatrixException, DynamicParamException {
-        Set<Integer> inputKeySet = reversedInput ? outputGradientSequence.keySet() : outputGradientSequence.descendingKeySet();
-
-        int gradientStepCount = 0;
-        for (Map.Entry<Integer, Matrix> entry : reversedInput ? outputGradientSequence.entrySet() : outputGradientSequence.descendingEntrySet()) {
-            getOutputNode().setGradient(entry.getKey(), entry.getValue());
-            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
-        }
-
-        gradientChain.calculateGradientStep(inputKeySet, numberOfGradientSteps);
-
-        gradientStepCount = 0;
-        for (Integer sampleIndex : inputKeySet) {
-            for (Map.Entry<Integer, Node> entry : inputNodes.entrySet()) {
-                inputGradientSequences.get(entry.getKey()).increment(sampleIndex, entry.getValue().getGradient(sampleIndex));
-            }
-            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
-        }
-    }
-
-    /**
-     * Check that procedure contains all parameter matrices.
-     *
-     * @throws MatrixException throws exception if node does not contain all parameter matrices.
-     */
-    private void checkParameterMatrices() throws MatrixException {
-        for (Matrix parameterMatrix : parameterMatrices) {
-            boolean containsParameterMatrix = false;
-            for (Node node : nodes) {
-                if (node.isReferenceOf(parameterMatrix)) {
-                    containsParameterMatrix = true;
-                    break;
-                }
-            }
-            if (!containsParameterMatrix) {
-                System.out.println("Failed to find parameter matrix: " + this + " " + parameterMatrix + " " + parameterMatrix.getName());
-                throw new MatrixException("Procedure does not contain all parameter matrices.");
-            }
-        }
-    }
-
-    /**
-     * Gets gradients for parameter matrices
-     *
-     * @throws MatrixException throws exception if matrix operation fails.
-     * @return gradients
-     */
-    public HashMap<Matrix, Matrix> getGradients() throws MatrixException {
-        return new HashMap<>() {{ putAll(getProcedureGradients()); }};
-    }
-
-    /**
-     * Gets gradients for parameter matrices
-     *
-     * @return gradients
-     * @throws MatrixException throws exception if matrix operation fails.
-     */
-    private HashMap<Matrix, Matrix> getProcedureGradients() throws MatrixException {
-        HashMap<Matrix, Matrix> gradients = new HashMap<>();
-        if (parameterMatrices == null) return gradients;
-        for (Matrix parameterMatrix : parameterMatrices) {
-            Node node = getNode(parameterMatrix);
-            if (node != null) gradients.put(parameterMatrix, node.getGradientMean());
-        }
-        return gradients;
-    }
-
-    /**
-     * Sets if gradient is updated for nodes of this expression. If true gradient is not updated otherwise it is updated.
-     *
-     * @param referenceMatrices reference matrices of nodes.
-     * @param stopGradient if true gradient is not updated otherwise it is updated.
-     * @throws MatrixException throws exception if procedure does not contain reference matrix.
-     */
-    public void setStopGradient(HashSet<Matrix> referenceMatrices, boolean stopGradient) throws MatrixException {
-        for (Matrix referenceMatrix : referenceMatrices) setStopGradient(referenceMatrix, stopGradient);
-    }
-
-    /**
-     * Sets if gradient is updated for nodes of this expression. If true gradient is not updated otherwise it is updated.
-     *
-     * @param referenceMatrix reference matrix of node.
-     * @param stopGradient if true gradient is not updated otherwise it is updated.
-     * @throws MatrixException throws exception if procedure does not contain reference matrix.
-     */
-    public void setStopGradient(Matrix referenceMatrix, boolean stopGradient) throws MatrixException {
-        boolean containsReferenceMatrix = false;
-        for (Node node : nodes) {
-            if (node.isReferenceOf(referenceMatrix)) {
-                node.setStopGradient(stopGradient);
-                containsReferenceMatrix = true;
-            }
-        }
-        if (!containsReferenceMatrix) throw new MatrixException("Procedure does not contain reference matrix.");
-    }
-
-    /**
-     * Sets optimizer for layer.<br>
-     * Optimizer optimizes weight parameters iteratively towards optimal solution.<br>
-     *
-     * @param optimizer optimizer to be added.
-     */
-    public void setOptimizer(Optimizer optimizer) {
-        this.optimizer = optimizer;
-    }
-
-    /**
-     * Resets optimizer of layer.
-     *
-     */
-    public void resetOptimizer() {
-        optimizer.reset();
-    }
-
-    /**
-     * Executes weight updates with regularizers and optimizer.
-     *
-     * @throws MatrixException throws exception if matrix operation fails.
-     * @throws DynamicParamException throws exception if parameter (params) setting fails.
-     */
-    public void optimize() throws MatrixException, DynamicParamException {
-        for (Map.Entry<Matrix, Matrix> entry : getGradients().entrySet()) optimizer.optimize(entry.getKey(), entry.getValue());
-    }
-
-    /**
-     * Returns optimizer by name.
-     *
-     * @return optimizer by name.
-     */
-    public String getOptimizerByName() {
-        return optimizer.getName();
-    }
-
-    /**
-     * Prints expression chain.
-     *
-     */
-    public void printExpressionChain() {
-        expressionChain.printExpressionChain();
-    }
-
-    /**
-     * Prints gradient chain.
-     *
-     */
-    public void printGradientChain() {
-        gradientChain.printGradientChain();
-    }
-
-}
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure;
+
+import core.optimization.Optimizer;
+import core.optimization.OptimizerFactory;
+import utils.configurable.DynamicParamException;
+import utils.matrix.AbstractMatrix;
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
+import utils.matrix.Precision;
+import utils.matrix.SMatrix;
+import utils.sampling.Sequence;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.procedure.expression.Expression;
+import utils.procedure.node.BufferArena;
+import utils.procedure.node.Node;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Implements computable procedure having chain of forward computable expressions and backward computable gradient expressions (based on automatic gradient).<br>
+ *
+ */
+public class Procedure implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 9207418704022664014L;
+
+    /**
+     * Input nodes.
+     *
+     */
+    private final HashMap<Integer, Node> inputNodes = new HashMap<>();
+
+    /**
+     * Output nodes.
+     *
+     */
+    private final Node outputNode;
+
+    /**
+     * Nodes of procedure.
+     *
+     */
+    private final HashSet<Node> nodes = new HashSet<>();
+
+    /**
+     * Chain of expressions.
+     *
+     */
+    private final Expression expressionChain;
+
+    /**
+     * Chain of gradients.
+     *
+     */
+    private final Expression gradientChain;
+
+    /**
+     * Dependent nodes.
+     *
+     */
+    private final HashSet<Node> dependentNodes = new HashSet<>();
+
+    /**
+     * If true input is reversed otherwise not.
+     *
+     */
+    private final boolean reversedInput;
+
+    /**
+     * If true inputs are joined otherwise not.
+     *
+     */
+    private final boolean joinedInput;
+
+    /**
+     * Parameter matrices.
+     *
+     */
+    private final HashSet<Matrix> parameterMatrices;
+
+    /**
+     * Optimizer for procedure.
+     *
+     */
+    protected Optimizer optimizer = OptimizerFactory.createDefault();
+
+    /**
+     * If true non-recurrent procedure is executed as single column stacked batch when expression chain allows it.
+     *
+     */
+    private boolean batchExecution = false;
+
+    /**
+     * If true result and gradient matrices are taken from buffer arena and reused across iterations.
+     *
+     */
+    private boolean useBufferArena = true;
+
+    /**
+     * Buffer arena of procedure.
+     *
+     */
+    private transient BufferArena bufferArena;
+
+    /**
+     * True if buffer arena has been attached to expressions and nodes of procedure.
+     *
+     */
+    private transient boolean bufferArenaAttached = false;
+
+    /**
+     * Sample indices of latest batch execution in order of batch columns. Null if latest execution was not executed as batch.
+     *
+     */
+    private transient ArrayList<Integer> batchSampleIndices;
+
+    /**
+     * Number of forward calculations where expression chain or precalculated expressions were executed as single column stacked batch.
+     *
+     */
+    private transient int numberOfBatchExecutions;
+
+    /**
+     * Number of forward calculations executed with inference plan.
+     *
+     */
+    private transient int numberOfInferencePlanExecutions;
+
+    /**
+     * If true procedure is calculated with inference plan when procedure is not active.
+     *
+     */
+    private boolean useInferencePlan = true;
+
+    /**
+     * If true procedure is active (training) otherwise non-active (predicting).
+     *
+     */
+    private boolean isActive = true;
+
+    /**
+     * Inference plan compiled from expression chain. Compiled when procedure is calculated first time in non-active state.
+     *
+     */
+    private transient InferencePlan inferencePlan;
+
+    /**
+     * Number of samples between gradient checkpoints. If 0 gradient checkpointing is not used.
+     *
+     */
+    private int checkpointSteps = 0;
+
+    /**
+     * Sample indices in order of forward calculation when gradient checkpointing is used.
+     *
+     */
+    private transient ArrayList<Integer> checkpointSampleIndices;
+
+    /**
+     * Positions of sample indices in order of forward calculation when gradient checkpointing is used.
+     *
+     */
+    private transient HashMap<Integer, Integer> checkpointSamplePositions;
+
+    /**
+     * Nodes whose matrices are released between gradient checkpoints.
+     *
+     */
+    private transient ArrayList<Node> checkpointReleasedNodes;
+
+    /**
+     * Segment of samples whose matrices have been recalculated for gradient calculation. -1 if none.
+     *
+     */
+    private transient int recalculatedSegment = -1;
+
+    /**
+     * If true expressions not depending on dependent nodes are precalculated for all samples ahead of sample by sample calculation.
+     *
+     */
+    private boolean precalculation = true;
+
+    /**
+     * Expressions not depending on dependent nodes. Precalculated for all samples ahead of sample by sample calculation.
+     *
+     */
+    private transient ArrayList<Expression> precalculatedExpressions;
+
+    /**
+     * Expressions depending on dependent nodes. Calculated sample by sample after precalculation.
+     *
+     */
+    private transient ArrayList<Expression> sampleExpressions;
+
+    /**
+     * Result nodes of precalculated expressions consumed by sample expressions or being output node of procedure.
+     *
+     */
+    private transient ArrayList<Node> precalculatedNodes;
+
+    /**
+     * Inference plan for sample expressions. Compiled when procedure is calculated first time with precalculation in non-active state.
+     *
+     */
+    private transient InferencePlan sampleInferencePlan;
+
+    /**
+     * If true double precision master copies of single precision parameter matrices are kept between optimization steps.
+     *
+     */
+    private boolean masterWeights = false;
+
+    /**
+     * Double precision copies of single precision parameter matrices. Optimizer state of single precision parameter matrix is tied to its double precision copy.
+     *
+     */
+    private final HashMap<Matrix, Matrix> masterMatrices = new HashMap<>();
+
+    /**
+     * Double precision copies of gradients of single precision parameter matrices.
+     *
+     */
+    private final HashMap<Matrix, Matrix> masterGradients = new HashMap<>();
+
+    /**
+     * Number of expressions merged into identical expressions when procedure was built.
+     *
+     */
+    private int numberOfMergedExpressions = 0;
+
+    /**
+     * Number of constant expressions folded when procedure was built.
+     *
+     */
+    private int numberOfFoldedExpressions = 0;
+
+    /**
+     * Number of expressions eliminated when procedure was built as they were not contributing to output.
+     *
+     */
+    private int numberOfEliminatedExpressions = 0;
+
+    /**
+     * Constructor for procedure.
+     *
+     * @param inputNodes input nodes for procedure.
+     * @param outputNode output node for procedure.
+     * @param nodes all nodes for procedure.
+     * @param expressionChain chain of expressions describing procedure.
+     * @param gradientChain chain of gradients for procedure.
+     * @param dependentNodes dependent nodes.
+     * @param parameterMatrices parameter matrices.
+     * @param stopGradientMatrices matrices for which gradient is not updated.
+     * @param reversedInput reversed input.
+     * @param joinedInput if true inputs are joined otherwise not.
+     * @throws MatrixException throws exception if node does not contain all constant and parameter matrices.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public Procedure(HashMap<Integer, Node> inputNodes, Node outputNode, HashSet<Node> nodes, Expression expressionChain, Expression gradientChain, HashSet<Node> dependentNodes, HashSet<Matrix> parameterMatrices, HashSet<Matrix> stopGradientMatrices, boolean reversedInput, boolean joinedInput) throws MatrixException, DynamicParamException {
+        this.inputNodes.putAll(inputNodes);
+        this.outputNode = outputNode;
+        this.nodes.addAll(nodes);
+        this.expressionChain = expressionChain;
+        this.gradientChain = gradientChain;
+        this.dependentNodes.addAll(dependentNodes);
+        this.parameterMatrices = parameterMatrices;
+        if (parameterMatrices != null) checkParameterMatrices();
+        if (stopGradientMatrices != null) setStopGradient(stopGradientMatrices, true);
+        this.reversedInput = reversedInput;
+        this.joinedInput = joinedInput;
+    }
+
+    /**
+     * Sets if non-recurrent procedure is executed as single column stacked batch when expression chain allows it.
+     *
+     * @param batchExecution if true procedure is executed as batch when possible otherwise per sample.
+     */
+    public void setBatchExecution(boolean batchExecution) {
+        this.batchExecution = batchExecution;
+    }
+
+    /**
+     * Returns true if non-recurrent procedure is executed as single column stacked batch when expression chain allows it.
+     *
+     * @return true if procedure is executed as batch when possible otherwise false.
+     */
+    public boolean isBatchExecution() {
+        return batchExecution;
+    }
+
+    /**
+     * Returns number of forward calculations where expression chain or precalculated expressions were executed as single column stacked batch.
+     *
+     * @return number of forward calculations executed as batch.
+     */
+    public int getNumberOfBatchExecutions() {
+        return numberOfBatchExecutions;
+    }
+
+    /**
+     * Sets if procedure is calculated with inference plan when procedure is not active.<br>
+     * Inference plan releases matrices of nodes as soon as they have been consumed and retains no information for gradient calculation.<br>
+     *
+     * @param useInferencePlan if true inference plan is used when procedure is not active otherwise training procedure is used.
+     */
+    public void setInferencePlan(boolean useInferencePlan) {
+        this.useInferencePlan = useInferencePlan;
+    }
+
+    /**
+     * Returns true if procedure is calculated with inference plan when procedure is not active.
+     *
+     * @return true if inference plan is used when procedure is not active otherwise false.
+     */
+    public boolean isInferencePlan() {
+        return useInferencePlan;
+    }
+
+    /**
+     * Returns number of forward calculations executed with inference plan.
+     *
+     * @return number of forward calculations executed with inference plan.
+     */
+    public int getNumberOfInferencePlanExecutions() {
+        return numberOfInferencePlanExecutions;
+    }
+
+    /**
+     * Checks if next calculation of procedure is done with inference plan i.e. inference plan is used, procedure is not active and all expressions are calculated sample by sample.
+     *
+     * @return true if next calculation of procedure is done with inference plan otherwise false.
+     */
+    private boolean isInferencePlanApplicable() {
+        return useInferencePlan && !isActive && expressionChain.isSampleWise();
+    }
+
+    /**
+     * Sets number of samples between gradient checkpoints.<br>
+     * When procedure with dependencies is active only matrices of input and output nodes and matrices of dependent nodes at every checkpointSteps:th sample are kept during forward calculation.
+     * Other matrices are recalculated segment by segment starting from nearest checkpoint during gradient calculation.<br>
+     *
+     * @param checkpointSteps number of samples between gradient checkpoints. If 0 gradient checkpointing is not used.
+     */
+    public void setCheckpointSteps(int checkpointSteps) {
+        this.checkpointSteps = checkpointSteps;
+    }
+
+    /**
+     * Returns number of samples between gradient checkpoints.
+     *
+     * @return number of samples between gradient checkpoints. If 0 gradient checkpointing is not used.
+     */
+    public int getCheckpointSteps() {
+        return checkpointSteps;
+    }
+
+    /**
+     * Checks if next calculation of procedure is done with gradient checkpointing i.e. checkpoint steps is defined, procedure is active, has dependencies and all expressions are calculated sample by sample.
+     *
+     * @return true if next calculation of procedure is done with gradient checkpointing otherwise false.
+     */
+    private boolean isCheckpointingApplicable() {
+        return checkpointSteps > 1 && isActive && hasDependencies() && expressionChain.isSampleWise();
+    }
+
+    /**
+     * Sets if expressions not depending on dependent nodes are precalculated for all samples ahead of sample by sample calculation.<br>
+     * Precalculation is applied to procedures with dependencies and is executed as single column stacked batch when batch execution is enabled.<br>
+     *
+     * @param precalculation if true expressions not depending on dependent nodes are precalculated.
+     */
+    public void setPrecalculation(boolean precalculation) {
+        this.precalculation = precalculation;
+    }
+
+    /**
+     * Returns true if expressions not depending on dependent nodes are precalculated for all samples ahead of sample by sample calculation.
+     *
+     * @return true if expressions not depending on dependent nodes are precalculated otherwise false.
+     */
+    public boolean isPrecalculation() {
+        return precalculation;
+    }
+
+    /**
+     * Splits expression chain into precalculated expressions not depending on dependent nodes and sample expressions depending on them.
+     *
+     */
+    private void definePrecalculatedExpressions() {
+        if (precalculatedExpressions != null) return;
+        precalculatedExpressions = new ArrayList<>();
+        sampleExpressions = new ArrayList<>();
+        precalculatedNodes = new ArrayList<>();
+        HashSet<Node> sampleNodes = new HashSet<>(dependentNodes);
+        for (Expression expression = expressionChain; expression != null; expression = expression.getNextExpression()) {
+            boolean isSampleExpression = false;
+            for (Node argument : expression.getArguments()) if (sampleNodes.contains(argument)) isSampleExpression = true;
+            if (isSampleExpression) {
+                sampleNodes.add(expression.getResult());
+                sampleExpressions.add(expression);
+            }
+            else precalculatedExpressions.add(expression);
+        }
+        for (Expression expression : precalculatedExpressions) {
+            Node result = expression.getResult();
+            boolean isConsumed = result == getOutputNode();
+            for (Expression sampleExpression : sampleExpressions) if (sampleExpression.getArguments().contains(result)) isConsumed = true;
+            if (isConsumed) precalculatedNodes.add(result);
+        }
+    }
+
+    /**
+     * Checks if precalculation is applicable i.e. precalculation is used, procedure has dependencies, gradient checkpointing is not used, all expressions are calculated sample by sample and there is at least one expression to precalculate.
+     *
+     * @return true if precalculation is applicable otherwise false.
+     */
+    private boolean isPrecalculationApplicable() {
+        if (!precalculation || !hasDependencies() || isCheckpointingApplicable() || !expressionChain.isSampleWise()) return false;
+        definePrecalculatedExpressions();
+        return !precalculatedExpressions.isEmpty() && !sampleExpressions.isEmpty();
+    }
+
+    /**
+     * Checks if precalculated expressions can be executed as single column stacked batch for given inputs.
+     *
+     * @param inputSequences input sequences.
+     * @param inputKeySet input sample indices.
+     * @return true if precalculated expressions can be executed as batch otherwise false.
+     */
+    private boolean canPrecalculateAsBatch(TreeMap<Integer, Sequence> inputSequences, Set<Integer> inputKeySet) {
+        if (!batchExecution || joinedInput || inputKeySet.size() < 2) return false;
+        for (Expression expression : precalculatedExpressions) if (!expression.isBatchSupported()) return false;
+        return isStackable(inputSequences, inputKeySet);
+    }
+
+    /**
+     * Precalculates expressions not depending on dependent nodes for all samples. Sets input samples of all samples.<br>
+     * When executed as batch results are unstacked into sample matrices of result nodes. In active state also intermediate results are unstacked for gradient calculation.<br>
+     *
+     * @param inputSequences input sequences.
+     * @param inputSequence first input sequence.
+     * @param inputKeySet input sample indices.
+     * @param asBatchOnly if true expressions are precalculated only if they can be executed as batch.
+     * @return true if expressions were precalculated otherwise false.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private boolean precalculateExpressions(TreeMap<Integer, Sequence> inputSequences, Sequence inputSequence, Set<Integer> inputKeySet, boolean asBatchOnly) throws MatrixException, DynamicParamException {
+        if (!isPrecalculationApplicable()) return false;
+        boolean asBatch = canPrecalculateAsBatch(inputSequences, inputKeySet);
+        if (asBatchOnly && !asBatch) return false;
+
+        for (Integer sampleIndex : inputKeySet) setInputSamples(inputSequences, inputSequence, sampleIndex);
+
+        if (!asBatch) {
+            for (Expression expression : precalculatedExpressions) {
+                for (Integer sampleIndex : inputKeySet) expression.calculateExpression(sampleIndex);
+            }
+            return true;
+        }
+
+        numberOfBatchExecutions++;
+        ArrayList<Integer> sampleIndices = new ArrayList<>(inputKeySet);
+        int batchSize = sampleIndices.size();
+        setInputBatches(inputSequences, sampleIndices);
+        for (Expression expression : precalculatedExpressions) expression.calculateExpressionBatch(batchSize);
+
+        HashSet<Node> unstackedNodes = new HashSet<>(precalculatedNodes);
+        if (isActive) {
+            for (Expression expression : precalculatedExpressions) {
+                unstackedNodes.add(expression.getResult());
+                unstackedNodes.addAll(expression.getIntermediateNodes());
+            }
+        }
+        for (Node node : unstackedNodes) {
+            Matrix batchMatrix = node.getBatchMatrix();
+            if (batchMatrix == null) continue;
+            for (int batchIndex = 0; batchIndex < batchSize; batchIndex++) node.setMatrix(sampleIndices.get(batchIndex), unstackBatch(batchMatrix, batchIndex, node.getColumns()));
+        }
+
+        for (Node inputNode : getInputNodes().values()) inputNode.setBatchMatrix(null);
+        for (Expression expression : precalculatedExpressions) {
+            expression.getResult().setBatchMatrix(null);
+            for (Node node : expression.getIntermediateNodes()) node.setBatchMatrix(null);
+        }
+        return true;
+    }
+
+    /**
+     * Sets if result and gradient matrices are taken from buffer arena and reused across iterations.<br>
+     * Matrices output by procedure are always copied out of buffer arena.<br>
+     *
+     * @param useBufferArena if true buffer arena is used otherwise new matrices are allocated for each iteration.
+     */
+    public void setBufferArena(boolean useBufferArena) {
+        this.useBufferArena = useBufferArena;
+        if (!useBufferArena) bufferArena = null;
+        bufferArenaAttached = false;
+    }
+
+    /**
+     * Returns buffer arena of procedure.
+     *
+     * @return buffer arena of procedure or null if buffer arena is not used.
+     */
+    public BufferArena getBufferArena() {
+        return bufferArena;
+    }
+
+    /**
+     * Attaches buffer arena to expressions and nodes of procedure if not already attached.
+     *
+     */
+    private void attachBufferArena() {
+        if (bufferArenaAttached) return;
+        if (useBufferArena && bufferArena == null) bufferArena = new BufferArena();
+        expressionChain.setBufferArena(bufferArena);
+        for (Node node : nodes) node.setBufferArena(bufferArena);
+        bufferArenaAttached = true;
+        inferencePlan = null;
+        sampleInferencePlan = null;
+    }
+
+    /**
+     * Returns matrix of output node for sample index. Matrix owned by buffer arena is copied so that it is not overwritten by following iterations.
+     *
+     * @param sampleIndex sample index.
+     * @return matrix of output node.
+     * @throws MatrixException throws exception if copying of matrix fails.
+     */
+    private Matrix getOutputMatrix(int sampleIndex) throws MatrixException {
+        Matrix outputMatrix = getOutputNode().getMatrix(sampleIndex);
+        return bufferArena != null && bufferArena.contains(outputMatrix) ? outputMatrix.copy() : outputMatrix;
+    }
+
+    /**
+     * Sets reset matrix dependencies flag.
+     *
+     * @param resetDependencies if true matrix dependencies are reset otherwise false.
+     */
+    public void resetDependencies(boolean resetDependencies) {
+        for (Node dependentNode : dependentNodes) dependentNode.resetDependencies(resetDependencies);
+    }
+
+    /**
+     * Resets data for every index in nodes of procedure.
+     *
+     * @throws MatrixException throws exception is dimensions of matrices are not matching or any matrix is scalar type.
+     */
+    public void reset() throws MatrixException {
+        for (Node node : nodes) node.reset();
+        if (bufferArena != null) bufferArena.rewind(BufferArena.BufferType.GRADIENT);
+    }
+
+    /**
+     * Sets is procedure is active.
+     *
+     * @param isActive is true procedure is active otherwise non-active.
+     */
+    public void setActive(boolean isActive) {
+        this.isActive = isActive;
+        expressionChain.setActive(isActive);
+        gradientChain.setActive(isActive);
+    }
+
+    /**
+     * Returns node corresponding specific matrix.
+     *
+     * @param matrix matrix.
+     * @return node corresponding specific matrix
+     */
+    public Node getNode(Matrix matrix) {
+        for (Node node : nodes) if (node.contains(matrix)) return node;
+        return null;
+    }
+
+    /**
+     * Returns input nodes.
+     *
+     * @return input nodes.
+     */
+    public HashMap<Integer, Node> getInputNodes() {
+        return inputNodes;
+    }
+
+    /**
+     * Returns output nodes.
+     *
+     * @return output nodes.
+     */
+    public Node getOutputNode() {
+        return outputNode;
+    }
+
+    /**
+     * Checks if procedure has dependencies between output and input nodes.
+     *
+     * @return returns true if there are dependencies otherwise returns false.
+     */
+    public boolean hasDependencies() {
+        return !dependentNodes.isEmpty();
+    }
+
+    /**
+     * Calculates chain of forward expressions.
+     *
+     * @param inputSequences input sequences.
+     * @param outputSequence output sequence.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpression(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
+        attachBufferArena();
+        if (bufferArena != null) {
+            bufferArena.setPooled(isInferencePlanApplicable());
+            bufferArena.setMatrixBypass(isCheckpointingApplicable());
+            bufferArena.rewind(BufferArena.BufferType.MATRIX);
+        }
+        expressionChain.reset();
+        if (joinedInput) calculateExpressionForMultipleSequences(Sequence.join(inputSequences, true), outputSequence);
+        else calculateExpressionForMultipleSequences(inputSequences, outputSequence);
+    }
+
+    /**
+     * Calculates chain of forward expressions.
+     *
+     * @param inputSequences input sequences.
+     * @param outputSequence output sequence.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateExpressionForMultipleSequences(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
+        if (isInferencePlanApplicable()) calculateExpressionWithInferencePlan(inputSequences, outputSequence);
+        else if (hasDependencies()) calculateExpressionPerSample(inputSequences, outputSequence);
+        else calculateExpressionPerStep(inputSequences, outputSequence);
+    }
+
+    /**
+     * Calculates chain of forward expressions sample by sample.
+     *
+     * @param inputSequences input sequences.
+     * @param outputSequence output sequence.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateExpressionPerSample(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
+        Sequence inputSequence = inputSequences.get(inputSequences.firstKey());
+
+        int firstKey = reversedInput ? inputSequence.lastKey() : inputSequence.firstKey();
+        Set<Integer> inputKeySet = reversedInput ? inputSequence.descendingKeySet() : inputSequence.keySet();
+
+        boolean checkpointing = isCheckpointingApplicable();
+        initializeCheckpoints(checkpointing ? inputKeySet : null);
+
+        boolean precalculated = precalculateExpressions(inputSequences, inputSequence, inputKeySet, false);
+
+        int previousSampleIndex = -1;
+        for (int sampleIndex : reversedInput ? inputSequence.descendingSampleIndices() : inputSequence.sampleIndices()) {
+            for (Node dependentNode : dependentNodes) dependentNode.updateMatrixDependency(sampleIndex, previousSampleIndex);
+
+            if (checkpointing && previousSampleIndex != -1) releaseCheckpointSample(previousSampleIndex);
+
+            if (precalculated) {
+                for (Expression expression : sampleExpressions) expression.calculateExpression(sampleIndex);
+            }
+            else {
+                setInputSamples(inputSequences, inputSequence, sampleIndex);
+                expressionChain.calculateExpressionStep(sampleIndex, firstKey);
+            }
+
+            outputSequence.put(sampleIndex, getOutputMatrix(sampleIndex));
+
+            for (Node dependentNode : dependentNodes) dependentNode.updateDependencies(sampleIndex);
+
+            previousSampleIndex = sampleIndex;
+        }
+
+    }
+
+    /**
+     * Calculates chain of forward expressions with inference plan.<br>
+     * Samples are calculated one by one (or as single column stacked batch when possible) and matrices of nodes are released as soon as they have been consumed.<br>
+     *
+     * @param inputSequences input sequences.
+     * @param outputSequence output sequence.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateExpressionWithInferencePlan(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
+        numberOfInferencePlanExecutions++;
+        Sequence inputSequence = inputSequences.get(inputSequences.firstKey());
+        Set<Integer> inputKeySet = reversedInput ? inputSequence.descendingKeySet() : inputSequence.keySet();
+
+        batchSampleIndices = null;
+        boolean precalculated = hasDependencies() && precalculateExpressions(inputSequences, inputSequence, inputKeySet, true);
+        InferencePlan currentInferencePlan = precalculated ? getSampleInferencePlan() : getInferencePlan();
+        currentInferencePlan.reset();
+
+        if (!hasDependencies() && canExecuteAsBatch(inputSequences, inputKeySet)) {
+            calculateExpressionAsBatch(inputSequences, inputKeySet, outputSequence, currentInferencePlan);
+            return;
+        }
+
+        int previousSampleIndex = -1;
+        for (int sampleIndex : reversedInput ? inputSequence.descendingSampleIndices() : inputSequence.sampleIndices()) {
+            if (hasDependencies()) for (Node dependentNode : dependentNodes) dependentNode.updateMatrixDependency(sampleIndex, previousSampleIndex);
+
+            if (!precalculated) setInputSamples(inputSequences, inputSequence, sampleIndex);
+
+            currentInferencePlan.calculateExpression(sampleIndex);
+
+            outputSequence.put(sampleIndex, getOutputMatrix(sampleIndex));
+
+            if (hasDependencies()) for (Node dependentNode : dependentNodes) dependentNode.updateDependencies(sampleIndex);
+
+            currentInferencePlan.releaseSample(sampleIndex);
+
+            previousSampleIndex = sampleIndex;
+        }
+    }
+
+    /**
+     * Returns inference plan compiled from entire expression chain.
+     *
+     * @return inference plan.
+     */
+    private InferencePlan getInferencePlan() {
+        if (inferencePlan == null) {
+            inferencePlan = new InferencePlan(getExpressions(), getInputNodes(), new ArrayList<>(), getOutputNode(), dependentNodes, bufferArena);
+        }
+        return inferencePlan;
+    }
+
+    /**
+     * Returns inference plan compiled from sample expressions. Results of precalculated expressions are entry nodes of plan.
+     *
+     * @return inference plan.
+     */
+    private InferencePlan getSampleInferencePlan() {
+        if (sampleInferencePlan == null) sampleInferencePlan = new InferencePlan(sampleExpressions, getInputNodes(), precalculatedNodes, getOutputNode(), dependentNodes, bufferArena);
+        return sampleInferencePlan;
+    }
+
+    /**
+     * Calculates chain of forward expressions for all samples.
+     *
+     * @param inputSequences input sequences.
+     * @param outputSequence output sequence.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateExpressionPerStep(TreeMap<Integer, Sequence> inputSequences, Sequence outputSequence) throws MatrixException, DynamicParamException {
+        Sequence inputSequence = inputSequences.get(inputSequences.firstKey());
+
+        Set<Integer> inputKeySet = reversedInput ? inputSequence.descendingKeySet() : inputSequence.keySet();
+
+        batchSampleIndices = null;
+        if (canExecuteAsBatch(inputSequences, inputKeySet)) {
+            calculateExpressionAsBatch(inputSequences, inputKeySet, outputSequence, null);
+            return;
+        }
+
+        for (Integer sampleIndex : inputKeySet) setInputSamples(inputSequences, inputSequence, sampleIndex);
+
+        expressionChain.calculateExpressionStep(inputKeySet);
+
+        for (Integer sampleIndex : inputKeySet) outputSequence.put(sampleIndex, getOutputMatrix(sampleIndex));
+    }
+
+    /**
+     * Checks if expression chain can be executed as single column stacked batch for given inputs.<br>
+     * Requires that batch execution is enabled, inputs are not joined, all expressions support batch execution and input samples are non-scalar and unmasked.<br>
+     *
+     * @param inputSequences input sequences.
+     * @param inputKeySet input sample indices.
+     * @return true if expression chain can be executed as batch otherwise false.
+     */
+    private boolean canExecuteAsBatch(TreeMap<Integer, Sequence> inputSequences, Set<Integer> inputKeySet) {
+        return batchExecution && !joinedInput && inputKeySet.size() >= 2 && expressionChain.isBatchExecutable() && isStackable(inputSequences, inputKeySet);
+    }
+
+    /**
+     * Checks if input samples can be stacked column wise into batch matrices i.e. input samples are non-scalar and unmasked.
+     *
+     * @param inputSequences input sequences.
+     * @param inputKeySet input sample indices.
+     * @return true if input samples can be stacked otherwise false.
+     */
+    private boolean isStackable(TreeMap<Integer, Sequence> inputSequences, Set<Integer> inputKeySet) {
+        for (Sequence sequence : inputSequences.values()) {
+            for (Integer sampleIndex : inputKeySet) {
+                Matrix matrix = sequence.get(sampleIndex);
+                if (matrix == null || matrix.isScalar() || matrix.getMask() != null) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates chain of forward expressions for all samples as single column stacked batch.<br>
+     * Input samples are stacked column wise into single matrix so that each expression is executed once for entire batch.<br>
+     *
+     * @param inputSequences input sequences.
+     * @param inputKeySet input sample indices.
+     * @param outputSequence output sequence.
+     * @param inferencePlan inference plan used for calculation or null if expression chain is calculated as such.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateExpressionAsBatch(TreeMap<Integer, Sequence> inputSequences, Set<Integer> inputKeySet, Sequence outputSequence, InferencePlan inferencePlan) throws MatrixException, DynamicParamException {
+        numberOfBatchExecutions++;
+        batchSampleIndices = new ArrayList<>(inputKeySet);
+        int batchSize = batchSampleIndices.size();
+
+        setInputBatches(inputSequences, batchSampleIndices);
+
+        if (inferencePlan != null) inferencePlan.calculateExpressionBatch(batchSize);
+        else expressionChain.calculateExpressionBatchStep(batchSize);
+
+        Matrix outputBatchMatrix = getOutputNode().getBatchMatrix();
+        int outputColumns = outputBatchMatrix.getColumns() / batchSize;
+        for (int batchIndex = 0; batchIndex < batchSize; batchIndex++) {
+            outputSequence.put(batchSampleIndices.get(batchIndex), unstackBatch(outputBatchMatrix, batchIndex, outputColumns));
+        }
+        if (inferencePlan != null) inferencePlan.releaseBatch();
+    }
+
+    /**
+     * Sets input samples stacked column wise as batch matrices of input nodes.
+     *
+     * @param inputSequences input sequences.
+     * @param sampleIndices sample indices in order of stacking.
+     */
+    private void setInputBatches(TreeMap<Integer, Sequence> inputSequences, List<Integer> sampleIndices) {
+        for (Map.Entry<Integer, Sequence> entry : inputSequences.entrySet()) {
+            Sequence sequence = entry.getValue();
+            ArrayList<Matrix> samples = new ArrayList<>();
+            for (Integer sampleIndex : sampleIndices) samples.add(sequence.get(sampleIndex));
+            Node inputNode = getInputNodes().get(inputSequences.size() == 1 ? 0 : entry.getKey());
+            inputNode.setBatchMatrix(stackBatch(samples, inputNode.getRows(), inputNode.getColumns(), inputNode.getDepth()));
+        }
+    }
+
+    /**
+     * Stacks matrices column wise into single batch matrix. Sparse matrices are stacked into sparse batch matrix.<br>
+     * Dense matrices are copied in bulk by column block. Element wise copy is used for sparse, masked and sliced matrices.<br>
+     *
+     * @param matrices matrices to be stacked. Null matrix is stacked as zero matrix.
+     * @param rows number of rows of matrices.
+     * @param columns number of columns of matrices.
+     * @param totalDepth depth of matrices.
+     * @return batch matrix.
+     */
+    private static Matrix stackBatch(List<Matrix> matrices, int rows, int columns, int totalDepth) {
+        Matrix firstMatrix = matrices.stream().filter(Objects::nonNull).findFirst().orElse(null);
+        Matrix batchMatrix = firstMatrix instanceof SMatrix ? new SMatrix(rows, columns * matrices.size(), totalDepth) : Precision.getPrecision(firstMatrix).getNewMatrix(rows, columns * matrices.size(), totalDepth);
+        for (int batchIndex = 0; batchIndex < matrices.size(); batchIndex++) {
+            Matrix matrix = matrices.get(batchIndex);
+            if (matrix == null) continue;
+            int columnOffset = batchIndex * columns;
+            if (matrix.getColumns() == columns && copyColumnBlock(matrix, 0, batchMatrix, columnOffset, columns)) continue;
+            for (int depth = 0; depth < totalDepth; depth++) {
+                for (int column = 0; column < columns; column++) {
+                    for (int row = 0; row < rows; row++) {
+                        double value = matrix.getValue(row, column, depth);
+                        if (value != 0) batchMatrix.setValue(row, columnOffset + column, depth, value);
+                    }
+                }
+            }
+        }
+        return batchMatrix;
+    }
+
+    /**
+     * Copies block of columns between dense matrices of equal precision, rows and depth by bulk array copy per depth.
+     *
+     * @param source source matrix.
+     * @param sourceColumnOffset first column of block in source matrix.
+     * @param target target matrix.
+     * @param targetColumnOffset first column of block in target matrix.
+     * @param columns number of columns in block.
+     * @return true if block was copied otherwise false if matrices do not allow direct array access.
+     */
+    private static boolean copyColumnBlock(Matrix source, int sourceColumnOffset, Matrix target, int targetColumnOffset, int columns) {
+        if (source.isTransposed() || target.isTransposed() || source.getRows() != target.getRows() || source.getDepth() != target.getDepth()) return false;
+        int rows = source.getRows();
+        int totalDepth = source.getDepth();
+        int sourceDepthSize = rows * source.getColumns();
+        int targetDepthSize = rows * target.getColumns();
+        int blockSize = rows * columns;
+        if (source instanceof DMatrix sourceMatrix && target instanceof DMatrix targetMatrix) {
+            double[] sourceData = sourceMatrix.getData();
+            double[] targetData = targetMatrix.getData();
+            if (sourceData == null || targetData == null) return false;
+            for (int depth = 0; depth < totalDepth; depth++) System.arraycopy(sourceData, depth * sourceDepthSize + sourceColumnOffset * rows, targetData, depth * targetDepthSize + targetColumnOffset * rows, blockSize);
+            return true;
+        }
+        if (source instanceof FMatrix sourceMatrix && target instanceof FMatrix targetMatrix) {
+            float[] sourceData = sourceMatrix.getData();
+            float[] targetData = targetMatrix.getData();
+            if (sourceData == null || targetData == null) return false;
+            for (int depth = 0; depth < totalDepth; depth++) System.arraycopy(sourceData, depth * sourceDepthSize + sourceColumnOffset * rows, targetData, depth * targetDepthSize + targetColumnOffset * rows, blockSize);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracts single sample matrix from column stacked batch matrix.<br>
+     * Dense batch matrix is copied in bulk by column block.<br>
+     *
+     * @param batchMatrix batch matrix.
+     * @param batchIndex index of sample within batch.
+     * @param columns number of columns of sample.
+     * @return sample matrix.
+     */
+    private static Matrix unstackBatch(Matrix batchMatrix, int batchIndex, int columns) {
+        int rows = batchMatrix.getRows();
+        int totalDepth = batchMatrix.getDepth();
+        int columnOffset = batchIndex * columns;
+        Matrix matrix = Precision.getPrecision(batchMatrix).getNewMatrix(rows, columns, totalDepth);
+        if (copyColumnBlock(batchMatrix, columnOffset, matrix, 0, columns)) return matrix;
+        for (int depth = 0; depth < totalDepth; depth++) {
+            for (int column = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++) {
+                    matrix.setValue(row, column, depth, batchMatrix.getValue(row, columnOffset + column, depth));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Sets input samples for expression chain.
+     *
+     * @param inputSequences input sequences
+     * @param inputSequence input sequence.
+     * @param sampleIndex sample index.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    private void setInputSamples(TreeMap<Integer, Sequence> inputSequences, Sequence inputSequence, int sampleIndex) throws MatrixException {
+        if (inputSequences.size() == 1) {
+            getInputNodes().get(0).setMatrix(sampleIndex, inputSequence.get(sampleIndex));
+        }
+        else {
+            for (Map.Entry<Integer, Sequence> entry : inputSequences.entrySet()) {
+                getInputNodes().get(entry.getKey()).setMatrix(sampleIndex, entry.getValue().get(sampleIndex));
+            }
+        }
+    }
+
+    /**
+     * Calculates chain of forward expressions.
+     *
+     * @param inputMatrix input matrices.
+     * @return output matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public Matrix calculateExpression(Matrix inputMatrix) throws MatrixException, DynamicParamException {
+        batchSampleIndices = null;
+        attachBufferArena();
+        if (bufferArena != null) {
+            bufferArena.setPooled(false);
+            bufferArena.setMatrixBypass(false);
+            bufferArena.rewind(BufferArena.BufferType.MATRIX);
+        }
+        getInputNodes().get(0).setMatrix(0, inputMatrix);
+        expressionChain.calculateExpressionStep(0, 0);
+        return getOutputMatrix(0);
+    }
+
+    /**
+     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
+     *
+     * @param outputGradientSequence output gradients.
+     * @param inputGradientSequences input gradients.
+     * @param steps number of steps calculated backwards.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateGradient(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int steps) throws MatrixException, DynamicParamException {
+        if (joinedInput) {
+            TreeMap <Integer, Sequence> joinedInputGradientSequences = new TreeMap<>() {{ put(0, new Sequence()); }};
+            calculateGradientForMultipleInputs(outputGradientSequence, joinedInputGradientSequences, steps);
+            Sequence sequence = joinedInputGradientSequences.get(0);
+            for (Map.Entry<Integer, Matrix> entry : sequence.entrySet()) {
+                Matrix[] matrices = AbstractMatrix.unjoin(entry.getValue());
+                for (int index = 0; index < matrices.length; index++) {
+                    inputGradientSequences.get(index).put(entry.getKey(), matrices[index]);
+                }
+            }
+        }
+        else calculateGradientForMultipleInputs(outputGradientSequence, inputGradientSequences, steps);
+    }
+
+    /**
+     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
+     *
+     * @param outputGradientSequence output gradient sequence.
+     * @param inputGradientSequences input gradient sequences.
+     * @param steps number of steps calculated backwards.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateGradientForMultipleInputs(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int steps) throws MatrixException, DynamicParamException {
+        if (hasDependencies()) calculateGradientPerSample(outputGradientSequence, inputGradientSequences, steps);
+        else calculateGradientPerStep(outputGradientSequence, inputGradientSequences, steps);
+    }
+
+    /**
+     * Calculates chain of backward expressions for multiple inputs per gradient expression step per sample.
+     *
+     * @param outputGradientSequence output gradient sequence.
+     * @param inputGradientSequences input gradient sequences.
+     * @param numberOfGradientSteps number of steps calculated backwards.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateGradientPerSample(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int numberOfGradientSteps) throws MatrixException, DynamicParamException {
+        int lastKey = reversedInput ? outputGradientSequence.lastKey() : outputGradientSequence.firstKey();
+
+        int previousSampleIndex = -1;
+        int gradientStepCount = 0;
+        for (int sampleIndex : reversedInput ? outputGradientSequence.sampleIndices() : outputGradientSequence.descendingSampleIndices()) {
+            for (Node dependentNode : dependentNodes) dependentNode.updateGradientDependency(sampleIndex, previousSampleIndex);
+
+            if (checkpointSampleIndices != null) recalculateCheckpointSegment(sampleIndex);
+
+            getOutputNode().setGradient(sampleIndex, outputGradientSequence.get(sampleIndex));
+
+            gradientChain.calculateGradientStep(sampleIndex, lastKey);
+
+            for (Map.Entry<Integer, Node> nodeEntry : inputNodes.entrySet()) {
+                inputGradientSequences.get(nodeEntry.getKey()).increment(sampleIndex, nodeEntry.getValue().getGradient(sampleIndex));
+            }
+
+            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
+
+            previousSampleIndex = sampleIndex;
+        }
+
+    }
+
+    /**
+     * Initializes gradient checkpoints for forward calculation.
+     *
+     * @param inputKeySet sample indices in order of forward calculation or null if gradient checkpointing is not used.
+     */
+    private void initializeCheckpoints(Set<Integer> inputKeySet) {
+        recalculatedSegment = -1;
+        if (inputKeySet == null) {
+            checkpointSampleIndices = null;
+            checkpointSamplePositions = null;
+            return;
+        }
+        if (checkpointReleasedNodes == null) {
+            checkpointReleasedNodes = new ArrayList<>();
+            for (Node node : nodes) if (node.isMultiIndex() && node != getOutputNode() && !inputNodes.containsValue(node)) checkpointReleasedNodes.add(node);
+        }
+        checkpointSampleIndices = new ArrayList<>(inputKeySet);
+        checkpointSamplePositions = new HashMap<>();
+        for (int position = 0; position < checkpointSampleIndices.size(); position++) checkpointSamplePositions.put(checkpointSampleIndices.get(position), position);
+    }
+
+    /**
+     * Releases matrices of sample that are not needed for recalculation of segments. Matrices of dependent nodes are kept for checkpoint samples.
+     *
+     * @param sampleIndex sample index.
+     */
+    private void releaseCheckpointSample(int sampleIndex) {
+        boolean isCheckpoint = checkpointSamplePositions.get(sampleIndex) % checkpointSteps == 0;
+        for (Node node : checkpointReleasedNodes) if (!isCheckpoint || !dependentNodes.contains(node)) node.removeMatrix(sampleIndex);
+    }
+
+    /**
+     * Recalculates matrices of segment containing sample starting from checkpoint of segment. Matrices of previously recalculated segment are released.
+     *
+     * @param sampleIndex sample index.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void recalculateCheckpointSegment(int sampleIndex) throws MatrixException, DynamicParamException {
+        int segment = checkpointSamplePositions.get(sampleIndex) / checkpointSteps;
+        if (segment == recalculatedSegment) return;
+
+        if (recalculatedSegment != -1) {
+            for (int position = recalculatedSegment * checkpointSteps; position < Math.min((recalculatedSegment + 1) * checkpointSteps, checkpointSampleIndices.size()); position++) {
+                releaseCheckpointSample(checkpointSampleIndices.get(position));
+            }
+        }
+
+        int firstKey = checkpointSampleIndices.get(0);
+        int previousSampleIndex = -1;
+        for (int position = segment * checkpointSteps; position < Math.min((segment + 1) * checkpointSteps, checkpointSampleIndices.size()); position++) {
+            int segmentSampleIndex = checkpointSampleIndices.get(position);
+            if (previousSampleIndex != -1) for (Node dependentNode : dependentNodes) dependentNode.updateMatrixDependency(segmentSampleIndex, previousSampleIndex);
+            expressionChain.calculateExpressionStep(segmentSampleIndex, firstKey);
+            previousSampleIndex = segmentSampleIndex;
+        }
+        recalculatedSegment = segment;
+    }
+
+    /**
+     * Calculates chain of backward expressions for multiple inputs per gradient expression step.
+     *
+     * @param outputGradientSequence output gradient sequence.
+     * @param inputGradientSequences input gradient sequences.
+     * @param numberOfGradientSteps number of steps calculated backwards.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void calculateGradientPerStep(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, int numberOfGradientSteps) throws MatrixException, DynamicParamException {
+        Set<Integer> inputKeySet = reversedInput ? outputGradientSequence.keySet() : outputGradientSequence.descendingKeySet();
+
+        if (batchSampleIndices != null) {
+            calculateGradientAsBatch(outputGradientSequence, inputGradientSequences, inputKeySet, numberOfGradientSteps);
+            return;
+        }
+
+        int gradientStepCount = 0;
+        for (int sampleIndex : reversedInput ? outputGradientSequence.sampleIndices() : outputGradientSequence.descendingSampleIndices()) {
+            getOutputNode().setGradient(sampleIndex, outputGradientSequence.get(sampleIndex));
+            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
+        }
+
+        gradientChain.calculateGradientStep(inputKeySet, numberOfGradientSteps);
+
+        gradientStepCount = 0;
+        for (Integer sampleIndex : inputKeySet) {
+            for (Map.Entry<Integer, Node> entry : inputNodes.entrySet()) {
+                inputGradientSequences.get(entry.getKey()).increment(sampleIndex, entry.getValue().getGradient(sampleIndex));
+            }
+            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
+        }
+    }
+
+    /**
+     * Calculates chain of backward expressions for all samples as single column stacked batch.<br>
+     * Output gradients of samples beyond number of gradient steps are set to zero and excluded from gradient entry count.<br>
+     *
+     * @param outputGradientSequence output gradient sequence.
+     * @param inputGradientSequences input gradient sequences.
+     * @param inputKeySet sample indices in order of gradient calculation.
+     * @param numberOfGradientSteps number of steps calculated backwards.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    private void calculateGradientAsBatch(Sequence outputGradientSequence, TreeMap<Integer, Sequence> inputGradientSequences, Set<Integer> inputKeySet, int numberOfGradientSteps) throws MatrixException {
+        int batchSize = batchSampleIndices.size();
+
+        HashSet<Integer> gradientSampleIndices = new HashSet<>();
+        for (Integer sampleIndex : inputKeySet) {
+            gradientSampleIndices.add(sampleIndex);
+            if (numberOfGradientSteps > 0 && gradientSampleIndices.size() >= numberOfGradientSteps) break;
+        }
+
+        ArrayList<Matrix> outputGradients = new ArrayList<>();
+        for (Integer sampleIndex : batchSampleIndices) outputGradients.add(gradientSampleIndices.contains(sampleIndex) ? outputGradientSequence.get(sampleIndex) : null);
+        getOutputNode().setBatchGradient(stackBatch(outputGradients, getOutputNode().getRows(), getOutputNode().getColumns(), getOutputNode().getDepth()));
+
+        gradientChain.calculateGradientBatchStep(batchSize, gradientSampleIndices.size());
+
+        HashMap<Integer, Integer> batchIndices = new HashMap<>();
+        for (int batchIndex = 0; batchIndex < batchSize; batchIndex++) batchIndices.put(batchSampleIndices.get(batchIndex), batchIndex);
+
+        int gradientStepCount = 0;
+        for (Integer sampleIndex : inputKeySet) {
+            for (Map.Entry<Integer, Node> entry : inputNodes.entrySet()) {
+                Node inputNode = entry.getValue();
+                Matrix inputBatchGradient = inputNode.getBatchGradient();
+                inputGradientSequences.get(entry.getKey()).increment(sampleIndex, inputBatchGradient != null ? unstackBatch(inputBatchGradient, batchIndices.get(sampleIndex), inputNode.getColumns()) : null);
+            }
+            if (numberOfGradientSteps > 0 && ++gradientStepCount >= numberOfGradientSteps) break;
+        }
+    }
+
+    /**
+     * Check that procedure contains all parameter matrices.
+     *
+     * @throws MatrixException throws exception if node does not contain all parameter matrices.
+     */
+    private void checkParameterMatrices() throws MatrixException {
+        for (Matrix parameterMatrix : parameterMatrices) {
+            boolean containsParameterMatrix = false;
+            for (Node node : nodes) {
+                if (node.isReferenceOf(parameterMatrix)) {
+                    containsParameterMatrix = true;
+                    break;
+                }
+            }
+            if (!containsParameterMatrix) {
+                System.out.println("Failed to find parameter matrix: " + this + " " + parameterMatrix + " " + parameterMatrix.getName());
+                throw new MatrixException("Procedure does not contain all parameter matrices.");
+            }
+        }
+    }
+
+    /**
+     * Gets gradients for parameter matrices
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @return gradients
+     */
+    public HashMap<Matrix, Matrix> getGradients() throws MatrixException {
+        return new HashMap<>() {{ putAll(getProcedureGradients()); }};
+    }
+
+    /**
+     * Gets gradients for parameter matrices
+     *
+     * @return gradients
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private HashMap<Matrix, Matrix> getProcedureGradients() throws MatrixException {
+        HashMap<Matrix, Matrix> gradients = new HashMap<>();
+        if (parameterMatrices == null) return gradients;
+        for (Matrix parameterMatrix : parameterMatrices) {
+            Node node = getNode(parameterMatrix);
+            if (node != null) gradients.put(parameterMatrix, node.getGradientMean());
+        }
+        return gradients;
+    }
+
+    /**
+     * Sets if gradient is updated for nodes of this expression. If true gradient is not updated otherwise it is updated.
+     *
+     * @param referenceMatrices reference matrices of nodes.
+     * @param stopGradient if true gradient is not updated otherwise it is updated.
+     * @throws MatrixException throws exception if procedure does not contain reference matrix.
+     */
+    public void setStopGradient(HashSet<Matrix> referenceMatrices, boolean stopGradient) throws MatrixException {
+        for (Matrix referenceMatrix : referenceMatrices) setStopGradient(referenceMatrix, stopGradient);
+    }
+
+    /**
+     * Sets if gradient is updated for nodes of this expression. If true gradient is not updated otherwise it is updated.
+     *
+     * @param referenceMatrix reference matrix of node.
+     * @param stopGradient if true gradient is not updated otherwise it is updated.
+     * @throws MatrixException throws exception if procedure does not contain reference matrix.
+     */
+    public void setStopGradient(Matrix referenceMatrix, boolean stopGradient) throws MatrixException {
+        boolean containsReferenceMatrix = false;
+        for (Node node : nodes) {
+            if (node.isReferenceOf(referenceMatrix)) {
+                node.setStopGradient(stopGradient);
+                containsReferenceMatrix = true;
+            }
+        }
+        if (!containsReferenceMatrix) throw new MatrixException("Procedure does not contain reference matrix.");
+    }
+
+    /**
+     * Sets optimizer for layer.<br>
+     * Optimizer optimizes weight parameters iteratively towards optimal solution.<br>
+     *
+     * @param optimizer optimizer to be added.
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Resets optimizer of layer.
+     *
+     */
+    public void resetOptimizer() {
+        optimizer.reset();
+        masterMatrices.clear();
+        masterGradients.clear();
+    }
+
+    /**
+     * Sets if double precision master copies of single precision parameter matrices are kept between optimization steps.<br>
+     * Single precision parameter matrices are always optimized via double precision copy which is rounded back into parameter matrix after update.<br>
+     * Without master copy double precision copy is refreshed from parameter matrix before each update. With master copy small updates are accumulated in double precision and are not lost in rounding.<br>
+     *
+     * @param masterWeights if true double precision master copies are kept between optimization steps.
+     */
+    public void setMasterWeights(boolean masterWeights) {
+        this.masterWeights = masterWeights;
+    }
+
+    /**
+     * Resets double precision master copies. Master copies are refreshed from parameter matrices at next optimization step.<br>
+     * Needs to be called when parameter matrices are modified outside of optimizer.<br>
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public void resetMasterWeights() throws MatrixException {
+        for (Map.Entry<Matrix, Matrix> entry : masterMatrices.entrySet()) copyData(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Executes weight updates with regularizers and optimizer.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void optimize() throws MatrixException, DynamicParamException {
+        optimize(getGradients());
+    }
+
+    /**
+     * Executes weight updates with given gradients instead of gradients calculated by procedure.<br>
+     * Allows applying gradients reduced over multiple replicas of procedure.<br>
+     *
+     * @param gradients gradients by parameter matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void optimize(HashMap<Matrix, Matrix> gradients) throws MatrixException, DynamicParamException {
+        for (Map.Entry<Matrix, Matrix> entry : gradients.entrySet()) {
+            Matrix matrix = entry.getKey();
+            if (matrix instanceof FMatrix) {
+                Matrix masterMatrix = masterMatrices.get(matrix);
+                if (masterMatrix == null) masterMatrices.put(matrix, masterMatrix = new DMatrix(matrix));
+                else if (!masterWeights) copyData(matrix, masterMatrix);
+                Matrix masterGradient = masterGradients.get(matrix);
+                if (masterGradient == null) masterGradients.put(matrix, masterGradient = new DMatrix(matrix.getRows(), matrix.getColumns(), matrix.getDepth()));
+                copyData(entry.getValue(), masterGradient);
+                optimizer.optimize(masterMatrix, masterGradient);
+                copyData(masterMatrix, matrix);
+            }
+            else optimizer.optimize(matrix, entry.getValue());
+        }
+    }
+
+    /**
+     * Copies data between double and single precision matrices of equal size. Data arrays are copied directly when accessible.
+     *
+     * @param source source matrix.
+     * @param target target matrix.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    private static void copyData(Matrix source, Matrix target) throws MatrixException {
+        if (!source.isTransposed() && !target.isTransposed()) {
+            if (source instanceof FMatrix sourceFMatrix && target instanceof DMatrix targetDMatrix) {
+                float[] sourceData = sourceFMatrix.getData();
+                double[] targetData = targetDMatrix.getData();
+                if (sourceData != null && targetData != null && sourceData.length == targetData.length) {
+                    for (int index = 0; index < sourceData.length; index++) targetData[index] = sourceData[index];
+                    return;
+                }
+            }
+            if (source instanceof DMatrix sourceDMatrix && target instanceof FMatrix targetFMatrix) {
+                double[] sourceData = sourceDMatrix.getData();
+                float[] targetData = targetFMatrix.getData();
+                if (sourceData != null && targetData != null && sourceData.length == targetData.length) {
+                    for (int index = 0; index < sourceData.length; index++) targetData[index] = (float)sourceData[index];
+                    return;
+                }
+            }
+        }
+        target.setEqualTo(source);
+    }
+
+    /**
+     * Returns optimizer by name.
+     *
+     * @return optimizer by name.
+     */
+    public String getOptimizerByName() {
+        return optimizer.getName();
+    }
+
+    /**
+     * Sets number of expressions removed from procedure when it was built.
+     *
+     * @param numberOfMergedExpressions number of expressions merged into identical expressions.
+     * @param numberOfFoldedExpressions number of folded constant expressions.
+     * @param numberOfEliminatedExpressions number of expressions eliminated as they were not contributing to output.
+     */
+    public void setRemovedExpressions(int numberOfMergedExpressions, int numberOfFoldedExpressions, int numberOfEliminatedExpressions) {
+        this.numberOfMergedExpressions = numberOfMergedExpressions;
+        this.numberOfFoldedExpressions = numberOfFoldedExpressions;
+        this.numberOfEliminatedExpressions = numberOfEliminatedExpressions;
+    }
+
+    /**
+     * Returns number of expressions merged into identical expressions when procedure was built.
+     *
+     * @return number of merged expressions.
+     */
+    public int getNumberOfMergedExpressions() {
+        return numberOfMergedExpressions;
+    }
+
+    /**
+     * Returns number of constant expressions folded when procedure was built.
+     *
+     * @return number of folded expressions.
+     */
+    public int getNumberOfFoldedExpressions() {
+        return numberOfFoldedExpressions;
+    }
+
+    /**
+     * Returns number of expressions eliminated when procedure was built as they were not contributing to output.
+     *
+     * @return number of eliminated expressions.
+     */
+    public int getNumberOfEliminatedExpressions() {
+        return numberOfEliminatedExpressions;
+    }
+
+    /**
+     * Returns number of expressions removed from procedure when it was built.
+     *
+     * @return number of removed expressions.
+     */
+    public int getNumberOfRemovedExpressions() {
+        return numberOfMergedExpressions + numberOfFoldedExpressions + numberOfEliminatedExpressions;
+    }
+
+    /**
+     * Prints number of expressions removed from procedure when it was built.
+     *
+     */
+    public void printRemovedExpressions() {
+        System.out.println("Removed expressions: " + getNumberOfRemovedExpressions() + " [ Merged: " + numberOfMergedExpressions + ", Folded: " + numberOfFoldedExpressions + ", Eliminated: " + numberOfEliminatedExpressions + " ]");
+    }
+
+    /**
+     * Returns expressions of expression chain in order of calculation.
+     *
+     * @return expressions of expression chain.
+     */
+    public ArrayList<Expression> getExpressions() {
+        ArrayList<Expression> expressions = new ArrayList<>();
+        for (Expression expression = expressionChain; expression != null; expression = expression.getNextExpression()) expressions.add(expression);
+        return expressions;
+    }
+
+    /**
+     * Prints expression chain.
+     *
+     */
+    public void printExpressionChain() {
+        expressionChain.printExpressionChain();
+    }
+
+    /**
+     * Prints gradient chain.
+     *
+     */
+    public void printGradientChain() {
+        gradientChain.printGradientChain();
+    }
+
+}
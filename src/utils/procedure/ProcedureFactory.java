@@ -7,6 +7,7 @@ package utils.procedure;
 
 import utils.configurable.DynamicParamException;
 import utils.matrix.BinaryFunction;
+import utils.matrix.ConvolutionAlgorithm;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.UnaryFunction;
@@ -184,7 +185,7 @@ public class ProcedureFactory implements Serializable {
     }
 
     /**
-     * Returns procedure
+     * Returns procedure. Procedure is optimized and chains of element wise expressions are fused.
      *
      * @param forwardProcedure reference to class that defines forward procedure.
      * @return resulting procedure.
@@ -192,6 +193,20 @@ public class ProcedureFactory implements Serializable {
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
     public Procedure getProcedure(ForwardProcedure forwardProcedure) throws MatrixException, DynamicParamException {
+        return getProcedure(forwardProcedure, true, true);
+    }
+
+    /**
+     * Returns procedure
+     *
+     * @param forwardProcedure reference to class that defines forward procedure.
+     * @param optimizeProcedure if true duplicate expressions are merged, constant expressions are folded and expressions not contributing to output are eliminated.
+     * @param fuseExpressions if true chains of element wise expressions are fused into fused expressions.
+     * @return resulting procedure.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public Procedure getProcedure(ForwardProcedure forwardProcedure, boolean optimizeProcedure, boolean fuseExpressions) throws MatrixException, DynamicParamException {
         registerConstantMatrices(forwardProcedure.getParameterMatrices());
         registerConstantMatrices(forwardProcedure.getConstantMatrices());
 
@@ -207,6 +222,14 @@ public class ProcedureFactory implements Serializable {
 
         nodeRegister.removeProcedureFactory();
 
+        ProcedureOptimizer procedureOptimizer = null;
+        if (optimizeProcedure) {
+            procedureOptimizer = new ProcedureOptimizer(nextProcedureData.expressions, nextProcedureData.gradients, nextProcedureData.nodes, nextProcedureData.inputNodes, nextProcedureData.outputNode, nextProcedureData.dependentNodes, forwardProcedure.getConstantMatrices(), forwardProcedure.getParameterMatrices(), forwardProcedure.getStopGradients(), currentNodeID + 1);
+            procedureOptimizer.optimize();
+        }
+
+        if (fuseExpressions) fuseExpressions(nextProcedureData);
+
         Expression previousExpression = null;
         for (Expression expression : nextProcedureData.expressions) {
             if (previousExpression != null) previousExpression.setNextExpression(expression);
@@ -219,7 +242,9 @@ public class ProcedureFactory implements Serializable {
             previousExpression = expression;
         }
 
-        return new Procedure(nextProcedureData.inputNodes, nextProcedureData.outputNode, nextProcedureData.nodes, nextProcedureData.expressions.get(0), nextProcedureData.gradients.get(0), nextProcedureData.dependentNodes, forwardProcedure.getParameterMatrices(), forwardProcedure.getStopGradients(), forwardProcedure.isReversedInput(), forwardProcedure.isJoinedInput());
+        Procedure procedure = new Procedure(nextProcedureData.inputNodes, nextProcedureData.outputNode, nextProcedureData.nodes, nextProcedureData.expressions.get(0), nextProcedureData.gradients.get(0), nextProcedureData.dependentNodes, forwardProcedure.getParameterMatrices(), forwardProcedure.getStopGradients(), forwardProcedure.isReversedInput(), forwardProcedure.isJoinedInput());
+        if (procedureOptimizer != null) procedure.setRemovedExpressions(procedureOptimizer.getNumberOfMergedExpressions(), procedureOptimizer.getNumberOfFoldedExpressions(), procedureOptimizer.getNumberOfEliminatedExpressions());
+        return procedure;
     }
 
     /**
@@ -261,22 +286,29 @@ public class ProcedureFactory implements Serializable {
     /**
      * Defines backward gradient calculation path for expressions.<br>
      * Records gradient path to current procedure data.<br>
+     * Expressions contributing to output are recorded in reverse order of calculation so that gradient of node consumed by multiple expressions is fully cumulated before it is propagated further.<br>
      *
      */
     private void defineGradientPath(ProcedureData procedureData) {
         Stack<Node> resultNodes = new Stack<>();
         HashMap<Node, Expression> reverseExpressionMap = new HashMap<>(procedureData.reverseExpressionMap);
+        HashSet<Expression> gradientExpressions = new HashSet<>();
         resultNodes.push(procedureData.outputNode);
         while (!resultNodes.empty()) {
             Expression expression = reverseExpressionMap.remove(resultNodes.pop());
             if (expression != null) {
-                procedureData.gradients.add(expression);
+                gradientExpressions.add(expression);
                 Node argument1 = expression.getArgument1();
                 if (argument1 != null) resultNodes.push(argument1);
                 Node argument2 = expression.getArgument2();
                 if (argument2 != null) resultNodes.push(argument2);
             }
         }
+        Iterator<Expression> expressionIterator = procedureData.expressions.descendingIterator();
+        while (expressionIterator.hasNext()) {
+            Expression expression = expressionIterator.next();
+            if (gradientExpressions.contains(expression)) procedureData.gradients.add(expression);
+        }
     }
 
     /**
@@ -316,6 +348,90 @@ public class ProcedureFactory implements Serializable {
         nextProcedureData.dependentNodes.add(toArgumentNode);
     }
 
+    /**
+     * Fuses chains of element wise expressions into fused expressions. Chain may be preceded by dot expression in which case chain is applied as epilogue of dot operation.<br>
+     * Chain is extended while result of current expression is consumed only by next expression and is not output, input or dependent node of procedure.<br>
+     * Each input of chain must be consumed only once within chain. Fused expression replaces chain in expression list and takes position of last expression of chain in gradient list.<br>
+     *
+     * @param procedureData procedure data.
+     * @throws MatrixException throws exception if creation of fused expression fails.
+     */
+    private void fuseExpressions(ProcedureData procedureData) throws MatrixException {
+        HashMap<Node, Integer> consumers = new HashMap<>();
+        for (Expression expression : procedureData.expressions) {
+            if (expression.getArgument1() != null) consumers.merge(expression.getArgument1(), 1, Integer::sum);
+            if (expression.getArgument2() != null) consumers.merge(expression.getArgument2(), 1, Integer::sum);
+        }
+
+        ArrayList<Expression> expressions = new ArrayList<>(procedureData.expressions);
+        LinkedList<Expression> fusedExpressions = new LinkedList<>();
+        int index = 0;
+        while (index < expressions.size()) {
+            Expression expression = expressions.get(index);
+            DotExpression dotExpression = expression instanceof DotExpression ? (DotExpression)expression : null;
+            ArrayList<AbstractUnaryExpression> chain = new ArrayList<>();
+            HashSet<Node> chainInputs = new HashSet<>();
+            Node chainResult = dotExpression != null ? dotExpression.getResult() : null;
+            int nextIndex = dotExpression != null ? index + 1 : index;
+            while (nextIndex < expressions.size()) {
+                Expression nextExpression = expressions.get(nextIndex);
+                if (!FusedExpression.isFusable(nextExpression)) break;
+                if (chainResult != null && (!isElidable(procedureData, consumers, chainResult) || (nextExpression.getArgument1() != chainResult && nextExpression.getArgument2() != chainResult))) break;
+                if (!addChainInput(chainInputs, nextExpression.getArgument1(), chainResult) || !addChainInput(chainInputs, nextExpression.getArgument2(), chainResult)) break;
+                chain.add((AbstractUnaryExpression)nextExpression);
+                chainResult = nextExpression.getResult();
+                nextIndex++;
+            }
+            if (chain.size() < (dotExpression != null ? 1 : 2)) {
+                fusedExpressions.add(expression);
+                index++;
+                continue;
+            }
+            ArrayList<Expression> members = new ArrayList<>();
+            if (dotExpression != null) members.add(dotExpression);
+            members.addAll(chain);
+            FusedExpression fusedExpression = new FusedExpression(expression.getExpressionID(), dotExpression, chain);
+            fusedExpressions.add(fusedExpression);
+            int position = procedureData.gradients.size();
+            for (Expression member : members) {
+                int memberPosition = procedureData.gradients.indexOf(member);
+                if (memberPosition >= 0) position = Math.min(position, memberPosition);
+            }
+            if (position < procedureData.gradients.size()) {
+                procedureData.gradients.set(position, fusedExpression);
+                procedureData.gradients.removeAll(members);
+            }
+            index = nextIndex;
+        }
+
+        procedureData.expressions.clear();
+        procedureData.expressions.addAll(fusedExpressions);
+    }
+
+    /**
+     * Checks if node can be elided from procedure i.e. it is consumed by single expression and it is not output, input or dependent node of procedure.
+     *
+     * @param procedureData procedure data.
+     * @param consumers number of consumers by node.
+     * @param node node.
+     * @return true if node can be elided otherwise false.
+     */
+    private boolean isElidable(ProcedureData procedureData, HashMap<Node, Integer> consumers, Node node) {
+        return consumers.getOrDefault(node, 0) == 1 && node != procedureData.outputNode && !procedureData.dependentNodes.contains(node) && !procedureData.inputNodes.containsValue(node);
+    }
+
+    /**
+     * Adds argument as input of chain unless argument is result of chain.
+     *
+     * @param chainInputs inputs of chain.
+     * @param argument argument.
+     * @param chainResult current result of chain.
+     * @return false if argument is already input of chain otherwise true.
+     */
+    private boolean addChainInput(HashSet<Node> chainInputs, Node argument, Node chainResult) {
+        return argument == null || argument == chainResult || chainInputs.add(argument);
+    }
+
     /**
      * Defines node for procedure. Sets input and result nodes as non-constant nodes.
      *
@@ -466,6 +582,21 @@ public class ProcedureFactory implements Serializable {
         storeExpression(new DotExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result)));
     }
 
+    /**
+     * Records attention expression to procedure factory.
+     *
+     * @param expressionLock unique expression lock key.
+     * @param argument1 first argument of expression.
+     * @param argument2 second argument of expression.
+     * @param result result of expression.
+     * @param scalingFactor scaling factor applied to attention scores.
+     * @throws MatrixException throws exception if adding of expression fails.
+     */
+    public void createAttentionExpression(double expressionLock, Matrix argument1, Matrix argument2, Matrix result, double scalingFactor) throws MatrixException {
+        if (checkOngoingExpression(expressionLock, argument1)) return;
+        storeExpression(new AttentionExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result), scalingFactor));
+    }
+
     /**
      * Records multiply expression to procedure factory.
      *
@@ -504,11 +635,12 @@ public class ProcedureFactory implements Serializable {
      * @param stride stride of convolution operation.
      * @param dilation dilation step size.
      * @param isDepthSeparable if true convolution is depth separable
+     * @param convolutionAlgorithm algorithm used to execute operation.
      * @throws MatrixException throws exception if adding of expression fails.
      */
-    public void createConvolveExpression(double expressionLock, Matrix argument1, Matrix argument2, Matrix result, int stride, int dilation, boolean isDepthSeparable) throws MatrixException {
+    public void createConvolveExpression(double expressionLock, Matrix argument1, Matrix argument2, Matrix result, int stride, int dilation, boolean isDepthSeparable, ConvolutionAlgorithm convolutionAlgorithm) throws MatrixException {
         if (checkOngoingExpression(expressionLock, argument1)) return;
-        storeExpression(new ConvolveExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result), stride, dilation, isDepthSeparable));
+        storeExpression(new ConvolveExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result), stride, dilation, isDepthSeparable, convolutionAlgorithm));
     }
 
     /**
@@ -521,11 +653,12 @@ public class ProcedureFactory implements Serializable {
      * @param stride stride for operation.
      * @param dilation dilation step size.
      * @param isDepthSeparable if true convolution is depth separable
+     * @param convolutionAlgorithm algorithm used to execute operation.
      * @throws MatrixException throws exception if adding of expression fails.
      */
-    public void createCrosscorrelateExpression(double expressionLock, Matrix argument1, Matrix argument2, Matrix result, int stride, int dilation, boolean isDepthSeparable) throws MatrixException {
+    public void createCrosscorrelateExpression(double expressionLock, Matrix argument1, Matrix argument2, Matrix result, int stride, int dilation, boolean isDepthSeparable, ConvolutionAlgorithm convolutionAlgorithm) throws MatrixException {
         if (checkOngoingExpression(expressionLock, argument1)) return;
-        storeExpression(new CrosscorrelateExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result), stride, dilation, isDepthSeparable));
+        storeExpression(new CrosscorrelateExpression(currentExpressionID++, defineNode(argument1), defineNode(argument2), defineNode(result), stride, dilation, isDepthSeparable, convolutionAlgorithm));
     }
 
     /**
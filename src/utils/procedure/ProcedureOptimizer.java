@@ -0,0 +1,404 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure;
+
+import utils.configurable.DynamicParamException;
+import utils.matrix.BinaryFunctionType;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.matrix.UnaryFunctionType;
+import utils.procedure.expression.*;
+import utils.procedure.node.Node;
+import utils.procedure.node.SingleNode;
+
+import java.util.*;
+
+/**
+ * Optimizes recorded procedure before its expressions are linked into expression and gradient chains.<br>
+ * Merges expressions having same operation and same arguments (common subexpression elimination), calculates expressions having only constant arguments once at build time (constant folding)
+ * and removes expressions whose result is not consumed by output or dependent nodes of procedure (dead node elimination).<br>
+ * Only deterministic element wise, dot, unary function and binary function expressions are merged or folded.<br>
+ * If any expression is removed gradient path is redefined in reverse order of expressions so that gradient of node having several consumers is fully cumulated before it is propagated further.<br>
+ *
+ */
+class ProcedureOptimizer {
+
+    /**
+     * Expressions for forward calculation in order of calculation.
+     *
+     */
+    private final LinkedList<Expression> expressions;
+
+    /**
+     * Expressions for backward gradient calculation in order of calculation.
+     *
+     */
+    private final LinkedList<Expression> gradients;
+
+    /**
+     * Nodes of procedure.
+     *
+     */
+    private final HashSet<Node> nodes;
+
+    /**
+     * Input nodes of procedure.
+     *
+     */
+    private final HashMap<Integer, Node> inputNodes;
+
+    /**
+     * Output node of procedure.
+     *
+     */
+    private final Node outputNode;
+
+    /**
+     * Dependent nodes of procedure.
+     *
+     */
+    private final HashSet<Node> dependentNodes;
+
+    /**
+     * Constant matrices of procedure.
+     *
+     */
+    private final HashSet<Matrix> constantMatrices;
+
+    /**
+     * Parameter matrices of procedure.
+     *
+     */
+    private final HashSet<Matrix> parameterMatrices;
+
+    /**
+     * Stop gradient matrices of procedure.
+     *
+     */
+    private final HashSet<Matrix> stopGradientMatrices;
+
+    /**
+     * ID for next node created by optimizer.
+     *
+     */
+    private int nextNodeID;
+
+    /**
+     * Number of merged expressions.
+     *
+     */
+    private int numberOfMergedExpressions = 0;
+
+    /**
+     * Number of folded expressions.
+     *
+     */
+    private int numberOfFoldedExpressions = 0;
+
+    /**
+     * Number of eliminated expressions.
+     *
+     */
+    private int numberOfEliminatedExpressions = 0;
+
+    /**
+     * Constructor for procedure optimizer.
+     *
+     * @param expressions expressions for forward calculation.
+     * @param gradients expressions for backward gradient calculation.
+     * @param nodes nodes of procedure.
+     * @param inputNodes input nodes of procedure.
+     * @param outputNode output node of procedure.
+     * @param dependentNodes dependent nodes of procedure.
+     * @param constantMatrices constant matrices of procedure.
+     * @param parameterMatrices parameter matrices of procedure.
+     * @param stopGradientMatrices stop gradient matrices of procedure.
+     * @param nextNodeID ID for next node created by optimizer.
+     */
+    ProcedureOptimizer(LinkedList<Expression> expressions, LinkedList<Expression> gradients, HashSet<Node> nodes, HashMap<Integer, Node> inputNodes, Node outputNode, HashSet<Node> dependentNodes, HashSet<Matrix> constantMatrices, HashSet<Matrix> parameterMatrices, HashSet<Matrix> stopGradientMatrices, int nextNodeID) {
+        this.expressions = expressions;
+        this.gradients = gradients;
+        this.nodes = nodes;
+        this.inputNodes = inputNodes;
+        this.outputNode = outputNode;
+        this.dependentNodes = dependentNodes;
+        this.constantMatrices = constantMatrices != null ? constantMatrices : new HashSet<>();
+        this.parameterMatrices = parameterMatrices != null ? parameterMatrices : new HashSet<>();
+        this.stopGradientMatrices = stopGradientMatrices != null ? stopGradientMatrices : new HashSet<>();
+        this.nextNodeID = nextNodeID;
+    }
+
+    /**
+     * Optimizes procedure.
+     *
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void optimize() throws MatrixException, DynamicParamException {
+        mergeExpressions();
+        foldConstants();
+        eliminateDeadExpressions();
+        if (getNumberOfRemovedExpressions() > 0) redefineGradientPath();
+    }
+
+    /**
+     * Returns number of merged expressions.
+     *
+     * @return number of merged expressions.
+     */
+    int getNumberOfMergedExpressions() {
+        return numberOfMergedExpressions;
+    }
+
+    /**
+     * Returns number of folded expressions.
+     *
+     * @return number of folded expressions.
+     */
+    int getNumberOfFoldedExpressions() {
+        return numberOfFoldedExpressions;
+    }
+
+    /**
+     * Returns number of eliminated expressions.
+     *
+     * @return number of eliminated expressions.
+     */
+    int getNumberOfEliminatedExpressions() {
+        return numberOfEliminatedExpressions;
+    }
+
+    /**
+     * Returns number of removed expressions.
+     *
+     * @return number of removed expressions.
+     */
+    int getNumberOfRemovedExpressions() {
+        return numberOfMergedExpressions + numberOfFoldedExpressions + numberOfEliminatedExpressions;
+    }
+
+    /**
+     * Merges expressions having same operation and same arguments into first such expression. Consumers of merged expression are redirected to result of first expression.
+     *
+     * @throws MatrixException throws exception if redirection of consumers fails.
+     */
+    private void mergeExpressions() throws MatrixException {
+        HashMap<List<Object>, Expression> uniqueExpressions = new HashMap<>();
+        ListIterator<Expression> iterator = expressions.listIterator();
+        while (iterator.hasNext()) {
+            Expression expression = iterator.next();
+            if (!isDeterministic(expression)) continue;
+            List<Object> key = getKey(expression);
+            Expression uniqueExpression = uniqueExpressions.get(key);
+            if (uniqueExpression == null) {
+                uniqueExpressions.put(key, expression);
+                continue;
+            }
+            if (!isRemovable(expression.getResult()) || isStopGradient(uniqueExpression.getResult()) || isParameter(expression.getArgument1()) || isParameter(expression.getArgument2())) continue;
+            replaceNode(expression.getResult(), uniqueExpression.getResult());
+            iterator.remove();
+            gradients.remove(expression);
+            removeNode(expression.getResult());
+            numberOfMergedExpressions++;
+        }
+    }
+
+    /**
+     * Calculates expressions having only constant arguments once and replaces their results with constant nodes.
+     *
+     * @throws MatrixException throws exception if calculation of expression fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    private void foldConstants() throws MatrixException, DynamicParamException {
+        HashSet<Node> constantNodes = new HashSet<>();
+        for (Node node : nodes) if (isConstant(node)) constantNodes.add(node);
+        ListIterator<Expression> iterator = expressions.listIterator();
+        while (iterator.hasNext()) {
+            Expression expression = iterator.next();
+            if (!isDeterministic(expression) || !isRemovable(expression.getResult())) continue;
+            if (!constantNodes.contains(expression.getArgument1()) || (expression.getArgument2() != null && !constantNodes.contains(expression.getArgument2()))) continue;
+            Node result = expression.getResult();
+            ((AbstractUnaryExpression)expression).calculateExpression(0);
+            Matrix constantMatrix = result.getMatrix(0);
+            result.reset();
+            if (constantMatrix == null) continue;
+            constantMatrix.setName(result.getName());
+            Node constantNode = new SingleNode(nextNodeID++, constantMatrix);
+            constantNode.setStopGradient(true);
+            nodes.add(constantNode);
+            constantNodes.add(constantNode);
+            replaceNode(result, constantNode);
+            iterator.remove();
+            gradients.remove(expression);
+            removeNode(result);
+            numberOfFoldedExpressions++;
+        }
+    }
+
+    /**
+     * Removes expressions whose result is not consumed by output node or dependent nodes of procedure. Expressions are retained if none of them is consumed.
+     *
+     */
+    private void eliminateDeadExpressions() {
+        HashSet<Expression> liveExpressions = getProducingExpressions(outputNode, dependentNodes);
+        if (liveExpressions.isEmpty()) return;
+        ArrayList<Expression> deadExpressions = new ArrayList<>();
+        for (Expression expression : expressions) if (!liveExpressions.contains(expression)) deadExpressions.add(expression);
+        expressions.removeAll(deadExpressions);
+        gradients.removeAll(deadExpressions);
+        for (Expression expression : deadExpressions) removeNode(expression.getResult());
+        numberOfEliminatedExpressions += deadExpressions.size();
+    }
+
+    /**
+     * Redefines gradient path as expressions contributing to output node in reverse order of forward calculation.
+     *
+     */
+    private void redefineGradientPath() {
+        HashSet<Expression> gradientExpressions = getProducingExpressions(outputNode, new HashSet<>());
+        gradients.clear();
+        Iterator<Expression> iterator = expressions.descendingIterator();
+        while (iterator.hasNext()) {
+            Expression expression = iterator.next();
+            if (gradientExpressions.contains(expression)) gradients.add(expression);
+        }
+    }
+
+    /**
+     * Returns expressions that directly or indirectly produce given nodes.
+     *
+     * @param node node.
+     * @param otherNodes other nodes.
+     * @return producing expressions.
+     */
+    private HashSet<Expression> getProducingExpressions(Node node, HashSet<Node> otherNodes) {
+        HashMap<Node, Expression> producers = new HashMap<>();
+        for (Expression expression : expressions) producers.put(expression.getResult(), expression);
+        HashSet<Expression> producingExpressions = new HashSet<>();
+        Stack<Node> resultNodes = new Stack<>();
+        resultNodes.push(node);
+        for (Node otherNode : otherNodes) resultNodes.push(otherNode);
+        while (!resultNodes.empty()) {
+            Expression expression = producers.get(resultNodes.pop());
+            if (expression != null && producingExpressions.add(expression)) {
+                if (expression.getArgument1() != null) resultNodes.push(expression.getArgument1());
+                if (expression.getArgument2() != null) resultNodes.push(expression.getArgument2());
+            }
+        }
+        return producingExpressions;
+    }
+
+    /**
+     * Checks if expression is deterministic expression that can be merged or folded.
+     *
+     * @param expression expression.
+     * @return true if expression is deterministic otherwise false.
+     */
+    private static boolean isDeterministic(Expression expression) {
+        if (expression instanceof AddExpression || expression instanceof SubtractExpression || expression instanceof MultiplyExpression || expression instanceof DivideExpression || expression instanceof DotExpression) return true;
+        if (expression instanceof UnaryFunctionExpression unaryFunctionExpression) {
+            UnaryFunctionType unaryFunctionType = unaryFunctionExpression.getUnaryFunction().getType();
+            return unaryFunctionType != UnaryFunctionType.GUMBEL_SOFTMAX && unaryFunctionType != UnaryFunctionType.CUSTOM;
+        }
+        if (expression instanceof BinaryFunctionExpression binaryFunctionExpression) {
+            return binaryFunctionExpression.getBinaryFunction().getType() != BinaryFunctionType.CUSTOM;
+        }
+        return false;
+    }
+
+    /**
+     * Returns key identifying operation and arguments of expression. Arguments of commutative operations are ordered.
+     *
+     * @param expression expression.
+     * @return key of expression.
+     */
+    private static List<Object> getKey(Expression expression) {
+        Object function = null;
+        if (expression instanceof UnaryFunctionExpression unaryFunctionExpression) function = unaryFunctionExpression.getUnaryFunction();
+        if (expression instanceof BinaryFunctionExpression binaryFunctionExpression) function = binaryFunctionExpression.getBinaryFunction();
+        Node argument1 = expression.getArgument1();
+        Node argument2 = expression.getArgument2();
+        boolean isCommutative = expression instanceof AddExpression || expression instanceof MultiplyExpression;
+        if (isCommutative && System.identityHashCode(argument2) < System.identityHashCode(argument1)) {
+            Node argument = argument1;
+            argument1 = argument2;
+            argument2 = argument;
+        }
+        return Arrays.asList(expression.getClass(), function, argument1, argument2);
+    }
+
+    /**
+     * Checks if node is constant node i.e. single node referring to constant matrix that is not parameter or input of procedure.
+     *
+     * @param node node.
+     * @return true if node is constant otherwise false.
+     */
+    private boolean isConstant(Node node) {
+        if (node.isMultiIndex() || inputNodes.containsValue(node) || dependentNodes.contains(node) || isParameter(node)) return false;
+        for (Matrix constantMatrix : constantMatrices) if (node.isReferenceOf(constantMatrix)) return true;
+        return false;
+    }
+
+    /**
+     * Checks if node refers to parameter matrix. Gradient of parameter is averaged over number of times it has been cumulated hence expressions consuming parameters are not merged.
+     *
+     * @param node node.
+     * @return true if node refers to parameter matrix otherwise false.
+     */
+    private boolean isParameter(Node node) {
+        if (node == null) return false;
+        for (Matrix parameterMatrix : parameterMatrices) if (node.isReferenceOf(parameterMatrix)) return true;
+        return false;
+    }
+
+    /**
+     * Checks if gradient is stopped for node.
+     *
+     * @param node node.
+     * @return true if gradient is stopped for node otherwise false.
+     */
+    private boolean isStopGradient(Node node) {
+        for (Matrix stopGradientMatrix : stopGradientMatrices) if (node.isReferenceOf(stopGradientMatrix)) return true;
+        return false;
+    }
+
+    /**
+     * Checks if result node of expression can be removed from procedure i.e. it is not output, input, dependent or stop gradient node.
+     *
+     * @param node node.
+     * @return true if node can be removed otherwise false.
+     */
+    private boolean isRemovable(Node node) {
+        return node != outputNode && !dependentNodes.contains(node) && !inputNodes.containsValue(node) && !isStopGradient(node);
+    }
+
+    /**
+     * Redirects expressions consuming node to replacing node.
+     *
+     * @param node node to be replaced.
+     * @param replacement replacing node.
+     * @throws MatrixException throws exception if dimensions of node and replacing node are not matching.
+     */
+    private void replaceNode(Node node, Node replacement) throws MatrixException {
+        for (Expression expression : expressions) {
+            if (expression instanceof AbstractUnaryExpression abstractUnaryExpression) abstractUnaryExpression.replaceArgument(node, replacement);
+        }
+    }
+
+    /**
+     * Removes node from procedure if node is removable and it is not consumed by any remaining expression.
+     *
+     * @param node node.
+     */
+    private void removeNode(Node node) {
+        if (!isRemovable(node)) return;
+        for (Expression expression : expressions) {
+            if (expression.getArgument1() == node || expression.getArgument2() == node || expression.getResult() == node) return;
+        }
+        nodes.remove(node);
+    }
+
+}
@@ -10,17 +10,22 @@ import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements abstract binary expression.<br>
  *
  */
 public abstract class AbstractBinaryExpression extends AbstractUnaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = 4498033817480152974L;
+
     /**
      * Node for second argument.
      *
      */
-    protected final Node argument2;
+    protected Node argument2;
 
     /**
      * Constructor for abstract binary expression.
@@ -47,6 +52,20 @@ public abstract class AbstractBinaryExpression extends AbstractUnaryExpression {
         return argument2;
     }
 
+    /**
+     * Replaces argument node of expression with another node having equal dimensions. Used when procedure is optimized after it has been recorded.
+     *
+     * @param argument argument node to be replaced.
+     * @param replacement replacing node.
+     * @throws MatrixException throws exception if dimensions of argument and replacing node are not matching.
+     */
+    public void replaceArgument(Node argument, Node replacement) throws MatrixException {
+        super.replaceArgument(argument, replacement);
+        if (argument2 != argument) return;
+        checkReplacement(argument, replacement);
+        argument2 = replacement;
+    }
+
     /**
      * Calculates expression.
      *
@@ -95,6 +114,32 @@ public abstract class AbstractBinaryExpression extends AbstractUnaryExpression {
      */
     protected abstract Matrix calculateArgument2Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException;
 
+    /**
+     * Calculates gradient of expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected void calculateGradientBatch(int batchSize, int numberOfEntries) throws MatrixException {
+        super.calculateGradientBatch(batchSize, numberOfEntries);
+        if (!argument2.isStopGradient()) cumulateBatchGradient(argument2, calculateBatchArgument2Gradient(result.getBatchGradient(), batchArgument1, batchArgument2, result.getBatchMatrix()), batchSize, numberOfEntries);
+    }
+
+    /**
+     * Calculates argument 2 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument2 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument2Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        throw new MatrixException(getExpressionName() + ": Batch execution is not supported.");
+    }
+
     /**
      * Check is argument matrices are defined for specific sample index.
      *
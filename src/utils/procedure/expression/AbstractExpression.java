@@ -6,11 +6,15 @@
 package utils.procedure.expression;
 
 import utils.configurable.DynamicParamException;
+import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
+import utils.procedure.node.BufferArena;
 import utils.procedure.node.Node;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -54,6 +58,12 @@ public abstract class AbstractExpression implements Expression, Serializable {
      */
     private boolean isActive = true;
 
+    /**
+     * Buffer arena from which expression takes its result buffers.
+     *
+     */
+    private transient BufferArena bufferArena;
+
     /**
      * Constructor for abstract expression.
      *
@@ -115,6 +125,36 @@ public abstract class AbstractExpression implements Expression, Serializable {
         this.previousExpression = previousExpression;
     }
 
+    /**
+     * Returns next expression of expression calculation chain.
+     *
+     * @return next expression or null if expression is last expression of chain.
+     */
+    public Expression getNextExpression() {
+        return nextExpression;
+    }
+
+    /**
+     * Returns nodes consumed by expression.
+     *
+     * @return nodes consumed by expression.
+     */
+    public List<Node> getArguments() {
+        List<Node> arguments = new ArrayList<>();
+        if (getArgument1() != null) arguments.add(getArgument1());
+        if (getArgument2() != null) arguments.add(getArgument2());
+        return arguments;
+    }
+
+    /**
+     * Returns nodes calculated inside expression in addition to its result.
+     *
+     * @return nodes calculated inside expression in addition to its result.
+     */
+    public List<Node> getIntermediateNodes() {
+        return new ArrayList<>();
+    }
+
     /**
      * Returns true is expression is executed as single step otherwise false.
      *
@@ -156,6 +196,35 @@ public abstract class AbstractExpression implements Expression, Serializable {
         return isActive;
     }
 
+    /**
+     * Sets buffer arena from which expression and its following expressions take their result buffers.
+     *
+     * @param bufferArena buffer arena or null if buffer arena is not used.
+     */
+    public void setBufferArena(BufferArena bufferArena) {
+        this.bufferArena = bufferArena;
+        if (nextExpression != null) nextExpression.setBufferArena(bufferArena);
+    }
+
+    /**
+     * Returns buffer from buffer arena. Precision of buffer is defined by first matrix.<br>
+     * Returns null if buffer arena is not used or first or second matrix is not dense unmasked non-scalar matrix.<br>
+     *
+     * @param bufferType buffer type.
+     * @param owner owner of buffer.
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param first first matrix.
+     * @param second second matrix (optional).
+     * @return buffer or null if buffer is not available.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    protected Matrix getBuffer(BufferArena.BufferType bufferType, Object owner, int rows, int columns, int depth, Matrix first, Matrix second) throws MatrixException {
+        if (bufferArena == null || (second != null && !BufferArena.isBufferable(second))) return null;
+        return bufferArena.getBuffer(bufferType, owner, rows, columns, depth, first);
+    }
+
     /**
      * Calculates entire expression chain including regulation.
      *
@@ -198,7 +267,16 @@ public abstract class AbstractExpression implements Expression, Serializable {
      * @throws MatrixException throws exception if calculation fails.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
      */
-    protected abstract void calculateExpression(int sampleIndex) throws MatrixException, DynamicParamException;
+    public abstract void calculateExpression(int sampleIndex) throws MatrixException, DynamicParamException;
+
+    /**
+     * Checks if this and all following expressions of expression chain are calculated sample by sample i.e. none of them is executed as single step over all samples.
+     *
+     * @return true if expression chain is calculated sample by sample otherwise false.
+     */
+    public boolean isSampleWise() {
+        return !executeAsSingleStep() && (nextExpression == null || nextExpression.isSampleWise());
+    }
 
     /**
      * Calculates entire gradient expression chain including regulation.
@@ -234,6 +312,79 @@ public abstract class AbstractExpression implements Expression, Serializable {
         if (previousExpression != null) previousExpression.calculateGradientStep(sampleIndices, numberOfGradientSteps);
     }
 
+    /**
+     * Checks if this and all following expressions of expression chain can be executed as single column stacked batch.
+     *
+     * @return true if expression chain can be executed as batch otherwise false.
+     */
+    public boolean isBatchExecutable() {
+        return supportsBatchExecution() && (nextExpression == null || nextExpression.isBatchExecutable());
+    }
+
+    /**
+     * Checks if expression itself can be executed as single column stacked batch.
+     *
+     * @return true if expression can be executed as batch otherwise false.
+     */
+    public boolean isBatchSupported() {
+        return supportsBatchExecution();
+    }
+
+    /**
+     * Returns true if expression can be executed as single column stacked batch otherwise false.
+     *
+     * @return true if expression can be executed as single column stacked batch otherwise false.
+     */
+    protected boolean supportsBatchExecution() {
+        return false;
+    }
+
+    /**
+     * Calculates entire expression chain as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpressionBatchStep(int batchSize) throws MatrixException, DynamicParamException {
+        calculateExpressionBatch(batchSize);
+        if (nextExpression != null) nextExpression.calculateExpressionBatchStep(batchSize);
+    }
+
+    /**
+     * Calculates expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpressionBatch(int batchSize) throws MatrixException, DynamicParamException {
+        throw new MatrixException(getExpressionName() + ": Batch execution is not supported.");
+    }
+
+    /**
+     * Calculates entire gradient expression chain as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    public void calculateGradientBatchStep(int batchSize, int numberOfEntries) throws MatrixException {
+        calculateGradientBatch(batchSize, numberOfEntries);
+        if (previousExpression != null) previousExpression.calculateGradientBatchStep(batchSize, numberOfEntries);
+    }
+
+    /**
+     * Calculates gradient of expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected void calculateGradientBatch(int batchSize, int numberOfEntries) throws MatrixException {
+        throw new MatrixException(getExpressionName() + ": Batch execution is not supported.");
+    }
+
     /**
      * Calculates gradient of expression.
      *
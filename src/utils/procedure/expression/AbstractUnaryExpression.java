@@ -8,19 +8,26 @@ package utils.procedure.expression;
 import utils.configurable.DynamicParamException;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
+import utils.matrix.Precision;
+import utils.procedure.node.BufferArena;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements abstract unary expression.<br>
  *
  */
 public abstract class AbstractUnaryExpression extends AbstractExpression {
 
+    @Serial
+    private static final long serialVersionUID = -6470987974498155327L;
+
     /**
      * Node for first argument.
      *
      */
-    protected final Node argument1;
+    protected Node argument1;
 
     /**
      * Node for result.
@@ -28,6 +35,18 @@ public abstract class AbstractUnaryExpression extends AbstractExpression {
      */
     protected final Node result;
 
+    /**
+     * Argument 1 as batch matrix used in latest batch calculation.
+     *
+     */
+    protected transient Matrix batchArgument1;
+
+    /**
+     * Argument 2 as batch matrix used in latest batch calculation.
+     *
+     */
+    protected transient Matrix batchArgument2;
+
     /**
      * Constructor for abstract unary expression.
      *
@@ -52,6 +71,32 @@ public abstract class AbstractUnaryExpression extends AbstractExpression {
         return argument1;
     }
 
+    /**
+     * Replaces argument node of expression with another node having equal dimensions. Used when procedure is optimized after it has been recorded.
+     *
+     * @param argument argument node to be replaced.
+     * @param replacement replacing node.
+     * @throws MatrixException throws exception if dimensions of argument and replacing node are not matching.
+     */
+    public void replaceArgument(Node argument, Node replacement) throws MatrixException {
+        if (argument1 != argument) return;
+        checkReplacement(argument, replacement);
+        argument1 = replacement;
+    }
+
+    /**
+     * Checks that dimensions of argument node and replacing node are matching.
+     *
+     * @param argument argument node to be replaced.
+     * @param replacement replacing node.
+     * @throws MatrixException throws exception if dimensions of argument and replacing node are not matching.
+     */
+    protected void checkReplacement(Node argument, Node replacement) throws MatrixException {
+        if (argument.getRows() != replacement.getRows() || argument.getColumns() != replacement.getColumns() || argument.getDepth() != replacement.getDepth() || argument.isScalar() != replacement.isScalar()) {
+            throw new MatrixException(getExpressionName() + ": Dimensions of replacing node " + replacement.getName() + " are not matching with argument " + argument.getName());
+        }
+    }
+
     /**
      * Checks if argument matrix is defined for specific sample index.
      *
@@ -81,6 +126,62 @@ public abstract class AbstractUnaryExpression extends AbstractExpression {
         return result;
     }
 
+    /**
+     * Returns result buffer of given dimensions for result node. Precision of buffer is defined by first matrix.
+     *
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param first first matrix.
+     * @param second second matrix (optional).
+     * @return result buffer or null if buffer is not available.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    protected Matrix getResultBuffer(int rows, int columns, int depth, Matrix first, Matrix second) throws MatrixException {
+        return getBuffer(BufferArena.BufferType.MATRIX, result, rows, columns, depth, first, second);
+    }
+
+    /**
+     * Returns result buffer with dimensions of first matrix for result node. Precision of buffer is defined by first matrix.
+     *
+     * @param first first matrix.
+     * @param second second matrix (optional).
+     * @return result buffer or null if buffer is not available.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    protected Matrix getResultBuffer(Matrix first, Matrix second) throws MatrixException {
+        return getResultBuffer(first.getRows(), first.getColumns(), first.getDepth(), first, second);
+    }
+
+    /**
+     * Returns scratch buffer for gradient of given argument with dimensions of first matrix. Precision of buffer is defined by first matrix.
+     *
+     * @param argumentIndex argument index (1 or 2).
+     * @param first first matrix.
+     * @param second second matrix (optional).
+     * @return scratch buffer or null if buffer is not available.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    protected Matrix getArgumentGradientBuffer(int argumentIndex, Matrix first, Matrix second) throws MatrixException {
+        return getArgumentGradientBuffer(argumentIndex, first.getRows(), first.getColumns(), first.getDepth(), first, second);
+    }
+
+    /**
+     * Returns scratch buffer for gradient of given argument. Precision of buffer is defined by first matrix.
+     *
+     * @param argumentIndex argument index (1 or 2).
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param first first matrix.
+     * @param second second matrix (optional).
+     * @return scratch buffer or null if buffer is not available.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    protected Matrix getArgumentGradientBuffer(int argumentIndex, int rows, int columns, int depth, Matrix first, Matrix second) throws MatrixException {
+        return getBuffer(argumentIndex == 1 ? BufferArena.BufferType.ARGUMENT1_GRADIENT : BufferArena.BufferType.ARGUMENT2_GRADIENT, this, rows, columns, depth, first, second);
+    }
+
     /**
      * Calculates expression.
      *
@@ -193,6 +294,132 @@ public abstract class AbstractUnaryExpression extends AbstractExpression {
      */
     protected abstract Matrix calculateArgument1Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException;
 
+    /**
+     * Checks if arguments of expression allow single column stacked batch execution.<br>
+     * Arguments must be non-scalar and at least one of arguments must be multi index (sample specific) node.<br>
+     *
+     * @return true if arguments allow batch execution otherwise false.
+     */
+    protected boolean hasBatchArguments() {
+        if (argument1.isScalar() || (getArgument2() != null && getArgument2().isScalar())) return false;
+        return argument1.isMultiIndex() || (getArgument2() != null && getArgument2().isMultiIndex());
+    }
+
+    /**
+     * Returns argument as batch matrix. Non-multi index argument is tiled column wise to match batch size.
+     *
+     * @param argument argument node.
+     * @param batchSize number of samples in batch.
+     * @return argument as batch matrix.
+     * @throws MatrixException throws exception if argument is not defined.
+     */
+    protected Matrix getBatchArgument(Node argument, int batchSize) throws MatrixException {
+        if (argument.isMultiIndex()) {
+            if (argument.getBatchMatrix() == null) throw new MatrixException(getExpressionName() + ": Batch argument " + argument.getName() + " for operation is not defined.");
+            return argument.getBatchMatrix();
+        }
+        Matrix matrix = argument.getMatrix();
+        if (batchSize == 1) return matrix;
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int totalDepth = matrix.getDepth();
+        Matrix batchMatrix = Precision.getPrecision(matrix).getNewMatrix(rows, columns * batchSize, totalDepth);
+        for (int batchIndex = 0; batchIndex < batchSize; batchIndex++) {
+            int columnOffset = batchIndex * columns;
+            for (int depth = 0; depth < totalDepth; depth++) {
+                for (int column = 0; column < columns; column++) {
+                    for (int row = 0; row < rows; row++) {
+                        batchMatrix.setValue(row, columnOffset + column, depth, matrix.getValue(row, column, depth));
+                    }
+                }
+            }
+        }
+        return batchMatrix;
+    }
+
+    /**
+     * Cumulates batch gradient into argument. For non-multi index argument column stacked gradients are summed over batch.
+     *
+     * @param argument argument node.
+     * @param batchGradient batch gradient.
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    protected void cumulateBatchGradient(Node argument, Matrix batchGradient, int batchSize, int numberOfEntries) throws MatrixException {
+        if (argument.isMultiIndex() || batchGradient.getColumns() == argument.getColumns()) {
+            argument.cumulateBatchGradient(batchGradient, numberOfEntries);
+            return;
+        }
+        int rows = argument.getRows();
+        int columns = argument.getColumns();
+        int totalDepth = argument.getDepth();
+        Matrix gradient = Precision.getPrecision(batchGradient).getNewMatrix(rows, columns, totalDepth);
+        for (int batchIndex = 0; batchIndex < batchSize; batchIndex++) {
+            int columnOffset = batchIndex * columns;
+            for (int depth = 0; depth < totalDepth; depth++) {
+                for (int column = 0; column < columns; column++) {
+                    for (int row = 0; row < rows; row++) {
+                        gradient.setValue(row, column, depth, gradient.getValue(row, column, depth) + batchGradient.getValue(row, columnOffset + column, depth));
+                    }
+                }
+            }
+        }
+        argument.cumulateBatchGradient(gradient, numberOfEntries);
+    }
+
+    /**
+     * Calculates expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpressionBatch(int batchSize) throws MatrixException, DynamicParamException {
+        batchArgument1 = getBatchArgument(argument1, batchSize);
+        batchArgument2 = getArgument2() != null ? getBatchArgument(getArgument2(), batchSize) : null;
+        result.setBatchMatrix(calculateBatchResult(batchArgument1, batchArgument2));
+    }
+
+    /**
+     * Calculates batch result matrix.
+     *
+     * @param argument1Matrix argument1 batch matrix.
+     * @param argument2Matrix argument2 batch matrix.
+     * @return batch result matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    protected Matrix calculateBatchResult(Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException, DynamicParamException {
+        throw new MatrixException(getExpressionName() + ": Batch execution is not supported.");
+    }
+
+    /**
+     * Calculates gradient of expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected void calculateGradientBatch(int batchSize, int numberOfEntries) throws MatrixException {
+        if (result.getBatchGradient() == null) throw new MatrixException(getExpressionName() + ": Result batch gradient not defined");
+        if (!argument1.isStopGradient()) cumulateBatchGradient(argument1, calculateBatchArgument1Gradient(result.getBatchGradient(), batchArgument1, batchArgument2, result.getBatchMatrix()), batchSize, numberOfEntries);
+    }
+
+    /**
+     * Calculates argument1 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument1 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument1Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        throw new MatrixException(getExpressionName() + ": Batch execution is not supported.");
+    }
+
     /**
      * Prints gradient.
      *
@@ -0,0 +1,186 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure.expression;
+
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.matrix.operation.AttentionMatrixOperation;
+import utils.procedure.node.Node;
+
+import java.io.Serial;
+
+/**
+ * Implements expression for dot attention operation with streaming softmax.<br>
+ * First argument is query and second argument is transposed keys stacked vertically on top of values.<br>
+ * Attention score matrix is neither stored nor given own node. Gradients of both arguments are calculated in single pass that recalculates attention scores.<br>
+ *
+ */
+public class AttentionExpression extends AbstractBinaryExpression {
+
+    @Serial
+    private static final long serialVersionUID = -8918381263584952757L;
+
+    /**
+     * Scaling factor applied to attention scores.
+     *
+     */
+    private final double scalingFactor;
+
+    /**
+     * Reference to attention matrix operation.
+     *
+     */
+    private final AttentionMatrixOperation attentionMatrixOperation;
+
+    /**
+     * Constructor for attention operation.
+     *
+     * @param expressionID unique ID for expression.
+     * @param argument1 first argument (query).
+     * @param argument2 second argument (transposed keys stacked vertically on top of values).
+     * @param result result of expression.
+     * @param scalingFactor scaling factor applied to attention scores.
+     * @throws MatrixException throws exception if expression arguments are not defined.
+     */
+    public AttentionExpression(int expressionID, Node argument1, Node argument2, Node result, double scalingFactor) throws MatrixException {
+        super("ATTENTION", expressionID, argument1, argument2, result);
+
+        this.scalingFactor = scalingFactor;
+
+        attentionMatrixOperation = new AttentionMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getRows(), argument1.getColumns(), scalingFactor);
+    }
+
+    /**
+     * Returns true is expression is executed as single step otherwise false.
+     *
+     * @return true is expression is executed as single step otherwise false.
+     */
+    protected boolean executeAsSingleStep() {
+        return false;
+    }
+
+    /**
+     * Resets expression.
+     *
+     */
+    public void applyReset() {
+    }
+
+    /**
+     * Calculates result matrix.
+     *
+     * @return result matrix.
+     */
+    protected Matrix calculateResult() {
+        return null;
+    }
+
+    /**
+     * Calculates result matrix.
+     *
+     * @param sampleIndex sample index
+     * @param argument1Matrix argument1 matrix for a sample index.
+     * @param argument2Matrix argument2 matrix for a sample index.
+     * @return result matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateResult(int sampleIndex, Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
+        return attentionMatrixOperation.apply(argument1Matrix, argument2Matrix, getResultBuffer(result.getRows(), result.getColumns(), result.getDepth(), argument1Matrix, argument2Matrix));
+    }
+
+    /**
+     * Calculates gradient of expression. Gradients of both arguments are calculated in single pass.
+     *
+     * @param sampleIndex sample index
+     * @throws MatrixException throws exception if calculation of gradient fails.
+     */
+    public void calculateGradient(int sampleIndex) throws MatrixException {
+        if (executeAsSingleStep()) return;
+        checkResultGradient(result, sampleIndex);
+        if (argument1.isStopGradient() && argument2.isStopGradient()) return;
+        Matrix[] gradients = calculateArgumentGradients(result.getGradient(sampleIndex), argument1.getMatrix(sampleIndex), argument2.getMatrix(sampleIndex), result.getMatrix(sampleIndex));
+        if (!argument1.isStopGradient()) argument1.cumulateGradient(sampleIndex, gradients[0]);
+        if (!argument2.isStopGradient()) argument2.cumulateGradient(sampleIndex, gradients[1]);
+    }
+
+    /**
+     * Calculates gradients of both arguments.
+     *
+     * @param resultGradient  result gradient.
+     * @param argument1Matrix argument 1 matrix.
+     * @param argument2Matrix argument 2 matrix.
+     * @param resultMatrix    result matrix.
+     * @return argument 1 and argument 2 gradient matrices.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    private Matrix[] calculateArgumentGradients(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return attentionMatrixOperation.applyGradient(argument1Matrix, argument2Matrix, resultMatrix, resultGradient, getArgumentGradientBuffer(1, argument1Matrix, resultGradient), getArgumentGradientBuffer(2, argument2Matrix, resultGradient));
+    }
+
+    /**
+     * Calculates argument 1 gradient matrix.
+     */
+    protected void calculateArgument1Gradient() {
+    }
+
+    /**
+     * Calculates argument 1 gradient matrix.
+     *
+     * @param sampleIndex     sample index.
+     * @param resultGradient  result gradient.
+     * @param argument1Matrix argument 1 matrix.
+     * @param argument2Matrix argument 2 matrix.
+     * @param resultMatrix    result matrix.
+     * @return argument1 gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateArgument1Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return calculateArgumentGradients(resultGradient, argument1Matrix, argument2Matrix, resultMatrix)[0];
+    }
+
+    /**
+     * Calculates argument 2 gradient matrix.
+     *
+     * @param sampleIndex     sample index.
+     * @param resultGradient  result gradient.
+     * @param argument1Matrix argument 1 matrix.
+     * @param argument2Matrix argument 2 matrix.
+     * @param resultMatrix    result matrix.
+     * @return argument2 gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateArgument2Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return calculateArgumentGradients(resultGradient, argument1Matrix, argument2Matrix, resultMatrix)[1];
+    }
+
+    /**
+     * Returns expression operation signature.
+     *
+     * @return expression operation signature.
+     */
+    protected String getExpressionOperationSignature() {
+        return getExpressionName() + "(" + getArgument1().getName() + ", " + getArgument2().getName() + ", " + scalingFactor + ")";
+    }
+
+    /**
+     * Returns gradient 1 operation signature.
+     *
+     * @return gradient 1 operation signature.
+     */
+    protected String getGradientOperation1Signature() {
+        return getExpressionName() + "_GRADIENT(d" + getResult().getName() + ", " + getArgument2().getName() + ")";
+    }
+
+    /**
+     * Returns gradient 2 operation signature.
+     *
+     * @return gradient 2 operation signature.
+     */
+    protected String getGradientOperation2Signature() {
+        return getExpressionName() + "_GRADIENT(d" + getResult().getName() + ", " + getArgument1().getName() + ")";
+    }
+
+}
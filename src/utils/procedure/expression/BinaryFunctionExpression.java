@@ -12,18 +12,29 @@ import utils.matrix.MatrixException;
 import utils.matrix.operation.BinaryMatrixOperation;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements expression for binary function.<br>
  *
  */
 public class BinaryFunctionExpression extends AbstractBinaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = -4416066102408573863L;
+
     /**
      * Binary function type.
      *
      */
     private final BinaryFunctionType binaryFunctionType;
 
+    /**
+     * Binary function.
+     *
+     */
+    private final BinaryFunction binaryFunction;
+
     /**
      * Binary matrix operation.
      *
@@ -43,6 +54,7 @@ public class BinaryFunctionExpression extends AbstractBinaryExpression {
     public BinaryFunctionExpression(int expressionID, Node argument1, Node argument2, Node result, BinaryFunction binaryFunction) throws MatrixException {
         super("BINARY_FUNCTION", expressionID, argument1, argument2, result);
         this.binaryFunctionType = binaryFunction.getType();
+        this.binaryFunction = binaryFunction;
 
         // Checks if there is need to broadcast or un-broadcast due to scalar matrix.
         int rows = !argument1.isScalar() ? argument1.getRows() : argument2.getRows();
@@ -51,6 +63,15 @@ public class BinaryFunctionExpression extends AbstractBinaryExpression {
         binaryMatrixOperation = new BinaryMatrixOperation(rows, columns, argument1.getDepth(), binaryFunction);
     }
 
+    /**
+     * Returns binary function of expression.
+     *
+     * @return binary function of expression.
+     */
+    public BinaryFunction getBinaryFunction() {
+        return binaryFunction;
+    }
+
     /**
      * Returns true is expression is executed as single step otherwise false.
      *
@@ -86,7 +107,7 @@ public class BinaryFunctionExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateResult(int sampleIndex, Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
-        return binaryMatrixOperation.applyFunction(argument1Matrix, argument2Matrix);
+        return binaryMatrixOperation.applyFunction(argument1Matrix, argument2Matrix, getResultBuffer(argument1Matrix, argument2Matrix));
     }
 
     /**
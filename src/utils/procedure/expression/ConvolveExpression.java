@@ -5,17 +5,23 @@
 
 package utils.procedure.expression;
 
+import utils.matrix.ConvolutionAlgorithm;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.operation.*;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements expression for convolution operation.<br>
  *
  */
 public class ConvolveExpression extends AbstractBinaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = -4941188546244051210L;
+
     /**
      * Reference to convolution matrix operation.
      *
@@ -44,14 +50,18 @@ public class ConvolveExpression extends AbstractBinaryExpression {
      * @param stride           stride of convolution operation.
      * @param dilation         dilation step size for convolution operation.
      * @param isDepthSeparable if true convolution is depth separable
+     * @param convolutionAlgorithm algorithm used to execute convolution operation and its gradients.
      * @throws MatrixException throws exception if expression arguments are not defined.
      */
-    public ConvolveExpression(int expressionID, Node argument1, Node argument2, Node result, int stride, int dilation, boolean isDepthSeparable) throws MatrixException {
+    public ConvolveExpression(int expressionID, Node argument1, Node argument2, Node result, int stride, int dilation, boolean isDepthSeparable, ConvolutionAlgorithm convolutionAlgorithm) throws MatrixException {
         super("CONVOLVE", expressionID, argument1, argument2, result);
 
         convolutionMatrixOperation = new ConvolutionMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
         convolutionInputGradientMatrixOperation = new ConvolutionInputGradientMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
         convolutionFilterGradientMatrixOperation = new ConvolutionFilterGradientMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
+        convolutionMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
+        convolutionInputGradientMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
+        convolutionFilterGradientMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
     }
 
     /**
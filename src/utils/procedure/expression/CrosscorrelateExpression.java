@@ -5,6 +5,7 @@
 
 package utils.procedure.expression;
 
+import utils.matrix.ConvolutionAlgorithm;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 import utils.matrix.operation.CrosscorrelationFilterGradientMatrixOperation;
@@ -12,12 +13,17 @@ import utils.matrix.operation.CrosscorrelationInputGradientMatrixOperation;
 import utils.matrix.operation.CrosscorrelationMatrixOperation;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements expression for crosscorrelation operation.<br>
  *
  */
 public class CrosscorrelateExpression extends AbstractBinaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = 6287771722708127718L;
+
     /**
      * Reference to crosscorrelation matrix operation.
      *
@@ -46,14 +52,18 @@ public class CrosscorrelateExpression extends AbstractBinaryExpression {
      * @param stride           stride of crosscorrelation operation.
      * @param dilation         dilation step size for crosscorrelation operation.
      * @param isDepthSeparable if true convolution is depth separable
+     * @param convolutionAlgorithm algorithm used to execute crosscorrelation operation and its gradients.
      * @throws MatrixException throws exception if expression arguments are not defined.
      */
-    public CrosscorrelateExpression(int expressionID, Node argument1, Node argument2, Node result, int stride, int dilation, boolean isDepthSeparable) throws MatrixException {
+    public CrosscorrelateExpression(int expressionID, Node argument1, Node argument2, Node result, int stride, int dilation, boolean isDepthSeparable, ConvolutionAlgorithm convolutionAlgorithm) throws MatrixException {
         super("CROSSCORRELATE", expressionID, argument1, argument2, result);
 
         crosscorrelationMatrixOperation = new CrosscorrelationMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
         crosscorrelationInputGradientMatrixOperation = new CrosscorrelationInputGradientMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
         crosscorrelationFilterGradientMatrixOperation = new CrosscorrelationFilterGradientMatrixOperation(result.getRows(), result.getColumns(), result.getDepth(), argument1.getDepth(), argument2.getRows(), argument2.getColumns(), dilation, stride, isDepthSeparable);
+        crosscorrelationMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
+        crosscorrelationInputGradientMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
+        crosscorrelationFilterGradientMatrixOperation.setConvolutionAlgorithm(convolutionAlgorithm);
     }
 
     /**
@@ -10,12 +10,17 @@ import utils.matrix.MatrixException;
 import utils.matrix.operation.DotMatrixOperation;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements expression for dot operation.<br>
  *
  */
 public class DotExpression extends AbstractBinaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = -8053156634247025021L;
+
     /**
      * Reference to dot matrix operation.
      *
@@ -34,6 +39,12 @@ public class DotExpression extends AbstractBinaryExpression {
      */
     private final DotMatrixOperation dotGradient2MatrixOperation;
 
+    /**
+     * Epilogue applied to result of dot operation. Set by fused expression into which dot expression is fused.
+     *
+     */
+    private transient DotMatrixOperation.Epilogue epilogue;
+
     /**
      * Constructor for dot operation.
      *
@@ -51,6 +62,15 @@ public class DotExpression extends AbstractBinaryExpression {
         dotGradient2MatrixOperation = new DotMatrixOperation(argument1.getColumns(), result.getRows(), result.getColumns(), argument1.getDepth());
     }
 
+    /**
+     * Sets epilogue applied to result of dot operation.
+     *
+     * @param epilogue epilogue or null if no epilogue is applied.
+     */
+    void setEpilogue(DotMatrixOperation.Epilogue epilogue) {
+        this.epilogue = epilogue;
+    }
+
     /**
      * Returns true is expression is executed as single step otherwise false.
      *
@@ -86,7 +106,7 @@ public class DotExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateResult(int sampleIndex, Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
-        return dotMatrixOperation.apply(argument1Matrix, argument2Matrix);
+        return dotMatrixOperation.apply(argument1Matrix, argument2Matrix, getResultBuffer(argument1Matrix.getRows(), argument2Matrix.getColumns(), argument1Matrix.getDepth(), argument1Matrix, argument2Matrix), epilogue);
     }
 
     /**
@@ -107,7 +127,7 @@ public class DotExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateArgument1Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
-        return dotGradient1MatrixOperation.apply(resultGradient, argument2Matrix.transpose());
+        return dotGradient1MatrixOperation.apply(resultGradient, argument2Matrix.transpose(), getArgumentGradientBuffer(1, resultGradient.getRows(), argument2Matrix.getRows(), argument2Matrix.getDepth(), resultGradient, argument2Matrix));
     }
 
     /**
@@ -122,7 +142,68 @@ public class DotExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateArgument2Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
-        return dotGradient2MatrixOperation.apply(argument1Matrix.transpose(), resultGradient);
+        return dotGradient2MatrixOperation.apply(argument1Matrix.transpose(), resultGradient, getArgumentGradientBuffer(2, argument1Matrix.getColumns(), resultGradient.getColumns(), argument1Matrix.getDepth(), argument1Matrix, resultGradient));
+    }
+
+    /**
+     * Returns true if expression can be executed as single column stacked batch otherwise false.
+     *
+     * @return true if expression can be executed as single column stacked batch otherwise false.
+     */
+    protected boolean supportsBatchExecution() {
+        return !argument1.isMultiIndex() && !argument1.isScalar() && argument2.isMultiIndex() && !argument2.isScalar();
+    }
+
+    /**
+     * Returns argument as batch matrix. Non-multi index argument (weight) is used as such without tiling.
+     *
+     * @param argument argument node.
+     * @param batchSize number of samples in batch.
+     * @return argument as batch matrix.
+     * @throws MatrixException throws exception if argument is not defined.
+     */
+    protected Matrix getBatchArgument(Node argument, int batchSize) throws MatrixException {
+        return argument.isMultiIndex() ? super.getBatchArgument(argument, batchSize) : argument.getMatrix();
+    }
+
+    /**
+     * Calculates batch result matrix.
+     *
+     * @param argument1Matrix argument1 batch matrix.
+     * @param argument2Matrix argument2 batch matrix.
+     * @return batch result matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchResult(Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
+        return new DotMatrixOperation(argument1Matrix.getRows(), argument2Matrix.getRows(), argument2Matrix.getColumns(), argument1Matrix.getDepth()).apply(argument1Matrix, argument2Matrix, getResultBuffer(argument1Matrix.getRows(), argument2Matrix.getColumns(), argument1Matrix.getDepth(), argument1Matrix, argument2Matrix), epilogue);
+    }
+
+    /**
+     * Calculates argument 1 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument 1 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument1Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return new DotMatrixOperation(resultGradient.getRows(), argument2Matrix.getColumns(), argument2Matrix.getRows(), argument2Matrix.getDepth()).apply(resultGradient, argument2Matrix.transpose(), getArgumentGradientBuffer(1, resultGradient.getRows(), argument2Matrix.getRows(), argument2Matrix.getDepth(), resultGradient, argument2Matrix));
+    }
+
+    /**
+     * Calculates argument 2 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument 2 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument2Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return new DotMatrixOperation(argument1Matrix.getColumns(), resultGradient.getRows(), resultGradient.getColumns(), argument1Matrix.getDepth()).apply(argument1Matrix.transpose(), resultGradient, getArgumentGradientBuffer(2, argument1Matrix.getColumns(), resultGradient.getColumns(), argument1Matrix.getDepth(), argument1Matrix, resultGradient));
     }
 
     /**
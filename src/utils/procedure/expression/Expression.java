@@ -7,8 +7,10 @@ package utils.procedure.expression;
 
 import utils.configurable.DynamicParamException;
 import utils.matrix.MatrixException;
+import utils.procedure.node.BufferArena;
 import utils.procedure.node.Node;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -45,6 +47,20 @@ public interface Expression {
      */
     Node getResult();
 
+    /**
+     * Returns nodes consumed by expression.
+     *
+     * @return nodes consumed by expression.
+     */
+    List<Node> getArguments();
+
+    /**
+     * Returns nodes calculated inside expression in addition to its result.
+     *
+     * @return nodes calculated inside expression in addition to its result.
+     */
+    List<Node> getIntermediateNodes();
+
     /**
      * Sets next expression for expression calculation chain.
      *
@@ -52,6 +68,13 @@ public interface Expression {
      */
     void setNextExpression(Expression nextExpression);
 
+    /**
+     * Returns next expression of expression calculation chain.
+     *
+     * @return next expression or null if expression is last expression of chain.
+     */
+    Expression getNextExpression();
+
     /**
      * Sets previous expression for gradient calculation chain.
      *
@@ -66,6 +89,13 @@ public interface Expression {
      */
     void setActive(boolean isActive);
 
+    /**
+     * Sets buffer arena from which expression and its following expressions take their result buffers.
+     *
+     * @param bufferArena buffer arena or null if buffer arena is not used.
+     */
+    void setBufferArena(BufferArena bufferArena);
+
     /**
      * Resets expression.
      *
@@ -91,6 +121,22 @@ public interface Expression {
      */
     void calculateExpressionStep(Set<Integer> sampleIndices) throws MatrixException, DynamicParamException;
 
+    /**
+     * Calculates expression.
+     *
+     * @param sampleIndex sample index.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void calculateExpression(int sampleIndex) throws MatrixException, DynamicParamException;
+
+    /**
+     * Checks if this and all following expressions of expression chain are calculated sample by sample i.e. none of them is executed as single step over all samples.
+     *
+     * @return true if expression chain is calculated sample by sample otherwise false.
+     */
+    boolean isSampleWise();
+
     /**
      * Calculates entire gradient expression chain including regulation.
      *
@@ -111,6 +157,47 @@ public interface Expression {
      */
     void calculateGradientStep(Set<Integer> sampleIndices, int numberOfGradientSteps) throws MatrixException, DynamicParamException;
 
+    /**
+     * Checks if this and all following expressions of expression chain can be executed as single column stacked batch.
+     *
+     * @return true if expression chain can be executed as batch otherwise false.
+     */
+    boolean isBatchExecutable();
+
+    /**
+     * Checks if expression itself can be executed as single column stacked batch.
+     *
+     * @return true if expression can be executed as batch otherwise false.
+     */
+    boolean isBatchSupported();
+
+    /**
+     * Calculates entire expression chain as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void calculateExpressionBatchStep(int batchSize) throws MatrixException, DynamicParamException;
+
+    /**
+     * Calculates expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    void calculateExpressionBatch(int batchSize) throws MatrixException, DynamicParamException;
+
+    /**
+     * Calculates entire gradient expression chain as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    void calculateGradientBatchStep(int batchSize, int numberOfEntries) throws MatrixException;
+
     /**
      * Prints expression chain.
      *
@@ -0,0 +1,517 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure.expression;
+
+import utils.configurable.DynamicParamException;
+import utils.matrix.BinaryFunctionType;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.matrix.Precision;
+import utils.matrix.UnaryFunctionType;
+import utils.matrix.operation.FusedMatrixOperation;
+import utils.procedure.node.BufferArena;
+import utils.procedure.node.Node;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Implements expression that fuses chain of element wise expressions and optionally preceding dot expression into single expression.<br>
+ * Element wise chain (add, subtract, multiply, divide, unary function and binary function) is calculated as single fused matrix operation without materializing intermediate results.<br>
+ * If chain is preceded by dot expression chain is applied as epilogue to each completed tile of dot result.<br>
+ * Gradients of chain are calculated in single pass by recomputing intermediate results from inputs and result of chain.<br>
+ * If any input is masked or any intermediate node has stop gradient fused expressions are calculated one by one as original expressions.<br>
+ *
+ */
+public class FusedExpression extends AbstractExpression {
+
+    @Serial
+    private static final long serialVersionUID = -3262569608763351105L;
+
+    /**
+     * Dot expression preceding element wise chain. Null if chain is not preceded by dot expression.
+     *
+     */
+    private final DotExpression dotExpression;
+
+    /**
+     * Element wise expressions of chain in order of calculation.
+     *
+     */
+    private final ArrayList<AbstractUnaryExpression> expressions;
+
+    /**
+     * Nodes that are inputs of element wise chain. Result of dot expression is one of inputs.
+     *
+     */
+    private final ArrayList<Node> inputs = new ArrayList<>();
+
+    /**
+     * Intermediate nodes of element wise chain.
+     *
+     */
+    private final ArrayList<Node> intermediates = new ArrayList<>();
+
+    /**
+     * Flags telling if input receives gradient from element wise chain.
+     *
+     */
+    private final boolean[] gradientInputs;
+
+    /**
+     * Index of input that is result of dot expression. -1 if chain is not preceded by dot expression.
+     *
+     */
+    private final int dotInputIndex;
+
+    /**
+     * Fused matrix operation.
+     *
+     */
+    private final FusedMatrixOperation fusedMatrixOperation;
+
+    /**
+     * Input matrices used by epilogue of dot expression.
+     *
+     */
+    private transient Matrix[] epilogueInputs;
+
+    /**
+     * Result matrix used by epilogue of dot expression.
+     *
+     */
+    private transient Matrix epilogueResult;
+
+    /**
+     * Constructor for fused expression.
+     *
+     * @param expressionID unique ID for expression.
+     * @param dotExpression dot expression preceding element wise chain (optional).
+     * @param expressions element wise expressions of chain in order of calculation.
+     * @throws MatrixException throws exception if expressions cannot be fused.
+     */
+    public FusedExpression(int expressionID, DotExpression dotExpression, List<AbstractUnaryExpression> expressions) throws MatrixException {
+        super("FUSED", expressionID, expressions.get(0).getArgument1());
+        this.dotExpression = dotExpression;
+        this.expressions = new ArrayList<>(expressions);
+
+        for (int index = 0; index < expressions.size() - 1; index++) intermediates.add(expressions.get(index).getResult());
+        if (dotExpression != null) inputs.add(dotExpression.getResult());
+        dotInputIndex = dotExpression != null ? 0 : -1;
+        for (AbstractUnaryExpression expression : expressions) {
+            if (getStepType(expression) == null) throw new MatrixException("Expression " + expression.getExpressionName() + " cannot be fused.");
+            for (Node argument : new Node[] { expression.getArgument1(), expression.getArgument2() }) {
+                if (argument != null && !intermediates.contains(argument) && !inputs.contains(argument)) inputs.add(argument);
+            }
+        }
+
+        fusedMatrixOperation = new FusedMatrixOperation(inputs.size());
+        gradientInputs = new boolean[inputs.size()];
+        HashMap<Node, Integer> slots = new HashMap<>();
+        for (int index = 0; index < inputs.size(); index++) slots.put(inputs.get(index), index);
+        for (AbstractUnaryExpression expression : expressions) {
+            FusedMatrixOperation.StepType stepType = getStepType(expression);
+            int operand1 = slots.get(expression.getArgument1());
+            int operand2 = expression.getArgument2() != null ? slots.get(expression.getArgument2()) : -1;
+            if (operand1 < inputs.size()) gradientInputs[operand1] = true;
+            if (operand2 >= 0 && operand2 < inputs.size() && stepType != FusedMatrixOperation.StepType.BINARY_FUNCTION) gradientInputs[operand2] = true;
+            int resultSlot = fusedMatrixOperation.addStep(stepType, operand1, operand2,
+                    expression instanceof UnaryFunctionExpression unaryFunctionExpression ? unaryFunctionExpression.getUnaryFunction() : null,
+                    expression instanceof BinaryFunctionExpression binaryFunctionExpression ? binaryFunctionExpression.getBinaryFunction() : null);
+            slots.put(expression.getResult(), resultSlot);
+        }
+    }
+
+    /**
+     * Returns fused step type of expression.
+     *
+     * @param expression expression.
+     * @return fused step type or null if expression is not element wise expression that can be fused.
+     */
+    public static FusedMatrixOperation.StepType getStepType(Expression expression) {
+        if (expression instanceof AddExpression) return FusedMatrixOperation.StepType.ADD;
+        if (expression instanceof SubtractExpression) return FusedMatrixOperation.StepType.SUBTRACT;
+        if (expression instanceof MultiplyExpression) return FusedMatrixOperation.StepType.MULTIPLY;
+        if (expression instanceof DivideExpression) return FusedMatrixOperation.StepType.DIVIDE;
+        if (expression instanceof UnaryFunctionExpression unaryFunctionExpression) {
+            UnaryFunctionType unaryFunctionType = unaryFunctionExpression.getUnaryFunction().getType();
+            return unaryFunctionType == UnaryFunctionType.SOFTMAX || unaryFunctionType == UnaryFunctionType.GUMBEL_SOFTMAX || unaryFunctionType == UnaryFunctionType.TRANSPOSE ? null : FusedMatrixOperation.StepType.UNARY_FUNCTION;
+        }
+        if (expression instanceof BinaryFunctionExpression binaryFunctionExpression) {
+            BinaryFunctionType binaryFunctionType = binaryFunctionExpression.getBinaryFunction().getType();
+            return binaryFunctionType == BinaryFunctionType.DIRECT_GRADIENT || binaryFunctionType == BinaryFunctionType.POLICY_VALUE || binaryFunctionType == BinaryFunctionType.COS_SIM ? null : FusedMatrixOperation.StepType.BINARY_FUNCTION;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if expression is element wise expression that can be fused i.e. arguments and result are non-scalar and have equal dimensions.
+     *
+     * @param expression expression.
+     * @return true if expression can be fused otherwise false.
+     */
+    public static boolean isFusable(Expression expression) {
+        if (getStepType(expression) == null) return false;
+        Node result = expression.getResult();
+        for (Node argument : new Node[] { expression.getArgument1(), expression.getArgument2() }) {
+            if (argument == null) continue;
+            if (argument.isScalar() || argument.getRows() != result.getRows() || argument.getColumns() != result.getColumns() || argument.getDepth() != result.getDepth()) return false;
+        }
+        return !result.isScalar();
+    }
+
+    /**
+     * Returns first argument of expression.
+     *
+     * @return first argument of expression.
+     */
+    public Node getArgument1() {
+        return inputs.get(0);
+    }
+
+    /**
+     * Returns second argument of expression.
+     *
+     * @return second argument of expression.
+     */
+    public Node getArgument2() {
+        return inputs.size() > 1 ? inputs.get(1) : null;
+    }
+
+    /**
+     * Returns nodes consumed by expression i.e. arguments of dot expression and inputs of element wise chain.
+     *
+     * @return nodes consumed by expression.
+     */
+    public List<Node> getArguments() {
+        List<Node> arguments = new ArrayList<>();
+        if (dotExpression != null) arguments.addAll(dotExpression.getArguments());
+        for (Node input : inputs) if (dotExpression == null || input != dotExpression.getResult()) arguments.add(input);
+        return arguments;
+    }
+
+    /**
+     * Returns nodes calculated inside expression in addition to its result i.e. result of dot expression and results of element wise expressions preceding last one.
+     *
+     * @return nodes calculated inside expression in addition to its result.
+     */
+    public List<Node> getIntermediateNodes() {
+        List<Node> intermediateNodes = new ArrayList<>();
+        if (dotExpression != null) intermediateNodes.add(dotExpression.getResult());
+        intermediateNodes.addAll(intermediates);
+        return intermediateNodes;
+    }
+
+    /**
+     * Returns result of expression.
+     *
+     * @return result of expression.
+     */
+    public Node getResult() {
+        return expressions.get(expressions.size() - 1).getResult();
+    }
+
+    /**
+     * Returns true is expression is executed as single step otherwise false.
+     *
+     * @return true is expression is executed as single step otherwise false.
+     */
+    protected boolean executeAsSingleStep() {
+        return false;
+    }
+
+    /**
+     * Resets expression.
+     *
+     */
+    public void applyReset() {
+        if (dotExpression != null) dotExpression.applyReset();
+        for (AbstractUnaryExpression expression : expressions) expression.applyReset();
+    }
+
+    /**
+     * Sets buffer arena for expression, fused expressions and following expressions.
+     *
+     * @param bufferArena buffer arena or null if buffer arena is not used.
+     */
+    public void setBufferArena(BufferArena bufferArena) {
+        if (dotExpression != null) dotExpression.setBufferArena(bufferArena);
+        for (AbstractUnaryExpression expression : expressions) expression.setBufferArena(bufferArena);
+        super.setBufferArena(bufferArena);
+    }
+
+    /**
+     * Checks if input matrices allow fused calculation i.e. inputs are defined, non-scalar and unmasked and no intermediate node has stop gradient.
+     *
+     * @param inputMatrices input matrices. Result of dot expression is skipped if not defined.
+     * @param dotArgument1Matrix first argument matrix of dot expression.
+     * @param dotArgument2Matrix second argument matrix of dot expression.
+     * @return true if fused calculation is possible otherwise false.
+     */
+    private boolean isFusable(Matrix[] inputMatrices, Matrix dotArgument1Matrix, Matrix dotArgument2Matrix) {
+        for (int index = 0; index < inputMatrices.length; index++) {
+            Matrix inputMatrix = inputMatrices[index];
+            if (inputMatrix == null) {
+                if (index != dotInputIndex) return false;
+            }
+            else if (inputMatrix.isScalar() || inputMatrix.getMask() != null) return false;
+        }
+        if (dotArgument1Matrix != null && dotArgument1Matrix.getMask() != null) return false;
+        if (dotArgument2Matrix != null && dotArgument2Matrix.getMask() != null) return false;
+        for (Node intermediate : intermediates) if (intermediate.isStopGradient()) return false;
+        return true;
+    }
+
+    /**
+     * Returns input matrices for specific sample index.
+     *
+     * @param sampleIndex sample index.
+     * @return input matrices.
+     */
+    private Matrix[] getInputMatrices(int sampleIndex) {
+        Matrix[] inputMatrices = new Matrix[inputs.size()];
+        for (int index = 0; index < inputMatrices.length; index++) inputMatrices[index] = inputs.get(index).getMatrix(sampleIndex);
+        return inputMatrices;
+    }
+
+    /**
+     * Returns input batch matrices. For non-multi index input matrix of input is used as such and it is broadcast over batch by fused operation.
+     *
+     * @return input batch matrices.
+     */
+    private Matrix[] getBatchInputMatrices() {
+        Matrix[] inputMatrices = new Matrix[inputs.size()];
+        for (int index = 0; index < inputMatrices.length; index++) inputMatrices[index] = inputs.get(index).getBatchMatrix();
+        return inputMatrices;
+    }
+
+    /**
+     * Returns result matrix from buffer arena or as new matrix.
+     *
+     * @param columns number of columns.
+     * @param template template matrix defining precision of result matrix.
+     * @return result matrix.
+     * @throws MatrixException throws exception if allocation of result matrix fails.
+     */
+    private Matrix getResultMatrix(int columns, Matrix template) throws MatrixException {
+        Matrix resultMatrix = getBuffer(BufferArena.BufferType.MATRIX, getResult(), getResult().getRows(), columns, getResult().getDepth(), template, null);
+        return resultMatrix != null ? resultMatrix : Precision.getPrecision(template).getNewMatrix(getResult().getRows(), columns, getResult().getDepth());
+    }
+
+    /**
+     * Returns template matrix defining precision of result matrix.
+     *
+     * @param inputMatrices input matrices.
+     * @param dotArgument1Matrix first argument matrix of dot expression.
+     * @return template matrix.
+     */
+    private Matrix getTemplate(Matrix[] inputMatrices, Matrix dotArgument1Matrix) {
+        return dotExpression != null ? dotArgument1Matrix : inputMatrices[0];
+    }
+
+    /**
+     * Applies fused operation to range of dot result as epilogue of dot expression.
+     *
+     * @param dotResult result matrix of dot expression.
+     * @param fromIndex index of first result value (inclusive).
+     * @param toIndex index of last result value (exclusive).
+     */
+    private void applyEpilogue(Matrix dotResult, int fromIndex, int toIndex) {
+        Matrix[] inputMatrices = epilogueInputs.clone();
+        inputMatrices[dotInputIndex] = dotResult;
+        fusedMatrixOperation.applyFunction(inputMatrices, epilogueResult, fromIndex, toIndex);
+    }
+
+    /**
+     * Calculates expression.
+     *
+     */
+    public void calculateExpression() {
+    }
+
+    /**
+     * Calculates expression.
+     *
+     * @param sampleIndex sample index.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpression(int sampleIndex) throws MatrixException, DynamicParamException {
+        Matrix[] inputMatrices = getInputMatrices(sampleIndex);
+        Matrix dotArgument1Matrix = dotExpression != null ? dotExpression.getArgument1().getMatrix(sampleIndex) : null;
+        Matrix dotArgument2Matrix = dotExpression != null ? dotExpression.getArgument2().getMatrix(sampleIndex) : null;
+        if (!isFusable(inputMatrices, dotArgument1Matrix, dotArgument2Matrix) || (dotExpression != null && (dotArgument1Matrix == null || dotArgument2Matrix == null))) {
+            if (dotExpression != null) dotExpression.calculateExpression(sampleIndex);
+            for (AbstractUnaryExpression expression : expressions) expression.calculateExpression(sampleIndex);
+            return;
+        }
+        Matrix resultMatrix = getResultMatrix(getResult().getColumns(), getTemplate(inputMatrices, dotArgument1Matrix));
+        fusedMatrixOperation.checkDimensions(inputMatrices, resultMatrix);
+        if (dotExpression == null) fusedMatrixOperation.applyFunction(inputMatrices, resultMatrix);
+        else {
+            epilogueInputs = inputMatrices;
+            epilogueResult = resultMatrix;
+            dotExpression.setEpilogue(this::applyEpilogue);
+            try {
+                dotExpression.calculateExpression(sampleIndex);
+            }
+            finally {
+                dotExpression.setEpilogue(null);
+                epilogueInputs = null;
+                epilogueResult = null;
+            }
+        }
+        getResult().setMatrix(sampleIndex, resultMatrix);
+    }
+
+    /**
+     * Calculates gradient of expression.
+     *
+     */
+    public void calculateGradient() {
+    }
+
+    /**
+     * Calculates gradient of expression.
+     *
+     * @param sampleIndex sample index
+     * @throws MatrixException throws exception if calculation of gradient fails.
+     */
+    public void calculateGradient(int sampleIndex) throws MatrixException {
+        checkResultGradient(getResult(), sampleIndex);
+        Matrix[] inputMatrices = getInputMatrices(sampleIndex);
+        Matrix dotArgument1Matrix = dotExpression != null ? dotExpression.getArgument1().getMatrix(sampleIndex) : null;
+        Matrix dotArgument2Matrix = dotExpression != null ? dotExpression.getArgument2().getMatrix(sampleIndex) : null;
+        if (!isFusable(inputMatrices, dotArgument1Matrix, dotArgument2Matrix) || getResult().getMatrix(sampleIndex) == null || (dotInputIndex >= 0 && inputMatrices[dotInputIndex] == null)) {
+            for (int index = expressions.size() - 1; index >= 0; index--) expressions.get(index).calculateGradient(sampleIndex);
+        }
+        else {
+            Matrix outputGradient = getResult().getGradient(sampleIndex);
+            Matrix[] inputGradients = getInputGradients(inputMatrices, outputGradient);
+            fusedMatrixOperation.applyGradient(inputMatrices, getResult().getMatrix(sampleIndex), outputGradient, inputGradients);
+            for (int index = 0; index < inputGradients.length; index++) {
+                if (inputGradients[index] != null) inputs.get(index).cumulateGradient(sampleIndex, inputGradients[index]);
+            }
+        }
+        if (dotExpression != null) dotExpression.calculateGradient(sampleIndex);
+    }
+
+    /**
+     * Returns scratch gradient matrices for inputs that receive gradient. Gradient matrix of input has dimensions of input matrix.
+     *
+     * @param inputMatrices input matrices.
+     * @param outputGradient output gradient defining precision of gradient matrices.
+     * @return gradient matrices of inputs. Gradient matrix is null if input does not receive gradient.
+     * @throws MatrixException throws exception if allocation of gradient matrix fails.
+     */
+    private Matrix[] getInputGradients(Matrix[] inputMatrices, Matrix outputGradient) throws MatrixException {
+        Matrix[] inputGradients = new Matrix[inputMatrices.length];
+        for (int index = 0; index < inputGradients.length; index++) {
+            Node input = inputs.get(index);
+            if (!gradientInputs[index] || input.isStopGradient()) continue;
+            Matrix inputMatrix = inputMatrices[index];
+            Matrix inputGradient = getBuffer(BufferArena.BufferType.ARGUMENT1_GRADIENT, input, inputMatrix.getRows(), inputMatrix.getColumns(), inputMatrix.getDepth(), outputGradient, null);
+            inputGradients[index] = inputGradient != null ? inputGradient : Precision.getPrecision(outputGradient).getNewMatrix(inputMatrix.getRows(), inputMatrix.getColumns(), inputMatrix.getDepth());
+        }
+        return inputGradients;
+    }
+
+    /**
+     * Returns true if expression can be executed as single column stacked batch otherwise false.
+     *
+     * @return true if expression can be executed as single column stacked batch otherwise false.
+     */
+    protected boolean supportsBatchExecution() {
+        if (dotExpression != null && !dotExpression.supportsBatchExecution()) return false;
+        for (AbstractUnaryExpression expression : expressions) if (!expression.supportsBatchExecution()) return false;
+        return true;
+    }
+
+    /**
+     * Calculates expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @throws MatrixException throws exception if calculation fails.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void calculateExpressionBatch(int batchSize) throws MatrixException, DynamicParamException {
+        Matrix[] inputMatrices = getBatchInputMatrices();
+        Matrix dotArgument1Matrix = dotExpression != null ? dotExpression.getArgument1().getMatrix() : null;
+        Matrix dotArgument2Matrix = dotExpression != null ? dotExpression.getArgument2().getBatchMatrix() : null;
+        if (!isFusable(inputMatrices, dotArgument1Matrix, dotArgument2Matrix) || (dotExpression != null && (dotArgument1Matrix == null || dotArgument2Matrix == null))) {
+            if (dotExpression != null) dotExpression.calculateExpressionBatch(batchSize);
+            for (AbstractUnaryExpression expression : expressions) expression.calculateExpressionBatch(batchSize);
+            return;
+        }
+        Matrix resultMatrix = getResultMatrix(getResult().getColumns() * batchSize, getTemplate(inputMatrices, dotArgument1Matrix));
+        fusedMatrixOperation.checkDimensions(inputMatrices, resultMatrix);
+        if (dotExpression == null) fusedMatrixOperation.applyFunction(inputMatrices, resultMatrix);
+        else {
+            epilogueInputs = inputMatrices;
+            epilogueResult = resultMatrix;
+            dotExpression.setEpilogue(this::applyEpilogue);
+            try {
+                dotExpression.calculateExpressionBatch(batchSize);
+            }
+            finally {
+                dotExpression.setEpilogue(null);
+                epilogueInputs = null;
+                epilogueResult = null;
+            }
+        }
+        getResult().setBatchMatrix(resultMatrix);
+    }
+
+    /**
+     * Calculates gradient of expression as single column stacked batch.
+     *
+     * @param batchSize number of samples in batch.
+     * @param numberOfEntries number of samples in batch having gradient.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected void calculateGradientBatch(int batchSize, int numberOfEntries) throws MatrixException {
+        if (getResult().getBatchGradient() == null) throw new MatrixException(getExpressionName() + ": Result batch gradient not defined");
+        Matrix[] inputMatrices = getBatchInputMatrices();
+        Matrix dotArgument1Matrix = dotExpression != null ? dotExpression.getArgument1().getMatrix() : null;
+        Matrix dotArgument2Matrix = dotExpression != null ? dotExpression.getArgument2().getBatchMatrix() : null;
+        if (!isFusable(inputMatrices, dotArgument1Matrix, dotArgument2Matrix) || getResult().getBatchMatrix() == null || (dotInputIndex >= 0 && inputMatrices[dotInputIndex] == null)) {
+            for (int index = expressions.size() - 1; index >= 0; index--) expressions.get(index).calculateGradientBatch(batchSize, numberOfEntries);
+        }
+        else {
+            Matrix outputGradient = getResult().getBatchGradient();
+            Matrix[] inputGradients = getInputGradients(inputMatrices, outputGradient);
+            fusedMatrixOperation.applyGradient(inputMatrices, getResult().getBatchMatrix(), outputGradient, inputGradients);
+            for (int index = 0; index < inputGradients.length; index++) {
+                if (inputGradients[index] != null) inputs.get(index).cumulateBatchGradient(inputGradients[index], numberOfEntries);
+            }
+        }
+        if (dotExpression != null) dotExpression.calculateGradientBatch(batchSize, numberOfEntries);
+    }
+
+    /**
+     * Returns expression operation signature.
+     *
+     * @return expression operation signature.
+     */
+    protected String getExpressionOperationSignature() {
+        StringBuilder signature = new StringBuilder("[ ");
+        if (dotExpression != null) signature.append(dotExpression.getExpressionOperationSignature()).append(" = ").append(dotExpression.getResult().getName()).append("; ");
+        for (AbstractUnaryExpression expression : expressions) signature.append(expression.getExpressionOperationSignature()).append(expression != expressions.get(expressions.size() - 1) ? " = " + expression.getResult().getName() + "; " : " ]");
+        return signature.toString();
+    }
+
+    /**
+     * Prints gradient.
+     *
+     */
+    protected void printGradient() {
+        for (int index = expressions.size() - 1; index >= 0; index--) expressions.get(index).printGradient();
+        if (dotExpression != null) dotExpression.printGradient();
+    }
+
+}
@@ -11,6 +11,7 @@ import utils.matrix.MatrixException;
 import utils.matrix.operation.BinaryMatrixOperation;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
 import java.io.Serializable;
 
 /**
@@ -19,6 +20,9 @@ import java.io.Serializable;
  */
 public class MultiplyExpression extends AbstractBinaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = -5744028798796959589L;
+
     /**
      * Reference to multiply matrix operation.
      *
@@ -79,7 +83,7 @@ public class MultiplyExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateResult(int sampleIndex, Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
-        return multiplyMatrixOperation.applyFunction(argument1Matrix, argument2Matrix);
+        return multiplyMatrixOperation.applyFunction(argument1Matrix, argument2Matrix, getResultBuffer(argument1Matrix, argument2Matrix));
     }
 
     /**
@@ -100,7 +104,7 @@ public class MultiplyExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateArgument1Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
-        return multiplyMatrixOperation.applyFunction(resultGradient, argument2Matrix);
+        return multiplyMatrixOperation.applyFunction(resultGradient, argument2Matrix, getArgumentGradientBuffer(1, resultGradient, argument2Matrix));
     }
 
     /**
@@ -115,7 +119,56 @@ public class MultiplyExpression extends AbstractBinaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateArgument2Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
-        return multiplyMatrixOperation.applyFunction(argument1Matrix, resultGradient);
+        return multiplyMatrixOperation.applyFunction(argument1Matrix, resultGradient, getArgumentGradientBuffer(2, argument1Matrix, resultGradient));
+    }
+
+    /**
+     * Returns true if expression can be executed as single column stacked batch otherwise false.
+     *
+     * @return true if expression can be executed as single column stacked batch otherwise false.
+     */
+    protected boolean supportsBatchExecution() {
+        return hasBatchArguments();
+    }
+
+    /**
+     * Calculates batch result matrix.
+     *
+     * @param argument1Matrix argument1 batch matrix.
+     * @param argument2Matrix argument2 batch matrix.
+     * @return batch result matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchResult(Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
+        return argument1Matrix.multiply(argument2Matrix);
+    }
+
+    /**
+     * Calculates argument 1 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument 1 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument1Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return resultGradient.multiply(argument2Matrix);
+    }
+
+    /**
+     * Calculates argument 2 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument 2 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument2Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return argument1Matrix.multiply(resultGradient);
     }
 
     /**
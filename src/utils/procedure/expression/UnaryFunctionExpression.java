@@ -9,12 +9,17 @@ import utils.matrix.*;
 import utils.matrix.operation.UnaryMatrixOperation;
 import utils.procedure.node.Node;
 
+import java.io.Serial;
+
 /**
  * Implements expression for unary function.<br>
  *
  */
 public class UnaryFunctionExpression extends AbstractUnaryExpression {
 
+    @Serial
+    private static final long serialVersionUID = -6073797324380225572L;
+
     /**
      * Unary function type.
      *
@@ -25,7 +30,6 @@ public class UnaryFunctionExpression extends AbstractUnaryExpression {
      * UnaryFunction used.
      *
      */
-    @SuppressWarnings("FieldCanBeLocal")
     private final UnaryFunction unaryFunction;
 
     /**
@@ -34,6 +38,18 @@ public class UnaryFunctionExpression extends AbstractUnaryExpression {
      */
     private final UnaryMatrixOperation unaryMatrixOperation;
 
+    /**
+     * Unary matrix operation for column stacked batch.
+     *
+     */
+    private transient UnaryMatrixOperation batchUnaryMatrixOperation;
+
+    /**
+     * Number of columns of batch for which batch unary matrix operation is defined.
+     *
+     */
+    private transient int batchColumns;
+
     /**
      * Constructor for unary function.
      *
@@ -52,6 +68,15 @@ public class UnaryFunctionExpression extends AbstractUnaryExpression {
         unaryMatrixOperation = new UnaryMatrixOperation(argument1.getRows(), argument1.getColumns(), argument1.getDepth(), unaryFunction);
     }
 
+    /**
+     * Returns unary function of expression.
+     *
+     * @return unary function of expression.
+     */
+    public UnaryFunction getUnaryFunction() {
+        return unaryFunction;
+    }
+
     /**
      * Returns true is expression is executed as single step otherwise false.
      *
@@ -87,7 +112,7 @@ public class UnaryFunctionExpression extends AbstractUnaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateResult(int sampleIndex, Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
-        return unaryMatrixOperation.applyFunction(argument1Matrix);
+        return unaryMatrixOperation.applyFunction(argument1Matrix, getResultBuffer(argument1Matrix, null));
     }
 
     /**
@@ -108,7 +133,60 @@ public class UnaryFunctionExpression extends AbstractUnaryExpression {
      * @throws MatrixException throws exception if calculation fails.
      */
     protected Matrix calculateArgument1Gradient(int sampleIndex, Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
-        return unaryMatrixOperation.applyGradient(resultMatrix, resultGradient);
+        return unaryMatrixOperation.applyGradient(resultMatrix, resultGradient, getArgumentGradientBuffer(1, resultMatrix, resultGradient));
+    }
+
+    /**
+     * Returns true if expression can be executed as single column stacked batch otherwise false.<br>
+     * Softmax type functions are calculated over entire matrix and transpose changes matrix shape hence these are excluded.<br>
+     *
+     * @return true if expression can be executed as single column stacked batch otherwise false.
+     */
+    protected boolean supportsBatchExecution() {
+        return switch (unaryFunctionType) {
+            case SOFTMAX, GUMBEL_SOFTMAX, TRANSPOSE -> false;
+            default -> hasBatchArguments();
+        };
+    }
+
+    /**
+     * Returns unary matrix operation matching dimensions of batch matrix.
+     *
+     * @param batchMatrix batch matrix.
+     * @return unary matrix operation matching dimensions of batch matrix.
+     */
+    private UnaryMatrixOperation getBatchUnaryMatrixOperation(Matrix batchMatrix) {
+        if (batchUnaryMatrixOperation == null || batchColumns != batchMatrix.getColumns()) {
+            batchColumns = batchMatrix.getColumns();
+            batchUnaryMatrixOperation = new UnaryMatrixOperation(batchMatrix.getRows(), batchMatrix.getColumns(), batchMatrix.getDepth(), unaryFunction);
+        }
+        return batchUnaryMatrixOperation;
+    }
+
+    /**
+     * Calculates batch result matrix.
+     *
+     * @param argument1Matrix argument1 batch matrix.
+     * @param argument2Matrix argument2 batch matrix.
+     * @return batch result matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchResult(Matrix argument1Matrix, Matrix argument2Matrix) throws MatrixException {
+        return getBatchUnaryMatrixOperation(argument1Matrix).applyFunction(argument1Matrix, getResultBuffer(argument1Matrix, null));
+    }
+
+    /**
+     * Calculates argument 1 batch gradient matrix.
+     *
+     * @param resultGradient  result batch gradient.
+     * @param argument1Matrix argument 1 batch matrix.
+     * @param argument2Matrix argument 2 batch matrix.
+     * @param resultMatrix    result batch matrix.
+     * @return argument 1 batch gradient matrix.
+     * @throws MatrixException throws exception if calculation fails.
+     */
+    protected Matrix calculateBatchArgument1Gradient(Matrix resultGradient, Matrix argument1Matrix, Matrix argument2Matrix, Matrix resultMatrix) throws MatrixException {
+        return getBatchUnaryMatrixOperation(resultMatrix).applyGradient(resultMatrix, resultGradient, getArgumentGradientBuffer(1, resultMatrix, resultGradient));
     }
 
     /**
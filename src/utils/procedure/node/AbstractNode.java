@@ -75,6 +75,24 @@ public abstract class AbstractNode implements Node, Serializable {
      */
     private transient Matrix latestMatrix;
 
+    /**
+     * Batch matrix containing samples stacked column wise.
+     *
+     */
+    private transient Matrix batchMatrix;
+
+    /**
+     * Batch gradient containing sample gradients stacked column wise.
+     *
+     */
+    private transient Matrix batchGradient;
+
+    /**
+     * Buffer arena from which node takes its gradient buffers.
+     *
+     */
+    private transient BufferArena bufferArena;
+
     /**
      * Constructor for abstract node.
      *
@@ -143,6 +161,15 @@ public abstract class AbstractNode implements Node, Serializable {
         this.fromResultNode = fromResultNode;
     }
 
+    /**
+     * Returns backward dependent node.
+     *
+     * @return from result node or null if node is not dependent node.
+     */
+    public Node getFromResultNode() {
+        return fromResultNode;
+    }
+
     /**
      * Sets forward dependent node.
      *
@@ -200,7 +227,7 @@ public abstract class AbstractNode implements Node, Serializable {
     public void updateMatrixDependency(int index, int previousIndex) throws MatrixException {
         if (hasFromResultNode()) {
             if (fromResultNode.getMatrix(previousIndex) != null) setMatrix(index, fromResultNode.getMatrix(previousIndex));
-            else setMatrix(index, latestMatrix != null ? latestMatrix : getNewMatrix());
+            else setMatrix(index, latestMatrix != null ? (bufferArena != null && bufferArena.contains(latestMatrix) ? latestMatrix.copy() : latestMatrix) : getNewMatrix());
         }
     }
 
@@ -262,6 +289,15 @@ public abstract class AbstractNode implements Node, Serializable {
         return referenceMatrix.getNewMatrix();
     }
 
+    /**
+     * Sets buffer arena from which node takes its gradient buffers.
+     *
+     * @param bufferArena buffer arena or null if buffer arena is not used.
+     */
+    public void setBufferArena(BufferArena bufferArena) {
+        this.bufferArena = bufferArena;
+    }
+
     /**
      * Resets node and removes other data than constant data.
      *
@@ -269,6 +305,8 @@ public abstract class AbstractNode implements Node, Serializable {
      */
     public void reset() throws MatrixException {
         cumulatedGradientEntryCount = 0;
+        batchMatrix = null;
+        batchGradient = null;
     }
 
     /**
@@ -312,11 +350,77 @@ public abstract class AbstractNode implements Node, Serializable {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public void cumulateGradient(int index, Matrix outputGradient) throws MatrixException {
-        if (getGradient(index) == null) setGradient(index, getNewMatrix());
+        if (getGradient(index) == null) {
+            Matrix gradient = bufferArena != null ? bufferArena.getZeroBuffer(BufferArena.BufferType.GRADIENT, this, getRows(), getColumns(), getDepth(), referenceMatrix) : null;
+            setGradient(index, gradient != null ? gradient : getNewMatrix());
+        }
 
         getGradient(index).addBy(outputGradient);
 
         cumulatedGradientEntryCount++;
     }
 
+    /**
+     * Sets batch matrix of node. Batch matrix contains samples of batch stacked column wise.
+     *
+     * @param batchMatrix batch matrix.
+     */
+    public void setBatchMatrix(Matrix batchMatrix) {
+        this.batchMatrix = batchMatrix;
+    }
+
+    /**
+     * Returns batch matrix of node. For single node returns matrix of node.
+     *
+     * @return batch matrix of node.
+     */
+    public Matrix getBatchMatrix() {
+        return isMultiIndex() ? batchMatrix : getMatrix();
+    }
+
+    /**
+     * Sets batch gradient of node.
+     *
+     * @param batchGradient batch gradient.
+     */
+    public void setBatchGradient(Matrix batchGradient) {
+        this.batchGradient = batchGradient;
+    }
+
+    /**
+     * Returns batch gradient of node. For single node returns gradient of node.
+     *
+     * @return batch gradient of node.
+     */
+    public Matrix getBatchGradient() {
+        return isMultiIndex() ? batchGradient : getGradient();
+    }
+
+    /**
+     * Cumulates batch gradient.<br>
+     * For single node gradient is cumulated into gradient of node and counted as given number of gradient entries.<br>
+     *
+     * @param outputGradient output gradient.
+     * @param numberOfEntries number of gradient entries (samples) included in output gradient.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public void cumulateBatchGradient(Matrix outputGradient, int numberOfEntries) throws MatrixException {
+        if (isMultiIndex()) {
+            if (batchGradient == null) {
+                batchGradient = bufferArena != null ? bufferArena.getZeroBuffer(BufferArena.BufferType.GRADIENT, this, outputGradient.getRows(), outputGradient.getColumns(), outputGradient.getDepth(), outputGradient) : null;
+                if (batchGradient == null) batchGradient = outputGradient.getNewMatrix();
+            }
+            batchGradient.addBy(outputGradient);
+        }
+        else {
+            if (getGradient() == null) {
+                Matrix gradient = bufferArena != null ? bufferArena.getZeroBuffer(BufferArena.BufferType.GRADIENT, this, getRows(), getColumns(), getDepth(), referenceMatrix) : null;
+                setGradient(0, gradient != null ? gradient : getNewMatrix());
+            }
+            getGradient().addBy(outputGradient);
+        }
+
+        cumulatedGradientEntryCount += numberOfEntries;
+    }
+
 }
@@ -0,0 +1,451 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure.node;
+
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.matrix.Precision;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Implements buffer arena of procedure.<br>
+ * Buffer arena keeps result and gradient matrices of procedure nodes and expressions and hands them out again in following iterations so that steady state execution of procedure allocates close to zero new matrices.<br>
+ * Each owner (node or expression) has list of buffers per buffer type. Result and gradient buffers are handed out in order of requests and list is rewound when procedure starts new pass.
+ * Argument gradient buffers are scratch buffers consumed immediately by cumulation of gradient hence owner has only single buffer of that type.<br>
+ * Buffer is reused if its dimensions and precision match with requested ones otherwise new buffer is allocated.<br>
+ * Only dense unmasked double and single precision matrices are buffered.<br>
+ * In pooled mode result buffers are not bound to owners. Instead they are handed out from shared pool into which buffers are released as soon as their values have been consumed.
+ * Pooled mode is used by inference plan of procedure so that number of result buffers is bounded by number of simultaneously live nodes.<br>
+ *
+ */
+public class BufferArena implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 6093914337806468925L;
+
+    /**
+     * Defines type of buffer.
+     *
+     */
+    public enum BufferType {
+
+        /**
+         * Result matrix of node.
+         *
+         */
+        MATRIX,
+
+        /**
+         * Cumulated gradient of node.
+         *
+         */
+        GRADIENT,
+
+        /**
+         * Gradient of first argument calculated by expression.
+         *
+         */
+        ARGUMENT1_GRADIENT,
+
+        /**
+         * Gradient of second argument calculated by expression.
+         *
+         */
+        ARGUMENT2_GRADIENT
+
+    }
+
+    /**
+     * Implements list of buffers of single owner and buffer type.
+     *
+     */
+    private static class BufferList {
+
+        /**
+         * Buffers.
+         *
+         */
+        private final ArrayList<Matrix> buffers = new ArrayList<>();
+
+        /**
+         * Position of next buffer to be handed out.
+         *
+         */
+        private int position = 0;
+
+    }
+
+    /**
+     * Implements bucket of released pooled buffers having same dimensions and precision.
+     *
+     */
+    private static class PoolBucket {
+
+        /**
+         * Number of rows of buffers.
+         *
+         */
+        private final int rows;
+
+        /**
+         * Number of columns of buffers.
+         *
+         */
+        private final int columns;
+
+        /**
+         * Depth of buffers.
+         *
+         */
+        private final int depth;
+
+        /**
+         * Precision of buffers.
+         *
+         */
+        private final Precision precision;
+
+        /**
+         * Released buffers.
+         *
+         */
+        private final ArrayDeque<Matrix> buffers = new ArrayDeque<>();
+
+        /**
+         * Constructor for pool bucket.
+         *
+         * @param rows number of rows of buffers.
+         * @param columns number of columns of buffers.
+         * @param depth depth of buffers.
+         * @param precision precision of buffers.
+         */
+        PoolBucket(int rows, int columns, int depth, Precision precision) {
+            this.rows = rows;
+            this.columns = columns;
+            this.depth = depth;
+            this.precision = precision;
+        }
+
+        /**
+         * Checks if bucket holds buffers of given dimensions and precision.
+         *
+         * @param rows number of rows.
+         * @param columns number of columns.
+         * @param depth depth.
+         * @param precision precision.
+         * @return true if bucket holds buffers of given dimensions and precision otherwise false.
+         */
+        boolean matches(int rows, int columns, int depth, Precision precision) {
+            return this.rows == rows && this.columns == columns && this.depth == depth && this.precision == precision;
+        }
+
+    }
+
+    /**
+     * Buffer lists by type and owner.
+     *
+     */
+    private transient EnumMap<BufferType, IdentityHashMap<Object, BufferList>> buffers;
+
+    /**
+     * Set of all matrices owned by buffer arena.
+     *
+     */
+    private transient Set<Matrix> ownedMatrices;
+
+    /**
+     * If true result buffers are handed out from pool of released buffers instead of buffer lists of owners.
+     *
+     */
+    private transient boolean pooled = false;
+
+    /**
+     * Set of all matrices handed out in pooled mode.
+     *
+     */
+    private transient Set<Matrix> pooledMatrices;
+
+    /**
+     * Buckets of released pooled buffers. Number of distinct buffer dimensions is small hence buckets are searched linearly.
+     *
+     */
+    private transient ArrayList<PoolBucket> releasedBuffers;
+
+    /**
+     * Set of pooled buffers currently released.
+     *
+     */
+    private transient Set<Matrix> releasedMatrices;
+
+    /**
+     * If true buffer arena hands out no matrix buffers and expressions allocate their results as new matrices.
+     *
+     */
+    private transient boolean matrixBypass = false;
+
+    /**
+     * Number of buffers allocated.
+     *
+     */
+    private transient long allocations;
+
+    /**
+     * Number of times buffer has been reused.
+     *
+     */
+    private transient long reuses;
+
+    /**
+     * Default constructor for buffer arena.
+     *
+     */
+    public BufferArena() {
+    }
+
+    /**
+     * Checks if matrix can be used as template for buffer i.e. matrix is dense unmasked non-scalar double or single precision matrix.
+     *
+     * @param matrix matrix.
+     * @return true if matrix can be used as template for buffer otherwise false.
+     */
+    public static boolean isBufferable(Matrix matrix) {
+        return (matrix instanceof DMatrix || matrix instanceof FMatrix) && !matrix.isScalar() && matrix.getMask() == null;
+    }
+
+    /**
+     * Returns buffer for given type and owner. Content of returned buffer is undefined.<br>
+     * Returns null if template matrix cannot be used as template for buffer or if matrix buffers are bypassed.<br>
+     *
+     * @param bufferType buffer type.
+     * @param owner owner of buffer.
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param template template matrix defining precision of buffer.
+     * @return buffer or null if template matrix cannot be used as template for buffer.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    public Matrix getBuffer(BufferType bufferType, Object owner, int rows, int columns, int depth, Matrix template) throws MatrixException {
+        if (!isBufferable(template)) return null;
+        if (buffers == null) {
+            buffers = new EnumMap<>(BufferType.class);
+            ownedMatrices = Collections.newSetFromMap(new IdentityHashMap<>());
+            pooledMatrices = Collections.newSetFromMap(new IdentityHashMap<>());
+            releasedBuffers = new ArrayList<>();
+            releasedMatrices = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        if (matrixBypass && bufferType == BufferType.MATRIX) return null;
+        if (pooled && bufferType == BufferType.MATRIX) return getPooledBuffer(rows, columns, depth, Precision.getPrecision(template));
+        BufferList bufferList = buffers.computeIfAbsent(bufferType, type -> new IdentityHashMap<>()).computeIfAbsent(owner, key -> new BufferList());
+        boolean isScratch = bufferType == BufferType.ARGUMENT1_GRADIENT || bufferType == BufferType.ARGUMENT2_GRADIENT;
+        int position = isScratch ? 0 : bufferList.position++;
+        Matrix buffer = position < bufferList.buffers.size() ? bufferList.buffers.get(position) : null;
+        Precision precision = Precision.getPrecision(template);
+        if (buffer != null && buffer.getRows() == rows && buffer.getColumns() == columns && buffer.getDepth() == depth && Precision.getPrecision(buffer) == precision && buffer.getMask() == null) {
+            reuses++;
+            return buffer;
+        }
+        if (buffer != null) ownedMatrices.remove(buffer);
+        buffer = precision.getNewMatrix(rows, columns, depth);
+        if (position < bufferList.buffers.size()) bufferList.buffers.set(position, buffer);
+        else bufferList.buffers.add(buffer);
+        ownedMatrices.add(buffer);
+        allocations++;
+        return buffer;
+    }
+
+    /**
+     * Returns released pooled buffer of given dimensions and precision or allocates new pooled buffer if there is no such buffer released.
+     *
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param precision precision of buffer.
+     * @return pooled buffer.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    private Matrix getPooledBuffer(int rows, int columns, int depth, Precision precision) throws MatrixException {
+        PoolBucket poolBucket = getPoolBucket(rows, columns, depth, precision);
+        while (!poolBucket.buffers.isEmpty()) {
+            Matrix buffer = poolBucket.buffers.pollLast();
+            releasedMatrices.remove(buffer);
+            if (buffer.getMask() == null) {
+                reuses++;
+                return buffer;
+            }
+            pooledMatrices.remove(buffer);
+            ownedMatrices.remove(buffer);
+        }
+        Matrix buffer = precision.getNewMatrix(rows, columns, depth);
+        pooledMatrices.add(buffer);
+        ownedMatrices.add(buffer);
+        allocations++;
+        return buffer;
+    }
+
+    /**
+     * Releases pooled buffer so that it can be handed out again. Matrices not handed out in pooled mode are ignored.<br>
+     * Must be called only when buffer is no longer referenced by procedure.<br>
+     *
+     * @param matrix matrix to be released.
+     */
+    public void release(Matrix matrix) {
+        if (pooledMatrices == null || matrix == null || !pooledMatrices.contains(matrix) || !releasedMatrices.add(matrix)) return;
+        getPoolBucket(matrix.getRows(), matrix.getColumns(), matrix.getDepth(), Precision.getPrecision(matrix)).buffers.add(matrix);
+    }
+
+    /**
+     * Returns bucket of released pooled buffers for given dimensions and precision. Creates new bucket if there is no such bucket.
+     *
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param precision precision.
+     * @return bucket of released pooled buffers.
+     */
+    private PoolBucket getPoolBucket(int rows, int columns, int depth, Precision precision) {
+        for (int index = 0; index < releasedBuffers.size(); index++) {
+            if (releasedBuffers.get(index).matches(rows, columns, depth, precision)) return releasedBuffers.get(index);
+        }
+        PoolBucket poolBucket = new PoolBucket(rows, columns, depth, precision);
+        releasedBuffers.add(poolBucket);
+        return poolBucket;
+    }
+
+    /**
+     * Sets if result buffers are handed out from pool of released buffers instead of buffer lists of owners.
+     *
+     * @param pooled if true result buffers are handed out from pool of released buffers.
+     */
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns true if result buffers are handed out from pool of released buffers.
+     *
+     * @return true if result buffers are handed out from pool of released buffers.
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * Sets if matrix buffers are bypassed. Bypassed result matrices are left to garbage collection once nodes no longer refer them.
+     *
+     * @param matrixBypass if true no matrix buffers are handed out.
+     */
+    public void setMatrixBypass(boolean matrixBypass) {
+        this.matrixBypass = matrixBypass;
+    }
+
+    /**
+     * Returns true if matrix buffers are bypassed.
+     *
+     * @return true if no matrix buffers are handed out.
+     */
+    public boolean isMatrixBypass() {
+        return matrixBypass;
+    }
+
+    /**
+     * Returns buffer for given type and owner with all values set to zero.<br>
+     * Returns null if template matrix cannot be used as template for buffer.<br>
+     *
+     * @param bufferType buffer type.
+     * @param owner owner of buffer.
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param depth depth.
+     * @param template template matrix defining precision of buffer.
+     * @return zeroed buffer or null if template matrix cannot be used as template for buffer.
+     * @throws MatrixException throws exception if allocation of buffer fails.
+     */
+    public Matrix getZeroBuffer(BufferType bufferType, Object owner, int rows, int columns, int depth, Matrix template) throws MatrixException {
+        long previousAllocations = allocations;
+        Matrix buffer = getBuffer(bufferType, owner, rows, columns, depth, template);
+        if (buffer != null && allocations == previousAllocations) setZero(buffer);
+        return buffer;
+    }
+
+    /**
+     * Sets all values of buffer to zero. Data array of buffer is retained.
+     *
+     * @param buffer buffer.
+     */
+    private static void setZero(Matrix buffer) {
+        if (buffer instanceof DMatrix dMatrix && dMatrix.getData() != null) Arrays.fill(dMatrix.getData(), 0);
+        else if (buffer instanceof FMatrix fMatrix && fMatrix.getData() != null) Arrays.fill(fMatrix.getData(), 0);
+        else buffer.reset();
+    }
+
+    /**
+     * Rewinds buffer lists of given type so that buffers are handed out again from beginning. Rewinding result buffers releases also all pooled buffers.<br>
+     * Must be called only when matrices previously handed out of that type are no longer referenced by procedure.<br>
+     *
+     * @param bufferType buffer type.
+     */
+    public void rewind(BufferType bufferType) {
+        if (bufferType == BufferType.MATRIX && pooledMatrices != null) for (Matrix pooledMatrix : pooledMatrices) release(pooledMatrix);
+        if (buffers == null || !buffers.containsKey(bufferType)) return;
+        for (BufferList bufferList : buffers.get(bufferType).values()) bufferList.position = 0;
+    }
+
+    /**
+     * Checks if matrix is owned by buffer arena.
+     *
+     * @param matrix matrix.
+     * @return true if matrix is owned by buffer arena otherwise false.
+     */
+    public boolean contains(Matrix matrix) {
+        return ownedMatrices != null && matrix != null && ownedMatrices.contains(matrix);
+    }
+
+    /**
+     * Releases all buffers of buffer arena.
+     *
+     */
+    public void clear() {
+        buffers = null;
+        ownedMatrices = null;
+        pooledMatrices = null;
+        releasedBuffers = null;
+        releasedMatrices = null;
+    }
+
+    /**
+     * Returns number of buffers allocated.
+     *
+     * @return number of buffers allocated.
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * Returns number of times buffer has been reused.
+     *
+     * @return number of times buffer has been reused.
+     */
+    public long getReuses() {
+        return reuses;
+    }
+
+    /**
+     * Returns number of buffers held by buffer arena.
+     *
+     * @return number of buffers held by buffer arena.
+     */
+    public int size() {
+        return ownedMatrices == null ? 0 : ownedMatrices.size();
+    }
+
+}
@@ -8,6 +8,7 @@ package utils.procedure.node;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -18,6 +19,9 @@ import java.util.TreeMap;
  */
 public class MultiNode extends AbstractNode {
 
+    @Serial
+    private static final long serialVersionUID = 5943949485650096745L;
+
     /**
      * Matrices for node.
      *
@@ -90,14 +94,16 @@ public class MultiNode extends AbstractNode {
     }
 
     /**
-     * Resets node and removes other data than constant data.
+     * Resets node and removes other data than constant data. Maps of matrices and gradients are cleared and retained.
      *
      * @throws MatrixException throws exception is dimensions of matrices are not matching or any matrix is scalar type.
      */
     public void reset() throws MatrixException {
         super.reset();
-        matrices = new TreeMap<>();
-        gradients = new TreeMap<>();
+        if (matrices == null) matrices = new TreeMap<>();
+        else matrices.clear();
+        if (gradients == null) gradients = new TreeMap<>();
+        else gradients.clear();
     }
 
     /**
@@ -139,6 +145,15 @@ public class MultiNode extends AbstractNode {
         return matrices.get(index);
     }
 
+    /**
+     * Removes matrix of node.
+     *
+     * @param index data index for matrix.
+     */
+    public void removeMatrix(int index) {
+        matrices.remove(index);
+    }
+
     /**
      * Returns matrices of node.
      *
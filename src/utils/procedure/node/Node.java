@@ -68,6 +68,13 @@ public interface Node {
      */
     void setFromResultNode(Node fromResultNode);
 
+    /**
+     * Returns backward dependent node.
+     *
+     * @return from node or null if node is not dependent node.
+     */
+    Node getFromResultNode();
+
     /**
      * Sets forward dependent node.
      *
@@ -156,6 +163,13 @@ public interface Node {
      */
     boolean contains(Matrix matrix);
 
+    /**
+     * Sets buffer arena from which node takes its gradient buffers.
+     *
+     * @param bufferArena buffer arena or null if buffer arena is not used.
+     */
+    void setBufferArena(BufferArena bufferArena);
+
     /**
      * Resets node and removes other data than constant data.
      *
@@ -195,6 +209,13 @@ public interface Node {
      */
     Matrix getMatrix(int index);
 
+    /**
+     * Removes matrix of node.
+     *
+     * @param index data index for matrix.
+     */
+    void removeMatrix(int index);
+
     /**
      * Returns matrices of node.
      *
@@ -242,4 +263,41 @@ public interface Node {
      */
     void cumulateGradient(int index, Matrix outputGradient) throws MatrixException;
 
+    /**
+     * Sets batch matrix of node. Batch matrix contains samples of batch stacked column wise.
+     *
+     * @param batchMatrix batch matrix.
+     */
+    void setBatchMatrix(Matrix batchMatrix);
+
+    /**
+     * Returns batch matrix of node. For single node returns matrix of node.
+     *
+     * @return batch matrix of node.
+     */
+    Matrix getBatchMatrix();
+
+    /**
+     * Sets batch gradient of node.
+     *
+     * @param batchGradient batch gradient.
+     */
+    void setBatchGradient(Matrix batchGradient);
+
+    /**
+     * Returns batch gradient of node. For single node returns gradient of node.
+     *
+     * @return batch gradient of node.
+     */
+    Matrix getBatchGradient();
+
+    /**
+     * Cumulates batch gradient.
+     *
+     * @param outputGradient output gradient.
+     * @param numberOfEntries number of gradient entries (samples) included in output gradient.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    void cumulateBatchGradient(Matrix outputGradient, int numberOfEntries) throws MatrixException;
+
 }
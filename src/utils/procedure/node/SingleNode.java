@@ -8,6 +8,7 @@ package utils.procedure.node;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.Serial;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -18,6 +19,9 @@ import java.util.TreeMap;
  */
 public class SingleNode extends AbstractNode {
 
+    @Serial
+    private static final long serialVersionUID = -7198142499411473621L;
+
     /**
      * Constant matrix if node is treated as constant node.
      *
@@ -138,6 +142,14 @@ public class SingleNode extends AbstractNode {
         return matrix;
     }
 
+    /**
+     * Removes matrix of node. Single node retains its matrix.
+     *
+     * @param index data index for matrix.
+     */
+    public void removeMatrix(int index) {
+    }
+
     /**
      * Returns matrices of node.
      *
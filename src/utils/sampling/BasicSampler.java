@@ -40,6 +40,7 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
      *     - sampleReverse: if true samples in reverse order (assumes no sample shuffling). Default value false.<br>
      *     - sampleSize: number of samples sampled. Default value 1.<br>
      *     - cyclical: if true considered sample set as cyclical. Default value false.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
      *
      */
     private final static String paramNameTypes = "(numberOfIterations:iNT), " +
@@ -53,7 +54,8 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
             "(shuffleSamples:BOOLEAN), " +
             "(sampleReverse:BOOLEAN), " +
             "(sampleSize:INT), " +
-            "(cyclical:BOOLEAN)";
+            "(cyclical:BOOLEAN), " +
+            "(seed:LONG)";
 
     /**
      * Input sample set for sampling.
@@ -256,6 +258,7 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
      *     - sampleReverse: if true samples in reverse order (assumes no sample shuffling). Default value false.<br>
      *     - sampleSize: number of samples sampled. Default value 1.<br>
      *     - cyclical: if true considered sample set as cyclical. Default value false.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
      *
      * @param params parameters used for basic sampler.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -282,6 +285,7 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
             if (sampleSize < 1) throw new DynamicParamException("Sample size must be at least 1.");
         }
         if (params.hasParam("cyclical")) cyclical = params.getValueAsBoolean("cyclical");
+        if (params.hasParam("seed")) random.setSeed(params.getValueAsLong("seed"));
     }
 
     /**
@@ -292,6 +296,15 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
         if (fullSet) sampleAt = 0;
     }
 
+    /**
+     * Checks if reset changes order of samples. Full set is sampled without sampling position hence reset does not change order of samples.
+     *
+     * @return always false.
+     */
+    public boolean resetChangesOrder() {
+        return false;
+    }
+
     /**
      * Returns number of training or validation iterations.
      *
@@ -302,23 +315,26 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
     }
 
     /**
-     * Samples number of samples from input output pairs.
+     * Samples number of samples from input output pairs.<br>
+     * Sampled samples are placed into sequences in ascending order of their indices and renumbered densely starting from zero.<br>
      *
      * @param inputSequences sampled input sequence.
      * @param outputSequences sampled output sequence.
      */
     public void getSamples(TreeMap<Integer, Sequence>  inputSequences, TreeMap<Integer, Sequence>  outputSequences) {
-        ArrayList<Integer> sampleIndices = getSampleIndices();
+        TreeSet<Integer> sampleIndices = new TreeSet<>(getSampleIndices());
         for (Integer inputIndex : inputs.keySet()) inputSequences.put(inputIndex, new Sequence());
         for (Integer outputIndex : outputs.keySet()) outputSequences.put(outputIndex, new Sequence());
 
+        int sequenceIndex = 0;
         for (Integer sampleIndex : sampleIndices) {
             for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : inputs.entrySet()) {
-                inputSequences.get(entry.getKey()).put(sampleIndex, inputs.get(entry.getKey()).get(sampleIndex));
+                inputSequences.get(entry.getKey()).put(sequenceIndex, inputs.get(entry.getKey()).get(sampleIndex));
             }
             for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : outputs.entrySet()) {
-                outputSequences.get(entry.getKey()).put(sampleIndex, outputs.get(entry.getKey()).get(sampleIndex));
+                outputSequences.get(entry.getKey()).put(sequenceIndex, outputs.get(entry.getKey()).get(sampleIndex));
             }
+            sequenceIndex++;
         }
 
     }
@@ -334,7 +350,7 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
         ArrayList<Integer> sampleIndices = new ArrayList<>();
         if (randomOrder) {
             ArrayList<Integer> inputSamples = new ArrayList<>(inputSampleSet);
-            Collections.shuffle(inputSamples);
+            Collections.shuffle(inputSamples, random);
             int maxSampleAmount = Math.min(sampleSize, inputSamples.size());
             for (int sampleIndex = 0; sampleIndex < maxSampleAmount; sampleIndex++) {
                 sampleIndices.add(inputSamples.get(sampleIndex));
@@ -380,7 +396,7 @@ public class BasicSampler implements Sampler, Configurable, Serializable {
                 }
             }
 
-            if (shuffleSamples) Collections.shuffle(sampleIndices);
+            if (shuffleSamples) Collections.shuffle(sampleIndices, random);
             else if (sampleReverse) Collections.reverse(sampleIndices);
 
             if (perEpoch) for (Integer sampleIndex : sampleIndices) inputSampleSet.remove(sampleIndex);
@@ -0,0 +1,29 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import core.network.NeuralNetworkException;
+import utils.matrix.MatrixException;
+
+import java.util.TreeMap;
+
+/**
+ * Interface for transform stage applied to sampled batch such as normalization or one hot encoding.<br>
+ *
+ */
+public interface BatchTransform {
+
+    /**
+     * Transforms sampled batch in place.
+     *
+     * @param inputSequences sampled input sequences.
+     * @param outputSequences sampled output sequences.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if transform fails.
+     */
+    void transform(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) throws MatrixException, NeuralNetworkException;
+
+}
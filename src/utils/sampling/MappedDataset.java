@@ -0,0 +1,484 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import utils.matrix.Matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Implements memory mapped dataset stored in binary dataset file.<br>
+ * <br>
+ * Dataset file consists of header followed by fixed size sample records stored contiguously.<br>
+ * Header contains magic bytes, format version, number of inputs and outputs, number of samples and shape (rows, columns, depth) of each input and output.<br>
+ * Each sample record contains values of inputs followed by values of outputs in order of their indices. Values are stored as little endian doubles in same order as dense matrix stores them.<br>
+ * <br>
+ * Dataset file is mapped into memory segment by segment hence only samples actually read are paged into memory and dataset can be larger than heap.<br>
+ * Dataset files are created with dataset writer that appends samples one by one.<br>
+ *
+ */
+public class MappedDataset {
+
+    /**
+     * Magic bytes identifying dataset file.
+     *
+     */
+    private static final long MAGIC = 0x534454454E4E4153L; // "SANNETDS" in little endian byte order.
+
+    /**
+     * Version of dataset format.
+     *
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of fixed part of header in bytes.
+     *
+     */
+    private static final int FIXED_HEADER_SIZE = 48;
+
+    /**
+     * Alignment of sample records in bytes.
+     *
+     */
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Maximum size of single mapped segment in bytes.
+     *
+     */
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE - ALIGNMENT;
+
+    /**
+     * Implements writer for dataset file. Shapes of inputs and outputs are defined by first sample written.<br>
+     * Number of samples is written into header when writer is closed.<br>
+     *
+     */
+    public static class Writer implements AutoCloseable {
+
+        /**
+         * File channel of dataset file.
+         *
+         */
+        private final FileChannel fileChannel;
+
+        /**
+         * Write buffer.
+         *
+         */
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Shapes of inputs.
+         *
+         */
+        private int[][] inputShapes;
+
+        /**
+         * Shapes of outputs.
+         *
+         */
+        private int[][] outputShapes;
+
+        /**
+         * Number of samples written.
+         *
+         */
+        private long numberOfSamples = 0;
+
+        /**
+         * Constructor for dataset writer.
+         *
+         * @param path path of dataset file.
+         * @throws IOException throws exception if dataset file cannot be created.
+         */
+        public Writer(Path path) throws IOException {
+            fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Writes sample into dataset file.
+         *
+         * @param inputs inputs of sample by input index.
+         * @param outputs outputs of sample by output index.
+         * @throws IOException throws exception if shape of sample is not matching with previous samples or writing fails.
+         */
+        public void write(HashMap<Integer, Matrix> inputs, HashMap<Integer, Matrix> outputs) throws IOException {
+            if (inputShapes == null) {
+                inputShapes = getShapes(inputs);
+                outputShapes = getShapes(outputs);
+                fileChannel.position(getDataOffset(inputShapes.length + outputShapes.length));
+            }
+            checkShapes(inputs, inputShapes);
+            checkShapes(outputs, outputShapes);
+            for (int index = 0; index < inputShapes.length; index++) put(inputs.get(index));
+            for (int index = 0; index < outputShapes.length; index++) put(outputs.get(index));
+            numberOfSamples++;
+        }
+
+        /**
+         * Returns shapes of matrices. Matrices must be indexed from zero onwards.
+         *
+         * @param matrices matrices.
+         * @return shapes of matrices.
+         * @throws IOException throws exception if matrices are not indexed from zero onwards.
+         */
+        private int[][] getShapes(HashMap<Integer, Matrix> matrices) throws IOException {
+            int[][] shapes = new int[matrices.size()][];
+            for (int index = 0; index < shapes.length; index++) {
+                Matrix matrix = matrices.get(index);
+                if (matrix == null) throw new IOException("Sample entries must be indexed from 0 to " + (shapes.length - 1) + ".");
+                shapes[index] = new int[] { matrix.getRows(), matrix.getColumns(), matrix.getDepth() };
+            }
+            return shapes;
+        }
+
+        /**
+         * Checks that shapes of matrices are matching with given shapes.
+         *
+         * @param matrices matrices.
+         * @param shapes shapes.
+         * @throws IOException throws exception if shapes are not matching.
+         */
+        private void checkShapes(HashMap<Integer, Matrix> matrices, int[][] shapes) throws IOException {
+            if (matrices.size() != shapes.length) throw new IOException("Number of sample entries is not matching with dataset.");
+            for (int index = 0; index < shapes.length; index++) {
+                Matrix matrix = matrices.get(index);
+                if (matrix == null || matrix.getRows() != shapes[index][0] || matrix.getColumns() != shapes[index][1] || matrix.getDepth() != shapes[index][2]) {
+                    throw new IOException("Shape of sample entry " + index + " is not matching with dataset.");
+                }
+            }
+        }
+
+        /**
+         * Puts matrix values into write buffer.
+         *
+         * @param matrix matrix.
+         * @throws IOException throws exception if writing fails.
+         */
+        private void put(Matrix matrix) throws IOException {
+            for (int depth = 0; depth < matrix.getDepth(); depth++) {
+                for (int column = 0; column < matrix.getColumns(); column++) {
+                    for (int row = 0; row < matrix.getRows(); row++) {
+                        if (writeBuffer.remaining() < Double.BYTES) flush();
+                        writeBuffer.putDouble(matrix.getValue(row, column, depth));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Flushes write buffer into dataset file.
+         *
+         * @throws IOException throws exception if writing fails.
+         */
+        private void flush() throws IOException {
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) fileChannel.write(writeBuffer);
+            writeBuffer.clear();
+        }
+
+        /**
+         * Flushes remaining samples and writes header of dataset file.
+         *
+         * @throws IOException throws exception if writing fails.
+         */
+        public void close() throws IOException {
+            try {
+                if (inputShapes == null) throw new IOException("Dataset does not contain samples.");
+                flush();
+                int entries = inputShapes.length + outputShapes.length;
+                ByteBuffer header = ByteBuffer.allocate((int)getDataOffset(entries)).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC).putInt(VERSION).putInt(inputShapes.length).putInt(outputShapes.length).putInt(0);
+                header.putLong(numberOfSamples).putLong(getRecordSize(inputShapes, outputShapes)).putLong(getDataOffset(entries));
+                for (int[] shape : inputShapes) header.putInt(shape[0]).putInt(shape[1]).putInt(shape[2]);
+                for (int[] shape : outputShapes) header.putInt(shape[0]).putInt(shape[1]).putInt(shape[2]);
+                header.rewind();
+                while (header.hasRemaining()) fileChannel.write(header, header.position());
+                fileChannel.force(true);
+            }
+            finally {
+                fileChannel.close();
+            }
+        }
+
+    }
+
+    /**
+     * Shapes of inputs.
+     *
+     */
+    private final int[][] inputShapes;
+
+    /**
+     * Shapes of outputs.
+     *
+     */
+    private final int[][] outputShapes;
+
+    /**
+     * Offsets of inputs within sample record in doubles.
+     *
+     */
+    private final int[] inputOffsets;
+
+    /**
+     * Offsets of outputs within sample record in doubles.
+     *
+     */
+    private final int[] outputOffsets;
+
+    /**
+     * Number of samples.
+     *
+     */
+    private final long numberOfSamples;
+
+    /**
+     * Size of sample record in doubles.
+     *
+     */
+    private final int recordLength;
+
+    /**
+     * Number of sample records per mapped segment.
+     *
+     */
+    private final long recordsPerSegment;
+
+    /**
+     * Mapped segments of dataset file.
+     *
+     */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * Constructor for mapped dataset. Maps dataset file into memory.
+     *
+     * @param path path of dataset file.
+     * @throws IOException throws exception if dataset file is not valid or cannot be mapped.
+     */
+    public MappedDataset(Path path) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer fixedHeader = ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            read(fileChannel, fixedHeader, 0);
+            if (fixedHeader.getLong() != MAGIC) throw new IOException("File is not dataset file: " + path);
+            int version = fixedHeader.getInt();
+            if (version != VERSION) throw new IOException("Unsupported dataset version: " + version);
+            int numberOfInputs = fixedHeader.getInt();
+            int numberOfOutputs = fixedHeader.getInt();
+            fixedHeader.getInt();
+            numberOfSamples = fixedHeader.getLong();
+            long recordSize = fixedHeader.getLong();
+            long dataOffset = fixedHeader.getLong();
+
+            ByteBuffer shapeHeader = ByteBuffer.allocate(3 * Integer.BYTES * (numberOfInputs + numberOfOutputs)).order(ByteOrder.LITTLE_ENDIAN);
+            read(fileChannel, shapeHeader, FIXED_HEADER_SIZE);
+            inputShapes = readShapes(shapeHeader, numberOfInputs);
+            outputShapes = readShapes(shapeHeader, numberOfOutputs);
+            if (recordSize != getRecordSize(inputShapes, outputShapes) || recordSize > MAX_SEGMENT_SIZE) throw new IOException("Invalid sample record size: " + recordSize);
+            if (fileChannel.size() < dataOffset + numberOfSamples * recordSize) throw new IOException("Dataset file is truncated: " + path);
+
+            recordLength = (int)(recordSize / Double.BYTES);
+            inputOffsets = new int[numberOfInputs];
+            outputOffsets = new int[numberOfOutputs];
+            int offset = 0;
+            for (int index = 0; index < numberOfInputs; index++) {
+                inputOffsets[index] = offset;
+                offset += getSize(inputShapes[index]);
+            }
+            for (int index = 0; index < numberOfOutputs; index++) {
+                outputOffsets[index] = offset;
+                offset += getSize(outputShapes[index]);
+            }
+
+            recordsPerSegment = Math.max(1, MAX_SEGMENT_SIZE / recordSize);
+            segments = new DoubleBuffer[(int)((numberOfSamples + recordsPerSegment - 1) / recordsPerSegment)];
+            for (int segment = 0; segment < segments.length; segment++) {
+                long segmentRecords = Math.min(recordsPerSegment, numberOfSamples - segment * recordsPerSegment);
+                segments[segment] = fileChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset + segment * recordsPerSegment * recordSize, segmentRecords * recordSize).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        }
+    }
+
+    /**
+     * Writes samples into dataset file. Samples are written in ascending order of sample indices.
+     *
+     * @param path path of dataset file.
+     * @param inputs inputs by input index and sample index.
+     * @param outputs outputs by output index and sample index.
+     * @throws IOException throws exception if writing fails or samples are not consistent.
+     */
+    public static void write(Path path, HashMap<Integer, HashMap<Integer, Matrix>> inputs, HashMap<Integer, HashMap<Integer, Matrix>> outputs) throws IOException {
+        if (inputs == null || outputs == null || inputs.get(0) == null) throw new IOException("Inputs or outputs are not defined.");
+        try (Writer writer = new Writer(path)) {
+            for (Integer sampleIndex : new TreeSet<>(inputs.get(0).keySet())) {
+                HashMap<Integer, Matrix> sampleInputs = new HashMap<>();
+                HashMap<Integer, Matrix> sampleOutputs = new HashMap<>();
+                for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : inputs.entrySet()) sampleInputs.put(entry.getKey(), entry.getValue().get(sampleIndex));
+                for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : outputs.entrySet()) sampleOutputs.put(entry.getKey(), entry.getValue().get(sampleIndex));
+                writer.write(sampleInputs, sampleOutputs);
+            }
+        }
+    }
+
+    /**
+     * Reads buffer fully from file channel starting from given position.
+     *
+     * @param fileChannel file channel.
+     * @param buffer buffer.
+     * @param position position in file.
+     * @throws IOException throws exception if file ends before buffer is full.
+     */
+    private static void read(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of dataset file.");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Reads shapes from header.
+     *
+     * @param header header.
+     * @param numberOfShapes number of shapes.
+     * @return shapes.
+     */
+    private static int[][] readShapes(ByteBuffer header, int numberOfShapes) {
+        int[][] shapes = new int[numberOfShapes][];
+        for (int index = 0; index < numberOfShapes; index++) shapes[index] = new int[] { header.getInt(), header.getInt(), header.getInt() };
+        return shapes;
+    }
+
+    /**
+     * Returns offset of sample records in bytes.
+     *
+     * @param entries number of inputs and outputs.
+     * @return offset of sample records in bytes.
+     */
+    private static long getDataOffset(int entries) {
+        long headerSize = FIXED_HEADER_SIZE + 3L * Integer.BYTES * entries;
+        return (headerSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns size of sample record in bytes.
+     *
+     * @param inputShapes shapes of inputs.
+     * @param outputShapes shapes of outputs.
+     * @return size of sample record in bytes.
+     */
+    private static long getRecordSize(int[][] inputShapes, int[][] outputShapes) {
+        long recordSize = 0;
+        for (int[] shape : inputShapes) recordSize += (long)getSize(shape) * Double.BYTES;
+        for (int[] shape : outputShapes) recordSize += (long)getSize(shape) * Double.BYTES;
+        return recordSize;
+    }
+
+    /**
+     * Returns number of values of shape.
+     *
+     * @param shape shape.
+     * @return number of values of shape.
+     */
+    private static int getSize(int[] shape) {
+        return shape[0] * shape[1] * shape[2];
+    }
+
+    /**
+     * Returns number of samples.
+     *
+     * @return number of samples.
+     */
+    public long getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+    /**
+     * Returns number of inputs.
+     *
+     * @return number of inputs.
+     */
+    public int getNumberOfInputs() {
+        return inputShapes.length;
+    }
+
+    /**
+     * Returns number of outputs.
+     *
+     * @return number of outputs.
+     */
+    public int getNumberOfOutputs() {
+        return outputShapes.length;
+    }
+
+    /**
+     * Returns shape (rows, columns, depth) of input.
+     *
+     * @param inputIndex input index.
+     * @return shape of input.
+     */
+    public int[] getInputShape(int inputIndex) {
+        return inputShapes[inputIndex].clone();
+    }
+
+    /**
+     * Returns shape (rows, columns, depth) of output.
+     *
+     * @param outputIndex output index.
+     * @return shape of output.
+     */
+    public int[] getOutputShape(int outputIndex) {
+        return outputShapes[outputIndex].clone();
+    }
+
+    /**
+     * Reads values of input of sample into data array.
+     *
+     * @param sampleIndex sample index.
+     * @param inputIndex input index.
+     * @param data data array.
+     */
+    public void readInput(long sampleIndex, int inputIndex, double[] data) {
+        read(sampleIndex, inputOffsets[inputIndex], getSize(inputShapes[inputIndex]), data);
+    }
+
+    /**
+     * Reads values of output of sample into data array.
+     *
+     * @param sampleIndex sample index.
+     * @param outputIndex output index.
+     * @param data data array.
+     */
+    public void readOutput(long sampleIndex, int outputIndex, double[] data) {
+        read(sampleIndex, outputOffsets[outputIndex], getSize(outputShapes[outputIndex]), data);
+    }
+
+    /**
+     * Reads values from sample record into data array.
+     *
+     * @param sampleIndex sample index.
+     * @param offset offset of values within sample record in doubles.
+     * @param length number of values.
+     * @param data data array.
+     */
+    private void read(long sampleIndex, int offset, int length, double[] data) {
+        if (sampleIndex < 0 || sampleIndex >= numberOfSamples) throw new IndexOutOfBoundsException("Sample index " + sampleIndex + " is out of dataset range.");
+        int segment = (int)(sampleIndex / recordsPerSegment);
+        int record = (int)(sampleIndex % recordsPerSegment);
+        segments[segment].get(record * recordLength + offset, data, 0, length);
+    }
+
+}
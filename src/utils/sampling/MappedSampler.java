@@ -0,0 +1,363 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import core.network.NeuralNetworkException;
+import utils.configurable.Configurable;
+import utils.configurable.DynamicParam;
+import utils.configurable.DynamicParamException;
+import utils.matrix.DMatrix;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Implements sampler streaming samples from memory mapped dataset.<br>
+ * Only samples of current sampling are materialized. Matrices of samples are reused between samplings hence sampled matrices are valid only until following sampling.<br>
+ * Sampled samples are placed into sequences in ascending order of their indices and renumbered densely starting from zero.<br>
+ *
+ */
+public final class MappedSampler implements Sampler, Configurable {
+
+    /**
+     * Sets parameters used for mapped sampler.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - numberOfIterations: number of training or validation iterations executed during step. Default value 1.<br>
+     *     - perEpoch: if true sampling takes place epoch wise i.e. samples are not sampled again until all samples have been sampled once (applies to random order sampling). Default value false.<br>
+     *     - fullSet: if true samples entire dataset as single set. Default value false.<br>
+     *     - randomOrder: if true samples in random order. Default value true.<br>
+     *     - sampleSize: number of samples sampled. Default value 1.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
+     *
+     */
+    private final static String paramNameTypes = "(numberOfIterations:INT), " +
+            "(perEpoch:BOOLEAN), " +
+            "(fullSet:BOOLEAN), " +
+            "(randomOrder:BOOLEAN), " +
+            "(sampleSize:INT), " +
+            "(seed:LONG)";
+
+    /**
+     * Memory mapped dataset.
+     *
+     */
+    private final MappedDataset mappedDataset;
+
+    /**
+     * Number of samples in dataset.
+     *
+     */
+    private final long numberOfSamples;
+
+    /**
+     * Number of training or validation iterations.
+     *
+     */
+    private int numberOfIterations;
+
+    /**
+     * If true sampling takes place epoch wise i.e. samples are not sampled again until all samples have been sampled once.
+     *
+     */
+    private boolean perEpoch;
+
+    /**
+     * If true samples entire dataset as single set.
+     *
+     */
+    private boolean fullSet;
+
+    /**
+     * If true samples in random order.
+     *
+     */
+    private boolean randomOrder;
+
+    /**
+     * Sampling size.
+     *
+     */
+    private int sampleSize;
+
+    /**
+     * Current sampling position assuming no random sampling.
+     *
+     */
+    private long sampleAt = 0;
+
+    /**
+     * Permutation of sample indices for epoch wise random sampling.
+     *
+     */
+    private int[] epochPermutation = null;
+
+    /**
+     * Current position within epoch permutation.
+     *
+     */
+    private int epochPosition = 0;
+
+    /**
+     * Implements reused sample matrix and its data array.
+     *
+     * @param matrix sample matrix.
+     * @param data data array of sample matrix.
+     */
+    private record SampleBuffer(DMatrix matrix, double[] data) {
+    }
+
+    /**
+     * Reused input matrices by input index and sequence position.
+     *
+     */
+    private final ArrayList<ArrayList<SampleBuffer>> inputBuffers = new ArrayList<>();
+
+    /**
+     * Reused output matrices by output index and sequence position.
+     *
+     */
+    private final ArrayList<ArrayList<SampleBuffer>> outputBuffers = new ArrayList<>();
+
+    /**
+     * Random function.
+     *
+     */
+    private final Random random = new Random();
+
+    /**
+     * Constructor for mapped sampler.
+     *
+     * @param mappedDataset memory mapped dataset.
+     * @throws NeuralNetworkException throws exception if dataset is not defined or is empty.
+     */
+    public MappedSampler(MappedDataset mappedDataset) throws NeuralNetworkException {
+        initializeDefaultParams();
+        if (mappedDataset == null) throw new NeuralNetworkException("Dataset is not defined.");
+        if (mappedDataset.getNumberOfSamples() == 0 || mappedDataset.getNumberOfInputs() == 0 || mappedDataset.getNumberOfOutputs() == 0) throw new NeuralNetworkException("Input and output data sets cannot be empty.");
+        this.mappedDataset = mappedDataset;
+        numberOfSamples = mappedDataset.getNumberOfSamples();
+        for (int index = 0; index < mappedDataset.getNumberOfInputs(); index++) inputBuffers.add(new ArrayList<>());
+        for (int index = 0; index < mappedDataset.getNumberOfOutputs(); index++) outputBuffers.add(new ArrayList<>());
+    }
+
+    /**
+     * Constructor for mapped sampler.
+     *
+     * @param mappedDataset memory mapped dataset.
+     * @param params parameters used for mapped sampler.
+     * @throws NeuralNetworkException throws exception if dataset is not defined or is empty.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public MappedSampler(MappedDataset mappedDataset, String params) throws NeuralNetworkException, DynamicParamException {
+        this(mappedDataset);
+        if (params != null) setParams(new DynamicParam(params, getParamDefs()));
+    }
+
+    /**
+     * Constructor for mapped sampler.
+     *
+     * @param path path of dataset file.
+     * @param params parameters used for mapped sampler.
+     * @throws IOException throws exception if dataset file cannot be mapped.
+     * @throws NeuralNetworkException throws exception if dataset is empty.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public MappedSampler(Path path, String params) throws IOException, NeuralNetworkException, DynamicParamException {
+        this(new MappedDataset(path), params);
+    }
+
+    /**
+     * Initializes default params.
+     *
+     */
+    public void initializeDefaultParams() {
+        numberOfIterations = 1;
+        perEpoch = false;
+        fullSet = false;
+        randomOrder = true;
+        sampleSize = 1;
+    }
+
+    /**
+     * Returns parameters used for mapped sampler.
+     *
+     * @return parameters used for mapped sampler.
+     */
+    public String getParamDefs() {
+        return MappedSampler.paramNameTypes;
+    }
+
+    /**
+     * Sets parameters used for mapped sampler.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - numberOfIterations: number of training or validation iterations executed during step. Default value 1.<br>
+     *     - perEpoch: if true sampling takes place epoch wise i.e. samples are not sampled again until all samples have been sampled once (applies to random order sampling). Default value false.<br>
+     *     - fullSet: if true samples entire dataset as single set. Default value false.<br>
+     *     - randomOrder: if true samples in random order. Default value true.<br>
+     *     - sampleSize: number of samples sampled. Default value 1.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
+     *
+     * @param params parameters used for mapped sampler.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void setParams(DynamicParam params) throws DynamicParamException {
+        if (params.hasParam("numberOfIterations")) {
+            numberOfIterations = params.getValueAsInteger("numberOfIterations");
+            if (numberOfIterations < 1) throw new DynamicParamException("Number of iterations must be at least 1.");
+        }
+        if (params.hasParam("perEpoch")) perEpoch = params.getValueAsBoolean("perEpoch");
+        if (params.hasParam("fullSet")) fullSet = params.getValueAsBoolean("fullSet");
+        if (params.hasParam("randomOrder")) randomOrder = params.getValueAsBoolean("randomOrder");
+        if (params.hasParam("sampleSize")) {
+            sampleSize = params.getValueAsInteger("sampleSize");
+            if (sampleSize < 1) throw new DynamicParamException("Sample size must be at least 1.");
+        }
+        if (params.hasParam("seed")) random.setSeed(params.getValueAsLong("seed"));
+        if (fullSet && numberOfSamples > Integer.MAX_VALUE) throw new DynamicParamException("Dataset is too large to be sampled as full set.");
+        if (perEpoch && numberOfSamples > Integer.MAX_VALUE) throw new DynamicParamException("Dataset is too large for epoch wise sampling.");
+    }
+
+    /**
+     * Resets sampler.
+     *
+     */
+    public void reset() {
+        if (fullSet) sampleAt = 0;
+    }
+
+    /**
+     * Checks if reset changes order of samples. Reset rewinds sampling position of full set.
+     *
+     * @return true if full set is sampled otherwise false.
+     */
+    public boolean resetChangesOrder() {
+        return fullSet;
+    }
+
+    /**
+     * Returns number of training or validation iterations.
+     *
+     * @return number of training or validation iterations.
+     */
+    public int getNumberOfIterations() {
+        return numberOfIterations;
+    }
+
+    /**
+     * Samples number of samples from dataset. Matrices of previous sampling are overwritten.
+     *
+     * @param inputSequences sampled input sequence.
+     * @param outputSequences sampled output sequence.
+     */
+    public void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) {
+        long[] sampleIndices = getSampleIndices();
+        for (int inputIndex = 0; inputIndex < inputBuffers.size(); inputIndex++) inputSequences.put(inputIndex, new Sequence());
+        for (int outputIndex = 0; outputIndex < outputBuffers.size(); outputIndex++) outputSequences.put(outputIndex, new Sequence());
+
+        for (int sequenceIndex = 0; sequenceIndex < sampleIndices.length; sequenceIndex++) {
+            for (int inputIndex = 0; inputIndex < inputBuffers.size(); inputIndex++) {
+                SampleBuffer input = getBuffer(inputBuffers.get(inputIndex), sequenceIndex, mappedDataset.getInputShape(inputIndex));
+                mappedDataset.readInput(sampleIndices[sequenceIndex], inputIndex, input.data());
+                inputSequences.get(inputIndex).put(sequenceIndex, input.matrix());
+            }
+            for (int outputIndex = 0; outputIndex < outputBuffers.size(); outputIndex++) {
+                SampleBuffer output = getBuffer(outputBuffers.get(outputIndex), sequenceIndex, mappedDataset.getOutputShape(outputIndex));
+                mappedDataset.readOutput(sampleIndices[sequenceIndex], outputIndex, output.data());
+                outputSequences.get(outputIndex).put(sequenceIndex, output.matrix());
+            }
+        }
+    }
+
+    /**
+     * Returns reused matrix at sequence position. Matrix is created if it does not exist yet.
+     *
+     * @param buffers reused matrices.
+     * @param sequenceIndex sequence position.
+     * @param shape shape (rows, columns, depth) of matrix.
+     * @return reused matrix.
+     */
+    private SampleBuffer getBuffer(ArrayList<SampleBuffer> buffers, int sequenceIndex, int[] shape) {
+        while (buffers.size() <= sequenceIndex) {
+            double[] data = new double[shape[0] * shape[1] * shape[2]];
+            buffers.add(new SampleBuffer(new DMatrix(shape[0], shape[1], shape[2], data), data));
+        }
+        return buffers.get(sequenceIndex);
+    }
+
+    /**
+     * Returns sampled indices following sampling rules in ascending order.
+     *
+     * @return sampled indices.
+     */
+    private long[] getSampleIndices() {
+        long[] sampleIndices;
+        if (fullSet) {
+            sampleIndices = new long[(int)numberOfSamples];
+            for (int index = 0; index < sampleIndices.length; index++) sampleIndices[index] = index;
+        }
+        else if (randomOrder) {
+            if (perEpoch) sampleIndices = getEpochSampleIndices();
+            else sampleIndices = getRandomSampleIndices();
+        }
+        else {
+            int maxSampleAmount = (int)Math.min(sampleSize, numberOfSamples - sampleAt);
+            sampleIndices = new long[maxSampleAmount];
+            for (int index = 0; index < maxSampleAmount; index++) sampleIndices[index] = sampleAt + index;
+            sampleAt += maxSampleAmount;
+            if (sampleAt >= numberOfSamples) sampleAt = 0;
+        }
+        Arrays.sort(sampleIndices);
+        return sampleIndices;
+    }
+
+    /**
+     * Returns random sample indices taken from current epoch. New epoch starts with new random permutation once all samples have been sampled.
+     *
+     * @return random sample indices.
+     */
+    private long[] getEpochSampleIndices() {
+        if (epochPermutation == null) {
+            epochPermutation = new int[(int)numberOfSamples];
+            for (int index = 0; index < epochPermutation.length; index++) epochPermutation[index] = index;
+            epochPosition = epochPermutation.length;
+        }
+        if (epochPosition >= epochPermutation.length) {
+            for (int index = epochPermutation.length - 1; index > 0; index--) {
+                int swapIndex = random.nextInt(index + 1);
+                int sampleIndex = epochPermutation[index];
+                epochPermutation[index] = epochPermutation[swapIndex];
+                epochPermutation[swapIndex] = sampleIndex;
+            }
+            epochPosition = 0;
+        }
+        int maxSampleAmount = Math.min(sampleSize, epochPermutation.length - epochPosition);
+        long[] sampleIndices = new long[maxSampleAmount];
+        for (int index = 0; index < maxSampleAmount; index++) sampleIndices[index] = epochPermutation[epochPosition++];
+        return sampleIndices;
+    }
+
+    /**
+     * Returns distinct sample indices drawn uniformly at random from entire dataset.
+     *
+     * @return random sample indices.
+     */
+    private long[] getRandomSampleIndices() {
+        int maxSampleAmount = (int)Math.min(sampleSize, numberOfSamples);
+        HashSet<Long> sampledIndices = new HashSet<>();
+        for (long candidateRange = numberOfSamples - maxSampleAmount; candidateRange < numberOfSamples; candidateRange++) {
+            long sampleIndex = random.nextLong(candidateRange + 1);
+            if (!sampledIndices.add(sampleIndex)) sampledIndices.add(candidateRange);
+        }
+        long[] sampleIndices = new long[maxSampleAmount];
+        int index = 0;
+        for (Long sampleIndex : sampledIndices) sampleIndices[index++] = sampleIndex;
+        return sampleIndices;
+    }
+
+}
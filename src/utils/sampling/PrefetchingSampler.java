@@ -0,0 +1,343 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import core.network.NeuralNetworkException;
+import utils.configurable.Configurable;
+import utils.configurable.DynamicParam;
+import utils.configurable.DynamicParamException;
+import utils.matrix.MatrixException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Implements sampler that prefetches batches of wrapped sampler in background thread.<br>
+ * Batches are sampled and optionally transformed (e.g. normalized or one hot encoded) into bounded queue while neural network trains with current batch.<br>
+ * <br>
+ * Background thread is the only thread sampling wrapped sampler and it samples at most prefetch depth batches ahead regardless of number of iterations.<br>
+ * If reset of wrapped sampler does not change order of samples background thread keeps running across resets and prefetched batches remain valid.
+ * Otherwise background thread is allowed to sample only number of iterations of wrapped sampler ahead after each reset and wrapped sampler is reset while background thread is idle.
+ * This keeps state of wrapped sampler advancing same way as with direct sampling hence sequence of batches is identical to wrapped sampler (reproducible when wrapped sampler is seeded).<br>
+ * Transforms added while batches are prefetched are applied to already prefetched batches when they are returned hence adding transform does not discard batches.<br>
+ * Samples are copied by default before transforms so that transforms do not modify data of wrapped sampler and batches remain valid while following batches are sampled.<br>
+ *
+ */
+public final class PrefetchingSampler implements Sampler, Configurable {
+
+    /**
+     * Sets parameters used for prefetching sampler.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - prefetchDepth: number of batches prepared ahead. Default value 2.<br>
+     *     - copySamples: if true samples are copied before transforms are applied. Default value true.<br>
+     *
+     */
+    private final static String paramNameTypes = "(prefetchDepth:INT), " +
+            "(copySamples:BOOLEAN)";
+
+    /**
+     * Implements prefetched batch.
+     *
+     * @param inputSequences sampled input sequences.
+     * @param outputSequences sampled output sequences.
+     * @param numberOfTransforms number of transforms applied to batch.
+     * @param exception exception thrown when batch was sampled or null if sampling succeeded.
+     */
+    private record Batch(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences, int numberOfTransforms, Exception exception) {
+    }
+
+    /**
+     * Wrapped sampler.
+     *
+     */
+    private final Sampler sampler;
+
+    /**
+     * Transforms applied to sampled batches in order of addition. List is replaced when transform is added.
+     *
+     */
+    private volatile List<BatchTransform> batchTransforms = List.of();
+
+    /**
+     * Number of batches prepared ahead.
+     *
+     */
+    private int prefetchDepth;
+
+    /**
+     * If true samples are copied before transforms are applied.
+     *
+     */
+    private boolean copySamples;
+
+    /**
+     * Queue of prefetched batches.
+     *
+     */
+    private ArrayBlockingQueue<Batch> batches;
+
+    /**
+     * Permits for background thread to sample batches.
+     *
+     */
+    private Semaphore samplingPermits;
+
+    /**
+     * Number of granted sampling permits not yet consumed by getSamples.
+     *
+     */
+    private int grantedPermits;
+
+    /**
+     * If true reset of wrapped sampler changes order of samples and sampling permits are granted for number of iterations after each reset.
+     *
+     */
+    private boolean boundedByReset;
+
+    /**
+     * Background thread sampling batches.
+     *
+     */
+    private Thread prefetchThread;
+
+    /**
+     * Constructor for prefetching sampler.
+     *
+     * @param sampler wrapped sampler.
+     * @throws NeuralNetworkException throws exception if wrapped sampler is not defined.
+     */
+    public PrefetchingSampler(Sampler sampler) throws NeuralNetworkException {
+        initializeDefaultParams();
+        if (sampler == null) throw new NeuralNetworkException("Sampler is not defined.");
+        this.sampler = sampler;
+    }
+
+    /**
+     * Constructor for prefetching sampler.
+     *
+     * @param sampler wrapped sampler.
+     * @param params parameters used for prefetching sampler.
+     * @throws NeuralNetworkException throws exception if wrapped sampler is not defined.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public PrefetchingSampler(Sampler sampler, String params) throws NeuralNetworkException, DynamicParamException {
+        this(sampler);
+        if (params != null) setParams(new DynamicParam(params, getParamDefs()));
+    }
+
+    /**
+     * Initializes default params.
+     *
+     */
+    public void initializeDefaultParams() {
+        prefetchDepth = 2;
+        copySamples = true;
+    }
+
+    /**
+     * Returns parameters used for prefetching sampler.
+     *
+     * @return parameters used for prefetching sampler.
+     */
+    public String getParamDefs() {
+        return PrefetchingSampler.paramNameTypes;
+    }
+
+    /**
+     * Sets parameters used for prefetching sampler.<br>
+     * <br>
+     * Supported parameters are:<br>
+     *     - prefetchDepth: number of batches prepared ahead. Default value 2.<br>
+     *     - copySamples: if true samples are copied before transforms are applied. Default value true.<br>
+     *
+     * @param params parameters used for prefetching sampler.
+     * @throws DynamicParamException throws exception if parameter (params) setting fails.
+     */
+    public void setParams(DynamicParam params) throws DynamicParamException {
+        if (params.hasParam("prefetchDepth")) {
+            prefetchDepth = params.getValueAsInteger("prefetchDepth");
+            if (prefetchDepth < 1) throw new DynamicParamException("Prefetch depth must be at least 1.");
+        }
+        if (params.hasParam("copySamples")) copySamples = params.getValueAsBoolean("copySamples");
+    }
+
+    /**
+     * Adds transform applied to sampled batches in background thread. Transforms are applied in order of addition.<br>
+     * Batches prefetched before transform was added are transformed when they are returned.<br>
+     *
+     * @param batchTransform batch transform.
+     */
+    public void addTransform(BatchTransform batchTransform) {
+        ArrayList<BatchTransform> newBatchTransforms = new ArrayList<>(batchTransforms);
+        newBatchTransforms.add(batchTransform);
+        batchTransforms = List.copyOf(newBatchTransforms);
+    }
+
+    /**
+     * Resets sampler.<br>
+     * If reset of wrapped sampler does not change order of samples background sampling continues and prefetched batches are kept.
+     * Otherwise wrapped sampler is reset and background sampling is stopped only if batches have been sampled ahead of reset.<br>
+     *
+     */
+    public void reset() {
+        if (prefetchThread != null) {
+            if (!boundedByReset) return;
+            if (grantedPermits > 0) stop();
+        }
+        sampler.reset();
+    }
+
+    /**
+     * Checks if reset changes order of samples.
+     *
+     * @return true if reset of wrapped sampler changes order of samples otherwise false.
+     */
+    public boolean resetChangesOrder() {
+        return sampler.resetChangesOrder();
+    }
+
+    /**
+     * Returns number of training or validation iterations.
+     *
+     * @return number of training or validation iterations.
+     */
+    public int getNumberOfIterations() {
+        return sampler.getNumberOfIterations();
+    }
+
+    /**
+     * Returns next prefetched batch. Starts background sampling if not started.
+     *
+     * @param inputSequences sampled input sequences.
+     * @param outputSequences sampled output sequences.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if sampling fails or is interrupted.
+     */
+    public void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) throws MatrixException, NeuralNetworkException {
+        if (prefetchThread == null) start();
+        if (boundedByReset) {
+            if (grantedPermits == 0) {
+                grantedPermits = sampler.getNumberOfIterations();
+                samplingPermits.release(grantedPermits);
+            }
+            grantedPermits--;
+        }
+
+        Batch batch;
+        try {
+            batch = batches.take();
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException("Sampling was interrupted.");
+        }
+        if (!boundedByReset) samplingPermits.release();
+
+        if (batch.exception() != null) {
+            stop();
+            if (batch.exception() instanceof MatrixException matrixException) throw matrixException;
+            if (batch.exception() instanceof NeuralNetworkException neuralNetworkException) throw neuralNetworkException;
+            throw (RuntimeException)batch.exception();
+        }
+        List<BatchTransform> batchTransforms = this.batchTransforms;
+        for (int transformIndex = batch.numberOfTransforms(); transformIndex < batchTransforms.size(); transformIndex++) batchTransforms.get(transformIndex).transform(batch.inputSequences(), batch.outputSequences());
+        inputSequences.putAll(batch.inputSequences());
+        outputSequences.putAll(batch.outputSequences());
+    }
+
+    /**
+     * Starts background sampling. Background sampling is started also when first batch is requested if it has not been started explicitly.
+     *
+     */
+    public void start() {
+        if (prefetchThread != null) return;
+        batches = new ArrayBlockingQueue<>(prefetchDepth);
+        boundedByReset = sampler.resetChangesOrder();
+        samplingPermits = new Semaphore(boundedByReset ? 0 : prefetchDepth);
+        grantedPermits = 0;
+        prefetchThread = new Thread(this::prefetch, "PrefetchingSampler");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    /**
+     * Stops background sampling and discards prefetched batches.
+     *
+     */
+    public void stop() {
+        if (prefetchThread == null) return;
+        prefetchThread.interrupt();
+        boolean interrupted = false;
+        while (prefetchThread.isAlive()) {
+            try {
+                prefetchThread.join();
+            }
+            catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        prefetchThread = null;
+        batches = null;
+        samplingPermits = null;
+    }
+
+    /**
+     * Samples and transforms batches into queue as long as there are sampling permits. Exception thrown by sampling is passed to queue and ends sampling.
+     *
+     */
+    private void prefetch() {
+        ArrayBlockingQueue<Batch> batches = this.batches;
+        Semaphore samplingPermits = this.samplingPermits;
+        try {
+            while (true) {
+                samplingPermits.acquire();
+                Batch batch;
+                try {
+                    List<BatchTransform> batchTransforms = this.batchTransforms;
+                    TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+                    TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
+                    sampler.getSamples(inputSequences, outputSequences);
+                    if (copySamples) {
+                        copy(inputSequences);
+                        copy(outputSequences);
+                    }
+                    for (BatchTransform batchTransform : batchTransforms) batchTransform.transform(inputSequences, outputSequences);
+                    batch = new Batch(inputSequences, outputSequences, batchTransforms.size(), null);
+                }
+                catch (MatrixException | NeuralNetworkException | RuntimeException exception) {
+                    batch = new Batch(null, null, 0, exception);
+                }
+                batches.put(batch);
+                if (batch.exception() != null) return;
+            }
+        }
+        catch (InterruptedException exception) {
+            // Sampling is stopped.
+        }
+    }
+
+    /**
+     * Replaces sequences with sequences of copied samples.
+     *
+     * @param sequences sequences.
+     * @throws MatrixException throws exception if copying of sample fails.
+     */
+    private static void copy(TreeMap<Integer, Sequence> sequences) throws MatrixException {
+        for (Map.Entry<Integer, Sequence> entry : sequences.entrySet()) {
+            Sequence sequence = entry.getValue();
+            Sequence copySequence = new Sequence();
+            for (int sampleIndex : sequence.sampleIndices()) copySequence.put(sampleIndex, sequence.get(sampleIndex).copy());
+            entry.setValue(copySequence);
+        }
+    }
+
+}
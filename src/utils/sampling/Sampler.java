@@ -5,6 +5,9 @@
 
 package utils.sampling;
 
+import core.network.NeuralNetworkException;
+import utils.matrix.MatrixException;
+
 import java.util.TreeMap;
 
 /**
@@ -19,6 +22,15 @@ public interface Sampler {
      */
     void reset();
 
+    /**
+     * Checks if reset changes order of samples i.e. if samples sampled after reset differ from samples that would have been sampled without reset.
+     *
+     * @return true if reset changes order of samples otherwise false.
+     */
+    default boolean resetChangesOrder() {
+        return true;
+    }
+
     /**
      * Returns number of training or validation iterations.
      *
@@ -31,7 +43,9 @@ public interface Sampler {
      *
      * @param inputSequences sampled input sequences.
      * @param outputSequences sampled output sequences.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if sampling fails.
      */
-    void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence>  outputSequences);
+    void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence>  outputSequences) throws MatrixException, NeuralNetworkException;
 
 }
@@ -9,31 +9,110 @@ import utils.matrix.AbstractMatrix;
 import utils.matrix.Matrix;
 import utils.matrix.MatrixException;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Implements sequence for samples.<br>
+ * Samples are stored into contiguous array indexed by sample index relative to offset of array hence sample indices are expected to be dense.<br>
+ * If span of sample indices grows far larger than number of samples or beyond maximum array size samples are moved into sparse sorted map until sequence is reset.<br>
+ * Sequence has single writer at a time (layer producing sequence) while it can be read concurrently by other threads (following layer stages).
+ * Samples are written with release semantics and read with acquire semantics and storage is replaced as whole when it is grown.
+ * Hence samples are published safely to readers without locking.<br>
+ * Sample indices can be iterated in ascending and descending order as primitive arrays without boxing.<br>
  *
  */
-public class Sequence implements Serializable {
+public final class Sequence implements Serializable {
 
     @Serial
     private static final long serialVersionUID = 4183245025751674913L;
 
     /**
-     * Ordered map of samples.
+     * Variable handle for acquire and release access to sample array elements.
      *
      */
-    private final TreeMap<Integer, Matrix> samples = new TreeMap<>();
+    private static final VarHandle SAMPLE = MethodHandles.arrayElementVarHandle(Matrix[].class);
 
     /**
-     * Re-entrant read write lock for sequence access.
+     * Initial capacity of sample storage.
      *
      */
-    private final ReentrantReadWriteLock accessLock = new ReentrantReadWriteLock();
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Maximum capacity of sample storage.
+     *
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Capacity of sample storage above which samples are considered to be moved into sparse storage.
+     *
+     */
+    private static final int SPARSE_THRESHOLD_CAPACITY = 4096;
+
+    /**
+     * Ratio of storage capacity to number of samples above which samples are moved into sparse storage.
+     *
+     */
+    private static final int SPARSE_THRESHOLD_RATIO = 16;
+
+    /**
+     * Implements sample storage. Storage is immutable in terms of offset and capacity and replaced as whole when grown.
+     *
+     * @param offset sample index of first array slot.
+     * @param samples sample array.
+     */
+    private record Storage(int offset, Matrix[] samples) implements Serializable {
+
+        /**
+         * Returns array slot of sample index or -1 if sample index is outside storage.
+         *
+         * @param sampleIndex sample index.
+         * @return array slot of sample index or -1 if sample index is outside storage.
+         */
+        int slot(int sampleIndex) {
+            long slot = (long)sampleIndex - offset;
+            return slot >= 0 && slot < samples.length ? (int)slot : -1;
+        }
+
+    }
+
+    /**
+     * Sample storage.
+     *
+     */
+    private volatile Storage storage = new Storage(0, new Matrix[0]);
+
+    /**
+     * Sparse sample storage used instead of sample array if sample indices are sparse.
+     *
+     */
+    private volatile ConcurrentSkipListMap<Integer, Matrix> sparseSamples = null;
+
+    /**
+     * Number of samples in sequence.
+     *
+     */
+    private volatile int size = 0;
+
+    /**
+     * Smallest sample index in sequence.
+     *
+     */
+    private volatile int firstIndex = 0;
+
+    /**
+     * Largest sample index in sequence.
+     *
+     */
+    private volatile int lastIndex = -1;
 
     /**
      * Constructor for sequence.
@@ -48,13 +127,7 @@ public class Sequence implements Serializable {
      * @param newSamples samples to be added into this sequence.
      */
     public Sequence(HashMap<Integer, Matrix> newSamples) {
-        accessLock.writeLock().lock();
-        try {
-            samples.putAll(newSamples);
-        }
-        finally {
-            accessLock.writeLock().unlock();
-        }
+        for (Map.Entry<Integer, Matrix> entry : newSamples.entrySet()) put(entry.getKey(), entry.getValue());
     }
 
 
@@ -64,21 +137,24 @@ public class Sequence implements Serializable {
      * @param matrix matrix.
      */
     public Sequence(Matrix matrix) {
-        this(new HashMap<>() {{ put(0, matrix); }});
+        put(0, matrix);
     }
 
     /**
-     * Resets sequence.
+     * Resets sequence. Sample array storage is retained for following samples and sparse storage is released.
      *
      */
     public void reset() {
-        accessLock.writeLock().lock();
-        try {
-            samples.clear();
-        }
-        finally {
-            accessLock.writeLock().unlock();
-        }
+        Storage currentStorage = storage;
+        if (size > 0) {
+            int fromSlot = (int)Math.max(0, (long)firstIndex - currentStorage.offset());
+            int toSlot = (int)Math.min(currentStorage.samples().length, (long)lastIndex - currentStorage.offset() + 1);
+            for (int slot = fromSlot; slot < toSlot; slot++) SAMPLE.setRelease(currentStorage.samples(), slot, null);
+        }
+        sparseSamples = null;
+        lastIndex = -1;
+        firstIndex = 0;
+        size = 0;
     }
 
     /**
@@ -87,13 +163,7 @@ public class Sequence implements Serializable {
      * @return returns true if sequence is empty otherwise returns false.
      */
     public boolean isEmpty() {
-        accessLock.readLock().lock();
-        try {
-            return samples.isEmpty();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return size == 0;
     }
 
     /**
@@ -102,13 +172,7 @@ public class Sequence implements Serializable {
      * @return number of samples in sequence.
      */
     public int sampleSize() {
-        accessLock.readLock().lock();
-        try {
-            return samples.size();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return size;
     }
 
     /**
@@ -117,13 +181,7 @@ public class Sequence implements Serializable {
      * @return total size of sequence.
      */
     public int totalSize() {
-        accessLock.readLock().lock();
-        try {
-            return samples.size();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return size;
     }
 
     /**
@@ -133,13 +191,121 @@ public class Sequence implements Serializable {
      * @param sample sample to be inserted.
      */
     public void put(int sampleIndex, Matrix sample) {
-        accessLock.writeLock().lock();
-        try {
-            samples.put(sampleIndex, sample);
+        if (sample == null) {
+            remove(sampleIndex);
+            return;
+        }
+        Matrix previousSample;
+        ConcurrentSkipListMap<Integer, Matrix> currentSparseSamples = sparseSamples;
+        if (currentSparseSamples == null) {
+            Storage currentStorage = storage;
+            int slot = currentStorage.slot(sampleIndex);
+            if (slot == -1) {
+                long capacity = getRequiredCapacity(currentStorage, sampleIndex);
+                if (capacity > MAX_CAPACITY || (capacity > SPARSE_THRESHOLD_CAPACITY && capacity > SPARSE_THRESHOLD_RATIO * (size + 1L))) currentSparseSamples = toSparse();
+                else {
+                    currentStorage = grow(currentStorage, sampleIndex, (int)capacity);
+                    slot = currentStorage.slot(sampleIndex);
+                }
+            }
+            if (currentSparseSamples == null) {
+                previousSample = (Matrix)SAMPLE.getAcquire(currentStorage.samples(), slot);
+                SAMPLE.setRelease(currentStorage.samples(), slot, sample);
+            }
+            else previousSample = currentSparseSamples.put(sampleIndex, sample);
+        }
+        else previousSample = currentSparseSamples.put(sampleIndex, sample);
+        if (previousSample != null) return;
+        if (size == 0) {
+            firstIndex = sampleIndex;
+            lastIndex = sampleIndex;
         }
-        finally {
-            accessLock.writeLock().unlock();
+        else {
+            if (sampleIndex < firstIndex) firstIndex = sampleIndex;
+            if (sampleIndex > lastIndex) lastIndex = sampleIndex;
         }
+        size = size + 1;
+    }
+
+    /**
+     * Removes sample from specific sample index.
+     *
+     * @param sampleIndex sample index.
+     */
+    private void remove(int sampleIndex) {
+        ConcurrentSkipListMap<Integer, Matrix> currentSparseSamples = sparseSamples;
+        if (currentSparseSamples != null) {
+            if (currentSparseSamples.remove(sampleIndex) == null) return;
+            if (size == 1) {
+                reset();
+                return;
+            }
+            if (sampleIndex == firstIndex) firstIndex = currentSparseSamples.firstKey();
+            if (sampleIndex == lastIndex) lastIndex = currentSparseSamples.lastKey();
+            size = size - 1;
+            return;
+        }
+        Storage currentStorage = storage;
+        int slot = currentStorage.slot(sampleIndex);
+        if (slot == -1 || SAMPLE.getAcquire(currentStorage.samples(), slot) == null) return;
+        SAMPLE.setRelease(currentStorage.samples(), slot, null);
+        if (size == 1) {
+            reset();
+            return;
+        }
+        if (sampleIndex == firstIndex) firstIndex = nextIndex(currentStorage, sampleIndex);
+        if (sampleIndex == lastIndex) lastIndex = previousIndex(currentStorage, sampleIndex);
+        size = size - 1;
+    }
+
+    /**
+     * Returns capacity of storage required to cover both current storage and sample index.
+     *
+     * @param currentStorage current storage.
+     * @param sampleIndex sample index.
+     * @return required capacity.
+     */
+    private static long getRequiredCapacity(Storage currentStorage, int sampleIndex) {
+        int currentLength = currentStorage.samples().length;
+        if (currentLength == 0) return INITIAL_CAPACITY;
+        long currentOffset = currentStorage.offset();
+        return sampleIndex < currentOffset ? currentOffset + currentLength - sampleIndex : sampleIndex - currentOffset + 1;
+    }
+
+    /**
+     * Grows storage so that it covers sample index. Storage is grown at least to double size towards direction of sample index.
+     *
+     * @param currentStorage current storage.
+     * @param sampleIndex sample index.
+     * @param requiredCapacity capacity required to cover both current storage and sample index.
+     * @return grown storage.
+     */
+    private Storage grow(Storage currentStorage, int sampleIndex, int requiredCapacity) {
+        Matrix[] currentSamples = currentStorage.samples();
+        Storage newStorage;
+        if (currentSamples.length == 0) newStorage = new Storage(sampleIndex, new Matrix[INITIAL_CAPACITY]);
+        else {
+            long currentOffset = currentStorage.offset();
+            int capacity = (int)Math.min(MAX_CAPACITY, Math.max(currentSamples.length * 2L, requiredCapacity));
+            long newOffset = sampleIndex < currentOffset ? Math.max(Integer.MIN_VALUE, Math.min(sampleIndex, currentOffset + currentSamples.length - capacity)) : currentOffset;
+            Matrix[] newSamples = new Matrix[capacity];
+            for (int slot = 0; slot < currentSamples.length; slot++) newSamples[(int)(currentOffset - newOffset) + slot] = (Matrix)SAMPLE.getAcquire(currentSamples, slot);
+            newStorage = new Storage((int)newOffset, newSamples);
+        }
+        storage = newStorage;
+        return newStorage;
+    }
+
+    /**
+     * Moves samples of storage into sparse storage. Sparse storage is published once it contains all samples hence readers see all samples throughout.
+     *
+     * @return sparse storage.
+     */
+    private ConcurrentSkipListMap<Integer, Matrix> toSparse() {
+        ConcurrentSkipListMap<Integer, Matrix> newSparseSamples = new ConcurrentSkipListMap<>();
+        for (int sampleIndex : getSampleIndices(false)) newSparseSamples.put(sampleIndex, get(sampleIndex));
+        sparseSamples = newSparseSamples;
+        return newSparseSamples;
     }
 
     /**
@@ -148,59 +314,210 @@ public class Sequence implements Serializable {
      * @param sequence sequence containing new samples for this sequence.
      */
     public void putAll(Sequence sequence) {
-        accessLock.writeLock().lock();
-        try {
-            samples.putAll(sequence.get());
-        }
-        finally {
-            accessLock.writeLock().unlock();
-        }
+        for (int sampleIndex : sequence.sampleIndices()) put(sampleIndex, sequence.get(sampleIndex));
     }
 
     /**
      * Returns sample at specific sample index.
      *
      * @param sampleIndex sample index.
-     * @return requested sample.
+     * @return requested sample or null if sequence does not contain sample index.
      */
     public Matrix get(int sampleIndex) {
-        accessLock.readLock().lock();
-        try {
-            return samples.get(sampleIndex);
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        ConcurrentSkipListMap<Integer, Matrix> currentSparseSamples = sparseSamples;
+        if (currentSparseSamples != null) return currentSparseSamples.get(sampleIndex);
+        Storage currentStorage = storage;
+        int slot = currentStorage.slot(sampleIndex);
+        return slot == -1 ? null : (Matrix)SAMPLE.getAcquire(currentStorage.samples(), slot);
     }
 
     /**
-     * Returns all samples inside sequence as ordered map.
+     * Checks if sequence contains sample at specific sample index.
+     *
+     * @param sampleIndex sample index.
+     * @return true if sequence contains sample at sample index otherwise false.
+     */
+    public boolean contains(int sampleIndex) {
+        return get(sampleIndex) != null;
+    }
+
+    /**
+     * Returns all samples inside sequence as ordered map. Map is copy of sequence.
      *
      * @return all samples inside sequence as ordered map.
      */
     public TreeMap<Integer, Matrix> get() {
-        accessLock.readLock().lock();
-        try {
-            return samples;
+        TreeMap<Integer, Matrix> samples = new TreeMap<>();
+        for (int sampleIndex : sampleIndices()) samples.put(sampleIndex, get(sampleIndex));
+        return samples;
+    }
+
+    /**
+     * Returns sample indices in ascending order.
+     *
+     * @return sample indices in ascending order.
+     */
+    public int[] sampleIndices() {
+        return getSampleIndices(false);
+    }
+
+    /**
+     * Returns sample indices in descending order.
+     *
+     * @return sample indices in descending order.
+     */
+    public int[] descendingSampleIndices() {
+        return getSampleIndices(true);
+    }
+
+    /**
+     * Returns sample indices in ascending or descending order.
+     *
+     * @param descending if true sample indices are returned in descending order otherwise in ascending order.
+     * @return sample indices.
+     */
+    private int[] getSampleIndices(boolean descending) {
+        ConcurrentSkipListMap<Integer, Matrix> currentSparseSamples = sparseSamples;
+        if (currentSparseSamples != null) return getSparseSampleIndices(currentSparseSamples, descending);
+        Storage currentStorage = storage;
+        Matrix[] samples = currentStorage.samples();
+        int sampleSize = size;
+        int[] sampleIndices = new int[sampleSize];
+        if (sampleSize == 0) return sampleIndices;
+        int fromSlot = (int)Math.max(0, (long)firstIndex - currentStorage.offset());
+        int toSlot = (int)Math.min(samples.length, (long)lastIndex - currentStorage.offset() + 1);
+        int count = 0;
+        for (int slot = fromSlot; slot < toSlot && count < sampleSize; slot++) {
+            if (SAMPLE.getAcquire(samples, slot) != null) sampleIndices[count++] = currentStorage.offset() + slot;
+        }
+        if (count < sampleSize) sampleIndices = Arrays.copyOf(sampleIndices, count);
+        if (descending) {
+            for (int index = 0; index < count / 2; index++) {
+                int sampleIndex = sampleIndices[index];
+                sampleIndices[index] = sampleIndices[count - 1 - index];
+                sampleIndices[count - 1 - index] = sampleIndex;
+            }
+        }
+        return sampleIndices;
+    }
+
+    /**
+     * Returns sample indices of sparse storage in ascending or descending order.
+     *
+     * @param currentSparseSamples sparse storage.
+     * @param descending if true sample indices are returned in descending order otherwise in ascending order.
+     * @return sample indices.
+     */
+    private int[] getSparseSampleIndices(ConcurrentSkipListMap<Integer, Matrix> currentSparseSamples, boolean descending) {
+        int[] sampleIndices = new int[Math.max(INITIAL_CAPACITY, size)];
+        int count = 0;
+        for (int sampleIndex : descending ? currentSparseSamples.descendingKeySet() : currentSparseSamples.navigableKeySet()) {
+            if (count == sampleIndices.length) sampleIndices = Arrays.copyOf(sampleIndices, count * 2);
+            sampleIndices[count++] = sampleIndex;
+        }
+        return count < sampleIndices.length ? Arrays.copyOf(sampleIndices, count) : sampleIndices;
+    }
+
+    /**
+     * Returns next sample index after given sample index within storage or last index + 1 if there is none.
+     *
+     * @param currentStorage storage.
+     * @param sampleIndex sample index.
+     * @return next sample index.
+     */
+    private int nextIndex(Storage currentStorage, int sampleIndex) {
+        Matrix[] samples = currentStorage.samples();
+        for (int slot = sampleIndex - currentStorage.offset() + 1; slot < samples.length; slot++) {
+            if (SAMPLE.getAcquire(samples, slot) != null) return currentStorage.offset() + slot;
         }
-        finally {
-            accessLock.readLock().unlock();
+        return lastIndex + 1;
+    }
+
+    /**
+     * Returns previous sample index before given sample index within storage or first index - 1 if there is none.
+     *
+     * @param currentStorage storage.
+     * @param sampleIndex sample index.
+     * @return previous sample index.
+     */
+    private int previousIndex(Storage currentStorage, int sampleIndex) {
+        Matrix[] samples = currentStorage.samples();
+        for (int slot = sampleIndex - currentStorage.offset() - 1; slot >= 0; slot--) {
+            if (SAMPLE.getAcquire(samples, slot) != null) return currentStorage.offset() + slot;
         }
+        return firstIndex - 1;
     }
 
     /**
-     * Returns sample values.
+     * Implements iterator over snapshot of sample indices of sequence.
      *
-     * @return sample values.
      */
-    public Collection<Matrix> values() {
-        accessLock.readLock().lock();
-        try {
-            return samples.values();
+    private class SampleIndexIterator {
+
+        /**
+         * Sample indices iterated.
+         *
+         */
+        private final int[] sampleIndices;
+
+        /**
+         * Current position.
+         *
+         */
+        private int position = 0;
+
+        /**
+         * Constructor for sample index iterator.
+         *
+         * @param descending if true sample indices are iterated in descending order otherwise in ascending order.
+         */
+        SampleIndexIterator(boolean descending) {
+            sampleIndices = getSampleIndices(descending);
         }
-        finally {
-            accessLock.readLock().unlock();
+
+        /**
+         * Checks if there are more sample indices.
+         *
+         * @return true if there are more sample indices otherwise false.
+         */
+        boolean hasNext() {
+            return position < sampleIndices.length;
         }
+
+        /**
+         * Returns next sample index.
+         *
+         * @return next sample index.
+         */
+        int next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return sampleIndices[position++];
+        }
+
+    }
+
+    /**
+     * Returns sample values in ascending order of sample indices.
+     *
+     * @return sample values.
+     */
+    public Collection<Matrix> values() {
+        return new AbstractCollection<>() {
+            public Iterator<Matrix> iterator() {
+                SampleIndexIterator sampleIndexIterator = new SampleIndexIterator(false);
+                return new Iterator<>() {
+                    public boolean hasNext() {
+                        return sampleIndexIterator.hasNext();
+                    }
+                    public Matrix next() {
+                        return get(sampleIndexIterator.next());
+                    }
+                };
+            }
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
@@ -209,13 +526,7 @@ public class Sequence implements Serializable {
      * @return sample index key set.
      */
     public Set<Integer> keySet() {
-        accessLock.readLock().lock();
-        try {
-            return samples.keySet();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return getKeySet(false);
     }
 
     /**
@@ -224,13 +535,7 @@ public class Sequence implements Serializable {
      * @return sample index entry set.
      */
     public Set<Map.Entry<Integer, Matrix>> entrySet() {
-        accessLock.readLock().lock();
-        try {
-            return samples.entrySet();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return getEntrySet(false);
     }
 
     /**
@@ -239,13 +544,7 @@ public class Sequence implements Serializable {
      * @return descending sample index entry set.
      */
     public Set<Map.Entry<Integer, Matrix>> descendingEntrySet() {
-        accessLock.readLock().lock();
-        try {
-            return samples.descendingMap().entrySet();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return getEntrySet(true);
     }
 
     /**
@@ -254,43 +553,83 @@ public class Sequence implements Serializable {
      * @return sample index key set in descending order.
      */
     public Set<Integer> descendingKeySet() {
-        accessLock.readLock().lock();
-        try {
-            return samples.descendingKeySet();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+        return getKeySet(true);
+    }
+
+    /**
+     * Returns ordered view to sample indices of sequence.
+     *
+     * @param descending if true sample indices are iterated in descending order otherwise in ascending order.
+     * @return ordered view to sample indices.
+     */
+    private Set<Integer> getKeySet(boolean descending) {
+        return new AbstractSet<>() {
+            public Iterator<Integer> iterator() {
+                SampleIndexIterator sampleIndexIterator = new SampleIndexIterator(descending);
+                return new Iterator<>() {
+                    public boolean hasNext() {
+                        return sampleIndexIterator.hasNext();
+                    }
+                    public Integer next() {
+                        return sampleIndexIterator.next();
+                    }
+                };
+            }
+            public boolean contains(Object object) {
+                return object instanceof Integer sampleIndex && Sequence.this.contains(sampleIndex);
+            }
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns ordered view to samples of sequence.
+     *
+     * @param descending if true samples are iterated in descending order of sample indices otherwise in ascending order.
+     * @return ordered view to samples.
+     */
+    private Set<Map.Entry<Integer, Matrix>> getEntrySet(boolean descending) {
+        return new AbstractSet<>() {
+            public Iterator<Map.Entry<Integer, Matrix>> iterator() {
+                SampleIndexIterator sampleIndexIterator = new SampleIndexIterator(descending);
+                return new Iterator<>() {
+                    public boolean hasNext() {
+                        return sampleIndexIterator.hasNext();
+                    }
+                    public Map.Entry<Integer, Matrix> next() {
+                        int sampleIndex = sampleIndexIterator.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(sampleIndex, get(sampleIndex));
+                    }
+                };
+            }
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
      * Returns first index of sequence.
      *
      * @return first index of sequence.
+     * @throws NoSuchElementException throws exception if sequence is empty.
      */
-    public Integer firstKey() {
-        accessLock.readLock().lock();
-        try {
-            return samples.firstKey();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+    public int firstKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return firstIndex;
     }
 
     /**
      * Returns last index of sequence.
      *
      * @return last index of sequence.
+     * @throws NoSuchElementException throws exception if sequence is empty.
      */
-    public Integer lastKey() {
-        accessLock.readLock().lock();
-        try {
-            return samples.lastKey();
-        }
-        finally {
-            accessLock.readLock().unlock();
-        }
+    public int lastKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return lastIndex;
     }
 
     /**
@@ -303,7 +642,7 @@ public class Sequence implements Serializable {
      */
     public static TreeMap<Integer, Sequence> join(TreeMap<Integer, Sequence> sequences, boolean joinedVertically) throws MatrixException {
         Sequence joinedSequence = new Sequence();
-        for (Integer sampleIndex : sequences.get(0).keySet()) {
+        for (int sampleIndex : sequences.get(0).sampleIndices()) {
             Matrix[] matrices = new Matrix[sequences.size()];
             for (Map.Entry<Integer, Sequence> entry : sequences.entrySet()) {
                 matrices[entry.getKey()] = entry.getValue().get(sampleIndex);
@@ -320,8 +659,8 @@ public class Sequence implements Serializable {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public void increment(Sequence sequence) throws MatrixException {
-        for (Map.Entry<Integer, Matrix> entry : sequence.entrySet()) {
-            increment(entry.getKey(), entry.getValue());
+        for (int sampleIndex : sequence.sampleIndices()) {
+            increment(sampleIndex, sequence.get(sampleIndex));
         }
     }
 
@@ -333,15 +672,9 @@ public class Sequence implements Serializable {
      * @throws MatrixException throws exception if matrix operation fails.
      */
     public void increment(int sampleIndex, Matrix matrix) throws MatrixException {
-        accessLock.writeLock().lock();
-        try {
-            Matrix currentMatrix = get(sampleIndex);
-            if (currentMatrix != null) currentMatrix.addBy(matrix);
-            else put(sampleIndex, matrix);
-        }
-        finally {
-            accessLock.writeLock().unlock();
-        }
+        Matrix currentMatrix = get(sampleIndex);
+        if (currentMatrix != null) currentMatrix.addBy(matrix);
+        else put(sampleIndex, matrix);
     }
 
     /**
@@ -356,4 +689,22 @@ public class Sequence implements Serializable {
         return sequences;
     }
 
+    /**
+     * Reads sequence from object input stream. Sequences stored in earlier format are restored as empty sequences.
+     *
+     * @param objectInputStream object input stream.
+     * @throws IOException throws exception if reading fails.
+     * @throws ClassNotFoundException throws exception if class of serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        objectInputStream.defaultReadObject();
+        if (storage == null) {
+            storage = new Storage(0, new Matrix[0]);
+            size = 0;
+            firstIndex = 0;
+            lastIndex = -1;
+        }
+    }
+
 }
@@ -32,6 +32,7 @@ public class SequenceSampler implements Sampler, Configurable, Serializable {
      *     - randomOrder: if true samples in random order. Default value true.<br>
      *     - stepForward: if true samples sampling steps in forward order (not valid for randomOrder sampling). Default value true.<br>
      *     - stepSize: number of steps taken forward or backward when sampling (not valid for randomOrder sampling). Default value 1.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
      *
      */
     private final static String paramNameTypes = "(numberOfIterations:iNT), " +
@@ -39,7 +40,8 @@ public class SequenceSampler implements Sampler, Configurable, Serializable {
             "(fullSet:BOOLEAN), " +
             "(randomOrder:BOOLEAN), " +
             "(stepForward:BOOLEAN), " +
-            "(stepSize:INT)";
+            "(stepSize:INT), " +
+            "(seed:LONG)";
 
     /**
      * Input sample set for sampling.
@@ -171,6 +173,7 @@ public class SequenceSampler implements Sampler, Configurable, Serializable {
      *     - randomOrder: if true samples in random order. Default value true.<br>
      *     - stepForward: if true samples sampling steps in forward order (not valid for randomOrder sampling). Default value true.<br>
      *     - stepSize: number of steps taken forward or backward when sampling (not valid for randomOrder sampling). Default value 1.<br>
+     *     - seed: seed for random number generator making sampling reproducible. Default value is random seed.<br>
      *
      * @param params parameters used for sequence sampler.
      * @throws DynamicParamException throws exception if parameter (params) setting fails.
@@ -187,6 +190,7 @@ public class SequenceSampler implements Sampler, Configurable, Serializable {
             stepSize = params.getValueAsInteger("stepSize");
             if (stepSize < 1) throw new DynamicParamException("Step size must be at least 1.");
         }
+        if (params.hasParam("seed")) random.setSeed(params.getValueAsLong("seed"));
     }
 
     /**
@@ -197,6 +201,15 @@ public class SequenceSampler implements Sampler, Configurable, Serializable {
         if (fullSet) sampleAt = 0;
     }
 
+    /**
+     * Checks if reset changes order of samples. Reset rewinds sampling position of full set.
+     *
+     * @return true if full set is sampled otherwise false.
+     */
+    public boolean resetChangesOrder() {
+        return fullSet;
+    }
+
     /**
      * Returns number of training or validation iterations.
      *
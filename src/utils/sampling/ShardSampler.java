@@ -0,0 +1,120 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import core.network.NeuralNetworkException;
+import utils.matrix.MatrixException;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Implements sampler that returns shard of each batch of wrapped sampler.<br>
+ * Batch is split into contiguous shards of nearly equal size and samples of selected shard are returned renumbered from zero.<br>
+ * Used in distributed training where each worker samples same batches (wrapped samplers seeded equally) and trains its own shard of batch.<br>
+ *
+ */
+public class ShardSampler implements Sampler {
+
+    /**
+     * Wrapped sampler.
+     *
+     */
+    private final Sampler sampler;
+
+    /**
+     * Index of shard returned by sampler.
+     *
+     */
+    private final int shardIndex;
+
+    /**
+     * Number of shards batch is split into.
+     *
+     */
+    private final int numberOfShards;
+
+    /**
+     * Constructor for shard sampler.
+     *
+     * @param sampler wrapped sampler.
+     * @param shardIndex index of shard returned by sampler.
+     * @param numberOfShards number of shards batch is split into.
+     * @throws NeuralNetworkException throws exception if wrapped sampler is not defined or shard index is out of range.
+     */
+    public ShardSampler(Sampler sampler, int shardIndex, int numberOfShards) throws NeuralNetworkException {
+        if (sampler == null) throw new NeuralNetworkException("Sampler is not defined.");
+        if (numberOfShards < 1) throw new NeuralNetworkException("Number of shards must be at least 1.");
+        if (shardIndex < 0 || shardIndex >= numberOfShards) throw new NeuralNetworkException("Shard index must be between 0 and " + (numberOfShards - 1) + ".");
+        this.sampler = sampler;
+        this.shardIndex = shardIndex;
+        this.numberOfShards = numberOfShards;
+    }
+
+    /**
+     * Resets sampler.
+     *
+     */
+    public void reset() {
+        sampler.reset();
+    }
+
+    /**
+     * Checks if reset changes order of samples.
+     *
+     * @return true if reset of wrapped sampler changes order of samples otherwise false.
+     */
+    public boolean resetChangesOrder() {
+        return sampler.resetChangesOrder();
+    }
+
+    /**
+     * Returns number of training or validation iterations.
+     *
+     * @return number of training or validation iterations.
+     */
+    public int getNumberOfIterations() {
+        return sampler.getNumberOfIterations();
+    }
+
+    /**
+     * Samples batch from wrapped sampler and returns shard of it.
+     *
+     * @param inputSequences sampled input sequences.
+     * @param outputSequences sampled output sequences.
+     * @throws MatrixException throws exception if matrix operation fails.
+     * @throws NeuralNetworkException throws exception if sampling fails.
+     */
+    public void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) throws MatrixException, NeuralNetworkException {
+        TreeMap<Integer, Sequence> batchInputSequences = new TreeMap<>();
+        TreeMap<Integer, Sequence> batchOutputSequences = new TreeMap<>();
+        sampler.getSamples(batchInputSequences, batchOutputSequences);
+        if (batchInputSequences.isEmpty()) throw new NeuralNetworkException("No inputs sampled.");
+        int[] sampleIndices = batchInputSequences.firstEntry().getValue().sampleIndices();
+        int shardStart = (int)((long)shardIndex * sampleIndices.length / numberOfShards);
+        int shardEnd = (int)((long)(shardIndex + 1) * sampleIndices.length / numberOfShards);
+        putShard(batchInputSequences, inputSequences, sampleIndices, shardStart, shardEnd);
+        putShard(batchOutputSequences, outputSequences, sampleIndices, shardStart, shardEnd);
+    }
+
+    /**
+     * Puts given range of samples renumbered from zero into shard sequences.
+     *
+     * @param batchSequences sequences of batch.
+     * @param shardSequences sequences of shard.
+     * @param sampleIndices sample indices of batch.
+     * @param shardStart start of shard (inclusive).
+     * @param shardEnd end of shard (exclusive).
+     */
+    private static void putShard(TreeMap<Integer, Sequence> batchSequences, TreeMap<Integer, Sequence> shardSequences, int[] sampleIndices, int shardStart, int shardEnd) {
+        for (Map.Entry<Integer, Sequence> entry : batchSequences.entrySet()) {
+            Sequence sequence = new Sequence();
+            for (int index = shardStart; index < shardEnd; index++) sequence.put(index - shardStart, entry.getValue().get(sampleIndices[index]));
+            shardSequences.put(entry.getKey(), sequence);
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 /**
  * Defines functions for sampling of neural network data.<br>
- * Provides basic and sequence samplers.<br>
+ * Provides basic and sequence samplers and sampler streaming samples from memory mapped dataset file.<br>
+ * Provides sampler prefetching and transforming batches of other sampler in background thread.<br>
+ * Provides sampler returning shard of each batch of other sampler for distributed training.<br>
  *
  */
-package utils.sampling;
\ No newline at end of file
+package utils.sampling;
\ No newline at end of file
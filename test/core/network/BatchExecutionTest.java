@@ -0,0 +1,94 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.procedure.Procedure;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that batch execution produces same predictions and gradients as per sample execution.
+ *
+ */
+public class BatchExecutionTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests batch execution of multilayer perceptron.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMLP() throws Exception {
+        testArchitecture(Architecture.MLP);
+    }
+
+    /**
+     * Tests batch execution of neural network with recurrent layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrent() throws Exception {
+        testArchitecture(Architecture.RECURRENT);
+    }
+
+    /**
+     * Tests batch execution of neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Compares neural network having batch execution disabled by default with neural network having batch execution enabled.<br>
+     * Asserts that forward calculations were executed as batch only in neural network having batch execution enabled and for recurrent architecture also in recurrent layer.<br>
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(architecture, null, null);
+        NeuralNetwork batchNeuralNetwork = buildNeuralNetwork(architecture, "batchExecution = true", null);
+        neuralNetwork.start();
+        batchNeuralNetwork.start();
+        try {
+            copyWeights(neuralNetwork, batchNeuralNetwork);
+            assertEquivalentStarted(architecture, neuralNetwork, batchNeuralNetwork, TOLERANCE);
+            assertEquals(0, getNumberOfBatchExecutions(neuralNetwork, false), "Neural network having batch execution disabled executed batch.");
+            assertTrue(getNumberOfBatchExecutions(batchNeuralNetwork, false) > 0, "Neural network having batch execution enabled did not execute batch.");
+            if (architecture == Architecture.RECURRENT) assertTrue(getNumberOfBatchExecutions(batchNeuralNetwork, true) > 0, "Recurrent layer did not execute batch.");
+        }
+        finally {
+            neuralNetwork.stop();
+            batchNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Returns total number of forward calculations executed as batch by procedures of neural network.
+     *
+     * @param neuralNetwork neural network.
+     * @param recurrentOnly if true counts only procedures of recurrent layers.
+     * @return number of forward calculations executed as batch.
+     */
+    private static int getNumberOfBatchExecutions(NeuralNetwork neuralNetwork, boolean recurrentOnly) {
+        int numberOfBatchExecutions = 0;
+        for (Procedure procedure : getProcedures(neuralNetwork, recurrentOnly)) numberOfBatchExecutions += procedure.getNumberOfBatchExecutions();
+        return numberOfBatchExecutions;
+    }
+
+}
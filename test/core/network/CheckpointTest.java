@@ -0,0 +1,212 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.activation.ActivationFunction;
+import core.layer.LayerType;
+import core.optimization.OptimizationType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.matrix.*;
+import utils.sampling.BasicSampler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests writing and reading of checkpoints.
+ *
+ */
+public class CheckpointTest {
+
+    /**
+     * Temporary directory for checkpoint files.
+     *
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests round trip of checkpoint whose binary weight sidecar is written and read in multiple chunks.<br>
+     * Weight arrays are larger than chunk size hence they are written and read across chunk boundaries. Checkpoint is read with different chunk size than it was written with.<br>
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMultiChunkRoundTrip() throws Exception {
+        HashMap<Integer, Matrix>[] data = getData();
+        NeuralNetwork neuralNetwork = buildNeuralNetwork();
+        neuralNetwork.start();
+        double[] expectedPredictions;
+        Path path = directory.resolve("network.sannet");
+        try {
+            neuralNetwork.setTrainingData(getSampler(data));
+            neuralNetwork.train(true, true);
+            expectedPredictions = predict(neuralNetwork, data);
+            Checkpoint.Snapshot snapshot = Checkpoint.capture(neuralNetwork, true);
+            assertTrue(snapshot.getLength() > 4 * 128);
+            snapshot.write(path, 128);
+        }
+        finally {
+            neuralNetwork.stop();
+        }
+
+        for (int chunkSize : new int[] { 128, 200, Checkpoint.DEFAULT_CHUNK_SIZE }) {
+            NeuralNetwork restoredNeuralNetwork = Checkpoint.read(path, chunkSize);
+            restoredNeuralNetwork.start();
+            try {
+                assertArrayEquals(expectedPredictions, predict(restoredNeuralNetwork, data));
+            }
+            finally {
+                restoredNeuralNetwork.stop();
+            }
+        }
+    }
+
+    /**
+     * Tests that checkpoint written in multiple chunks is identical to checkpoint written in single chunk.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMultiChunkLayout() throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork();
+        neuralNetwork.start();
+        Path singleChunkPath = directory.resolve("single.sannet");
+        Path multiChunkPath = directory.resolve("multi.sannet");
+        try {
+            Checkpoint.Snapshot snapshot = Checkpoint.capture(neuralNetwork, true);
+            snapshot.write(singleChunkPath);
+            snapshot.write(multiChunkPath, 64);
+        }
+        finally {
+            neuralNetwork.stop();
+        }
+        assertEquals(-1, Files.mismatch(singleChunkPath, multiChunkPath));
+    }
+
+    /**
+     * Tests that snapshot whose state objects were copied at iteration boundary and whose topology descriptor was serialized after further training restores neural network state at iteration boundary.<br>
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testSplitCapture() throws Exception {
+        HashMap<Integer, Matrix>[] data = getData();
+        NeuralNetwork neuralNetwork = buildNeuralNetwork();
+        neuralNetwork.start();
+        double[] expectedPredictions;
+        Path fullPath = directory.resolve("full.sannet");
+        Path splitPath = directory.resolve("split.sannet");
+        try {
+            neuralNetwork.setTrainingData(getSampler(data));
+            neuralNetwork.train(true, true);
+            Checkpoint.Snapshot fullSnapshot = Checkpoint.capture(neuralNetwork, true);
+            Checkpoint.StateCopy stateCopy = fullSnapshot.getStateObjects().copy();
+            expectedPredictions = predict(neuralNetwork, data);
+            fullSnapshot.write(fullPath);
+
+            neuralNetwork.train(true, true);
+            assertFalse(Arrays.equals(expectedPredictions, predict(neuralNetwork, data)));
+            Checkpoint.capture(neuralNetwork, stateCopy).write(splitPath);
+        }
+        finally {
+            neuralNetwork.stop();
+        }
+
+        NeuralNetwork fullNeuralNetwork = Checkpoint.read(fullPath);
+        NeuralNetwork splitNeuralNetwork = Checkpoint.read(splitPath);
+        fullNeuralNetwork.start();
+        splitNeuralNetwork.start();
+        try {
+            assertArrayEquals(expectedPredictions, predict(fullNeuralNetwork, data));
+            assertArrayEquals(expectedPredictions, predict(splitNeuralNetwork, data));
+        }
+        finally {
+            fullNeuralNetwork.stop();
+            splitNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Returns sampler that trains five iterations over data in fixed order.
+     *
+     * @param data data.
+     * @return sampler.
+     * @throws Exception throws exception if creation of sampler fails.
+     */
+    private static BasicSampler getSampler(HashMap<Integer, Matrix>[] data) throws Exception {
+        return new BasicSampler(new HashMap<>() {{ put(0, data[0]); }}, new HashMap<>() {{ put(0, data[1]); }}, "randomOrder = false, shuffleSamples = false, sampleSize = 8, numberOfIterations = 5");
+    }
+
+    /**
+     * Builds dense neural network whose weight arrays span multiple small chunks.
+     *
+     * @return neural network.
+     * @throws Exception throws exception if building of neural network fails.
+     */
+    private static NeuralNetwork buildNeuralNetwork() throws Exception {
+        NeuralNetworkConfiguration neuralNetworkConfiguration = new NeuralNetworkConfiguration();
+        neuralNetworkConfiguration.addInputLayer("width = 4, height = 1, depth = 1");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.DENSE, "width = 20");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.ACTIVATION, new ActivationFunction(UnaryFunctionType.ELU));
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.DENSE, "width = 1");
+        neuralNetworkConfiguration.addOutputLayer(BinaryFunctionType.MEAN_SQUARED_ERROR);
+        neuralNetworkConfiguration.connectLayersSerially();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(neuralNetworkConfiguration);
+        neuralNetwork.setOptimizer(OptimizationType.ADAM);
+        return neuralNetwork;
+    }
+
+    /**
+     * Returns predictions of neural network for all samples.
+     *
+     * @param neuralNetwork neural network.
+     * @param data data.
+     * @return predictions.
+     * @throws Exception throws exception if prediction fails.
+     */
+    private static double[] predict(NeuralNetwork neuralNetwork, HashMap<Integer, Matrix>[] data) throws Exception {
+        TreeMap<Integer, Matrix> inputs = new TreeMap<>(data[0]);
+        TreeMap<Integer, Matrix> outputs = neuralNetwork.predictMatrix(inputs);
+        double[] predictions = new double[outputs.size()];
+        for (int sampleIndex = 0; sampleIndex < predictions.length; sampleIndex++) predictions[sampleIndex] = outputs.get(sampleIndex).getValue(0, 0, 0);
+        return predictions;
+    }
+
+    /**
+     * Returns data whose target is mean of inputs.
+     *
+     * @return input and output data.
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<Integer, Matrix>[] getData() {
+        HashMap<Integer, Matrix> inputs = new HashMap<>();
+        HashMap<Integer, Matrix> outputs = new HashMap<>();
+        Random random = new Random(4);
+        for (int sampleIndex = 0; sampleIndex < 16; sampleIndex++) {
+            Matrix input = new DMatrix(4, 1, 1);
+            double sum = 0;
+            for (int row = 0; row < 4; row++) {
+                double value = random.nextDouble();
+                input.setValue(row, 0, 0, value);
+                sum += value;
+            }
+            Matrix output = new DMatrix(1, 1, 1);
+            output.setValue(0, 0, 0, sum / 4);
+            inputs.put(sampleIndex, input);
+            outputs.put(sampleIndex, output);
+        }
+        return new HashMap[] { inputs, outputs };
+    }
+
+}
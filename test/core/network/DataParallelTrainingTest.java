@@ -0,0 +1,133 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.activation.ActivationFunction;
+import core.layer.LayerType;
+import org.junit.jupiter.api.Test;
+import utils.matrix.BinaryFunctionType;
+import utils.matrix.Matrix;
+import utils.matrix.UnaryFunctionType;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests data parallel training over replicas.
+ *
+ */
+public class DataParallelTrainingTest {
+
+    /**
+     * Absolute tolerance of gradients.
+     *
+     */
+    private static final double TOLERANCE = 1E-12;
+
+    /**
+     * Tests that weight gradients reduced over two replicas having equal shards are equal to weight gradients of single neural network.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testEqualShards() throws Exception {
+        assertReducedGradientsEqual(Architecture.MLP, 2);
+        assertReducedGradientsEqual(Architecture.ATTENTION, 2);
+    }
+
+    /**
+     * Tests that weight gradients reduced over three replicas having shards of different size are equal to weight gradients of single neural network.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testUnequalShards() throws Exception {
+        assertReducedGradientsEqual(Architecture.MLP, 3);
+        assertReducedGradientsEqual(Architecture.ATTENTION, 3);
+    }
+
+    /**
+     * Tests that neural network having recurrent layer cannot be started with multiple replicas or with distributed coordinator as samples of batch are processed as time sequence.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrentLayerIsRejected() throws Exception {
+        NeuralNetwork replicatedNeuralNetwork = buildNeuralNetwork(Architecture.RECURRENT, null, null);
+        replicatedNeuralNetwork.setNumberOfReplicas(2);
+        assertRejected(replicatedNeuralNetwork);
+
+        NeuralNetwork distributedNeuralNetwork = buildNeuralNetwork(Architecture.RECURRENT, null, null);
+        distributedNeuralNetwork.setDistributedCoordinator(new DistributedCoordinator(0, List.of(new InetSocketAddress("localhost", 0))));
+        assertRejected(distributedNeuralNetwork);
+    }
+
+    /**
+     * Tests that neural network having batch normalization cannot be started with multiple replicas as moving averages are not synchronized between replicas.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testBatchNormalizationIsRejected() throws Exception {
+        NeuralNetworkConfiguration neuralNetworkConfiguration = new NeuralNetworkConfiguration();
+        neuralNetworkConfiguration.addInputLayer("width = 4, height = 1, depth = 1");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.DENSE, "width = 8");
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.BATCH_NORMALIZATION);
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.ACTIVATION, new ActivationFunction(UnaryFunctionType.ELU));
+        neuralNetworkConfiguration.addHiddenLayer(LayerType.DENSE, "width = 1");
+        neuralNetworkConfiguration.addOutputLayer(BinaryFunctionType.MEAN_SQUARED_ERROR);
+        neuralNetworkConfiguration.connectLayersSerially();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(neuralNetworkConfiguration);
+        neuralNetwork.setNumberOfReplicas(2);
+        assertRejected(neuralNetwork);
+    }
+
+    /**
+     * Asserts that weight gradients of single training step reduced over replicas are equal to weight gradients of single neural network trained with same batch.<br>
+     * Replica gradients are weighted by size of shard relative to size of batch before reduction hence their sum equals to mean gradient over batch.<br>
+     *
+     * @param architecture architecture of neural networks.
+     * @param numberOfReplicas number of replicas.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void assertReducedGradientsEqual(Architecture architecture, int numberOfReplicas) throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(architecture, null, null);
+        NeuralNetwork replicatedNeuralNetwork = buildNeuralNetwork(architecture, null, null);
+        replicatedNeuralNetwork.setNumberOfReplicas(numberOfReplicas);
+        neuralNetwork.start();
+        replicatedNeuralNetwork.start();
+        try {
+            copyWeights(neuralNetwork, replicatedNeuralNetwork);
+            HashMap<Integer, HashMap<Integer, Matrix>>[] data = getData(architecture);
+            double[] expectedGradients = getGradients(neuralNetwork, data);
+            double[] actualGradients = getGradients(replicatedNeuralNetwork, data);
+            assertArrayEquals(expectedGradients, actualGradients, TOLERANCE, "Reduced gradients of " + numberOfReplicas + " replicas differ.");
+            boolean hasGradient = false;
+            for (double gradient : expectedGradients) hasGradient |= Math.abs(gradient) > 1000 * TOLERANCE;
+            assertTrue(hasGradient, "Gradients are not significant with respect to tolerance.");
+        }
+        finally {
+            neuralNetwork.stop();
+            replicatedNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Asserts that starting of neural network fails because of layer not working with data parallel training.
+     *
+     * @param neuralNetwork neural network.
+     */
+    private static void assertRejected(NeuralNetwork neuralNetwork) {
+        NeuralNetworkException neuralNetworkException = assertThrows(NeuralNetworkException.class, neuralNetwork::start);
+        assertTrue(neuralNetworkException.toString().contains("data parallel training"));
+        assertFalse(neuralNetwork.isStarted());
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.procedure.Procedure;
+import utils.procedure.expression.Expression;
+import utils.procedure.expression.FusedExpression;
+
+import java.util.ArrayList;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that fused expressions produce same predictions and gradients as expressions calculated one by one.
+ *
+ */
+public class ExpressionFusionTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests multilayer perceptron.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMLP() throws Exception {
+        testArchitecture(Architecture.MLP);
+    }
+
+    /**
+     * Tests neural network with recurrent layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrent() throws Exception {
+        testArchitecture(Architecture.RECURRENT);
+    }
+
+    /**
+     * Tests neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Compares neural network having flag disabled by default with neural network having flag enabled.<br>
+     * Asserts that chains of expressions were fused only in neural network having flag enabled and that fused neural network has fewer expressions. Procedure of last layer has scalar output and is not fused.<br>
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(architecture, null, null);
+        NeuralNetwork fusedNeuralNetwork = buildNeuralNetwork(architecture, "fuseExpressions = true", null);
+        assertEquivalent(architecture, neuralNetwork, fusedNeuralNetwork, TOLERANCE);
+        ArrayList<Expression> expressions = getExpressions(neuralNetwork);
+        ArrayList<Expression> fusedExpressions = getExpressions(fusedNeuralNetwork);
+        assertEquals(0, getNumberOfFusedExpressions(expressions), "Neural network having fusion disabled contains fused expressions.");
+        assertTrue(getNumberOfFusedExpressions(fusedExpressions) > 0, "Neural network having fusion enabled contains no fused expressions.");
+        assertTrue(fusedExpressions.size() < expressions.size(), "Fused neural network does not have fewer expressions.");
+    }
+
+    /**
+     * Returns expressions of all procedures of neural network.
+     *
+     * @param neuralNetwork neural network.
+     * @return expressions of all procedures.
+     */
+    private static ArrayList<Expression> getExpressions(NeuralNetwork neuralNetwork) {
+        ArrayList<Expression> expressions = new ArrayList<>();
+        for (Procedure procedure : getProcedures(neuralNetwork, false)) expressions.addAll(procedure.getExpressions());
+        return expressions;
+    }
+
+    /**
+     * Returns number of fused expressions.
+     *
+     * @param expressions expressions.
+     * @return number of fused expressions.
+     */
+    private static int getNumberOfFusedExpressions(ArrayList<Expression> expressions) {
+        int numberOfFusedExpressions = 0;
+        for (Expression expression : expressions) if (expression instanceof FusedExpression) numberOfFusedExpressions++;
+        return numberOfFusedExpressions;
+    }
+
+}
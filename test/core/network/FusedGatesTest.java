@@ -0,0 +1,101 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.layer.LayerType;
+import org.junit.jupiter.api.Test;
+import utils.matrix.Matrix;
+
+import java.util.HashMap;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that recurrent layers with fused gates are equivalent to recurrent layers with separate gate weights.<br>
+ * Fused weights are stacked by gate in same order as separate weights are registered hence weights are copied between neural networks in flattened order.<br>
+ *
+ */
+public class FusedGatesTest {
+
+    /**
+     * Absolute tolerance of predictions and gradients.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests fused GRU layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testGRU() throws Exception {
+        assertFusedEquivalent(LayerType.GRU);
+    }
+
+    /**
+     * Tests fused minimal GRU layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMinGRU() throws Exception {
+        assertFusedEquivalent(LayerType.MINGRU);
+    }
+
+    /**
+     * Tests fused LSTM layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testLSTM() throws Exception {
+        assertFusedEquivalent(LayerType.LSTM);
+    }
+
+    /**
+     * Tests fused peephole LSTM layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testPeepholeLSTM() throws Exception {
+        assertFusedEquivalent(LayerType.PEEPHOLELSTM);
+    }
+
+    /**
+     * Asserts that neural network with fused gates has equal predictions and weight gradients as neural network with separate gate weights.<br>
+     * Asserts also that copy of neural network with fused gates made by serialization has equal predictions as stacked weights are restored when fused weight set is read.<br>
+     *
+     * @param recurrentLayerType type of recurrent layer.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void assertFusedEquivalent(LayerType recurrentLayerType) throws Exception {
+        NeuralNetwork neuralNetwork = buildRecurrentNeuralNetwork(recurrentLayerType, null);
+        NeuralNetwork fusedNeuralNetwork = buildRecurrentNeuralNetwork(recurrentLayerType, "fusedGates = true");
+        neuralNetwork.start();
+        fusedNeuralNetwork.start();
+        try {
+            setWeights(fusedNeuralNetwork, getWeights(neuralNetwork));
+            assertEquivalentStarted(Architecture.RECURRENT, neuralNetwork, fusedNeuralNetwork, TOLERANCE);
+            NeuralNetwork copiedNeuralNetwork = fusedNeuralNetwork.copy();
+            copiedNeuralNetwork.start();
+            try {
+                HashMap<Integer, HashMap<Integer, Matrix>> inputs = getData(Architecture.RECURRENT)[0];
+                assertArrayEquals(predict(fusedNeuralNetwork, inputs), predict(copiedNeuralNetwork, inputs), "Predictions of copied neural network differ.");
+            }
+            finally {
+                copiedNeuralNetwork.stop();
+            }
+        }
+        finally {
+            neuralNetwork.stop();
+            fusedNeuralNetwork.stop();
+        }
+    }
+
+}
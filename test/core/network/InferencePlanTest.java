@@ -0,0 +1,106 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.Matrix;
+import utils.procedure.Procedure;
+
+import java.util.HashMap;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that inference plan produces same predictions as calculation without inference plan. Inference plan is used only for predictions hence training is not compared.
+ *
+ */
+public class InferencePlanTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests multilayer perceptron.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMLP() throws Exception {
+        testArchitecture(Architecture.MLP);
+    }
+
+    /**
+     * Tests neural network with recurrent layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrent() throws Exception {
+        testArchitecture(Architecture.RECURRENT);
+    }
+
+    /**
+     * Tests neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Tests neural network with dropout layer. Output of inference plan must be equal to output of procedure calculated in evaluation mode.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testDropout() throws Exception {
+        testArchitecture(Architecture.DROPOUT);
+    }
+
+    /**
+     * Compares predictions of neural network having flag disabled by default with predictions of neural network having flag enabled.<br>
+     * Asserts that predictions were calculated with inference plan only in neural network having flag enabled.<br>
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(architecture, null, null);
+        NeuralNetwork planNeuralNetwork = buildNeuralNetwork(architecture, "inferencePlan = true", null);
+        neuralNetwork.start();
+        planNeuralNetwork.start();
+        try {
+            copyWeights(neuralNetwork, planNeuralNetwork);
+            HashMap<Integer, HashMap<Integer, Matrix>> inputs = getData(architecture)[0];
+            assertArrayEquals(predict(neuralNetwork, inputs), predict(planNeuralNetwork, inputs), TOLERANCE, "Predictions differ.");
+            assertEquals(0, getNumberOfInferencePlanExecutions(neuralNetwork), "Neural network having inference plan disabled used inference plan.");
+            assertEquals(getProcedures(planNeuralNetwork, false).size(), getNumberOfInferencePlanExecutions(planNeuralNetwork), "Procedure of neural network having inference plan enabled did not use inference plan.");
+        }
+        finally {
+            neuralNetwork.stop();
+            planNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Returns total number of forward calculations executed with inference plan by procedures of neural network.
+     *
+     * @param neuralNetwork neural network.
+     * @return number of forward calculations executed with inference plan.
+     */
+    private static int getNumberOfInferencePlanExecutions(NeuralNetwork neuralNetwork) {
+        int numberOfInferencePlanExecutions = 0;
+        for (Procedure procedure : getProcedures(neuralNetwork, false)) numberOfInferencePlanExecutions += procedure.getNumberOfInferencePlanExecutions();
+        return numberOfInferencePlanExecutions;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.Matrix;
+import utils.sampling.Sequence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that inference server coalesces concurrent requests into single prediction having same outputs as requests predicted one by one and that it rejects requests when request queue is full.
+ *
+ */
+public class InferenceServerTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests that requests of multilayer perceptron are coalesced into single prediction and that outputs are equal to outputs predicted request by request.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testCoalescedOutputs() throws Exception {
+        assertOutputs(Architecture.MLP, 1);
+    }
+
+    /**
+     * Tests that requests of neural network with recurrent layer are executed as their own predictions and that outputs are equal to outputs predicted request by request.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrentOutputs() throws Exception {
+        assertOutputs(Architecture.RECURRENT, getData(Architecture.RECURRENT)[0].get(0).size());
+    }
+
+    /**
+     * Tests that non-blocking submission is rejected when maximum number of requests is queued while server is executing batch and that accepted requests are completed.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testBackPressure() throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(Architecture.MLP, null, null);
+        InferenceServer inferenceServer = new InferenceServer(neuralNetwork, "maxBatchSize = 1, maxWaitTime = 0, maxQueueSize = 2");
+        ArrayList<TreeMap<Integer, Matrix>> requestInputs = getRequestInputs(Architecture.MLP);
+        CountDownLatch executionLatch = new CountDownLatch(1);
+        TreeMap<Integer, Matrix> blockingInputs = new TreeMap<>(requestInputs.get(0)) {
+            public Set<Map.Entry<Integer, Matrix>> entrySet() {
+                try {
+                    executionLatch.await();
+                }
+                catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.entrySet();
+            }
+        };
+        inferenceServer.start();
+        try {
+            ArrayList<CompletableFuture<TreeMap<Integer, Matrix>>> futures = new ArrayList<>();
+            futures.add(inferenceServer.submit(blockingInputs));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (inferenceServer.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+            assertEquals(0, inferenceServer.getQueueDepth(), "Server did not take first request.");
+
+            futures.add(inferenceServer.submit(requestInputs.get(1)));
+            futures.add(inferenceServer.submit(requestInputs.get(2)));
+            assertEquals(2, inferenceServer.getQueueDepth());
+            NeuralNetworkException neuralNetworkException = assertThrows(NeuralNetworkException.class, () -> inferenceServer.submit(requestInputs.get(3)));
+            assertTrue(neuralNetworkException.toString().contains("queue is full"));
+            assertEquals(1, inferenceServer.getRejectedRequests());
+
+            executionLatch.countDown();
+            for (CompletableFuture<TreeMap<Integer, Matrix>> future : futures) assertNotNull(future.get(10, TimeUnit.SECONDS));
+            assertEquals(3, inferenceServer.getCompletedRequests());
+            assertEquals(3, inferenceServer.getExecutedBatches());
+        }
+        finally {
+            executionLatch.countDown();
+            inferenceServer.stop();
+            neuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Asserts that outputs of requests submitted concurrently to inference server are equal to outputs predicted request by request.
+     *
+     * @param architecture architecture of neural network.
+     * @param expectedExecutedBatches expected number of executed batches.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void assertOutputs(Architecture architecture, int expectedExecutedBatches) throws Exception {
+        NeuralNetwork neuralNetwork = buildNeuralNetwork(architecture, null, null);
+        ArrayList<TreeMap<Integer, Matrix>> requestInputs = getRequestInputs(architecture);
+        InferenceServer inferenceServer = new InferenceServer(neuralNetwork, "maxBatchSize = " + requestInputs.size() + ", maxWaitTime = 10000000");
+        neuralNetwork.start();
+        try {
+            ArrayList<Double> expectedOutputs = new ArrayList<>();
+            for (TreeMap<Integer, Matrix> inputs : requestInputs) {
+                TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+                for (Map.Entry<Integer, Matrix> entry : inputs.entrySet()) inputSequences.put(entry.getKey(), new Sequence(entry.getValue()));
+                expectedOutputs.add(neuralNetwork.predict(inputSequences).firstEntry().getValue().get(0).getValue(0, 0, 0));
+            }
+
+            inferenceServer.start();
+            ArrayList<CompletableFuture<TreeMap<Integer, Matrix>>> futures = new ArrayList<>();
+            for (TreeMap<Integer, Matrix> inputs : requestInputs) futures.add(inferenceServer.submit(inputs));
+            for (int requestIndex = 0; requestIndex < futures.size(); requestIndex++) {
+                double output = futures.get(requestIndex).get(10, TimeUnit.SECONDS).firstEntry().getValue().getValue(0, 0, 0);
+                assertEquals(expectedOutputs.get(requestIndex), output, TOLERANCE, "Output of request " + requestIndex + " differs.");
+            }
+            assertEquals(requestInputs.size(), inferenceServer.getCompletedRequests());
+            assertEquals(expectedExecutedBatches, inferenceServer.getExecutedBatches());
+        }
+        finally {
+            inferenceServer.stop();
+            neuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Returns inputs of requests by input layer index.
+     *
+     * @param architecture architecture of neural network.
+     * @return inputs of requests.
+     */
+    private static ArrayList<TreeMap<Integer, Matrix>> getRequestInputs(Architecture architecture) {
+        HashMap<Integer, HashMap<Integer, Matrix>> inputs = getData(architecture)[0];
+        ArrayList<TreeMap<Integer, Matrix>> requestInputs = new ArrayList<>();
+        for (int sampleIndex = 0; sampleIndex < inputs.get(0).size(); sampleIndex++) {
+            TreeMap<Integer, Matrix> sampleInputs = new TreeMap<>();
+            for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : inputs.entrySet()) sampleInputs.put(entry.getKey(), entry.getValue().get(sampleIndex));
+            requestInputs.add(sampleInputs);
+        }
+        return requestInputs;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.*;
+import utils.sampling.BasicSampler;
+
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests restoring of neural networks and sparse matrices stored via Java serialization before optimizer slots, precision, compressed sparse storage and convolution algorithm were introduced.<br>
+ * Resources were written by earlier version of framework. Each network was trained for 20 iterations before it was stored. Expected values were calculated by earlier version by restoring same resources.<br>
+ *
+ */
+public class LegacySerializationTest {
+
+    /**
+     * Tests restoring of dense network optimized by Adam.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testDenseNetworkWithAdam() throws Exception {
+        verifyNeuralNetwork("mlp", 2, 1, -0.18614933419621565, -0.1284299904910729);
+    }
+
+    /**
+     * Tests restoring of LSTM network optimized by NAdam.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testLSTMNetworkWithNAdam() throws Exception {
+        verifyNeuralNetwork("lstm", 2, 1, 0.12432206332633303, 0.14205976223291994);
+    }
+
+    /**
+     * Tests restoring of crosscorrelation network optimized by RMSProp.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testCrosscorrelationNetworkWithRMSProp() throws Exception {
+        verifyNeuralNetwork("conv", 5, 5, -1.2294618817569645, -1.1452845443044486);
+    }
+
+    /**
+     * Tests restoring of sparse matrix and sparse mask.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testSparseMatrixAndMask() throws Exception {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(getResource("sparse.ser").toFile()))) {
+            Matrix matrix = (Matrix)objectInputStream.readObject();
+            Mask mask = (Mask)objectInputStream.readObject();
+            assertInstanceOf(SMatrix.class, matrix);
+            assertInstanceOf(SMask.class, mask);
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 3; column++) {
+                    double expectedValue = row == 0 && column == 1 ? 2.5 : row == 2 && column == 2 ? -1 : 0;
+                    assertEquals(expectedValue, matrix.getValue(row, column, 0));
+                    assertEquals((row == 1 && column == 1) || (row == 2 && column == 0), mask.getMask(row, column, 0));
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores neural network, verifies its prediction and prediction after it has been trained further.<br>
+     * Further training verifies that optimizer state was restored.<br>
+     *
+     * @param name name of resource without extension.
+     * @param rows number of input rows.
+     * @param columns number of input columns.
+     * @param expectedPrediction expected prediction of restored neural network.
+     * @param expectedTrainedPrediction expected prediction after 10 training iterations.
+     * @throws Exception throws exception if test fails.
+     */
+    private void verifyNeuralNetwork(String name, int rows, int columns, double expectedPrediction, double expectedTrainedPrediction) throws Exception {
+        String filename = getResource(name + ".ser").toString();
+        NeuralNetwork neuralNetwork = Persistence.restoreNeuralNetwork(filename.substring(0, filename.length() - ".ser".length()));
+        HashMap<Integer, Matrix>[] data = getData(rows, columns);
+        neuralNetwork.start();
+        try {
+            assertEquals(expectedPrediction, predict(neuralNetwork, data), 1E-12);
+            neuralNetwork.setTrainingData(new BasicSampler(new HashMap<>() {{ put(0, data[0]); }}, new HashMap<>() {{ put(0, data[1]); }}, "randomOrder = false, shuffleSamples = false, sampleSize = 8, numberOfIterations = 10"));
+            neuralNetwork.train(true, true);
+            assertEquals(expectedTrainedPrediction, predict(neuralNetwork, data), 1E-9);
+        }
+        finally {
+            neuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Returns prediction of neural network for first sample.
+     *
+     * @param neuralNetwork neural network.
+     * @param data data.
+     * @return prediction.
+     * @throws Exception throws exception if prediction fails.
+     */
+    private static double predict(NeuralNetwork neuralNetwork, HashMap<Integer, Matrix>[] data) throws Exception {
+        return neuralNetwork.predictMatrix(new TreeMap<>() {{ put(0, data[0].get(0)); }}).get(0).getValue(0, 0, 0);
+    }
+
+    /**
+     * Returns data with which resources were generated. Target is mean of inputs.
+     *
+     * @param rows number of input rows.
+     * @param columns number of input columns.
+     * @return input and output data.
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<Integer, Matrix>[] getData(int rows, int columns) {
+        HashMap<Integer, Matrix> inputs = new HashMap<>();
+        HashMap<Integer, Matrix> outputs = new HashMap<>();
+        Random random = new Random(rows * 31L + columns);
+        for (int sampleIndex = 0; sampleIndex < 64; sampleIndex++) {
+            Matrix input = new DMatrix(rows, columns, 1);
+            double sum = 0;
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    double value = random.nextDouble() / 2;
+                    input.setValue(row, column, 0, value);
+                    sum += value;
+                }
+            }
+            Matrix output = new DMatrix(1, 1, 1);
+            output.setValue(0, 0, 0, sum / (rows * columns));
+            inputs.put(sampleIndex, input);
+            outputs.put(sampleIndex, output);
+        }
+        return new HashMap[] { inputs, outputs };
+    }
+
+    /**
+     * Returns path of test resource.
+     *
+     * @param name name of resource.
+     * @return path of resource.
+     * @throws Exception throws exception if resource is not found.
+     */
+    private Path getResource(String name) throws Exception {
+        return Path.of(getClass().getResource("legacy/" + name).toURI());
+    }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.activation.ActivationFunction;
+import core.layer.AbstractExecutionLayer;
+import core.layer.LayerType;
+import core.layer.NeuralNetworkLayer;
+import core.optimization.OptimizationType;
+import core.optimization.OptimizerFactory;
+import utils.matrix.*;
+import utils.procedure.Procedure;
+import utils.sampling.BasicSampler;
+import utils.sampling.Sequence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Implements comparison of neural networks that differ only by execution flags.<br>
+ * Neural networks are compared by their predictions and by their weight gradients. Weight gradients are compared as weight changes of single gradient descent step with learning rate 1 starting from equal weights.<br>
+ *
+ */
+class NetworkEquivalence {
+
+    /**
+     * Defines architectures of compared neural networks.
+     *
+     */
+    enum Architecture {
+
+        /**
+         * Multilayer perceptron with two feedforward layers.
+         *
+         */
+        MLP,
+
+        /**
+         * GRU layer followed by feedforward layer.
+         *
+         */
+        RECURRENT,
+
+        /**
+         * Three inputs each followed by feedforward layer, dot attention over them and feedforward layer.
+         *
+         */
+        ATTENTION,
+
+        /**
+         * Feedforward layer followed by dropout layer and feedforward layer.
+         *
+         */
+        DROPOUT
+
+    }
+
+    /**
+     * Width of inputs.
+     *
+     */
+    private static final int INPUT_WIDTH = 4;
+
+    /**
+     * Number of inputs of attention architecture.
+     *
+     */
+    private static final int ATTENTION_INPUTS = 3;
+
+    /**
+     * Number of samples.
+     *
+     */
+    private static final int SAMPLES = 8;
+
+    /**
+     * Builds neural network in double precision.
+     *
+     * @param architecture architecture of neural network.
+     * @param layerParams parameters applied to every hidden layer or null.
+     * @param mainLayerParams parameters applied only to GRU, dot attention or dropout layer or null.
+     * @return neural network.
+     * @throws Exception throws exception if building of neural network fails.
+     */
+    static NeuralNetwork buildNeuralNetwork(Architecture architecture, String layerParams, String mainLayerParams) throws Exception {
+        return buildNeuralNetwork(architecture, layerParams, mainLayerParams, Precision.DOUBLE);
+    }
+
+    /**
+     * Builds neural network.
+     *
+     * @param architecture architecture of neural network.
+     * @param layerParams parameters applied to every hidden layer or null.
+     * @param mainLayerParams parameters applied only to GRU, dot attention or dropout layer or null.
+     * @param precision precision of neural network.
+     * @return neural network.
+     * @throws Exception throws exception if building of neural network fails.
+     */
+    static NeuralNetwork buildNeuralNetwork(Architecture architecture, String layerParams, String mainLayerParams, Precision precision) throws Exception {
+        return buildNeuralNetwork(architecture, LayerType.GRU, layerParams, mainLayerParams, precision);
+    }
+
+    /**
+     * Builds recurrent neural network in double precision with given recurrent layer.
+     *
+     * @param recurrentLayerType type of recurrent layer.
+     * @param mainLayerParams parameters applied only to recurrent layer or null.
+     * @return neural network.
+     * @throws Exception throws exception if building of neural network fails.
+     */
+    static NeuralNetwork buildRecurrentNeuralNetwork(LayerType recurrentLayerType, String mainLayerParams) throws Exception {
+        return buildNeuralNetwork(Architecture.RECURRENT, recurrentLayerType, null, mainLayerParams, Precision.DOUBLE);
+    }
+
+    /**
+     * Builds neural network.
+     *
+     * @param architecture architecture of neural network.
+     * @param recurrentLayerType type of recurrent layer of recurrent architecture.
+     * @param layerParams parameters applied to every hidden layer or null.
+     * @param mainLayerParams parameters applied only to recurrent, dot attention or dropout layer or null.
+     * @param precision precision of neural network.
+     * @return neural network.
+     * @throws Exception throws exception if building of neural network fails.
+     */
+    private static NeuralNetwork buildNeuralNetwork(Architecture architecture, LayerType recurrentLayerType, String layerParams, String mainLayerParams, Precision precision) throws Exception {
+        NeuralNetworkConfiguration neuralNetworkConfiguration = new NeuralNetworkConfiguration();
+        ActivationFunction tanh = new ActivationFunction(UnaryFunctionType.TANH);
+        int lastHiddenLayerIndex;
+        switch (architecture) {
+            case MLP -> {
+                int inputLayerIndex = neuralNetworkConfiguration.addInputLayer("width = " + INPUT_WIDTH + ", height = 1, depth = 1");
+                int hiddenLayerIndex = neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, tanh, getParams("width = 6", layerParams));
+                neuralNetworkConfiguration.connectLayers(inputLayerIndex, hiddenLayerIndex);
+                lastHiddenLayerIndex = hiddenLayerIndex;
+            }
+            case RECURRENT -> {
+                int inputLayerIndex = neuralNetworkConfiguration.addInputLayer("width = " + INPUT_WIDTH + ", height = 1, depth = 1");
+                int hiddenLayerIndex = neuralNetworkConfiguration.addHiddenLayer(recurrentLayerType, getParams(getParams("width = 5", layerParams), mainLayerParams));
+                neuralNetworkConfiguration.connectLayers(inputLayerIndex, hiddenLayerIndex);
+                lastHiddenLayerIndex = hiddenLayerIndex;
+            }
+            case DROPOUT -> {
+                int inputLayerIndex = neuralNetworkConfiguration.addInputLayer("width = " + INPUT_WIDTH + ", height = 1, depth = 1");
+                int hiddenLayerIndex = neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, tanh, getParams("width = 6", layerParams));
+                neuralNetworkConfiguration.connectLayers(inputLayerIndex, hiddenLayerIndex);
+                int dropoutLayerIndex = neuralNetworkConfiguration.addHiddenLayer(LayerType.DROPOUT, getParams(getParams("probability = 0.5", layerParams), mainLayerParams));
+                neuralNetworkConfiguration.connectLayers(hiddenLayerIndex, dropoutLayerIndex);
+                lastHiddenLayerIndex = dropoutLayerIndex;
+            }
+            default -> {
+                int[] hiddenLayerIndices = new int[ATTENTION_INPUTS];
+                for (int inputIndex = 0; inputIndex < ATTENTION_INPUTS; inputIndex++) {
+                    int inputLayerIndex = neuralNetworkConfiguration.addInputLayer(inputIndex, "width = " + INPUT_WIDTH + ", height = 1, depth = 1");
+                    hiddenLayerIndices[inputIndex] = neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, tanh, getParams("width = 4", layerParams));
+                    neuralNetworkConfiguration.connectLayers(inputLayerIndex, hiddenLayerIndices[inputIndex]);
+                }
+                int attentionLayerIndex = neuralNetworkConfiguration.addHiddenLayer(LayerType.DOT_ATTENTION, getParams(getParams("scaled = true", layerParams), mainLayerParams));
+                for (int hiddenLayerIndex : hiddenLayerIndices) neuralNetworkConfiguration.connectLayers(hiddenLayerIndex, attentionLayerIndex);
+                lastHiddenLayerIndex = attentionLayerIndex;
+            }
+        }
+        int hiddenLayerIndex = neuralNetworkConfiguration.addHiddenLayer(LayerType.FEEDFORWARD, tanh, getParams("width = 1", layerParams));
+        neuralNetworkConfiguration.connectLayers(lastHiddenLayerIndex, hiddenLayerIndex);
+        int outputLayerIndex = neuralNetworkConfiguration.addOutputLayer(BinaryFunctionType.MEAN_SQUARED_ERROR);
+        neuralNetworkConfiguration.connectLayers(hiddenLayerIndex, outputLayerIndex);
+        neuralNetworkConfiguration.setPrecision(precision);
+        return new NeuralNetwork(neuralNetworkConfiguration);
+    }
+
+    /**
+     * Returns parameters joined with additional parameters.
+     *
+     * @param params parameters.
+     * @param additionalParams additional parameters or null.
+     * @return joined parameters.
+     */
+    private static String getParams(String params, String additionalParams) {
+        return additionalParams == null ? params : params + ", " + additionalParams;
+    }
+
+    /**
+     * Copies weights of expected neural network into actual neural network and asserts that predictions and weight gradients of neural networks are equal within tolerance.
+     *
+     * @param architecture architecture of neural networks.
+     * @param expectedNeuralNetwork expected neural network.
+     * @param actualNeuralNetwork actual neural network.
+     * @param tolerance absolute tolerance.
+     * @throws Exception throws exception if execution of neural network fails.
+     */
+    static void assertEquivalent(Architecture architecture, NeuralNetwork expectedNeuralNetwork, NeuralNetwork actualNeuralNetwork, double tolerance) throws Exception {
+        expectedNeuralNetwork.start();
+        actualNeuralNetwork.start();
+        try {
+            copyWeights(expectedNeuralNetwork, actualNeuralNetwork);
+            assertEquivalentStarted(architecture, expectedNeuralNetwork, actualNeuralNetwork, tolerance);
+        }
+        finally {
+            expectedNeuralNetwork.stop();
+            actualNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Asserts that predictions and weight gradients of started neural networks having equal weights are equal within tolerance.
+     *
+     * @param architecture architecture of neural networks.
+     * @param expectedNeuralNetwork expected neural network.
+     * @param actualNeuralNetwork actual neural network.
+     * @param tolerance absolute tolerance.
+     * @throws Exception throws exception if execution of neural network fails.
+     */
+    static void assertEquivalentStarted(Architecture architecture, NeuralNetwork expectedNeuralNetwork, NeuralNetwork actualNeuralNetwork, double tolerance) throws Exception {
+        HashMap<Integer, HashMap<Integer, Matrix>>[] data = getData(architecture);
+        assertArrayEquals(predict(expectedNeuralNetwork, data[0]), predict(actualNeuralNetwork, data[0]), tolerance, "Predictions differ.");
+        double[] expectedGradients = getGradients(expectedNeuralNetwork, data);
+        double[] actualGradients = getGradients(actualNeuralNetwork, data);
+        assertArrayEquals(expectedGradients, actualGradients, tolerance, "Gradients differ.");
+        boolean hasGradient = false;
+        for (double gradient : expectedGradients) hasGradient |= Math.abs(gradient) > 1000 * tolerance;
+        assertTrue(hasGradient, "Gradients are not significant with respect to tolerance.");
+    }
+
+    /**
+     * Copies weights of neural network into other neural network of equal architecture.
+     *
+     * @param neuralNetwork neural network.
+     * @param otherNeuralNetwork other neural network.
+     * @throws MatrixException throws exception if copying of weights fails.
+     */
+    static void copyWeights(NeuralNetwork neuralNetwork, NeuralNetwork otherNeuralNetwork) throws MatrixException {
+        for (Map.Entry<Integer, NeuralNetworkLayer> entry : neuralNetwork.getNeuralNetworkLayers().entrySet()) {
+            HashMap<Integer, Matrix> weightsMap = entry.getValue().getWeightsMap();
+            if (weightsMap == null) continue;
+            HashMap<Integer, Matrix> otherWeightsMap = otherNeuralNetwork.getNeuralNetworkLayers().get(entry.getKey()).getWeightsMap();
+            for (Map.Entry<Integer, Matrix> weightEntry : weightsMap.entrySet()) otherWeightsMap.get(weightEntry.getKey()).setEqualTo(weightEntry.getValue());
+        }
+    }
+
+    /**
+     * Returns gradients of weights of started neural network as negative weight changes of single gradient descent step with learning rate 1.<br>
+     * Gradient descent optimizer is set directly to layers as optimizer set to neural network before start is not passed to procedures of layers.<br>
+     * Gradients are returned in order of layers and weight indices.<br>
+     *
+     * @param neuralNetwork neural network.
+     * @param data input and output data.
+     * @return gradients of weights.
+     * @throws Exception throws exception if training of neural network fails.
+     */
+    static double[] getGradients(NeuralNetwork neuralNetwork, HashMap<Integer, HashMap<Integer, Matrix>>[] data) throws Exception {
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) {
+            if (neuralNetworkLayer.getWeightsMap() != null) neuralNetworkLayer.setOptimizer(OptimizerFactory.create(OptimizationType.GRADIENT_DESCENT, "learningRate = 1"));
+        }
+        double[] weightsBefore = getWeights(neuralNetwork);
+        neuralNetwork.setTrainingData(new BasicSampler(data[0], data[1], "randomOrder = false, shuffleSamples = false, sampleSize = " + SAMPLES + ", numberOfIterations = 1"));
+        neuralNetwork.train(true, true);
+        double[] gradients = getWeights(neuralNetwork);
+        for (int index = 0; index < gradients.length; index++) gradients[index] = weightsBefore[index] - gradients[index];
+        return gradients;
+    }
+
+    /**
+     * Returns procedures of execution layers of started neural network in order of layers.
+     *
+     * @param neuralNetwork neural network.
+     * @param recurrentOnly if true returns only procedures of recurrent layers.
+     * @return procedures of execution layers.
+     */
+    static ArrayList<Procedure> getProcedures(NeuralNetwork neuralNetwork, boolean recurrentOnly) {
+        ArrayList<Procedure> procedures = new ArrayList<>();
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) {
+            if (!(neuralNetworkLayer instanceof AbstractExecutionLayer executionLayer) || (recurrentOnly && !executionLayer.isRecurrentLayer())) continue;
+            if (executionLayer.getProcedure() != null) procedures.add(executionLayer.getProcedure());
+        }
+        return procedures;
+    }
+
+    /**
+     * Returns values of weights of neural network in order of layers and weight indices.
+     *
+     * @param neuralNetwork neural network.
+     * @return values of weights.
+     */
+    static double[] getWeights(NeuralNetwork neuralNetwork) {
+        ArrayList<Double> weights = new ArrayList<>();
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) {
+            HashMap<Integer, Matrix> weightsMap = neuralNetworkLayer.getWeightsMap();
+            if (weightsMap == null) continue;
+            for (Matrix weight : new TreeMap<>(weightsMap).values()) {
+                for (int depth = 0; depth < weight.getDepth(); depth++) {
+                    for (int row = 0; row < weight.getRows(); row++) {
+                        for (int column = 0; column < weight.getColumns(); column++) weights.add(weight.getValue(row, column, depth));
+                    }
+                }
+            }
+        }
+        return weights.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Sets values of weights of neural network in order of layers and weight indices.
+     *
+     * @param neuralNetwork neural network.
+     * @param weights values of weights.
+     */
+    static void setWeights(NeuralNetwork neuralNetwork, double[] weights) {
+        int index = 0;
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) {
+            HashMap<Integer, Matrix> weightsMap = neuralNetworkLayer.getWeightsMap();
+            if (weightsMap == null) continue;
+            for (Matrix weight : new TreeMap<>(weightsMap).values()) {
+                for (int depth = 0; depth < weight.getDepth(); depth++) {
+                    for (int row = 0; row < weight.getRows(); row++) {
+                        for (int column = 0; column < weight.getColumns(); column++) weight.setValue(row, column, depth, weights[index++]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns predictions of neural network for inputs.
+     *
+     * @param neuralNetwork neural network.
+     * @param inputs inputs by input index and sample index.
+     * @return predictions ordered by sample index.
+     * @throws Exception throws exception if prediction fails.
+     */
+    static double[] predict(NeuralNetwork neuralNetwork, HashMap<Integer, HashMap<Integer, Matrix>> inputs) throws Exception {
+        TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+        for (Map.Entry<Integer, HashMap<Integer, Matrix>> entry : inputs.entrySet()) inputSequences.put(entry.getKey(), new Sequence(entry.getValue()));
+        Sequence outputSequence = neuralNetwork.predict(inputSequences).firstEntry().getValue();
+        double[] predictions = new double[SAMPLES];
+        for (int sampleIndex = 0; sampleIndex < SAMPLES; sampleIndex++) predictions[sampleIndex] = outputSequence.get(sampleIndex).getValue(0, 0, 0);
+        return predictions;
+    }
+
+    /**
+     * Returns input and output data for architecture. Target is mean of inputs.
+     *
+     * @param architecture architecture.
+     * @return input and output data.
+     */
+    @SuppressWarnings("unchecked")
+    static HashMap<Integer, HashMap<Integer, Matrix>>[] getData(Architecture architecture) {
+        HashMap<Integer, HashMap<Integer, Matrix>> inputs = new HashMap<>();
+        HashMap<Integer, HashMap<Integer, Matrix>> outputs = new HashMap<>();
+        int numberOfInputs = architecture == Architecture.ATTENTION ? ATTENTION_INPUTS : 1;
+        Random random = new Random(architecture.ordinal());
+        for (int inputIndex = 0; inputIndex < numberOfInputs; inputIndex++) inputs.put(inputIndex, new HashMap<>());
+        outputs.put(0, new HashMap<>());
+        for (int sampleIndex = 0; sampleIndex < SAMPLES; sampleIndex++) {
+            double sum = 0;
+            for (int inputIndex = 0; inputIndex < numberOfInputs; inputIndex++) {
+                Matrix input = new DMatrix(INPUT_WIDTH, 1, 1);
+                for (int row = 0; row < INPUT_WIDTH; row++) {
+                    double value = 2 * random.nextDouble() - 1;
+                    input.setValue(row, 0, 0, value);
+                    sum += value;
+                }
+                inputs.get(inputIndex).put(sampleIndex, input);
+            }
+            Matrix output = new DMatrix(1, 1, 1);
+            output.setValue(0, 0, 0, sum / (numberOfInputs * INPUT_WIDTH));
+            outputs.get(0).put(sampleIndex, output);
+        }
+        return new HashMap[] { inputs, outputs };
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.DMatrix;
+import utils.matrix.Initialization;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.procedure.ForwardProcedure;
+import utils.procedure.Procedure;
+import utils.procedure.ProcedureFactory;
+import utils.sampling.Sequence;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that optimized procedure produces same predictions and gradients as unoptimized procedure and that procedure reports removed expressions.
+ *
+ */
+public class ProcedureOptimizationTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests multilayer perceptron.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMLP() throws Exception {
+        testArchitecture(Architecture.MLP);
+    }
+
+    /**
+     * Tests neural network with recurrent layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrent() throws Exception {
+        testArchitecture(Architecture.RECURRENT);
+    }
+
+    /**
+     * Tests neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Tests that procedure of layer reports removed expressions and that optimized procedure produces same output and gradients as unoptimized procedure.<br>
+     * Procedure has one duplicate expression, one expression having only constant arguments and one expression not contributing to output.<br>
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRemovedExpressions() throws Exception {
+        RedundantProcedure redundantProcedure = new RedundantProcedure();
+        Procedure procedure = new ProcedureFactory().getProcedure(redundantProcedure, false, false);
+        Procedure optimizedProcedure = new ProcedureFactory().getProcedure(redundantProcedure, true, false);
+
+        assertEquals(0, procedure.getNumberOfRemovedExpressions());
+        assertEquals(1, optimizedProcedure.getNumberOfMergedExpressions(), "Number of merged expressions differs.");
+        assertEquals(1, optimizedProcedure.getNumberOfFoldedExpressions(), "Number of folded expressions differs.");
+        assertEquals(1, optimizedProcedure.getNumberOfEliminatedExpressions(), "Number of eliminated expressions differs.");
+        assertEquals(procedure.getExpressions().size() - 3, optimizedProcedure.getExpressions().size());
+
+        Random random = new Random(0);
+        Sequence inputSequence = new Sequence();
+        Sequence outputGradientSequence = new Sequence();
+        for (int sampleIndex = 0; sampleIndex < RedundantProcedure.SAMPLES; sampleIndex++) {
+            inputSequence.put(sampleIndex, RedundantProcedure.getRandomMatrix(RedundantProcedure.WIDTH, random));
+            outputGradientSequence.put(sampleIndex, RedundantProcedure.getRandomMatrix(RedundantProcedure.WIDTH, random));
+        }
+        Sequence outputSequence = calculate(procedure, inputSequence, outputGradientSequence);
+        Matrix gradient = procedure.getGradients().get(redundantProcedure.weight);
+        Sequence optimizedOutputSequence = calculate(optimizedProcedure, inputSequence, outputGradientSequence);
+        Matrix optimizedGradient = optimizedProcedure.getGradients().get(redundantProcedure.weight);
+        for (int sampleIndex = 0; sampleIndex < RedundantProcedure.SAMPLES; sampleIndex++) {
+            for (int row = 0; row < RedundantProcedure.WIDTH; row++) {
+                assertEquals(outputSequence.get(sampleIndex).getValue(row, 0, 0), optimizedOutputSequence.get(sampleIndex).getValue(row, 0, 0), TOLERANCE, "Outputs differ.");
+            }
+        }
+        for (int row = 0; row < RedundantProcedure.WIDTH; row++) {
+            for (int column = 0; column < RedundantProcedure.WIDTH; column++) {
+                assertEquals(gradient.getValue(row, column, 0), optimizedGradient.getValue(row, column, 0), TOLERANCE, "Gradients differ.");
+            }
+        }
+    }
+
+    /**
+     * Compares neural network having flag disabled by default with neural network having flag enabled.
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        assertEquivalent(architecture, buildNeuralNetwork(architecture, null, null), buildNeuralNetwork(architecture, "optimizeProcedure = true", null), TOLERANCE);
+    }
+
+    /**
+     * Calculates output and gradients of procedure.
+     *
+     * @param procedure procedure.
+     * @param inputSequence input sequence.
+     * @param outputGradientSequence output gradients.
+     * @return output sequence.
+     * @throws Exception throws exception if calculation of procedure fails.
+     */
+    private static Sequence calculate(Procedure procedure, Sequence inputSequence, Sequence outputGradientSequence) throws Exception {
+        procedure.reset();
+        Sequence outputSequence = new Sequence();
+        procedure.calculateExpression(new TreeMap<>() {{ put(0, inputSequence); }}, outputSequence);
+        procedure.calculateGradient(outputGradientSequence, new TreeMap<>() {{ put(0, new Sequence()); }}, -1);
+        return outputSequence;
+    }
+
+    /**
+     * Implements forward procedure having duplicate, constant and dead expressions.
+     *
+     */
+    private static class RedundantProcedure implements ForwardProcedure {
+
+        /**
+         * Width of input and output.
+         *
+         */
+        private static final int WIDTH = 3;
+
+        /**
+         * Number of samples.
+         *
+         */
+        private static final int SAMPLES = 3;
+
+        /**
+         * Weight matrix.
+         *
+         */
+        private final Matrix weight;
+
+        /**
+         * First constant matrix.
+         *
+         */
+        private final Matrix constant1;
+
+        /**
+         * Second constant matrix.
+         *
+         */
+        private final Matrix constant2;
+
+        /**
+         * Input matrix for procedure construction.
+         *
+         */
+        private Matrix input;
+
+        /**
+         * Constructor for redundant procedure.
+         *
+         */
+        RedundantProcedure() {
+            Random random = new Random(1);
+            weight = new DMatrix(WIDTH, WIDTH, 1);
+            for (int row = 0; row < WIDTH; row++) {
+                for (int column = 0; column < WIDTH; column++) weight.setValue(row, column, 0, 2 * random.nextDouble() - 1);
+            }
+            weight.setName("Weight");
+            constant1 = getRandomMatrix(WIDTH, random);
+            constant1.setName("Constant1");
+            constant2 = getRandomMatrix(WIDTH, random);
+            constant2.setName("Constant2");
+        }
+
+        /**
+         * Returns column vector with random values between -1 and 1.
+         *
+         * @param rows number of rows.
+         * @param random random function.
+         * @return random column vector.
+         */
+        private static Matrix getRandomMatrix(int rows, Random random) {
+            Matrix matrix = new DMatrix(rows, 1, 1);
+            for (int row = 0; row < rows; row++) matrix.setValue(row, 0, 0, 2 * random.nextDouble() - 1);
+            return matrix;
+        }
+
+        /**
+         * Returns input matrix for procedure construction.
+         *
+         * @param resetPreviousInput if true resets previous input.
+         * @return input matrices for procedure construction.
+         */
+        public TreeMap<Integer, Matrix> getInputMatrices(boolean resetPreviousInput) {
+            input = new DMatrix(WIDTH, 1, 1, Initialization.ONE);
+            input.setName("Input");
+            return new TreeMap<>() {{ put(0, input); }};
+        }
+
+        /**
+         * Builds forward procedure and implicitly builds backward procedure.
+         *
+         * @return output of forward procedure.
+         * @throws MatrixException throws exception if matrix operation fails.
+         */
+        public Matrix getForwardProcedure() throws MatrixException {
+            // y = W * x
+            Matrix y = weight.dot(input);
+            y.setName("y");
+
+            // a = y x y, b = y x y → Duplicate expression
+            Matrix a = y.multiply(y);
+            a.setName("a");
+            Matrix b = y.multiply(y);
+            b.setName("b");
+
+            // c = c1 + c2 → Expression having only constant arguments
+            Matrix c = constant1.add(constant2);
+            c.setName("c");
+
+            // d = y - c1 → Expression not contributing to output
+            Matrix d = y.subtract(constant1);
+            d.setName("d");
+
+            // output = (a + b) x c
+            Matrix output = a.add(b).multiply(c);
+            output.setName("Output");
+
+            return output;
+        }
+
+        /**
+         * Returns parameter matrices.
+         *
+         * @return parameter matrices.
+         */
+        public HashSet<Matrix> getParameterMatrices() {
+            return new HashSet<>() {{ add(weight); }};
+        }
+
+        /**
+         * Returns matrices for which gradient is not calculated.
+         *
+         * @return matrices for which gradient is not calculated.
+         */
+        public HashSet<Matrix> getStopGradients() {
+            return new HashSet<>();
+        }
+
+        /**
+         * Returns constant matrices.
+         *
+         * @return constant matrices.
+         */
+        public HashSet<Matrix> getConstantMatrices() {
+            return new HashSet<>() {{ add(constant1); add(constant2); }};
+        }
+
+        /**
+         * Check if layer input is reversed.
+         *
+         * @return if true input layer input is reversed otherwise not.
+         */
+        public boolean isReversedInput() {
+            return false;
+        }
+
+        /**
+         * Returns true if input is joined otherwise returns false.
+         *
+         * @return true if input is joined otherwise returns false.
+         */
+        public boolean isJoinedInput() {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import core.layer.AbstractExecutionLayer;
+import core.layer.InputLayer;
+import core.layer.NeuralNetworkLayer;
+import org.junit.jupiter.api.Test;
+import utils.matrix.DMatrix;
+import utils.matrix.FMatrix;
+import utils.matrix.Matrix;
+import utils.matrix.Precision;
+
+import java.util.HashMap;
+
+import static core.network.NetworkEquivalence.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that single precision neural network produces same predictions and gradients as double precision neural network within single precision tolerance.
+ *
+ */
+public class SinglePrecisionTest {
+
+    /**
+     * Absolute tolerance of comparison. Single precision has relative precision of about 6E-8 per operation which accumulates over layers and samples into absolute error well below tolerance.
+     *
+     */
+    private static final double TOLERANCE = 1E-5;
+
+    /**
+     * Tests multilayer perceptron.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testMLP() throws Exception {
+        testArchitecture(Architecture.MLP);
+    }
+
+    /**
+     * Tests neural network with recurrent layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testRecurrent() throws Exception {
+        testArchitecture(Architecture.RECURRENT);
+    }
+
+    /**
+     * Tests neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Compares double precision neural network with neural network having single precision set explicitly.<br>
+     * Asserts that weights of layers are single precision matrices in single precision neural network and double precision matrices in double precision neural network.<br>
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        NeuralNetwork doubleNeuralNetwork = buildNeuralNetwork(architecture, null, null, Precision.DOUBLE);
+        NeuralNetwork singleNeuralNetwork = buildNeuralNetwork(architecture, null, null, Precision.FLOAT);
+        doubleNeuralNetwork.start();
+        singleNeuralNetwork.start();
+        try {
+            assertPrecision(doubleNeuralNetwork, Precision.DOUBLE, DMatrix.class);
+            assertPrecision(singleNeuralNetwork, Precision.FLOAT, FMatrix.class);
+            copyWeights(doubleNeuralNetwork, singleNeuralNetwork);
+            assertEquivalentStarted(architecture, doubleNeuralNetwork, singleNeuralNetwork, TOLERANCE);
+        }
+        finally {
+            doubleNeuralNetwork.stop();
+            singleNeuralNetwork.stop();
+        }
+    }
+
+    /**
+     * Asserts that layers of neural network have given precision and that their weights are matrices of given type.
+     *
+     * @param neuralNetwork neural network.
+     * @param precision expected precision.
+     * @param matrixClass expected type of weight matrices.
+     */
+    private static void assertPrecision(NeuralNetwork neuralNetwork, Precision precision, Class<? extends Matrix> matrixClass) {
+        int numberOfWeights = 0;
+        for (NeuralNetworkLayer neuralNetworkLayer : neuralNetwork.getNeuralNetworkLayers().values()) {
+            if (neuralNetworkLayer instanceof InputLayer inputLayer) assertEquals(precision, inputLayer.getPrecision(), "Precision of input layer differs.");
+            if (!(neuralNetworkLayer instanceof AbstractExecutionLayer executionLayer)) continue;
+            assertEquals(precision, executionLayer.getPrecision(), "Precision of layer differs.");
+            HashMap<Integer, Matrix> weightsMap = executionLayer.getWeightsMap();
+            if (weightsMap == null) continue;
+            for (Matrix weight : weightsMap.values()) {
+                assertEquals(matrixClass, weight.getClass(), "Type of weight matrix differs.");
+                numberOfWeights++;
+            }
+        }
+        assertTrue(numberOfWeights > 0, "Neural network has no weights.");
+    }
+
+}
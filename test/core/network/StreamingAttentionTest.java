@@ -0,0 +1,44 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package core.network;
+
+import org.junit.jupiter.api.Test;
+
+import static core.network.NetworkEquivalence.*;
+
+/**
+ * Tests that streaming softmax attention produces same predictions and gradients as attention with materialized score matrix.
+ *
+ */
+public class StreamingAttentionTest {
+
+    /**
+     * Tolerance of comparison.
+     *
+     */
+    private static final double TOLERANCE = 1E-10;
+
+    /**
+     * Tests neural network with dot attention layer.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAttention() throws Exception {
+        testArchitecture(Architecture.ATTENTION);
+    }
+
+    /**
+     * Compares neural network having flag disabled with neural network having flag enabled by default.
+     *
+     * @param architecture architecture of neural network.
+     * @throws Exception throws exception if test fails.
+     */
+    private static void testArchitecture(Architecture architecture) throws Exception {
+        assertEquivalent(architecture, buildNeuralNetwork(architecture, null, "streamingSoftmax = false"), buildNeuralNetwork(architecture, null, null), TOLERANCE);
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.procedure;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.DMatrix;
+import utils.matrix.Initialization;
+import utils.matrix.Matrix;
+import utils.matrix.MatrixException;
+import utils.sampling.Sequence;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests gradients of join and unjoin expressions against central finite differences.<br>
+ * Procedure stacks gate projections into single matrix and slices them with unjoin at non-zero offsets like recurrent layers with fused gates. Sliced nodes are consumed by several expressions and joined back together.<br>
+ * Procedure uses only linear and bilinear expressions so that finite differences can be compared with analytic gradients at tight tolerance.<br>
+ *
+ */
+public class JoinUnjoinGradientTest implements ForwardProcedure {
+
+    /**
+     * Width of input.
+     *
+     */
+    private static final int INPUT_WIDTH = 4;
+
+    /**
+     * Width of single gate.
+     *
+     */
+    private static final int GATE_WIDTH = 3;
+
+    /**
+     * Number of samples.
+     *
+     */
+    private static final int SAMPLES = 3;
+
+    /**
+     * Step of finite differences.
+     *
+     */
+    private static final double STEP = 1E-6;
+
+    /**
+     * Absolute tolerance of gradients.
+     *
+     */
+    private static final double TOLERANCE = 1E-7;
+
+    /**
+     * Stacked projection weights of gates.
+     *
+     */
+    private final Matrix W;
+
+    /**
+     * Weights of joined output.
+     *
+     */
+    private final Matrix V;
+
+    /**
+     * Input matrix for procedure construction.
+     *
+     */
+    private Matrix input;
+
+    /**
+     * Constructor for JoinUnjoinGradientTest.
+     *
+     */
+    public JoinUnjoinGradientTest() {
+        Random random = new Random(0);
+        W = getRandomMatrix(3 * GATE_WIDTH, INPUT_WIDTH, random);
+        W.setName("W");
+        V = getRandomMatrix(2 * GATE_WIDTH, 1, random);
+        V.setName("V");
+    }
+
+    /**
+     * Tests gradients of procedure that is not optimized or fused.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testGradients() throws Exception {
+        assertFiniteDifferenceGradients(new ProcedureFactory().getProcedure(this, false, false));
+    }
+
+    /**
+     * Tests gradients of optimized procedure with fused expressions.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testOptimizedGradients() throws Exception {
+        assertFiniteDifferenceGradients(new ProcedureFactory().getProcedure(this, true, true));
+    }
+
+    /**
+     * Asserts that gradients of parameter matrices calculated by procedure are equal to central finite differences of loss.<br>
+     * Loss is mean over samples of sum of output values weighted by fixed output gradient.<br>
+     *
+     * @param procedure procedure.
+     * @throws Exception throws exception if calculation of procedure fails.
+     */
+    private void assertFiniteDifferenceGradients(Procedure procedure) throws Exception {
+        Random random = new Random(1);
+        Sequence inputSequence = new Sequence();
+        Sequence outputGradientSequence = new Sequence();
+        for (int sampleIndex = 0; sampleIndex < SAMPLES; sampleIndex++) {
+            inputSequence.put(sampleIndex, getRandomMatrix(INPUT_WIDTH, 1, random));
+            outputGradientSequence.put(sampleIndex, getRandomMatrix(2 * GATE_WIDTH, 1, random));
+        }
+        TreeMap<Integer, Sequence> inputSequences = new TreeMap<>() {{ put(0, inputSequence); }};
+
+        getLoss(procedure, inputSequences, outputGradientSequence);
+        procedure.calculateGradient(outputGradientSequence, new TreeMap<>() {{ put(0, new Sequence()); }}, -1);
+        HashMap<Matrix, Matrix> gradients = procedure.getGradients();
+
+        boolean hasGradient = false;
+        for (Matrix parameterMatrix : getParameterMatrices()) {
+            Matrix gradient = gradients.get(parameterMatrix);
+            assertNotNull(gradient, "No gradient for " + parameterMatrix.getName());
+            for (int row = 0; row < parameterMatrix.getRows(); row++) {
+                for (int column = 0; column < parameterMatrix.getColumns(); column++) {
+                    double value = parameterMatrix.getValue(row, column, 0);
+                    parameterMatrix.setValue(row, column, 0, value + STEP);
+                    double increasedLoss = getLoss(procedure, inputSequences, outputGradientSequence);
+                    parameterMatrix.setValue(row, column, 0, value - STEP);
+                    double decreasedLoss = getLoss(procedure, inputSequences, outputGradientSequence);
+                    parameterMatrix.setValue(row, column, 0, value);
+                    double finiteDifference = (increasedLoss - decreasedLoss) / (2 * STEP);
+                    assertEquals(finiteDifference, gradient.getValue(row, column, 0), TOLERANCE, "Gradient of " + parameterMatrix.getName() + " differs from finite difference at (" + row + ", " + column + ").");
+                    hasGradient |= Math.abs(finiteDifference) > 1000 * TOLERANCE;
+                }
+            }
+        }
+        assertTrue(hasGradient, "Gradients are not significant with respect to tolerance.");
+    }
+
+    /**
+     * Calculates procedure and returns loss as mean over samples of sum of output values weighted by output gradient.
+     *
+     * @param procedure procedure.
+     * @param inputSequences input sequences.
+     * @param outputGradientSequence output gradients.
+     * @return loss.
+     * @throws Exception throws exception if calculation of procedure fails.
+     */
+    private static double getLoss(Procedure procedure, TreeMap<Integer, Sequence> inputSequences, Sequence outputGradientSequence) throws Exception {
+        procedure.reset();
+        Sequence outputSequence = new Sequence();
+        procedure.calculateExpression(inputSequences, outputSequence);
+        double loss = 0;
+        for (int sampleIndex = 0; sampleIndex < SAMPLES; sampleIndex++) loss += outputSequence.get(sampleIndex).multiply(outputGradientSequence.get(sampleIndex)).sum();
+        return loss / SAMPLES;
+    }
+
+    /**
+     * Returns matrix with random values between -1 and 1.
+     *
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param random random function.
+     * @return random matrix.
+     */
+    private static Matrix getRandomMatrix(int rows, int columns, Random random) {
+        Matrix matrix = new DMatrix(rows, columns, 1);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) matrix.setValue(row, column, 0, 2 * random.nextDouble() - 1);
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns input matrix for procedure construction.
+     *
+     * @param resetPreviousInput if true resets previous input.
+     * @return input matrices for procedure construction.
+     */
+    public TreeMap<Integer, Matrix> getInputMatrices(boolean resetPreviousInput) {
+        input = new DMatrix(INPUT_WIDTH, 1, 1, Initialization.ONE);
+        input.setName("Input");
+        return new TreeMap<>() {{ put(0, input); }};
+    }
+
+    /**
+     * Builds forward procedure and implicitly builds backward procedure.
+     *
+     * @return output of forward procedure.
+     * @throws MatrixException throws exception if matrix operation fails.
+     */
+    public Matrix getForwardProcedure() throws MatrixException {
+        // y = W * x → Stacked projections of gates
+        Matrix y = W.dot(input);
+        y.setName("y");
+
+        // [a, b] = y[0:2n] → Gates sliced in two steps
+        Matrix gates = y.unjoin(0, 0, 0, 2 * GATE_WIDTH, 1, 1);
+        Matrix a = gates.unjoin(0, 0, 0, GATE_WIDTH, 1, 1);
+        a.setName("a");
+        Matrix b = gates.unjoin(GATE_WIDTH, 0, 0, GATE_WIDTH, 1, 1);
+        b.setName("b");
+
+        // c = y[2n:3n]
+        Matrix c = y.unjoin(2 * GATE_WIDTH, 0, 0, GATE_WIDTH, 1, 1);
+        c.setName("c");
+
+        // output = [a x b; c x a] x V + [a, b]
+        Matrix output = a.multiply(b).join(c.multiply(a), true).multiply(V).add(gates);
+        output.setName("Output");
+
+        return output;
+    }
+
+    /**
+     * Returns parameter matrices.
+     *
+     * @return parameter matrices.
+     */
+    public HashSet<Matrix> getParameterMatrices() {
+        return new HashSet<>() {{ add(W); add(V); }};
+    }
+
+    /**
+     * Returns matrices for which gradient is not calculated.
+     *
+     * @return matrices for which gradient is not calculated.
+     */
+    public HashSet<Matrix> getStopGradients() {
+        return new HashSet<>();
+    }
+
+    /**
+     * Returns constant matrices.
+     *
+     * @return constant matrices.
+     */
+    public HashSet<Matrix> getConstantMatrices() {
+        return new HashSet<>();
+    }
+
+    /**
+     * Check if layer input is reversed.
+     *
+     * @return if true input layer input is reversed otherwise not.
+     */
+    public boolean isReversedInput() {
+        return false;
+    }
+
+    /**
+     * Returns true if input is joined otherwise returns false.
+     *
+     * @return true if input is joined otherwise returns false.
+     */
+    public boolean isJoinedInput() {
+        return false;
+    }
+
+}
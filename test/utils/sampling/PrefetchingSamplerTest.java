@@ -0,0 +1,233 @@
+/*
+ * SANNet Neural Network Framework
+ * Copyright (C) 2018 - 2023 Simo Aaltonen
+ */
+
+package utils.sampling;
+
+import org.junit.jupiter.api.Test;
+import utils.matrix.DMatrix;
+import utils.matrix.Matrix;
+
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that prefetching sampler returns same batches in same order as wrapped sampler sampled directly.
+ *
+ */
+public class PrefetchingSamplerTest {
+
+    /**
+     * Implements sampler returning consecutive positions as single sample batches. Reset optionally rewinds position.
+     *
+     */
+    private static class CountingSampler implements Sampler {
+
+        /**
+         * If true reset rewinds position and changes order of samples.
+         *
+         */
+        private final boolean rewinding;
+
+        /**
+         * Number of iterations.
+         *
+         */
+        private final int numberOfIterations;
+
+        /**
+         * Current position.
+         *
+         */
+        private int position = 0;
+
+        /**
+         * Number of sampled batches.
+         *
+         */
+        private volatile int sampledBatches = 0;
+
+        /**
+         * Constructor for counting sampler.
+         *
+         * @param rewinding if true reset rewinds position.
+         * @param numberOfIterations number of iterations.
+         */
+        CountingSampler(boolean rewinding, int numberOfIterations) {
+            this.rewinding = rewinding;
+            this.numberOfIterations = numberOfIterations;
+        }
+
+        /**
+         * Resets sampler.
+         *
+         */
+        public void reset() {
+            if (rewinding) position = 0;
+        }
+
+        /**
+         * Checks if reset changes order of samples.
+         *
+         * @return true if reset rewinds position otherwise false.
+         */
+        public boolean resetChangesOrder() {
+            return rewinding;
+        }
+
+        /**
+         * Returns number of iterations.
+         *
+         * @return number of iterations.
+         */
+        public int getNumberOfIterations() {
+            return numberOfIterations;
+        }
+
+        /**
+         * Samples batch containing current position as input and negated position as output.
+         *
+         * @param inputSequences sampled input sequences.
+         * @param outputSequences sampled output sequences.
+         */
+        public void getSamples(TreeMap<Integer, Sequence> inputSequences, TreeMap<Integer, Sequence> outputSequences) {
+            Sequence inputSequence = new Sequence();
+            inputSequence.put(0, new DMatrix(position));
+            Sequence outputSequence = new Sequence();
+            outputSequence.put(0, new DMatrix(-position));
+            inputSequences.put(0, inputSequence);
+            outputSequences.put(0, outputSequence);
+            position++;
+            sampledBatches++;
+        }
+
+    }
+
+    /**
+     * Tests that background sampling continues across resets that do not change order of samples and that it samples prefetch depth batches ahead although number of iterations is one.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testResetKeepingOrder() throws Exception {
+        CountingSampler sampler = new CountingSampler(false, 1);
+        CountingSampler wrappedSampler = new CountingSampler(false, 1);
+        PrefetchingSampler prefetchingSampler = new PrefetchingSampler(wrappedSampler, "prefetchDepth = 3");
+        try {
+            for (int iteration = 0; iteration < 10; iteration++) {
+                sampler.reset();
+                prefetchingSampler.reset();
+                assertBatchEquals(sampler, prefetchingSampler);
+            }
+            assertSampledBatches(wrappedSampler, 10 + 3);
+        }
+        finally {
+            prefetchingSampler.stop();
+        }
+    }
+
+    /**
+     * Tests that batches are equal to wrapped sampler when reset changes order of samples including reset in middle of iterations.
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testResetChangingOrder() throws Exception {
+        CountingSampler sampler = new CountingSampler(true, 3);
+        PrefetchingSampler prefetchingSampler = new PrefetchingSampler(new CountingSampler(true, 3), "prefetchDepth = 2");
+        try {
+            for (int epoch = 0; epoch < 4; epoch++) {
+                sampler.reset();
+                prefetchingSampler.reset();
+                int numberOfIterations = epoch == 2 ? 1 : prefetchingSampler.getNumberOfIterations();
+                for (int iteration = 0; iteration < numberOfIterations; iteration++) assertBatchEquals(sampler, prefetchingSampler);
+            }
+        }
+        finally {
+            prefetchingSampler.stop();
+        }
+    }
+
+    /**
+     * Tests that adding transform does not discard prefetched batches and that transform is applied to batches returned after it was added.<br>
+     * Transform is added when prefetch depth batches have been sampled ahead.<br>
+     *
+     * @throws Exception throws exception if test fails.
+     */
+    @Test
+    public void testAddTransform() throws Exception {
+        BatchTransform batchTransform = (inputSequences, outputSequences) -> {
+            for (Sequence sequence : inputSequences.values()) {
+                for (int sampleIndex : sequence.sampleIndices()) {
+                    Matrix sample = sequence.get(sampleIndex);
+                    sample.setValue(0, 0, 0, 10 * sample.getValue(0, 0, 0));
+                }
+            }
+        };
+        CountingSampler sampler = new CountingSampler(false, 1);
+        CountingSampler wrappedSampler = new CountingSampler(false, 1);
+        PrefetchingSampler prefetchingSampler = new PrefetchingSampler(wrappedSampler, "prefetchDepth = 3");
+        try {
+            for (int iteration = 0; iteration < 2; iteration++) assertBatchEquals(sampler, prefetchingSampler);
+            assertSampledBatches(wrappedSampler, 2 + 3);
+            prefetchingSampler.addTransform(batchTransform);
+            for (int iteration = 0; iteration < 5; iteration++) {
+                TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+                TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
+                sampler.getSamples(inputSequences, outputSequences);
+                batchTransform.transform(inputSequences, outputSequences);
+                assertBatchEquals(inputSequences, outputSequences, prefetchingSampler);
+            }
+        }
+        finally {
+            prefetchingSampler.stop();
+        }
+    }
+
+    /**
+     * Asserts that background thread samples expected number of batches from wrapped sampler and stops there.
+     *
+     * @param wrappedSampler wrapped sampler.
+     * @param expectedSampledBatches expected number of sampled batches.
+     * @throws InterruptedException throws exception if waiting is interrupted.
+     */
+    private static void assertSampledBatches(CountingSampler wrappedSampler, int expectedSampledBatches) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (wrappedSampler.sampledBatches < expectedSampledBatches && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        Thread.sleep(10);
+        assertEquals(expectedSampledBatches, wrappedSampler.sampledBatches);
+    }
+
+    /**
+     * Asserts that next batch of prefetching sampler is equal to next batch of sampler.
+     *
+     * @param sampler sampler sampled directly.
+     * @param prefetchingSampler prefetching sampler.
+     * @throws Exception throws exception if sampling fails.
+     */
+    private static void assertBatchEquals(Sampler sampler, PrefetchingSampler prefetchingSampler) throws Exception {
+        TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+        TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
+        sampler.getSamples(inputSequences, outputSequences);
+        assertBatchEquals(inputSequences, outputSequences, prefetchingSampler);
+    }
+
+    /**
+     * Asserts that next batch of prefetching sampler is equal to expected batch.
+     *
+     * @param expectedInputSequences expected input sequences.
+     * @param expectedOutputSequences expected output sequences.
+     * @param prefetchingSampler prefetching sampler.
+     * @throws Exception throws exception if sampling fails.
+     */
+    private static void assertBatchEquals(TreeMap<Integer, Sequence> expectedInputSequences, TreeMap<Integer, Sequence> expectedOutputSequences, PrefetchingSampler prefetchingSampler) throws Exception {
+        TreeMap<Integer, Sequence> inputSequences = new TreeMap<>();
+        TreeMap<Integer, Sequence> outputSequences = new TreeMap<>();
+        prefetchingSampler.getSamples(inputSequences, outputSequences);
+        assertEquals(expectedInputSequences.get(0).get(0).getValue(0, 0, 0), inputSequences.get(0).get(0).getValue(0, 0, 0));
+        assertEquals(expectedOutputSequences.get(0).get(0).getValue(0, 0, 0), outputSequences.get(0).get(0).getValue(0, 0, 0));
+    }
+
+}